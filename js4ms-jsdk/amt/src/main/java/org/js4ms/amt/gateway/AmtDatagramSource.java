@@ -24,10 +24,10 @@ package org.js4ms.amt.gateway;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.HashSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.js4ms.amt.message.SourceSet;
 import org.js4ms.amt.proxy.SourceFilter;
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.io.channel.MessageSource;
@@ -137,7 +137,7 @@ public class AmtDatagramSource
         }
 
         InetAddress groupAddress = this.sourceFilter.getGroupAddress();
-        HashSet<InetAddress> sourceAddresses = this.sourceFilter.getSourceSet();
+        SourceSet sourceAddresses = this.sourceFilter.getSourceSet();
         if (sourceAddresses.size() > 0) {
             for (InetAddress sourceAddress : sourceAddresses) {
                 this.amtEndpoint.join(groupAddress, sourceAddress);
@@ -25,7 +25,6 @@ package org.js4ms.amt.gateway;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
-import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,6 +36,7 @@ import org.js4ms.amt.proxy.MembershipQuery;
 import org.js4ms.amt.proxy.MembershipReport;
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.task.TimingWheel;
 import org.js4ms.io.channel.MessageKeyExtractor;
 import org.js4ms.io.channel.OutputChannel;
 import org.js4ms.io.channel.OutputChannelMap;
@@ -59,6 +59,29 @@ public class AmtIPInterface {
 
     public static final Logger logger = Logger.getLogger(AmtIPInterface.class.getName());
 
+    /**
+     * The tunnel MTU used to size membership reports.
+     */
+    static final int TUNNEL_MTU = 1500;
+
+    /**
+     * The bytes added when a report is sent to the relay: an outer IPv6 or IPv4 header,
+     * a UDP header and the AMT Membership Update message header.
+     */
+    static final int TUNNEL_OVERHEAD = 40 + 8 + 12;
+
+    /**
+     * The maximum IGMPv3 report length. The report is carried in an IPv4 header with a
+     * Router Alert option.
+     */
+    static final int MAXIMUM_IGMP_REPORT_LENGTH = TUNNEL_MTU - TUNNEL_OVERHEAD - 24;
+
+    /**
+     * The maximum MLDv2 report length. The report is carried in an IPv6 header and a
+     * Hop-by-Hop Options header with a Router Alert option.
+     */
+    static final int MAXIMUM_MLD_REPORT_LENGTH = TUNNEL_MTU - TUNNEL_OVERHEAD - 48;
+
     /*-- Member Variables ---------------------------------------------------*/
 
     protected final Log log = new Log(this);
@@ -69,9 +92,11 @@ public class AmtIPInterface {
 
     private final OutputChannelTee<IPPacket> dispatchChannel;
 
+    private final MulticastDataTee dataTee;
+
     private int referenceCount = 0;
 
-    private final Timer taskTimer;
+    private final TimingWheel taskTimer;
 
     private final InterfaceMembershipManager ipv4MembershipManager;
 
@@ -115,8 +140,9 @@ public class AmtIPInterface {
 
         this.amtPseudoInterface = amtPseudoInterface;
         this.dispatchChannel = new OutputChannelTee<IPPacket>();
+        this.dataTee = new MulticastDataTee();
 
-        this.taskTimer = new Timer("AMT IP Interface");
+        this.taskTimer = TimingWheel.getSharedInstance();
 
         // Create channel that sends packets over the pseudo-interface
         OutputChannel<IPPacket> reportChannel = new OutputChannel<IPPacket>() {
@@ -136,6 +162,10 @@ public class AmtIPInterface {
         this.ipv4MembershipManager = new InterfaceMembershipManager(this.taskTimer);
         this.ipv6MembershipManager = new InterfaceMembershipManager(this.taskTimer);
 
+        // Pack group records into as few reports as will fit in the tunnel MTU
+        this.ipv4MembershipManager.setMaximumReportLength(MAXIMUM_IGMP_REPORT_LENGTH);
+        this.ipv6MembershipManager.setMaximumReportLength(MAXIMUM_MLD_REPORT_LENGTH);
+
         // Connect report channel of interface membership managers to pseudo-interface.
         this.ipv4MembershipManager.setOutgoingReportChannel(
                         new OutputChannelTransform<MembershipReport, IPPacket>(reportChannel,
@@ -192,8 +222,10 @@ public class AmtIPInterface {
         // IGMP or MLD messages.
         outputChannelMap.put(null, this.dispatchChannel);
 
-        // Connect the channel map to the pseudo-interface output channel
-        this.amtPseudoInterface.addOutputChannel(outputChannelMap);
+        // Connect the channel map to the pseudo-interface output channel.
+        // Multicast data dispatched directly by the tunnel endpoint never carries IGMP
+        // or MLD messages so it bypasses the channel map.
+        this.amtPseudoInterface.addOutputChannel(new MulticastDataChannel(outputChannelMap, this.dataTee));
 
     }
 
@@ -209,6 +241,7 @@ public class AmtIPInterface {
         }
 
         this.dispatchChannel.add(destinationChannel);
+        this.dataTee.add(destinationChannel);
     }
 
     /**
@@ -223,6 +256,7 @@ public class AmtIPInterface {
         }
 
         this.dispatchChannel.remove(destinationChannel);
+        this.dataTee.remove(destinationChannel);
     }
 
     /**
@@ -234,6 +268,44 @@ public class AmtIPInterface {
         return this.amtPseudoInterface.getRelayDiscoveryAddress();
     }
 
+    /**
+     * Gets the time taken to receive the first valid Relay Advertisement in the most
+     * recent relay discovery cycle.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no advertisement has been received.
+     */
+    public long getTimeToFirstAdvertisement() {
+        return this.amtPseudoInterface.getTimeToFirstAdvertisement();
+    }
+
+    /**
+     * Gets the time taken to receive the first Multicast Data message in the most
+     * recent relay discovery cycle.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no data has been received.
+     */
+    public long getTimeToFirstData() {
+        return this.amtPseudoInterface.getTimeToFirstData();
+    }
+
+    /**
+     * Gets the number of multicast data packets that failed checksum verification
+     * while the specified policy was in effect.
+     * 
+     * @param policy
+     */
+    public long getChecksumFailureCount(final ChecksumPolicy policy) {
+        return this.amtPseudoInterface.getChecksumFailureCount(policy);
+    }
+
+    /**
+     * Gets the number of datagrams received from the relay that were discarded because
+     * a tunnel handler queue was full.
+     */
+    public long getHandlerQueueOverflowCount() {
+        return this.amtPseudoInterface.getHandlerQueueOverflowCount();
+    }
+
     /**
      * 
      */
@@ -26,14 +26,21 @@ package org.js4ms.amt.gateway;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.net.InetAddress;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
-import org.js4ms.io.channel.MessageQueue;
+import org.js4ms.io.buffer.MemoryBudget;
+import org.js4ms.io.channel.BatchMessageListener;
+import org.js4ms.io.channel.ListenerOutputChannel;
+import org.js4ms.io.channel.MessageListener;
+import org.js4ms.io.channel.MpscMessagePipe;
 import org.js4ms.io.channel.OutputChannel;
-import org.js4ms.io.channel.OutputChannelPipe;
+import org.js4ms.io.channel.OverflowPolicy;
+import org.js4ms.io.channel.QueuedOutputChannel;
 import org.js4ms.io.net.MulticastEndpoint;
 import org.js4ms.io.net.UdpDatagram;
 
@@ -43,10 +50,50 @@ import org.js4ms.io.net.UdpDatagram;
  * A {@link MulticastEndpoint} that uses AMT to request and receive multicast
  * datagrams sent to a specific multicast group address and UDP port number.
  * The endpoint provides "push" and "pull" methods for datagram delivery.
- * If an {@link OutputChannel} is attached to the endpoint, incoming datagrams
- * are pushed into the output channel as they arrive. If no output channel is
- * provided, the incoming datagrams are queued internally and retrieved by calling
- * the {@link #receive(int)} method.
+ * If an {@link OutputChannel} or a listener is attached to the endpoint, incoming
+ * datagrams are pushed into the output channel or listener as they arrive. If neither
+ * is provided, the incoming datagrams are queued internally and retrieved by calling
+ * the {@link #receive(int)} method. The internal queue is a lock-free
+ * {@link MpscMessagePipe} - only one thread at a time may call {@link #receive(int)},
+ * and datagrams that arrive while the queue is full are discarded and counted.
+ * <p>
+ * By default an attached output channel receives each datagram directly on the thread
+ * that dispatches it, so the channel sees every datagram but a slow channel delays
+ * delivery to the other endpoints that have joined the same group. An application
+ * may instead supply a queue capacity and {@link OverflowPolicy} when it constructs
+ * the endpoint, in which case the output channel receives datagrams through a bounded
+ * {@link QueuedOutputChannel} that is drained by a separate thread.
+ * <p>
+ * A {@link MessageListener} or {@link BatchMessageListener} attached to the endpoint
+ * receives datagrams through a {@link ListenerOutputChannel}. The listener is called
+ * on the thread that dispatches the datagrams, or by tasks submitted to an executor
+ * supplied by the application. An executor may be shared by many endpoints, so an
+ * application that hosts many endpoints need not dedicate a thread to each one.
+ * <p>
+ * The memory held by datagrams waiting in the internal queue, the push channel queue
+ * or the listener queue is charged to the "AmtMulticastEndpoint" account of the shared
+ * {@link MemoryBudget}. Datagrams that arrive while the budget is exhausted are handled
+ * as if the queue were full.
+ * <p>
+ * AMT tunnels receive datagrams into pooled buffers. By default an endpoint detaches
+ * the buffers that back the datagrams it delivers from their pool, leaving them to the
+ * garbage collector, so consumers may keep the datagrams they receive for as long as
+ * they like. Buffer recycling may be enabled for an endpoint when it is constructed.
+ * The buffers that back the datagrams delivered by such an endpoint are returned to
+ * their pool once every reference to them has been released, which places the
+ * following requirements on the consumers of the endpoint:
+ * <ul>
+ * <li>Callers of {@link #receive(int)} must {@link UdpDatagram#release() release} each
+ * datagram they receive.</li>
+ * <li>A listener that keeps a datagram after its callback returns must
+ * {@link UdpDatagram#retain() retain} the datagram and release it later.</li>
+ * <li>An output channel attached through a {@link QueuedOutputChannel} is subject to the
+ * same rule as a listener. The queue itself retains the datagrams it holds.</li>
+ * </ul>
+ * An output channel that is attached directly is not assumed to track references, so
+ * the buffers that back the datagrams sent to it are detached from the pool instead.
+ * A datagram delivered to several endpoints shares one buffer, so the buffer is only
+ * recycled if every endpoint that receives the datagram has recycling enabled.
  * <p>
  * A single multicast endpoint may be used to join both IPv4 and IPv6 multicast groups
  * irrespective of the relay discovery address used.
@@ -63,6 +110,17 @@ public final class AmtMulticastEndpoint
      */
     public static final Logger logger = Logger.getLogger(AmtMulticastEndpoint.class.getName());
 
+    /**
+     * A typical number of datagrams to queue for an output channel that is attached
+     * through a {@link QueuedOutputChannel}.
+     */
+    public static final int DEFAULT_QUEUE_CAPACITY = 256;
+
+    /**
+     * The shared memory budget account charged for queued datagrams.
+     */
+    private static final MemoryBudget.Account memoryAccount = MemoryBudget.getSharedInstance().getAccount("AmtMulticastEndpoint");
+
     /*-- Member Variables ---------------------------------------------------*/
 
     private final Log log = new Log(this);
@@ -76,6 +134,12 @@ public final class AmtMulticastEndpoint
 
     private final InetAddress relayDiscoveryAddress;
 
+    /**
+     * Indicates whether the buffers that back the datagrams delivered by this endpoint
+     * may be recycled. See the class description.
+     */
+    private final boolean isBufferRecyclingEnabled;
+
     /**
      * This is the channel that the AMT interface will push datagrams into.
      * This channel may be constructed externally or internally.
@@ -91,7 +155,22 @@ public final class AmtMulticastEndpoint
     /**
      * The queue used to buffer datagrams. Not used if a push channel is used.
      */
-    private MessageQueue<UdpDatagram> datagramQueue = null;
+    private MpscMessagePipe<UdpDatagram> datagramQueue = null;
+
+    /**
+     * The number of datagrams discarded because the datagram queue was full.
+     */
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    /**
+     * The queue used to forward datagrams to an externally constructed push channel.
+     */
+    private QueuedOutputChannel<UdpDatagram> pushQueue = null;
+
+    /**
+     * The channel used to deliver datagrams to a listener.
+     */
+    private ListenerOutputChannel<UdpDatagram> listenerChannel = null;
 
     /*-- Member Functions ---------------------------------------------------*/
 
@@ -139,9 +218,53 @@ public final class AmtMulticastEndpoint
     public AmtMulticastEndpoint(final int port,
                                 final InetAddress relayDiscoveryAddress,
                                 final int bufferCapacity) {
-        this(port, relayDiscoveryAddress);
-        this.datagramQueue = new MessageQueue<UdpDatagram>(bufferCapacity);
-        this.pushChannel = new OutputChannelPipe<UdpDatagram>(this.datagramQueue);
+        this(port, relayDiscoveryAddress, bufferCapacity, false);
+    }
+
+    /**
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param bufferCapacity
+     *            The desired internal queue size.
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams returned by
+     *            {@link #receive(int)} are recycled once the caller releases them.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final int bufferCapacity,
+                                final boolean isBufferRecyclingEnabled) {
+        this(port, relayDiscoveryAddress, isBufferRecyclingEnabled);
+        final boolean isDetachRequired = !isBufferRecyclingEnabled;
+        final MpscMessagePipe<UdpDatagram> datagramQueue = new MpscMessagePipe<UdpDatagram>(bufferCapacity, memoryAccount);
+        this.datagramQueue = datagramQueue;
+        // Datagrams that arrive while the queue is full are discarded rather than
+        // blocking delivery to other endpoints
+        this.pushChannel = new OutputChannel<UdpDatagram>() {
+
+            @Override
+            public void send(UdpDatagram message, int milliseconds) {
+                if (isDetachRequired) {
+                    message.detach();
+                }
+                // The queue holds a reference that passes to the caller of receive()
+                message.retain();
+                if (!datagramQueue.offer(message)) {
+                    message.release();
+                    AmtMulticastEndpoint.this.overflowCount.incrementAndGet();
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
     }
 
     /**
@@ -154,13 +277,273 @@ public final class AmtMulticastEndpoint
      *            locate an AMT relay that can be used to join specific multicast
      *            group(s).
      * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel on the thread
+     *            that dispatches them.
      */
     public AmtMulticastEndpoint(final int port,
                                 final InetAddress relayDiscoveryAddress,
                                 final OutputChannel<UdpDatagram> pushChannel) {
-        this(port, relayDiscoveryAddress);
-        this.pushChannel = pushChannel; // TODO wrap channel to intercept exceptions so
-                                        // channel can leave AMT interface
+        this(port, relayDiscoveryAddress, false);
+        // The channel may keep the datagrams it is sent without retaining them, so
+        // their receive buffers must not be recycled
+        this.pushChannel = detaching(pushChannel);
+    }
+
+    /**
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @param queueCapacity
+     *            The maximum number of datagrams queued for the push channel.
+     * @param overflowPolicy
+     *            The action taken when a datagram arrives while the queue is full.
+     *            If the push channel is disconnected, either by this policy or because
+     *            the push channel threw an exception, the endpoint stops receiving
+     *            datagrams from all groups.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final OutputChannel<UdpDatagram> pushChannel,
+                                final int queueCapacity,
+                                final OverflowPolicy overflowPolicy) {
+        this(port, relayDiscoveryAddress, pushChannel, queueCapacity, overflowPolicy, false);
+    }
+
+    /**
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @param queueCapacity
+     *            The maximum number of datagrams queued for the push channel.
+     * @param overflowPolicy
+     *            The action taken when a datagram arrives while the queue is full.
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams sent to the
+     *            push channel are recycled. If so, the push channel must retain any
+     *            datagram it keeps after its send method returns.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final OutputChannel<UdpDatagram> pushChannel,
+                                final int queueCapacity,
+                                final OverflowPolicy overflowPolicy,
+                                final boolean isBufferRecyclingEnabled) {
+        this(port, relayDiscoveryAddress, isBufferRecyclingEnabled);
+        this.pushQueue = new QueuedOutputChannel<UdpDatagram>(pushChannel, queueCapacity, overflowPolicy, memoryAccount);
+        this.pushChannel = isBufferRecyclingEnabled ? this.pushQueue : detaching(this.pushQueue);
+    }
+
+    /**
+     * Constructs an instance that delivers incoming datagrams to a listener on the
+     * thread that dispatches the datagrams. The listener should return quickly since
+     * the same thread delivers datagrams to other endpoints.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param listener
+     *            The listener that will receive incoming datagrams.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final MessageListener<UdpDatagram> listener) {
+        this(port, relayDiscoveryAddress, listener, null, 0, null);
+    }
+
+    /**
+     * Constructs an instance that delivers incoming datagrams to a listener using
+     * tasks submitted to an executor.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param listener
+     *            The listener that will receive incoming datagrams.
+     * @param executor
+     *            The executor used to call the listener, or <code>null</code> to call
+     *            the listener on the thread that dispatches the datagrams.
+     * @param queueCapacity
+     *            The maximum number of datagrams queued for the executor.
+     *            Ignored if the executor is <code>null</code>.
+     * @param overflowPolicy
+     *            The action taken when a datagram arrives while the queue is full.
+     *            Ignored if the executor is <code>null</code>.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final MessageListener<UdpDatagram> listener,
+                                final Executor executor,
+                                final int queueCapacity,
+                                final OverflowPolicy overflowPolicy) {
+        this(port, relayDiscoveryAddress, listener, executor, queueCapacity, overflowPolicy, false);
+    }
+
+    /**
+     * Constructs an instance that delivers incoming datagrams to a listener using
+     * tasks submitted to an executor.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param listener
+     *            The listener that will receive incoming datagrams.
+     * @param executor
+     *            The executor used to call the listener, or <code>null</code> to call
+     *            the listener on the thread that dispatches the datagrams.
+     * @param queueCapacity
+     *            The maximum number of datagrams queued for the executor.
+     *            Ignored if the executor is <code>null</code>.
+     * @param overflowPolicy
+     *            The action taken when a datagram arrives while the queue is full.
+     *            Ignored if the executor is <code>null</code>.
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams passed to the
+     *            listener are recycled. If so, the listener must retain any datagram it
+     *            keeps after its callback returns.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final MessageListener<UdpDatagram> listener,
+                                final Executor executor,
+                                final int queueCapacity,
+                                final OverflowPolicy overflowPolicy,
+                                final boolean isBufferRecyclingEnabled) {
+        this(port, relayDiscoveryAddress, isBufferRecyclingEnabled);
+        if (executor == null) {
+            this.listenerChannel = new ListenerOutputChannel<UdpDatagram>(listener);
+        }
+        else {
+            this.listenerChannel = new ListenerOutputChannel<UdpDatagram>(listener,
+                                                                          executor,
+                                                                          queueCapacity,
+                                                                          overflowPolicy,
+                                                                          memoryAccount);
+        }
+        this.pushChannel = isBufferRecyclingEnabled ? this.listenerChannel : detaching(this.listenerChannel);
+    }
+
+    /**
+     * Constructs an instance that delivers incoming datagrams to a batch listener using
+     * tasks submitted to an executor. Each task passes the datagrams that have
+     * accumulated in the queue, up to the maximum batch size, to the listener in a
+     * single call.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param listener
+     *            The listener that will receive incoming datagrams.
+     * @param executor
+     *            The executor used to call the listener, or <code>null</code> to call
+     *            the listener with each datagram on the thread that dispatches the
+     *            datagrams.
+     * @param queueCapacity
+     *            The maximum number of datagrams queued for the executor.
+     *            Ignored if the executor is <code>null</code>.
+     * @param maximumBatchSize
+     *            The maximum number of datagrams passed to the listener in a single
+     *            call. Ignored if the executor is <code>null</code>.
+     * @param overflowPolicy
+     *            The action taken when a datagram arrives while the queue is full.
+     *            Ignored if the executor is <code>null</code>.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final BatchMessageListener<UdpDatagram> listener,
+                                final Executor executor,
+                                final int queueCapacity,
+                                final int maximumBatchSize,
+                                final OverflowPolicy overflowPolicy) {
+        this(port, relayDiscoveryAddress, listener, executor, queueCapacity, maximumBatchSize, overflowPolicy, false);
+    }
+
+    /**
+     * Constructs an instance that delivers incoming datagrams to a batch listener using
+     * tasks submitted to an executor.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay that can be used to join specific multicast
+     *            group(s).
+     * @param listener
+     *            The listener that will receive incoming datagrams.
+     * @param executor
+     *            The executor used to call the listener, or <code>null</code> to call
+     *            the listener with each datagram on the thread that dispatches the
+     *            datagrams.
+     * @param queueCapacity
+     *            The maximum number of datagrams queued for the executor.
+     *            Ignored if the executor is <code>null</code>.
+     * @param maximumBatchSize
+     *            The maximum number of datagrams passed to the listener in a single
+     *            call. Ignored if the executor is <code>null</code>.
+     * @param overflowPolicy
+     *            The action taken when a datagram arrives while the queue is full.
+     *            Ignored if the executor is <code>null</code>.
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams passed to the
+     *            listener are recycled. If so, the listener must retain any datagram it
+     *            keeps after its callback returns.
+     */
+    public AmtMulticastEndpoint(final int port,
+                                final InetAddress relayDiscoveryAddress,
+                                final BatchMessageListener<UdpDatagram> listener,
+                                final Executor executor,
+                                final int queueCapacity,
+                                final int maximumBatchSize,
+                                final OverflowPolicy overflowPolicy,
+                                final boolean isBufferRecyclingEnabled) {
+        this(port, relayDiscoveryAddress, isBufferRecyclingEnabled);
+        if (executor == null) {
+            this.listenerChannel = new ListenerOutputChannel<UdpDatagram>(listener);
+        }
+        else {
+            this.listenerChannel = new ListenerOutputChannel<UdpDatagram>(listener,
+                                                                          executor,
+                                                                          queueCapacity,
+                                                                          maximumBatchSize,
+                                                                          overflowPolicy,
+                                                                          memoryAccount);
+        }
+        this.pushChannel = isBufferRecyclingEnabled ? this.listenerChannel : detaching(this.listenerChannel);
     }
 
     /**
@@ -172,18 +555,45 @@ public final class AmtMulticastEndpoint
      *            The address (anycast or unicast) that the endpoint will use to
      *            locate an AMT relay that can be used to join specific multicast
      *            group(s).
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams delivered by
+     *            the endpoint are recycled.
      */
     protected AmtMulticastEndpoint(final int port,
-                                   final InetAddress relayDiscoveryAddress) {
+                                   final InetAddress relayDiscoveryAddress,
+                                   final boolean isBufferRecyclingEnabled) {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("AmtMulticastEndpoint.AmtMulticastEndpoint",
                                         port,
-                                        Logging.address(relayDiscoveryAddress)));
+                                        Logging.address(relayDiscoveryAddress),
+                                        isBufferRecyclingEnabled));
         }
 
         this.port = port;
         this.relayDiscoveryAddress = relayDiscoveryAddress;
+        this.isBufferRecyclingEnabled = isBufferRecyclingEnabled;
+    }
+
+    /**
+     * Wraps a channel that may keep the datagrams it is sent without retaining them,
+     * detaching the buffer that backs each datagram from its pool before the datagram is
+     * sent to the channel.
+     */
+    private static OutputChannel<UdpDatagram> detaching(final OutputChannel<UdpDatagram> channel) {
+        return new OutputChannel<UdpDatagram>() {
+
+            @Override
+            public void send(UdpDatagram message, int milliseconds) throws IOException, InterruptedException {
+                message.detach();
+                channel.send(message, milliseconds);
+            }
+
+            @Override
+            public void close() throws IOException, InterruptedException {
+                channel.close();
+            }
+        };
     }
 
     /**
@@ -205,6 +615,55 @@ public final class AmtMulticastEndpoint
             this.udpInterface.leave(this.pushChannel);
             this.udpInterface.release();
         }
+
+        if (this.pushQueue != null) {
+            this.pushQueue.stop();
+        }
+
+        if (this.listenerChannel != null) {
+            this.listenerChannel.stop();
+        }
+    }
+
+    /**
+     * Gets the queue used to forward datagrams to the push channel supplied when the
+     * endpoint was constructed. The queue may be used to monitor overflow and delivery
+     * counts.
+     * 
+     * @return The push channel queue or <code>null</code> if the endpoint buffers
+     *         datagrams for retrieval using {@link #receive(int)} or was not constructed
+     *         with a queue capacity.
+     */
+    public final QueuedOutputChannel<UdpDatagram> getPushQueue() {
+        return this.pushQueue;
+    }
+
+    /**
+     * Gets the channel used to deliver datagrams to the listener supplied when the
+     * endpoint was constructed. The channel may be used to monitor overflow, delivery
+     * and listener failure counts.
+     * 
+     * @return The listener channel or <code>null</code> if the endpoint was not
+     *         constructed with a listener.
+     */
+    public final ListenerOutputChannel<UdpDatagram> getListenerChannel() {
+        return this.listenerChannel;
+    }
+
+    /**
+     * Gets the number of datagrams discarded because the internal queue read by
+     * {@link #receive(int)} was full.
+     */
+    public final long getOverflowCount() {
+        return this.overflowCount.get();
+    }
+
+    /**
+     * Indicates whether the receive buffers of the datagrams delivered by this endpoint
+     * are recycled. See the class description.
+     */
+    public final boolean isBufferRecyclingEnabled() {
+        return this.isBufferRecyclingEnabled;
     }
 
     /**
@@ -225,6 +684,54 @@ public final class AmtMulticastEndpoint
         return this.relayDiscoveryAddress;
     }
 
+    /**
+     * Gets the time taken to receive the first valid Relay Advertisement after the
+     * endpoint started relay discovery. Used to track AMT join latency.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no advertisement has been
+     *         received or the endpoint has not joined any group.
+     */
+    public final long getTimeToFirstAdvertisement() {
+        AmtUDPInterface udpInterface = this.udpInterface;
+        return udpInterface != null ? udpInterface.getTimeToFirstAdvertisement() : -1;
+    }
+
+    /**
+     * Gets the time taken to receive the first Multicast Data message after the
+     * endpoint started relay discovery. Used to track AMT join latency.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no data has been received
+     *         or the endpoint has not joined any group.
+     */
+    public final long getTimeToFirstData() {
+        AmtUDPInterface udpInterface = this.udpInterface;
+        return udpInterface != null ? udpInterface.getTimeToFirstData() : -1;
+    }
+
+    /**
+     * Gets the number of multicast data packets received by the AMT interface used by
+     * this endpoint that failed checksum verification while the specified policy was
+     * in effect. See {@link AmtPseudoInterface#setChecksumPolicy(ChecksumPolicy)}.
+     * 
+     * @return The failure count or zero if the endpoint has not joined any group.
+     */
+    public final long getChecksumFailureCount(final ChecksumPolicy policy) {
+        AmtUDPInterface udpInterface = this.udpInterface;
+        return udpInterface != null ? udpInterface.getChecksumFailureCount(policy) : 0;
+    }
+
+    /**
+     * Gets the number of datagrams received from the relay by the AMT interface used by
+     * this endpoint that were discarded because the handler queue of a tunnel serviced
+     * by a selector loop was full.
+     * 
+     * @return The overflow count or zero if the endpoint has not joined any group.
+     */
+    public final long getHandlerQueueOverflowCount() {
+        AmtUDPInterface udpInterface = this.udpInterface;
+        return udpInterface != null ? udpInterface.getHandlerQueueOverflowCount() : 0;
+    }
+
     @Override
     public final void join(final InetAddress groupAddress) throws IOException, InterruptedException {
 
@@ -334,8 +841,18 @@ public final class AmtMulticastEndpoint
         }
     }
 
+    /**
+     * Retrieves the next datagram from the internal queue.
+     * If {@link #isBufferRecyclingEnabled() buffer recycling} is enabled, the caller must
+     * {@link UdpDatagram#release() release} each datagram returned by this method once
+     * it is done with it so that the receive buffer may be recycled. Datagrams that
+     * remain in the queue when the endpoint is closed are not returned to the pool.
+     */
     @Override
     public final UdpDatagram receive(final int milliseconds) throws IOException, InterruptedIOException, InterruptedException {
+        if (this.datagramQueue == null) {
+            throw new IOException("datagrams are delivered to a push channel or listener");
+        }
         return this.datagramQueue.receive(milliseconds);
     }
 
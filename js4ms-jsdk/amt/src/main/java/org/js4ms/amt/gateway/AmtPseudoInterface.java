@@ -25,6 +25,8 @@ package org.js4ms.amt.gateway;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -32,6 +34,7 @@ import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
 import org.js4ms.io.channel.OutputChannel;
 import org.js4ms.io.channel.OutputChannelTee;
+import org.js4ms.io.net.SelectorLoopGroup;
 import org.js4ms.ip.IPPacket;
 import org.js4ms.ip.ipv4.IPv4Packet;
 
@@ -63,10 +66,16 @@ public final class AmtPseudoInterface {
 
     private final OutputChannelTee<IPPacket> dispatchChannel;
 
+    private final MulticastDataTee dataTee;
+
     private AmtTunnelEndpoint ipv4Endpoint = null;
 
     private AmtTunnelEndpoint ipv6Endpoint = null;
 
+    private volatile ChecksumPolicy checksumPolicy = ChecksumPolicy.ALWAYS;
+
+    private volatile int checksumSampleInterval = ChecksumVerifier.DEFAULT_SAMPLE_INTERVAL;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -87,6 +96,8 @@ public final class AmtPseudoInterface {
         this.release();
         
         this.manager = manager;
+        this.checksumPolicy = manager.getChecksumPolicy();
+        this.checksumSampleInterval = manager.getChecksumSampleInterval();
 
     }
 
@@ -110,6 +121,7 @@ public final class AmtPseudoInterface {
         this.relayDiscoveryAddress = relayDiscoveryAddress;
 
         this.dispatchChannel = new OutputChannelTee<IPPacket>();
+        this.dataTee = new MulticastDataTee();
     }
 
     /**
@@ -117,6 +129,7 @@ public final class AmtPseudoInterface {
      */
     public void addOutputChannel(final OutputChannel<IPPacket> destinationChannel) {
         this.dispatchChannel.add(destinationChannel);
+        this.dataTee.add(destinationChannel);
     }
 
     /**
@@ -124,6 +137,7 @@ public final class AmtPseudoInterface {
      */
     public void removeOutputChannel(final OutputChannel<IPPacket> destinationChannel) {
         this.dispatchChannel.remove(destinationChannel);
+        this.dataTee.remove(destinationChannel);
     }
 
     /**
@@ -187,6 +201,156 @@ public final class AmtPseudoInterface {
         }
     }
 
+    /**
+     * Gets the time taken to receive the first valid Relay Advertisement in the most
+     * recent relay discovery cycle of any tunnel used by this interface.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no advertisement has been received.
+     */
+    public long getTimeToFirstAdvertisement() {
+        return earliest(this.ipv4Endpoint != null ? this.ipv4Endpoint.getTimeToFirstAdvertisement() : -1,
+                        this.ipv6Endpoint != null ? this.ipv6Endpoint.getTimeToFirstAdvertisement() : -1);
+    }
+
+    /**
+     * Gets the time taken to receive the first Multicast Data message in the most
+     * recent relay discovery cycle of any tunnel used by this interface.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no data has been received.
+     */
+    public long getTimeToFirstData() {
+        return earliest(this.ipv4Endpoint != null ? this.ipv4Endpoint.getTimeToFirstData() : -1,
+                        this.ipv6Endpoint != null ? this.ipv6Endpoint.getTimeToFirstData() : -1);
+    }
+
+    /**
+     * Gets the policy used to verify the checksums of packets carried by AMT
+     * Multicast Data messages.
+     */
+    public ChecksumPolicy getChecksumPolicy() {
+        return this.checksumPolicy;
+    }
+
+    /**
+     * Sets the policy used to verify the checksums of packets carried by AMT
+     * Multicast Data messages. The policy is applied to packets received after this call.
+     * 
+     * @param policy
+     */
+    public synchronized void setChecksumPolicy(final ChecksumPolicy policy) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("AmtPseudoInterface.setChecksumPolicy", policy));
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("checksum policy must be non-null");
+        }
+
+        this.checksumPolicy = policy;
+        if (this.ipv4Endpoint != null) {
+            this.ipv4Endpoint.getChecksumVerifier().setPolicy(policy);
+        }
+        if (this.ipv6Endpoint != null) {
+            this.ipv6Endpoint.getChecksumVerifier().setPolicy(policy);
+        }
+    }
+
+    /**
+     * Gets the number of packets per verified packet when the checksum policy is
+     * {@link ChecksumPolicy#SAMPLED}.
+     */
+    public int getChecksumSampleInterval() {
+        return this.checksumSampleInterval;
+    }
+
+    /**
+     * Sets the number of packets per verified packet when the checksum policy is
+     * {@link ChecksumPolicy#SAMPLED}.
+     * 
+     * @param sampleInterval
+     *            A value greater than zero.
+     */
+    public synchronized void setChecksumSampleInterval(final int sampleInterval) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("AmtPseudoInterface.setChecksumSampleInterval", sampleInterval));
+        }
+
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("checksum sample interval must be greater than zero");
+        }
+
+        this.checksumSampleInterval = sampleInterval;
+        if (this.ipv4Endpoint != null) {
+            this.ipv4Endpoint.getChecksumVerifier().setSampleInterval(sampleInterval);
+        }
+        if (this.ipv6Endpoint != null) {
+            this.ipv6Endpoint.getChecksumVerifier().setSampleInterval(sampleInterval);
+        }
+    }
+
+    /**
+     * Gets the number of multicast data packets received by the tunnels of this
+     * interface that failed checksum verification while the specified policy was in
+     * effect. Failures under the {@link ChecksumPolicy#LAZY} policy are counted when
+     * the consumer verifies the datagram.
+     * 
+     * @param policy
+     */
+    public long getChecksumFailureCount(final ChecksumPolicy policy) {
+        AmtTunnelEndpoint ipv4Endpoint = this.ipv4Endpoint;
+        AmtTunnelEndpoint ipv6Endpoint = this.ipv6Endpoint;
+        return (ipv4Endpoint != null ? ipv4Endpoint.getChecksumVerifier().getFailureCount(policy) : 0)
+               + (ipv6Endpoint != null ? ipv6Endpoint.getChecksumVerifier().getFailureCount(policy) : 0);
+    }
+
+    /**
+     * Gets the number of datagrams received by the tunnels of this interface that were
+     * discarded because a tunnel handler queue was full. Only tunnels serviced by a
+     * selector loop queue datagrams for a handler thread.
+     */
+    public long getHandlerQueueOverflowCount() {
+        AmtTunnelEndpoint ipv4Endpoint = this.ipv4Endpoint;
+        AmtTunnelEndpoint ipv6Endpoint = this.ipv6Endpoint;
+        return (ipv4Endpoint != null ? ipv4Endpoint.getHandlerQueueOverflowCount() : 0)
+               + (ipv6Endpoint != null ? ipv6Endpoint.getHandlerQueueOverflowCount() : 0);
+    }
+
+    private static long earliest(final long first, final long second) {
+        if (first < 0) {
+            return second;
+        }
+        return second < 0 ? first : Math.min(first, second);
+    }
+
+    /**
+     * Gets the discovery addresses raced against the relay discovery address.
+     */
+    private Collection<InetAddress> getAlternateRelayDiscoveryAddresses() {
+        if (this.manager != null) {
+            return this.manager.getAlternateRelayDiscoveryAddresses();
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Gets the cache used to record and recall the relay selected by the tunnel endpoints.
+     */
+    private RelayCache getRelayCache() {
+        return this.manager != null ? this.manager.getRelayCache() : null;
+    }
+
+    /**
+     * Gets the selector loops used to service the tunnel endpoints of this interface.
+     * 
+     * @return The event loop group configured in the interface manager or
+     *         <code>null</code> if each tunnel endpoint should use its own thread.
+     */
+    private SelectorLoopGroup getEventLoopGroup() {
+        return this.manager != null ? this.manager.getEventLoopGroup() : null;
+    }
+
     /**
      * @param packet
      * @throws IOException
@@ -200,16 +364,28 @@ public final class AmtPseudoInterface {
         if (packet.getVersion() == IPv4Packet.INTERNET_PROTOCOL_VERSION) {
             if (this.ipv4Endpoint == null) {
                 this.ipv4Endpoint = new AmtTunnelEndpoint(this.relayDiscoveryAddress,
+                                                          getAlternateRelayDiscoveryAddresses(),
                                                           this.dispatchChannel,
-                                                          AmtTunnelEndpoint.Protocol.IPv4);
+                                                          this.dataTee,
+                                                          AmtTunnelEndpoint.Protocol.IPv4,
+                                                          getEventLoopGroup(),
+                                                          getRelayCache(),
+                                                          new ChecksumVerifier(this.checksumPolicy,
+                                                                               this.checksumSampleInterval));
             }
             this.ipv4Endpoint.send(packet);
         }
         else {
             if (this.ipv6Endpoint == null) {
                 this.ipv6Endpoint = new AmtTunnelEndpoint(this.relayDiscoveryAddress,
+                                                          getAlternateRelayDiscoveryAddresses(),
                                                           this.dispatchChannel,
-                                                          AmtTunnelEndpoint.Protocol.IPv6);
+                                                          this.dataTee,
+                                                          AmtTunnelEndpoint.Protocol.IPv6,
+                                                          getEventLoopGroup(),
+                                                          getRelayCache(),
+                                                          new ChecksumVerifier(this.checksumPolicy,
+                                                                               this.checksumSampleInterval));
             }
             this.ipv6Endpoint.send(packet);
         }
@@ -23,15 +23,21 @@ package org.js4ms.amt.gateway;
  */
 
 
+import java.io.File;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.io.net.SelectorLoopGroup;
 
 
 /**
@@ -43,6 +49,26 @@ import org.js4ms.common.util.logging.Logging;
  * The AmtPseudoInterfaceManager and AmtPseudoInterface classes are not normally accessed directly -
  * applications should use the {@link AmtMulticastEndpoint)} class when AMT functionality
  * is required.
+ * <p>
+ * By default each AMT tunnel uses its own receive thread. Setting the
+ * {@value #EVENT_LOOP_THREADS_PROPERTY} system property to a positive value, or calling
+ * {@link #setEventLoopGroup(SelectorLoopGroup)}, causes the tunnels of subsequently
+ * constructed interfaces to share a fixed number of selector loop threads instead.
+ * <p>
+ * Relay discovery messages are sent to the relay discovery address of each interface
+ * and, in parallel, to any alternate discovery addresses specified using the
+ * {@value #ALTERNATE_DISCOVERY_ADDRESSES_PROPERTY} system property or
+ * {@link #setAlternateRelayDiscoveryAddresses(Collection)}.
+ * <p>
+ * The relay selected for each discovery address may be recorded in a {@link RelayCache}
+ * so that a restarted gateway can contact the relay without repeating relay discovery.
+ * The cache is enabled by setting the {@value #RELAY_CACHE_FILE_PROPERTY} system
+ * property or by calling {@link #setRelayCache(RelayCache)}.
+ * <p>
+ * The {@link ChecksumPolicy} used by new interfaces to verify the packets carried by
+ * AMT Multicast Data messages is specified using the {@value #CHECKSUM_POLICY_PROPERTY}
+ * and {@value #CHECKSUM_SAMPLE_INTERVAL_PROPERTY} system properties or by calling
+ * {@link #setChecksumPolicy(ChecksumPolicy)} and {@link #setChecksumSampleInterval(int)}.
  * 
  * @author Gregory Bumgardner (gbumgard)
  */
@@ -55,6 +81,45 @@ public final class AmtPseudoInterfaceManager {
      */
     public static final Logger logger = Logger.getLogger(AmtPseudoInterfaceManager.class.getName());
 
+    /**
+     * Name of the system property used to specify the number of selector loop threads
+     * shared by all AMT tunnels. A value of zero, the default, gives each tunnel its
+     * own receive thread.
+     */
+    public static final String EVENT_LOOP_THREADS_PROPERTY = "org.js4ms.amt.gateway.eventloop.threads";
+
+    /**
+     * Name of the system property used to specify a comma-separated list of relay
+     * discovery or anycast addresses that are raced against the discovery address
+     * of each interface.
+     */
+    public static final String ALTERNATE_DISCOVERY_ADDRESSES_PROPERTY = "org.js4ms.amt.gateway.discovery.alternates";
+
+    /**
+     * Name of the system property used to specify the file used to cache the relay
+     * selected for each relay discovery address. The cache is disabled if not set.
+     */
+    public static final String RELAY_CACHE_FILE_PROPERTY = "org.js4ms.amt.gateway.relaycache.file";
+
+    /**
+     * Name of the system property used to specify the time-to-live of relay cache
+     * entries in seconds.
+     */
+    public static final String RELAY_CACHE_TTL_PROPERTY = "org.js4ms.amt.gateway.relaycache.ttl";
+
+    /**
+     * Name of the system property used to specify the checksum policy - one of
+     * <code>always</code> (the default), <code>sampled</code>, <code>lazy</code>
+     * or <code>never</code>.
+     */
+    public static final String CHECKSUM_POLICY_PROPERTY = "org.js4ms.amt.gateway.checksum.policy";
+
+    /**
+     * Name of the system property used to specify the number of packets per verified
+     * packet when the checksum policy is <code>sampled</code>.
+     */
+    public static final String CHECKSUM_SAMPLE_INTERVAL_PROPERTY = "org.js4ms.amt.gateway.checksum.interval";
+
     /**
      * The singleton AmtTunnelTransport instance.
      */
@@ -98,6 +163,16 @@ public final class AmtPseudoInterfaceManager {
      */
     private HashMap<InetAddress, AmtPseudoInterface> interfaces;
 
+    private SelectorLoopGroup eventLoopGroup = null;
+
+    private List<InetAddress> alternateRelayDiscoveryAddresses = Collections.emptyList();
+
+    private RelayCache relayCache = null;
+
+    private ChecksumPolicy checksumPolicy = ChecksumPolicy.ALWAYS;
+
+    private int checksumSampleInterval = ChecksumVerifier.DEFAULT_SAMPLE_INTERVAL;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -106,6 +181,218 @@ public final class AmtPseudoInterfaceManager {
      */
     private AmtPseudoInterfaceManager() {
         this.interfaces = new HashMap<InetAddress, AmtPseudoInterface>();
+
+        int threadCount = 0;
+        String propertyValue = System.getProperty(EVENT_LOOP_THREADS_PROPERTY);
+        if (propertyValue != null) {
+            try {
+                threadCount = Integer.parseInt(propertyValue);
+            }
+            catch (NumberFormatException e) {
+                logger.warning(log.msg("invalid value for " + EVENT_LOOP_THREADS_PROPERTY + " property - " + propertyValue));
+            }
+        }
+
+        propertyValue = System.getProperty(ALTERNATE_DISCOVERY_ADDRESSES_PROPERTY);
+        if (propertyValue != null) {
+            ArrayList<InetAddress> addresses = new ArrayList<InetAddress>();
+            for (String address : propertyValue.split(",")) {
+                address = address.trim();
+                if (address.length() > 0) {
+                    try {
+                        addresses.add(InetAddress.getByName(address));
+                    }
+                    catch (UnknownHostException e) {
+                        logger.warning(log.msg("invalid address in " + ALTERNATE_DISCOVERY_ADDRESSES_PROPERTY + " property - "
+                                               + address));
+                    }
+                }
+            }
+            this.alternateRelayDiscoveryAddresses = Collections.unmodifiableList(addresses);
+        }
+
+        propertyValue = System.getProperty(RELAY_CACHE_FILE_PROPERTY);
+        if (propertyValue != null) {
+            long timeToLive = RelayCache.DEFAULT_TIME_TO_LIVE;
+            String ttlValue = System.getProperty(RELAY_CACHE_TTL_PROPERTY);
+            if (ttlValue != null) {
+                try {
+                    timeToLive = Long.parseLong(ttlValue) * 1000;
+                }
+                catch (NumberFormatException e) {
+                    logger.warning(log.msg("invalid value for " + RELAY_CACHE_TTL_PROPERTY + " property - " + ttlValue));
+                }
+            }
+            this.relayCache = new RelayCache(new File(propertyValue), timeToLive);
+        }
+
+        propertyValue = System.getProperty(CHECKSUM_POLICY_PROPERTY);
+        if (propertyValue != null) {
+            try {
+                this.checksumPolicy = ChecksumPolicy.valueOf(propertyValue.trim().toUpperCase());
+            }
+            catch (IllegalArgumentException e) {
+                logger.warning(log.msg("invalid value for " + CHECKSUM_POLICY_PROPERTY + " property - " + propertyValue));
+            }
+        }
+
+        propertyValue = System.getProperty(CHECKSUM_SAMPLE_INTERVAL_PROPERTY);
+        if (propertyValue != null) {
+            try {
+                int sampleInterval = Integer.parseInt(propertyValue);
+                if (sampleInterval > 0) {
+                    this.checksumSampleInterval = sampleInterval;
+                }
+                else {
+                    logger.warning(log.msg("invalid value for " + CHECKSUM_SAMPLE_INTERVAL_PROPERTY + " property - "
+                                           + propertyValue));
+                }
+            }
+            catch (NumberFormatException e) {
+                logger.warning(log.msg("invalid value for " + CHECKSUM_SAMPLE_INTERVAL_PROPERTY + " property - " + propertyValue));
+            }
+        }
+
+        if (threadCount > 0) {
+            try {
+                this.eventLoopGroup = new SelectorLoopGroup("AMT Gateway Event Loop", threadCount);
+            }
+            catch (IOException e) {
+                logger.warning(log.msg("cannot construct AMT gateway event loops - " + e.getClass().getName() + ":" + e.getMessage()));
+            }
+        }
+    }
+
+    /**
+     * Gets the relay discovery addresses that are raced against the discovery address
+     * of each new interface.
+     * 
+     * @return An unmodifiable list of addresses. May be empty.
+     */
+    public synchronized List<InetAddress> getAlternateRelayDiscoveryAddresses() {
+        return this.alternateRelayDiscoveryAddresses;
+    }
+
+    /**
+     * Sets the relay discovery or anycast addresses that are raced against the
+     * discovery address of interfaces constructed after this call.
+     * Existing interfaces are not affected.
+     * 
+     * @param addresses
+     *            The alternate discovery addresses. May be empty.
+     */
+    public synchronized void setAlternateRelayDiscoveryAddresses(final Collection<InetAddress> addresses) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(log.entry("AmtPseudoInterfaceManager.setAlternateRelayDiscoveryAddresses", addresses));
+        }
+
+        this.alternateRelayDiscoveryAddresses = Collections.unmodifiableList(new ArrayList<InetAddress>(addresses));
+    }
+
+    /**
+     * Gets the cache used to record the relay selected for each relay discovery address.
+     * 
+     * @return The relay cache or <code>null</code> if relays are not cached.
+     */
+    public synchronized RelayCache getRelayCache() {
+        return this.relayCache;
+    }
+
+    /**
+     * Sets the cache used to record and recall the relay selected for each relay
+     * discovery address by interfaces constructed after this call.
+     * 
+     * @param relayCache
+     *            The relay cache or <code>null</code> to disable caching.
+     */
+    public synchronized void setRelayCache(final RelayCache relayCache) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(log.entry("AmtPseudoInterfaceManager.setRelayCache", relayCache));
+        }
+
+        this.relayCache = relayCache;
+    }
+
+    /**
+     * Gets the checksum policy applied by new interfaces.
+     */
+    public synchronized ChecksumPolicy getChecksumPolicy() {
+        return this.checksumPolicy;
+    }
+
+    /**
+     * Sets the checksum policy applied by interfaces constructed after this call.
+     * Use {@link AmtPseudoInterface#setChecksumPolicy(ChecksumPolicy)} to change the
+     * policy of an existing interface.
+     * 
+     * @param policy
+     */
+    public synchronized void setChecksumPolicy(final ChecksumPolicy policy) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(log.entry("AmtPseudoInterfaceManager.setChecksumPolicy", policy));
+        }
+
+        if (policy == null) {
+            throw new IllegalArgumentException("checksum policy must be non-null");
+        }
+
+        this.checksumPolicy = policy;
+    }
+
+    /**
+     * Gets the number of packets per verified packet used by new interfaces when the
+     * checksum policy is {@link ChecksumPolicy#SAMPLED}.
+     */
+    public synchronized int getChecksumSampleInterval() {
+        return this.checksumSampleInterval;
+    }
+
+    /**
+     * Sets the number of packets per verified packet used by interfaces constructed
+     * after this call when the checksum policy is {@link ChecksumPolicy#SAMPLED}.
+     * 
+     * @param sampleInterval
+     *            A value greater than zero.
+     */
+    public synchronized void setChecksumSampleInterval(final int sampleInterval) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(log.entry("AmtPseudoInterfaceManager.setChecksumSampleInterval", sampleInterval));
+        }
+
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("checksum sample interval must be greater than zero");
+        }
+
+        this.checksumSampleInterval = sampleInterval;
+    }
+
+    /**
+     * Gets the selector loops shared by the AMT tunnels of new interfaces.
+     * 
+     * @return The event loop group or <code>null</code> if each tunnel uses its own thread.
+     */
+    public synchronized SelectorLoopGroup getEventLoopGroup() {
+        return this.eventLoopGroup;
+    }
+
+    /**
+     * Sets the selector loops shared by the AMT tunnels of interfaces constructed after
+     * this call. Existing interfaces are not affected.
+     * 
+     * @param eventLoopGroup
+     *            The event loop group or <code>null</code> to give each tunnel its own thread.
+     */
+    public synchronized void setEventLoopGroup(final SelectorLoopGroup eventLoopGroup) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(log.entry("AmtPseudoInterfaceManager.setEventLoopGroup", eventLoopGroup));
+        }
+
+        this.eventLoopGroup = eventLoopGroup;
     }
 
     /**
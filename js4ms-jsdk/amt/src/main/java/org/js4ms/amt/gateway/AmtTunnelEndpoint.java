@@ -32,8 +32,15 @@ import java.net.ProtocolException;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.nio.ByteBuffer;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -45,10 +52,20 @@ import org.js4ms.amt.message.AmtRelayAdvertisementMessage;
 import org.js4ms.amt.message.AmtRelayDiscoveryMessage;
 import org.js4ms.amt.message.AmtRequestMessage;
 import org.js4ms.amt.message.AmtTeardownMessage;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.pool.ByteBufferPool;
+import org.js4ms.common.util.task.TimingWheel;
+import org.js4ms.common.util.task.TimingWheelTask;
 import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.io.channel.SpscMessagePipe;
+import org.js4ms.io.net.SelectorLoop;
+import org.js4ms.io.net.SelectorLoopGroup;
+import org.js4ms.io.net.UdpChannelEndpoint;
 import org.js4ms.io.net.UdpDatagram;
+import org.js4ms.io.net.UdpEndpoint;
 import org.js4ms.io.net.UdpInputChannel;
 import org.js4ms.io.net.UdpOutputChannel;
 import org.js4ms.io.net.UdpSocketEndpoint;
@@ -76,6 +93,30 @@ import org.js4ms.ip.protocol.mld.MLDv2ReportMessage;
  * An AmtTunnelEndpoint provides functions for registering {@link OutputChannel} objects
  * to receive packets containing IGMP/MLD messages and multicast data extracted from the
  * Membership Query and Multicast Data messages.
+ * <p>
+ * By default each tunnel endpoint uses its own thread to receive messages from the relay.
+ * If a {@link SelectorLoopGroup} is supplied, the tunnel socket is instead registered
+ * with one of the loops in the group, so a large number of tunnels can be serviced by
+ * a small, fixed number of threads. The loop thread only drains the socket - the
+ * datagrams are passed through a bounded per-tunnel queue to a shared pool of handler
+ * threads that parse and dispatch them, so a consumer that blocks only delays its
+ * own tunnel. Datagrams that arrive while the queue is full are discarded and counted
+ * (see {@link #getHandlerQueueOverflowCount()}).
+ * Retransmission and query timers always run on the shared {@link TimingWheel}.
+ * <p>
+ * Relay discovery races the primary discovery address against any alternate
+ * discovery addresses. The same Relay Discovery message is sent to every address and
+ * retransmitted with exponential backoff. The first valid advertisement selects the
+ * relay; relays advertised later in the same cycle are used as fallbacks if the
+ * selected relay does not respond to Request messages.
+ * If a {@link RelayCache} is supplied, the endpoint starts by sending a Request
+ * message to the cached relay and only falls back to relay discovery if that relay
+ * does not respond.
+ * <p>
+ * The IPv4 header and UDP checksums of the packets carried by Multicast Data messages
+ * are verified according to the {@link ChecksumPolicy} applied by the
+ * {@link ChecksumVerifier} supplied to the endpoint. Packets that fail verification
+ * are discarded.
  * 
  * @author Greg Bumgardner (gbumgard)
  */
@@ -99,12 +140,59 @@ class AmtTunnelEndpoint
      */
     static final short AMT_PORT = 2268;
 
+    /**
+     * The delay before the first retransmission of a Relay Discovery message.
+     * The delay doubles with each retransmission up to {@link #DISCOVERY_RETRY_PERIOD}.
+     */
+    static final long DISCOVERY_INITIAL_RETRY_PERIOD = 250; // 250 ms
+
     static final long DISCOVERY_RETRY_PERIOD = 10 * 1000; // 10 secs
 
+    /**
+     * The delay before the first retransmission of a Request message.
+     * The delay doubles with each retransmission up to {@link #REQUEST_RETRY_PERIOD}.
+     */
+    static final long REQUEST_INITIAL_RETRY_PERIOD = 500; // 500 ms
+
     static final long REQUEST_RETRY_PERIOD = 10 * 1000; // 10 secs
 
     static final int MAX_REASSEMBLY_CACHE_SIZE = 100;
 
+    /**
+     * The maximum number of datagrams drained from the tunnel socket in a single
+     * receive call.
+     */
+    static final int RECEIVE_BATCH_SIZE = 32;
+
+    /**
+     * The number of received datagrams that a tunnel serviced by a selector loop may
+     * hold while they wait for a handler thread.
+     */
+    static final int HANDLER_QUEUE_CAPACITY = 1024;
+
+    /**
+     * Handles the datagrams received by tunnels serviced by a selector loop.
+     * Each tunnel runs at most one handler task at a time, so the pool only grows
+     * while handlers for several tunnels are blocked, and idle threads exit.
+     */
+    private static final ThreadPoolExecutor HANDLER_EXECUTOR = new ThreadPoolExecutor(0, Integer.MAX_VALUE,
+                                                                                      60, TimeUnit.SECONDS,
+                                                                                      new SynchronousQueue<Runnable>(),
+                                                                                      new DaemonThreadFactory("AMT Tunnel Handler"));
+
+    /**
+     * Supplies receive buffers for tunnels serviced by a selector loop.
+     * Heap buffers are used because the message parsers require array-backed buffers.
+     * A buffer is returned to the pool once the endpoint and every consumer that
+     * retained a datagram dispatched from it have released their references, unless a
+     * consumer has detached it. An {@link AmtMulticastEndpoint} detaches the buffers of
+     * the datagrams it delivers unless it was constructed with
+     * {@link AmtMulticastEndpoint#isBufferRecyclingEnabled() buffer recycling} enabled.
+     */
+    static final ByteBufferPool RECEIVE_BUFFER_POOL = new ByteBufferPool(RECEIVE_BATCH_SIZE,
+                                                                         UdpChannelEndpoint.DEFAULT_BUFFER_SIZE,
+                                                                         false);
+
     /*-- Member Variables ---------------------------------------------------*/
 
     protected final Log log = new Log(this);
@@ -116,7 +204,13 @@ class AmtTunnelEndpoint
 
     private OutputChannel<IPPacket> dispatchChannel = null;
 
-    private UdpSocketEndpoint udpEndpoint;
+    private MulticastDataSink dataSink = null;
+
+    private final MulticastDataView dataView = new MulticastDataView();
+
+    private final ChecksumVerifier checksumVerifier;
+
+    private UdpEndpoint udpEndpoint;
 
     private UdpOutputChannel udpOutputChannel;
 
@@ -126,17 +220,109 @@ class AmtTunnelEndpoint
 
     private Thread handlerThread;
 
-    private boolean isRunning = false;
+    private final SelectorLoopGroup eventLoopGroup;
+
+    private final RelayCache relayCache;
+
+    private SelectorLoop eventLoop;
+
+    /**
+     * Called by the selector loop when the tunnel socket has datagrams available.
+     */
+    private final SelectorLoop.Handler readHandler = new SelectorLoop.Handler() {
+
+        @Override
+        public void onReadable() {
+            AmtTunnelEndpoint.this.handleReadable();
+        }
+    };
+
+    /**
+     * Holds the datagrams drained by the read handler. Only accessed on the loop thread.
+     */
+    private final ArrayList<UdpDatagram> readyDatagrams = new ArrayList<UdpDatagram>(RECEIVE_BATCH_SIZE);
+
+    /**
+     * Passes datagrams from the loop thread to the handler task.
+     * <code>null</code> if the endpoint uses its own receive thread.
+     */
+    private final SpscMessagePipe<UdpDatagram> handlerQueue;
+
+    /**
+     * Set while a handler task is scheduled or running, so that at most one thread
+     * consumes the handler queue.
+     */
+    private final AtomicBoolean isHandlerScheduled = new AtomicBoolean();
+
+    private final AtomicLong handlerQueueOverflowCount = new AtomicLong();
+
+    /**
+     * Handles the datagrams queued by the read handler. Run by the handler executor.
+     */
+    private final Runnable handlerTask = new Runnable() {
+
+        @Override
+        public void run() {
+            AmtTunnelEndpoint.this.handleQueuedDatagrams();
+        }
+    };
+
+    private volatile boolean isRunning = false;
 
     private final InetAddress relayDiscoveryAddress;
 
-    private final Timer taskTimer;
+    /**
+     * The primary relay discovery address followed by any alternate addresses.
+     */
+    private final InetAddress[] relayDiscoveryAddresses;
 
-    private TimerTask discoveryTask = null;
+    private final TimingWheel taskTimer;
+
+    /**
+     * Sends AMT Relay Discovery messages until an advertisement is received.
+     */
+    private final TimingWheelTask discoveryTask = new TimingWheelTask() {
+
+        @Override
+        public void run() {
+            if (AmtTunnelEndpoint.logger.isLoggable(Level.FINER)) {
+                AmtTunnelEndpoint.logger.finer(AmtTunnelEndpoint.this.log.msg("running discovery task"));
+            }
+            synchronized (AmtTunnelEndpoint.this.lock) {
+                try {
+                    if (AmtTunnelEndpoint.this.discoveryRetransmissionCount < AmtTunnelEndpoint.this.discoveryMaxRetransmissions) {
+                        AmtTunnelEndpoint.this.discoveryRetransmissionCount++;
+                        AmtTunnelEndpoint.this.sendRelayDiscoveryMessage();
+
+                        // Back off exponentially until an advertisement is received
+                        long interval = AmtTunnelEndpoint.this.discoveryRetransmissionInterval;
+                        AmtTunnelEndpoint.this.taskTimer.schedule(this, interval);
+                        AmtTunnelEndpoint.this.discoveryRetransmissionInterval = Math.min(interval * 2, DISCOVERY_RETRY_PERIOD);
+                    }
+                    else {
+                        AmtTunnelEndpoint.logger
+                                        .info(AmtTunnelEndpoint.this.log
+                                                        .msg("maximum allowable relay discovery message retransmissions exceeded"));
+                        AmtTunnelEndpoint.this.discoveryRetransmissionCount = 0;
+                        AmtTunnelEndpoint.this.lastDiscoveryMessageSent = null;
+                        this.cancel();
+                    }
+                }
+                catch (Exception e) {
+                    AmtTunnelEndpoint.logger.warning(AmtTunnelEndpoint.this.log
+                                    .msg("attempt to send AMT Relay Discovery Message failed - "
+                                         + e.getMessage()));
+                    AmtTunnelEndpoint.this.discoveryRetransmissionCount = 0;
+                    AmtTunnelEndpoint.this.lastDiscoveryMessageSent = null;
+                    this.cancel();
+                }
+            }
+        }
+    };
 
     private AmtRelayDiscoveryMessage lastDiscoveryMessageSent = null;
 
-    private long discoveryRetransmissionInterval = DISCOVERY_RETRY_PERIOD;
+    private long discoveryRetransmissionInterval = DISCOVERY_INITIAL_RETRY_PERIOD;
 
     private int discoveryMaxRetransmissions = Integer.MAX_VALUE;
 
@@ -144,17 +330,80 @@ class AmtTunnelEndpoint
 
     private AmtRelayAdvertisementMessage lastAdvertisementMessageReceived = null;
 
-    private InetAddress relayAddress = null;
+    private volatile InetAddress relayAddress = null;
+
+    /**
+     * Relays advertised in response to the current discovery message after the first
+     * advertisement was accepted. Tried in turn if the selected relay does not respond.
+     */
+    private final ArrayDeque<InetAddress> alternateRelayAddresses = new ArrayDeque<InetAddress>();
+
+    /**
+     * The time at which the current relay discovery cycle started.
+     */
+    private volatile long discoveryStartTime = 0;
+
+    private volatile long timeToFirstAdvertisement = -1;
+
+    private volatile long timeToFirstData = -1;
 
     private Protocol protocol = null;
 
-    private TimerTask requestTask = null;
+    /**
+     * Sends AMT Request messages until a membership query is received.
+     */
+    private final TimingWheelTask requestTask = new TimingWheelTask() {
+
+        @Override
+        public void run() {
+            if (AmtTunnelEndpoint.logger.isLoggable(Level.FINER)) {
+                AmtTunnelEndpoint.logger.finer(AmtTunnelEndpoint.this.log.msg("running request task"));
+            }
+            synchronized (AmtTunnelEndpoint.this.lock) {
+                try {
+                    if (AmtTunnelEndpoint.this.requestRetransmissionCount < AmtTunnelEndpoint.this.requestMaxRetransmissions) {
+                        AmtTunnelEndpoint.this.requestRetransmissionCount++;
+                        AmtTunnelEndpoint.this.sendRequestMessage();
+
+                        // Back off exponentially until a query is received
+                        long interval = AmtTunnelEndpoint.this.requestRetransmissionInterval;
+                        AmtTunnelEndpoint.this.taskTimer.schedule(this, interval);
+                        AmtTunnelEndpoint.this.requestRetransmissionInterval = Math.min(interval * 2, REQUEST_RETRY_PERIOD);
+                    }
+                    else {
+
+                        // The relay did not respond with a query within the
+                        // retransmission interval
+                        AmtTunnelEndpoint.logger
+                                        .info(AmtTunnelEndpoint.this.log
+                                                        .msg("maximum allowable request message retransmissions exceeded"));
+                        AmtTunnelEndpoint.this.requestRetransmissionCount = 0;
+                        AmtTunnelEndpoint.this.lastRequestMessageSent = null;
+                        this.cancel();
+
+                        // Try the next relay that answered discovery or restart discovery
+                        // to locate another relay
+                        AmtTunnelEndpoint.this.startAlternateRelayRequestTask();
+                    }
+                }
+                catch (Exception e) {
+                    // Schedule request task for immediate execution with short
+                    // retry period
+                    AmtTunnelEndpoint.logger.warning(AmtTunnelEndpoint.this.log
+                                    .msg("attempt to send AMT Request Message failed - "
+                                         + e.getMessage()));
+                    AmtTunnelEndpoint.this.requestRetransmissionCount = 0;
+                    this.cancel();
+                }
+            }
+        }
+    };
 
     private AmtRequestMessage lastRequestMessageSent = null;
 
-    private long requestRetransmissionInterval = REQUEST_RETRY_PERIOD;
+    private long requestRetransmissionInterval = REQUEST_INITIAL_RETRY_PERIOD;
 
-    private int requestMaxRetransmissions = 2;
+    private int requestMaxRetransmissions = 4;
 
     private int requestRetransmissionCount = 0;
 
@@ -162,7 +411,19 @@ class AmtTunnelEndpoint
 
     private InetSocketAddress lastGatewayAddress;
 
-    private TimerTask periodicRequestTask = null;
+    /**
+     * Starts a new request cycle when the query interval expires.
+     */
+    private final TimingWheelTask periodicRequestTask = new TimingWheelTask() {
+
+        @Override
+        public void run() {
+            if (AmtTunnelEndpoint.logger.isLoggable(Level.FINER)) {
+                AmtTunnelEndpoint.logger.finer(AmtTunnelEndpoint.this.log.msg("running request task"));
+            }
+            AmtTunnelEndpoint.this.startRequestTask();
+        }
+    };
 
     private int queryInterval = 125000;
 
@@ -170,28 +431,67 @@ class AmtTunnelEndpoint
 
     /**
      * @param relayDiscoveryAddress
+     * @param alternateRelayDiscoveryAddresses
+     *            Additional discovery or anycast addresses that are sent Relay Discovery
+     *            messages in parallel with the primary address. May be empty.
      * @param dispatchChannel
      *            The channel that will receive packets extracted from Membership Query
      *            and Multicast Data messages.
+     * @param dataSink
+     *            The sink that will receive UDP datagrams extracted from Multicast Data
+     *            messages without constructing intermediate message and packet objects.
+     *            Used in place of the dispatch channel when the sink reports that
+     *            direct dispatch is enabled. May be <code>null</code>.
+     * @param eventLoopGroup
+     *            The selector loops used to receive messages from the relay.
+     *            If <code>null</code>, the endpoint starts its own receive thread.
+     * @param relayCache
+     *            The cache used to record and recall the selected relay.
+     *            May be <code>null</code>.
+     * @param checksumVerifier
+     *            The verifier that applies the checksum policy to received
+     *            Multicast Data messages.
      * @throws IOException
      */
     protected AmtTunnelEndpoint(final InetAddress relayDiscoveryAddress,
+                                final Collection<InetAddress> alternateRelayDiscoveryAddresses,
                                 final OutputChannel<IPPacket> incomingPacketChannel,
-                                Protocol protocol) throws IOException {
+                                final MulticastDataSink dataSink,
+                                Protocol protocol,
+                                final SelectorLoopGroup eventLoopGroup,
+                                final RelayCache relayCache,
+                                final ChecksumVerifier checksumVerifier) throws IOException {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("AmtTunnelEndpoint.AmtTunnelEndpoint",
-                                        Logging.address(relayDiscoveryAddress), incomingPacketChannel));
+                                        Logging.address(relayDiscoveryAddress), incomingPacketChannel, eventLoopGroup));
         }
 
-        this.taskTimer = new Timer("AMT Tunnel Endpoint");
+        this.eventLoopGroup = eventLoopGroup;
+        this.handlerQueue = eventLoopGroup != null ? new SpscMessagePipe<UdpDatagram>(HANDLER_QUEUE_CAPACITY) : null;
+        this.relayCache = relayCache;
+        this.checksumVerifier = checksumVerifier;
+
+        this.taskTimer = TimingWheel.getSharedInstance();
 
         this.relayDiscoveryAddress = relayDiscoveryAddress;
 
+        LinkedHashSet<InetAddress> addresses = new LinkedHashSet<InetAddress>();
+        addresses.add(relayDiscoveryAddress);
+        addresses.addAll(alternateRelayDiscoveryAddresses);
+        this.relayDiscoveryAddresses = addresses.toArray(new InetAddress[addresses.size()]);
+
         this.amtMessageParser = AmtMessage.constructAmtGatewayParser();
+
+        // The checksum verifier checks the packets carried by Multicast Data messages
+        AmtMulticastDataMessage.Parser dataParser = AmtMulticastDataMessage.constructParser();
+        dataParser.setPacketChecksumVerified(false);
+        this.amtMessageParser.add(dataParser);
+
         this.protocol = protocol;
 
         this.dispatchChannel = incomingPacketChannel;
+        this.dataSink = dataSink;
 
         start();
 
@@ -223,9 +523,12 @@ class AmtTunnelEndpoint
 
             if (!this.isRunning) {
 
-                this.udpEndpoint = new UdpSocketEndpoint(0);
-
-                this.udpEndpoint.connect(new InetSocketAddress(this.relayDiscoveryAddress, AMT_PORT));
+                if (this.eventLoopGroup != null) {
+                    this.udpEndpoint = new UdpChannelEndpoint(new InetSocketAddress(0), RECEIVE_BUFFER_POOL);
+                }
+                else {
+                    this.udpEndpoint = new UdpSocketEndpoint(0);
+                }
 
                 this.udpOutputChannel = new UdpOutputChannel(this.udpEndpoint);
                 this.udpInputChannel = new UdpInputChannel(this.udpEndpoint);
@@ -237,12 +540,20 @@ class AmtTunnelEndpoint
                 this.lastRequestMessageSent = null;
                 this.lastQueryMessageReceived = null;
 
-                this.handlerThread = new Thread(this, this.toString());
-                this.handlerThread.setDaemon(true);
+                if (this.eventLoopGroup != null) {
+                    this.eventLoop = this.eventLoopGroup.next();
+                    this.eventLoop.register(((UdpChannelEndpoint) this.udpEndpoint).getChannel(), this.readHandler);
+                }
+                else {
+                    this.handlerThread = new Thread(this, this.toString());
+                    this.handlerThread.setDaemon(true);
 
-                this.handlerThread.start();
+                    this.handlerThread.start();
+                }
 
-                startRelayDiscoveryTask();
+                if (!startCachedRelayRequestTask()) {
+                    startRelayDiscoveryTask();
+                }
 
             }
         }
@@ -270,10 +581,18 @@ class AmtTunnelEndpoint
 
                 stopTasks();
 
+                if (this.eventLoop != null) {
+                    this.eventLoop.unregister(((UdpChannelEndpoint) this.udpEndpoint).getChannel());
+                    this.eventLoop = null;
+                }
+
                 // Close the endpoint to abort the read operation on socket
                 this.udpEndpoint.close(true);
 
-                this.handlerThread.interrupt();
+                if (this.handlerThread != null) {
+                    this.handlerThread.interrupt();
+                    this.handlerThread = null;
+                }
 
             }
         }
@@ -324,13 +643,12 @@ class AmtTunnelEndpoint
              * a
              * general query that will trigger generation of a new update message.
              */
-            if (this.lastDiscoveryMessageSent == null) {
-                logger.info(this.log.msg("cannot send AMT update message because AMT discovery message has not been sent"));
-                startRelayDiscoveryTask();
-                return;
-            }
-            else if (this.lastAdvertisementMessageReceived == null) {
-                if (logger.isLoggable(Level.INFO)) {
+            if (this.relayAddress == null) {
+                if (this.lastDiscoveryMessageSent == null) {
+                    logger.info(this.log.msg("cannot send AMT update message because AMT discovery message has not been sent"));
+                    startRelayDiscoveryTask();
+                }
+                else if (logger.isLoggable(Level.INFO)) {
                     logger.info(this.log
                                     .msg("cannot send AMT update message because no AMT relay has responded to the last AMT discovery message"));
                 }
@@ -453,48 +771,26 @@ class AmtTunnelEndpoint
         synchronized (this.lock) {
 
             this.lastDiscoveryMessageSent = null;
+            this.relayAddress = null;
+            this.alternateRelayAddresses.clear();
 
-            if (this.discoveryTask != null) {
-                this.discoveryTask.cancel();
-            }
-
-            this.discoveryTask = new TimerTask() {
+            this.discoveryStartTime = System.nanoTime();
+            this.timeToFirstAdvertisement = -1;
+            this.timeToFirstData = -1;
 
-                @Override
-                public void run() {
-                    if (AmtTunnelEndpoint.logger.isLoggable(Level.FINER)) {
-                        AmtTunnelEndpoint.logger.finer(AmtTunnelEndpoint.this.log.msg("running discovery task"));
-                    }
-                    synchronized (AmtTunnelEndpoint.this.lock) {
-                        try {
-                            if (AmtTunnelEndpoint.this.discoveryRetransmissionCount < AmtTunnelEndpoint.this.discoveryMaxRetransmissions) {
-                                AmtTunnelEndpoint.this.discoveryRetransmissionCount++;
-                                AmtTunnelEndpoint.this.sendRelayDiscoveryMessage();
-                            }
-                            else {
-                                AmtTunnelEndpoint.logger
-                                                .info(AmtTunnelEndpoint.this.log
-                                                                .msg("maximum allowable relay discovery message retransmissions exceeded"));
-                                AmtTunnelEndpoint.this.discoveryRetransmissionCount = 0;
-                                AmtTunnelEndpoint.this.lastDiscoveryMessageSent = null;
-                                this.cancel();
-                            }
-                        }
-                        catch (Exception e) {
-                            AmtTunnelEndpoint.logger.warning(AmtTunnelEndpoint.this.log
-                                            .msg("attempt to send AMT Relay Discovery Message failed - "
-                                                 + e.getMessage()));
-                            AmtTunnelEndpoint.this.discoveryRetransmissionCount = 0;
-                            AmtTunnelEndpoint.this.lastDiscoveryMessageSent = null;
-                            this.cancel();
-                        }
-                    }
-                }
-            };
+            // Advertisements may arrive from any of the discovery addresses
+            try {
+                disconnect();
+            }
+            catch (IOException e) {
+                logger.fine(this.log.msg("attempt to disconnect tunnel socket failed - " + e.getClass().getName() + ":"
+                                         + e.getMessage()));
+            }
 
             // Schedule relay discovery task for immediate execution with short retry
             // period
-            this.taskTimer.schedule(this.discoveryTask, 0, this.discoveryRetransmissionInterval);
+            this.discoveryRetransmissionInterval = DISCOVERY_INITIAL_RETRY_PERIOD;
+            this.taskTimer.schedule(this.discoveryTask, 0);
         }
     }
 
@@ -518,16 +814,31 @@ class AmtTunnelEndpoint
                 this.lastQueryMessageReceived = null;
             }
 
-            if (logger.isLoggable(Level.FINE)) {
-                logger.fine(this.log.msg("sending AMT Relay Discovery Message: relay-discovery-address="
-                                         + Logging.address(this.relayDiscoveryAddress)));
-                if (logger.isLoggable(Level.FINEST)) {
-                    this.lastDiscoveryMessageSent.log(Level.FINEST);
+            // Race the discovery addresses - the first valid advertisement wins
+            IOException lastException = null;
+            int sentCount = 0;
+            for (InetAddress discoveryAddress : this.relayDiscoveryAddresses) {
+
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("sending AMT Relay Discovery Message: relay-discovery-address="
+                                             + Logging.address(discoveryAddress)));
+                    if (logger.isLoggable(Level.FINEST)) {
+                        this.lastDiscoveryMessageSent.log(Level.FINEST);
+                    }
                 }
-            }
 
-            send(this.relayDiscoveryAddress, this.lastDiscoveryMessageSent);
+                try {
+                    send(discoveryAddress, this.lastDiscoveryMessageSent);
+                    sentCount++;
+                }
+                catch (IOException e) {
+                    lastException = e;
+                }
+            }
 
+            if (sentCount == 0 && lastException != null) {
+                throw lastException;
+            }
         }
 
     }
@@ -543,59 +854,90 @@ class AmtTunnelEndpoint
 
         synchronized (this.lock) {
 
-            if (this.lastAdvertisementMessageReceived == null) {
+            if (this.relayAddress == null) {
                 startRelayDiscoveryTask();
                 return;
             }
 
             this.lastRequestMessageSent = null;
 
-            if (this.requestTask != null) {
-                this.requestTask.cancel();
+            this.requestRetransmissionInterval = REQUEST_INITIAL_RETRY_PERIOD;
+            this.taskTimer.schedule(this.requestTask, 0);
+        }
+    }
+
+    /**
+     * Starts a request cycle with the relay recorded in the relay cache, if any.
+     * 
+     * @return <code>true</code> if a cached relay was found.
+     */
+    private boolean startCachedRelayRequestTask() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("AmtTunnelEndpoint.startCachedRelayRequestTask"));
+        }
+
+        if (this.relayCache == null) {
+            return false;
+        }
+
+        RelayCache.Entry entry = this.relayCache.get(this.relayDiscoveryAddress, this.protocol);
+        if (entry == null) {
+            return false;
+        }
+
+        synchronized (this.lock) {
+
+            if (logger.isLoggable(Level.INFO)) {
+                logger.info(this.log.msg("using cached AMT Relay " + Logging.address(entry.relayAddress)));
             }
 
-            this.requestTask = new TimerTask() {
+            this.lastDiscoveryMessageSent = null;
+            this.alternateRelayAddresses.clear();
+            this.relayAddress = entry.relayAddress;
+            this.queryInterval = entry.queryInterval;
 
-                @Override
-                public void run() {
-                    if (AmtTunnelEndpoint.logger.isLoggable(Level.FINER)) {
-                        AmtTunnelEndpoint.logger.finer(AmtTunnelEndpoint.this.log.msg("running request task"));
-                    }
-                    synchronized (AmtTunnelEndpoint.this.lock) {
-                        try {
-                            if (AmtTunnelEndpoint.this.requestRetransmissionCount < AmtTunnelEndpoint.this.requestMaxRetransmissions) {
-                                AmtTunnelEndpoint.this.requestRetransmissionCount++;
-                                AmtTunnelEndpoint.this.sendRequestMessage();
-                            }
-                            else {
-
-                                // The relay did not respond with a query within the
-                                // retransmission interval
-                                AmtTunnelEndpoint.logger
-                                                .info(AmtTunnelEndpoint.this.log
-                                                                .msg("maximum allowable request message retransmissions exceeded"));
-                                AmtTunnelEndpoint.this.requestRetransmissionCount = 0;
-                                AmtTunnelEndpoint.this.lastRequestMessageSent = null;
-                                this.cancel();
-
-                                // Restart discovery process to locate another relay
-                                AmtTunnelEndpoint.this.startRelayDiscoveryTask();
-                            }
-                        }
-                        catch (Exception e) {
-                            // Schedule request task for immediate execution with short
-                            // retry period
-                            AmtTunnelEndpoint.logger.warning(AmtTunnelEndpoint.this.log
-                                            .msg("attempt to send AMT Request Message failed - "
-                                                 + e.getMessage()));
-                            AmtTunnelEndpoint.this.requestRetransmissionCount = 0;
-                            this.cancel();
-                        }
-                    }
-                }
-            };
+            this.discoveryStartTime = System.nanoTime();
+            this.timeToFirstAdvertisement = -1;
+            this.timeToFirstData = -1;
+
+            startRequestTask();
+        }
+
+        return true;
+    }
 
-            this.taskTimer.schedule(this.requestTask, 0, this.requestRetransmissionInterval);
+    /**
+     * Starts a request cycle with the next relay that answered the current discovery
+     * message, or restarts relay discovery if no other relay answered.
+     */
+    private void startAlternateRelayRequestTask() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("AmtTunnelEndpoint.startAlternateRelayRequestTask"));
+        }
+
+        synchronized (this.lock) {
+
+            if (this.relayCache != null) {
+                this.relayCache.remove(this.relayDiscoveryAddress, this.protocol, this.relayAddress);
+            }
+
+            InetAddress alternateRelayAddress = this.alternateRelayAddresses.poll();
+
+            if (alternateRelayAddress == null || this.relayAddress == null) {
+                startRelayDiscoveryTask();
+                return;
+            }
+
+            if (logger.isLoggable(Level.INFO)) {
+                logger.info(this.log.msg("AMT Relay " + Logging.address(this.relayAddress) + " did not respond - trying AMT Relay "
+                                         + Logging.address(alternateRelayAddress)));
+            }
+
+            this.relayAddress = alternateRelayAddress;
+
+            startRequestTask();
         }
     }
 
@@ -639,21 +981,6 @@ class AmtTunnelEndpoint
 
         synchronized (this.lock) {
 
-            if (this.periodicRequestTask != null) {
-                this.periodicRequestTask.cancel();
-            }
-
-            this.periodicRequestTask = new TimerTask() {
-
-                @Override
-                public void run() {
-                    if (AmtTunnelEndpoint.logger.isLoggable(Level.FINER)) {
-                        AmtTunnelEndpoint.logger.finer(AmtTunnelEndpoint.this.log.msg("running request task"));
-                    }
-                    AmtTunnelEndpoint.this.startRequestTask();
-                }
-            };
-
             this.taskTimer.schedule(this.periodicRequestTask, delay);
         }
     }
@@ -669,20 +996,9 @@ class AmtTunnelEndpoint
 
         synchronized (this.lock) {
 
-            if (this.periodicRequestTask != null) {
-                this.periodicRequestTask.cancel();
-                this.periodicRequestTask = null;
-            }
-
-            if (this.requestTask != null) {
-                this.requestTask.cancel();
-                this.requestTask = null;
-            }
-
-            if (this.discoveryTask != null) {
-                this.discoveryTask.cancel();
-                this.discoveryTask = null;
-            }
+            this.periodicRequestTask.cancel();
+            this.requestTask.cancel();
+            this.discoveryTask.cancel();
 
             this.lastDiscoveryMessageSent = null;
             this.lastAdvertisementMessageReceived = null;
@@ -703,45 +1019,62 @@ class AmtTunnelEndpoint
             logger.finer(this.log.entry("AmtTunnelEndpoint.handleAdvertisementMessage", message));
         }
 
+        InetAddress advertisedRelayAddress;
+
         synchronized (this.lock) {
 
-            if (message.getDiscoveryNonce() != this.lastDiscoveryMessageSent.getDiscoveryNonce()) {
+            if (this.lastDiscoveryMessageSent == null ||
+                message.getDiscoveryNonce() != this.lastDiscoveryMessageSent.getDiscoveryNonce()) {
 
                 logger.info(this.log.msg("received unexpected AMT Relay Advertisement Message: discovery-nonce=" +
                                          message.getDiscoveryNonce() +
                                          " expected-nonce=" +
-                                         this.lastDiscoveryMessageSent.getDiscoveryNonce()));
+                                         (this.lastDiscoveryMessageSent != null
+                                                         ? this.lastDiscoveryMessageSent.getDiscoveryNonce()
+                                                         : "none")));
 
                 // Let the relay discovery process continue
                 return;
             }
-            else {
 
-                if (this.discoveryTask != null) {
-                    this.discoveryTask.cancel();
-                    this.discoveryTask = null;
-                }
+            try {
+                advertisedRelayAddress = InetAddress.getByAddress(message.getRelayAddress());
+            }
+            catch (UnknownHostException e) {
+                throw new Error(e);
+            }
 
-                this.discoveryRetransmissionCount = 0;
-                this.lastAdvertisementMessageReceived = message;
-                this.relayAddress = InetAddress.getByAddress(message.getRelayAddress());
+            if (this.lastAdvertisementMessageReceived != null) {
 
-                try {
-                    this.udpEndpoint.connect(new InetSocketAddress(this.relayAddress, AMT_PORT));
-                }
-                catch (UnknownHostException e) {
-                    throw new Error(e);
-                }
+                // Another discovery address answered after a relay was selected -
+                // keep the relay in reserve in case the selected relay does not respond
+                if (!advertisedRelayAddress.equals(this.relayAddress) &&
+                    !this.alternateRelayAddresses.contains(advertisedRelayAddress)) {
 
-                // Initiate request/query/report handshake with the relay so we
-                // have a response MAC and nonce for reception state change reports
-                startRequestTask();
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(this.log.msg("saving alternate AMT Relay " + Logging.address(advertisedRelayAddress)));
+                    }
 
+                    this.alternateRelayAddresses.add(advertisedRelayAddress);
+                }
+                return;
             }
+
+            this.discoveryTask.cancel();
+
+            this.discoveryRetransmissionCount = 0;
+            this.lastAdvertisementMessageReceived = message;
+            this.relayAddress = advertisedRelayAddress;
+            this.timeToFirstAdvertisement = System.nanoTime() - this.discoveryStartTime;
+
+            // Initiate request/query/report handshake with the relay so we
+            // have a response MAC and nonce for reception state change reports
+            startRequestTask();
         }
 
         if (logger.isLoggable(Level.INFO)) {
-            logger.info(this.log.msg("interface connected to AMT Relay " + Logging.address(this.relayAddress)));
+            logger.info(this.log.msg("interface connected to AMT Relay " + Logging.address(advertisedRelayAddress) +
+                                     " time-to-first-advertisement=" + getTimeToFirstAdvertisement() + "ms"));
         }
 
     }
@@ -759,21 +1092,26 @@ class AmtTunnelEndpoint
 
         synchronized (this.lock) {
 
-            if (message.getRequestNonce() != this.lastRequestMessageSent.getRequestNonce()) {
+            if (this.lastRequestMessageSent == null ||
+                message.getRequestNonce() != this.lastRequestMessageSent.getRequestNonce()) {
                 logger.info(this.log.msg("received unexpected AMT Membership Query Message: request-nonce=" +
                                          message.getRequestNonce() +
                                          " expected-nonce=" +
-                                         this.lastRequestMessageSent.getRequestNonce()));
+                                         (this.lastRequestMessageSent != null
+                                                         ? this.lastRequestMessageSent.getRequestNonce()
+                                                         : "none")));
                 return;
             }
 
-            if (this.requestTask != null) {
-                this.requestTask.cancel();
-                this.requestTask = null;
-            }
+            this.requestTask.cancel();
 
             this.requestRetransmissionCount = 0;
 
+            if (this.lastQueryMessageReceived == null) {
+                // The relay has answered so stop accepting datagrams from other sources
+                connect(new InetSocketAddress(this.relayAddress, AMT_PORT));
+            }
+
             if (message.getGatewayAddressFlag()) {
                 InetSocketAddress gatewayAddress = message.getGatewayAddress();
                 if (this.lastGatewayAddress != null) {
@@ -842,6 +1180,10 @@ class AmtTunnelEndpoint
             throw new ProtocolException("IP packet does not contain an IGMP Membership Query Message");
         }
 
+        if (this.relayCache != null) {
+            this.relayCache.put(this.relayDiscoveryAddress, this.protocol, this.relayAddress, this.queryInterval);
+        }
+
         // Forward the IGMP/MLD general query packet to the output channel (the
         // AmtPseudoInterface)
         this.dispatchChannel.send(message.getPacket(), Integer.MAX_VALUE);
@@ -858,6 +1200,10 @@ class AmtTunnelEndpoint
             logger.finer(this.log.entry("AmtTunnelEndpoint.handleDataMessage", message));
         }
 
+        if (this.timeToFirstData < 0) {
+            recordFirstData();
+        }
+
         try {
             // Forward the IP packet to the output channel (the AmtPseudoInterface)
             this.dispatchChannel.send(message.getPacket(), Integer.MAX_VALUE);
@@ -880,6 +1226,116 @@ class AmtTunnelEndpoint
         }
     }
 
+    /**
+     * Dispatches the UDP datagram carried by an AMT Multicast Data message directly to
+     * the data sink.
+     * 
+     * @param data
+     * @throws InterruptedException
+     * @throws InterruptedIOException
+     */
+    private void handleDataMessage(final MulticastDataView data) throws InterruptedException, InterruptedIOException {
+
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(this.log.msg("received AMT multicast data for port " + data.getDestinationPort()));
+        }
+
+        if (this.timeToFirstData < 0) {
+            recordFirstData();
+        }
+
+        try {
+            this.dataSink.dispatch(data);
+        }
+        catch (InterruptedIOException e) {
+            logger.fine(this.log.msg("attempt to send AMT multicast data packet was interrupted"));
+            throw e;
+        }
+        catch (IOException e) {
+            logger.fine(this.log.msg("attempt to send AMT multicast data packet failed - " + e.getClass().getName() + ":"
+                                     + e.getMessage()));
+            // Continue on...
+        }
+    }
+
+    /**
+     * Logs a Multicast Data message discarded because the packet it carries failed
+     * checksum verification.
+     */
+    private void logChecksumFailure() {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(this.log.msg("discarded AMT multicast data packet with invalid checksum - policy="
+                                     + this.checksumVerifier.getPolicy()));
+        }
+    }
+
+    /**
+     * Records the time taken to receive the first Multicast Data message in the
+     * current relay discovery cycle.
+     */
+    private void recordFirstData() {
+        synchronized (this.lock) {
+            if (this.timeToFirstData >= 0 || this.relayAddress == null) {
+                return;
+            }
+            this.timeToFirstData = System.nanoTime() - this.discoveryStartTime;
+        }
+
+        if (logger.isLoggable(Level.INFO)) {
+            logger.info(this.log.msg("received first multicast data from AMT Relay " + Logging.address(this.relayAddress) +
+                                     " time-to-first-data=" + getTimeToFirstData() + "ms"));
+        }
+    }
+
+    /**
+     * Gets the time from the start of the most recent relay discovery cycle to the
+     * arrival of the first valid Relay Advertisement message.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no advertisement has been received.
+     */
+    long getTimeToFirstAdvertisement() {
+        long elapsed = this.timeToFirstAdvertisement;
+        return elapsed < 0 ? -1 : elapsed / 1000000;
+    }
+
+    /**
+     * Gets the time from the start of the most recent relay discovery cycle to the
+     * arrival of the first Multicast Data message.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no data has been received.
+     */
+    long getTimeToFirstData() {
+        long elapsed = this.timeToFirstData;
+        return elapsed < 0 ? -1 : elapsed / 1000000;
+    }
+
+    /**
+     * Gets the number of datagrams received from the relay that were discarded because
+     * the handler queue of a tunnel serviced by a selector loop was full.
+     */
+    long getHandlerQueueOverflowCount() {
+        return this.handlerQueueOverflowCount.get();
+    }
+
+    /**
+     * Gets the verifier that applies the checksum policy to received Multicast Data
+     * messages.
+     */
+    ChecksumVerifier getChecksumVerifier() {
+        return this.checksumVerifier;
+    }
+
+    /**
+     * Gets the address of the relay selected by the most recent discovery cycle.
+     * 
+     * @return The relay address or <code>null</code> if no relay has been selected.
+     */
+    InetAddress getRelayAddress() {
+        synchronized (this.lock) {
+            return this.relayAddress;
+        }
+    }
+
     @Override
     public void run() {
 
@@ -887,16 +1343,18 @@ class AmtTunnelEndpoint
             logger.finer(this.log.entry("AmtTunnelEndpoint.run"));
         }
 
+        ArrayList<UdpDatagram> inputDatagrams = new ArrayList<UdpDatagram>(RECEIVE_BATCH_SIZE);
+
         while (this.isRunning) {
 
             if (logger.isLoggable(Level.FINER)) {
                 logger.finer(this.log.msg("waiting to receive AMT message..."));
             }
 
-            UdpDatagram inputDatagram = null;
+            inputDatagrams.clear();
 
             try {
-                inputDatagram = this.udpInputChannel.receive(Integer.MAX_VALUE);
+                this.udpInputChannel.receive(inputDatagrams, RECEIVE_BATCH_SIZE, Integer.MAX_VALUE);
             }
             catch (InterruptedIOException e) {
                 logger.fine(this.log.msg("I/O operation interrupted - exiting message hander thread"));
@@ -916,71 +1374,289 @@ class AmtTunnelEndpoint
                 throw new Error(e);
             }
 
-            if (this.isRunning) {
+            try {
+                for (UdpDatagram inputDatagram : inputDatagrams) {
+                    if (!this.isRunning) {
+                        break;
+                    }
+                    handleDatagram(inputDatagram);
+                }
+            }
+            catch (InterruptedIOException e) {
+                logger.info(this.log.msg("I/O operation interrupted - exiting message hander thread"));
+                break;
+            }
+            catch (InterruptedException e) {
+                logger.info(this.log.msg("thread interrupted - exiting message hander thread"));
+                break;
+            }
+            catch (Exception e) {
+                logger.severe(this.log.msg("message handler failed unexpectedly - " + e.getClass().getSimpleName() + ":"
+                                           + e.getMessage()));
+                e.printStackTrace();
+                throw new Error(e);
+            }
+            finally {
+                release(inputDatagrams);
+            }
+        }
 
-                AmtMessage message = null;
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.msg("exiting message handler thread"));
+        }
+    }
 
-                try {
+    /**
+     * Drains the datagrams that are available on the tunnel socket and passes them to
+     * the handler task. Called on the selector loop thread, which must not block, so
+     * datagrams that do not fit in the handler queue are discarded. Any remaining
+     * datagrams will be drained when the loop next reports the socket as readable.
+     */
+    private void handleReadable() {
 
-                    message = (AmtMessage) amtMessageParser.parse(inputDatagram.getPayload());
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("AmtTunnelEndpoint.handleReadable"));
+        }
 
-                    if (message instanceof AmtMulticastDataMessage) {
-                        if (logger.isLoggable(Level.FINER)) {
-                            logger.fine(this.log.msg("received AMT message AmtMulticastDataMessage"));
-                            if (logger.isLoggable(Level.FINEST)) {
-                                message.log(Level.FINEST);
-                            }
-                        }
-                    }
-                    else {
-                        if (logger.isLoggable(Level.FINE)) {
-                            logger.fine(this.log.msg("received AMT message " + message.getClass().getSimpleName()));
-                            if (logger.isLoggable(Level.FINEST)) {
-                                message.log(Level.FINEST);
-                            }
-                        }
-                    }
+        this.readyDatagrams.clear();
+
+        try {
+            ((UdpChannelEndpoint) this.udpEndpoint).poll(this.readyDatagrams, RECEIVE_BATCH_SIZE);
+        }
+        catch (PortUnreachableException e) {
+            // An earlier send drew an ICMP unreachable - the send path handles relay failure
+            logger.fine(this.log.msg("relay port unreachable"));
+            return;
+        }
+        catch (IOException e) {
+            if (this.isRunning) {
+                logger.warning(this.log.msg("receive operation failed - " + e.getClass().getSimpleName() + ":" + e.getMessage()));
+            }
+            return;
+        }
 
-                    switch (message.getType()) {
+        int discardedCount = 0;
+        for (int i = 0; i < this.readyDatagrams.size(); i++) {
+            UdpDatagram inputDatagram = this.readyDatagrams.get(i);
+            if (!this.handlerQueue.offer(inputDatagram)) {
+                inputDatagram.release();
+                discardedCount++;
+            }
+        }
+        this.readyDatagrams.clear();
 
-                        case AmtMulticastDataMessage.MESSAGE_TYPE:
-                            handleDataMessage((AmtMulticastDataMessage) message);
-                            break;
+        if (discardedCount > 0) {
+            this.handlerQueueOverflowCount.addAndGet(discardedCount);
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(this.log.msg("discarded " + discardedCount + " datagrams - handler queue is full"));
+            }
+        }
 
-                        case AmtMembershipQueryMessage.MESSAGE_TYPE:
-                            handleQueryMessage((AmtMembershipQueryMessage) message);
-                            break;
+        scheduleHandler();
+    }
 
-                        case AmtRelayAdvertisementMessage.MESSAGE_TYPE:
-                            handleAdvertisementMessage((AmtRelayAdvertisementMessage) message);
-                            break;
+    /**
+     * Submits the handler task if datagrams are waiting and no task is scheduled.
+     */
+    private void scheduleHandler() {
+        if (this.handlerQueue.size() > 0 && this.isHandlerScheduled.compareAndSet(false, true)) {
+            HANDLER_EXECUTOR.execute(this.handlerTask);
+        }
+    }
 
-                        default:
-                            if (logger.isLoggable(Level.FINE)) {
-                                logger.fine(this.log.msg("ignoring AMT message " + message.getClass().getSimpleName()));
-                            }
-                            break;
-                    }
-                }
-                catch (InterruptedIOException e) {
-                    logger.info(this.log.msg("I/O operation interrupted - exiting message hander thread"));
-                    break;
+    /**
+     * Handles each datagram in the handler queue until the queue is empty.
+     * Datagrams that remain once the endpoint has stopped are released without being
+     * handled.
+     */
+    private void handleQueuedDatagrams() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("AmtTunnelEndpoint.handleQueuedDatagrams"));
+        }
+
+        UdpDatagram inputDatagram;
+        while ((inputDatagram = this.handlerQueue.poll()) != null) {
+            try {
+                if (this.isRunning) {
+                    handleDatagram(inputDatagram);
                 }
-                catch (InterruptedException e) {
-                    logger.info(this.log.msg("thread interrupted - exiting message hander thread"));
-                    break;
+            }
+            catch (InterruptedIOException e) {
+                logger.fine(this.log.msg("I/O operation interrupted - " + e.getMessage()));
+            }
+            catch (InterruptedException e) {
+                logger.fine(this.log.msg("message handler interrupted"));
+            }
+            catch (Exception e) {
+                // Do not let one datagram take down the handler shared with other tunnels
+                logger.log(Level.SEVERE,
+                           this.log.msg("message handler failed unexpectedly - " + e.getClass().getSimpleName() + ":"
+                                        + e.getMessage()),
+                           e);
+            }
+            finally {
+                inputDatagram.release();
+            }
+        }
+
+        this.isHandlerScheduled.set(false);
+
+        // The loop thread may have queued a datagram after the queue was found empty
+        // but before the flag was cleared
+        scheduleHandler();
+    }
+
+    /**
+     * Releases the reference held by the receiver on each datagram in a list and clears
+     * the list. Pooled receive buffers are recycled once any consumers that retained
+     * the datagrams dispatched from them have also released them.
+     * 
+     * @param datagrams
+     */
+    private static void release(final ArrayList<UdpDatagram> datagrams) {
+        for (int i = 0; i < datagrams.size(); i++) {
+            datagrams.get(i).release();
+        }
+        datagrams.clear();
+    }
+
+    /**
+     * Connects the tunnel socket to the specified relay address.
+     * Only the non-blocking channel used with a selector loop is connected - a blocking
+     * socket cannot be disconnected while the handler thread is waiting in receive().
+     * 
+     * @param remoteSocketAddress
+     * @throws IOException
+     */
+    private void connect(final InetSocketAddress remoteSocketAddress) throws IOException {
+        if (this.udpEndpoint instanceof UdpChannelEndpoint) {
+            UdpChannelEndpoint endpoint = (UdpChannelEndpoint) this.udpEndpoint;
+            if (!remoteSocketAddress.equals(endpoint.getRemoteSocketAddress())) {
+                endpoint.connect(remoteSocketAddress);
+            }
+        }
+    }
+
+    /**
+     * Disconnects the tunnel socket so that datagrams can be exchanged with any address.
+     * 
+     * @throws IOException
+     */
+    private void disconnect() throws IOException {
+        if (this.udpEndpoint instanceof UdpChannelEndpoint) {
+            ((UdpChannelEndpoint) this.udpEndpoint).disconnect();
+        }
+    }
+
+    /**
+     * Indicates whether a datagram was sent from the AMT port of the relay currently in
+     * use or of one of the relay discovery addresses.
+     * The socket used by the handler thread is never connected and the channel used
+     * with a selector loop is disconnected during relay discovery, so datagrams from
+     * any other source must be discarded here to prevent a third party from injecting
+     * AMT messages into the tunnel.
+     * 
+     * @param inputDatagram
+     */
+    private boolean isExpectedSource(final UdpDatagram inputDatagram) {
+        if (inputDatagram.getSourcePort() != AMT_PORT) {
+            return false;
+        }
+        InetAddress sourceAddress = inputDatagram.getSourceInetAddress();
+        if (sourceAddress.equals(this.relayAddress)) {
+            return true;
+        }
+        for (InetAddress discoveryAddress : this.relayDiscoveryAddresses) {
+            if (discoveryAddress.equals(sourceAddress)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Parses an AMT message from the datagram payload and dispatches the message to
+     * the appropriate message handler.
+     * 
+     * @param inputDatagram
+     * @throws IOException
+     * @throws InterruptedException
+     * @throws ParseException
+     * @throws MissingParserException
+     */
+    private void handleDatagram(final UdpDatagram inputDatagram) throws IOException,
+                                                                 InterruptedException,
+                                                                 ParseException,
+                                                                 MissingParserException {
+
+        if (!isExpectedSource(inputDatagram)) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(this.log.msg("discarded datagram from unexpected source " +
+                                         Logging.address(inputDatagram.getSourceSocketAddress())));
+            }
+            return;
+        }
+
+        ByteBuffer payload = inputDatagram.getPayload();
+
+        if (this.dataView.wrap(payload, inputDatagram.getPooledBuffer())) {
+            if (!this.checksumVerifier.verify(this.dataView)) {
+                logChecksumFailure();
+                return;
+            }
+            if (this.dataSink != null && this.dataSink.isDirectDispatchEnabled()) {
+                handleDataMessage(this.dataView);
+                return;
+            }
+        }
+        else if (!this.checksumVerifier.verifyHeader(payload)) {
+            logChecksumFailure();
+            return;
+        }
+
+        // Parsed messages share the payload without holding a reference to it, so the
+        // receive buffer is left to the garbage collector rather than recycled
+        inputDatagram.detach();
+
+        AmtMessage message = (AmtMessage) amtMessageParser.parse(payload);
+
+        if (message instanceof AmtMulticastDataMessage) {
+            if (logger.isLoggable(Level.FINER)) {
+                logger.fine(this.log.msg("received AMT message AmtMulticastDataMessage"));
+                if (logger.isLoggable(Level.FINEST)) {
+                    message.log(Level.FINEST);
                 }
-                catch (Exception e) {
-                    logger.severe(this.log.msg("message handler failed unexpectedly - " + e.getClass().getSimpleName() + ":"
-                                               + e.getMessage()));
-                    e.printStackTrace();
-                    throw new Error(e);
+            }
+        }
+        else {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(this.log.msg("received AMT message " + message.getClass().getSimpleName()));
+                if (logger.isLoggable(Level.FINEST)) {
+                    message.log(Level.FINEST);
                 }
             }
         }
 
-        if (logger.isLoggable(Level.FINER)) {
-            logger.finer(this.log.msg("exiting message handler thread"));
+        switch (message.getType()) {
+
+            case AmtMulticastDataMessage.MESSAGE_TYPE:
+                handleDataMessage((AmtMulticastDataMessage) message);
+                break;
+
+            case AmtMembershipQueryMessage.MESSAGE_TYPE:
+                handleQueryMessage((AmtMembershipQueryMessage) message);
+                break;
+
+            case AmtRelayAdvertisementMessage.MESSAGE_TYPE:
+                handleAdvertisementMessage((AmtRelayAdvertisementMessage) message);
+                break;
+
+            default:
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("ignoring AMT message " + message.getClass().getSimpleName()));
+                }
+                break;
         }
     }
 
@@ -25,12 +25,12 @@ package org.js4ms.amt.gateway;
 import java.io.IOException;
 import java.net.Inet4Address;
 import java.net.InetAddress;
-import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.task.TimingWheel;
 import org.js4ms.io.channel.MessageKeyExtractor;
 import org.js4ms.io.channel.OutputChannel;
 import org.js4ms.io.channel.OutputChannelMap;
@@ -68,6 +68,8 @@ public final class AmtUDPInterface {
 
     OutputChannelMap<IPPacket> outputChannelMap;
 
+    private final PacketAssembler assembler;
+
     /**
      * @param manager
      * @param relayDiscoveryAddress
@@ -118,11 +120,31 @@ public final class AmtUDPInterface {
 
         // Create packet assembler that will reassemble packets from the IP interface and
         // forward them to the output channel map
-        PacketAssembler assembler = new PacketAssembler(outputChannelMap,
-                                                        MAX_REASSEMBLY_CACHE_SIZE,
-                                                        new Timer("AMT UDP Interface"));
+        this.assembler = new PacketAssembler(outputChannelMap,
+                                             MAX_REASSEMBLY_CACHE_SIZE,
+                                             TimingWheel.getSharedInstance());
+
+        // Create a sink that receives complete UDP datagrams dispatched directly from
+        // the tunnel endpoint.
+        MulticastDataSink dataSink = new MulticastDataSink() {
+
+            @Override
+            public boolean isDirectDispatchEnabled() {
+                return true;
+            }
 
-        this.amtIPInterface.addOutputChannel(assembler);
+            @Override
+            public void dispatch(MulticastDataView data) throws IOException, InterruptedException {
+                ChannelMembershipManager membershipManager = data.getVersion() == IPv4Packet.INTERNET_PROTOCOL_VERSION
+                                ? AmtUDPInterface.this.ipv4MembershipManager
+                                : AmtUDPInterface.this.ipv6MembershipManager;
+                if (membershipManager != null) {
+                    membershipManager.dispatch(data);
+                }
+            }
+        };
+
+        this.amtIPInterface.addOutputChannel(new MulticastDataChannel(this.assembler, dataSink));
 
     }
 
@@ -135,6 +157,67 @@ public final class AmtUDPInterface {
         return this.amtIPInterface.getRelayDiscoveryAddress();
     }
 
+    /**
+     * Gets the time taken to receive the first valid Relay Advertisement in the most
+     * recent relay discovery cycle.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no advertisement has been received.
+     */
+    public long getTimeToFirstAdvertisement() {
+        return this.amtIPInterface.getTimeToFirstAdvertisement();
+    }
+
+    /**
+     * Gets the time taken to receive the first Multicast Data message in the most
+     * recent relay discovery cycle.
+     * 
+     * @return The elapsed time in milliseconds or -1 if no data has been received.
+     */
+    public long getTimeToFirstData() {
+        return this.amtIPInterface.getTimeToFirstData();
+    }
+
+    /**
+     * Gets the number of multicast data packets that failed checksum verification
+     * while the specified policy was in effect.
+     * 
+     * @param policy
+     */
+    public long getChecksumFailureCount(final ChecksumPolicy policy) {
+        return this.amtIPInterface.getChecksumFailureCount(policy);
+    }
+
+    /**
+     * Gets the number of datagrams received from the relay that were discarded because
+     * a tunnel handler queue was full.
+     */
+    public long getHandlerQueueOverflowCount() {
+        return this.amtIPInterface.getHandlerQueueOverflowCount();
+    }
+
+    /**
+     * Gets the number of fragmented datagrams that have been reassembled.
+     */
+    public long getReassembledDatagramCount() {
+        return this.assembler.getReassembledCount();
+    }
+
+    /**
+     * Gets the number of fragmented datagrams discarded because reassembly did not
+     * complete within the reassembly timeout.
+     */
+    public long getTimedOutDatagramCount() {
+        return this.assembler.getTimedOutCount();
+    }
+
+    /**
+     * Gets the number of fragmented datagrams discarded because they were malformed or
+     * exceeded the reassembly limits.
+     */
+    public long getDroppedDatagramCount() {
+        return this.assembler.getDroppedCount();
+    }
+
     /**
      * 
      */
@@ -24,19 +24,19 @@ package org.js4ms.amt.gateway;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import org.js4ms.common.exception.BoundException;
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.LoggableBase;
 import org.js4ms.common.util.logging.Logging;
-import org.js4ms.io.MultiIOException;
-import org.js4ms.io.channel.MessageKeyExtractor;
+import org.js4ms.io.channel.ChannelClosedException;
 import org.js4ms.io.channel.OutputChannel;
-import org.js4ms.io.channel.OutputChannelMap;
-import org.js4ms.io.channel.OutputChannelTee;
 import org.js4ms.io.net.UdpDatagram;
 import org.js4ms.ip.Precondition;
 
@@ -59,42 +59,39 @@ final class ChannelMembershipManager
 
     private final AmtIPInterface ipInterface;
 
-    private final MessageKeyExtractor<UdpDatagram> groupExtractor;
-
-    private final MessageKeyExtractor<UdpDatagram> sourceExtractor;
-
-    private final MessageKeyExtractor<UdpDatagram> portExtractor;
-
     /**
-     * Base channel selector used to track reception state for each group, source, and
-     * port.
-     * The hierarchy of selectors and channels differs for ASM and SSM multicast groups.
-     * <p>
-     * ASM example:
-     * 
-     * <pre>
-     * Group Channel Map-+->Port Channel Map-+->Channel Tee--->Output Channel
-     *                   |                   |
-     *                   |                   +->Channel Tee-+->Output Channel
-     *                   |                                  |
-     *                   |                                  +->Output Channel
-     *                   +->Port Channel Map--->Channel Tee--->Output Channel
-     * </pre>
+     * Current subscriptions indexed by group and source address and then by port.
+     * Only accessed while holding the membership lock. Any-source (ASM) subscriptions
+     * use a <code>null</code> source address.
      * <p>
-     * SSM example:
+     * Example:
      * 
      * <pre>
-     * Group Channel Map-+->Source Channel Map-+->Port Channel Map--->Channel Tee--->Output Channel
-     *                   |                     |
-     *                   |                     +->Port Channel Map--->Channel Tee-+->Output Channel
-     *                   |                                                        |
-     *                   |                                                        +->Output Channel
-     *                   +->Source Channel Map--->Port Channel Map-+->Channel Tee--->Output Channel
-     *                                                             |
-     *                                                             +->Channel Tee--->Output Channel
+     * (G1,*)--+->Port 5000--->Output Channel
+     *         |
+     *         +->Port 5002-+->Output Channel
+     *                      |
+     *                      +->Output Channel
+     * (G2,S1)---->Port 6000--->Output Channel
+     * (G2,S2)---->Port 6000--->Output Channel
      * </pre>
      */
-    private final OutputChannelMap<UdpDatagram> groupMap;
+    private final HashMap<SourceGroup, HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>> subscriptions;
+
+    /**
+     * Monitor object used to serialize changes to the subscriptions.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Routing table constructed from the current subscriptions.
+     * Threads that dispatch datagrams read this reference without locking. The route
+     * affected by a join or leave is updated in place (see {@link ChannelRoutingTable}
+     * for why this is safe). A new table that holds only the live routes is
+     * constructed and published when the current table runs out of room or when
+     * routes retired by leaves outnumber the live routes.
+     */
+    private volatile ChannelRoutingTable routingTable = ChannelRoutingTable.EMPTY;
 
     /**
      * Channel that receives UdpDatagrams for dispatch to application-side output
@@ -115,29 +112,7 @@ final class ChannelMembershipManager
 
         this.ipInterface = ipInterface;
 
-        this.groupExtractor = new MessageKeyExtractor<UdpDatagram>() {
-
-            @Override
-            public InetAddress getKey(UdpDatagram message) {
-                return message.getDestinationInetAddress();
-            }
-        };
-
-        this.sourceExtractor = new MessageKeyExtractor<UdpDatagram>() {
-
-            @Override
-            public InetAddress getKey(UdpDatagram message) {
-                return message.getSourceInetAddress();
-            }
-        };
-
-        this.portExtractor = new MessageKeyExtractor<UdpDatagram>() {
-
-            @Override
-            public Integer getKey(UdpDatagram message) {
-                return message.getDestinationPort();
-            }
-        };
+        this.subscriptions = new HashMap<SourceGroup, HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>>();
 
         final ChannelMembershipManager manager = this;
 
@@ -153,8 +128,6 @@ final class ChannelMembershipManager
             }
         };
 
-        this.groupMap = new OutputChannelMap<UdpDatagram>(this.groupExtractor);
-
     }
 
     @Override
@@ -169,6 +142,36 @@ final class ChannelMembershipManager
         return this.dispatchChannel;
     }
 
+    /**
+     * Dispatches the UDP datagram described by a multicast data view to the
+     * application-side output channels.
+     * The subscribed channels are located using the addresses and port read from the
+     * view, so no datagram is constructed unless at least one channel will receive it.
+     * 
+     * @param data
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    void dispatch(final MulticastDataView data) throws InterruptedException, IOException {
+        ChannelRoutingTable table = this.routingTable;
+        if (table.isEmpty()) {
+            return;
+        }
+        OutputChannel<UdpDatagram>[] sourceChannels = table.get(data, true);
+        OutputChannel<UdpDatagram>[] groupChannels = table.get(data, false);
+        if (sourceChannels != null || groupChannels != null) {
+            UdpDatagram message = data.constructDatagram();
+            try {
+                send(sourceChannels, message, Integer.MAX_VALUE);
+                send(groupChannels, message, Integer.MAX_VALUE);
+            }
+            finally {
+                // Channels that hold the datagram have retained it
+                message.release();
+            }
+        }
+    }
+
     /**
      * @param pushChannel
      * @param groupAddress
@@ -186,24 +189,10 @@ final class ChannelMembershipManager
 
         Precondition.checkASMMulticastAddress(groupAddress);
 
-        synchronized (this.groupMap) {
-            OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-            if (portMap == null) {
-                portMap = new OutputChannelMap<UdpDatagram>(this.portExtractor);
-                this.groupMap.put(groupAddress, portMap);
-                OutputChannelTee<UdpDatagram> tee = new OutputChannelTee<UdpDatagram>();
-                portMap.put(port, tee);
-                tee.add(pushChannel);
+        synchronized (this.lock) {
+            if (add(pushChannel, new SourceGroup(groupAddress, null), port)) {
                 this.ipInterface.join(groupAddress);
             }
-            else {
-                OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                if (tee == null) {
-                    tee = new OutputChannelTee<UdpDatagram>();
-                    portMap.put(port, tee);
-                }
-                tee.add(pushChannel);
-            }
         }
     }
 
@@ -230,40 +219,16 @@ final class ChannelMembershipManager
         Precondition.checkMulticastAddress(groupAddress);
         Precondition.checkAddresses(groupAddress, sourceAddress);
 
-        synchronized (this.groupMap) {
-            OutputChannelMap<UdpDatagram> sourceMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-            if (sourceMap == null) {
-                sourceMap = new OutputChannelMap<UdpDatagram>(this.sourceExtractor);
-                this.groupMap.put(groupAddress, sourceMap);
-                OutputChannelMap<UdpDatagram> portMap = new OutputChannelMap<UdpDatagram>(this.portExtractor);
-                sourceMap.put(sourceAddress, portMap);
-                OutputChannelTee<UdpDatagram> tee = new OutputChannelTee<UdpDatagram>();
-                tee.add(pushChannel);
-                portMap.put(port, tee);
+        synchronized (this.lock) {
+            if (add(pushChannel, new SourceGroup(groupAddress, sourceAddress), port)) {
                 this.ipInterface.join(groupAddress, sourceAddress);
             }
-            else {
-                OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) sourceMap.get(sourceAddress);
-                if (portMap == null) {
-                    portMap = new OutputChannelMap<UdpDatagram>(this.portExtractor);
-                    sourceMap.put(sourceAddress, portMap);
-                    OutputChannelTee<UdpDatagram> tee = new OutputChannelTee<UdpDatagram>();
-                    portMap.put(port, tee);
-                    tee.add(pushChannel);
-                }
-                else {
-                    OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                    if (tee == null) {
-                        tee = new OutputChannelTee<UdpDatagram>();
-                        portMap.put(port, tee);
-                    }
-                    tee.add(pushChannel);
-                }
-            }
         }
     }
 
     /**
+     * Removes a channel from all source-specific and any-source subscriptions for a group.
+     * 
      * @param pushChannel
      * @param groupAddress
      * @throws IOException
@@ -277,74 +242,15 @@ final class ChannelMembershipManager
 
         Precondition.checkMulticastAddress(groupAddress);
 
-        synchronized (this.groupMap) {
-            // Get the source or port selector for this group
-            OutputChannelMap<UdpDatagram> entryMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-            if (entryMap != null) {
-                // Look for the channel under all entries
-                Iterator<Object> entryIter = entryMap.getKeys().iterator();
-                while (entryIter.hasNext()) {
-                    Object entry = entryIter.next();
-                    if (entry instanceof InetAddress) {
-                        InetAddress sourceAddress = (InetAddress) entry;
-                        // Get the port selector for the source
-                        OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) entryMap.get(sourceAddress);
-                        if (portMap != null) {
-                            // Look for the channel under all of the port entries
-                            Iterator<Object> portIter = portMap.getKeys().iterator();
-                            while (portIter.hasNext()) {
-                                int port = (Integer) portIter.next();
-                                // Get the splitter for this port
-                                OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                                // Remove the channel (even though it may not be there).
-                                tee.remove(pushChannel);
-                                if (tee.isEmpty()) {
-                                    // No more channels associated with this port - remove
-                                    // the port entry
-                                    portIter.remove();
-                                    if (portMap.isEmpty()) {
-                                        // No more ports associated with this source -
-                                        // remove the source entry
-                                        entryIter.remove();
-                                        if (entryMap.isEmpty()) {
-                                            // No more sources associated with this group
-                                            // - remove the group entry
-                                            this.groupMap.remove(groupAddress);
-                                        }
-                                        // No channels are left in this source group -
-                                        // update the interface reception state
-                                        this.ipInterface.leave(groupAddress, sourceAddress);
-                                    }
-                                }
-                            }
-                        }
-                    }
-                    else {
-                        int port = (Integer) entry;
-                        // Get the splitter for this port
-                        OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) entryMap.get(port);
-                        // Remove the channel (even though it may not be there).
-                        tee.remove(pushChannel);
-                        if (tee.isEmpty()) {
-                            // No more channels associated with this port - remove the
-                            // port entry
-                            entryIter.remove();
-                            if (entryMap.isEmpty()) {
-                                // No more ports associated with this group - remove the
-                                // group entry
-                                this.groupMap.remove(groupAddress);
-                                // No channels are left in this group - update the
-                                // interface reception state
-                                this.ipInterface.leave(groupAddress);
-                            }
-                        }
-                    }
-                }
-            }
+        synchronized (this.lock) {
+            remove(pushChannel, groupAddress, null, -1);
         }
     }
 
     /**
+     * Removes a channel from all source-specific and any-source subscriptions for a group
+     * and port.
+     * 
      * @param pushChannel
      * @param groupAddress
      * @param port
@@ -361,67 +267,8 @@ final class ChannelMembershipManager
 
         Precondition.checkMulticastAddress(groupAddress);
 
-        synchronized (this.groupMap) {
-            OutputChannelMap<UdpDatagram> entryMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-            if (entryMap != null) {
-                // Look for the channel under all entries
-                Iterator<Object> entryIter = entryMap.getKeys().iterator();
-                while (entryIter.hasNext()) {
-                    Object entry = entryIter.next();
-                    if (entry instanceof InetAddress) {
-                        // Entry map is a source map
-                        InetAddress sourceAddress = (InetAddress) entry;
-                        // Get the port selector for the source
-                        OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) entryMap.get(sourceAddress);
-                        if (portMap != null) {
-                            // Get the splitter for this port
-                            OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                            // Remove the channel (even though it may not be there).
-                            tee.remove(pushChannel);
-                            if (tee.isEmpty()) {
-                                // No more channels associated with this port - remove the
-                                // port entry
-                                portMap.remove(port);
-                                if (portMap.isEmpty()) {
-                                    // No more ports associated with this source - remove
-                                    // the source entry
-                                    entryIter.remove();
-                                    if (entryMap.isEmpty()) {
-                                        // No more sources associated with this group -
-                                        // remove the group entry
-                                        this.groupMap.remove(groupAddress);
-                                    }
-                                    // No channels are left in this source group - update
-                                    // the interface reception state
-                                    this.ipInterface.leave(groupAddress, sourceAddress);
-                                }
-                            }
-                        }
-                    }
-                    else {
-                        // Get the splitter for this port
-                        OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) entryMap.get(port);
-                        // Remove the channel (even though it may not be there).
-                        tee.remove(pushChannel);
-                        if (tee.isEmpty()) {
-                            // No more channels associated with this port - remove the
-                            // port entry
-                            entryMap.remove(port);
-                            if (entryMap.isEmpty()) {
-                                // No more ports associated with this group - remove the
-                                // group entry
-                                this.groupMap.remove(groupAddress);
-                                // No channels are left in this group - update the
-                                // interface reception state
-                                this.ipInterface.leave(groupAddress);
-                            }
-                        }
-                        // The entry map was a port map not a source map
-                        // so no need to continue iteration
-                        break;
-                    }
-                }
-            }
+        synchronized (this.lock) {
+            remove(pushChannel, groupAddress, null, port);
         }
     }
 
@@ -443,42 +290,8 @@ final class ChannelMembershipManager
         Precondition.checkMulticastAddress(groupAddress);
         Precondition.checkAddresses(groupAddress, sourceAddress);
 
-        synchronized (this.groupMap) {
-            // Get the source selector for the group
-            OutputChannelMap<UdpDatagram> sourceMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-            if (sourceMap != null) {
-                // Get the port selector for the source
-                OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) sourceMap.get(sourceAddress);
-                if (portMap != null) {
-                    // Look for the channel under all of the port entries
-                    Iterator<Object> portIter = portMap.getKeys().iterator();
-                    while (portIter.hasNext()) {
-                        int port = (Integer) portIter.next();
-                        // Get the splitter for this port
-                        OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                        // Remove the channel (even though it may not be there).
-                        tee.remove(channel);
-                        if (tee.isEmpty()) {
-                            // No more channels associated with this port - remove the
-                            // port entry
-                            portIter.remove();
-                            if (portMap.isEmpty()) {
-                                // No more ports associated with this source - remove the
-                                // source entry
-                                sourceMap.remove(sourceAddress);
-                                if (sourceMap.isEmpty()) {
-                                    // No more sources associated with this group - remove
-                                    // the group entry
-                                    this.groupMap.remove(groupAddress);
-                                }
-                                // No channels are left in this source group - update the
-                                // interface reception state
-                                this.ipInterface.leave(groupAddress, sourceAddress);
-                            }
-                        }
-                    }
-                }
-            }
+        synchronized (this.lock) {
+            remove(channel, groupAddress, sourceAddress, -1);
         }
     }
 
@@ -504,37 +317,8 @@ final class ChannelMembershipManager
         Precondition.checkMulticastAddress(groupAddress);
         Precondition.checkAddresses(groupAddress, sourceAddress);
 
-        synchronized (this.groupMap) {
-            // Get the source selector for the group
-            OutputChannelMap<UdpDatagram> sourceMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-            if (sourceMap != null) {
-                // Get the port selector for the source
-                OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) sourceMap.get(sourceAddress);
-                if (portMap != null) {
-                    // Get the splitter for the port
-                    OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                    // Remove the channel from the splitter
-                    tee.remove(pushChannel);
-                    if (tee.isEmpty()) {
-                        // No more channels associated with this port - remove the port
-                        // entry
-                        portMap.remove(port);
-                        if (portMap.isEmpty()) {
-                            // No more ports associated with this source - remove the
-                            // source entry
-                            sourceMap.remove(sourceAddress);
-                            if (sourceMap.isEmpty()) {
-                                // No more sources associated with this group - remove the
-                                // group entry
-                                this.groupMap.remove(groupAddress);
-                            }
-                            // No channels are left in this source group - update the
-                            // interface reception state
-                            this.ipInterface.leave(groupAddress, sourceAddress);
-                        }
-                    }
-                }
-            }
+        synchronized (this.lock) {
+            remove(pushChannel, groupAddress, sourceAddress, port);
         }
     }
 
@@ -548,76 +332,8 @@ final class ChannelMembershipManager
             logger.finer(this.log.entry("ChannelMembershipManager.leave", pushChannel));
         }
 
-        synchronized (this.groupMap) {
-            // Look for the channel under all group entries
-            Iterator<Object> groupIter = this.groupMap.getKeys().iterator();
-            while (groupIter.hasNext()) {
-                InetAddress groupAddress = (InetAddress) groupIter.next();
-                // Get the source or port selector for this group
-                OutputChannelMap<UdpDatagram> entryMap = (OutputChannelMap<UdpDatagram>) this.groupMap.get(groupAddress);
-                if (entryMap != null) {
-                    // Look for the channel under all entries
-                    Iterator<Object> entryIter = entryMap.getKeys().iterator();
-                    while (entryIter.hasNext()) {
-                        Object entry = entryIter.next();
-                        if (entry instanceof InetAddress) {
-                            InetAddress sourceAddress = (InetAddress) entry;
-                            // Get the port selector for the source
-                            OutputChannelMap<UdpDatagram> portMap = (OutputChannelMap<UdpDatagram>) entryMap.get(sourceAddress);
-                            if (portMap != null) {
-                                // Look for the channel under all of the port entries
-                                Iterator<Object> portIter = portMap.getKeys().iterator();
-                                while (portIter.hasNext()) {
-                                    int port = (Integer) portIter.next();
-                                    // Get the splitter for this port
-                                    OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) portMap.get(port);
-                                    // Remove the channel (even though it may not be
-                                    // there).
-                                    tee.remove(pushChannel);
-                                    if (tee.isEmpty()) {
-                                        // No more channels associated with this port -
-                                        // remove the port entry
-                                        portIter.remove();
-                                        if (portMap.isEmpty()) {
-                                            // No more ports associated with this source -
-                                            // remove the source entry
-                                            entryIter.remove();
-                                            if (entryMap.isEmpty()) {
-                                                // No more sources associated with this
-                                                // group - remove the group entry
-                                                groupIter.remove();
-                                            }
-                                            // No channels are left in this source group -
-                                            // update the interface reception state
-                                            this.ipInterface.leave(groupAddress, sourceAddress);
-                                        }
-                                    }
-                                }
-                            }
-                        }
-                        else {
-                            int port = (Integer) entry;
-                            // Get the splitter for this port
-                            OutputChannelTee<UdpDatagram> tee = (OutputChannelTee<UdpDatagram>) entryMap.get(port);
-                            // Remove the channel (even though it may not be there).
-                            tee.remove(pushChannel);
-                            if (tee.isEmpty()) {
-                                // No more channels associated with this port - remove the
-                                // port entry
-                                entryIter.remove();
-                                if (entryMap.isEmpty()) {
-                                    // No more ports associated with this group - remove
-                                    // the group entry
-                                    groupIter.remove();
-                                    // No channels are left in this group - update the
-                                    // interface reception state
-                                    this.ipInterface.leave(groupAddress);
-                                }
-                            }
-                        }
-                    }
-                }
-            }
+        synchronized (this.lock) {
+            remove(pushChannel, null, null, -1);
         }
     }
 
@@ -630,16 +346,176 @@ final class ChannelMembershipManager
             logger.finer(this.log.entry("ChannelMembershipManager.shutdown"));
         }
 
-        synchronized (this.groupMap) {
-            try {
-                this.groupMap.close();
+        synchronized (this.lock) {
+            LinkedHashSet<OutputChannel<UdpDatagram>> channels = new LinkedHashSet<OutputChannel<UdpDatagram>>();
+            for (HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>> portMap : this.subscriptions.values()) {
+                for (LinkedHashSet<OutputChannel<UdpDatagram>> portChannels : portMap.values()) {
+                    channels.addAll(portChannels);
+                }
+            }
+            this.subscriptions.clear();
+            this.routingTable = ChannelRoutingTable.EMPTY;
+            for (OutputChannel<UdpDatagram> channel : channels) {
+                try {
+                    channel.close();
+                }
+                catch (IOException e) {
+                    logger.fine(this.log.msg("attempt to close channel failed with exception - " +
+                                             e.getClass().getName() + ":" + e.getMessage()));
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds a channel to the subscription for a source-group pair and port and publishes
+     * a new routing table.
+     * Must be called while holding the membership lock.
+     * 
+     * @return <code>true</code> if this is the first subscription for the source-group
+     *         pair, in which case the caller must update the interface reception state.
+     */
+    private boolean add(final OutputChannel<UdpDatagram> channel, final SourceGroup sourceGroup, final int port) {
+        boolean isNew = false;
+        HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>> portMap = this.subscriptions.get(sourceGroup);
+        if (portMap == null) {
+            portMap = new HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>();
+            this.subscriptions.put(sourceGroup, portMap);
+            isNew = true;
+        }
+        LinkedHashSet<OutputChannel<UdpDatagram>> channels = portMap.get(port);
+        if (channels == null) {
+            channels = new LinkedHashSet<OutputChannel<UdpDatagram>>();
+            portMap.put(port, channels);
+        }
+        if (channels.add(channel)) {
+            publish(sourceGroup, port, channels);
+        }
+        return isNew;
+    }
+
+    /**
+     * Removes a channel from every subscription that matches the specified group,
+     * source and port, updates the affected routes and updates the interface
+     * reception state for each source-group pair that no longer has any subscribers.
+     * Must be called while holding the membership lock.
+     * 
+     * @param channel
+     *            The channel to remove.
+     * @param groupAddress
+     *            The group address to match or <code>null</code> to match all groups.
+     * @param sourceAddress
+     *            The source address to match or <code>null</code> to match any-source
+     *            and all source-specific subscriptions.
+     * @param port
+     *            The port to match or -1 to match all ports.
+     * @throws IOException
+     */
+    private void remove(final OutputChannel<UdpDatagram> channel,
+                        final InetAddress groupAddress,
+                        final InetAddress sourceAddress,
+                        final int port) throws IOException {
+
+        LinkedHashSet<SourceGroup> emptied = new LinkedHashSet<SourceGroup>();
+
+        Iterator<Map.Entry<SourceGroup, HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>>> entryIter;
+        entryIter = this.subscriptions.entrySet().iterator();
+        while (entryIter.hasNext()) {
+            Map.Entry<SourceGroup, HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>> entry = entryIter.next();
+            SourceGroup sourceGroup = entry.getKey();
+            if ((groupAddress != null && !groupAddress.equals(sourceGroup.groupAddress)) ||
+                (sourceAddress != null && !sourceAddress.equals(sourceGroup.sourceAddress))) {
+                continue;
+            }
+            HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>> portMap = entry.getValue();
+            Iterator<Map.Entry<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>> portIter = portMap.entrySet().iterator();
+            while (portIter.hasNext()) {
+                Map.Entry<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>> portEntry = portIter.next();
+                if (port != -1 && port != portEntry.getKey()) {
+                    continue;
+                }
+                LinkedHashSet<OutputChannel<UdpDatagram>> channels = portEntry.getValue();
+                if (channels.remove(channel)) {
+                    if (channels.isEmpty()) {
+                        // No more channels associated with this port - remove the port entry
+                        portIter.remove();
+                    }
+                    publish(sourceGroup, portEntry.getKey(), channels);
+                }
+            }
+            if (portMap.isEmpty()) {
+                // No more ports associated with this source-group pair - remove the entry
+                entryIter.remove();
+                emptied.add(sourceGroup);
+            }
+        }
+
+        // No channels are left in these source-group pairs - update the interface
+        // reception state
+        for (SourceGroup sourceGroup : emptied) {
+            if (sourceGroup.sourceAddress == null) {
+                this.ipInterface.leave(sourceGroup.groupAddress);
             }
-            catch (IOException e) {
-                logger.fine(this.log.msg("attempt to close channel group map failed failed with exception - " +
-                                         e.getClass().getName() + ":" + e.getMessage()));
-                e.printStackTrace();
+            else {
+                this.ipInterface.leave(sourceGroup.groupAddress, sourceGroup.sourceAddress);
+            }
+        }
+    }
+
+    /**
+     * Updates the routing table entry for a source-group pair and port. Constructs
+     * and publishes a new table if the route cannot be added to the current table or
+     * the current table must be compacted.
+     * Must be called while holding the membership lock.
+     * 
+     * @param channels
+     *            The channels now subscribed to the route - may be empty.
+     */
+    private void publish(final SourceGroup sourceGroup,
+                         final int port,
+                         final LinkedHashSet<OutputChannel<UdpDatagram>> channels) {
+        byte[] groupAddress = sourceGroup.groupAddress.getAddress();
+        byte[] sourceAddress = sourceGroup.sourceAddress == null ? null : sourceGroup.sourceAddress.getAddress();
+        OutputChannel<UdpDatagram>[] route = channels.toArray(ChannelRoutingTable.newChannelArray(channels.size()));
+        if (!this.routingTable.update(groupAddress, sourceAddress, port, route)) {
+            rebuild(groupAddress.length);
+        }
+    }
+
+    /**
+     * Constructs a routing table from the current subscriptions and publishes it to
+     * the dispatch threads. Routes retired from the old table are not copied. The new
+     * table is sized to hold twice the current number of routes, so the cost of
+     * rebuilding is spread over the joins and leaves that follow.
+     * Must be called while holding the membership lock.
+     */
+    private void rebuild(final int addressLength) {
+        int routeCount = 0;
+        for (HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>> portMap : this.subscriptions.values()) {
+            routeCount += portMap.size();
+        }
+
+        if (routeCount == 0) {
+            this.routingTable = ChannelRoutingTable.EMPTY;
+            return;
+        }
+
+        ChannelRoutingTable table = ChannelRoutingTable.create(addressLength, Math.max(routeCount * 2, 8));
+        for (Map.Entry<SourceGroup, HashMap<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>>> entry : this.subscriptions.entrySet()) {
+            SourceGroup sourceGroup = entry.getKey();
+            byte[] groupAddress = sourceGroup.groupAddress.getAddress();
+            byte[] sourceAddress = sourceGroup.sourceAddress == null ? null : sourceGroup.sourceAddress.getAddress();
+            for (Map.Entry<Integer, LinkedHashSet<OutputChannel<UdpDatagram>>> portEntry : entry.getValue().entrySet()) {
+                LinkedHashSet<OutputChannel<UdpDatagram>> channels = portEntry.getValue();
+                table.put(groupAddress,
+                          sourceAddress,
+                          portEntry.getKey(),
+                          channels.toArray(ChannelRoutingTable.newChannelArray(channels.size())));
             }
         }
+
+        this.routingTable = table;
     }
 
     /**
@@ -648,41 +524,98 @@ final class ChannelMembershipManager
      * @throws InterruptedException
      * @throws IOException
      */
-    @SuppressWarnings("unchecked")
     private void send(final UdpDatagram message, final int milliseconds) throws InterruptedException, IOException {
-        synchronized (this.groupMap) {
-            try {
-                this.groupMap.send(message, milliseconds);
-            }
-            catch (IOException e) {
-                if (e instanceof MultiIOException) {
-                    MultiIOException me = (MultiIOException) e;
-                    Iterator<Throwable> iter = me.iterator();
-                    while (iter.hasNext()) {
-                        Throwable t = iter.next();
-                        if (t instanceof BoundException) {
-                            BoundException be = (BoundException) t;
-                            Object o = be.getObject();
-                            if (o instanceof OutputChannel<?>) {
-                                if (logger.isLoggable(Level.FINE)) {
-                                    Throwable te = be.getThrowable();
-                                    logger.fine(this.log.msg("removing channel " + Logging.identify(o) + " due to exception - " +
-                                                             te.getClass().getName() + ": " + te.getMessage()));
-                                }
-                                OutputChannel<UdpDatagram> channel = (OutputChannel<UdpDatagram>) o;
-                                leave(channel);
-                                return;
-                            }
-                        }
-                    }
+        ChannelRoutingTable table = this.routingTable;
+        if (table.isEmpty()) {
+            return;
+        }
+        byte[] groupAddress = message.getDestinationAddress();
+        int port = message.getDestinationPort();
+        send(table.get(groupAddress, message.getSourceAddress(), port), message, milliseconds);
+        send(table.get(groupAddress, null, port), message, milliseconds);
+    }
+
+    /**
+     * Sends a datagram to each channel in a routing table entry.
+     * A channel that has been closed or has failed, as signaled by a
+     * {@link ChannelClosedException} or {@link ClosedChannelException}, is removed from
+     * all of its subscriptions. Any other exception, including a send timeout, is
+     * assumed to be transient - the datagram is dropped for that channel but the
+     * channel remains subscribed.
+     * 
+     * @param channels
+     *            The channels for a route or <code>null</code> if there is no route.
+     * @param message
+     * @param milliseconds
+     * @throws InterruptedException
+     * @throws IOException
+     */
+    private void send(final OutputChannel<UdpDatagram>[] channels,
+                      final UdpDatagram message,
+                      final int milliseconds) throws InterruptedException, IOException {
+        if (channels != null) {
+            for (OutputChannel<UdpDatagram> channel : channels) {
+                try {
+                    channel.send(message, milliseconds);
+                }
+                catch (ChannelClosedException e) {
+                    evict(channel, e);
+                }
+                catch (ClosedChannelException e) {
+                    evict(channel, e);
                 }
-                if (logger.isLoggable(Level.INFO)) {
-                    logger.info(this.log.msg("closing all multicast channels due to unhandled exception - " +
-                                e.getClass().getName() + ": " + e.getMessage()));
+                catch (IOException e) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(this.log.msg("datagram dropped for channel " + Logging.identify(channel) +
+                                                 " due to exception - " + e.getClass().getName() + ": " + e.getMessage()));
+                    }
                 }
-                shutdown();
             }
         }
     }
 
+    /**
+     * Removes a closed or failed channel from all of its subscriptions.
+     */
+    private void evict(final OutputChannel<UdpDatagram> channel, final IOException e) throws IOException {
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(this.log.msg("removing channel " + Logging.identify(channel) + " due to exception - " +
+                                     e.getClass().getName() + ": " + e.getMessage()));
+        }
+        leave(channel);
+    }
+
+    /**
+     * Key for the subscriptions made to a single group by any source or a specific
+     * source.
+     */
+    private static final class SourceGroup {
+
+        final InetAddress groupAddress;
+
+        final InetAddress sourceAddress;
+
+        SourceGroup(final InetAddress groupAddress, final InetAddress sourceAddress) {
+            this.groupAddress = groupAddress;
+            this.sourceAddress = sourceAddress;
+        }
+
+        @Override
+        public int hashCode() {
+            return this.groupAddress.hashCode() * 31 + (this.sourceAddress == null ? 0 : this.sourceAddress.hashCode());
+        }
+
+        @Override
+        public boolean equals(final Object object) {
+            if (!(object instanceof SourceGroup)) {
+                return false;
+            }
+            SourceGroup other = (SourceGroup) object;
+            return this.groupAddress.equals(other.groupAddress) &&
+                   (this.sourceAddress == null
+                                   ? other.sourceAddress == null
+                                   : this.sourceAddress.equals(other.sourceAddress));
+        }
+    }
+
 }
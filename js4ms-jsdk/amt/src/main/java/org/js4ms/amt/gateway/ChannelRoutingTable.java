@@ -0,0 +1,449 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChannelRoutingTable.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.io.net.UdpDatagram;
+
+
+
+/**
+ * A table that maps a multicast group address, source address and destination port
+ * to the output channels subscribed to that combination.
+ * Any-source (ASM) subscriptions are stored with an all-zeros source address.
+ * <p>
+ * The table is an open-addressed hash table whose keys are stored in primitive arrays,
+ * so a lookup does not allocate, box or lock. A single writer, the
+ * {@link ChannelMembershipManager} while holding its membership lock, may
+ * {@link #update} the table while other threads dispatch datagrams through it, so a
+ * join or leave costs one slot write rather than a rebuild of the whole table.
+ * These in-place writes are safe for concurrent readers because:
+ * <ul>
+ * <li>The key for a new route is written before the route is stored in its slot, and
+ * each slot is read and written with volatile semantics, so a reader that finds a
+ * slot occupied also sees its key.</li>
+ * <li>The key of an occupied slot never changes and slots are never vacated, so a
+ * probe sequence that a reader is following is never broken. A route whose last
+ * channel leaves is retired by storing an empty channel array in its slot.</li>
+ * <li>A channel array is never modified once it has been stored, so a reader sees
+ * either the old or the new set of channels for a route.</li>
+ * </ul>
+ * Retired slots are only reclaimed when the table is replaced. {@link #update}
+ * reports that the writer must construct and publish a new table, which holds only
+ * the routes that still have channels, once the slots in use reach the load limit or
+ * once retired slots outnumber the remaining routes.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+abstract class ChannelRoutingTable {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * A table that contains no routes.
+     */
+    static final ChannelRoutingTable EMPTY = new IPv4Table(0);
+
+    /**
+     * Channel array stored in the slot of a route that no longer has any channels.
+     */
+    private static final OutputChannel<UdpDatagram>[] NO_CHANNELS = newChannelArray(0);
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an empty table sized to hold the specified number of routes.
+     * 
+     * @param addressLength
+     *            The length of the group and source addresses - 4 for IPv4 and 16 for
+     *            IPv6.
+     * @param routeCount
+     *            The number of routes that may be added to the table.
+     */
+    static ChannelRoutingTable create(final int addressLength, final int routeCount) {
+        return addressLength == 4 ? new IPv4Table(routeCount) : new IPv6Table(routeCount);
+    }
+
+    /**
+     * Constructs an array of output channels.
+     * Java does not allow the creation of an array of a parameterized type, so the
+     * array is created with the raw component type. This is safe because the array
+     * is only ever populated with <code>OutputChannel&lt;UdpDatagram&gt;</code> references.
+     */
+    @SuppressWarnings({
+                    "unchecked", "rawtypes"
+    })
+    static OutputChannel<UdpDatagram>[] newChannelArray(final int length) {
+        return new OutputChannel[length];
+    }
+
+    /**
+     * Spreads the bits of a key hash so that adjacent addresses and ports do not
+     * collide in the low-order bits used to index the table.
+     */
+    static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+
+    static int toInt(final byte[] address, final int offset) {
+        return ((address[offset] & 0xFF) << 24) |
+               ((address[offset + 1] & 0xFF) << 16) |
+               ((address[offset + 2] & 0xFF) << 8) |
+               (address[offset + 3] & 0xFF);
+    }
+
+    static long toLong(final byte[] address, final int offset) {
+        return ((long) toInt(address, offset) << 32) | (toInt(address, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    /**
+     * Mask applied to a key hash to compute a slot index.
+     */
+    final int mask;
+
+    /**
+     * Subscribed channels indexed by slot. A <code>null</code> entry marks an empty slot.
+     */
+    final AtomicReferenceArray<OutputChannel<UdpDatagram>[]> slots;
+
+    /**
+     * The maximum number of slots that may be used before the table must be replaced.
+     */
+    private final int limit;
+
+    /**
+     * The number of slots in use, including those of retired routes that no longer
+     * have any channels.
+     */
+    private int used = 0;
+
+    /**
+     * The number of routes that have at least one channel.
+     */
+    private volatile int size = 0;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * @param routeCount
+     */
+    ChannelRoutingTable(final int routeCount) {
+        // Keep the load factor at or below one half so probe sequences stay short
+        int capacity = 2;
+        while (capacity < routeCount * 2) {
+            capacity <<= 1;
+        }
+        this.mask = capacity - 1;
+        this.limit = capacity / 2;
+        this.slots = new AtomicReferenceArray<OutputChannel<UdpDatagram>[]>(capacity);
+    }
+
+    /**
+     * Gets the number of routes that have at least one channel.
+     */
+    final int size() {
+        return this.size;
+    }
+
+    /**
+     * Indicates whether the table contains any routes that have at least one channel.
+     */
+    final boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Gets the number of slots held by retired routes.
+     */
+    final int getRetiredCount() {
+        return this.used - this.size;
+    }
+
+    /**
+     * Replaces the channels stored for a route, adding the route if it is not already
+     * in the table.
+     * 
+     * @param groupAddress
+     *            The group address.
+     * @param sourceAddress
+     *            The source address or <code>null</code> for an any-source route.
+     * @param port
+     *            The destination port.
+     * @param channels
+     *            The channels that will receive datagrams that match the route or an
+     *            empty array if the route no longer has any channels. The array must
+     *            not be modified once it has been added to the table.
+     * @return <code>false</code> if the route must be added but the table is full, or
+     *         if the route was retired and retired slots now outnumber the remaining
+     *         routes. In either case the caller must construct a new table.
+     */
+    final boolean update(final byte[] groupAddress,
+                         final byte[] sourceAddress,
+                         final int port,
+                         final OutputChannel<UdpDatagram>[] channels) {
+        OutputChannel<UdpDatagram>[] route = channels.length == 0 ? NO_CHANNELS : channels;
+        int index = find(groupAddress, sourceAddress, port);
+        if (index >= 0) {
+            OutputChannel<UdpDatagram>[] previous = this.slots.get(index);
+            this.slots.set(index, route);
+            this.size += (route.length == 0 ? 0 : 1) - (previous.length == 0 ? 0 : 1);
+            // Compact once retired slots make up more than half of the load limit and
+            // outnumber the live routes, so misses do not probe through long runs of
+            // retired slots and the table shrinks after a mass leave
+            int retired = this.used - this.size;
+            return route.length != 0 || retired <= this.limit / 2 || retired <= this.size;
+        }
+        if (route.length == 0) {
+            return true;
+        }
+        if (this.used == this.limit || this == EMPTY) {
+            return false;
+        }
+        index = -index - 1;
+        setKey(index, groupAddress, sourceAddress, port);
+        this.used++;
+        this.slots.set(index, route);
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Adds a route to a table that has not been published.
+     * 
+     * @throws IllegalStateException
+     *             The table is full.
+     */
+    final void put(final byte[] groupAddress,
+                   final byte[] sourceAddress,
+                   final int port,
+                   final OutputChannel<UdpDatagram>[] channels) {
+        if (!update(groupAddress, sourceAddress, port, channels)) {
+            throw new IllegalStateException("routing table is full");
+        }
+    }
+
+    /**
+     * Locates the slot that holds a route.
+     * 
+     * @return The index of the slot that holds the route or, if the route is not in
+     *         the table, <code>-(index + 1)</code> where <code>index</code> is the
+     *         empty slot at which the route may be added.
+     */
+    abstract int find(byte[] groupAddress, byte[] sourceAddress, int port);
+
+    /**
+     * Stores the key for a route in the key arrays. Called before the route is
+     * stored in the slot.
+     */
+    abstract void setKey(int index, byte[] groupAddress, byte[] sourceAddress, int port);
+
+    /**
+     * Returns the channels subscribed to the group, port and, optionally, source of
+     * the datagram described by a multicast data view.
+     * 
+     * @param data
+     *            A view of the datagram.
+     * @param isSourceSpecific
+     *            Indicates whether to return the source-specific route or the any-source
+     *            route for the group and port.
+     * @return The channels for the route or <code>null</code> if the route has no
+     *         channels.
+     */
+    abstract OutputChannel<UdpDatagram>[] get(MulticastDataView data, boolean isSourceSpecific);
+
+    /**
+     * Returns the channels subscribed to a group, source and port.
+     * 
+     * @param groupAddress
+     *            The group address.
+     * @param sourceAddress
+     *            The source address or <code>null</code> for the any-source route.
+     * @param port
+     *            The destination port.
+     * @return The channels for the route or <code>null</code> if the route has no
+     *         channels.
+     */
+    final OutputChannel<UdpDatagram>[] get(final byte[] groupAddress, final byte[] sourceAddress, final int port) {
+        int index = find(groupAddress, sourceAddress, port);
+        if (index < 0) {
+            return null;
+        }
+        OutputChannel<UdpDatagram>[] channels = this.slots.get(index);
+        return channels.length == 0 ? null : channels;
+    }
+
+    /**
+     * Routing table specialized for IPv4 addresses. Each key is stored as three
+     * consecutive integers - group, source and port.
+     */
+    static final class IPv4Table
+                    extends ChannelRoutingTable {
+
+        private final int[] keys;
+
+        IPv4Table(final int routeCount) {
+            super(routeCount);
+            this.keys = new int[this.slots.length() * 3];
+        }
+
+        private int index(final int group, final int source, final int port) {
+            return mix((group * 31 + source) * 31 + port) & this.mask;
+        }
+
+        @Override
+        int find(final byte[] groupAddress, final byte[] sourceAddress, final int port) {
+            int group = toInt(groupAddress, 0);
+            int source = sourceAddress == null ? 0 : toInt(sourceAddress, 0);
+            int index = index(group, source, port);
+            while (this.slots.get(index) != null) {
+                int key = index * 3;
+                if (this.keys[key] == group && this.keys[key + 1] == source && this.keys[key + 2] == port) {
+                    return index;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return -index - 1;
+        }
+
+        @Override
+        void setKey(final int index, final byte[] groupAddress, final byte[] sourceAddress, final int port) {
+            int key = index * 3;
+            this.keys[key] = toInt(groupAddress, 0);
+            this.keys[key + 1] = sourceAddress == null ? 0 : toInt(sourceAddress, 0);
+            this.keys[key + 2] = port;
+        }
+
+        @Override
+        OutputChannel<UdpDatagram>[] get(final MulticastDataView data, final boolean isSourceSpecific) {
+            return find(data.getIPv4GroupAddress(),
+                        isSourceSpecific ? data.getIPv4SourceAddress() : 0,
+                        data.getDestinationPort());
+        }
+
+        private OutputChannel<UdpDatagram>[] find(final int group, final int source, final int port) {
+            int index = index(group, source, port);
+            OutputChannel<UdpDatagram>[] channels;
+            while ((channels = this.slots.get(index)) != null) {
+                int key = index * 3;
+                if (this.keys[key] == group && this.keys[key + 1] == source && this.keys[key + 2] == port) {
+                    return channels.length == 0 ? null : channels;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Routing table specialized for IPv6 addresses. Each group and source address is
+     * stored as two consecutive long values.
+     */
+    static final class IPv6Table
+                    extends ChannelRoutingTable {
+
+        private final long[] keys;
+
+        private final int[] ports;
+
+        IPv6Table(final int routeCount) {
+            super(routeCount);
+            this.keys = new long[this.slots.length() * 4];
+            this.ports = new int[this.slots.length()];
+        }
+
+        private int index(final long groupHigh,
+                          final long groupLow,
+                          final long sourceHigh,
+                          final long sourceLow,
+                          final int port) {
+            long h = ((groupHigh * 31 + groupLow) * 31 + sourceHigh) * 31 + sourceLow;
+            return mix((int) (h ^ (h >>> 32)) * 31 + port) & this.mask;
+        }
+
+        @Override
+        int find(final byte[] groupAddress, final byte[] sourceAddress, final int port) {
+            long groupHigh = toLong(groupAddress, 0);
+            long groupLow = toLong(groupAddress, 8);
+            long sourceHigh = sourceAddress == null ? 0 : toLong(sourceAddress, 0);
+            long sourceLow = sourceAddress == null ? 0 : toLong(sourceAddress, 8);
+            int index = index(groupHigh, groupLow, sourceHigh, sourceLow, port);
+            while (this.slots.get(index) != null) {
+                if (isMatch(index, groupHigh, groupLow, sourceHigh, sourceLow, port)) {
+                    return index;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return -index - 1;
+        }
+
+        @Override
+        void setKey(final int index, final byte[] groupAddress, final byte[] sourceAddress, final int port) {
+            int key = index * 4;
+            this.keys[key] = toLong(groupAddress, 0);
+            this.keys[key + 1] = toLong(groupAddress, 8);
+            this.keys[key + 2] = sourceAddress == null ? 0 : toLong(sourceAddress, 0);
+            this.keys[key + 3] = sourceAddress == null ? 0 : toLong(sourceAddress, 8);
+            this.ports[index] = port;
+        }
+
+        @Override
+        OutputChannel<UdpDatagram>[] get(final MulticastDataView data, final boolean isSourceSpecific) {
+            long groupHigh = data.getIPv6GroupAddress(0);
+            long groupLow = data.getIPv6GroupAddress(1);
+            long sourceHigh = isSourceSpecific ? data.getIPv6SourceAddress(0) : 0;
+            long sourceLow = isSourceSpecific ? data.getIPv6SourceAddress(1) : 0;
+            int port = data.getDestinationPort();
+            int index = index(groupHigh, groupLow, sourceHigh, sourceLow, port);
+            OutputChannel<UdpDatagram>[] channels;
+            while ((channels = this.slots.get(index)) != null) {
+                if (isMatch(index, groupHigh, groupLow, sourceHigh, sourceLow, port)) {
+                    return channels.length == 0 ? null : channels;
+                }
+                index = (index + 1) & this.mask;
+            }
+            return null;
+        }
+
+        private boolean isMatch(final int index,
+                                final long groupHigh,
+                                final long groupLow,
+                                final long sourceHigh,
+                                final long sourceLow,
+                                final int port) {
+            int key = index * 4;
+            return this.ports[index] == port &&
+                   this.keys[key] == groupHigh &&
+                   this.keys[key + 1] == groupLow &&
+                   this.keys[key + 2] == sourceHigh &&
+                   this.keys[key + 3] == sourceLow;
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChecksumPolicy.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Policies that control how an {@link AmtPseudoInterface} verifies the IPv4 header and
+ * UDP checksums of the packets carried by AMT Multicast Data messages.
+ * <p>
+ * The AMT tunnel datagram that carries each packet has already been checksummed by the
+ * local UDP stack, so applications that trust their relay may choose to verify only
+ * a sample of the encapsulated packets, to leave verification to the consumer or to
+ * skip verification entirely. Packets that fail verification are discarded.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public enum ChecksumPolicy {
+
+    /**
+     * Verify the checksums of every packet.
+     */
+    ALWAYS,
+
+    /**
+     * Verify the checksums of one packet in every N packets.
+     */
+    SAMPLED,
+
+    /**
+     * Do not verify the IPv4 header checksum. The UDP checksum is only verified if
+     * the consumer calls {@link org.js4ms.io.net.UdpDatagram#verifyChecksum()}.
+     */
+    LAZY,
+
+    /**
+     * Do not verify checksums.
+     */
+    NEVER
+}
@@ -0,0 +1,253 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChecksumVerifier.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.js4ms.amt.message.AmtMulticastDataMessage;
+import org.js4ms.io.net.UdpDatagram;
+import org.js4ms.ip.InternetChecksum;
+import org.js4ms.ip.ipv4.IPv4PacketView;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+
+
+
+/**
+ * Applies a {@link ChecksumPolicy} to the packets carried by the AMT Multicast Data
+ * messages received by an {@link AmtTunnelEndpoint} and counts the packets that fail
+ * verification under each policy.
+ * <p>
+ * The {@link #verify(MulticastDataView)} and {@link #verifyHeader(ByteBuffer)} methods
+ * must only be called by the thread that receives messages for the tunnel. The policy
+ * may be changed and the failure counts read by any thread.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class ChecksumVerifier
+                implements UdpDatagram.ChecksumCheck {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The default number of packets per verified packet used by the
+     * {@link ChecksumPolicy#SAMPLED} policy.
+     */
+    static final int DEFAULT_SAMPLE_INTERVAL = 100;
+
+    private static final int AMT_HEADER_LENGTH = 2;
+
+    private static final int UDP_HEADER_LENGTH = 8;
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private volatile ChecksumPolicy policy;
+
+    private volatile int sampleInterval;
+
+    /**
+     * Number of packets received since the last sampled packet.
+     */
+    private int sampleCount = 0;
+
+    /**
+     * Reusable view of the IPv4 header checked by {@link #verifyHeader(ByteBuffer)}.
+     */
+    private final IPv4PacketView header = new IPv4PacketView();
+
+    private final AtomicLongArray failureCounts = new AtomicLongArray(ChecksumPolicy.values().length);
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * @param policy
+     *            The verification policy.
+     * @param sampleInterval
+     *            The number of packets per verified packet when the policy is
+     *            {@link ChecksumPolicy#SAMPLED}.
+     */
+    ChecksumVerifier(final ChecksumPolicy policy, final int sampleInterval) {
+        setPolicy(policy);
+        setSampleInterval(sampleInterval);
+    }
+
+    /**
+     * Gets the verification policy.
+     */
+    ChecksumPolicy getPolicy() {
+        return this.policy;
+    }
+
+    /**
+     * Sets the verification policy applied to subsequently received packets.
+     * 
+     * @param policy
+     */
+    void setPolicy(final ChecksumPolicy policy) {
+        if (policy == null) {
+            throw new IllegalArgumentException("checksum policy must be non-null");
+        }
+        this.policy = policy;
+    }
+
+    /**
+     * Gets the number of packets per verified packet used by the
+     * {@link ChecksumPolicy#SAMPLED} policy.
+     */
+    int getSampleInterval() {
+        return this.sampleInterval;
+    }
+
+    /**
+     * Sets the number of packets per verified packet used by the
+     * {@link ChecksumPolicy#SAMPLED} policy.
+     * 
+     * @param sampleInterval
+     *            A value of one verifies every packet.
+     */
+    void setSampleInterval(final int sampleInterval) {
+        if (sampleInterval < 1) {
+            throw new IllegalArgumentException("checksum sample interval must be greater than zero");
+        }
+        this.sampleInterval = sampleInterval;
+    }
+
+    /**
+     * Gets the number of packets that failed checksum verification while the
+     * specified policy was in effect.
+     * 
+     * @param policy
+     */
+    long getFailureCount(final ChecksumPolicy policy) {
+        return this.failureCounts.get(policy.ordinal());
+    }
+
+    /**
+     * Applies the verification policy to the packet described by a view.
+     * If the policy is {@link ChecksumPolicy#LAZY}, the UDP checksum check is attached
+     * to the view so it can be passed on to the datagram constructed from the view.
+     * 
+     * @param data
+     *            A view bound to an AMT Multicast Data message.
+     * @return <code>true</code> if the packet passed verification or was not verified.
+     */
+    boolean verify(final MulticastDataView data) {
+        ChecksumPolicy policy = this.policy;
+        switch (policy) {
+            case ALWAYS:
+                return verify(data, policy);
+            case SAMPLED:
+                return !isSampled() || verify(data, policy);
+            case LAZY:
+                data.deferChecksum(this);
+                return true;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Applies the verification policy to the IPv4 header of a Multicast Data message
+     * that could not be bound to a {@link MulticastDataView}, e.g. a message carrying
+     * a fragment. Other messages are ignored.
+     * 
+     * @param buffer
+     *            A buffer containing an AMT message.
+     * @return <code>true</code> if the packet passed verification or was not verified.
+     */
+    boolean verifyHeader(final ByteBuffer buffer) {
+        ChecksumPolicy policy = this.policy;
+        if (policy != ChecksumPolicy.ALWAYS && policy != ChecksumPolicy.SAMPLED) {
+            return true;
+        }
+
+        int offset = buffer.position();
+        if (buffer.limit() - offset <= AMT_HEADER_LENGTH
+            || buffer.get(offset) != AmtMulticastDataMessage.MESSAGE_TYPE
+            || !this.header.wrap(buffer, offset + AMT_HEADER_LENGTH)) {
+            // Leave IPv6 and malformed packets to the message parser
+            return true;
+        }
+
+        if (policy == ChecksumPolicy.SAMPLED && !isSampled()) {
+            return true;
+        }
+
+        if (!this.header.isHeaderChecksumValid()) {
+            this.failureCounts.incrementAndGet(policy.ordinal());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Verifies the UDP checksum of a datagram whose verification was deferred under
+     * the {@link ChecksumPolicy#LAZY} policy. Called by the consumer of the datagram.
+     */
+    @Override
+    public boolean verify(final UdpDatagram datagram, final int checksum) {
+        byte[] sourceAddress = datagram.getSourceAddress();
+        if (checksum == 0 && sourceAddress.length == 4) {
+            // The sender did not compute a checksum
+            return true;
+        }
+
+        ByteBuffer payload = datagram.getPayload();
+        int length = payload.limit() + UDP_HEADER_LENGTH;
+        long sum = InternetChecksum.sumPseudoHeader(InternetChecksum.sumAddresses(sourceAddress,
+                                                                                  datagram.getDestinationAddress()),
+                                                    UdpPacket.IP_PROTOCOL_NUMBER,
+                                                    length)
+                   + datagram.getSourcePort()
+                   + datagram.getDestinationPort()
+                   + length
+                   + checksum
+                   + InternetChecksum.sum(payload, 0, payload.limit());
+
+        if (!InternetChecksum.isValid(sum)) {
+            this.failureCounts.incrementAndGet(ChecksumPolicy.LAZY.ordinal());
+            return false;
+        }
+        return true;
+    }
+
+    private boolean verify(final MulticastDataView data, final ChecksumPolicy policy) {
+        if (!data.isHeaderChecksumValid() || !data.isUdpChecksumValid()) {
+            this.failureCounts.incrementAndGet(policy.ordinal());
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Indicates whether the current packet is one of the packets sampled by the
+     * {@link ChecksumPolicy#SAMPLED} policy.
+     */
+    private boolean isSampled() {
+        if (++this.sampleCount < this.sampleInterval) {
+            return false;
+        }
+        this.sampleCount = 0;
+        return true;
+    }
+}
@@ -0,0 +1,61 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * DaemonThreadFactory.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+
+/**
+ * Constructs numbered daemon threads for the executors used by the gateway, so that
+ * idle executor threads do not prevent the application from exiting.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class DaemonThreadFactory
+                implements ThreadFactory {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final String name;
+
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * @param name
+     *            The prefix used to name the threads.
+     */
+    DaemonThreadFactory(final String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Thread newThread(final Runnable runnable) {
+        Thread thread = new Thread(runnable, this.name + " " + this.threadCount.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -23,9 +23,9 @@ package org.js4ms.amt.gateway;
  */
 
 
-import java.util.Timer;
 
 import org.js4ms.common.util.task.ReschedulableTask;
+import org.js4ms.common.util.task.TimingWheel;
 
 
 
@@ -33,7 +33,7 @@ final class GeneralQueryReportTimer extends ReschedulableTask {
 
     private final InterfaceMembershipManager interfaceMembershipManager;
 
-    GeneralQueryReportTimer(final Timer taskTimer, final InterfaceMembershipManager interfaceMembershipManager) {
+    GeneralQueryReportTimer(final TimingWheel taskTimer, final InterfaceMembershipManager interfaceMembershipManager) {
         super(taskTimer);
         this.interfaceMembershipManager = interfaceMembershipManager;
     }
@@ -25,9 +25,9 @@ package org.js4ms.amt.gateway;
 
 import java.net.InetAddress;
 import java.util.HashSet;
-import java.util.Timer;
 
 import org.js4ms.common.util.task.ReschedulableTask;
+import org.js4ms.common.util.task.TimingWheel;
 
 
 final class GroupQueryReportTask
@@ -42,7 +42,7 @@ final class GroupQueryReportTask
     /**
      * Constructs a response task for group and source-specific query.
      */
-    GroupQueryReportTask(final Timer taskTimer,
+    GroupQueryReportTask(final TimingWheel taskTimer,
                          final InterfaceMembershipManager interfaceMembershipManager,
                          final InetAddress groupAddress,
                          final HashSet<InetAddress> querySourceSet) {
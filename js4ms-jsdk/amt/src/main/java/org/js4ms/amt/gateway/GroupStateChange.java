@@ -0,0 +1,248 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * GroupStateChange.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.amt.message.GroupMembershipRecord;
+import org.js4ms.amt.message.SourceSet;
+import org.js4ms.amt.proxy.MembershipReport;
+import org.js4ms.amt.proxy.SourceFilter;
+import org.js4ms.common.util.logging.Log;
+import org.js4ms.common.util.logging.Logging;
+
+
+
+/**
+ * Tracks a pending state change for a single group. Each time the state change
+ * is reported, the group records describing the change are added to a report
+ * shared with other groups so that state changes for many groups are sent
+ * in a small number of report messages.
+ * See {@link InterfaceMembershipManager#sendStateChangeReports()}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class GroupStateChange {
+
+    private final InterfaceMembershipManager interfaceMembershipManager;
+
+    private final InetAddress groupAddress;
+
+    private final int retransmissionCount;
+
+    private int modeChangeTransmissionsRemaining;
+
+    private int sourceChangeTransmissionsRemaining;
+
+    private SourceFilter.Mode mode;
+
+    private final SourceSet sourceSet;
+
+    private final SourceSet allowNewSources;
+
+    private final SourceSet blockOldSources;
+
+    /**
+     * @param interfaceMembershipManager
+     * @param groupAddress
+     * @param retransmissionCount
+     * @param currentMode
+     * @param currentSourceSet
+     */
+    GroupStateChange(final InterfaceMembershipManager interfaceMembershipManager,
+                     final InetAddress groupAddress,
+                     final int retransmissionCount,
+                     final SourceFilter.Mode currentMode,
+                     final SourceSet currentSourceSet) {
+        this.interfaceMembershipManager = interfaceMembershipManager;
+        this.groupAddress = groupAddress;
+        this.retransmissionCount = retransmissionCount;
+        this.mode = currentMode;
+        this.sourceSet = new SourceSet(currentSourceSet);
+        this.allowNewSources = new SourceSet(currentSourceSet.getAddressLength());
+        this.blockOldSources = new SourceSet(currentSourceSet.getAddressLength());
+        this.modeChangeTransmissionsRemaining = retransmissionCount;
+        this.sourceChangeTransmissionsRemaining = 0;
+    }
+
+    /**
+     * 
+     * @param interfaceMembershipManager
+     * @param groupAddress
+     * @param retransmissionCount
+     * @param currentMode
+     * @param currentSourceSet
+     * @param newSourceSet
+     */
+    GroupStateChange(final InterfaceMembershipManager interfaceMembershipManager,
+                     final InetAddress groupAddress,
+                     final int retransmissionCount,
+                     final SourceFilter.Mode currentMode,
+                     final SourceSet currentSourceSet,
+                     final SourceSet newSourceSet) {
+        this(interfaceMembershipManager, groupAddress, retransmissionCount, currentMode, currentSourceSet);
+        this.sourceChangeTransmissionsRemaining = retransmissionCount;
+        this.modeChangeTransmissionsRemaining = 0;
+        updateSourceSet(newSourceSet);
+    }
+
+    /**
+     * @return
+     */
+    InetAddress getGroupAddress() {
+        return this.groupAddress;
+    }
+
+    /**
+     * 
+     * @param newSourceSet
+     */
+    synchronized void updateSourceSet(final SourceSet newSourceSet) {
+
+        /*
+         * Old State New State State-Change Record Sent
+         * --------- --------- ------------------------
+         * INCLUDE (A) INCLUDE (B) ALLOW (B-A), BLOCK (A-B)
+         * EXCLUDE (A) EXCLUDE (B) ALLOW (A-B), BLOCK (B-A)
+         */
+
+        if (this.modeChangeTransmissionsRemaining > 0) {
+            // The filter mode change has not been fully reported - report the new source
+            // set in the filter mode change record instead
+            this.sourceSet.set(newSourceSet);
+            this.modeChangeTransmissionsRemaining = this.retransmissionCount;
+            return;
+        }
+
+        if (this.mode == SourceFilter.Mode.INCLUDE) {
+            // ALLOW_NEW_SOURCES set is generated by subtracting the old set from the new
+            // set
+            this.allowNewSources.difference(newSourceSet, this.sourceSet);
+
+            // BLOCK_OLD_SOURCES set is generated by subtracting the new set from the old
+            // set
+            this.blockOldSources.difference(this.sourceSet, newSourceSet);
+        }
+        else {
+            // ALLOW_NEW_SOURCES set is generated by subtracting the new set from the old
+            // set
+            this.allowNewSources.difference(this.sourceSet, newSourceSet);
+
+            // BLOCK_OLD_SOURCES set is generated by subtracting the old set from the new
+            // set
+            this.blockOldSources.difference(newSourceSet, this.sourceSet);
+        }
+
+        Logger logger = InterfaceMembershipManager.logger;
+        Log log = new Log(this.interfaceMembershipManager);
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(log.msg("generating groups state change report for filter mode=" + this.mode.toString()));
+            logger.fine(log.msg(" ----> ALLOW_NEW_SOURCES"));
+            for (InetAddress address : this.allowNewSources) {
+                logger.fine(log.msg("  " + Logging.address(address)));
+            }
+            logger.fine(log.msg(" <---- ALLOW_NEW_SOURCES"));
+            logger.fine(log.msg(" ----> BLOCK_OLD_SOURCES"));
+            for (InetAddress address : this.blockOldSources) {
+                logger.fine(log.msg("  " + Logging.address(address)));
+            }
+            logger.fine(log.msg(" <---- BLOCK_OLD_SOURCES"));
+        }
+
+        this.sourceChangeTransmissionsRemaining = this.retransmissionCount;
+    }
+
+    /**
+     * Replaces any pending source set change with a filter mode change.
+     * Called when the filter mode changes before the previous change has been
+     * reported the required number of times.
+     * 
+     * @param newMode
+     * @param newSourceSet
+     */
+    synchronized void updateFilterMode(final SourceFilter.Mode newMode, final SourceSet newSourceSet) {
+        if (this.mode != newMode) {
+            this.mode = newMode;
+            this.sourceSet.set(newSourceSet);
+            this.allowNewSources.clear();
+            this.blockOldSources.clear();
+            this.modeChangeTransmissionsRemaining = this.retransmissionCount;
+            this.sourceChangeTransmissionsRemaining = 0;
+        }
+    }
+
+    /**
+     * Adds the group records for the next transmission of this state change to a
+     * report.
+     * 
+     * @param report
+     * @return <code>true</code> if the state change must be reported again.
+     */
+    synchronized boolean addRecords(final MembershipReport report) {
+
+        // The report is sent after this method returns, so the records are given
+        // copies of the source sets to isolate them from subsequent updates
+        if (this.modeChangeTransmissionsRemaining > 0) {
+            this.modeChangeTransmissionsRemaining--;
+
+            if (InterfaceMembershipManager.logger.isLoggable(Level.FINE)) {
+                InterfaceMembershipManager.logger.fine(new Log(this.interfaceMembershipManager)
+                                .msg("adding record for group filter mode change group="
+                                     + Logging.address(this.groupAddress)));
+            }
+
+            GroupMembershipRecord.Type type = (this.mode == SourceFilter.Mode.INCLUDE ?
+                            GroupMembershipRecord.Type.CHANGE_TO_INCLUDE_MODE :
+                            GroupMembershipRecord.Type.CHANGE_TO_EXCLUDE_MODE);
+
+            report.addRecord(new GroupMembershipRecord(this.groupAddress, type, new SourceSet(this.sourceSet)));
+        }
+        else if (this.sourceChangeTransmissionsRemaining > 0) {
+            this.sourceChangeTransmissionsRemaining--;
+
+            if (InterfaceMembershipManager.logger.isLoggable(Level.FINE)) {
+                InterfaceMembershipManager.logger.fine(new Log(this.interfaceMembershipManager)
+                                .msg("adding records for group source set change group="
+                                     + Logging.address(this.groupAddress)));
+            }
+
+            if (!this.allowNewSources.isEmpty()) {
+                report.addRecord(new GroupMembershipRecord(this.groupAddress,
+                                                           GroupMembershipRecord.Type.ALLOW_NEW_SOURCES,
+                                                           new SourceSet(this.allowNewSources)));
+            }
+
+            if (!this.blockOldSources.isEmpty()) {
+                report.addRecord(new GroupMembershipRecord(this.groupAddress,
+                                                           GroupMembershipRecord.Type.BLOCK_OLD_SOURCES,
+                                                           new SourceSet(this.blockOldSources)));
+            }
+        }
+
+        return this.modeChangeTransmissionsRemaining + this.sourceChangeTransmissionsRemaining > 0;
+    }
+
+}
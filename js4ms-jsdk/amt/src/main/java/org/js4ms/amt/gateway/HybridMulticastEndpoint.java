@@ -0,0 +1,987 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * HybridMulticastEndpoint.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.NetworkInterface;
+import java.util.ArrayList;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+import org.js4ms.common.util.logging.Logging;
+import org.js4ms.io.buffer.MemoryBudget;
+import org.js4ms.io.channel.MessageListener;
+import org.js4ms.io.channel.MpscMessagePipe;
+import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.io.channel.OverflowPolicy;
+import org.js4ms.io.channel.QueuedOutputChannel;
+import org.js4ms.io.net.MulticastEndpoint;
+import org.js4ms.io.net.NativeMulticastEndpoint;
+import org.js4ms.io.net.UdpDatagram;
+
+
+
+/**
+ * A {@link MulticastEndpoint} that receives multicast datagrams natively where the
+ * network supports it and falls back to AMT where it does not.
+ * <p>
+ * Each join is first made natively using a {@link NativeMulticastEndpoint}. The mode
+ * used to receive datagrams is tracked separately for each membership. If no datagram
+ * matching a membership is received natively within the native timeout of the join,
+ * or of the most recent native datagram that matched it, the membership switches to
+ * AMT mode and the join is repeated on an {@link AmtMulticastEndpoint}. The native
+ * membership remains active while the membership is in AMT mode, so if matching
+ * native datagrams start to arrive again the membership switches back to native mode
+ * and its AMT join is withdrawn. Only datagrams received in the current mode of a
+ * matching membership are delivered, so a consumer does not see duplicates while both
+ * paths are active, and a group that is available natively does not prevent another
+ * group from falling back to AMT.
+ * <p>
+ * Switching is performed by a monitor thread that is started by the first join, so
+ * the threads that receive datagrams never wait for an AMT join or leave to complete.
+ * <p>
+ * As with {@link AmtMulticastEndpoint}, incoming datagrams are either sent to an
+ * attached {@link OutputChannel} through a bounded {@link QueuedOutputChannel}, or
+ * queued internally and retrieved by calling {@link #receive(int)}. Unless buffer
+ * recycling is enabled when the endpoint is constructed, the receive buffers of the
+ * datagrams it delivers are not recycled, so the output channel or the caller of
+ * {@link #receive(int)} may keep the datagrams it is given. If recycling is enabled,
+ * consumers must follow the rules described by {@link AmtMulticastEndpoint}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class HybridMulticastEndpoint
+                implements MulticastEndpoint {
+
+    /*-- Inner Classes ------------------------------------------------------*/
+
+    /**
+     * Identifies the path used to receive datagrams.
+     */
+    public enum Mode {
+        /**
+         * Datagrams are received from the native multicast network.
+         */
+        NATIVE,
+        /**
+         * Datagrams are received through an AMT tunnel.
+         */
+        AMT
+    }
+
+    /**
+     * A join made by the application and the path currently used to receive the
+     * datagrams that match it. The join is repeated on the AMT endpoint when the
+     * membership switches to AMT mode.
+     */
+    static final class Membership {
+
+        final InetAddress groupAddress;
+
+        /**
+         * The source address or <code>null</code> for an any-source join.
+         */
+        final InetAddress sourceAddress;
+
+        final int port;
+
+        final long joinTime;
+
+        /**
+         * The time of the most recent native datagram that matched this membership.
+         */
+        volatile long lastReceiveTime = 0;
+
+        /**
+         * The path used to receive datagrams. Only changed while holding the endpoint
+         * lock.
+         */
+        volatile Mode mode = Mode.NATIVE;
+
+        /**
+         * Indicates whether the membership has been joined on the AMT endpoint.
+         * Guarded by the endpoint lock.
+         */
+        boolean isAmtJoined = false;
+
+        Membership(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) {
+            this.groupAddress = groupAddress;
+            this.sourceAddress = sourceAddress;
+            this.port = port;
+            this.joinTime = System.currentTimeMillis();
+        }
+
+        boolean matches(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) {
+            return this.port == port && this.groupAddress.equals(groupAddress) &&
+                   (this.sourceAddress == null ? sourceAddress == null : this.sourceAddress.equals(sourceAddress));
+        }
+
+        /**
+         * Indicates whether a datagram was sent to the group and port of this membership
+         * by a source that this membership accepts.
+         */
+        boolean matches(final UdpDatagram datagram) {
+            return this.port == datagram.getDestinationPort() &&
+                   this.groupAddress.equals(datagram.getDestinationInetAddress()) &&
+                   (this.sourceAddress == null || this.sourceAddress.equals(datagram.getSourceInetAddress()));
+        }
+
+        void join(final MulticastEndpoint endpoint) throws IOException, InterruptedException {
+            if (this.sourceAddress == null) {
+                endpoint.join(this.groupAddress, this.port);
+            }
+            else {
+                endpoint.join(this.groupAddress, this.sourceAddress, this.port);
+            }
+        }
+
+        void leave(final MulticastEndpoint endpoint) throws IOException {
+            if (this.sourceAddress == null) {
+                endpoint.leave(this.groupAddress, this.port);
+            }
+            else {
+                endpoint.leave(this.groupAddress, this.sourceAddress, this.port);
+            }
+        }
+    }
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(HybridMulticastEndpoint.class.getName());
+
+    /**
+     * The default time allowed for native datagrams to arrive before the endpoint
+     * switches to AMT.
+     */
+    public static final long DEFAULT_NATIVE_TIMEOUT = 3000;
+
+    /**
+     * The shared memory budget account charged for queued datagrams.
+     */
+    private static final MemoryBudget.Account memoryAccount = MemoryBudget.getSharedInstance().getAccount("HybridMulticastEndpoint");
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final Log log = new Log(this);
+
+    /**
+     * Monitor object used to synchronize the receive threads with the monitor thread.
+     * Never held while joining or leaving groups.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * Serializes joins and leaves made by applications and by the monitor thread.
+     */
+    private final Object membershipLock = new Object();
+
+    private final int port;
+
+    private final InetAddress relayDiscoveryAddress;
+
+    private final long nativeTimeout;
+
+    /**
+     * Indicates whether the buffers that back the datagrams delivered by this endpoint
+     * may be recycled.
+     */
+    private final boolean isBufferRecyclingEnabled;
+
+    private final NativeMulticastEndpoint nativeEndpoint;
+
+    private final AmtMulticastEndpoint amtEndpoint;
+
+    /**
+     * The queue used to forward datagrams to an externally constructed push channel.
+     */
+    private final QueuedOutputChannel<UdpDatagram> pushQueue;
+
+    /**
+     * The queue used to buffer datagrams. Not used if a push channel is used.
+     */
+    private final MpscMessagePipe<UdpDatagram> datagramQueue;
+
+    /**
+     * The joins made by the application. Only modified while holding the membership
+     * lock. Read without a lock by the threads that receive datagrams.
+     */
+    private final CopyOnWriteArrayList<Membership> memberships = new CopyOnWriteArrayList<Membership>();
+
+    private Thread thread = null;
+
+    private volatile boolean isOpen = true;
+
+    private final AtomicLong nativeCount = new AtomicLong();
+
+    private final AtomicLong amtCount = new AtomicLong();
+
+    private final AtomicLong discardedCount = new AtomicLong();
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private final AtomicLong switchCount = new AtomicLong();
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an endpoint that uses the default relay discovery address, network
+     * interface and native timeout, and sends incoming datagrams to an output channel.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @throws IOException
+     *             The native endpoint could not be constructed.
+     */
+    public HybridMulticastEndpoint(final int port,
+                                   final OutputChannel<UdpDatagram> pushChannel) throws IOException {
+        this(port, AmtUDPInterfaceManager.getDefaultRelayDiscoveryAddress(), null, DEFAULT_NATIVE_TIMEOUT, pushChannel);
+    }
+
+    /**
+     * Constructs an endpoint that sends incoming datagrams to an output channel.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay if native multicast is not available.
+     * @param networkInterface
+     *            The interface used to join groups natively, or <code>null</code> to use
+     *            the interface returned by {@link NativeMulticastEndpoint#getDefaultInterface()}.
+     * @param nativeTimeout
+     *            The time in milliseconds allowed for native datagrams to arrive before
+     *            the endpoint switches to AMT.
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @throws IOException
+     *             The native endpoint could not be constructed.
+     */
+    public HybridMulticastEndpoint(final int port,
+                                   final InetAddress relayDiscoveryAddress,
+                                   final NetworkInterface networkInterface,
+                                   final long nativeTimeout,
+                                   final OutputChannel<UdpDatagram> pushChannel) throws IOException {
+        this(port, relayDiscoveryAddress, networkInterface, nativeTimeout, pushChannel, false);
+    }
+
+    /**
+     * Constructs an endpoint that sends incoming datagrams to an output channel.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay if native multicast is not available.
+     * @param networkInterface
+     *            The interface used to join groups natively, or <code>null</code> to use
+     *            the interface returned by {@link NativeMulticastEndpoint#getDefaultInterface()}.
+     * @param nativeTimeout
+     *            The time in milliseconds allowed for native datagrams to arrive before
+     *            the endpoint switches to AMT.
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams sent to the
+     *            push channel are recycled. If so, the push channel must retain any
+     *            datagram it keeps after its send method returns.
+     * @throws IOException
+     *             The native endpoint could not be constructed.
+     */
+    public HybridMulticastEndpoint(final int port,
+                                   final InetAddress relayDiscoveryAddress,
+                                   final NetworkInterface networkInterface,
+                                   final long nativeTimeout,
+                                   final OutputChannel<UdpDatagram> pushChannel,
+                                   final boolean isBufferRecyclingEnabled) throws IOException {
+        this(port, relayDiscoveryAddress, networkInterface, nativeTimeout,
+             new QueuedOutputChannel<UdpDatagram>(pushChannel,
+                                                  AmtMulticastEndpoint.DEFAULT_QUEUE_CAPACITY,
+                                                  OverflowPolicy.DROP_OLDEST,
+                                                  memoryAccount),
+             null,
+             isBufferRecyclingEnabled);
+    }
+
+    /**
+     * Constructs an endpoint that buffers incoming datagrams in an internal queue that
+     * can be read using the {@link #receive(int)} method.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay if native multicast is not available.
+     * @param networkInterface
+     *            The interface used to join groups natively, or <code>null</code> to use
+     *            the interface returned by {@link NativeMulticastEndpoint#getDefaultInterface()}.
+     * @param nativeTimeout
+     *            The time in milliseconds allowed for native datagrams to arrive before
+     *            the endpoint switches to AMT.
+     * @param bufferCapacity
+     *            The desired internal queue size.
+     * @throws IOException
+     *             The native endpoint could not be constructed.
+     */
+    public HybridMulticastEndpoint(final int port,
+                                   final InetAddress relayDiscoveryAddress,
+                                   final NetworkInterface networkInterface,
+                                   final long nativeTimeout,
+                                   final int bufferCapacity) throws IOException {
+        this(port, relayDiscoveryAddress, networkInterface, nativeTimeout, bufferCapacity, false);
+    }
+
+    /**
+     * Constructs an endpoint that buffers incoming datagrams in an internal queue that
+     * can be read using the {@link #receive(int)} method.
+     * 
+     * @param port
+     *            The endpoint will forward datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param relayDiscoveryAddress
+     *            The address (anycast or unicast) that the endpoint will use to
+     *            locate an AMT relay if native multicast is not available.
+     * @param networkInterface
+     *            The interface used to join groups natively, or <code>null</code> to use
+     *            the interface returned by {@link NativeMulticastEndpoint#getDefaultInterface()}.
+     * @param nativeTimeout
+     *            The time in milliseconds allowed for native datagrams to arrive before
+     *            the endpoint switches to AMT.
+     * @param bufferCapacity
+     *            The desired internal queue size.
+     * @param isBufferRecyclingEnabled
+     *            Indicates whether the receive buffers of the datagrams returned by
+     *            {@link #receive(int)} are recycled once the caller releases them.
+     * @throws IOException
+     *             The native endpoint could not be constructed.
+     */
+    public HybridMulticastEndpoint(final int port,
+                                   final InetAddress relayDiscoveryAddress,
+                                   final NetworkInterface networkInterface,
+                                   final long nativeTimeout,
+                                   final int bufferCapacity,
+                                   final boolean isBufferRecyclingEnabled) throws IOException {
+        this(port, relayDiscoveryAddress, networkInterface, nativeTimeout, null,
+             new MpscMessagePipe<UdpDatagram>(bufferCapacity, memoryAccount),
+             isBufferRecyclingEnabled);
+    }
+
+    private HybridMulticastEndpoint(final int port,
+                                    final InetAddress relayDiscoveryAddress,
+                                    final NetworkInterface networkInterface,
+                                    final long nativeTimeout,
+                                    final QueuedOutputChannel<UdpDatagram> pushQueue,
+                                    final MpscMessagePipe<UdpDatagram> datagramQueue,
+                                    final boolean isBufferRecyclingEnabled) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.HybridMulticastEndpoint", port,
+                                        Logging.address(relayDiscoveryAddress), networkInterface, nativeTimeout));
+        }
+
+        if (nativeTimeout <= 0) {
+            throw new IllegalArgumentException("native timeout must be greater than zero");
+        }
+
+        this.port = port;
+        this.relayDiscoveryAddress = relayDiscoveryAddress;
+        this.nativeTimeout = nativeTimeout;
+        this.isBufferRecyclingEnabled = isBufferRecyclingEnabled;
+        this.pushQueue = pushQueue;
+        this.datagramQueue = datagramQueue;
+
+        this.nativeEndpoint = new NativeMulticastEndpoint(port, networkInterface, new OutputChannel<UdpDatagram>() {
+
+            @Override
+            public void send(final UdpDatagram message, final int milliseconds) {
+                HybridMulticastEndpoint.this.handleNativeDatagram(message);
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        // This endpoint decides whether to detach the datagrams it delivers, so the AMT
+        // endpoint is left to recycle them
+        this.amtEndpoint = new AmtMulticastEndpoint(port, relayDiscoveryAddress, new MessageListener<UdpDatagram>() {
+
+            @Override
+            public void onMessage(final UdpDatagram message) {
+                HybridMulticastEndpoint.this.handleAmtDatagram(message);
+            }
+        }, null, 0, null, true);
+    }
+
+    /**
+     * Gets the UDP port number assigned to the endpoint when it was constructed.
+     * 
+     * @return An integer port number in the range 0-32767.
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Gets the relay discovery address assigned to the endpoint when it was constructed.
+     */
+    public InetAddress getRelayDiscoveryAddress() {
+        return this.relayDiscoveryAddress;
+    }
+
+    /**
+     * Gets the time in milliseconds allowed for native datagrams to arrive before the
+     * endpoint switches to AMT.
+     */
+    public long getNativeTimeout() {
+        return this.nativeTimeout;
+    }
+
+    /**
+     * Indicates whether the receive buffers of the datagrams delivered by this endpoint
+     * are recycled.
+     */
+    public boolean isBufferRecyclingEnabled() {
+        return this.isBufferRecyclingEnabled;
+    }
+
+    /**
+     * Gets the path currently used to receive datagrams.
+     * 
+     * @return {@link Mode#AMT} if any membership is receiving datagrams through AMT,
+     *         otherwise {@link Mode#NATIVE}.
+     */
+    public Mode getMode() {
+        for (Membership membership : this.memberships) {
+            if (membership.mode == Mode.AMT) {
+                return Mode.AMT;
+            }
+        }
+        return Mode.NATIVE;
+    }
+
+    /**
+     * Gets the path currently used to receive datagrams for a membership.
+     * 
+     * @param groupAddress
+     * @param sourceAddress
+     *            The source address of a source-specific join or <code>null</code> for
+     *            an any-source join.
+     * @param port
+     * @return The mode of the membership or <code>null</code> if the group has not been
+     *         joined with these parameters.
+     */
+    public Mode getMode(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) {
+        for (Membership membership : this.memberships) {
+            if (membership.matches(groupAddress, sourceAddress, port)) {
+                return membership.mode;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Gets the endpoint used to receive datagrams natively.
+     */
+    public NativeMulticastEndpoint getNativeEndpoint() {
+        return this.nativeEndpoint;
+    }
+
+    /**
+     * Gets the endpoint used to receive datagrams through AMT.
+     */
+    public AmtMulticastEndpoint getAmtEndpoint() {
+        return this.amtEndpoint;
+    }
+
+    /**
+     * Gets the queue used to forward datagrams to the push channel supplied when the
+     * endpoint was constructed.
+     * 
+     * @return The push channel queue or <code>null</code> if the endpoint buffers
+     *         datagrams for retrieval using {@link #receive(int)}.
+     */
+    public QueuedOutputChannel<UdpDatagram> getPushQueue() {
+        return this.pushQueue;
+    }
+
+    /**
+     * Gets the number of datagrams delivered from the native multicast network.
+     */
+    public long getNativeCount() {
+        return this.nativeCount.get();
+    }
+
+    /**
+     * Gets the number of datagrams delivered from the AMT tunnel.
+     */
+    public long getAmtCount() {
+        return this.amtCount.get();
+    }
+
+    /**
+     * Gets the number of datagrams received through AMT that did not match a
+     * membership in AMT mode, e.g. because the membership had switched back to native
+     * mode. These datagrams are discarded.
+     */
+    public long getDiscardedCount() {
+        return this.discardedCount.get();
+    }
+
+    /**
+     * Gets the number of datagrams discarded because the internal queue read by
+     * {@link #receive(int)} was full.
+     */
+    public long getOverflowCount() {
+        return this.overflowCount.get();
+    }
+
+    /**
+     * Gets the number of times a membership has switched between native and AMT mode.
+     */
+    public long getSwitchCount() {
+        return this.switchCount.get();
+    }
+
+    /**
+     * Leaves all groups and closes the native and AMT endpoints.
+     * 
+     * @throws IOException
+     *             The AMT interface used by this endpoint has reported an I/O error.
+     * @throws InterruptedException
+     *             The calling thread was interrupted while waiting for the
+     *             underlying AMT interface to complete an operation.
+     */
+    public void close() throws IOException, InterruptedException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.close"));
+        }
+
+        synchronized (this.lock) {
+            this.isOpen = false;
+            if (this.thread != null) {
+                this.thread.interrupt();
+                this.thread = null;
+            }
+            this.lock.notifyAll();
+        }
+
+        synchronized (this.membershipLock) {
+            this.memberships.clear();
+            this.nativeEndpoint.close();
+            this.amtEndpoint.close();
+        }
+
+        if (this.pushQueue != null) {
+            this.pushQueue.stop();
+        }
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress) throws IOException, InterruptedException {
+        join(groupAddress, this.port);
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress, final int port) throws IOException, InterruptedException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.join", Logging.address(groupAddress), port));
+        }
+
+        join(new Membership(groupAddress, null, port));
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress, final InetAddress sourceAddress) throws IOException, InterruptedException {
+        join(groupAddress, sourceAddress, this.port);
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) throws IOException,
+                                                                                                        InterruptedException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.join", Logging.address(groupAddress),
+                                        Logging.address(sourceAddress), port));
+        }
+
+        join(new Membership(groupAddress, sourceAddress, port));
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.leave", Logging.address(groupAddress)));
+        }
+
+        synchronized (this.membershipLock) {
+            for (Membership membership : this.memberships) {
+                if (membership.groupAddress.equals(groupAddress)) {
+                    this.memberships.remove(membership);
+                }
+            }
+            this.nativeEndpoint.leave(groupAddress);
+            this.amtEndpoint.leave(groupAddress);
+            signal();
+        }
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress, final InetAddress sourceAddress) throws IOException {
+        leave(groupAddress, sourceAddress, this.port);
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress, final int port) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.leave", Logging.address(groupAddress), port));
+        }
+
+        synchronized (this.membershipLock) {
+            for (Membership membership : this.memberships) {
+                if (membership.port == port && membership.groupAddress.equals(groupAddress)) {
+                    this.memberships.remove(membership);
+                }
+            }
+            this.nativeEndpoint.leave(groupAddress, port);
+            this.amtEndpoint.leave(groupAddress, port);
+            signal();
+        }
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.leave", Logging.address(groupAddress),
+                                        Logging.address(sourceAddress), port));
+        }
+
+        synchronized (this.membershipLock) {
+            for (Membership membership : this.memberships) {
+                if (membership.matches(groupAddress, sourceAddress, port)) {
+                    this.memberships.remove(membership);
+                }
+            }
+            this.nativeEndpoint.leave(groupAddress, sourceAddress, port);
+            this.amtEndpoint.leave(groupAddress, sourceAddress, port);
+            signal();
+        }
+    }
+
+    @Override
+    public void leave() throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.leave"));
+        }
+
+        synchronized (this.membershipLock) {
+            this.memberships.clear();
+            this.nativeEndpoint.leave();
+            this.amtEndpoint.leave();
+            signal();
+        }
+    }
+
+    /**
+     * Retrieves the next datagram from the internal queue.
+     * If {@link #isBufferRecyclingEnabled() buffer recycling} is enabled, the caller must
+     * {@link UdpDatagram#release() release} each datagram returned by this method once
+     * it is done with it.
+     */
+    @Override
+    public UdpDatagram receive(final int milliseconds) throws IOException, InterruptedIOException, InterruptedException {
+        if (this.datagramQueue == null) {
+            throw new IOException("datagrams are delivered to a push channel");
+        }
+        return this.datagramQueue.receive(milliseconds);
+    }
+
+    /**
+     * Joins a group natively. The native timeout of the membership starts with the
+     * join.
+     */
+    private void join(final Membership membership) throws IOException, InterruptedException {
+        synchronized (this.membershipLock) {
+            if (!this.isOpen) {
+                throw new IOException("endpoint closed");
+            }
+            membership.join(this.nativeEndpoint);
+            this.memberships.add(membership);
+            synchronized (this.lock) {
+                start();
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Wakes the monitor thread so that it reevaluates the memberships.
+     */
+    private void signal() {
+        synchronized (this.lock) {
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Starts the monitor thread if it has not been started.
+     * Must be called while holding the lock.
+     */
+    private void start() {
+        if (this.thread == null && this.isOpen) {
+            this.thread = new Thread(new Runnable() {
+
+                @Override
+                public void run() {
+                    HybridMulticastEndpoint.this.monitor();
+                }
+            }, HybridMulticastEndpoint.class.getName());
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Waits for the native timeout of a membership to expire or for native datagrams
+     * to resume for a membership in AMT mode, and joins or leaves the membership on
+     * the AMT endpoint accordingly. Executed by the monitor thread.
+     */
+    private void monitor() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("HybridMulticastEndpoint.monitor"));
+        }
+
+        ArrayList<Membership> joins = new ArrayList<Membership>();
+        ArrayList<Membership> leaves = new ArrayList<Membership>();
+
+        try {
+            while (true) {
+                synchronized (this.lock) {
+                    while (true) {
+                        if (!this.isOpen) {
+                            return;
+                        }
+                        long now = System.currentTimeMillis();
+                        long timeout = 0;
+                        for (Membership membership : this.memberships) {
+                            if (membership.mode != Mode.NATIVE) {
+                                continue;
+                            }
+                            if (membership.isAmtJoined) {
+                                // Native datagrams have resumed
+                                membership.isAmtJoined = false;
+                                leaves.add(membership);
+                                continue;
+                            }
+                            long deadline = Math.max(membership.joinTime, membership.lastReceiveTime) + this.nativeTimeout;
+                            if (now >= deadline) {
+                                membership.mode = Mode.AMT;
+                                membership.isAmtJoined = true;
+                                this.switchCount.incrementAndGet();
+                                joins.add(membership);
+                            }
+                            else if (timeout == 0 || deadline - now < timeout) {
+                                timeout = deadline - now;
+                            }
+                        }
+                        if (!joins.isEmpty() || !leaves.isEmpty()) {
+                            break;
+                        }
+                        this.lock.wait(timeout);
+                    }
+                }
+
+                synchronized (this.membershipLock) {
+                    for (Membership membership : leaves) {
+                        leaveAmt(membership);
+                    }
+                    for (Membership membership : joins) {
+                        joinAmt(membership);
+                    }
+                }
+                joins.clear();
+                leaves.clear();
+            }
+        }
+        catch (InterruptedException e) {
+            // Closed
+        }
+        finally {
+            if (logger.isLoggable(Level.FINER)) {
+                logger.finer(this.log.msg("monitor thread stopped"));
+            }
+        }
+    }
+
+    /**
+     * Repeats a join on the AMT endpoint. Must be called while holding the membership
+     * lock.
+     */
+    private void joinAmt(final Membership membership) throws InterruptedException {
+        if (!this.memberships.contains(membership)) {
+            // The application has left the group
+            return;
+        }
+        if (logger.isLoggable(Level.INFO)) {
+            logger.info(this.log.msg("no native multicast datagrams received for group " +
+                                     Logging.address(membership.groupAddress) + " within " +
+                                     this.nativeTimeout + "ms - switching to AMT"));
+        }
+        try {
+            membership.join(this.amtEndpoint);
+        }
+        catch (IOException e) {
+            logger.warning(this.log.msg("AMT join failed - " + e.getClass().getSimpleName() + ":" + e.getMessage()));
+        }
+    }
+
+    /**
+     * Withdraws a join from the AMT endpoint. Any other membership in AMT mode that the
+     * AMT leave also removes is joined again. Must be called while holding the
+     * membership lock.
+     */
+    private void leaveAmt(final Membership membership) throws InterruptedException {
+        if (!this.memberships.contains(membership)) {
+            // The application has left the group
+            return;
+        }
+        if (logger.isLoggable(Level.INFO)) {
+            logger.info(this.log.msg("native multicast datagrams received for group " +
+                                     Logging.address(membership.groupAddress) + " - leaving AMT group"));
+        }
+        try {
+            membership.leave(this.amtEndpoint);
+            if (membership.sourceAddress == null) {
+                // An any-source leave also removes source-specific joins on the same group and port
+                for (Membership other : this.memberships) {
+                    if (other != membership && other.mode == Mode.AMT && other.port == membership.port &&
+                        other.groupAddress.equals(membership.groupAddress)) {
+                        other.join(this.amtEndpoint);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            logger.warning(this.log.msg("AMT leave failed - " + e.getClass().getSimpleName() + ":" + e.getMessage()));
+        }
+    }
+
+    /**
+     * Delivers a datagram received natively and switches any matching membership that
+     * is in AMT mode back to native mode. Called on the native endpoint selector loop
+     * thread.
+     */
+    private void handleNativeDatagram(final UdpDatagram datagram) {
+        long now = System.currentTimeMillis();
+        boolean isResumed = false;
+        for (Membership membership : this.memberships) {
+            if (membership.matches(datagram)) {
+                membership.lastReceiveTime = now;
+                isResumed |= membership.mode == Mode.AMT;
+            }
+        }
+        if (isResumed) {
+            synchronized (this.lock) {
+                for (Membership membership : this.memberships) {
+                    if (membership.mode == Mode.AMT && membership.matches(datagram)) {
+                        membership.mode = Mode.NATIVE;
+                        this.switchCount.incrementAndGet();
+                    }
+                }
+                this.lock.notifyAll();
+            }
+        }
+        this.nativeCount.incrementAndGet();
+        deliver(datagram);
+    }
+
+    /**
+     * Delivers a datagram received through AMT if it matches a membership that is in
+     * AMT mode. Called on the thread that dispatches AMT datagrams.
+     */
+    private void handleAmtDatagram(final UdpDatagram datagram) {
+        for (Membership membership : this.memberships) {
+            if (membership.mode == Mode.AMT && membership.matches(datagram)) {
+                this.amtCount.incrementAndGet();
+                deliver(datagram);
+                return;
+            }
+        }
+        this.discardedCount.incrementAndGet();
+    }
+
+    /**
+     * Sends a datagram to the push channel queue or places it in the internal queue.
+     */
+    private void deliver(final UdpDatagram datagram) {
+        if (!this.isBufferRecyclingEnabled) {
+            // The consumer may keep the datagram without retaining it
+            datagram.detach();
+        }
+        if (this.pushQueue != null) {
+            try {
+                this.pushQueue.send(datagram, Integer.MAX_VALUE);
+            }
+            catch (IOException e) {
+                logger.fine(this.log.msg("push channel send failed - " + e.getMessage()));
+            }
+            catch (InterruptedException e) {
+                logger.fine(this.log.msg("push channel send interrupted"));
+            }
+        }
+        else {
+            // The queue holds a reference that passes to the caller of receive()
+            datagram.retain();
+            if (!this.datagramQueue.offer(datagram)) {
+                datagram.release();
+                this.overflowCount.incrementAndGet();
+            }
+        }
+    }
+
+}
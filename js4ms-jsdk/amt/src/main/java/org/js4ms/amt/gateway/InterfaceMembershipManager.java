@@ -28,17 +28,19 @@ import java.net.InetAddress;
 import java.net.PortUnreachableException;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Timer;
+import java.util.Iterator;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.js4ms.amt.message.GroupMembershipRecord;
+import org.js4ms.amt.message.SourceSet;
 import org.js4ms.amt.proxy.MembershipQuery;
 import org.js4ms.amt.proxy.MembershipReport;
 import org.js4ms.amt.proxy.SourceFilter;
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.LoggableBase;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.task.TimingWheel;
 import org.js4ms.io.channel.OutputChannel;
 
 
@@ -51,6 +53,17 @@ final class InterfaceMembershipManager
 
     public static final Logger logger = Logger.getLogger(InterfaceMembershipManager.class.getName());
 
+    /**
+     * The default time, in milliseconds, that a group state change is held so that it
+     * can be reported together with other state changes.
+     */
+    static final int DEFAULT_REPORT_COALESCING_INTERVAL = 20;
+
+    /**
+     * The default maximum IGMPv3 or MLDv2 report message length.
+     */
+    static final int DEFAULT_MAXIMUM_REPORT_LENGTH = 1400;
+
     /*-- Member Variables ---------------------------------------------------*/
 
     private final Log log = new Log(this);
@@ -62,7 +75,19 @@ final class InterfaceMembershipManager
      */
     private final HashMap<InetAddress, SourceFilter> interfaceReceptionState = new HashMap<InetAddress, SourceFilter>();
 
-    private final HashMap<InetAddress, StateChangeReportTask> pendingStateChangeReports = new HashMap<InetAddress, StateChangeReportTask>();
+    /**
+     * Holds a copy of a group source set taken prior to a reception state change.
+     */
+    private SourceSet previousSourceSet = null;
+
+    /**
+     * Group state changes that are waiting to be reported or retransmitted.
+     * All pending state changes are reported together by the
+     * {@link #pendingStateChangeReport} timer.
+     */
+    private final HashMap<InetAddress, GroupStateChange> pendingStateChangeReports = new HashMap<InetAddress, GroupStateChange>();
+
+    private final StateChangeReportTimer pendingStateChangeReport;
 
     private final HashMap<InetAddress, GroupQueryReportTask> pendingGroupQueryReports = new HashMap<InetAddress, GroupQueryReportTask>();
 
@@ -72,7 +97,7 @@ final class InterfaceMembershipManager
 
     private OutputChannel<MembershipReport> outgoingReportChannel;
 
-    private final Timer taskTimer;
+    private final TimingWheel taskTimer;
 
     private int robustnessVariable = 2;
 
@@ -80,12 +105,16 @@ final class InterfaceMembershipManager
 
     private boolean useRandomDelay = false;
 
+    private int reportCoalescingIntervalMs = DEFAULT_REPORT_COALESCING_INTERVAL;
+
+    private int maximumReportLength = DEFAULT_MAXIMUM_REPORT_LENGTH;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
      * @param taskTimer
      */
-    InterfaceMembershipManager(final Timer taskTimer) {
+    InterfaceMembershipManager(final TimingWheel taskTimer) {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("InterfaceMembershipManager.InterfaceMembershipManager", taskTimer));
@@ -94,6 +123,7 @@ final class InterfaceMembershipManager
         this.taskTimer = taskTimer;
 
         this.pendingGeneralQueryReport = new GeneralQueryReportTimer(taskTimer, this);
+        this.pendingStateChangeReport = new StateChangeReportTimer(taskTimer, this);
 
         this.incomingQueryChannel = new OutputChannel<MembershipQuery>() {
 
@@ -127,6 +157,30 @@ final class InterfaceMembershipManager
         this.outgoingReportChannel = outgoingReportChannel;
     }
 
+    /**
+     * Sets the time that group state changes are held so that changes made to many
+     * groups in quick succession are reported in a small number of reports.
+     * A value of zero causes each state change to be reported immediately.
+     * 
+     * @param reportCoalescingIntervalMs
+     */
+    void setReportCoalescingInterval(final int reportCoalescingIntervalMs) {
+        if (reportCoalescingIntervalMs < 0) {
+            throw new IllegalArgumentException("report coalescing interval must not be negative");
+        }
+        this.reportCoalescingIntervalMs = reportCoalescingIntervalMs;
+    }
+
+    /**
+     * Sets the maximum length of the IGMPv3 or MLDv2 report messages sent by this
+     * manager. Reports that would exceed this length are split into several reports.
+     * 
+     * @param maximumReportLength
+     */
+    void setMaximumReportLength(final int maximumReportLength) {
+        this.maximumReportLength = maximumReportLength;
+    }
+
     /**
      * @param groupAddress
      * @throws IOException
@@ -148,7 +202,7 @@ final class InterfaceMembershipManager
                 this.interfaceReceptionState.put(groupAddress, filter);
             }
 
-            HashSet<InetAddress> oldSourceSet = new HashSet<InetAddress>(filter.getSourceSet());
+            SourceSet oldSourceSet = getPreviousSourceSet(filter);
             SourceFilter.Mode oldFilterMode = filter.getMode();
 
             filter.join();
@@ -181,7 +235,7 @@ final class InterfaceMembershipManager
                 this.interfaceReceptionState.put(groupAddress, filter);
             }
 
-            HashSet<InetAddress> oldSourceSet = new HashSet<InetAddress>(filter.getSourceSet());
+            SourceSet oldSourceSet = getPreviousSourceSet(filter);
             SourceFilter.Mode oldFilterMode = filter.getMode();
 
             filter.join(sourceAddress);
@@ -206,7 +260,7 @@ final class InterfaceMembershipManager
             SourceFilter filter = this.interfaceReceptionState.get(groupAddress);
 
             if (filter != null) {
-                HashSet<InetAddress> oldSourceSet = filter.getSourceSet();
+                SourceSet oldSourceSet = getPreviousSourceSet(filter);
                 SourceFilter.Mode oldFilterMode = filter.getMode();
 
                 filter.leave();
@@ -235,7 +289,7 @@ final class InterfaceMembershipManager
             SourceFilter filter = this.interfaceReceptionState.get(groupAddress);
 
             if (filter != null) {
-                HashSet<InetAddress> oldSourceSet = new HashSet<InetAddress>(filter.getSourceSet());
+                SourceSet oldSourceSet = getPreviousSourceSet(filter);
                 SourceFilter.Mode oldFilterMode = filter.getMode();
 
                 filter.leave(sourceAddress);
@@ -287,6 +341,15 @@ final class InterfaceMembershipManager
                 // Continue on and try to leave the rest
             }
         }
+
+        // Report the leaves now rather than at the end of the coalescing interval and
+        // discard any retransmissions that would follow
+        this.pendingStateChangeReport.cancel();
+        sendStateChangeReports();
+        this.pendingStateChangeReport.cancel();
+        synchronized (this.pendingStateChangeReports) {
+            this.pendingStateChangeReports.clear();
+        }
     }
 
     /**
@@ -345,7 +408,7 @@ final class InterfaceMembershipManager
      * </pre>
      */
     private void updateInterfaceGroupState(final SourceFilter.Mode oldFilterMode,
-                                           final HashSet<InetAddress> oldSourceSet,
+                                           final SourceSet oldSourceSet,
                                            final SourceFilter filter) {
 
         if (logger.isLoggable(Level.FINER)) {
@@ -361,7 +424,7 @@ final class InterfaceMembershipManager
 
             InetAddress groupAddress = filter.getGroupAddress();
             SourceFilter.Mode newFilterMode = filter.getMode();
-            HashSet<InetAddress> newSourceSet = filter.getSourceSet();
+            SourceSet newSourceSet = filter.getSourceSet();
 
             if (newFilterMode == SourceFilter.Mode.INCLUDE && newSourceSet.isEmpty()) {
                 // The new group state does not include any sources - remove the filter
@@ -371,26 +434,25 @@ final class InterfaceMembershipManager
                 }
             }
 
-            // Block access to the pending reports until the group state change report is
+            // Block access to the pending reports until the group state change is
             // created/updated
             synchronized (this.pendingStateChangeReports) {
 
-                // Look for pending group state change report
-                StateChangeReportTask stateChangeReport = this.pendingStateChangeReports.get(groupAddress);
+                // Look for pending group state change
+                GroupStateChange stateChange = this.pendingStateChangeReports.get(groupAddress);
 
-                if (stateChangeReport == null) {
+                if (stateChange == null) {
 
-                    // There is no pending report - create a new one
+                    // There is no pending state change - create a new one
                     int retransmissionCount = this.robustnessVariable - 1;
 
                     if (newFilterMode != oldFilterMode) {
-                        // Generate filter mode change report
-                        stateChangeReport = new StateChangeReportTask(this.taskTimer,
-                                                                      this,
-                                                                      groupAddress,
-                                                                      retransmissionCount,
-                                                                      newFilterMode,
-                                                                      newSourceSet);
+                        // Generate filter mode change
+                        stateChange = new GroupStateChange(this,
+                                                           groupAddress,
+                                                           retransmissionCount,
+                                                           newFilterMode,
+                                                           newSourceSet);
                     }
                     else {
                         if (logger.isLoggable(Level.FINE)) {
@@ -407,38 +469,110 @@ final class InterfaceMembershipManager
                             logger.fine(this.log.msg("<----"));
                         }
 
-                        // Generate source set change report
-                        stateChangeReport = new StateChangeReportTask(this.taskTimer,
-                                                                      this,
-                                                                      groupAddress,
-                                                                      retransmissionCount,
-                                                                      newFilterMode,
-                                                                      oldSourceSet,
-                                                                      newSourceSet);
+                        // Generate source set change
+                        stateChange = new GroupStateChange(this,
+                                                           groupAddress,
+                                                           retransmissionCount,
+                                                           newFilterMode,
+                                                           oldSourceSet,
+                                                           newSourceSet);
                     }
 
-                    if (retransmissionCount > 1) {
+                    this.pendingStateChangeReports.put(groupAddress, stateChange);
+                }
+                else if (newFilterMode != oldFilterMode) {
+                    // There is a pending state change - replace it with a filter mode
+                    // change and reset the retransmission count
+                    stateChange.updateFilterMode(newFilterMode, newSourceSet);
+                }
+                else {
+                    // There is a pending state change - update the group change sets and
+                    // reset the retransmission count
+                    stateChange.updateSourceSet(newSourceSet);
+                }
+            }
+
+            // The report timer is scheduled outside of the pendingStateChangeReports lock
+            // because the timer holds its own lock while sending reports
+            scheduleStateChangeReport();
+        }
+    }
 
-                        // This is supposed to be random (0,interval) but can't do that
-                        // with TimerTasks
-                        long taskPeriod = this.unsolicitedReportIntervalMs;
+    /**
+     * Copies the current source set of a filter into a set that is reused for
+     * each reception state change, so that the state prior to the change can be
+     * compared with the new state without allocating a new set.
+     * Must be called while holding the interfaceReceptionState lock.
+     * 
+     * @param filter
+     * @return The reusable set containing a copy of the filter's source set.
+     */
+    private SourceSet getPreviousSourceSet(final SourceFilter filter) {
+        SourceSet sourceSet = filter.getSourceSet();
+        if (this.previousSourceSet == null
+            || this.previousSourceSet.getAddressLength() != sourceSet.getAddressLength()) {
+            this.previousSourceSet = new SourceSet(sourceSet.getAddressLength());
+        }
+        this.previousSourceSet.set(sourceSet);
+        return this.previousSourceSet;
+    }
 
-                        // We delay one task period because we will call run()
-                        // immediately.
-                        stateChangeReport.schedule(taskPeriod, taskPeriod);
+    /**
+     * Schedules transmission of the pending state changes at the end of the report
+     * coalescing interval, or sends them immediately if the interval is zero.
+     */
+    private void scheduleStateChangeReport() {
+        if (this.reportCoalescingIntervalMs == 0) {
+            // Send the state change report immediately
+            this.pendingStateChangeReport.cancel();
+            sendStateChangeReports();
+        }
+        else if (this.pendingStateChangeReport.getTimeRemaining() > this.reportCoalescingIntervalMs) {
+            // The report is not scheduled or is only scheduled for retransmission -
+            // send it at the end of the coalescing interval instead
+            this.pendingStateChangeReport.cancel();
+            this.pendingStateChangeReport.schedule(this.reportCoalescingIntervalMs);
+        }
+    }
 
-                        this.pendingStateChangeReports.put(groupAddress, stateChangeReport);
-                    }
-                }
-                else {
-                    // There is a pending report - update the group change sets and reset
-                    // the retransmission count
-                    stateChangeReport.updateSourceSet(newSourceSet);
+    /**
+     * Sends a report containing the records for all pending group state changes.
+     * State changes that must be reported again are retransmitted together after the
+     * unsolicited report interval.
+     */
+    void sendStateChangeReports() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("InterfaceMembershipManager.sendStateChangeReports"));
+        }
+
+        MembershipReport report = new MembershipReport();
+        boolean isRetransmissionRequired;
+
+        synchronized (this.pendingStateChangeReports) {
+            Iterator<GroupStateChange> iter = this.pendingStateChangeReports.values().iterator();
+            while (iter.hasNext()) {
+                if (!iter.next().addRecords(report)) {
+                    iter.remove();
                 }
+            }
+            isRetransmissionRequired = !this.pendingStateChangeReports.isEmpty();
+        }
 
-                // Send the first state change report immediately
-                stateChangeReport.run();
+        if (isRetransmissionRequired) {
+            // This is supposed to be random (0,interval) but all pending state changes are
+            // retransmitted together
+            this.pendingStateChangeReport.schedule(this.unsolicitedReportIntervalMs);
+        }
+
+        if (!report.getRecords().isEmpty()) {
+
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(this.log.msg("sending membership report for " + report.getRecords().size()
+                                         + " group state change records"));
             }
+
+            sendReport(report);
         }
     }
 
@@ -595,7 +729,7 @@ final class InterfaceMembershipManager
      */
     void sendGroupMembershipReport(final InetAddress groupAddress,
                                    final GroupMembershipRecord.Type type,
-                                   final HashSet<InetAddress> sourceSet) {
+                                   final SourceSet sourceSet) {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("InterfaceMembershipManager.sendGroupMembershipReport",
@@ -607,8 +741,20 @@ final class InterfaceMembershipManager
         MembershipReport report = new MembershipReport();
         report.addRecord(new GroupMembershipRecord(groupAddress, type, sourceSet));
 
+        sendReport(report);
+    }
+
+    /**
+     * Sends a membership report, splitting it into several reports if its length
+     * exceeds the maximum report length.
+     * 
+     * @param report
+     */
+    private void sendReport(final MembershipReport report) {
         try {
-            this.outgoingReportChannel.send(report, Integer.MAX_VALUE);
+            for (MembershipReport part : report.split(this.maximumReportLength)) {
+                this.outgoingReportChannel.send(part, Integer.MAX_VALUE);
+            }
         }
         catch (PortUnreachableException e) {
             // TODO:
@@ -618,102 +764,7 @@ final class InterfaceMembershipManager
             throw new Error(e);
         }
         catch (InterruptedException e) {
-        }
-    }
-
-    /**
-     * @param groupAddress
-     * @param mode
-     * @param sourceSet
-     * @param transmissionsRemaining
-     */
-    void sendGroupFilterModeChangeReport(final InetAddress groupAddress,
-                                         final SourceFilter.Mode mode,
-                                         final HashSet<InetAddress> sourceSet,
-                                         final int transmissionsRemaining) {
-
-        if (logger.isLoggable(Level.FINER)) {
-            logger.finer(this.log.entry("InterfaceMembershipManager.sendGroupFilterModeChangeReport",
-                                        Logging.address(groupAddress),
-                                        mode,
-                                        sourceSet,
-                                        transmissionsRemaining));
-        }
-
-        if (logger.isLoggable(Level.FINE)) {
-            logger.fine(this.log.msg("sending membership report for group filter mode change"));
-        }
-
-        GroupMembershipRecord.Type type = (mode == SourceFilter.Mode.INCLUDE ?
-                        GroupMembershipRecord.Type.CHANGE_TO_INCLUDE_MODE :
-                        GroupMembershipRecord.Type.CHANGE_TO_EXCLUDE_MODE);
-
-        sendGroupMembershipReport(groupAddress, type, sourceSet);
-
-        if (transmissionsRemaining == 0) {
-            synchronized (this.pendingStateChangeReports) {
-                this.pendingStateChangeReports.remove(groupAddress);
-            }
-        }
-    }
-
-    /**
-     * @param groupAddress
-     * @param allowNewSources
-     * @param blockOldSources
-     * @param transmissionsRemaining
-     */
-    void sendGroupSourceSetChangeReport(final InetAddress groupAddress,
-                                        final HashSet<InetAddress> allowNewSources,
-                                        final HashSet<InetAddress> blockOldSources,
-                                        final int transmissionsRemaining) {
-
-        if (logger.isLoggable(Level.FINER)) {
-            logger.finer(this.log.entry("InterfaceMembershipManager.sendGroupStateChangeReport",
-                                        Logging.address(groupAddress),
-                                        allowNewSources,
-                                        blockOldSources,
-                                        transmissionsRemaining));
-        }
-
-        if (!allowNewSources.isEmpty() || !blockOldSources.isEmpty()) {
-
-            MembershipReport report = new MembershipReport();
-
-            if (!allowNewSources.isEmpty()) {
-                report.addRecord(new GroupMembershipRecord(groupAddress,
-                                                           GroupMembershipRecord.Type.ALLOW_NEW_SOURCES,
-                                                           allowNewSources));
-            }
-
-            if (!blockOldSources.isEmpty()) {
-                report.addRecord(new GroupMembershipRecord(groupAddress,
-                                                           GroupMembershipRecord.Type.BLOCK_OLD_SOURCES,
-                                                           blockOldSources));
-            }
-
-            if (logger.isLoggable(Level.FINE)) {
-                logger.fine(this.log.msg("sending membership report for group source set change"));
-            }
-
-            try {
-                this.outgoingReportChannel.send(report, Integer.MAX_VALUE);
-            }
-            catch (PortUnreachableException e) {
-                // TODO
-            }
-            catch (IOException e) {
-                // TODO
-                throw new Error(e);
-            }
-            catch (InterruptedException e) {
-            }
-        }
-
-        if (transmissionsRemaining == 0) {
-            synchronized (this.pendingStateChangeReports) {
-                this.pendingStateChangeReports.remove(groupAddress);
-            }
+            Thread.currentThread().interrupt();
         }
     }
 
@@ -740,26 +791,14 @@ final class InterfaceMembershipManager
                                           + filter.getSourceSet().size()));
             }
 
-            report.addRecord(new GroupMembershipRecord(filter.getGroupAddress(), type, filter.getSourceSet()));
+            report.addRecord(new GroupMembershipRecord(filter.getGroupAddress(), type, new SourceSet(filter.getSourceSet())));
         }
 
         if (logger.isLoggable(Level.FINE)) {
             logger.fine(this.log.msg("sending membership report for general query"));
         }
 
-        try {
-            this.outgoingReportChannel.send(report, Integer.MAX_VALUE);
-        }
-        catch (PortUnreachableException e) {
-            // TODO
-        }
-        catch (IOException e) {
-            // TODO
-            throw new Error(e);
-        }
-        catch (InterruptedException e) {
-        }
-
+        sendReport(report);
     }
 
     /**
@@ -796,7 +835,7 @@ final class InterfaceMembershipManager
                                         querySourceSet));
         }
 
-        HashSet<InetAddress> responseSourceSet;
+        SourceSet responseSourceSet;
 
         synchronized (this.interfaceReceptionState) {
 
@@ -818,7 +857,7 @@ final class InterfaceMembershipManager
                     sendGroupMembershipReport(groupAddress, type, responseSourceSet);
                 }
                 else {
-                    responseSourceSet = new HashSet<InetAddress>(querySourceSet);
+                    responseSourceSet = new SourceSet(groupAddress.getAddress().length, querySourceSet);
                     if (filter.getMode() == SourceFilter.Mode.INCLUDE) {
                         // (A*B)
                         responseSourceSet.retainAll(filter.getSourceSet());
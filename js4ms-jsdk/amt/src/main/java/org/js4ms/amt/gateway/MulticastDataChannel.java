@@ -0,0 +1,84 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MulticastDataChannel.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.ip.IPPacket;
+
+
+
+/**
+ * An {@link OutputChannel} that pairs a packet channel with a {@link MulticastDataSink}.
+ * Packets sent to this channel are forwarded to the packet channel, while multicast
+ * data dispatched directly from a {@link MulticastDataView} is forwarded to the sink.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class MulticastDataChannel
+                implements OutputChannel<IPPacket>, MulticastDataSink {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final OutputChannel<IPPacket> packetChannel;
+
+    private final MulticastDataSink dataSink;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * @param packetChannel
+     *            The channel that will receive IP packets.
+     * @param dataSink
+     *            The sink that will receive directly dispatched multicast data.
+     */
+    MulticastDataChannel(final OutputChannel<IPPacket> packetChannel, final MulticastDataSink dataSink) {
+        this.packetChannel = packetChannel;
+        this.dataSink = dataSink;
+    }
+
+    @Override
+    public void send(final IPPacket packet, final int milliseconds) throws IOException,
+                                                                  InterruptedIOException,
+                                                                  InterruptedException {
+        this.packetChannel.send(packet, milliseconds);
+    }
+
+    @Override
+    public void close() throws IOException, InterruptedException {
+        this.packetChannel.close();
+    }
+
+    @Override
+    public boolean isDirectDispatchEnabled() {
+        return this.dataSink.isDirectDispatchEnabled();
+    }
+
+    @Override
+    public void dispatch(final MulticastDataView data) throws InterruptedIOException, IOException, InterruptedException {
+        this.dataSink.dispatch(data);
+    }
+}
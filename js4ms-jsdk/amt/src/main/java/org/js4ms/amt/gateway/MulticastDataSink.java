@@ -0,0 +1,61 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MulticastDataSink.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+
+
+/**
+ * Interface exposed by objects that can consume AMT multicast data directly from a
+ * {@link MulticastDataView}, bypassing construction of the AMT message, IP packet
+ * and UDP packet objects normally produced by the AMT message parser.
+ * <p>
+ * A sink is only given data if {@link #isDirectDispatchEnabled()} returns
+ * <code>true</code>; otherwise the data is parsed and delivered as an
+ * {@link org.js4ms.ip.IPPacket IPPacket} through the normal output channel chain.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+interface MulticastDataSink {
+
+    /**
+     * Indicates whether every consumer reachable through this sink can accept data
+     * through {@link #dispatch(MulticastDataView)}.
+     */
+    boolean isDirectDispatchEnabled();
+
+    /**
+     * Delivers the UDP datagram described by the view.
+     * The view is only valid for the duration of the call.
+     * 
+     * @param data
+     * @throws InterruptedIOException
+     * @throws IOException
+     * @throws InterruptedException
+     */
+    void dispatch(MulticastDataView data) throws InterruptedIOException, IOException, InterruptedException;
+
+}
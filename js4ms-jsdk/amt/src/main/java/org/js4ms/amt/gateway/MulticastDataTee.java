@@ -0,0 +1,102 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MulticastDataTee.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.io.channel.OutputChannelTee;
+import org.js4ms.ip.IPPacket;
+
+
+
+/**
+ * Tracks the output channels attached to an {@link OutputChannelTee} and forwards
+ * multicast data to those channels that also implement {@link MulticastDataSink}.
+ * Direct dispatch is disabled while any attached channel only accepts
+ * {@link IPPacket} objects, so every channel always sees every packet exactly once.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class MulticastDataTee
+                implements MulticastDataSink {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final CopyOnWriteArrayList<MulticastDataSink> sinks = new CopyOnWriteArrayList<MulticastDataSink>();
+
+    private final CopyOnWriteArrayList<OutputChannel<IPPacket>> packetChannels = new CopyOnWriteArrayList<OutputChannel<IPPacket>>();
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Records a channel added to the companion output channel tee.
+     * 
+     * @param channel
+     */
+    void add(final OutputChannel<IPPacket> channel) {
+        if (channel instanceof MulticastDataSink) {
+            this.sinks.addIfAbsent((MulticastDataSink) channel);
+        }
+        else {
+            this.packetChannels.addIfAbsent(channel);
+        }
+    }
+
+    /**
+     * Records a channel removed from the companion output channel tee.
+     * 
+     * @param channel
+     */
+    void remove(final OutputChannel<IPPacket> channel) {
+        if (channel instanceof MulticastDataSink) {
+            this.sinks.remove(channel);
+        }
+        else {
+            this.packetChannels.remove(channel);
+        }
+    }
+
+    @Override
+    public boolean isDirectDispatchEnabled() {
+        if (!this.packetChannels.isEmpty()) {
+            return false;
+        }
+        for (MulticastDataSink sink : this.sinks) {
+            if (!sink.isDirectDispatchEnabled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void dispatch(final MulticastDataView data) throws InterruptedIOException, IOException, InterruptedException {
+        for (MulticastDataSink sink : this.sinks) {
+            sink.dispatch(data);
+        }
+    }
+}
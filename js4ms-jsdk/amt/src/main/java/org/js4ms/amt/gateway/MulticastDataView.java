@@ -0,0 +1,303 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MulticastDataView.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+
+import org.js4ms.amt.message.AmtMulticastDataMessage;
+import org.js4ms.io.buffer.PooledBuffer;
+import org.js4ms.io.net.UdpDatagram;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.ipv4.IPv4PacketView;
+import org.js4ms.ip.ipv6.IPv6Packet;
+import org.js4ms.ip.ipv6.IPv6PacketView;
+import org.js4ms.ip.protocol.udp.UdpView;
+
+
+
+/**
+ * A reusable, read-only view of an AMT Multicast Data message that carries a complete
+ * UDP datagram.
+ * The {@link #wrap(ByteBuffer)} method reads the AMT, IP and UDP headers in place using
+ * an {@link IPv4PacketView} or {@link IPv6PacketView} and a {@link UdpView} - no message,
+ * packet or address objects are constructed until a consumer asks for them. The view is
+ * only valid until the next call to {@link #wrap(ByteBuffer)} and must not be shared
+ * between threads.
+ * <p>
+ * If the message was received into a {@link PooledBuffer}, the buffer may be attached
+ * to the view using {@link #wrap(ByteBuffer, PooledBuffer)}. Each datagram returned by
+ * {@link #constructDatagram()} then holds its own reference to the buffer, so the
+ * buffer is recycled once the receiver and every consumer of the datagram have
+ * released it.
+ * <p>
+ * The view does not accept IPv4 or IPv6 fragments or packets that carry a protocol
+ * other than UDP. Those messages must be handled by the
+ * {@link AmtMulticastDataMessage.Parser}. The view does not verify checksums - the
+ * {@link ChecksumVerifier} decides whether {@link #isHeaderChecksumValid()} and
+ * {@link #isUdpChecksumValid()} are called for each message.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class MulticastDataView {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    private static final int AMT_HEADER_LENGTH = 2;
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final IPv4PacketView ipv4Packet = new IPv4PacketView();
+
+    private final IPv6PacketView ipv6Packet = new IPv6PacketView();
+
+    private final UdpView udpPacket = new UdpView();
+
+    private byte version;
+
+    private UdpDatagram.ChecksumCheck checksumCheck;
+
+    private PooledBuffer pooledBuffer;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an empty view.
+     */
+    MulticastDataView() {
+    }
+
+    /**
+     * Attempts to bind this view to an AMT message.
+     * The buffer position and limit are not modified.
+     * 
+     * @param buffer
+     *            A buffer containing an AMT message.
+     * @return <code>true</code> if the buffer contains an AMT Multicast Data message that
+     *         carries a complete UDP datagram, or <code>false</code> if the message must
+     *         be handled by the AMT message parser.
+     */
+    boolean wrap(final ByteBuffer buffer) {
+        return wrap(buffer, null);
+    }
+
+    /**
+     * Attempts to bind this view to an AMT message held in a pooled buffer.
+     * The buffer position and limit are not modified.
+     * 
+     * @param buffer
+     *            A buffer containing an AMT message.
+     * @param pooledBuffer
+     *            The pooled buffer that backs <code>buffer</code>, or <code>null</code>
+     *            if the buffer is not pooled.
+     * @return <code>true</code> if the buffer contains an AMT Multicast Data message that
+     *         carries a complete UDP datagram, or <code>false</code> if the message must
+     *         be handled by the AMT message parser.
+     */
+    boolean wrap(final ByteBuffer buffer, final PooledBuffer pooledBuffer) {
+
+        this.version = 0;
+        this.checksumCheck = null;
+        this.pooledBuffer = pooledBuffer;
+
+        int offset = buffer.position();
+
+        if (buffer.limit() - offset <= AMT_HEADER_LENGTH
+            || buffer.get(offset) != AmtMulticastDataMessage.MESSAGE_TYPE) {
+            return false;
+        }
+
+        int ipOffset = offset + AMT_HEADER_LENGTH;
+        byte version = (byte) ((buffer.get(ipOffset) >> 4) & 0xF);
+
+        if (version == IPv4Packet.INTERNET_PROTOCOL_VERSION) {
+            if (!this.ipv4Packet.wrap(buffer, ipOffset) || !this.udpPacket.wrap(this.ipv4Packet)) {
+                return false;
+            }
+        }
+        else if (version == IPv6Packet.INTERNET_PROTOCOL_VERSION) {
+            if (!this.ipv6Packet.wrap(buffer, ipOffset) || !this.udpPacket.wrap(this.ipv6Packet)) {
+                return false;
+            }
+        }
+        else {
+            return false;
+        }
+
+        this.version = version;
+        return true;
+    }
+
+    /**
+     * Gets the IP version of the packet carried by the message.
+     */
+    byte getVersion() {
+        return this.version;
+    }
+
+    /**
+     * Gets the IPv4 destination (group) address as an integer.
+     * Only valid for IPv4 packets.
+     */
+    int getIPv4GroupAddress() {
+        return this.ipv4Packet.getDestinationAddress();
+    }
+
+    /**
+     * Gets the IPv4 source address as an integer.
+     * Only valid for IPv4 packets.
+     */
+    int getIPv4SourceAddress() {
+        return this.ipv4Packet.getSourceAddress();
+    }
+
+    /**
+     * Gets the IPv6 destination (group) address as a pair of long values.
+     * Only valid for IPv6 packets.
+     * 
+     * @param index
+     *            Zero for the most significant eight bytes, one for the least
+     *            significant eight bytes.
+     */
+    long getIPv6GroupAddress(final int index) {
+        return this.ipv6Packet.getDestinationAddress(index);
+    }
+
+    /**
+     * Gets the IPv6 source address as a pair of long values.
+     * Only valid for IPv6 packets.
+     * 
+     * @param index
+     *            Zero for the most significant eight bytes, one for the least
+     *            significant eight bytes.
+     */
+    long getIPv6SourceAddress(final int index) {
+        return this.ipv6Packet.getSourceAddress(index);
+    }
+
+    /**
+     * Returns a copy of the destination (group) address.
+     */
+    byte[] getGroupAddress() {
+        byte[] address;
+        if (this.version == IPv4Packet.INTERNET_PROTOCOL_VERSION) {
+            address = new byte[4];
+            this.ipv4Packet.getDestinationAddress(address, 0);
+        }
+        else {
+            address = new byte[16];
+            this.ipv6Packet.getDestinationAddress(address, 0);
+        }
+        return address;
+    }
+
+    /**
+     * Returns a copy of the source address.
+     */
+    byte[] getSourceAddress() {
+        byte[] address;
+        if (this.version == IPv4Packet.INTERNET_PROTOCOL_VERSION) {
+            address = new byte[4];
+            this.ipv4Packet.getSourceAddress(address, 0);
+        }
+        else {
+            address = new byte[16];
+            this.ipv6Packet.getSourceAddress(address, 0);
+        }
+        return address;
+    }
+
+    /**
+     * Gets the UDP source port.
+     */
+    int getSourcePort() {
+        return this.udpPacket.getSourcePort();
+    }
+
+    /**
+     * Gets the UDP destination port.
+     */
+    int getDestinationPort() {
+        return this.udpPacket.getDestinationPort();
+    }
+
+    /**
+     * Returns a slice of the message buffer that contains the UDP payload.
+     */
+    ByteBuffer getPayload() {
+        return this.udpPacket.getPayload();
+    }
+
+    /**
+     * Gets the checksum carried in the UDP header.
+     */
+    int getChecksum() {
+        return this.udpPacket.getChecksum();
+    }
+
+    /**
+     * Verifies the IPv4 header checksum in place. Always returns <code>true</code> for
+     * IPv6 packets as the IPv6 header carries no checksum.
+     */
+    boolean isHeaderChecksumValid() {
+        return this.version != IPv4Packet.INTERNET_PROTOCOL_VERSION
+               || this.ipv4Packet.isHeaderChecksumValid();
+    }
+
+    /**
+     * Verifies the UDP checksum in place. An IPv4 datagram sent without a checksum
+     * (a checksum of zero) is considered valid.
+     */
+    boolean isUdpChecksumValid() {
+        return this.udpPacket.isChecksumValid();
+    }
+
+    /**
+     * Attaches a checksum check to the current message. The check is passed on to the
+     * datagram returned by {@link #constructDatagram()} so the consumer may verify the
+     * UDP checksum on request.
+     * 
+     * @param check
+     */
+    void deferChecksum(final UdpDatagram.ChecksumCheck check) {
+        this.checksumCheck = check;
+    }
+
+    /**
+     * Constructs a datagram that shares the UDP payload of the message.
+     * If the message is held in a pooled buffer, the datagram holds a reference to the
+     * buffer that the caller must release once it has sent the datagram.
+     */
+    UdpDatagram constructDatagram() {
+        UdpDatagram datagram = new UdpDatagram(getSourceAddress(),
+                                               getSourcePort(),
+                                               getGroupAddress(),
+                                               getDestinationPort(),
+                                               getPayload());
+        if (this.checksumCheck != null) {
+            datagram.deferChecksum(this.checksumCheck, getChecksum());
+        }
+        datagram.attach(this.pooledBuffer);
+        return datagram;
+    }
+}
@@ -25,12 +25,8 @@ package org.js4ms.amt.gateway;
 import java.io.IOException;
 import java.io.InterruptedIOException;
 import java.nio.ByteBuffer;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.ArrayDeque;
 import java.util.Iterator;
-import java.util.LinkedList;
-import java.util.Timer;
-import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -38,6 +34,9 @@ import org.js4ms.common.exception.ParseException;
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.LoggableBase;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.task.TimingWheel;
+import org.js4ms.common.util.task.TimingWheelTask;
+import org.js4ms.io.buffer.MemoryBudget;
 import org.js4ms.io.channel.OutputChannel;
 import org.js4ms.ip.IPPacket;
 import org.js4ms.ip.Precondition;
@@ -58,25 +57,34 @@ import org.js4ms.ip.ipv6.IPv6Packet;
  * the defragmenter will send a new packet carrying the completed datagram to the
  * downstream channel.
  * <p>
- * The defragmenter imposes a 60 second time limit on for reassembly of a datagram. If a
+ * The defragmenter imposes a time limit on the reassembly of a datagram. If a
  * particular datagram cannot be reassembled within timeout period, the partial
  * reconstruction of that datagram is flushed from the internal cache. (Note: The
  * reassembly process will restart if additional fragments for the datagram arrive after
- * the time-limit.)
+ * the time-limit.) Each reassembly is timed by a one-shot task on a {@link TimingWheel}.
  * <p>
  * The defragmenter can be attached to a second output channel that can be used to receive
  * a timeout notification. The defragmenter will send the packet containing fragment zero
  * of the datagram if that packet is available and the destination address is not a
  * multicast address. No timeout is reported for a multicast packets
  * <p>
- * The defragmenter must allocate a 64K buffer to reassemble each fragmented datagram. If
- * a large number of fragmented datagrams arrive within a 60s time window, the
- * defragmenter will consume a significant amount of memory. To avoid excessive memory
- * use, the defragmenter can be constructed with a limit on the number of datagrams that
- * can undergo simultaneous reassembly. If the limit is reached, the defragmenter places
- * the new datagram fragments into a queue for future reassembly. This queue is limited by
- * the total size of the queued packets. The defragmenter will discard packets once the
- * total size of the packets in the queue reaches 64K.
+ * Datagrams are reassembled in 64K slabs that are recycled once a datagram is completed
+ * or expires. Reassemblies are located using the source address, destination address,
+ * identification and protocol values packed into primitive keys, and missing ranges are
+ * tracked in a fixed-size hole list, so no memory is allocated for a fragment other than
+ * the array that receives the completed payload. If a large number of fragmented
+ * datagrams arrive within the timeout period, the defragmenter will consume a
+ * significant amount of memory. To avoid excessive memory use, the defragmenter can be
+ * constructed with a limit on the number of datagrams that can undergo simultaneous
+ * reassembly. If the limit is reached, the defragmenter places the new datagram
+ * fragments into a queue for future reassembly. This queue is limited by the total size
+ * of the queued packets. The defragmenter will discard packets once the total size of
+ * the packets in the queue reaches 64K.
+ * <p>
+ * The slab used by each active reassembly and the packets held in the pending queue are
+ * charged to the "PacketAssembler" account of the shared {@link MemoryBudget}. A new
+ * reassembly is deferred, as if the cache were full, while the budget cannot supply a
+ * slab, and fragments are discarded if the budget cannot hold them in the pending queue.
  * 
  * @author Gregory Bumgardner (gbumgard)
  */
@@ -87,334 +95,238 @@ final class PacketAssembler
     /*-- Inner Classes ------------------------------------------------------*/
 
     /**
+     * A pooled reassembly slot.
+     * A slot holds the slab and hole list used to reassemble one datagram and is
+     * returned to the pool when the datagram is completed or expires.
      */
-    final static class ReassemblyBuffer {
-
-        /*-- Static Variables ---------------------------------------------------*/
-
-        /**
-         * 
-         */
-        public static final Logger logger = Logger.getLogger(PacketAssembler.ReassemblyBuffer.class.getName());
-
-        private static final int EOL = 0xFFFF;
+    final class ReassemblyBuffer
+                    extends TimingWheelTask {
 
         /*-- Member Variables ---------------------------------------------------*/
 
-        private final Log log = new Log(this);
+        private final int index;
 
-        private ByteBuffer identifier;
+        private long key0;
 
-        // byte[] buffer = new byte[65515];
-        private byte[] buffer = new byte[1500];
+        private long key1;
 
-        private int firstHole = 0;
+        private long key2;
 
-        private int length = 0;
+        private long key3;
 
-        private long timestamp;
+        private long key4;
 
-        private long maxAge;
+        private boolean isActive = false;
 
-        private IPPacket fragmentZeroPacket;
+        private byte[] slab = null;
 
         /**
-         * @param identifier
-         * @param maxAge
+         * First byte of each hole.
          */
-        ReassemblyBuffer(final ByteBuffer identifier, final long maxAge) {
-            this.identifier = identifier;
-            setHole(this.firstHole, 0xFFFF, EOL, EOL);
-            this.timestamp = System.currentTimeMillis();
-            this.maxAge = maxAge;
-        }
+        private final int[] holeFirst = new int[MAX_HOLES];
 
         /**
-         * @return
+         * Byte following the last byte of each hole.
          */
-        ByteBuffer getIdentifier() {
-            return identifier;
-        }
+        private final int[] holeLimit = new int[MAX_HOLES];
 
-        /**
-         * @param currentTimeMs
-         * @return
-         */
-        boolean isExpired(final long currentTimeMs) {
-            if ((currentTimeMs - timestamp) > maxAge) {
-                return true;
-            }
-            return false;
-        }
+        private int holeCount;
 
         /**
-         * @param currentTimeMs
-         * @return
+         * The length of the datagram payload or -1 if the last fragment has not arrived.
          */
-        long getAge(final long currentTimeMs) {
-            return currentTimeMs - timestamp;
-        }
+        private int length;
 
-        /**
-         * @param packet
-         * @return
-         * @throws ParseException
-         */
-        boolean addFragment(final IPPacket packet) throws ParseException {
-
-            // Already done?
-            if (isComplete()) return true;
-
-            // Does this packet carry the header(s) we should save?
-            if (packet.getFragmentOffset() == 0) {
-                // Use this packet to construct the completed packet
-                this.fragmentZeroPacket = packet;
-            }
+        private long startTime;
 
-            if (addFragment(packet.getFragment(), packet.getFragmentOffset(), packet.isMoreFragments())) {
-                this.fragmentZeroPacket.setReassembledPayload(ByteBuffer.wrap(buffer, 0, this.length));
-                return true;
-            }
+        private IPPacket fragmentZeroPacket;
 
-            return false;
-        }
+        /*-- Member Functions ---------------------------------------------------*/
 
-        /**
-         * @return
-         */
-        IPPacket getFragmentZeroPacket() {
-            return this.fragmentZeroPacket;
+        ReassemblyBuffer(final int index) {
+            this.index = index;
         }
 
         /**
-         * @return
+         * Prepares the slot to reassemble a new datagram, charging its slab to the
+         * memory budget. The slab is allocated when the slot is first used.
+         * 
+         * @return <code>false</code> if the budget cannot supply the slab.
          */
-        IPPacket getCompletedPacket() {
-            if (isComplete()) {
-                return this.fragmentZeroPacket;
+        boolean start() {
+            if (!memoryAccount.tryAcquire(SLAB_SIZE)) {
+                return false;
             }
-            return null;
-        }
-
-        /**
-         * @return
-         */
-        boolean isComplete() {
-            return this.firstHole == EOL;
-        }
-
-        /**
-         * @param hole
-         * @param holeLast
-         * @param prevHole
-         * @param nextHole
-         */
-        void setHole(final int hole,
-                     final int holeLast,
-                     final int prevHole,
-                     final int nextHole) {
-            if (logger.isLoggable(Level.FINER)) {
-                logger.finer(this.log.msg("new hole.first=" + hole + " hole.last=" + holeLast + " hole.prev=" + prevHole
-                                          + " hole.next=" + nextHole));
+            if (this.slab == null) {
+                this.slab = new byte[SLAB_SIZE];
+                PacketAssembler.this.slabCount++;
             }
-            int byteOffset = hole * 8;
-            setOffsetValue(byteOffset, holeLast);
-            setOffsetValue(byteOffset + 2, prevHole);
-            setOffsetValue(byteOffset + 4, nextHole);
-        }
-
-        /**
-         * @param byteOffset
-         * @param offset
-         */
-        void setOffsetValue(final int byteOffset, final int offset) {
-            buffer[byteOffset] = (byte) ((offset >> 8) & 0xFF);
-            buffer[byteOffset + 1] = (byte) (offset & 0xFF);
-        }
-
-        /**
-         * @param byteOffset
-         * @return
-         */
-        int getOffsetValue(final int byteOffset) {
-            return ((buffer[byteOffset] & 0xFF) << 8) | (buffer[byteOffset + 1] & 0xFF);
+            this.isActive = true;
+            this.holeFirst[0] = 0;
+            this.holeLimit[0] = Integer.MAX_VALUE;
+            this.holeCount = 1;
+            this.length = -1;
+            this.fragmentZeroPacket = null;
+            this.startTime = System.nanoTime();
+            return true;
         }
 
         /**
-         * @param holeFirst
-         * @return
+         * Releases the packet references held by the slot and returns the charge for its
+         * slab to the memory budget. The slab is kept for reuse.
          */
-        int getHoleLast(final int holeFirst) {
-            return getOffsetValue(holeFirst * 8);
+        void clear() {
+            this.isActive = false;
+            this.fragmentZeroPacket = null;
+            memoryAccount.release(SLAB_SIZE);
         }
 
-        /**
-         * @param holeFirst
-         * @param holeLast
-         */
-        void setHoleLast(final int holeFirst, final int holeLast) {
-            setOffsetValue(holeFirst * 8, holeLast);
-        }
-
-        /**
-         * @param holeFirst
-         * @return
-         */
-        int getPrevHole(final int holeFirst) {
-            return getOffsetValue(holeFirst * 8 + 2);
+        boolean isComplete() {
+            return this.holeCount == 0;
         }
 
-        /**
-         * @param holeFirst
-         * @param prevHole
-         */
-        void setPrevHole(final int holeFirst, final int prevHole) {
-            setOffsetValue(holeFirst * 8 + 4, prevHole);
+        IPPacket getFragmentZeroPacket() {
+            return this.fragmentZeroPacket;
         }
 
-        /**
-         * @param holeFirst
-         * @return
-         */
-        int getNextHole(final int holeFirst) {
-            return getOffsetValue(holeFirst * 8 + 4);
+        long getAge(final long currentTimeNanos) {
+            return (currentTimeNanos - this.startTime) / 1000000;
         }
 
         /**
-         * @param holeFirst
-         * @param nextHole
-         */
-        void setNextHole(final int holeFirst, final int nextHole) {
-            setOffsetValue(holeFirst * 8 + 6, nextHole);
-        }
-
-        /**
-         * Algorithm described in <a
-         * href="http://tools.ietf.org/html/rfc815">[RFC-851]</a>
-         * <p>
-         * This will remove all of the hole descriptors that will be overwritten by the
-         * fragment. 1. Select the next hole descriptor from the hole descriptor list. If
-         * there are no more entries, go to step eight.
-         * <p>
-         * 2. If fragment.first is greater than hole.last, go to step one.
-         * <p>
-         * 3. If fragment.last is less than hole.first, go to step one.
-         * <p>
-         * <blockquote> (If either step two or step three is true, then the newly arrived
-         * fragment does not overlap with the hole in any way, so we need pay no further
-         * attention to this hole. We return to the beginning of the algorithm where we
-         * select the next hole for examination.) </blockquote> 4. Delete the current
-         * entry from the hole descriptor list. <blockquote> (Since neither step two nor
-         * step three was true, the newly arrived fragment does interact with this hole in
-         * some way. Therefore, the current descriptor will no longer be valid. We will
-         * destroy it, and in the next two steps we will determine whether or not it is
-         * necessary to create any new hole descriptors.) </blockquote> 5. If
-         * fragment.first is greater than hole.first, then create a new hole descriptor
-         * "new_hole" with new_hole.first equal to hole.first, and new_hole.last equal to
-         * fragment.first minus one. <blockquote> (If the test in step five is true, then
-         * the first part of the original hole is not filled by this fragment. We create a
-         * new descriptor for this smaller hole.) </blockquote> 6. If fragment.last is
-         * less than hole.last and fragment.more fragments is true, then create a new hole
-         * descriptor "new_hole", with new_hole.first equal to fragment.last plus one and
-         * new_hole.last equal to hole.last. <blockquote> (This test is the mirror of step
-         * five with one additional feature. Initially, we did not know how long the
-         * reassembled datagram would be, and therefore we created a hole reaching from
-         * zero to infinity. Eventually, we will receive the last fragment of the
-         * datagram. At this point, that hole descriptor which reaches from the last octet
-         * of the buffer to infinity can be discarded. The fragment which contains the
-         * last fragment indicates this fact by a flag in the internet header called
-         * "more fragments". The test of this bit in this statement prevents us from
-         * creating a descriptor for the unneeded hole which describes the space from the
-         * end of the datagram to infinity.) </blockquote> 7. Go to step one.
-         * <p>
-         * 8. If the hole descriptor list is now empty, the datagram is now complete. Pass
-         * it on to the higher level protocol processor for further handling. Otherwise,
-         * return.
+         * Copies a fragment into the slab and removes the range it covers from the hole
+         * list, as described in <a href="http://tools.ietf.org/html/rfc815">[RFC-815]</a>.
+         * The hole descriptors are kept outside of the slab so a fragment never
+         * overwrites the descriptor of a hole that it does not fill.
          * 
-         * @param buffer
+         * @param packet
          *            - The IP datagram fragment.
-         * @param fragmentOffset
-         *            - The fragment offset.
-         * @param isMoreFragments
-         *            - Indicates this is the end fragment.
-         * @return Indicates whether the datagram is complete.
+         * @return <code>false</code> if the fragment cannot be applied because it lies
+         *         beyond the slab or the end of the datagram, or because the datagram
+         *         has too many holes.
          */
-        boolean addFragment(final ByteBuffer buffer, final int fragmentOffset, final boolean isMoreFragments) {
+        boolean addFragment(final IPPacket packet) {
 
-            int fragmentFirst = fragmentOffset;
-            int fragmentLast = fragmentFirst + ((buffer.limit() + 7) / 8) - 1;
+            ByteBuffer fragment = packet.getFragment();
+            int fragmentLength = fragment.limit();
+            int first = packet.getFragmentOffset() * 8;
+            int limit = first + fragmentLength;
+            boolean isMoreFragments = packet.isMoreFragments();
 
-            // Remove all of the hole descriptors that will be overritten by this fragment
-            int hole = this.firstHole;
+            if (limit > SLAB_SIZE || (this.length >= 0 && limit > this.length)) {
+                return false;
+            }
 
-            while (hole != EOL) {
+            if (!isMoreFragments) {
+                if (this.length >= 0 && this.length != limit) {
+                    return false;
+                }
+                this.length = limit;
+            }
 
-                int holeLast = getHoleLast(hole);
-                int nextHole = getNextHole(hole);
-                if (fragmentFirst > holeLast) {
-                    // Fragment falls after this hole - check next hole
-                    hole = nextHole;
-                    continue;
+            int i = 0;
+            while (i < this.holeCount) {
+
+                int hole = this.holeFirst[i];
+                int holeLimit = this.holeLimit[i];
+
+                if (!isMoreFragments && holeLimit > limit) {
+                    // The last fragment bounds the datagram - trim the open hole
+                    if (hole >= limit) {
+                        removeHole(i);
+                        continue;
+                    }
+                    holeLimit = limit;
+                    this.holeLimit[i] = limit;
                 }
 
-                if (fragmentLast < hole) {
-                    // Fragment falls in front of this hole - check next hole
-                    hole = nextHole;
+                if (first >= holeLimit || limit <= hole) {
+                    // Fragment does not overlap this hole
+                    i++;
                     continue;
                 }
 
-                int prevHole = getPrevHole(hole);
-
-                if (fragmentFirst > hole) {
-                    if (logger.isLoggable(Level.FINER)) {
-                        logger.finer(this.log.msg("hole.first=" + hole + " hole.last=" + holeLast + " frag.first=" + fragmentFirst
-                                                  + " frag.last=" + fragmentLast + " <-- fragment overlaps end of hole"));
+                if (first > hole) {
+                    // Fragment leaves the start of the hole unfilled
+                    this.holeLimit[i] = first;
+                    if (limit < holeLimit) {
+                        // and the end of the hole
+                        if (!insertHole(i + 1, limit, holeLimit)) {
+                            return false;
+                        }
+                        i++;
                     }
-                    setHoleLast(hole, fragmentLast - 1);
+                    i++;
                 }
-                else if (fragmentLast < holeLast && isMoreFragments) {
-                    logger.finer(this.log.msg("hole.first=" + hole + " hole.last=" + holeLast + " frag.first=" + fragmentFirst
-                                              + " frag.last=" + fragmentLast + " <-- fragment overlaps start of hole"));
-                    int newHole = fragmentLast + 1;
-                    if (prevHole == EOL) {
-                        this.firstHole = newHole;
-                    }
-                    else {
-                        setNextHole(prevHole, newHole);
-                    }
-                    if (nextHole != EOL) {
-                        setPrevHole(nextHole, newHole);
-                    }
-                    setHole(fragmentLast + 1, holeLast, prevHole, nextHole);
+                else if (limit < holeLimit) {
+                    // Fragment leaves the end of the hole unfilled
+                    this.holeFirst[i] = limit;
+                    i++;
                 }
                 else {
-                    logger.finer(this.log.msg("hole.first=" + hole + " hole.last=" + holeLast + " frag.first=" + fragmentFirst
-                                              + " frag.last=" + fragmentLast + " <-- fragment overlaps entire hole - delete hole"));
-                    if (prevHole == EOL) {
-                        this.firstHole = nextHole;
-                    }
-                    else {
-                        setNextHole(prevHole, nextHole);
-                    }
-                    if (nextHole != EOL) {
-                        setPrevHole(nextHole, prevHole);
-                    }
+                    // Fragment fills the hole
+                    removeHole(i);
                 }
-                hole = nextHole;
             }
 
-            // Now write the fragment into the buffer
-            buffer.position(0);
-            buffer.get(this.buffer, fragmentOffset * 8, buffer.limit());
-            buffer.position(0);
+            fragment.position(0);
+            fragment.get(this.slab, first, fragmentLength);
+            fragment.position(0);
 
-            int limit = buffer.limit() + fragmentOffset * 8;
-            if (limit > this.length) {
-                this.length = limit > this.buffer.length ? this.buffer.length : limit;
+            if (first == 0) {
+                // Use this packet to construct the completed packet
+                this.fragmentZeroPacket = packet;
+            }
+
+            return true;
+        }
+
+        /**
+         * Constructs the completed packet from fragment zero and a copy of the
+         * reassembled payload. The payload is copied so the slab can be reused while
+         * the packet is still held by downstream channels.
+         * 
+         * @throws ParseException
+         */
+        IPPacket getCompletedPacket() throws ParseException {
+            byte[] payload = new byte[this.length];
+            System.arraycopy(this.slab, 0, payload, 0, this.length);
+            this.fragmentZeroPacket.setReassembledPayload(ByteBuffer.wrap(payload));
+            return this.fragmentZeroPacket;
+        }
+
+        private boolean insertHole(final int i, final int first, final int limit) {
+            if (this.holeCount == MAX_HOLES) {
+                return false;
             }
+            System.arraycopy(this.holeFirst, i, this.holeFirst, i + 1, this.holeCount - i);
+            System.arraycopy(this.holeLimit, i, this.holeLimit, i + 1, this.holeCount - i);
+            this.holeFirst[i] = first;
+            this.holeLimit[i] = limit;
+            this.holeCount++;
+            return true;
+        }
 
-            // If firstHole is zero, there are no more holes to fill.
-            return this.firstHole == EOL;
+        private void removeHole(final int i) {
+            this.holeCount--;
+            System.arraycopy(this.holeFirst, i + 1, this.holeFirst, i, this.holeCount - i);
+            System.arraycopy(this.holeLimit, i + 1, this.holeLimit, i, this.holeCount - i);
+        }
+
+        /**
+         * Expires the reassembly once the timeout has elapsed.
+         */
+        @Override
+        public void run() {
+            try {
+                expire(this);
+            }
+            catch (Exception e) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(PacketAssembler.this.log.msg("exception thrown in packet reassembly timer task - " +
+                                                             e.getClass().getName() + ":" + e.getMessage()));
+                }
+            }
         }
     }
 
@@ -426,96 +338,49 @@ final class PacketAssembler
 
     public static final int REASSEMBLY_TIMEOUT = 500; // 60000; // Milliseconds
 
-    /*-- Static Functions ---------------------------------------------------*/
-
     /**
-     * Constructs an IPv6 buffer identifier from values contained in an IPv6
-     * packet header. A <code>ByteBuffer</code> provides the <code>hashCode()</code> and
-     * <code>equals()</code> methods that are
-     * required to locate a {@link ReassemblyBuffer} in the {@link #cache} HashMap.
-     * 
-     * @param packet
-     *            - The IPv6 packet that provides the values used to construct
-     *            the identifier.
+     * The size of the slab used to reassemble a datagram - large enough for the
+     * largest IPv4 or non-jumbo IPv6 payload.
      */
-    static ByteBuffer constructBufferIdentifier(final IPv6Packet packet) {
-        return constructBufferIdentifier(packet.getSourceAddress(), packet.getDestinationAddress(), packet.getFragmentIdentifier());
-    }
+    static final int SLAB_SIZE = 65536;
 
     /**
-     * Constructs an {@link ReassemblyBuffer} identifier from values contained
-     * in an IPv6 packet header. A <code>ByteBuffer</code> provides the
-     * <code>hashCode()</code> and <code>equals()</code> methods that are
-     * required to locate a {@link ReassemblyBuffer} in the {@link #cache} HashMap.
-     * 
-     * @param sourceAddress
-     *            - The source address contained in the IPv6 header (16 bytes).
-     * @param destinationAddress
-     *            - The destination address contained in the IPv6 header (16
-     *            bytes).
-     * @param identification
-     *            - The identification value contained in the IPv6 header (4
-     *            bytes).
+     * The shared memory budget account charged for active slabs and pending packets.
      */
-    static ByteBuffer constructBufferIdentifier(final byte[] sourceAddress,
-                                                final byte[] destinationAddress,
-                                                final int identification) {
-        int size = sourceAddress.length + destinationAddress.length + 4;
-        ByteBuffer identifier = ByteBuffer.allocate(size);
-        // Components added in order most likely to produce earliest indication
-        // of inequality. TODO
-        identifier.putInt(identification);
-        identifier.put(sourceAddress);
-        identifier.put(destinationAddress);
-        identifier.rewind();
-        return identifier;
-    }
+    private static final MemoryBudget.Account memoryAccount = MemoryBudget.getSharedInstance().getAccount("PacketAssembler");
 
     /**
-     * Constructs a {@link ReassemblyBuffer} identifier from values contained in
-     * an IPv4 packet header. A <code>ByteBuffer</code> provides the
-     * <code>hashCode()</code> and <code>equals()</code> methods that are
-     * required to locate a {@link ReassemblyBuffer} in the {@link #cache} HashMap.
-     * 
-     * @param packet
-     *            - The IPv5 packet that provides the values used to construct
-     *            the identifier.
+     * The maximum number of holes tracked for a datagram. Datagrams whose fragments
+     * arrive so far out of order that this limit is exceeded are dropped.
      */
-    static ByteBuffer constructBufferIdentifier(final IPv4Packet packet) {
-        return constructBufferIdentifier(packet.getSourceAddress(), packet.getDestinationAddress(), (short) packet
-                        .getFragmentIdentifier(), packet.getProtocol());
-    }
+    static final int MAX_HOLES = 16;
 
     /**
-     * Constructs an IPv4 buffer identifier from values contained in an IPv6
-     * packet header. A <code>ByteBuffer</code> provides the <code>hashCode()</code> and
-     * <code>equals()</code> methods that are
-     * required to locate a {@link ReassemblyBuffer} in the {@link #cache} HashMap.
-     * 
-     * @param sourceAddress
-     *            - The source address contained in the IPv4 header (4 bytes).
-     * @param destinationAddress
-     *            - The destination address contained in the IPv4 header (4
-     *            bytes).
-     * @param identification
-     *            - The identification value contained in the IPv4 header (2
-     *            bytes).
-     * @param protocol
-     *            - The protocol value contained in the IPv4 header (1 byte).
+     * The initial number of slots used when the cache size is not limited.
      */
-    static ByteBuffer constructBufferIdentifier(final byte[] sourceAddress,
-                                                final byte[] destinationAddress, short identification,
-                                                final byte protocol) {
-        int size = sourceAddress.length + destinationAddress.length + 5;
-        ByteBuffer identifier = ByteBuffer.allocate(size);
-        // Components added in order most likely to produce earliest indication
-        // of inequality. TODO
-        identifier.putShort(identification);
-        identifier.put(sourceAddress);
-        identifier.put(destinationAddress);
-        identifier.put(protocol);
-        identifier.rewind();
-        return identifier;
+    static final int INITIAL_CACHE_SIZE = 16;
+
+    private static final long IPV4_KEY_TAG = 4L << 56;
+
+    private static final long IPV6_KEY_TAG = 6L << 56;
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    private static long toLong(final byte[] bytes, final int offset) {
+        long value = 0;
+        for (int i = offset; i < offset + 8; i++) {
+            value = (value << 8) | (bytes[i] & 0xFF);
+        }
+        return value;
+    }
+
+    private static int toInt(final byte[] bytes) {
+        return ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+    }
+
+    private static int mix(long hash) {
+        hash *= 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32));
     }
 
     /*-- Member Variables ---------------------------------------------------*/
@@ -528,17 +393,54 @@ final class PacketAssembler
 
     private final OutputChannel<IPPacket> timeoutChannel;
 
-    private final HashMap<ByteBuffer, ReassemblyBuffer> cache = new HashMap<ByteBuffer, ReassemblyBuffer>();
+    /**
+     * All slots, active or not.
+     */
+    private ReassemblyBuffer[] slots;
+
+    /**
+     * Indices of the inactive slots.
+     */
+    private int[] freeSlots;
+
+    private int freeCount;
 
-    private final LinkedList<IPPacket> pendingQueue = new LinkedList<IPPacket>();
+    /**
+     * Open addressing hash table that maps a key to a slot index plus one.
+     * Zero indicates an empty bucket.
+     */
+    private int[] table;
+
+    private int activeCount = 0;
+
+    private final ArrayDeque<IPPacket> pendingQueue = new ArrayDeque<IPPacket>();
 
     private final int maxCacheSize;
 
     private int cummulativePendingPacketSize = 0;
 
-    private final Timer taskTimer;
+    private final TimingWheel taskTimer;
+
+    private long reassembledCount = 0;
 
-    private TimerTask reaperTask = null;
+    private long timedOutCount = 0;
+
+    private long droppedCount = 0;
+
+    private int slabCount = 0;
+
+    /*
+     * Key of the packet currently being processed.
+     */
+    private long key0;
+
+    private long key1;
+
+    private long key2;
+
+    private long key3;
+
+    private long key4;
 
     private enum Result {
         Started,
@@ -561,15 +463,14 @@ final class PacketAssembler
      *            - Maximum number of datagrams that can be reassembled at the same time.
      *            A value of zero is used to indicate that there should be no limit.
      * @param taskTimer
-     *            - Externally constructed Timer used to execute the task used to check
-     *            timeouts.
-     *            The assembler will construct its own timer if this value is
+     *            - Timing wheel used to execute the task used to check timeouts.
+     *            The assembler will use the shared timing wheel if this value is
      *            <code>null</code>.
      */
     PacketAssembler(final OutputChannel<IPPacket> outputChannel,
                     final OutputChannel<IPPacket> timeoutChannel,
                     final int maxCacheSize,
-                    final Timer taskTimer) {
+                    final TimingWheel taskTimer) {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry(
@@ -587,12 +488,14 @@ final class PacketAssembler
         this.outputChannel = outputChannel;
         this.timeoutChannel = timeoutChannel;
         this.maxCacheSize = maxCacheSize >= 0 ? maxCacheSize : 0;
-        this.taskTimer = (taskTimer != null ? taskTimer : new Timer(PacketAssembler.class.getName()));
+        this.taskTimer = (taskTimer != null ? taskTimer : TimingWheel.getSharedInstance());
+
+        allocateSlots(this.maxCacheSize != 0 ? this.maxCacheSize : INITIAL_CACHE_SIZE);
     }
 
     /**
      * Constructs an assembler output channel that imposes no limit on cache size
-     * and constructs its own Timer thread.
+     * and uses the shared timing wheel.
      * 
      * @param outputChannel
      *            - The output channel that will receive reassembled datagrams. Required.
@@ -602,7 +505,7 @@ final class PacketAssembler
     }
 
     /**
-     * Constructs an assembler output channel that constructs its own Timer thread.
+     * Constructs an assembler output channel that uses the shared timing wheel.
      * 
      * @param outputChannel
      *            - The output channel that will receive reassembled datagrams. Required.
@@ -616,7 +519,7 @@ final class PacketAssembler
     }
 
     /**
-     * Constructs an assembler output channel that constructs its own Timer thread.
+     * Constructs an assembler output channel that uses the shared timing wheel.
      * 
      * @param outputChannel
      *            - The output channel that will receive reassembled datagrams. Required.
@@ -624,20 +527,19 @@ final class PacketAssembler
      *            - Maximum number of datagrams that can be reassembled at the same time.
      *            A value of zero is used to indicate that there should be no limit.
      * @param taskTimer
-     *            - Externally constructed Timer used to execute the task used to check
-     *            timeouts.
-     *            The assembler will construct its own timer if this value is
+     *            - Timing wheel used to execute the task used to check timeouts.
+     *            The assembler will use the shared timing wheel if this value is
      *            <code>null</code>.
      */
     PacketAssembler(final OutputChannel<IPPacket> outputChannel,
                     final int maxCacheSize,
-                    final Timer taskTimer) {
+                    final TimingWheel taskTimer) {
         this(outputChannel, null, maxCacheSize, taskTimer);
     }
 
     /**
      * Constructs an assembler output channel that imposes no limit on cache size and
-     * constructs its own Timer thread.
+     * uses the shared timing wheel.
      * 
      * @param outputChannel
      *            - The output channel that will receive reassembled datagrams. Required.
@@ -651,7 +553,7 @@ final class PacketAssembler
     }
 
     /**
-     * Constructs an assembler output channel that constructs its own Timer thread.
+     * Constructs an assembler output channel that uses the shared timing wheel.
      * 
      * @param outputChannel
      *            - The output channel that will receive reassembled datagrams. Required.
@@ -665,7 +567,7 @@ final class PacketAssembler
     PacketAssembler(final OutputChannel<IPPacket> outputChannel,
                     final OutputChannel<IPPacket> timeoutChannel,
                     final int maxCacheSize) {
-        this(outputChannel, timeoutChannel, 0, null);
+        this(outputChannel, timeoutChannel, maxCacheSize, null);
     }
 
     /**
@@ -674,13 +576,12 @@ final class PacketAssembler
      * @param outputChannel
      *            - The output channel that will receive reassembled datagrams. Required.
      * @param taskTimer
-     *            - Externally constructed Timer used to execute the task used to check
-     *            timeouts.
-     *            The defragmenter will construct its own timer if this value is
+     *            - Timing wheel used to execute the task used to check timeouts.
+     *            The defragmenter will use the shared timing wheel if this value is
      *            <code>null</code>.
      */
     PacketAssembler(final OutputChannel<IPPacket> outputChannel,
-                    final Timer taskTimer) {
+                    final TimingWheel taskTimer) {
         this(outputChannel, null, 0, taskTimer);
     }
 
@@ -693,14 +594,13 @@ final class PacketAssembler
      *            - The optional output channel used to receive timeout notifications.
      *            May be <code>null</code>
      * @param taskTimer
-     *            - Externally constructed Timer used to execute the task used to check
-     *            timeouts.
-     *            The defragmenter will construct its own timer if this value is
+     *            - Timing wheel used to execute the task used to check timeouts.
+     *            The defragmenter will use the shared timing wheel if this value is
      *            <code>null</code>.
      */
     PacketAssembler(final OutputChannel<IPPacket> outputChannel,
                     final OutputChannel<IPPacket> timeoutChannel,
-                    final Timer taskTimer) {
+                    final TimingWheel taskTimer) {
         this(outputChannel, timeoutChannel, 0, taskTimer);
     }
 
@@ -709,6 +609,44 @@ final class PacketAssembler
         return logger;
     }
 
+    /**
+     * Gets the number of datagrams that have been reassembled.
+     */
+    long getReassembledCount() {
+        synchronized (this.lock) {
+            return this.reassembledCount;
+        }
+    }
+
+    /**
+     * Gets the number of slabs allocated by the slot pool.
+     */
+    int getSlabCount() {
+        synchronized (this.lock) {
+            return this.slabCount;
+        }
+    }
+
+    /**
+     * Gets the number of datagrams discarded because they could not be reassembled
+     * within the reassembly timeout.
+     */
+    long getTimedOutCount() {
+        synchronized (this.lock) {
+            return this.timedOutCount;
+        }
+    }
+
+    /**
+     * Gets the number of datagrams and fragments discarded because they were
+     * malformed, exceeded the reassembly limits or overflowed the pending queue.
+     */
+    long getDroppedCount() {
+        synchronized (this.lock) {
+            return this.droppedCount;
+        }
+    }
+
     @Override
     public void send(final IPPacket packet, final int milliseconds) throws IOException, InterruptedIOException, InterruptedException {
 
@@ -740,9 +678,15 @@ final class PacketAssembler
                 int packetSize = packet.getTotalLength();
 
                 if (this.cummulativePendingPacketSize + packetSize > MAX_CUMMULATIVE_PENDING_PACKET_SIZE) {
+                    this.droppedCount++;
                     throw new IOException("datagram reassembly cache size limit reached");
                 }
 
+                if (!memoryAccount.tryAcquire(packetSize)) {
+                    this.droppedCount++;
+                    throw new IOException("datagram reassembly memory budget exhausted");
+                }
+
                 if (logger.isLoggable(Level.FINER)) {
                     logger.finer(this.log.msg("queueing packet for future reassembly"));
                 }
@@ -772,6 +716,7 @@ final class PacketAssembler
             if (result != Result.Denied) {
                 iter.remove();
                 this.cummulativePendingPacketSize -= packetSize;
+                memoryAccount.release(packetSize);
             }
             if (!isCheckAll) {
                 if (result == Result.Started || result == Result.Completed) {
@@ -788,6 +733,8 @@ final class PacketAssembler
     }
 
     /**
+     * Must be called while holding the lock.
+     * 
      * @param packet
      * @param milliseconds
      * @return
@@ -799,64 +746,56 @@ final class PacketAssembler
 
         Result result = Result.Denied;
 
-        // Construct the identifier we used to lookup reassembly buffers in the cache
-        ByteBuffer identifier;
-        byte version = packet.getVersion();
-        if (version == 4) {
-            identifier = constructBufferIdentifier((IPv4Packet) packet);
-        }
-        else if (version == 6) {
-            identifier = constructBufferIdentifier((IPv6Packet) packet);
-        }
-        else {
-            throw new IllegalArgumentException("unrecognized IP packet type");
-        }
+        // Construct the key used to lookup reassembly buffers in the table
+        setKey(packet);
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.msg("searching reassembly buffer for source=" + Logging.address(packet.getSourceAddress()) +
                                       " destination=" + Logging.address(packet.getDestinationAddress()) +
                                       " identification=" + packet.getFragmentIdentifier() +
-                                      " fragment-offset=" + packet.getFragmentOffset() +
-                                      " identifier-hashCode=" + identifier.hashCode()));
+                                      " fragment-offset=" + packet.getFragmentOffset()));
         }
 
-        ReassemblyBuffer reassemblyBuffer = this.cache.get(identifier);
+        ReassemblyBuffer reassemblyBuffer = find();
         if (reassemblyBuffer == null) {
 
-            if (this.maxCacheSize != 0 && this.cache.size() >= this.maxCacheSize) {
+            if (this.freeCount == 0 && this.maxCacheSize != 0) {
                 if (logger.isLoggable(Level.FINER)) {
-                    logger.finer(this.log.msg("reassembly cache is full cache-size=" + this.cache.size() + " queue-size="
+                    logger.finer(this.log.msg("reassembly cache is full cache-size=" + this.activeCount + " queue-size="
                                               + this.pendingQueue.size()));
                 }
                 // Indicate that the packet can't be processed yet
                 return result;
             }
 
-            if (logger.isLoggable(Level.FINER)) {
-                logger.finer(this.log.msg("creating new reassembly buffer"));
+            if (this.freeCount == 0) {
+                allocateSlots(this.slots.length * 2);
             }
-            reassemblyBuffer = new ReassemblyBuffer(identifier, REASSEMBLY_TIMEOUT);
-            this.cache.put(identifier, reassemblyBuffer);
-            result = Result.Started;
-            if (this.reaperTask == null) {
-                this.reaperTask = new TimerTask() {
 
-                    @Override
-                    public void run() {
-                        try {
-                            reap(false);
-                        }
-                        catch (Exception e) {
-                            if (logger.isLoggable(Level.FINE)) {
-                                logger.fine(PacketAssembler.this.log.msg("exception thrown in packet reassembly timer task - " +
-                                                                         e.getClass().getName() + ":" + e.getMessage()));
-                            }
-                        }
-                    }
-                };
-                // Run once a second starting once second from now
-                this.taskTimer.schedule(this.reaperTask, 1000, 1000);
+            reassemblyBuffer = this.slots[this.freeSlots[this.freeCount - 1]];
+            if (!reassemblyBuffer.start()) {
+                if (logger.isLoggable(Level.FINER)) {
+                    logger.finer(this.log.msg("memory budget exhausted cache-size=" + this.activeCount + " queue-size="
+                                              + this.pendingQueue.size()));
+                }
+                // Indicate that the packet can't be processed yet
+                return result;
             }
+
+            if (logger.isLoggable(Level.FINER)) {
+                logger.finer(this.log.msg("starting new reassembly"));
+            }
+
+            this.freeCount--;
+            reassemblyBuffer.key0 = this.key0;
+            reassemblyBuffer.key1 = this.key1;
+            reassemblyBuffer.key2 = this.key2;
+            reassemblyBuffer.key3 = this.key3;
+            reassemblyBuffer.key4 = this.key4;
+            insert(reassemblyBuffer);
+            this.activeCount++;
+            this.taskTimer.schedule(reassemblyBuffer, REASSEMBLY_TIMEOUT);
+            result = Result.Started;
         }
         else {
             if (logger.isLoggable(Level.FINER)) {
@@ -864,103 +803,243 @@ final class PacketAssembler
             }
         }
 
-        try {
-            if (reassemblyBuffer.addFragment(packet)) {
-                if (logger.isLoggable(Level.FINER)) {
-                    logger.finer(this.log.msg("reassembly complete"));
-                }
-                this.outputChannel.send(reassemblyBuffer.getCompletedPacket(), milliseconds);
-                this.cache.remove(reassemblyBuffer.getIdentifier());
-                result = Result.Completed;
+        if (!reassemblyBuffer.addFragment(packet)) {
+            if (logger.isLoggable(Level.FINE)) {
+                logger.fine(this.log.msg("discarding datagram with invalid or excessively reordered fragments"));
             }
-            else if (result == Result.Denied) {
-                result = Result.Added;
+            this.droppedCount++;
+            release(reassemblyBuffer);
+            return Result.Completed;
+        }
+
+        if (reassemblyBuffer.isComplete()) {
+            if (logger.isLoggable(Level.FINER)) {
+                logger.finer(this.log.msg("reassembly complete"));
+            }
+            IPPacket completedPacket;
+            try {
+                completedPacket = reassemblyBuffer.getCompletedPacket();
+            }
+            catch (ParseException e) {
+                this.droppedCount++;
+                throw new IOException(e.getMessage());
+            }
+            finally {
+                release(reassemblyBuffer);
             }
+            this.reassembledCount++;
+            this.outputChannel.send(completedPacket, milliseconds);
+            result = Result.Completed;
         }
-        catch (ParseException e) {
-            throw new IOException(e.getMessage());
+        else if (result == Result.Denied) {
+            result = Result.Added;
         }
 
         if (logger.isLoggable(Level.FINER)) {
-            logger.finer(this.log.msg("reassembly cache-size=" + this.cache.size() + " queue-size=" + this.pendingQueue.size()));
+            logger.finer(this.log.msg("reassembly cache-size=" + this.activeCount + " queue-size=" + this.pendingQueue.size()));
         }
 
         // Indicate the end result
         return result;
     }
 
-    @Override
-    public void close() throws IOException, InterruptedException {
-        reap(true);
-        this.outputChannel.close();
+    /**
+     * Packs the source address, destination address, identification and protocol
+     * of a fragment into the current key.
+     */
+    private void setKey(final IPPacket packet) {
+        byte version = packet.getVersion();
+        if (version == IPv4Packet.INTERNET_PROTOCOL_VERSION) {
+            IPv4Packet ipv4Packet = (IPv4Packet) packet;
+            this.key0 = ((long) toInt(ipv4Packet.getSourceAddress()) << 32)
+                        | (toInt(ipv4Packet.getDestinationAddress()) & 0xFFFFFFFFL);
+            this.key1 = IPV4_KEY_TAG | ((ipv4Packet.getProtocol() & 0xFF) << 16) | (ipv4Packet.getFragmentIdentifier() & 0xFFFF);
+            this.key2 = 0;
+            this.key3 = 0;
+            this.key4 = 0;
+        }
+        else if (version == IPv6Packet.INTERNET_PROTOCOL_VERSION) {
+            byte[] sourceAddress = packet.getSourceAddress();
+            byte[] destinationAddress = packet.getDestinationAddress();
+            this.key0 = toLong(sourceAddress, 0);
+            this.key1 = toLong(sourceAddress, 8);
+            this.key2 = toLong(destinationAddress, 0);
+            this.key3 = toLong(destinationAddress, 8);
+            this.key4 = IPV6_KEY_TAG | (packet.getFragmentIdentifier() & 0xFFFFFFFFL);
+        }
+        else {
+            throw new IllegalArgumentException("unrecognized IP packet type");
+        }
+    }
+
+    private int hash(final long k0, final long k1, final long k2, final long k3, final long k4) {
+        return mix(k0 ^ mix(k1 ^ mix(k2 ^ mix(k3 ^ k4))));
+    }
+
+    private boolean matches(final ReassemblyBuffer buffer) {
+        return buffer.key0 == this.key0 && buffer.key1 == this.key1 && buffer.key2 == this.key2 &&
+               buffer.key3 == this.key3 && buffer.key4 == this.key4;
+    }
+
+    /**
+     * Locates the active reassembly that matches the current key.
+     */
+    private ReassemblyBuffer find() {
+        int mask = this.table.length - 1;
+        int bucket = hash(this.key0, this.key1, this.key2, this.key3, this.key4) & mask;
+        int entry;
+        while ((entry = this.table[bucket]) != 0) {
+            ReassemblyBuffer buffer = this.slots[entry - 1];
+            if (matches(buffer)) {
+                return buffer;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        return null;
+    }
+
+    private void insert(final ReassemblyBuffer buffer) {
+        int mask = this.table.length - 1;
+        int bucket = hash(buffer.key0, buffer.key1, buffer.key2, buffer.key3, buffer.key4) & mask;
+        while (this.table[bucket] != 0) {
+            bucket = (bucket + 1) & mask;
+        }
+        this.table[bucket] = buffer.index + 1;
     }
 
     /**
-     * @param reapAll
+     * Removes a reassembly from the table, shifting any entries that follow it in the
+     * probe sequence so that lookups never encounter a gap.
+     */
+    private void remove(final ReassemblyBuffer buffer) {
+        int mask = this.table.length - 1;
+        int bucket = hash(buffer.key0, buffer.key1, buffer.key2, buffer.key3, buffer.key4) & mask;
+        while (this.table[bucket] != buffer.index + 1) {
+            bucket = (bucket + 1) & mask;
+        }
+        int gap = bucket;
+        bucket = (bucket + 1) & mask;
+        int entry;
+        while ((entry = this.table[bucket]) != 0) {
+            ReassemblyBuffer next = this.slots[entry - 1];
+            int home = hash(next.key0, next.key1, next.key2, next.key3, next.key4) & mask;
+            // Move the entry into the gap unless its home bucket lies cyclically in (gap, bucket]
+            if (((bucket - home) & mask) >= ((bucket - gap) & mask)) {
+                this.table[gap] = entry;
+                gap = bucket;
+            }
+            bucket = (bucket + 1) & mask;
+        }
+        this.table[gap] = 0;
+    }
+
+    /**
+     * Returns a slot to the pool and the memory charged for its slab to the budget.
+     * Must be called while holding the lock.
+     */
+    private void release(final ReassemblyBuffer buffer) {
+        buffer.cancel();
+        remove(buffer);
+        buffer.clear();
+        this.freeSlots[this.freeCount++] = buffer.index;
+        this.activeCount--;
+    }
+
+    /**
+     * Grows the slot pool to the specified size and rebuilds the hash table.
+     * Slabs are only allocated when a slot is first used.
+     */
+    private void allocateSlots(final int size) {
+        ReassemblyBuffer[] slots = new ReassemblyBuffer[size];
+        int[] freeSlots = new int[size];
+        int freeCount = 0;
+        int oldSize = 0;
+        if (this.slots != null) {
+            oldSize = this.slots.length;
+            System.arraycopy(this.slots, 0, slots, 0, oldSize);
+            System.arraycopy(this.freeSlots, 0, freeSlots, 0, this.freeCount);
+            freeCount = this.freeCount;
+        }
+        for (int i = size - 1; i >= oldSize; i--) {
+            slots[i] = new ReassemblyBuffer(i);
+            freeSlots[freeCount++] = i;
+        }
+        this.slots = slots;
+        this.freeSlots = freeSlots;
+        this.freeCount = freeCount;
+
+        int tableSize = Integer.highestOneBit(size * 2 - 1) << 1;
+        this.table = new int[tableSize];
+        for (ReassemblyBuffer buffer : slots) {
+            if (buffer.isActive) {
+                insert(buffer);
+            }
+        }
+    }
+
+    /**
+     * Discards a reassembly whose timeout has elapsed.
+     * 
+     * @param buffer
      * @throws InterruptedIOException
      * @throws IOException
      * @throws InterruptedException
      */
-    private void reap(final boolean reapAll) throws InterruptedIOException, IOException, InterruptedException {
+    private void expire(final ReassemblyBuffer buffer) throws InterruptedIOException, IOException, InterruptedException {
 
         synchronized (this.lock) {
 
-            long currentTimeMillis = System.currentTimeMillis();
+            long currentTimeNanos = System.nanoTime();
 
-            if (reapAll) {
-                this.pendingQueue.clear();
-                this.cache.clear();
+            if (!buffer.isActive) {
+                return;
             }
-            else {
-                // Iterate over cache and check age of each entry
-                // Copy key set to avoid concurrent modification errors
-                HashSet<ByteBuffer> identifierSet = new HashSet<ByteBuffer>(this.cache.keySet());
 
-                Iterator<ByteBuffer> iter = identifierSet.iterator();
-                while (iter.hasNext()) {
-
-                    // Get the next reassembly buffer
-                    // The buffer will no longer exist if flushed by the
-                    // processPendingPackets() call below.
-                    ReassemblyBuffer buffer = this.cache.get(iter.next());
-                    if (buffer != null && buffer.isExpired(currentTimeMillis)) {
+            // The slot may have been reused after this expiration was triggered
+            long age = buffer.getAge(currentTimeNanos);
+            if (age < REASSEMBLY_TIMEOUT) {
+                this.taskTimer.schedule(buffer, REASSEMBLY_TIMEOUT - age);
+                return;
+            }
 
-                        if (logger.isLoggable(Level.FINER)) {
-                            logger.finer(this.log.msg("reassembly timeout exceeded buffer-identifier="
-                                                      + Logging.identify(buffer.getIdentifier()) +
-                                                      " identifier-hashCode=" + buffer.getIdentifier().hashCode() +
-                                                      " age=" + buffer.getAge(currentTimeMillis) + "ms"));
-                        }
+            if (logger.isLoggable(Level.FINER)) {
+                logger.finer(this.log.msg("reassembly timeout exceeded age=" + age + "ms"));
+            }
 
-                        if (this.timeoutChannel != null) {
-                            IPPacket packet = buffer.getFragmentZeroPacket();
-                            if (packet != null) {
-                                if (!Precondition.isMulticastAddress(packet.getDestinationAddress())) {
-                                    this.timeoutChannel.send(packet, Integer.MAX_VALUE);
-                                }
-                            }
-                        }
+            IPPacket packet = buffer.getFragmentZeroPacket();
 
-                        // Remove the reassembly buffer from the cache now that we're done
-                        // with it.
-                        iter.remove();
+            // Return the slot to the pool now that we're done with it.
+            release(buffer);
+            this.timedOutCount++;
 
-                    }
+            if (this.timeoutChannel != null && packet != null) {
+                if (!Precondition.isMulticastAddress(packet.getDestinationAddress())) {
+                    this.timeoutChannel.send(packet, Integer.MAX_VALUE);
                 }
+            }
 
-                // If the cache size was limited, there may be packets pending
-                // Now that the cache size is reduced, we can process these to create a
-                // new entries
-                if (this.maxCacheSize > 0 && this.cache.size() < this.maxCacheSize) {
-                    processPendingPackets(Integer.MAX_VALUE);
-                }
+            // If the cache size was limited, there may be packets pending
+            // Now that the cache size is reduced, we can process these to create a
+            // new entries
+            if (!this.pendingQueue.isEmpty()) {
+                processPendingPackets(Integer.MAX_VALUE);
+            }
+        }
+    }
 
-                if (this.cache.isEmpty()) {
-                    this.reaperTask.cancel();
-                    this.reaperTask = null;
+    @Override
+    public void close() throws IOException, InterruptedException {
+        synchronized (this.lock) {
+            for (ReassemblyBuffer buffer : this.slots) {
+                if (buffer.isActive) {
+                    release(buffer);
                 }
             }
+            this.pendingQueue.clear();
+            memoryAccount.release(this.cummulativePendingPacketSize);
+            this.cummulativePendingPacketSize = 0;
         }
+        this.outputChannel.close();
     }
 
 }
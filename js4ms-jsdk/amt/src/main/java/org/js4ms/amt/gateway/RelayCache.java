@@ -0,0 +1,328 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * RelayCache.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.util.Properties;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+import org.js4ms.common.util.logging.Logging;
+
+
+
+/**
+ * A file-backed cache that records the relay selected for each relay discovery
+ * address so that a restarted gateway can send an AMT Request message to the relay
+ * immediately instead of repeating relay discovery.
+ * Each entry records the relay address and the last query interval reported by the
+ * relay and expires once it is older than the cache time-to-live.
+ * The cache file is rewritten on a background thread each time an entry changes, so
+ * that the tunnel threads that record relays never wait for file I/O. Changes made
+ * while a write is pending are combined into that write.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class RelayCache {
+
+    /*-- Inner Classes ------------------------------------------------------*/
+
+    /**
+     * A cached relay.
+     */
+    static final class Entry {
+
+        final InetAddress relayAddress;
+
+        final int queryInterval;
+
+        final long timestamp;
+
+        Entry(final InetAddress relayAddress, final int queryInterval, final long timestamp) {
+            this.relayAddress = relayAddress;
+            this.queryInterval = queryInterval;
+            this.timestamp = timestamp;
+        }
+    }
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(RelayCache.class.getName());
+
+    /**
+     * The default time-to-live for cache entries in milliseconds.
+     */
+    public static final long DEFAULT_TIME_TO_LIVE = 60 * 60 * 1000; // 1 hour
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final Log log = new Log(this);
+
+    private final File file;
+
+    private final long timeToLive;
+
+    private final Properties entries = new Properties();
+
+    /**
+     * Writes the cache file. The single thread exits when idle.
+     */
+    private final ThreadPoolExecutor storeExecutor;
+
+    /**
+     * Indicates whether a write has been scheduled but has not yet copied the entries.
+     * Guarded by this object.
+     */
+    private boolean isStorePending = false;
+
+    /**
+     * Writes a copy of the entries to the cache file.
+     */
+    private final Runnable storeTask = new Runnable() {
+
+        @Override
+        public void run() {
+            Properties entries;
+            synchronized (RelayCache.this) {
+                RelayCache.this.isStorePending = false;
+                entries = (Properties) RelayCache.this.entries.clone();
+            }
+            store(entries);
+        }
+    };
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs a cache that uses the specified file and loads any entries
+     * recorded in that file.
+     * 
+     * @param file
+     *            The file used to store the cache entries. Need not exist.
+     * @param timeToLive
+     *            The time in milliseconds that an entry remains valid after it was
+     *            last recorded.
+     */
+    public RelayCache(final File file, final long timeToLive) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("RelayCache.RelayCache", file, timeToLive));
+        }
+
+        this.file = file;
+        this.timeToLive = timeToLive;
+
+        this.storeExecutor = new ThreadPoolExecutor(1, 1,
+                                                    30, TimeUnit.SECONDS,
+                                                    new LinkedBlockingQueue<Runnable>(),
+                                                    new DaemonThreadFactory("AMT Relay Cache Writer"));
+        this.storeExecutor.allowCoreThreadTimeOut(true);
+
+        if (file.exists()) {
+            InputStream inputStream = null;
+            try {
+                inputStream = new FileInputStream(file);
+                this.entries.load(inputStream);
+            }
+            catch (IOException e) {
+                logger.warning(this.log.msg("cannot load AMT relay cache " + file + " - " + e.getClass().getName() + ":"
+                                            + e.getMessage()));
+            }
+            finally {
+                close(inputStream);
+            }
+        }
+    }
+
+    /**
+     * Gets the file used to store the cache entries.
+     */
+    public File getFile() {
+        return this.file;
+    }
+
+    /**
+     * Gets the time in milliseconds that an entry remains valid after it was last
+     * recorded.
+     */
+    public long getTimeToLive() {
+        return this.timeToLive;
+    }
+
+    /**
+     * Removes all entries from the cache.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        scheduleStore();
+    }
+
+    /**
+     * Gets the unexpired entry for the specified relay discovery address and protocol.
+     * 
+     * @return The cache entry or <code>null</code> if there is no valid entry.
+     */
+    synchronized Entry get(final InetAddress relayDiscoveryAddress, final AmtTunnelEndpoint.Protocol protocol) {
+
+        String value = this.entries.getProperty(getKey(relayDiscoveryAddress, protocol));
+        if (value == null) {
+            return null;
+        }
+
+        try {
+            String[] fields = value.split(",");
+            Entry entry = new Entry(InetAddress.getByName(fields[0]), Integer.parseInt(fields[1]), Long.parseLong(fields[2]));
+            if (System.currentTimeMillis() - entry.timestamp < this.timeToLive) {
+                return entry;
+            }
+        }
+        catch (Exception e) {
+            logger.fine(this.log.msg("ignoring invalid AMT relay cache entry " + value));
+        }
+
+        return null;
+    }
+
+    /**
+     * Records the relay selected for the specified relay discovery address and protocol.
+     * The cache file is only rewritten if the entry has changed or has reached half
+     * of its time-to-live.
+     */
+    synchronized void put(final InetAddress relayDiscoveryAddress,
+                          final AmtTunnelEndpoint.Protocol protocol,
+                          final InetAddress relayAddress,
+                          final int queryInterval) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("RelayCache.put", Logging.address(relayDiscoveryAddress), protocol,
+                                        Logging.address(relayAddress), queryInterval));
+        }
+
+        Entry entry = get(relayDiscoveryAddress, protocol);
+        long now = System.currentTimeMillis();
+        if (entry != null &&
+            entry.relayAddress.equals(relayAddress) &&
+            entry.queryInterval == queryInterval &&
+            now - entry.timestamp < this.timeToLive / 2) {
+            return;
+        }
+
+        this.entries.setProperty(getKey(relayDiscoveryAddress, protocol),
+                                 relayAddress.getHostAddress() + "," + queryInterval + "," + now);
+        scheduleStore();
+    }
+
+    /**
+     * Removes the entry for the specified relay discovery address and protocol if the
+     * entry refers to the specified relay.
+     */
+    synchronized void remove(final InetAddress relayDiscoveryAddress,
+                             final AmtTunnelEndpoint.Protocol protocol,
+                             final InetAddress relayAddress) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("RelayCache.remove", Logging.address(relayDiscoveryAddress), protocol,
+                                        Logging.address(relayAddress)));
+        }
+
+        String key = getKey(relayDiscoveryAddress, protocol);
+        String value = this.entries.getProperty(key);
+        if (value != null && relayAddress != null && value.startsWith(relayAddress.getHostAddress() + ",")) {
+            this.entries.remove(key);
+            scheduleStore();
+        }
+    }
+
+    private static String getKey(final InetAddress relayDiscoveryAddress, final AmtTunnelEndpoint.Protocol protocol) {
+        return relayDiscoveryAddress.getHostAddress() + "/" + protocol;
+    }
+
+    /**
+     * Schedules a write of the cache file unless one is already pending.
+     * Must be called while holding the lock on this object.
+     */
+    private void scheduleStore() {
+        if (!this.isStorePending) {
+            this.isStorePending = true;
+            this.storeExecutor.execute(this.storeTask);
+        }
+    }
+
+    /**
+     * Writes the entries to a temporary file and then replaces the cache file so that
+     * a failed write does not corrupt the existing cache.
+     * Only called on the writer thread.
+     */
+    private void store(final Properties entries) {
+
+        File temporaryFile = new File(this.file.getPath() + ".tmp");
+
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(temporaryFile);
+            entries.store(outputStream, "AMT relay cache");
+            outputStream.close();
+            outputStream = null;
+            if (!temporaryFile.renameTo(this.file)) {
+                // Some platforms will not rename over an existing file
+                this.file.delete();
+                if (!temporaryFile.renameTo(this.file)) {
+                    throw new IOException("cannot rename " + temporaryFile);
+                }
+            }
+        }
+        catch (IOException e) {
+            logger.warning(this.log.msg("cannot store AMT relay cache " + this.file + " - " + e.getClass().getName() + ":"
+                                        + e.getMessage()));
+        }
+        finally {
+            close(outputStream);
+        }
+    }
+
+    private static void close(final Closeable stream) {
+        if (stream != null) {
+            try {
+                stream.close();
+            }
+            catch (IOException e) {
+                // Ignore
+            }
+        }
+    }
+
+}
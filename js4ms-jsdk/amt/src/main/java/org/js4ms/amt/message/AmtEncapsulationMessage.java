@@ -55,6 +55,8 @@ abstract class AmtEncapsulationMessage
 
         IPPacket.BufferParser ipParser = null;
 
+        boolean isPacketChecksumVerified = true;
+
         /**
          * @param ipParser
          */
@@ -76,6 +78,24 @@ abstract class AmtEncapsulationMessage
             return this.ipParser;
         }
 
+        /**
+         * Enables or disables verification of the IP packet checksum.
+         * Verification is enabled by default. It may be disabled when the caller
+         * verifies checksums itself or trusts the sender of the encapsulated packets.
+         * 
+         * @param isVerified
+         */
+        public void setPacketChecksumVerified(final boolean isVerified) {
+            this.isPacketChecksumVerified = isVerified;
+        }
+
+        /**
+         * @return
+         */
+        public boolean isPacketChecksumVerified() {
+            return this.isPacketChecksumVerified;
+        }
+
         /**
          * @param buffer
          * @return
@@ -88,7 +108,9 @@ abstract class AmtEncapsulationMessage
             // Precondition.checkReference(buffer);
             AmtEncapsulationMessage message = constructMessage(buffer);
             if (this.ipParser != null) {
-                message.verifyPacketChecksum(this.ipParser);
+                if (this.isPacketChecksumVerified) {
+                    message.verifyPacketChecksum(this.ipParser);
+                }
                 message.parsePacket(this.ipParser);
             }
             return message;
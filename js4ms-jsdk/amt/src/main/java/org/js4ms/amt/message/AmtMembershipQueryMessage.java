@@ -342,7 +342,7 @@ public final class AmtMembershipQueryMessage
                                         queryPacket));
         }
 
-        GatewayAddressFlag.set(getBufferInternal(), gatewayAddress != null);
+        GatewayAddressFlag.setBoolean(getBufferInternal(), gatewayAddress != null);
         setResponseMac(responseMac);
         setRequestNonce(requestNonce);
         setGatewayAddress(gatewayAddress);
@@ -426,7 +426,7 @@ public final class AmtMembershipQueryMessage
      * @return The boolean value of the limit (L) flag field.
      */
     public boolean getProtocolFlag() {
-        return LimitFlag.get(getBufferInternal());
+        return LimitFlag.getBoolean(getBufferInternal());
     }
 
     /**
@@ -438,7 +438,7 @@ public final class AmtMembershipQueryMessage
      *            new gateways.
      */
     public void setProtocolFlag(final boolean limitReached) {
-        LimitFlag.set(getBufferInternal(), limitReached);
+        LimitFlag.setBoolean(getBufferInternal(), limitReached);
     }
 
     /**
@@ -448,7 +448,7 @@ public final class AmtMembershipQueryMessage
      *         address fields.
      */
     public boolean getGatewayAddressFlag() {
-        return GatewayAddressFlag.get(getBufferInternal());
+        return GatewayAddressFlag.getBoolean(getBufferInternal());
     }
 
     /**
@@ -464,7 +464,7 @@ public final class AmtMembershipQueryMessage
             logger.finer(this.log.entry("AmtMembershipQueryMessage.setGatewayAddressFlag", hasGatewayAddress));
         }
 
-        GatewayAddressFlag.set(getBufferInternal(), hasGatewayAddress);
+        GatewayAddressFlag.setBoolean(getBufferInternal(), hasGatewayAddress);
     }
 
     /**
@@ -497,7 +497,7 @@ public final class AmtMembershipQueryMessage
      * @return The integer value of the request nonce field.
      */
     public int getRequestNonce() {
-        return RequestNonce.get(getBufferInternal());
+        return RequestNonce.getInt(getBufferInternal());
     }
 
     /**
@@ -513,7 +513,7 @@ public final class AmtMembershipQueryMessage
             logger.finer(this.log.entry("AmtMembershipQueryMessage.setRequestNonce", requestNonce));
         }
 
-        RequestNonce.set(getBufferInternal(), requestNonce);
+        RequestNonce.setInt(getBufferInternal(), requestNonce);
     }
 
     /**
@@ -349,7 +349,7 @@ public final class AmtMembershipUpdateMessage
      * @return The integer value of the request nonce field.
      */
     public int getRequestNonce() {
-        return RequestNonce.get(getBufferInternal());
+        return RequestNonce.getInt(getBufferInternal());
     }
 
     /**
@@ -365,7 +365,7 @@ public final class AmtMembershipUpdateMessage
             logger.finer(this.log.entry("AmtMembershipUpdateMessage.setRequestNonce", requestNonce));
         }
 
-        RequestNonce.set(getBufferInternal(), requestNonce);
+        RequestNonce.setInt(getBufferInternal(), requestNonce);
     }
 
 }
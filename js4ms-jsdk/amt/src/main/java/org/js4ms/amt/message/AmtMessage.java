@@ -28,7 +28,8 @@ import java.util.logging.Logger;
 
 import org.js4ms.common.util.buffer.BufferBackedObject;
 import org.js4ms.common.util.buffer.field.ByteField;
-import org.js4ms.common.util.buffer.field.SelectorField;
+import org.js4ms.common.util.buffer.parser.ApplicationMessage;
+import org.js4ms.common.util.buffer.parser.BufferParserTableSelector;
 import org.js4ms.common.util.buffer.parser.KeyedApplicationMessage;
 
 
@@ -54,15 +55,17 @@ public abstract class AmtMessage
 
     /**
      * Base AMT message parser.
+     * Message parsers are selected from a table indexed by the message type.
      */
     public static class Parser
-                    extends KeyedApplicationMessage.Parser {
+                    extends BufferParserTableSelector<KeyedApplicationMessage<?>>
+                    implements ApplicationMessage.Parser {
 
         /**
          * 
          */
         public Parser() {
-            super(new SelectorField<Byte>(AmtMessage.MessageType));
+            super(AmtMessage.MessageType);
         }
 
     }
@@ -175,7 +178,7 @@ public abstract class AmtMessage
 
     @Override
     public Byte getType() {
-        return MessageType.get(getBufferInternal());
+        return MessageType.getByte(getBufferInternal());
     }
 
     /**
@@ -187,7 +190,7 @@ public abstract class AmtMessage
             logger.fine(this.log.entry("AmtMessage.setType", type));
         }
 
-        MessageType.set(getBufferInternal(), type);
+        MessageType.setByte(getBufferInternal(), type);
     }
 
     @Override
@@ -178,6 +178,10 @@ public final class AmtMulticastDataMessage
                                                                           // headers (or
                                                                           // skip?)
         // ipv6Parser.setProtocolParser(ipMessageParser);
+        // Data packets are consumed through the unparsed payload, so only the fixed
+        // headers are parsed unless a consumer asks for the protocol messages.
+        ipv4Parser.setLazyParsingEnabled(true);
+        ipv6Parser.setLazyParsingEnabled(true);
         IPPacket.BufferParser ipParser = new IPPacket.BufferParser();
         ipParser.add(ipv4Parser);
         ipParser.add(ipv6Parser);
@@ -242,7 +242,7 @@ public final class AmtRelayAdvertisementMessage
      * @return The integer value of the discovery nonce field.
      */
     public int getDiscoveryNonce() {
-        return DiscoveryNonce.get(getBufferInternal());
+        return DiscoveryNonce.getInt(getBufferInternal());
     }
 
     /**
@@ -258,7 +258,7 @@ public final class AmtRelayAdvertisementMessage
             logger.finer(this.log.entry("AmtRelayAdvertisementMessage.setDiscoveryNonce", discoveryNonce));
         }
 
-        DiscoveryNonce.set(getBufferInternal(), discoveryNonce);
+        DiscoveryNonce.setInt(getBufferInternal(), discoveryNonce);
     }
 
     /**
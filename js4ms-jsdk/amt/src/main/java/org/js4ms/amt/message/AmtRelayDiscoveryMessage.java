@@ -233,7 +233,7 @@ public final class AmtRelayDiscoveryMessage
      * @return The integer value of the discovery nonce field.
      */
     public int getDiscoveryNonce() {
-        return RequestNonce.get(getBufferInternal());
+        return RequestNonce.getInt(getBufferInternal());
     }
 
     /**
@@ -248,7 +248,7 @@ public final class AmtRelayDiscoveryMessage
             logger.finer(this.log.entry("AmtRelayDiscoveryMessage.setDiscoveryNonce", discoveryNonce));
         }
 
-        RequestNonce.set(getBufferInternal(), discoveryNonce);
+        RequestNonce.setInt(getBufferInternal(), discoveryNonce);
     }
 
 }
@@ -246,7 +246,7 @@ public final class AmtRequestMessage
      * @return The boolean value of the protocol (P) flag field.
      */
     public boolean getProtocolFlag() {
-        return ProtocolFlag.get(getBufferInternal());
+        return ProtocolFlag.getBoolean(getBufferInternal());
     }
 
     /**
@@ -258,7 +258,7 @@ public final class AmtRequestMessage
      *            where <code>false</code> is IGMPv3 and <code>true</code> is MLDv2.
      */
     public void setProtocolFlag(final boolean requestMLD) {
-        ProtocolFlag.set(getBufferInternal(), requestMLD);
+        ProtocolFlag.setBoolean(getBufferInternal(), requestMLD);
     }
 
     /**
@@ -267,7 +267,7 @@ public final class AmtRequestMessage
      * @return The integer value of the request nonce field.
      */
     public int getRequestNonce() {
-        return RequestNonce.get(getBufferInternal());
+        return RequestNonce.getInt(getBufferInternal());
     }
 
     /**
@@ -282,7 +282,7 @@ public final class AmtRequestMessage
             logger.finer(this.log.entry("AmtRequestMessage.setRequestNonce", requestNonce));
         }
 
-        RequestNonce.set(getBufferInternal(), requestNonce);
+        RequestNonce.setInt(getBufferInternal(), requestNonce);
     }
 
 }
@@ -314,7 +314,7 @@ public final class AmtTeardownMessage
      * @return The integer value of the request nonce field.
      */
     public int getRequestNonce() {
-        return RequestNonce.get(getBufferInternal());
+        return RequestNonce.getInt(getBufferInternal());
     }
 
     /**
@@ -331,7 +331,7 @@ public final class AmtTeardownMessage
             logger.finer(this.log.entry("AmtTeardownMessage.setRequestNonce", requestNonce));
         }
 
-        RequestNonce.set(getBufferInternal(), requestNonce);
+        RequestNonce.setInt(getBufferInternal(), requestNonce);
     }
 
     /**
@@ -343,7 +343,7 @@ public final class AmtTeardownMessage
     public InetSocketAddress getGatewayAddress() {
         try {
             return new InetSocketAddress(InetAddress.getByAddress(GatewayAddress.get(getBufferInternal())),
-                                         GatewayPort.get(getBufferInternal()));
+                                         GatewayPort.getShort(getBufferInternal()));
         }
         catch (UnknownHostException e) {
             e.printStackTrace();
@@ -365,7 +365,7 @@ public final class AmtTeardownMessage
         }
 
         short port = (short) gatewayAddress.getPort();
-        GatewayPort.set(getBufferInternal(), port);
+        GatewayPort.setShort(getBufferInternal(), port);
 
         byte[] address = gatewayAddress.getAddress().getAddress();
         if (address.length == 4) {
@@ -24,7 +24,6 @@ package org.js4ms.amt.message;
 
 
 import java.net.InetAddress;
-import java.util.HashSet;
 import java.util.Iterator;
 
 /**
@@ -110,7 +109,7 @@ public final class GroupMembershipRecord {
 
     Type recordType;
 
-    HashSet<InetAddress> sourceSet;
+    SourceSet sourceSet;
 
     /**
      * Constructs an instance for the specified group.
@@ -123,7 +122,7 @@ public final class GroupMembershipRecord {
      *            - The sources to list in the record - set is stored by reference, not
      *            copied.
      */
-    public GroupMembershipRecord(InetAddress group, Type recordType, HashSet<InetAddress> sourceSet) {
+    public GroupMembershipRecord(InetAddress group, Type recordType, SourceSet sourceSet) {
         this.group = group;
         this.recordType = recordType;
         this.sourceSet = sourceSet;
@@ -148,17 +147,42 @@ public final class GroupMembershipRecord {
     }
 
     /**
-     * Gets the HashSet containing the source addresses that describe the current
+     * Gets the SourceSet containing the source addresses that describe the current
      * include/exclude state or are used to describe a state change.
      * 
-     * @return The HashSet originally provided when the record was constructed.
+     * @return The SourceSet originally provided when the record was constructed.
      */
-    public HashSet<InetAddress> getSources() {
+    public SourceSet getSources() {
         return this.sourceSet;
     }
 
     /**
-     * Gets an Iterator for the source address HashSet.
+     * Gets the number of bytes required to encode the record in an IGMPv3 or MLDv2
+     * report. The record is encoded as a 4-byte record header followed by the group
+     * address and the source addresses.
+     * 
+     * @return The encoded record length in bytes.
+     */
+    public int getLength() {
+        return getLength(this.group.getAddress().length, this.sourceSet.size());
+    }
+
+    /**
+     * Gets the number of bytes required to encode a record in an IGMPv3 or MLDv2
+     * report.
+     * 
+     * @param addressLength
+     *            The length of the group and source addresses (4 or 16).
+     * @param sourceCount
+     *            The number of source addresses in the record.
+     * @return The encoded record length in bytes.
+     */
+    public static int getLength(final int addressLength, final int sourceCount) {
+        return 4 + addressLength * (sourceCount + 1);
+    }
+
+    /**
+     * Gets an Iterator for the source address set.
      * 
      * @return An Iterator that can be used to iterator over the set of source addresses.
      */
@@ -0,0 +1,695 @@
+package org.js4ms.amt.message;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SourceSet.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A compact set of IPv4 or IPv6 source addresses.
+ * IPv4 addresses are held in a sorted <code>int</code> array and IPv6 addresses in a
+ * sorted <code>long</code> array that holds two values per address. The union,
+ * intersection and difference operations merge the sorted arrays in a single pass
+ * and write the result into a spare array owned by the target set, so once the
+ * arrays have grown to the size of the largest set, the operations do not allocate.
+ * The target set may also be one of the operands.
+ * <p>
+ * This class is not thread-safe.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class SourceSet
+                implements Iterable<InetAddress> {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    private static final int INITIAL_CAPACITY = 4;
+
+    private static final int UNION = 0;
+
+    private static final int INTERSECTION = 1;
+
+    private static final int DIFFERENCE = 2;
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final int addressLength;
+
+    private int size = 0;
+
+    private int[] ipv4Addresses;
+
+    private int[] spareIpv4Addresses;
+
+    private long[] ipv6Addresses;
+
+    private long[] spareIpv6Addresses;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an empty set.
+     * 
+     * @param addressLength
+     *            The length of the addresses held in the set - 4 for IPv4 or 16 for
+     *            IPv6.
+     * @throws IllegalArgumentException
+     *             If the address length is not 4 or 16.
+     */
+    public SourceSet(final int addressLength) {
+        if (addressLength == 4) {
+            this.ipv4Addresses = new int[INITIAL_CAPACITY];
+            this.spareIpv4Addresses = new int[INITIAL_CAPACITY];
+        }
+        else if (addressLength == 16) {
+            this.ipv6Addresses = new long[INITIAL_CAPACITY * 2];
+            this.spareIpv6Addresses = new long[INITIAL_CAPACITY * 2];
+        }
+        else {
+            throw new IllegalArgumentException("invalid address length " + addressLength);
+        }
+        this.addressLength = addressLength;
+    }
+
+    /**
+     * Constructs a set that contains the same addresses as another set.
+     * 
+     * @param sourceSet
+     */
+    public SourceSet(final SourceSet sourceSet) {
+        this(sourceSet.addressLength);
+        set(sourceSet);
+    }
+
+    /**
+     * Constructs a set that contains the addresses in a HashSet.
+     * 
+     * @param addressLength
+     *            The length of the addresses held in the set - 4 for IPv4 or 16 for
+     *            IPv6.
+     * @param sourceSet
+     * @throws IllegalArgumentException
+     *             If the address length is not 4 or 16, or the HashSet contains an
+     *             address of a different length.
+     */
+    public SourceSet(final int addressLength, final HashSet<InetAddress> sourceSet) {
+        this(addressLength);
+        for (InetAddress address : sourceSet) {
+            add(address);
+        }
+    }
+
+    /**
+     * Gets the length of the addresses held in the set.
+     * 
+     * @return 4 for IPv4 or 16 for IPv6.
+     */
+    public int getAddressLength() {
+        return this.addressLength;
+    }
+
+    /**
+     * @return The number of addresses in the set.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @return <code>true</code> if the set is empty.
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * Removes all addresses from the set.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /**
+     * @param address
+     * @return <code>true</code> if the set contains the address.
+     */
+    public boolean contains(final InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return bytes.length == this.addressLength && indexOf(bytes, 0) >= 0;
+    }
+
+    /**
+     * @param address
+     *            A byte array containing an address.
+     * @param offset
+     *            The offset of the address within the array.
+     * @return <code>true</code> if the set contains the address.
+     */
+    public boolean contains(final byte[] address, final int offset) {
+        return indexOf(address, offset) >= 0;
+    }
+
+    /**
+     * Adds an address to the set.
+     * 
+     * @param address
+     * @return <code>true</code> if the address was not already in the set.
+     */
+    public boolean add(final InetAddress address) {
+        return add(address.getAddress(), 0);
+    }
+
+    /**
+     * Adds an address to the set.
+     * 
+     * @param address
+     *            A byte array containing an address.
+     * @param offset
+     *            The offset of the address within the array.
+     * @return <code>true</code> if the address was not already in the set.
+     */
+    public boolean add(final byte[] address, final int offset) {
+        int index = indexOf(address, offset);
+        if (index >= 0) {
+            return false;
+        }
+        index = -index - 1;
+        ensureCapacity(this.size + 1);
+        if (this.addressLength == 4) {
+            System.arraycopy(this.ipv4Addresses, index, this.ipv4Addresses, index + 1, this.size - index);
+            this.ipv4Addresses[index] = getInt(address, offset);
+        }
+        else {
+            System.arraycopy(this.ipv6Addresses, index * 2, this.ipv6Addresses, index * 2 + 2, (this.size - index) * 2);
+            this.ipv6Addresses[index * 2] = getLong(address, offset);
+            this.ipv6Addresses[index * 2 + 1] = getLong(address, offset + 8);
+        }
+        this.size++;
+        return true;
+    }
+
+    /**
+     * Removes an address from the set.
+     * 
+     * @param address
+     * @return <code>true</code> if the address was in the set.
+     */
+    public boolean remove(final InetAddress address) {
+        byte[] bytes = address.getAddress();
+        return bytes.length == this.addressLength && remove(bytes, 0);
+    }
+
+    /**
+     * Removes an address from the set.
+     * 
+     * @param address
+     *            A byte array containing an address.
+     * @param offset
+     *            The offset of the address within the array.
+     * @return <code>true</code> if the address was in the set.
+     */
+    public boolean remove(final byte[] address, final int offset) {
+        int index = indexOf(address, offset);
+        if (index < 0) {
+            return false;
+        }
+        this.size--;
+        if (this.addressLength == 4) {
+            System.arraycopy(this.ipv4Addresses, index + 1, this.ipv4Addresses, index, this.size - index);
+        }
+        else {
+            System.arraycopy(this.ipv6Addresses, index * 2 + 2, this.ipv6Addresses, index * 2, (this.size - index) * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Copies the address at the specified position in the set into a byte array.
+     * 
+     * @param index
+     *            A value in the range [0, {@link #size()}).
+     * @param address
+     *            The destination array.
+     * @param offset
+     *            The offset within the destination array.
+     */
+    public void getAddress(final int index, final byte[] address, final int offset) {
+        checkIndex(index);
+        if (this.addressLength == 4) {
+            putInt(this.ipv4Addresses[index], address, offset);
+        }
+        else {
+            putLong(this.ipv6Addresses[index * 2], address, offset);
+            putLong(this.ipv6Addresses[index * 2 + 1], address, offset + 8);
+        }
+    }
+
+    /**
+     * Gets the address at the specified position in the set.
+     * 
+     * @param index
+     *            A value in the range [0, {@link #size()}).
+     * @return A new InetAddress object.
+     */
+    public InetAddress getInetAddress(final int index) {
+        byte[] address = new byte[this.addressLength];
+        getAddress(index, address, 0);
+        try {
+            return InetAddress.getByAddress(address);
+        }
+        catch (UnknownHostException e) {
+            // Not thrown for addresses of a valid length
+            throw new Error(e);
+        }
+    }
+
+    /**
+     * Replaces the contents of this set with the contents of another set.
+     * 
+     * @param sourceSet
+     */
+    public void set(final SourceSet sourceSet) {
+        set(sourceSet, 0, sourceSet.size);
+    }
+
+    /**
+     * Replaces the contents of this set with a range of addresses from another set.
+     * 
+     * @param sourceSet
+     * @param fromIndex
+     *            The index of the first address to copy.
+     * @param toIndex
+     *            The index following the last address to copy.
+     */
+    public void set(final SourceSet sourceSet, final int fromIndex, final int toIndex) {
+        checkAddressLength(sourceSet);
+        if (fromIndex < 0 || toIndex > sourceSet.size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException();
+        }
+        if (sourceSet == this) {
+            if (fromIndex != 0) {
+                throw new IllegalArgumentException("a set cannot be replaced by a range of itself");
+            }
+            this.size = toIndex;
+            return;
+        }
+        int count = toIndex - fromIndex;
+        ensureCapacity(count);
+        if (this.addressLength == 4) {
+            System.arraycopy(sourceSet.ipv4Addresses, fromIndex, this.ipv4Addresses, 0, count);
+        }
+        else {
+            System.arraycopy(sourceSet.ipv6Addresses, fromIndex * 2, this.ipv6Addresses, 0, count * 2);
+        }
+        this.size = count;
+    }
+
+    /**
+     * Replaces the contents of this set with the union of two sets.
+     * This set may be one of the operands.
+     * 
+     * @param a
+     * @param b
+     */
+    public void union(final SourceSet a, final SourceSet b) {
+        merge(a, b, UNION);
+    }
+
+    /**
+     * Replaces the contents of this set with the intersection of two sets.
+     * This set may be one of the operands.
+     * 
+     * @param a
+     * @param b
+     */
+    public void intersection(final SourceSet a, final SourceSet b) {
+        merge(a, b, INTERSECTION);
+    }
+
+    /**
+     * Replaces the contents of this set with the addresses in set <code>a</code>
+     * that are not in set <code>b</code>.
+     * This set may be one of the operands.
+     * 
+     * @param a
+     * @param b
+     */
+    public void difference(final SourceSet a, final SourceSet b) {
+        merge(a, b, DIFFERENCE);
+    }
+
+    /**
+     * Adds all of the addresses in another set to this set.
+     * 
+     * @param sourceSet
+     */
+    public void addAll(final SourceSet sourceSet) {
+        merge(this, sourceSet, UNION);
+    }
+
+    /**
+     * Removes all addresses that are not in another set from this set.
+     * 
+     * @param sourceSet
+     */
+    public void retainAll(final SourceSet sourceSet) {
+        merge(this, sourceSet, INTERSECTION);
+    }
+
+    /**
+     * Removes all of the addresses in another set from this set.
+     * 
+     * @param sourceSet
+     */
+    public void removeAll(final SourceSet sourceSet) {
+        merge(this, sourceSet, DIFFERENCE);
+    }
+
+    /**
+     * @return A new HashSet containing the addresses in this set.
+     */
+    public HashSet<InetAddress> toHashSet() {
+        HashSet<InetAddress> sourceSet = new HashSet<InetAddress>();
+        for (int i = 0; i < this.size; i++) {
+            sourceSet.add(getInetAddress(i));
+        }
+        return sourceSet;
+    }
+
+    /**
+     * Gets an Iterator that constructs an InetAddress for each address in the set.
+     * The set must not be modified while the iterator is in use.
+     */
+    @Override
+    public Iterator<InetAddress> iterator() {
+        return new Iterator<InetAddress>() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.index < SourceSet.this.size;
+            }
+
+            @Override
+            public InetAddress next() {
+                if (this.index >= SourceSet.this.size) {
+                    throw new NoSuchElementException();
+                }
+                return getInetAddress(this.index++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public boolean equals(final Object object) {
+        if (this == object) {
+            return true;
+        }
+        if (!(object instanceof SourceSet)) {
+            return false;
+        }
+        SourceSet other = (SourceSet) object;
+        if (this.addressLength != other.addressLength || this.size != other.size) {
+            return false;
+        }
+        for (int i = 0; i < this.size; i++) {
+            if (compare(this, i, other, i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = this.size;
+        if (this.addressLength == 4) {
+            for (int i = 0; i < this.size; i++) {
+                hashCode = 31 * hashCode + this.ipv4Addresses[i];
+            }
+        }
+        else {
+            for (int i = 0; i < this.size * 2; i++) {
+                long value = this.ipv6Addresses[i];
+                hashCode = 31 * hashCode + (int) (value ^ (value >>> 32));
+            }
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < this.size; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append(getInetAddress(i).getHostAddress());
+        }
+        return sb.append("]").toString();
+    }
+
+    /**
+     * Merges two sorted sets into the spare array and then swaps the spare and
+     * primary arrays.
+     * 
+     * @param a
+     * @param b
+     * @param operation
+     */
+    private void merge(final SourceSet a, final SourceSet b, final int operation) {
+        checkAddressLength(a);
+        checkAddressLength(b);
+
+        int capacity = operation == UNION ? a.size + b.size : a.size;
+        if (this.addressLength == 4) {
+            if (this.spareIpv4Addresses.length < capacity) {
+                this.spareIpv4Addresses = new int[Math.max(capacity, this.ipv4Addresses.length)];
+            }
+        }
+        else {
+            if (this.spareIpv6Addresses.length < capacity * 2) {
+                this.spareIpv6Addresses = new long[Math.max(capacity * 2, this.ipv6Addresses.length)];
+            }
+        }
+
+        int i = 0;
+        int j = 0;
+        int k = 0;
+        while (i < a.size && j < b.size) {
+            int result = compare(a, i, b, j);
+            if (result < 0) {
+                if (operation != INTERSECTION) {
+                    copyToSpare(a, i, k++);
+                }
+                i++;
+            }
+            else if (result > 0) {
+                if (operation == UNION) {
+                    copyToSpare(b, j, k++);
+                }
+                j++;
+            }
+            else {
+                if (operation != DIFFERENCE) {
+                    copyToSpare(a, i, k++);
+                }
+                i++;
+                j++;
+            }
+        }
+
+        if (operation != INTERSECTION) {
+            while (i < a.size) {
+                copyToSpare(a, i++, k++);
+            }
+        }
+
+        if (operation == UNION) {
+            while (j < b.size) {
+                copyToSpare(b, j++, k++);
+            }
+        }
+
+        if (this.addressLength == 4) {
+            int[] addresses = this.ipv4Addresses;
+            this.ipv4Addresses = this.spareIpv4Addresses;
+            this.spareIpv4Addresses = addresses;
+        }
+        else {
+            long[] addresses = this.ipv6Addresses;
+            this.ipv6Addresses = this.spareIpv6Addresses;
+            this.spareIpv6Addresses = addresses;
+        }
+        this.size = k;
+    }
+
+    /**
+     * @param sourceSet
+     * @param index
+     * @param spareIndex
+     */
+    private void copyToSpare(final SourceSet sourceSet, final int index, final int spareIndex) {
+        if (this.addressLength == 4) {
+            this.spareIpv4Addresses[spareIndex] = sourceSet.ipv4Addresses[index];
+        }
+        else {
+            this.spareIpv6Addresses[spareIndex * 2] = sourceSet.ipv6Addresses[index * 2];
+            this.spareIpv6Addresses[spareIndex * 2 + 1] = sourceSet.ipv6Addresses[index * 2 + 1];
+        }
+    }
+
+    /**
+     * Compares two addresses. The ordering only needs to be consistent, so the
+     * address values are compared as signed integers.
+     * 
+     * @param a
+     * @param i
+     * @param b
+     * @param j
+     * @return
+     */
+    private static int compare(final SourceSet a, final int i, final SourceSet b, final int j) {
+        if (a.addressLength == 4) {
+            int x = a.ipv4Addresses[i];
+            int y = b.ipv4Addresses[j];
+            return x < y ? -1 : (x == y ? 0 : 1);
+        }
+        long x = a.ipv6Addresses[i * 2];
+        long y = b.ipv6Addresses[j * 2];
+        if (x == y) {
+            x = a.ipv6Addresses[i * 2 + 1];
+            y = b.ipv6Addresses[j * 2 + 1];
+        }
+        return x < y ? -1 : (x == y ? 0 : 1);
+    }
+
+    /**
+     * Performs a binary search for an address.
+     * 
+     * @param address
+     * @param offset
+     * @return The index of the address, or <code>-(insertion point) - 1</code> if the
+     *         address is not in the set.
+     */
+    private int indexOf(final byte[] address, final int offset) {
+        if (address.length - offset < this.addressLength) {
+            throw new IllegalArgumentException("invalid address length");
+        }
+        if (this.addressLength == 4) {
+            return Arrays.binarySearch(this.ipv4Addresses, 0, this.size, getInt(address, offset));
+        }
+        long high = getLong(address, offset);
+        long low = getLong(address, offset + 8);
+        int first = 0;
+        int last = this.size - 1;
+        while (first <= last) {
+            int middle = (first + last) >>> 1;
+            long x = this.ipv6Addresses[middle * 2];
+            if (x == high) {
+                x = this.ipv6Addresses[middle * 2 + 1];
+                if (x == low) {
+                    return middle;
+                }
+                else if (x < low) {
+                    first = middle + 1;
+                }
+                else {
+                    last = middle - 1;
+                }
+            }
+            else if (x < high) {
+                first = middle + 1;
+            }
+            else {
+                last = middle - 1;
+            }
+        }
+        return -(first + 1);
+    }
+
+    /**
+     * @param capacity
+     */
+    private void ensureCapacity(final int capacity) {
+        if (this.addressLength == 4) {
+            if (this.ipv4Addresses.length < capacity) {
+                this.ipv4Addresses = Arrays.copyOf(this.ipv4Addresses, Math.max(capacity, this.ipv4Addresses.length * 2));
+            }
+        }
+        else {
+            if (this.ipv6Addresses.length < capacity * 2) {
+                this.ipv6Addresses = Arrays.copyOf(this.ipv6Addresses, Math.max(capacity * 2, this.ipv6Addresses.length * 2));
+            }
+        }
+    }
+
+    /**
+     * @param sourceSet
+     */
+    private void checkAddressLength(final SourceSet sourceSet) {
+        if (sourceSet.addressLength != this.addressLength) {
+            throw new IllegalArgumentException("source sets contain addresses of different lengths");
+        }
+    }
+
+    /**
+     * @param index
+     */
+    private void checkIndex(final int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("index=" + index + " size=" + this.size);
+        }
+    }
+
+    private static int getInt(final byte[] bytes, final int offset) {
+        return ((bytes[offset] & 0xFF) << 24) | ((bytes[offset + 1] & 0xFF) << 16) | ((bytes[offset + 2] & 0xFF) << 8)
+               | (bytes[offset + 3] & 0xFF);
+    }
+
+    private static long getLong(final byte[] bytes, final int offset) {
+        return ((long) getInt(bytes, offset) << 32) | (getInt(bytes, offset + 4) & 0xFFFFFFFFL);
+    }
+
+    private static void putInt(final int value, final byte[] bytes, final int offset) {
+        bytes[offset] = (byte) (value >>> 24);
+        bytes[offset + 1] = (byte) (value >>> 16);
+        bytes[offset + 2] = (byte) (value >>> 8);
+        bytes[offset + 3] = (byte) value;
+    }
+
+    private static void putLong(final long value, final byte[] bytes, final int offset) {
+        putInt((int) (value >>> 32), bytes, offset);
+        putInt((int) value, bytes, offset + 4);
+    }
+}
@@ -24,9 +24,9 @@ package org.js4ms.amt.proxy;
 
 
 import java.io.IOException;
-import java.net.InetAddress;
 
 import org.js4ms.amt.message.GroupMembershipRecord;
+import org.js4ms.amt.message.SourceSet;
 import org.js4ms.io.channel.MessageTransform;
 import org.js4ms.ip.IPPacket;
 import org.js4ms.ip.protocol.igmp.IGMPGroupRecord;
@@ -109,10 +109,15 @@ public final class IPv4MembershipReportTransform
 
         IGMPv3ReportMessage reportMessage = new IGMPv3ReportMessage();
 
+        byte[] sourceAddress = new byte[4];
+
         for (GroupMembershipRecord record : message.getRecords()) {
             IGMPGroupRecord groupRecord = new IGMPGroupRecord((byte) record.getRecordType().getValue(), record.getGroup()
                             .getAddress());
-            for (InetAddress sourceAddress : record.getSources()) {
+            SourceSet sources = record.getSources();
+            for (int i = 0; i < sources.size(); i++) {
+                // The group record copies the address
+                sources.getAddress(i, sourceAddress, 0);
                 groupRecord.addSource(sourceAddress);
             }
             reportMessage.addGroupRecord(groupRecord);
@@ -23,10 +23,13 @@ package org.js4ms.amt.proxy;
  */
 
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 
 import org.js4ms.amt.message.GroupMembershipRecord;
+import org.js4ms.amt.message.SourceSet;
 
 /**
  * A protocol-independent representation of an IGMPv3 or MLDv2 report message.
@@ -35,6 +38,11 @@ import org.js4ms.amt.message.GroupMembershipRecord;
  */
 public final class MembershipReport {
 
+    /**
+     * The length of the IGMPv3 and MLDv2 report message header.
+     */
+    public static final int HEADER_LENGTH = 8;
+
     private final HashSet<GroupMembershipRecord> records = new HashSet<GroupMembershipRecord>();
 
     /**
@@ -62,6 +70,107 @@ public final class MembershipReport {
         return this.records;
     }
 
+    /**
+     * Gets the number of bytes required to encode the report as an IGMPv3 or MLDv2
+     * report message.
+     * 
+     * @return The encoded message length in bytes.
+     */
+    public int getLength() {
+        int length = HEADER_LENGTH;
+        for (GroupMembershipRecord record : this.records) {
+            length += record.getLength();
+        }
+        return length;
+    }
+
+    /**
+     * Splits the report into reports whose encoded length does not exceed the
+     * specified maximum. Records are packed into as few reports as possible.
+     * A record that does not fit in a report on its own is split into several
+     * records that carry part of the source list, except for MODE_IS_EXCLUDE and
+     * CHANGE_TO_EXCLUDE_MODE records, which are truncated as described in
+     * <a href="http://www.rfc-editor.org/rfc/rfc3376.txt">[RFC-3376]</a> section 4.2.16.
+     * 
+     * @param maximumLength
+     *            The maximum encoded message length in bytes.
+     * @return A list containing this report if it does not need to be split,
+     *         otherwise a list of new reports.
+     * @throws IllegalArgumentException
+     *             If the maximum length cannot hold a record with a single source.
+     */
+    public List<MembershipReport> split(final int maximumLength) {
+        ArrayList<MembershipReport> reports = new ArrayList<MembershipReport>();
+        if (getLength() <= maximumLength) {
+            reports.add(this);
+            return reports;
+        }
+
+        MembershipReport report = new MembershipReport();
+        int length = HEADER_LENGTH;
+        for (GroupMembershipRecord record : this.records) {
+            int recordLength = record.getLength();
+            if (HEADER_LENGTH + recordLength > maximumLength) {
+                // The record does not fit in a report on its own
+                int addressLength = record.getGroup().getAddress().length;
+                int maximumSourceCount = (maximumLength - HEADER_LENGTH - GroupMembershipRecord.getLength(addressLength, 0))
+                                         / addressLength;
+                if (maximumSourceCount < 1) {
+                    throw new IllegalArgumentException("maximum report length is too small");
+                }
+                for (GroupMembershipRecord part : splitRecord(record, maximumSourceCount)) {
+                    if (length + part.getLength() > maximumLength) {
+                        reports.add(report);
+                        report = new MembershipReport();
+                        length = HEADER_LENGTH;
+                    }
+                    report.addRecord(part);
+                    length += part.getLength();
+                }
+            }
+            else {
+                if (length + recordLength > maximumLength) {
+                    reports.add(report);
+                    report = new MembershipReport();
+                    length = HEADER_LENGTH;
+                }
+                report.addRecord(record);
+                length += recordLength;
+            }
+        }
+
+        if (!report.records.isEmpty()) {
+            reports.add(report);
+        }
+
+        return reports;
+    }
+
+    /**
+     * @param record
+     * @param maximumSourceCount
+     * @return
+     */
+    private static List<GroupMembershipRecord> splitRecord(final GroupMembershipRecord record,
+                                                           final int maximumSourceCount) {
+        ArrayList<GroupMembershipRecord> parts = new ArrayList<GroupMembershipRecord>();
+        GroupMembershipRecord.Type type = record.getRecordType();
+        boolean truncate = type == GroupMembershipRecord.Type.MODE_IS_EXCLUDE
+                           || type == GroupMembershipRecord.Type.CHANGE_TO_EXCLUDE_MODE;
+        SourceSet sources = record.getSources();
+        int count = sources.size();
+        int start = 0;
+        do {
+            int end = Math.min(start + maximumSourceCount, count);
+            SourceSet part = new SourceSet(sources.getAddressLength());
+            part.set(sources, start, end);
+            parts.add(new GroupMembershipRecord(record.getGroup(), type, part));
+            start = end;
+        }
+        while (start < count && !truncate);
+        return parts;
+    }
+
     /**
      * Gets an Iterator that may be used to iterate over the set of
      * group records contained in the report.
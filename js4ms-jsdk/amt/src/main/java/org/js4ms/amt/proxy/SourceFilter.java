@@ -25,10 +25,10 @@ package org.js4ms.amt.proxy;
 
 import java.io.IOException;
 import java.net.InetAddress;
-import java.util.HashSet;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.js4ms.amt.message.SourceSet;
 import org.js4ms.common.util.logging.Logging;
 
 
@@ -84,7 +84,7 @@ final public class SourceFilter {
 
     private SourceFilter.Mode mode;
 
-    private HashSet<InetAddress> sources = new HashSet<InetAddress>();
+    private final SourceSet sources;
 
     /*-- Member Functions ---------------------------------------------------*/
 
@@ -99,6 +99,7 @@ final public class SourceFilter {
     public SourceFilter(final InetAddress groupAddress) {
         this.mode = Mode.INCLUDE;
         this.groupAddress = groupAddress;
+        this.sources = new SourceSet(groupAddress.getAddress().length);
     }
 
     /**
@@ -146,18 +147,18 @@ final public class SourceFilter {
     /**
      * Returns a reference to the current source list.
      */
-    public HashSet<InetAddress> getSourceSet() {
+    public SourceSet getSourceSet() {
         return this.sources;
     }
 
     /**
-     * Replaces the current source list with a new source list.
+     * Replaces the current source list with the contents of another source list.
      * 
      * @param newSourceSet
      *            - The new source list.
      */
-    public void setSourceSet(final HashSet<InetAddress> newSourceSet) {
-        this.sources = newSourceSet;
+    public void setSourceSet(final SourceSet newSourceSet) {
+        this.sources.set(newSourceSet);
     }
 
     /**
@@ -214,7 +215,7 @@ final public class SourceFilter {
     public void apply(final SourceFilter filter) {
         if (this.mode != filter.mode) {
             this.mode = filter.mode;
-            this.sources = new HashSet<InetAddress>(filter.sources);
+            this.sources.set(filter.sources);
         }
         else {
             this.sources.addAll(filter.sources);
@@ -301,10 +302,7 @@ final public class SourceFilter {
      *             source list.
      */
     public void join(final InetAddress sourceAddress) throws IOException {
-        if (!this.sources.contains(sourceAddress)) {
-            this.sources.add(sourceAddress);
-        }
-        else {
+        if (!this.sources.add(sourceAddress)) {
             throw new IOException("illegal attempt made to join a source in an SSM group to which the channel already subscribes");
         }
     }
@@ -321,10 +319,7 @@ final public class SourceFilter {
      *             list.
      */
     public void leave(final InetAddress sourceAddress) throws IOException {
-        if (this.sources.contains(sourceAddress)) {
-            this.sources.remove(sourceAddress);
-        }
-        else {
+        if (!this.sources.remove(sourceAddress)) {
             throw new IOException("illegal attempt made to leave a source in an SSM group to which the channel is not subscribed");
         }
     }
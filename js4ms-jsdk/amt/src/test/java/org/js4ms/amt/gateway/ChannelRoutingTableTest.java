@@ -0,0 +1,98 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChannelRoutingTableTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import junit.framework.TestCase;
+
+import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.io.net.UdpDatagram;
+
+/**
+ * Tests the in-place route updates made by the {@link ChannelMembershipManager} and
+ * the compaction of retired routes.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class ChannelRoutingTableTest
+                extends TestCase {
+
+    private static final byte[] SOURCE_ADDRESS = { 10, 0, 0, 1 };
+
+    private final OutputChannel<UdpDatagram>[] route = ChannelRoutingTable.newChannelArray(1);
+
+    private final OutputChannel<UdpDatagram>[] empty = ChannelRoutingTable.newChannelArray(0);
+
+    @Override
+    protected void setUp() {
+        this.route[0] = new OutputChannel<UdpDatagram>() {
+
+            @Override
+            public void send(UdpDatagram message, int milliseconds) {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    private static byte[] group(final int index) {
+        return new byte[] { (byte) 232, 1, 1, (byte) index };
+    }
+
+    public void testRetiredRouteIsReusedOnRejoin() {
+        ChannelRoutingTable table = ChannelRoutingTable.create(4, 8);
+        table.put(group(1), SOURCE_ADDRESS, 5000, this.route);
+        table.put(group(2), null, 5000, this.route);
+
+        assertTrue(table.update(group(1), SOURCE_ADDRESS, 5000, this.empty));
+        assertNull(table.get(group(1), SOURCE_ADDRESS, 5000));
+        assertSame(this.route, table.get(group(2), null, 5000));
+        assertEquals(1, table.size());
+        assertEquals(1, table.getRetiredCount());
+
+        assertTrue(table.update(group(1), SOURCE_ADDRESS, 5000, this.route));
+        assertSame(this.route, table.get(group(1), SOURCE_ADDRESS, 5000));
+        assertEquals(2, table.size());
+        assertEquals(0, table.getRetiredCount());
+    }
+
+    public void testRetiredRoutesRequestCompaction() {
+        ChannelRoutingTable table = ChannelRoutingTable.create(4, 8);
+        for (int i = 0; i < 8; i++) {
+            table.put(group(i), null, 5000, this.route);
+        }
+        assertFalse(table.update(group(8), null, 5000, this.route));
+
+        // Retiring routes does not request a new table until retired slots exceed
+        // half the load limit and outnumber the remaining routes
+        for (int i = 0; i < 4; i++) {
+            assertTrue(table.update(group(i), null, 5000, this.empty));
+        }
+        assertEquals(4, table.size());
+        assertFalse(table.update(group(4), null, 5000, this.empty));
+        assertEquals(3, table.size());
+        assertEquals(5, table.getRetiredCount());
+        assertSame(this.route, table.get(group(7), null, 5000));
+    }
+}
@@ -0,0 +1,197 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * HybridMulticastEndpointTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.DatagramPacket;
+import java.net.InetAddress;
+import java.net.MulticastSocket;
+import java.net.NetworkInterface;
+
+import junit.framework.TestCase;
+
+import org.js4ms.amt.gateway.HybridMulticastEndpoint.Mode;
+import org.js4ms.io.net.UdpDatagram;
+
+/**
+ * Tests that each membership of a {@link HybridMulticastEndpoint} falls back to AMT and
+ * returns to native reception independently of the other memberships. Datagrams are
+ * sent natively over the loopback interface. The AMT relay discovery address is the
+ * loopback address, where no relay answers, so AMT joins are accepted but never
+ * deliver datagrams.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class HybridMulticastEndpointTest
+                extends TestCase {
+
+    /**
+     * Sends a datagram to a group over the loopback interface at a fixed interval until
+     * stopped.
+     */
+    static final class Sender
+                    extends Thread {
+
+        private final MulticastSocket socket;
+
+        private final DatagramPacket packet;
+
+        private volatile boolean isRunning = true;
+
+        Sender(final NetworkInterface networkInterface, final InetAddress groupAddress, final int port) throws Exception {
+            this.socket = new MulticastSocket();
+            this.socket.setNetworkInterface(networkInterface);
+            byte[] payload = new byte[64];
+            this.packet = new DatagramPacket(payload, payload.length, groupAddress, port);
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (this.isRunning) {
+                    this.socket.send(this.packet);
+                    Thread.sleep(NATIVE_TIMEOUT / 8);
+                }
+            }
+            catch (Exception e) {
+            }
+            finally {
+                this.socket.close();
+            }
+        }
+
+        void shutdown() throws InterruptedException {
+            this.isRunning = false;
+            join();
+        }
+    }
+
+    static final long NATIVE_TIMEOUT = 400;
+
+    private NetworkInterface loopbackInterface;
+
+    private InetAddress firstGroup;
+
+    private InetAddress secondGroup;
+
+    private int port;
+
+    private HybridMulticastEndpoint endpoint;
+
+    @Override
+    protected void setUp() throws Exception {
+        InetAddress loopbackAddress = InetAddress.getByName("127.0.0.1");
+        this.loopbackInterface = NetworkInterface.getByInetAddress(loopbackAddress);
+        this.firstGroup = InetAddress.getByName("239.255.77.1");
+        this.secondGroup = InetAddress.getByName("239.255.77.2");
+        this.port = 40000 + (int) (System.nanoTime() % 10000);
+        this.endpoint = new HybridMulticastEndpoint(this.port, loopbackAddress, this.loopbackInterface, NATIVE_TIMEOUT, 64);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.endpoint.close();
+    }
+
+    private void awaitMode(final InetAddress groupAddress, final Mode mode) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + NATIVE_TIMEOUT * 10;
+        while (this.endpoint.getMode(groupAddress, null, this.port) != mode && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(mode, this.endpoint.getMode(groupAddress, null, this.port));
+    }
+
+    public void testSilentGroupFallsBackAlone() throws Exception {
+        Sender sender = new Sender(this.loopbackInterface, this.firstGroup, this.port);
+        sender.start();
+        try {
+            this.endpoint.join(this.firstGroup);
+            this.endpoint.join(this.secondGroup);
+
+            awaitMode(this.secondGroup, Mode.AMT);
+            assertEquals(Mode.NATIVE, this.endpoint.getMode(this.firstGroup, null, this.port));
+            assertEquals(Mode.AMT, this.endpoint.getMode());
+            assertTrue(this.endpoint.getNativeCount() > 0);
+        }
+        finally {
+            sender.shutdown();
+        }
+    }
+
+    public void testNativeDatagramsRestoreOnlyMatchingGroup() throws Exception {
+        this.endpoint.join(this.firstGroup);
+        this.endpoint.join(this.secondGroup);
+        awaitMode(this.firstGroup, Mode.AMT);
+        awaitMode(this.secondGroup, Mode.AMT);
+
+        Sender sender = new Sender(this.loopbackInterface, this.secondGroup, this.port);
+        sender.start();
+        try {
+            awaitMode(this.secondGroup, Mode.NATIVE);
+            assertEquals(Mode.AMT, this.endpoint.getMode(this.firstGroup, null, this.port));
+        }
+        finally {
+            sender.shutdown();
+        }
+
+        // The second group falls back again once its datagrams stop
+        awaitMode(this.secondGroup, Mode.AMT);
+    }
+
+    public void testLeaveForgetsMembership() throws Exception {
+        this.endpoint.join(this.firstGroup);
+        assertEquals(Mode.NATIVE, this.endpoint.getMode(this.firstGroup, null, this.port));
+        this.endpoint.leave(this.firstGroup);
+        assertNull(this.endpoint.getMode(this.firstGroup, null, this.port));
+        assertEquals(Mode.NATIVE, this.endpoint.getMode());
+    }
+
+    public void testBufferRecyclingIsPerEndpoint() throws Exception {
+        InetAddress loopbackAddress = InetAddress.getByName("127.0.0.1");
+        HybridMulticastEndpoint recycling = new HybridMulticastEndpoint(this.port, loopbackAddress, this.loopbackInterface,
+                                                                        NATIVE_TIMEOUT, 64, true);
+        Sender sender = new Sender(this.loopbackInterface, this.firstGroup, this.port);
+        sender.start();
+        try {
+            this.endpoint.join(this.firstGroup);
+            recycling.join(this.firstGroup);
+            assertFalse(this.endpoint.isBufferRecyclingEnabled());
+            assertTrue(recycling.isBufferRecyclingEnabled());
+
+            UdpDatagram kept = this.endpoint.receive((int) NATIVE_TIMEOUT * 10);
+            assertNotNull(kept);
+            assertNotNull(kept.getPooledBuffer());
+            assertTrue(kept.getPooledBuffer().isDetached());
+
+            UdpDatagram recycled = recycling.receive((int) NATIVE_TIMEOUT * 10);
+            assertNotNull(recycled);
+            assertNotNull(recycled.getPooledBuffer());
+            assertFalse(recycled.getPooledBuffer().isDetached());
+            recycled.release();
+        }
+        finally {
+            sender.shutdown();
+            recycling.close();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * InterfaceMembershipManagerTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.HashSet;
+
+import junit.framework.TestCase;
+
+import org.js4ms.amt.message.GroupMembershipRecord;
+import org.js4ms.amt.proxy.MembershipReport;
+import org.js4ms.common.util.task.TimingWheel;
+import org.js4ms.io.channel.OutputChannel;
+
+/**
+ * Tests that group state changes made in quick succession are coalesced into a small
+ * number of reports that fit the tunnel MTU.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class InterfaceMembershipManagerTest
+                extends TestCase {
+
+    /**
+     * Collects the reports sent by the manager.
+     */
+    static final class ReportCollector
+                    implements OutputChannel<MembershipReport> {
+
+        private final ArrayList<MembershipReport> reports = new ArrayList<MembershipReport>();
+
+        @Override
+        public synchronized void send(final MembershipReport report, final int milliseconds) {
+            this.reports.add(report);
+            notifyAll();
+        }
+
+        @Override
+        public void close() {
+        }
+
+        synchronized int getRecordCount() {
+            int count = 0;
+            for (MembershipReport report : this.reports) {
+                count += report.getRecords().size();
+            }
+            return count;
+        }
+
+        /**
+         * Waits until the reports sent so far contain the specified number of records.
+         */
+        synchronized ArrayList<MembershipReport> await(final int recordCount) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (getRecordCount() < recordCount && System.currentTimeMillis() < deadline) {
+                wait(deadline - System.currentTimeMillis());
+            }
+            return new ArrayList<MembershipReport>(this.reports);
+        }
+
+        synchronized void clear() {
+            this.reports.clear();
+        }
+    }
+
+    private static final int GROUP_COUNT = 500;
+
+    private final TimingWheel taskTimer = new TimingWheel("InterfaceMembershipManagerTest");
+
+    private final ReportCollector collector = new ReportCollector();
+
+    private final InterfaceMembershipManager manager = new InterfaceMembershipManager(this.taskTimer);
+
+    private InetAddress sourceAddress;
+
+    @Override
+    protected void setUp() throws Exception {
+        this.manager.setOutgoingReportChannel(this.collector);
+        this.manager.setMaximumReportLength(AmtIPInterface.MAXIMUM_IGMP_REPORT_LENGTH);
+        this.sourceAddress = InetAddress.getByAddress(new byte[] {
+                        10, 1, 2, 3
+        });
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.manager.shutdown();
+        this.taskTimer.stop();
+    }
+
+    private static InetAddress group(final int index) throws Exception {
+        return InetAddress.getByAddress(new byte[] {
+                        (byte) 232, 1, (byte) (index >> 8), (byte) index
+        });
+    }
+
+    private static int expectedReportCount() {
+        int recordsPerReport = (AmtIPInterface.MAXIMUM_IGMP_REPORT_LENGTH - MembershipReport.HEADER_LENGTH) /
+                               GroupMembershipRecord.getLength(4, 1);
+        return (GROUP_COUNT + recordsPerReport - 1) / recordsPerReport;
+    }
+
+    private static void assertReports(final ArrayList<MembershipReport> reports,
+                                      final GroupMembershipRecord.Type type) {
+        HashSet<InetAddress> groups = new HashSet<InetAddress>();
+        for (MembershipReport report : reports) {
+            assertTrue(report.getLength() <= AmtIPInterface.MAXIMUM_IGMP_REPORT_LENGTH);
+            for (GroupMembershipRecord record : report.getRecords()) {
+                assertEquals(type, record.getRecordType());
+                assertEquals(1, record.getSources().size());
+                assertTrue(groups.add(record.getGroup()));
+            }
+        }
+        assertEquals(GROUP_COUNT, groups.size());
+    }
+
+    public void testJoinsCoalesced() throws Exception {
+        // Use a window long enough that every join falls within it
+        this.manager.setReportCoalescingInterval(500);
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            this.manager.join(group(i), this.sourceAddress);
+        }
+        assertEquals(0, this.collector.getRecordCount());
+
+        ArrayList<MembershipReport> reports = this.collector.await(GROUP_COUNT);
+        assertEquals(expectedReportCount(), reports.size());
+        assertReports(reports, GroupMembershipRecord.Type.ALLOW_NEW_SOURCES);
+    }
+
+    public void testLeavesCoalesced() throws Exception {
+        this.manager.setReportCoalescingInterval(500);
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            this.manager.join(group(i), this.sourceAddress);
+        }
+        this.collector.await(GROUP_COUNT);
+        this.collector.clear();
+
+        for (int i = 0; i < GROUP_COUNT; i++) {
+            this.manager.leave(group(i), this.sourceAddress);
+        }
+        ArrayList<MembershipReport> reports = this.collector.await(GROUP_COUNT);
+        assertEquals(expectedReportCount(), reports.size());
+        assertReports(reports, GroupMembershipRecord.Type.BLOCK_OLD_SOURCES);
+    }
+
+    public void testZeroIntervalReportsImmediately() throws Exception {
+        this.manager.setReportCoalescingInterval(0);
+        this.manager.join(group(0), this.sourceAddress);
+        assertEquals(1, this.collector.getRecordCount());
+    }
+
+    public void testShutdownFlushesLeaves() throws Exception {
+        this.manager.setReportCoalescingInterval(500);
+        this.manager.join(group(0), this.sourceAddress);
+        this.collector.await(1);
+        this.collector.clear();
+
+        this.manager.leave(group(0), this.sourceAddress);
+        this.manager.shutdown();
+        ArrayList<MembershipReport> reports = this.collector.await(0);
+        assertEquals(1, reports.size());
+        GroupMembershipRecord record = reports.get(0).getRecords().iterator().next();
+        assertEquals(GroupMembershipRecord.Type.BLOCK_OLD_SOURCES, record.getRecordType());
+    }
+}
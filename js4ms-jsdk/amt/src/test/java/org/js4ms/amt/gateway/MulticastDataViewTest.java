@@ -0,0 +1,179 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MulticastDataViewTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.js4ms.common.util.pool.ByteBufferPool;
+import org.js4ms.io.buffer.BufferLeakDetector;
+import org.js4ms.io.buffer.PooledBuffer;
+import org.js4ms.io.net.UdpDatagram;
+
+/**
+ * Tests the direct dispatch path for AMT Multicast Data messages, including the
+ * checksum verification applied to the packets it accepts.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class MulticastDataViewTest
+                extends TestCase {
+
+    private final MulticastDataView view = new MulticastDataView();
+
+    public void testWrapReadsHeadersInPlace() {
+        byte[] payload = TestPackets.payload(1316);
+        ByteBuffer buffer = ByteBuffer.wrap(TestPackets.amtMulticastData(TestPackets.udpPacket(payload)));
+
+        assertTrue(this.view.wrap(buffer));
+        assertEquals(0, buffer.position());
+        assertEquals(4, this.view.getVersion());
+        assertTrue(Arrays.equals(TestPackets.GROUP_ADDRESS, this.view.getGroupAddress()));
+        assertTrue(Arrays.equals(TestPackets.SOURCE_ADDRESS, this.view.getSourceAddress()));
+        assertEquals(TestPackets.SOURCE_PORT, this.view.getSourcePort());
+        assertEquals(TestPackets.DESTINATION_PORT, this.view.getDestinationPort());
+
+        ByteBuffer slice = this.view.getPayload();
+        byte[] bytes = new byte[slice.remaining()];
+        slice.get(bytes);
+        assertTrue(Arrays.equals(payload, bytes));
+    }
+
+    public void testValidChecksumsAccepted() {
+        ByteBuffer buffer = ByteBuffer.wrap(TestPackets.amtMulticastData(TestPackets.udpPacket(TestPackets.payload(100))));
+        assertTrue(this.view.wrap(buffer));
+        assertTrue(this.view.isHeaderChecksumValid());
+        assertTrue(this.view.isUdpChecksumValid());
+
+        ChecksumVerifier verifier = new ChecksumVerifier(ChecksumPolicy.ALWAYS, 1);
+        assertTrue(verifier.verify(this.view));
+        assertEquals(0, verifier.getFailureCount(ChecksumPolicy.ALWAYS));
+    }
+
+    public void testCorruptPayloadRejected() {
+        byte[] message = TestPackets.amtMulticastData(TestPackets.udpPacket(TestPackets.payload(100)));
+        message[message.length - 1] ^= 0x55;
+        assertTrue(this.view.wrap(ByteBuffer.wrap(message)));
+        assertTrue(this.view.isHeaderChecksumValid());
+        assertFalse(this.view.isUdpChecksumValid());
+
+        ChecksumVerifier verifier = new ChecksumVerifier(ChecksumPolicy.ALWAYS, 1);
+        assertFalse(verifier.verify(this.view));
+        assertEquals(1, verifier.getFailureCount(ChecksumPolicy.ALWAYS));
+    }
+
+    public void testCorruptHeaderRejected() {
+        byte[] message = TestPackets.amtMulticastData(TestPackets.udpPacket(TestPackets.payload(100)));
+        // Change the TTL without updating the header checksum
+        message[2 + 8]--;
+        assertTrue(this.view.wrap(ByteBuffer.wrap(message)));
+        assertFalse(this.view.isHeaderChecksumValid());
+        assertFalse(new ChecksumVerifier(ChecksumPolicy.ALWAYS, 1).verify(this.view));
+    }
+
+    public void testZeroUdpChecksumAccepted() {
+        byte[] udp = TestPackets.udp(TestPackets.payload(100), false);
+        byte[] message = TestPackets.amtMulticastData(TestPackets.ipv4(udp, 0, udp.length, 1, 0, false));
+        assertTrue(this.view.wrap(ByteBuffer.wrap(message)));
+        assertEquals(0, this.view.getChecksum());
+        assertTrue(this.view.isUdpChecksumValid());
+    }
+
+    public void testNeverPolicySkipsVerification() {
+        byte[] message = TestPackets.amtMulticastData(TestPackets.udpPacket(TestPackets.payload(100)));
+        message[message.length - 1] ^= 0x55;
+        assertTrue(this.view.wrap(ByteBuffer.wrap(message)));
+        assertTrue(new ChecksumVerifier(ChecksumPolicy.NEVER, 1).verify(this.view));
+    }
+
+    public void testFragmentLeftToParser() {
+        byte[] udp = TestPackets.udp(TestPackets.payload(100), true);
+        byte[] message = TestPackets.amtMulticastData(TestPackets.ipv4(udp, 0, 64, 1, 0, true));
+        assertFalse(this.view.wrap(ByteBuffer.wrap(message)));
+    }
+
+    public void testOtherMessageTypesLeftToParser() {
+        byte[] message = TestPackets.amtMulticastData(TestPackets.udpPacket(TestPackets.payload(100)));
+        message[0] = 0x4;
+        assertFalse(this.view.wrap(ByteBuffer.wrap(message)));
+    }
+
+    /**
+     * Wraps an AMT Multicast Data message held in a buffer drawn from a pool.
+     */
+    private PooledBuffer wrapPooled(final ByteBufferPool pool) {
+        PooledBuffer pooledBuffer = new PooledBuffer(pool);
+        ByteBuffer buffer = pooledBuffer.getBuffer();
+        buffer.put(TestPackets.amtMulticastData(TestPackets.udpPacket(TestPackets.payload(100))));
+        buffer.flip();
+        assertTrue(this.view.wrap(buffer, pooledBuffer));
+        return pooledBuffer;
+    }
+
+    public void testConstructedDatagramHoldsPooledBuffer() {
+        ByteBufferPool pool = new ByteBufferPool(4, 1500, false);
+        BufferLeakDetector.reset();
+        BufferLeakDetector.setEnabled(true);
+        try {
+            PooledBuffer pooledBuffer = wrapPooled(pool);
+            UdpDatagram datagram = this.view.constructDatagram();
+            assertEquals(2, pooledBuffer.getReferenceCount());
+
+            // The receiver is done with the buffer but the datagram is still in use
+            pooledBuffer.release();
+            assertEquals(0, pool.getInactiveCount());
+            assertEquals(1, BufferLeakDetector.getLeakCount());
+
+            datagram.release();
+            BufferLeakDetector.checkLeaks();
+            assertEquals(1, pool.getInactiveCount());
+        }
+        finally {
+            BufferLeakDetector.setEnabled(false);
+            BufferLeakDetector.reset();
+        }
+    }
+
+    public void testDetachedBufferNotRecycled() {
+        ByteBufferPool pool = new ByteBufferPool(4, 1500, false);
+        BufferLeakDetector.reset();
+        BufferLeakDetector.setEnabled(true);
+        try {
+            PooledBuffer pooledBuffer = wrapPooled(pool);
+            UdpDatagram datagram = this.view.constructDatagram();
+
+            // A consumer that does not count references may keep the datagram
+            datagram.detach();
+            pooledBuffer.release();
+            datagram.release();
+            BufferLeakDetector.checkLeaks();
+            assertEquals(0, pool.getInactiveCount());
+        }
+        finally {
+            BufferLeakDetector.setEnabled(false);
+            BufferLeakDetector.reset();
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * PacketAssemblerTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import org.js4ms.amt.message.AmtMulticastDataMessage;
+import org.js4ms.io.buffer.MemoryBudget;
+import org.js4ms.io.channel.OutputChannel;
+import org.js4ms.ip.IPPacket;
+
+/**
+ * Tests the reassembly of fragmented IPv4 datagrams, including out-of-order and
+ * overlapping fragments, hole list overflow, the cache limit and reassembly expiry.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class PacketAssemblerTest
+                extends TestCase {
+
+    /**
+     * Collects the packets sent to an output channel.
+     */
+    static final class PacketCollector
+                    implements OutputChannel<IPPacket> {
+
+        final ArrayList<IPPacket> packets = new ArrayList<IPPacket>();
+
+        @Override
+        public void send(final IPPacket packet, final int milliseconds) {
+            this.packets.add(packet);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final IPPacket.BufferParser parser = AmtMulticastDataMessage.getDataPacketParser();
+
+    private final PacketCollector output = new PacketCollector();
+
+    private final PacketAssembler assembler = new PacketAssembler(this.output);
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.assembler.close();
+    }
+
+    private IPPacket fragment(final byte[] datagram,
+                              final int identification,
+                              final int offset,
+                              final int length) throws Exception {
+        boolean isMoreFragments = offset + length < datagram.length;
+        return this.parser.parse(ByteBuffer.wrap(TestPackets.ipv4(datagram,
+                                                                  offset,
+                                                                  length,
+                                                                  identification,
+                                                                  offset,
+                                                                  isMoreFragments)));
+    }
+
+    private void send(final byte[] datagram, final int identification, final int[] offsets) throws Exception {
+        for (int i = 0; i < offsets.length; i++) {
+            int offset = offsets[i];
+            int limit = datagram.length;
+            for (int next : offsets) {
+                if (next > offset && next < limit) {
+                    limit = next;
+                }
+            }
+            this.assembler.send(fragment(datagram, identification, offset, limit - offset), Integer.MAX_VALUE);
+        }
+    }
+
+    private static void assertPayload(final byte[] expected, final IPPacket packet) {
+        assertFalse(packet.isFragmented());
+        ByteBuffer payload = packet.getUnparsedPayload();
+        byte[] actual = new byte[payload.remaining()];
+        payload.get(actual);
+        assertTrue(Arrays.equals(expected, actual));
+    }
+
+    public void testUnfragmentedPacketForwarded() throws Exception {
+        IPPacket packet = this.parser.parse(ByteBuffer.wrap(TestPackets.udpPacket(TestPackets.payload(100))));
+        this.assembler.send(packet, Integer.MAX_VALUE);
+        assertEquals(1, this.output.packets.size());
+        assertSame(packet, this.output.packets.get(0));
+        assertEquals(0, this.assembler.getReassembledCount());
+    }
+
+    public void testInOrderFragmentsReassembled() throws Exception {
+        byte[] datagram = TestPackets.udp(TestPackets.payload(3000), true);
+        send(datagram, 1, new int[] {
+                        0, 1480, 2960
+        });
+        assertEquals(1, this.output.packets.size());
+        assertPayload(datagram, this.output.packets.get(0));
+        assertEquals(1, this.assembler.getReassembledCount());
+    }
+
+    public void testOutOfOrderFragmentsReassembled() throws Exception {
+        byte[] datagram = TestPackets.udp(TestPackets.payload(4000), true);
+        // The last fragment arrives first and the first fragment last so the hole
+        // list is split and trimmed before it is filled
+        send(datagram, 2, new int[] {
+                        3200, 800, 2400, 1600, 0
+        });
+        assertEquals(1, this.output.packets.size());
+        assertPayload(datagram, this.output.packets.get(0));
+    }
+
+    public void testOverlappingFragmentsReassembled() throws Exception {
+        byte[] datagram = TestPackets.udp(TestPackets.payload(2000), true);
+        this.assembler.send(fragment(datagram, 3, 0, 1200), Integer.MAX_VALUE);
+        this.assembler.send(fragment(datagram, 3, 800, 800), Integer.MAX_VALUE);
+        assertEquals(0, this.output.packets.size());
+        this.assembler.send(fragment(datagram, 3, 1600, datagram.length - 1600), Integer.MAX_VALUE);
+        assertEquals(1, this.output.packets.size());
+        assertPayload(datagram, this.output.packets.get(0));
+    }
+
+    public void testInterleavedDatagramsReassembled() throws Exception {
+        byte[] first = TestPackets.udp(TestPackets.payload(2000), true);
+        byte[] second = TestPackets.udp(TestPackets.payload(1500), true);
+        this.assembler.send(fragment(first, 10, 1000, first.length - 1000), Integer.MAX_VALUE);
+        this.assembler.send(fragment(second, 11, 0, 1000), Integer.MAX_VALUE);
+        this.assembler.send(fragment(first, 10, 0, 1000), Integer.MAX_VALUE);
+        this.assembler.send(fragment(second, 11, 1000, second.length - 1000), Integer.MAX_VALUE);
+        assertEquals(2, this.output.packets.size());
+        assertPayload(first, this.output.packets.get(0));
+        assertPayload(second, this.output.packets.get(1));
+    }
+
+    public void testExcessiveHolesDropped() throws Exception {
+        byte[] datagram = TestPackets.udp(TestPackets.payload(1000), true);
+        // Each fragment splits the open hole in two
+        for (int i = 0; i <= PacketAssembler.MAX_HOLES; i++) {
+            this.assembler.send(fragment(datagram, 4, 16 * i + 8, 8), Integer.MAX_VALUE);
+        }
+        assertEquals(1, this.assembler.getDroppedCount());
+        assertEquals(0, this.output.packets.size());
+    }
+
+    public void testInconsistentLengthDropped() throws Exception {
+        byte[] datagram = TestPackets.udp(TestPackets.payload(2000), true);
+        this.assembler.send(fragment(datagram, 5, 1600, datagram.length - 1600), Integer.MAX_VALUE);
+        // A second last fragment that ends the datagram somewhere else
+        this.assembler.send(this.parser.parse(ByteBuffer.wrap(TestPackets.ipv4(datagram, 0, 800, 5, 800, false))),
+                            Integer.MAX_VALUE);
+        assertEquals(1, this.assembler.getDroppedCount());
+        assertEquals(0, this.output.packets.size());
+    }
+
+    public void testSlabChargedOnlyWhileReassemblyActive() throws Exception {
+        MemoryBudget.Account account = MemoryBudget.getSharedInstance().getAccount("PacketAssembler");
+        long used = account.getUsed();
+        byte[] datagram = TestPackets.udp(TestPackets.payload(3000), true);
+        this.assembler.send(fragment(datagram, 15, 0, 1480), Integer.MAX_VALUE);
+        assertEquals(used + PacketAssembler.SLAB_SIZE, account.getUsed());
+        this.assembler.send(fragment(datagram, 15, 1480, datagram.length - 1480), Integer.MAX_VALUE);
+        assertEquals(1, this.output.packets.size());
+        assertEquals(used, account.getUsed());
+
+        // The next reassembly reuses the idle slab and charges it again
+        this.assembler.send(fragment(datagram, 16, 0, 1480), Integer.MAX_VALUE);
+        assertEquals(used + PacketAssembler.SLAB_SIZE, account.getUsed());
+        this.assembler.send(fragment(datagram, 16, 1480, datagram.length - 1480), Integer.MAX_VALUE);
+        assertEquals(2, this.output.packets.size());
+        assertEquals(used, account.getUsed());
+        assertEquals(1, this.assembler.getSlabCount());
+    }
+
+    public void testCacheLimitDefersNewDatagrams() throws Exception {
+        PacketCollector output = new PacketCollector();
+        PacketAssembler assembler = new PacketAssembler(output, 1);
+        try {
+            byte[] first = TestPackets.udp(TestPackets.payload(2000), true);
+            byte[] second = TestPackets.udp(TestPackets.payload(1500), true);
+            assembler.send(fragment(first, 20, 0, 1000), Integer.MAX_VALUE);
+            // The cache is full so these wait in the pending queue
+            assembler.send(fragment(second, 21, 0, 1000), Integer.MAX_VALUE);
+            assembler.send(fragment(second, 21, 1000, second.length - 1000), Integer.MAX_VALUE);
+            assertEquals(0, output.packets.size());
+            assembler.send(fragment(first, 20, 1000, first.length - 1000), Integer.MAX_VALUE);
+            assertEquals(2, output.packets.size());
+            assertPayload(first, output.packets.get(0));
+            assertPayload(second, output.packets.get(1));
+        }
+        finally {
+            assembler.close();
+        }
+    }
+
+    public void testPendingQueueOverflowRejected() throws Exception {
+        PacketCollector output = new PacketCollector();
+        PacketAssembler assembler = new PacketAssembler(output, 1);
+        try {
+            byte[] datagram = TestPackets.udp(TestPackets.payload(30000), true);
+            assembler.send(fragment(datagram, 30, 0, 1000), Integer.MAX_VALUE);
+            int identification = 31;
+            try {
+                while (identification < 200) {
+                    assembler.send(fragment(datagram, identification++, 0, 8000), Integer.MAX_VALUE);
+                }
+                fail("expected IOException");
+            }
+            catch (IOException e) {
+            }
+            assertEquals(1, assembler.getDroppedCount());
+            assertTrue(identification - 31 <= PacketAssembler.MAX_CUMMULATIVE_PENDING_PACKET_SIZE / 8000 + 1);
+        }
+        finally {
+            assembler.close();
+        }
+    }
+
+    public void testIncompleteDatagramExpires() throws Exception {
+        byte[] datagram = TestPackets.udp(TestPackets.payload(3000), true);
+        this.assembler.send(fragment(datagram, 6, 0, 1480), Integer.MAX_VALUE);
+        this.assembler.send(fragment(datagram, 6, 2960, datagram.length - 2960), Integer.MAX_VALUE);
+
+        long deadline = System.currentTimeMillis() + PacketAssembler.REASSEMBLY_TIMEOUT * 10;
+        while (this.assembler.getTimedOutCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertEquals(1, this.assembler.getTimedOutCount());
+
+        // The missing fragment now starts a new reassembly rather than completing
+        // the expired one
+        this.assembler.send(fragment(datagram, 6, 1480, 1480), Integer.MAX_VALUE);
+        assertEquals(0, this.output.packets.size());
+    }
+}
@@ -0,0 +1,78 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * RelayCacheTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests that the relay cache records relays immediately and writes the cache file
+ * on its writer thread.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class RelayCacheTest
+                extends TestCase {
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        this.file = File.createTempFile("relay-cache", ".properties");
+        this.file.delete();
+    }
+
+    @Override
+    protected void tearDown() {
+        this.file.delete();
+    }
+
+    private void awaitFile() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!this.file.exists() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    public void testPutIsStoredInBackground() throws Exception {
+        InetAddress discoveryAddress = InetAddress.getByName("192.52.193.1");
+        InetAddress relayAddress = InetAddress.getByName("10.1.1.1");
+
+        RelayCache cache = new RelayCache(this.file, RelayCache.DEFAULT_TIME_TO_LIVE);
+        cache.put(discoveryAddress, AmtTunnelEndpoint.Protocol.IPv4, relayAddress, 125000);
+
+        RelayCache.Entry entry = cache.get(discoveryAddress, AmtTunnelEndpoint.Protocol.IPv4);
+        assertNotNull(entry);
+        assertEquals(relayAddress, entry.relayAddress);
+
+        awaitFile();
+        entry = new RelayCache(this.file, RelayCache.DEFAULT_TIME_TO_LIVE).get(discoveryAddress,
+                                                                               AmtTunnelEndpoint.Protocol.IPv4);
+        assertNotNull(entry);
+        assertEquals(relayAddress, entry.relayAddress);
+        assertEquals(125000, entry.queryInterval);
+    }
+}
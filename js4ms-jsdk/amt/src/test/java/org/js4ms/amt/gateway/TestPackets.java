@@ -0,0 +1,158 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * TestPackets.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Builds the IPv4 packets and AMT messages used as test inputs.
+ * Checksums are computed here with a straightforward one's complement sum so the
+ * tests do not depend on the checksum code under test.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+final class TestPackets {
+
+    static final int IPV4_HEADER_LENGTH = 20;
+
+    static final int UDP_HEADER_LENGTH = 8;
+
+    static final byte[] SOURCE_ADDRESS = { 10, 1, 2, 3 };
+
+    static final byte[] GROUP_ADDRESS = { (byte) 232, 1, 1, 1 };
+
+    static final int SOURCE_PORT = 5004;
+
+    static final int DESTINATION_PORT = 5006;
+
+    private TestPackets() {
+    }
+
+    /**
+     * Returns a payload filled with a repeating pattern.
+     */
+    static byte[] payload(final int length) {
+        byte[] payload = new byte[length];
+        for (int i = 0; i < length; i++) {
+            payload[i] = (byte) (i * 7 + 3);
+        }
+        return payload;
+    }
+
+    /**
+     * Builds an unfragmented IPv4 UDP packet with valid header and UDP checksums.
+     */
+    static byte[] udpPacket(final byte[] payload) {
+        byte[] udp = udp(payload, true);
+        return ipv4(udp, 0, udp.length, 1, 0, false);
+    }
+
+    /**
+     * Builds a UDP header and payload. The checksum is computed over the IPv4 pseudo
+     * header for {@link #SOURCE_ADDRESS} and {@link #GROUP_ADDRESS}.
+     */
+    static byte[] udp(final byte[] payload, final boolean isChecksummed) {
+        int length = UDP_HEADER_LENGTH + payload.length;
+        byte[] udp = new byte[length];
+        putShort(udp, 0, SOURCE_PORT);
+        putShort(udp, 2, DESTINATION_PORT);
+        putShort(udp, 4, length);
+        System.arraycopy(payload, 0, udp, UDP_HEADER_LENGTH, payload.length);
+        if (isChecksummed) {
+            long sum = sum(SOURCE_ADDRESS, 0, 4) + sum(GROUP_ADDRESS, 0, 4) + 17 + length + sum(udp, 0, length);
+            int checksum = ~fold(sum) & 0xFFFF;
+            putShort(udp, 6, checksum == 0 ? 0xFFFF : checksum);
+        }
+        return udp;
+    }
+
+    /**
+     * Builds an IPv4 packet that carries part of a UDP datagram.
+     * 
+     * @param datagram
+     *            The UDP header and payload.
+     * @param offset
+     *            The offset of the fragment within the datagram. Must be a multiple
+     *            of eight.
+     * @param length
+     *            The fragment length.
+     * @param identification
+     *            The IPv4 identification field.
+     * @param fragmentOffset
+     *            The fragment offset in bytes.
+     * @param isMoreFragments
+     *            The value of the MF flag.
+     */
+    static byte[] ipv4(final byte[] datagram,
+                       final int offset,
+                       final int length,
+                       final int identification,
+                       final int fragmentOffset,
+                       final boolean isMoreFragments) {
+        byte[] packet = new byte[IPV4_HEADER_LENGTH + length];
+        packet[0] = 0x45;
+        putShort(packet, 2, packet.length);
+        putShort(packet, 4, identification);
+        putShort(packet, 6, (isMoreFragments ? 0x2000 : 0) | (fragmentOffset / 8));
+        packet[8] = 16;
+        packet[9] = 17;
+        System.arraycopy(SOURCE_ADDRESS, 0, packet, 12, 4);
+        System.arraycopy(GROUP_ADDRESS, 0, packet, 16, 4);
+        putShort(packet, 10, ~fold(sum(packet, 0, IPV4_HEADER_LENGTH)) & 0xFFFF);
+        System.arraycopy(datagram, offset, packet, IPV4_HEADER_LENGTH, length);
+        return packet;
+    }
+
+    /**
+     * Encapsulates a packet in an AMT Multicast Data message.
+     */
+    static byte[] amtMulticastData(final byte[] packet) {
+        byte[] message = new byte[2 + packet.length];
+        message[0] = 0x6;
+        System.arraycopy(packet, 0, message, 2, packet.length);
+        return message;
+    }
+
+    /**
+     * Computes the one's complement sum of a range of bytes taken as 16-bit words.
+     */
+    static long sum(final byte[] bytes, final int offset, final int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i += 2) {
+            int high = bytes[offset + i] & 0xFF;
+            int low = i + 1 < length ? bytes[offset + i + 1] & 0xFF : 0;
+            sum += (high << 8) | low;
+        }
+        return sum;
+    }
+
+    static int fold(long sum) {
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int) sum;
+    }
+
+    static void putShort(final byte[] bytes, final int offset, final int value) {
+        bytes[offset] = (byte) (value >> 8);
+        bytes[offset + 1] = (byte) value;
+    }
+}
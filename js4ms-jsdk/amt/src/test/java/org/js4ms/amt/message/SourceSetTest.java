@@ -0,0 +1,209 @@
+package org.js4ms.amt.message;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SourceSetTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the sorted-array set operations of {@link SourceSet} against the same
+ * operations applied to a {@link HashSet}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class SourceSetTest
+                extends TestCase {
+
+    private final Random random = new Random(3376);
+
+    /**
+     * Returns a random address drawn from a small range so that sets overlap. The
+     * first byte covers values on both sides of 0x80 so that addresses that are
+     * negative when read as signed values are included.
+     */
+    private InetAddress randomAddress(final int addressLength) throws Exception {
+        byte[] address = new byte[addressLength];
+        address[0] = (byte) (0x7F + this.random.nextInt(3));
+        address[addressLength - 1] = (byte) this.random.nextInt(32);
+        if (addressLength == 16) {
+            address[8] = (byte) this.random.nextInt(2);
+        }
+        return InetAddress.getByAddress(address);
+    }
+
+    private HashSet<InetAddress> randomAddresses(final int addressLength, final int count) throws Exception {
+        HashSet<InetAddress> addresses = new HashSet<InetAddress>();
+        for (int i = 0; i < count; i++) {
+            addresses.add(randomAddress(addressLength));
+        }
+        return addresses;
+    }
+
+    private void checkOperations(final int addressLength) throws Exception {
+        for (int i = 0; i < 200; i++) {
+            HashSet<InetAddress> a = randomAddresses(addressLength, this.random.nextInt(40));
+            HashSet<InetAddress> b = randomAddresses(addressLength, this.random.nextInt(40));
+            SourceSet setA = new SourceSet(addressLength, a);
+            SourceSet setB = new SourceSet(addressLength, b);
+            assertEquals(a, setA.toHashSet());
+
+            HashSet<InetAddress> expected = new HashSet<InetAddress>(a);
+            expected.addAll(b);
+            SourceSet result = new SourceSet(addressLength);
+            result.union(setA, setB);
+            assertEquals(expected, result.toHashSet());
+
+            expected = new HashSet<InetAddress>(a);
+            expected.retainAll(b);
+            result.intersection(setA, setB);
+            assertEquals(expected, result.toHashSet());
+
+            expected = new HashSet<InetAddress>(a);
+            expected.removeAll(b);
+            result.difference(setA, setB);
+            assertEquals(expected, result.toHashSet());
+
+            // The operands are not modified
+            assertEquals(a, setA.toHashSet());
+            assertEquals(b, setB.toHashSet());
+        }
+    }
+
+    public void testIPv4Operations() throws Exception {
+        checkOperations(4);
+    }
+
+    public void testIPv6Operations() throws Exception {
+        checkOperations(16);
+    }
+
+    public void testOperationsInPlace() throws Exception {
+        for (int i = 0; i < 200; i++) {
+            HashSet<InetAddress> a = randomAddresses(4, this.random.nextInt(40));
+            HashSet<InetAddress> b = randomAddresses(4, this.random.nextInt(40));
+            SourceSet setB = new SourceSet(4, b);
+
+            SourceSet target = new SourceSet(4, a);
+            target.addAll(setB);
+            HashSet<InetAddress> expected = new HashSet<InetAddress>(a);
+            expected.addAll(b);
+            assertEquals(expected, target.toHashSet());
+
+            target = new SourceSet(4, a);
+            target.retainAll(setB);
+            expected = new HashSet<InetAddress>(a);
+            expected.retainAll(b);
+            assertEquals(expected, target.toHashSet());
+
+            target = new SourceSet(4, a);
+            target.removeAll(setB);
+            expected = new HashSet<InetAddress>(a);
+            expected.removeAll(b);
+            assertEquals(expected, target.toHashSet());
+
+            // The target is the second operand
+            target = new SourceSet(4, b);
+            target.difference(new SourceSet(4, a), target);
+            expected = new HashSet<InetAddress>(a);
+            expected.removeAll(b);
+            assertEquals(expected, target.toHashSet());
+        }
+    }
+
+    public void testOperationsWithSelf() throws Exception {
+        HashSet<InetAddress> a = randomAddresses(16, 30);
+        SourceSet set = new SourceSet(16, a);
+        set.union(set, set);
+        assertEquals(a, set.toHashSet());
+        set.intersection(set, set);
+        assertEquals(a, set.toHashSet());
+        set.difference(set, set);
+        assertTrue(set.isEmpty());
+    }
+
+    public void testAddRemoveContains() throws Exception {
+        SourceSet set = new SourceSet(4);
+        HashSet<InetAddress> expected = new HashSet<InetAddress>();
+        for (int i = 0; i < 1000; i++) {
+            InetAddress address = randomAddress(4);
+            if (this.random.nextBoolean()) {
+                assertEquals(expected.add(address), set.add(address));
+            }
+            else {
+                assertEquals(expected.remove(address), set.remove(address));
+            }
+            assertEquals(expected.size(), set.size());
+            assertTrue(set.contains(address) == expected.contains(address));
+        }
+        assertEquals(expected, set.toHashSet());
+    }
+
+    public void testEqualityIgnoresInsertionOrder() throws Exception {
+        InetAddress first = InetAddress.getByAddress(new byte[] { 10, 0, 0, 1 });
+        InetAddress second = InetAddress.getByAddress(new byte[] { (byte) 192, 0, 0, 1 });
+        SourceSet a = new SourceSet(4);
+        a.add(first);
+        a.add(second);
+        SourceSet b = new SourceSet(4);
+        b.add(second);
+        b.add(first);
+        assertEquals(a, b);
+        assertEquals(a.hashCode(), b.hashCode());
+    }
+
+    public void testSetRange() throws Exception {
+        SourceSet set = new SourceSet(4, randomAddresses(4, 20));
+        SourceSet part = new SourceSet(4);
+        part.set(set, 5, 12);
+        assertEquals(7, part.size());
+        for (int i = 0; i < 7; i++) {
+            assertEquals(set.getInetAddress(i + 5), part.getInetAddress(i));
+        }
+    }
+
+    public void testMixedAddressLengthsRejected() throws Exception {
+        SourceSet ipv4 = new SourceSet(4);
+        SourceSet ipv6 = new SourceSet(16);
+        try {
+            ipv4.union(ipv4, ipv6);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+        }
+        try {
+            ipv6.addAll(ipv4);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+        }
+        try {
+            new SourceSet(8);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package org.js4ms.amt.proxy;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MembershipReportTest.java [org.js4ms.jsdk:amt]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.util.HashSet;
+import java.util.List;
+
+import junit.framework.TestCase;
+
+import org.js4ms.amt.message.GroupMembershipRecord;
+import org.js4ms.amt.message.SourceSet;
+
+/**
+ * Tests the splitting of membership reports into reports that fit a maximum message
+ * length.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class MembershipReportTest
+                extends TestCase {
+
+    private static InetAddress group(final int index) throws Exception {
+        return InetAddress.getByAddress(new byte[] {
+                        (byte) 232, 1, (byte) (index >> 8), (byte) index
+        });
+    }
+
+    private static SourceSet sources(final int count) throws Exception {
+        SourceSet sources = new SourceSet(4);
+        for (int i = 0; i < count; i++) {
+            sources.add(InetAddress.getByAddress(new byte[] {
+                            10, 0, (byte) (i >> 8), (byte) i
+            }));
+        }
+        return sources;
+    }
+
+    public void testSmallReportNotSplit() throws Exception {
+        MembershipReport report = new MembershipReport();
+        report.addRecord(new GroupMembershipRecord(group(1), GroupMembershipRecord.Type.ALLOW_NEW_SOURCES, sources(3)));
+        assertEquals(MembershipReport.HEADER_LENGTH + GroupMembershipRecord.getLength(4, 3), report.getLength());
+
+        List<MembershipReport> reports = report.split(1400);
+        assertEquals(1, reports.size());
+        assertSame(report, reports.get(0));
+    }
+
+    public void testRecordsPackedIntoReports() throws Exception {
+        MembershipReport report = new MembershipReport();
+        for (int i = 0; i < 500; i++) {
+            report.addRecord(new GroupMembershipRecord(group(i), GroupMembershipRecord.Type.ALLOW_NEW_SOURCES, sources(1)));
+        }
+
+        int maximumLength = 1416;
+        int recordsPerReport = (maximumLength - MembershipReport.HEADER_LENGTH) / GroupMembershipRecord.getLength(4, 1);
+        List<MembershipReport> reports = report.split(maximumLength);
+        assertEquals((500 + recordsPerReport - 1) / recordsPerReport, reports.size());
+
+        HashSet<InetAddress> groups = new HashSet<InetAddress>();
+        for (MembershipReport part : reports) {
+            assertTrue(part.getLength() <= maximumLength);
+            for (GroupMembershipRecord record : part.getRecords()) {
+                assertTrue(groups.add(record.getGroup()));
+            }
+        }
+        assertEquals(500, groups.size());
+    }
+
+    public void testLargeIncludeRecordSplit() throws Exception {
+        MembershipReport report = new MembershipReport();
+        SourceSet sources = sources(1000);
+        report.addRecord(new GroupMembershipRecord(group(1), GroupMembershipRecord.Type.MODE_IS_INCLUDE, sources));
+
+        int maximumLength = 576;
+        List<MembershipReport> reports = report.split(maximumLength);
+        assertTrue(reports.size() > 1);
+
+        // Every source is reported exactly once
+        SourceSet reported = new SourceSet(4);
+        for (MembershipReport part : reports) {
+            assertTrue(part.getLength() <= maximumLength);
+            for (GroupMembershipRecord record : part.getRecords()) {
+                assertEquals(GroupMembershipRecord.Type.MODE_IS_INCLUDE, record.getRecordType());
+                assertEquals(group(1), record.getGroup());
+                for (InetAddress source : record.getSources()) {
+                    assertTrue(reported.add(source));
+                }
+            }
+        }
+        assertEquals(sources, reported);
+    }
+
+    public void testLargeExcludeRecordTruncated() throws Exception {
+        MembershipReport report = new MembershipReport();
+        report.addRecord(new GroupMembershipRecord(group(1), GroupMembershipRecord.Type.CHANGE_TO_EXCLUDE_MODE, sources(1000)));
+
+        int maximumLength = 576;
+        List<MembershipReport> reports = report.split(maximumLength);
+        assertEquals(1, reports.size());
+        MembershipReport part = reports.get(0);
+        assertEquals(1, part.getRecords().size());
+        GroupMembershipRecord record = part.getRecords().iterator().next();
+        assertEquals(GroupMembershipRecord.Type.CHANGE_TO_EXCLUDE_MODE, record.getRecordType());
+        // As many sources as will fit are kept
+        int maximumSourceCount = (maximumLength - MembershipReport.HEADER_LENGTH - GroupMembershipRecord.getLength(4, 0)) / 4;
+        assertEquals(maximumSourceCount, record.getSources().size());
+    }
+
+    public void testMaximumLengthTooSmall() throws Exception {
+        MembershipReport report = new MembershipReport();
+        report.addRecord(new GroupMembershipRecord(group(1), GroupMembershipRecord.Type.MODE_IS_INCLUDE, sources(10)));
+        try {
+            report.split(MembershipReport.HEADER_LENGTH + GroupMembershipRecord.getLength(4, 0));
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChecksumPolicyBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.io.net.UdpDatagram;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Measures the per-packet cost of each {@link ChecksumPolicy} on the direct dispatch
+ * path: the message is bound to a {@link MulticastDataView}, verified by a
+ * {@link ChecksumVerifier} and turned into a {@link UdpDatagram}. The
+ * <code>SAMPLED</code> policy uses the default sample interval.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumPolicyBenchmark {
+
+    @Param({ "ALWAYS", "SAMPLED", "LAZY", "NEVER" })
+    public ChecksumPolicy policy;
+
+    private ByteBuffer[] messages;
+
+    private int messageIndex = 0;
+
+    private MulticastDataView view;
+
+    private ChecksumVerifier verifier;
+
+    @Setup
+    public void setup() throws IOException {
+        byte[][] messages = SamplePackets.getAmtMulticastDataMessages(SamplePackets.getIPv4Packets());
+        this.messages = new ByteBuffer[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            this.messages[i] = ByteBuffer.wrap(messages[i]);
+        }
+        this.view = new MulticastDataView();
+        this.verifier = new ChecksumVerifier(this.policy, ChecksumVerifier.DEFAULT_SAMPLE_INTERVAL);
+    }
+
+    @Benchmark
+    public UdpDatagram verify() {
+        ByteBuffer buffer = this.messages[this.messageIndex];
+        if (++this.messageIndex == this.messages.length) {
+            this.messageIndex = 0;
+        }
+        MulticastDataView view = this.view;
+        if (view.wrap(buffer) && this.verifier.verify(view)) {
+            return view.constructDatagram();
+        }
+        return null;
+    }
+}
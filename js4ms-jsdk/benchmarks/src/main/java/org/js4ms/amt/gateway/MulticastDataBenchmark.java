@@ -0,0 +1,132 @@
+package org.js4ms.amt.gateway;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MulticastDataBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.amt.message.AmtMessage;
+import org.js4ms.amt.message.AmtMulticastDataMessage;
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
+import org.js4ms.io.net.UdpDatagram;
+import org.js4ms.ip.IPPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+
+/**
+ * Measures the cost of turning received AMT Multicast Data messages into UDP datagrams.
+ * <ul>
+ * <li><code>transform</code> - {@link MulticastDataTransform} applied to an IP packet
+ * that has already been extracted from an AMT message.</li>
+ * <li><code>parseAndTransform</code> - the object path: the AMT gateway parser followed
+ * by {@link MulticastDataTransform}.</li>
+ * <li><code>wrapView</code> - the direct dispatch path: {@link MulticastDataView} reads
+ * the headers in place. Checksums are not verified - see {@link ChecksumPolicyBenchmark}.</li>
+ * </ul>
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MulticastDataBenchmark {
+
+    private ByteBuffer[] messages;
+
+    private IPPacket[] packets;
+
+    private int messageIndex = 0;
+
+    private int packetIndex = 0;
+
+    private AmtMessage.Parser parser;
+
+    private MulticastDataTransform transform;
+
+    private MulticastDataView view;
+
+    @Setup
+    public void setup() throws IOException, ParseException, MissingParserException {
+        byte[][] messages = SamplePackets.getAmtMulticastDataMessages(SamplePackets.getIPv4Packets());
+        this.messages = new ByteBuffer[messages.length];
+        this.packets = new IPPacket[messages.length];
+        this.parser = AmtMessage.constructAmtGatewayParser();
+        for (int i = 0; i < messages.length; i++) {
+            this.messages[i] = ByteBuffer.wrap(messages[i]);
+            this.packets[i] = ((AmtMulticastDataMessage) this.parser.parse(ByteBuffer.wrap(messages[i]))).getPacket();
+        }
+        this.transform = new MulticastDataTransform();
+        this.view = new MulticastDataView();
+    }
+
+    private ByteBuffer nextMessage() {
+        ByteBuffer buffer = this.messages[this.messageIndex];
+        if (++this.messageIndex == this.messages.length) {
+            this.messageIndex = 0;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    @Benchmark
+    public UdpDatagram transform() throws IOException {
+        IPPacket packet = this.packets[this.packetIndex];
+        if (++this.packetIndex == this.packets.length) {
+            this.packetIndex = 0;
+        }
+        return this.transform.transform(packet);
+    }
+
+    @Benchmark
+    public UdpDatagram parseAndTransform() throws IOException, ParseException, MissingParserException {
+        AmtMulticastDataMessage message = (AmtMulticastDataMessage) this.parser.parse(nextMessage());
+        return this.transform.transform(message.getPacket());
+    }
+
+    @Benchmark
+    public void wrapView(final Blackhole blackhole) {
+        MulticastDataView view = this.view;
+        if (view.wrap(nextMessage())) {
+            blackhole.consume(view.getIPv4GroupAddress());
+            blackhole.consume(view.getDestinationPort());
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package org.js4ms.amt.message;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * AmtMessageParserBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Measures the throughput of the parser returned by
+ * {@link AmtMessage#constructAmtGatewayParser()} on AMT Multicast Data messages
+ * received from a relay. Only IPv4 data is measured since the gateway parser does not
+ * register a UDP parser for IPv6 packets.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AmtMessageParserBenchmark {
+
+    private ByteBuffer[] ipv4Messages;
+
+    private int ipv4Index = 0;
+
+    private AmtMessage.Parser parser;
+
+    static ByteBuffer[] wrap(final byte[][] messages) {
+        ByteBuffer[] buffers = new ByteBuffer[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            buffers[i] = ByteBuffer.wrap(messages[i]);
+        }
+        return buffers;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        this.ipv4Messages = wrap(SamplePackets.getAmtMulticastDataMessages(SamplePackets.getIPv4Packets()));
+        this.parser = AmtMessage.constructAmtGatewayParser();
+    }
+
+    @Benchmark
+    public AmtMessage parseIPv4MulticastData() throws ParseException, MissingParserException {
+        ByteBuffer buffer = this.ipv4Messages[this.ipv4Index];
+        if (++this.ipv4Index == this.ipv4Messages.length) {
+            this.ipv4Index = 0;
+        }
+        buffer.clear();
+        return (AmtMessage) this.parser.parse(buffer);
+    }
+}
@@ -0,0 +1,119 @@
+package org.js4ms.amt.message;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SourceSetBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares the cost of computing the ALLOW_NEW_SOURCES and BLOCK_OLD_SOURCES sets
+ * for a source set change using {@link SourceSet} with the cost of computing them
+ * using HashSet objects. The new source set shares half of its addresses with the
+ * old source set.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SourceSetBenchmark {
+
+    @Param({ "4", "16" })
+    public int addressLength;
+
+    @Param({ "8", "256" })
+    public int sourceCount;
+
+    private HashSet<InetAddress> oldHashSet;
+
+    private HashSet<InetAddress> newHashSet;
+
+    private SourceSet oldSourceSet;
+
+    private SourceSet newSourceSet;
+
+    private SourceSet allowNewSources;
+
+    private SourceSet blockOldSources;
+
+    @Setup
+    public void setup() throws UnknownHostException {
+        this.oldHashSet = new HashSet<InetAddress>();
+        this.newHashSet = new HashSet<InetAddress>();
+        this.oldSourceSet = new SourceSet(this.addressLength);
+        this.newSourceSet = new SourceSet(this.addressLength);
+        this.allowNewSources = new SourceSet(this.addressLength);
+        this.blockOldSources = new SourceSet(this.addressLength);
+        for (int i = 0; i < this.sourceCount; i++) {
+            InetAddress oldAddress = getAddress(i);
+            InetAddress newAddress = getAddress(i + this.sourceCount / 2);
+            this.oldHashSet.add(oldAddress);
+            this.newHashSet.add(newAddress);
+            this.oldSourceSet.add(oldAddress);
+            this.newSourceSet.add(newAddress);
+        }
+    }
+
+    private InetAddress getAddress(final int index) throws UnknownHostException {
+        byte[] address = new byte[this.addressLength];
+        address[0] = (byte) (this.addressLength == 4 ? 10 : 0x20);
+        address[this.addressLength - 2] = (byte) (index >> 8);
+        address[this.addressLength - 1] = (byte) index;
+        return InetAddress.getByAddress(address);
+    }
+
+    @Benchmark
+    public int hashSetDifference() {
+        HashSet<InetAddress> allowNewSources = new HashSet<InetAddress>(this.newHashSet);
+        allowNewSources.removeAll(this.oldHashSet);
+        HashSet<InetAddress> blockOldSources = new HashSet<InetAddress>(this.oldHashSet);
+        blockOldSources.removeAll(this.newHashSet);
+        return allowNewSources.size() + blockOldSources.size();
+    }
+
+    @Benchmark
+    public int sourceSetDifference() {
+        this.allowNewSources.difference(this.newSourceSet, this.oldSourceSet);
+        this.blockOldSources.difference(this.oldSourceSet, this.newSourceSet);
+        return this.allowNewSources.size() + this.blockOldSources.size();
+    }
+}
@@ -0,0 +1,427 @@
+package org.js4ms.benchmarks;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SamplePackets.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.js4ms.ip.IPPacket;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.protocol.igmp.IGMPv3QueryMessage;
+import org.js4ms.ip.protocol.mld.MLDMessage;
+import org.js4ms.ip.protocol.mld.MLDv2QueryMessage;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+
+
+
+/**
+ * Supplies the packets used as benchmark inputs.
+ * <p>
+ * If the {@value #PCAP_FILE_PROPERTY} system property names a classic (libpcap format)
+ * capture file, the UDP/IP multicast packets in that capture are used as inputs.
+ * Packets carried in AMT Multicast Data messages are unwrapped, so a capture taken on
+ * either side of a relay may be used. Ethernet, Linux cooked and raw IP link types are
+ * recognized.
+ * <p>
+ * Otherwise, a set of packets is built that reproduces the layout of a captured IPTV
+ * stream - MPEG-TS over UDP and RTP with a few short audio packets - using valid IP
+ * header and UDP checksums.
+ * <p>
+ * Each method returns a new copy of the packet bytes so benchmarks may modify them.
+ * <p>
+ * The benchmarks are packaged in <code>target/benchmarks.jar</code>. Allocation rates
+ * are reported by the JMH GC profiler, e.g.
+ * <code>java -Dorg.js4ms.benchmarks.pcap=iptv.pcap -jar target/benchmarks.jar -prof gc</code>.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class SamplePackets {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * Name of the system property used to specify a capture file.
+     */
+    public static final String PCAP_FILE_PROPERTY = "org.js4ms.benchmarks.pcap";
+
+    /**
+     * The UDP payload length of a datagram carrying seven MPEG-TS packets.
+     */
+    public static final int MPEG_TS_PAYLOAD_LENGTH = 7 * 188;
+
+    public static final int AMT_RELAY_PORT = 2268;
+
+    private static final int IPV4_HEADER_LENGTH = 20;
+
+    private static final int IPV6_HEADER_LENGTH = 40;
+
+    private static final int UDP_HEADER_LENGTH = 8;
+
+    private static final int RTP_HEADER_LENGTH = 12;
+
+    private static final int PCAP_MAGIC = 0xA1B2C3D4;
+
+    private static final int PCAP_NANOSECOND_MAGIC = 0xA1B23C4D;
+
+    private static final int LINKTYPE_ETHERNET = 1;
+
+    private static final int LINKTYPE_RAW = 101;
+
+    private static final int LINKTYPE_LINUX_SLL = 113;
+
+    private static List<byte[]> ipv4Packets = null;
+
+    private static List<byte[]> ipv6Packets = null;
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    /**
+     * Returns the IPv4 UDP multicast packets used as benchmark inputs.
+     */
+    public static synchronized byte[][] getIPv4Packets() throws IOException {
+        if (ipv4Packets == null) {
+            load();
+        }
+        return copy(ipv4Packets);
+    }
+
+    /**
+     * Returns the IPv6 UDP multicast packets used as benchmark inputs.
+     */
+    public static synchronized byte[][] getIPv6Packets() throws IOException {
+        if (ipv6Packets == null) {
+            load();
+        }
+        return copy(ipv6Packets);
+    }
+
+    /**
+     * Returns an IGMPv3 General Query packet as sent by an AMT relay.
+     */
+    public static byte[] getIGMPQueryPacket() {
+        IPPacket packet = IGMPv3QueryMessage.constructIPv4Packet(new byte[4],
+                                                                 IGMPv3QueryMessage.QUERY_DESTINATION_ADDRESS,
+                                                                 new IGMPv3QueryMessage((short) 0));
+        ByteBuffer buffer = ByteBuffer.allocate(packet.getTotalLength());
+        packet.writeTo(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Returns an MLDv2 General Query packet as sent by an AMT relay.
+     */
+    public static byte[] getMLDQueryPacket() {
+        byte[] sourceAddress = new byte[16];
+        MLDv2QueryMessage query = new MLDv2QueryMessage();
+        IPPacket packet = MLDv2QueryMessage.constructIPv6Packet(sourceAddress,
+                                                                MLDv2QueryMessage.QUERY_DESTINATION_ADDRESS,
+                                                                query);
+        ByteBuffer buffer = ByteBuffer.allocate(packet.getTotalLength());
+        // IPv6Packet.writeTo() only writes the fixed header, so the Hop-by-Hop Options
+        // header (a Router Alert option followed by a PadN option) is written here
+        packet.writeTo(buffer);
+        buffer.put(new byte[] { MLDMessage.IP_PROTOCOL_NUMBER, 0, 5, 2, 0, 0, 1, 0 });
+        ByteBuffer slice = buffer.slice();
+        query.writeTo(buffer);
+        query.writeChecksum(slice, sourceAddress, MLDv2QueryMessage.QUERY_DESTINATION_ADDRESS);
+        return buffer.array();
+    }
+
+    /**
+     * Returns the packets encapsulated in AMT Multicast Data messages.
+     */
+    public static byte[][] getAmtMulticastDataMessages(final byte[][] packets) {
+        byte[][] messages = new byte[packets.length][];
+        for (int i = 0; i < packets.length; i++) {
+            byte[] message = new byte[2 + packets[i].length];
+            message[0] = 0x6;
+            System.arraycopy(packets[i], 0, message, 2, packets[i].length);
+            messages[i] = message;
+        }
+        return messages;
+    }
+
+    /**
+     * Returns the offset of the UDP header within an IPv4 packet or an IPv6 packet
+     * that has no extension headers.
+     */
+    public static int getUdpOffset(final byte[] packet) {
+        return (packet[0] >> 4) == 4 ? (packet[0] & 0xF) * 4 : IPV6_HEADER_LENGTH;
+    }
+
+    /**
+     * Returns the source address of an IPv4 or IPv6 packet.
+     */
+    public static byte[] getSourceAddress(final byte[] packet) {
+        return (packet[0] >> 4) == 4 ? slice(packet, 12, 4) : slice(packet, 8, 16);
+    }
+
+    /**
+     * Returns the destination address of an IPv4 or IPv6 packet.
+     */
+    public static byte[] getDestinationAddress(final byte[] packet) {
+        return (packet[0] >> 4) == 4 ? slice(packet, 16, 4) : slice(packet, 24, 16);
+    }
+
+    private static byte[] slice(final byte[] packet, final int offset, final int length) {
+        byte[] bytes = new byte[length];
+        System.arraycopy(packet, offset, bytes, 0, length);
+        return bytes;
+    }
+
+    private static byte[][] copy(final List<byte[]> packets) {
+        byte[][] copies = new byte[packets.size()][];
+        for (int i = 0; i < copies.length; i++) {
+            copies[i] = packets.get(i).clone();
+        }
+        return copies;
+    }
+
+    private static void load() throws IOException {
+        ipv4Packets = new ArrayList<byte[]>();
+        ipv6Packets = new ArrayList<byte[]>();
+        String fileName = System.getProperty(PCAP_FILE_PROPERTY);
+        if (fileName != null) {
+            readCapture(fileName);
+            if (ipv4Packets.isEmpty() && ipv6Packets.isEmpty()) {
+                throw new IOException("capture file '" + fileName + "' contains no UDP multicast packets");
+            }
+        }
+        if (ipv4Packets.isEmpty()) {
+            buildIPv4Packets();
+        }
+        if (ipv6Packets.isEmpty()) {
+            buildIPv6Packets();
+        }
+    }
+
+    private static void buildIPv4Packets() {
+        byte[] source = new byte[] { 10, 1, 2, 3 };
+        byte[][] groups = new byte[][] { { (byte) 232, 1, 1, 1 }, { (byte) 232, 1, 1, 2 } };
+        int[] payloadLengths = getSamplePayloadLengths();
+        for (int i = 0; i < payloadLengths.length; i++) {
+            ipv4Packets.add(buildIPv4Packet(source, groups[i % groups.length], (short) i, payloadLengths[i]));
+        }
+    }
+
+    private static void buildIPv6Packets() {
+        byte[] source = new byte[16];
+        source[0] = 0x20;
+        source[1] = 0x01;
+        source[2] = 0x0D;
+        source[3] = (byte) 0xB8;
+        source[15] = 0x03;
+        byte[][] groups = new byte[2][16];
+        for (int i = 0; i < groups.length; i++) {
+            groups[i][0] = (byte) 0xFF;
+            groups[i][1] = 0x3E;
+            groups[i][15] = (byte) (i + 1);
+        }
+        int[] payloadLengths = getSamplePayloadLengths();
+        for (int i = 0; i < payloadLengths.length; i++) {
+            ipv6Packets.add(buildIPv6Packet(source, groups[i % groups.length], payloadLengths[i]));
+        }
+    }
+
+    /**
+     * Mostly full MPEG-TS datagrams, some carried in RTP, with short audio packets.
+     */
+    private static int[] getSamplePayloadLengths() {
+        return new int[] {
+            MPEG_TS_PAYLOAD_LENGTH,
+            MPEG_TS_PAYLOAD_LENGTH,
+            RTP_HEADER_LENGTH + MPEG_TS_PAYLOAD_LENGTH,
+            MPEG_TS_PAYLOAD_LENGTH,
+            RTP_HEADER_LENGTH + 160,
+            MPEG_TS_PAYLOAD_LENGTH,
+            RTP_HEADER_LENGTH + MPEG_TS_PAYLOAD_LENGTH,
+            RTP_HEADER_LENGTH + 160
+        };
+    }
+
+    private static byte[] buildIPv4Packet(final byte[] source,
+                                          final byte[] group,
+                                          final short identification,
+                                          final int payloadLength) {
+        int udpLength = UDP_HEADER_LENGTH + payloadLength;
+        byte[] packet = new byte[IPV4_HEADER_LENGTH + udpLength];
+        ByteBuffer buffer = ByteBuffer.wrap(packet);
+        buffer.put(0, (byte) 0x45);
+        buffer.putShort(2, (short) packet.length);
+        buffer.putShort(4, identification);
+        buffer.put(8, (byte) 64);
+        buffer.put(9, UdpPacket.IP_PROTOCOL_NUMBER);
+        System.arraycopy(source, 0, packet, 12, 4);
+        System.arraycopy(group, 0, packet, 16, 4);
+        IPv4Packet.setChecksum(buffer);
+        setUdpHeader(packet, IPV4_HEADER_LENGTH, udpLength, source, group);
+        return packet;
+    }
+
+    private static byte[] buildIPv6Packet(final byte[] source, final byte[] group, final int payloadLength) {
+        int udpLength = UDP_HEADER_LENGTH + payloadLength;
+        byte[] packet = new byte[IPV6_HEADER_LENGTH + udpLength];
+        ByteBuffer buffer = ByteBuffer.wrap(packet);
+        buffer.put(0, (byte) 0x60);
+        buffer.putShort(4, (short) udpLength);
+        buffer.put(6, UdpPacket.IP_PROTOCOL_NUMBER);
+        buffer.put(7, (byte) 64);
+        System.arraycopy(source, 0, packet, 8, 16);
+        System.arraycopy(group, 0, packet, 24, 16);
+        setUdpHeader(packet, IPV6_HEADER_LENGTH, udpLength, source, group);
+        return packet;
+    }
+
+    private static void setUdpHeader(final byte[] packet,
+                                     final int offset,
+                                     final int udpLength,
+                                     final byte[] source,
+                                     final byte[] group) {
+        ByteBuffer udp = ByteBuffer.wrap(packet, offset, udpLength).slice();
+        udp.putShort(0, (short) 49152);
+        udp.putShort(2, (short) 5000);
+        udp.putShort(4, (short) udpLength);
+        for (int i = UDP_HEADER_LENGTH; i < udpLength; i++) {
+            // MPEG-TS sync byte every 188 bytes with varying content between them
+            int index = i - UDP_HEADER_LENGTH;
+            udp.put(i, (index % 188) == 0 ? 0x47 : (byte) (index * 31 + 7));
+        }
+        udp.putShort(6, UdpPacket.calculateChecksum(udp, source, group));
+    }
+
+    private static void readCapture(final String fileName) throws IOException {
+        DataInputStream is = new DataInputStream(new FileInputStream(fileName));
+        try {
+            byte[] header = new byte[24];
+            is.readFully(header);
+            ByteBuffer fileHeader = ByteBuffer.wrap(header);
+            int magic = fileHeader.getInt(0);
+            if (magic != PCAP_MAGIC && magic != PCAP_NANOSECOND_MAGIC) {
+                fileHeader.order(ByteOrder.LITTLE_ENDIAN);
+                magic = fileHeader.getInt(0);
+                if (magic != PCAP_MAGIC && magic != PCAP_NANOSECOND_MAGIC) {
+                    throw new IOException("'" + fileName + "' is not a pcap file");
+                }
+            }
+            int linkType = fileHeader.getInt(20);
+            byte[] recordHeader = new byte[16];
+            ByteBuffer record = ByteBuffer.wrap(recordHeader).order(fileHeader.order());
+            while (true) {
+                try {
+                    is.readFully(recordHeader);
+                }
+                catch (EOFException e) {
+                    break;
+                }
+                byte[] frame = new byte[record.getInt(8)];
+                is.readFully(frame);
+                int offset = getNetworkOffset(frame, linkType);
+                if (offset >= 0) {
+                    addPacket(frame, offset, frame.length - offset);
+                }
+            }
+        }
+        finally {
+            is.close();
+        }
+    }
+
+    private static int getNetworkOffset(final byte[] frame, final int linkType) {
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        switch (linkType) {
+            case LINKTYPE_RAW:
+                return 0;
+            case LINKTYPE_ETHERNET: {
+                int offset = 12;
+                while (frame.length >= offset + 2 && (buffer.getShort(offset) & 0xFFFF) == 0x8100) {
+                    // Skip VLAN tag
+                    offset += 4;
+                }
+                return frame.length >= offset + 2 ? offset + 2 : -1;
+            }
+            case LINKTYPE_LINUX_SLL:
+                return frame.length > 16 ? 16 : -1;
+            default:
+                return -1;
+        }
+    }
+
+    private static void addPacket(final byte[] frame, final int offset, final int length) {
+        if (length < IPV4_HEADER_LENGTH + UDP_HEADER_LENGTH) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(frame, offset, length).slice();
+        int version = (buffer.get(0) >> 4) & 0xF;
+        int udpOffset;
+        int packetLength;
+        boolean isMulticast;
+        if (version == 4) {
+            udpOffset = (buffer.get(0) & 0xF) * 4;
+            packetLength = buffer.getShort(2) & 0xFFFF;
+            if (buffer.get(9) != UdpPacket.IP_PROTOCOL_NUMBER || (buffer.getShort(6) & 0x3FFF) != 0) {
+                // Not UDP or fragmented
+                return;
+            }
+            isMulticast = (buffer.get(16) & 0xF0) == 0xE0;
+        }
+        else if (version == 6) {
+            udpOffset = IPV6_HEADER_LENGTH;
+            packetLength = IPV6_HEADER_LENGTH + (buffer.getShort(4) & 0xFFFF);
+            if (length < udpOffset + UDP_HEADER_LENGTH || buffer.get(6) != UdpPacket.IP_PROTOCOL_NUMBER) {
+                return;
+            }
+            isMulticast = buffer.get(24) == (byte) 0xFF;
+        }
+        else {
+            return;
+        }
+
+        if (packetLength > length || udpOffset + UDP_HEADER_LENGTH > packetLength) {
+            return;
+        }
+
+        int sourcePort = buffer.getShort(udpOffset) & 0xFFFF;
+        int destinationPort = buffer.getShort(udpOffset + 2) & 0xFFFF;
+        int amtOffset = udpOffset + UDP_HEADER_LENGTH;
+        if ((sourcePort == AMT_RELAY_PORT || destinationPort == AMT_RELAY_PORT)
+            && packetLength > amtOffset + 2 && buffer.get(amtOffset) == 0x6) {
+            // Unwrap AMT Multicast Data message
+            addPacket(frame, offset + amtOffset + 2, packetLength - amtOffset - 2);
+        }
+        else if (isMulticast) {
+            byte[] packet = new byte[packetLength];
+            buffer.get(packet);
+            (version == 4 ? ipv4Packets : ipv6Packets).add(packet);
+        }
+    }
+
+    private SamplePackets() {
+    }
+}
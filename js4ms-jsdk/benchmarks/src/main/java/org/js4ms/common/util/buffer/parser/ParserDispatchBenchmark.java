@@ -0,0 +1,142 @@
+package org.js4ms.common.util.buffer.parser;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ParserDispatchBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.field.ByteField;
+import org.js4ms.common.util.buffer.field.SelectorField;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares parser selection by a {@link BufferParserSelector}, which looks up a boxed
+ * key in a hash map, with selection by a {@link BufferParserTableSelector}, which
+ * indexes an array with the key byte. Messages rotate through several types and
+ * parsers so the dispatch call site sees more than one receiver.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParserDispatchBenchmark {
+
+    private static final ByteField MessageType = new ByteField(0);
+
+    private static final byte[] MESSAGE_TYPES = {
+                    0x11, 0x12, 0x16, 0x17, 0x22
+    };
+
+    private static final class TypeParser implements KeyedBufferParser<Object> {
+
+        private final byte type;
+
+        TypeParser(final byte type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object parse(final ByteBuffer buffer) {
+            return this;
+        }
+
+        @Override
+        public Object getKey() {
+            return this.type;
+        }
+    }
+
+    private static final class LengthParser implements KeyedBufferParser<Object> {
+
+        private final byte type;
+
+        LengthParser(final byte type) {
+            this.type = type;
+        }
+
+        @Override
+        public Object parse(final ByteBuffer buffer) {
+            return buffer.remaining() > 8 ? this : null;
+        }
+
+        @Override
+        public Object getKey() {
+            return this.type;
+        }
+    }
+
+    private ByteBuffer[] messages;
+
+    private int index = 0;
+
+    private BufferParserSelector<Object> mapSelector;
+
+    private BufferParserTableSelector<Object> tableSelector;
+
+    @Setup
+    public void setup() {
+        this.mapSelector = new BufferParserSelector<Object>(new SelectorField<Byte>(MessageType));
+        this.tableSelector = new BufferParserTableSelector<Object>(MessageType);
+        this.messages = new ByteBuffer[MESSAGE_TYPES.length];
+        for (int i = 0; i < MESSAGE_TYPES.length; i++) {
+            KeyedBufferParser<Object> parser = (i & 1) == 0 ? new TypeParser(MESSAGE_TYPES[i]) : new LengthParser(MESSAGE_TYPES[i]);
+            this.mapSelector.add(parser);
+            this.tableSelector.add(parser);
+            this.messages[i] = ByteBuffer.allocate(16).put(0, MESSAGE_TYPES[i]);
+        }
+    }
+
+    private ByteBuffer nextMessage() {
+        ByteBuffer buffer = this.messages[this.index];
+        if (++this.index == this.messages.length) {
+            this.index = 0;
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public Object mapSelector() throws ParseException, MissingParserException {
+        return this.mapSelector.parse(nextMessage());
+    }
+
+    @Benchmark
+    public Object tableSelector() throws ParseException, MissingParserException {
+        return this.tableSelector.parse(nextMessage());
+    }
+}
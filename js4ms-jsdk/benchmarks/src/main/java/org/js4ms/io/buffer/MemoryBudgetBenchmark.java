@@ -0,0 +1,94 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MemoryBudgetBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.io.channel.MpscMessagePipe;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Measures the cost of charging messages to a {@link MemoryBudget} account as they
+ * pass through a message pipe, compared with a pipe that does not account for memory.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MemoryBudgetBenchmark {
+
+    static final int BATCH_SIZE = 32;
+
+    static final int MESSAGE_SIZE = 1500;
+
+    private MpscMessagePipe<ByteBuffer> unaccountedPipe;
+
+    private MpscMessagePipe<ByteBuffer> accountedPipe;
+
+    private ByteBuffer message;
+
+    @Setup
+    public void setup() {
+        MemoryBudget budget = new MemoryBudget("benchmark", 1024 * 1024);
+        this.unaccountedPipe = new MpscMessagePipe<ByteBuffer>(BATCH_SIZE);
+        this.accountedPipe = new MpscMessagePipe<ByteBuffer>(BATCH_SIZE, budget.getAccount("pipe"));
+        this.message = ByteBuffer.allocate(MESSAGE_SIZE);
+    }
+
+    @Benchmark
+    public int unaccounted() {
+        return transfer(this.unaccountedPipe);
+    }
+
+    @Benchmark
+    public int accounted() {
+        return transfer(this.accountedPipe);
+    }
+
+    private int transfer(final MpscMessagePipe<ByteBuffer> pipe) {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            pipe.offer(this.message);
+        }
+        int count = 0;
+        while (pipe.poll() != null) {
+            count++;
+        }
+        return count;
+    }
+}
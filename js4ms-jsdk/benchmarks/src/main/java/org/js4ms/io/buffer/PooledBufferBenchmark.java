@@ -0,0 +1,84 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * PooledBufferBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.common.util.pool.ByteBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares the cost of allocating a new receive buffer for each datagram with the cost
+ * of recycling a reference-counted {@link PooledBuffer} that is shared by two
+ * consumers, e.g. the two queues of a tee, before it is returned to its pool.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PooledBufferBenchmark {
+
+    static final int BUFFER_SIZE = 1500;
+
+    private ByteBufferPool pool;
+
+    @Setup
+    public void setup() {
+        this.pool = new ByteBufferPool(16, BUFFER_SIZE, true);
+    }
+
+    @Benchmark
+    public ByteBuffer allocate() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        buffer.put(0, (byte) 1);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer pooled() {
+        PooledBuffer buffer = new PooledBuffer(this.pool);
+        buffer.getBuffer().put(0, (byte) 1);
+        buffer.retain();
+        buffer.retain();
+        buffer.release();
+        buffer.release();
+        buffer.release();
+        return buffer.getBuffer();
+    }
+}
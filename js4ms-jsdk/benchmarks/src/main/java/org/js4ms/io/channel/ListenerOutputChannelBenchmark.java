@@ -0,0 +1,103 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ListenerOutputChannelBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares the per-message cost of delivering a burst of messages through the
+ * {@link MpscMessagePipe} read by a multicast endpoint's <code>receive</code> method
+ * with the cost of delivering them directly to a {@link MessageListener} through a
+ * {@link ListenerOutputChannel}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ListenerOutputChannelBenchmark {
+
+    static final int BURST_SIZE = 64;
+
+    private final Object message = new Object();
+
+    private MpscMessagePipe<Object> pipe;
+
+    private ListenerOutputChannel<Object> channel;
+
+    private Object last;
+
+    @Setup
+    public void setup() {
+        this.pipe = new MpscMessagePipe<Object>(BURST_SIZE);
+        this.channel = new ListenerOutputChannel<Object>(new MessageListener<Object>() {
+
+            @Override
+            public void onMessage(Object message) {
+                ListenerOutputChannelBenchmark.this.last = message;
+            }
+        });
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public Object pipe() throws IOException, InterruptedException {
+        MpscMessagePipe<Object> pipe = this.pipe;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            pipe.offer(this.message);
+        }
+        Object last = null;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            last = pipe.receive(0);
+        }
+        return last;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public Object listener() throws IOException, InterruptedException {
+        ListenerOutputChannel<Object> channel = this.channel;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            channel.send(this.message, 0);
+        }
+        return this.last;
+    }
+}
@@ -0,0 +1,137 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MessagePipeBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares {@link MessageQueue} with the ring buffer pipes {@link SpscMessagePipe} and
+ * {@link MpscMessagePipe}.
+ * <ul>
+ * <li><code>burst</code> - a single thread sends a burst of messages and then receives
+ * them, measuring the per-message cost without contention.</li>
+ * <li><code>handoff</code> - one thread sends messages while another receives them.</li>
+ * </ul>
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Group)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MessagePipeBenchmark {
+
+    static final int BURST_SIZE = 64;
+
+    static final int CAPACITY = 1024;
+
+    /**
+     * Timeout used in the handoff benchmark so neither thread blocks indefinitely
+     * when the other stops at the end of an iteration.
+     */
+    static final int TIMEOUT = 1;
+
+    @Param({ "MessageQueue", "SpscMessagePipe", "MpscMessagePipe" })
+    public String pipeType;
+
+    private MessagePipe<Object> pipe;
+
+    private final Object message = new Object();
+
+    @Setup
+    public void setup() {
+        if (this.pipeType.equals("MessageQueue")) {
+            this.pipe = new MessageQueue<Object>(CAPACITY);
+        }
+        else if (this.pipeType.equals("SpscMessagePipe")) {
+            this.pipe = new SpscMessagePipe<Object>(CAPACITY);
+        }
+        else if (this.pipeType.equals("MpscMessagePipe")) {
+            this.pipe = new MpscMessagePipe<Object>(CAPACITY);
+        }
+        else {
+            throw new IllegalArgumentException("unrecognized pipe type " + this.pipeType);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BURST_SIZE)
+    public Object burst() throws IOException, InterruptedException {
+        MessagePipe<Object> pipe = this.pipe;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            pipe.send(this.message, 0);
+        }
+        Object last = null;
+        for (int i = 0; i < BURST_SIZE; i++) {
+            last = pipe.receive(0);
+        }
+        return last;
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public boolean send() throws IOException, InterruptedException {
+        try {
+            this.pipe.send(this.message, TIMEOUT);
+            return true;
+        }
+        catch (InterruptedIOException e) {
+            return false;
+        }
+    }
+
+    @Benchmark
+    @Group("handoff")
+    @GroupThreads(1)
+    public Object receive() throws IOException, InterruptedException {
+        try {
+            return this.pipe.receive(TIMEOUT);
+        }
+        catch (InterruptedIOException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * OutputChannelDispatchBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
+import org.js4ms.ip.IPPacket;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.ipv6.IPv6Packet;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+
+/**
+ * Measures the cost of dispatching a packet through a channel chain like the one used
+ * by the AMT gateway - an {@link OutputChannelMap} keyed by IP version that feeds an
+ * {@link OutputChannelTee}, with an {@link OutputChannelTransform} in front of each
+ * subscriber.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OutputChannelDispatchBenchmark {
+
+    /**
+     * The number of channels attached to the tee.
+     */
+    @Param({ "1", "4", "16" })
+    public int subscriberCount;
+
+    private IPPacket[] packets;
+
+    private int index = 0;
+
+    private OutputChannel<IPPacket> channel;
+
+    @Setup
+    public void setup(final Blackhole blackhole) throws IOException, ParseException, MissingParserException {
+        byte[][] ipv4Packets = SamplePackets.getIPv4Packets();
+        byte[][] ipv6Packets = SamplePackets.getIPv6Packets();
+        IPv4Packet.Parser ipv4Parser = new IPv4Packet.Parser();
+        IPv6Packet.Parser ipv6Parser = IPv6Packet.getIPv6MessageParser();
+        ipv6Parser.getProtocolParser().add(new UdpPacket.Parser());
+        this.packets = new IPPacket[ipv4Packets.length + ipv6Packets.length];
+        int count = 0;
+        for (byte[] packet : ipv4Packets) {
+            this.packets[count++] = ipv4Parser.parse(ByteBuffer.wrap(packet));
+        }
+        for (byte[] packet : ipv6Packets) {
+            this.packets[count++] = ipv6Parser.parse(ByteBuffer.wrap(packet));
+        }
+
+        MessageKeyExtractor<IPPacket> versionExtractor = new MessageKeyExtractor<IPPacket>() {
+
+            @Override
+            public Byte getKey(final IPPacket packet) {
+                return packet.getVersion();
+            }
+        };
+
+        MessageTransform<IPPacket, ByteBuffer> payloadTransform = new MessageTransform<IPPacket, ByteBuffer>() {
+
+            @Override
+            public ByteBuffer transform(final IPPacket packet) throws IOException {
+                return packet.getUnparsedPayload();
+            }
+        };
+
+        final Blackhole sink = blackhole;
+        OutputChannelMap<IPPacket> map = new OutputChannelMap<IPPacket>(versionExtractor);
+        OutputChannelTee<IPPacket> ipv4Tee = new OutputChannelTee<IPPacket>();
+        OutputChannelTee<IPPacket> ipv6Tee = new OutputChannelTee<IPPacket>();
+        for (int i = 0; i < this.subscriberCount; i++) {
+            OutputChannel<ByteBuffer> subscriber = new OutputChannel<ByteBuffer>() {
+
+                @Override
+                public void send(final ByteBuffer message, final int milliseconds) {
+                    sink.consume(message);
+                }
+
+                @Override
+                public void close() {
+                }
+            };
+            ipv4Tee.add(new OutputChannelTransform<IPPacket, ByteBuffer>(subscriber, payloadTransform));
+            ipv6Tee.add(new OutputChannelTransform<IPPacket, ByteBuffer>(subscriber, payloadTransform));
+        }
+        map.put(IPv4Packet.INTERNET_PROTOCOL_VERSION, ipv4Tee);
+        map.put(IPv6Packet.INTERNET_PROTOCOL_VERSION, ipv6Tee);
+        this.channel = map;
+    }
+
+    @Benchmark
+    public void dispatch() throws IOException, InterruptedException {
+        IPPacket packet = this.packets[this.index];
+        if (++this.index == this.packets.length) {
+            this.index = 0;
+        }
+        this.channel.send(packet, 0);
+    }
+}
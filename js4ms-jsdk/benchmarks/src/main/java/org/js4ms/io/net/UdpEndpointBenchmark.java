@@ -0,0 +1,103 @@
+package org.js4ms.io.net;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * UdpEndpointBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares the per-datagram cost of {@link UdpChannelEndpoint}, which receives into
+ * buffers drawn from a pool, with {@link UdpSocketEndpoint}, which allocates a new
+ * buffer for every datagram. Each operation sends one datagram from the endpoint to
+ * itself over the loopback interface and then receives it.
+ * <p>
+ * Run with the GC profiler (<code>-prof gc</code>) to compare allocation rates.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UdpEndpointBenchmark {
+
+    static final int PAYLOAD_SIZE = 1316;
+
+    static final int TIMEOUT = 1000;
+
+    @Param({ "UdpChannelEndpoint", "UdpSocketEndpoint" })
+    public String endpointType;
+
+    private UdpEndpoint endpoint;
+
+    private UdpDatagram datagram;
+
+    @Setup
+    public void setup() throws IOException {
+        InetSocketAddress binding = new InetSocketAddress(InetAddress.getByName("127.0.0.1"), 0);
+        if (this.endpointType.equals("UdpChannelEndpoint")) {
+            this.endpoint = new UdpChannelEndpoint(binding);
+        }
+        else if (this.endpointType.equals("UdpSocketEndpoint")) {
+            this.endpoint = new UdpSocketEndpoint(binding);
+        }
+        else {
+            throw new IllegalArgumentException("unrecognized endpoint type " + this.endpointType);
+        }
+        this.datagram = new UdpDatagram(this.endpoint.getLocalSocketAddress(), ByteBuffer.allocate(PAYLOAD_SIZE));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        this.endpoint.close(true);
+    }
+
+    @Benchmark
+    public int loopback() throws IOException, InterruptedException {
+        this.endpoint.send(this.datagram, TIMEOUT);
+        UdpDatagram received = this.endpoint.receive(TIMEOUT);
+        int length = received.getPayloadLength();
+        received.release();
+        return length;
+    }
+}
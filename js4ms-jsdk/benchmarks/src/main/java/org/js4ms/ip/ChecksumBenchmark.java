@@ -0,0 +1,161 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChecksumBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Measures the cost of the IP header and UDP checksum calculations performed for each
+ * received packet, and of the incremental checksum update applied when a TTL is
+ * rewritten.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ChecksumBenchmark {
+
+    /**
+     * A UDP packet and the addresses used to compute its pseudo-header checksum.
+     */
+    static final class Sample {
+
+        final ByteBuffer header;
+
+        final ByteBuffer udpPacket;
+
+        final byte[] sourceAddress;
+
+        final byte[] destinationAddress;
+
+        Sample(final byte[] packet) {
+            int udpOffset = SamplePackets.getUdpOffset(packet);
+            this.header = ByteBuffer.wrap(packet, 0, udpOffset).slice();
+            this.udpPacket = ByteBuffer.wrap(packet, udpOffset, packet.length - udpOffset).slice();
+            this.sourceAddress = SamplePackets.getSourceAddress(packet);
+            this.destinationAddress = SamplePackets.getDestinationAddress(packet);
+        }
+    }
+
+    private Sample[] ipv4Samples;
+
+    private Sample[] ipv6Samples;
+
+    private int ipv4Index = 0;
+
+    private int ipv6Index = 0;
+
+    static Sample[] getSamples(final byte[][] packets) {
+        Sample[] samples = new Sample[packets.length];
+        for (int i = 0; i < packets.length; i++) {
+            samples[i] = new Sample(packets[i]);
+        }
+        return samples;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        this.ipv4Samples = getSamples(SamplePackets.getIPv4Packets());
+        this.ipv6Samples = getSamples(SamplePackets.getIPv6Packets());
+    }
+
+    private Sample nextIPv4Sample() {
+        Sample sample = this.ipv4Samples[this.ipv4Index];
+        if (++this.ipv4Index == this.ipv4Samples.length) {
+            this.ipv4Index = 0;
+        }
+        return sample;
+    }
+
+    private Sample nextIPv6Sample() {
+        Sample sample = this.ipv6Samples[this.ipv6Index];
+        if (++this.ipv6Index == this.ipv6Samples.length) {
+            this.ipv6Index = 0;
+        }
+        return sample;
+    }
+
+    @Benchmark
+    public short calculateIPv4HeaderChecksum() {
+        Sample sample = nextIPv4Sample();
+        return IPPacket.calculateChecksum(sample.header, IPv4Packet.HeaderChecksum, sample.header.limit());
+    }
+
+    @Benchmark
+    public boolean verifyIPv4HeaderChecksum() {
+        return IPv4Packet.verifyChecksum(nextIPv4Sample().header);
+    }
+
+    @Benchmark
+    public short updateIPv4TTL() {
+        ByteBuffer header = nextIPv4Sample().header;
+        IPv4Packet.updateTTL(header, (byte) (header.get(8) - 1));
+        return header.getShort(10);
+    }
+
+    @Benchmark
+    public short calculateIPv4UdpChecksum() {
+        Sample sample = nextIPv4Sample();
+        return IPPacket.calculateChecksum(sample.udpPacket,
+                                          UdpPacket.Checksum,
+                                          sample.sourceAddress,
+                                          sample.destinationAddress,
+                                          UdpPacket.IP_PROTOCOL_NUMBER,
+                                          sample.udpPacket.limit());
+    }
+
+    @Benchmark
+    public boolean verifyIPv4UdpChecksum() {
+        Sample sample = nextIPv4Sample();
+        return UdpPacket.verifyChecksum(sample.udpPacket, sample.sourceAddress, sample.destinationAddress);
+    }
+
+    @Benchmark
+    public boolean verifyIPv6UdpChecksum() {
+        Sample sample = nextIPv6Sample();
+        return UdpPacket.verifyChecksum(sample.udpPacket, sample.sourceAddress, sample.destinationAddress);
+    }
+}
@@ -0,0 +1,135 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * IPPacketParserBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.ipv6.IPv6Packet;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Measures {@link IPv4Packet.Parser} and {@link IPv6Packet.Parser} throughput.
+ * The IPv4 header benchmark uses the parser configured as it is on the AMT data path,
+ * where the UDP payload is left unparsed. The UDP benchmarks also verify the UDP
+ * checksum and construct a {@link UdpPacket}. There is no IPv6 header benchmark because
+ * the IPv6 parser requires a parser for each protocol found in the packet.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IPPacketParserBenchmark {
+
+    private ByteBuffer[] ipv4Packets;
+
+    private ByteBuffer[] ipv6Packets;
+
+    private int ipv4Index = 0;
+
+    private int ipv6Index = 0;
+
+    private IPv4Packet.Parser ipv4HeaderParser;
+
+    private IPv4Packet.Parser ipv4UdpParser;
+
+    private IPv6Packet.Parser ipv6UdpParser;
+
+    static ByteBuffer[] wrap(final byte[][] packets) {
+        ByteBuffer[] buffers = new ByteBuffer[packets.length];
+        for (int i = 0; i < packets.length; i++) {
+            buffers[i] = ByteBuffer.wrap(packets[i]);
+        }
+        return buffers;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        this.ipv4Packets = wrap(SamplePackets.getIPv4Packets());
+        this.ipv6Packets = wrap(SamplePackets.getIPv6Packets());
+
+        this.ipv4HeaderParser = new IPv4Packet.Parser();
+
+        IPMessage.Parser udpParser = new IPMessage.Parser();
+        udpParser.add(new UdpPacket.Parser());
+        this.ipv4UdpParser = new IPv4Packet.Parser(null, udpParser);
+
+        this.ipv6UdpParser = IPv6Packet.getIPv6MessageParser();
+        this.ipv6UdpParser.getProtocolParser().add(new UdpPacket.Parser());
+    }
+
+    private ByteBuffer nextIPv4Packet() {
+        ByteBuffer buffer = this.ipv4Packets[this.ipv4Index];
+        if (++this.ipv4Index == this.ipv4Packets.length) {
+            this.ipv4Index = 0;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private ByteBuffer nextIPv6Packet() {
+        ByteBuffer buffer = this.ipv6Packets[this.ipv6Index];
+        if (++this.ipv6Index == this.ipv6Packets.length) {
+            this.ipv6Index = 0;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    @Benchmark
+    public IPPacket parseIPv4Header() throws ParseException, MissingParserException {
+        return this.ipv4HeaderParser.parse(nextIPv4Packet());
+    }
+
+    @Benchmark
+    public IPPacket parseIPv4Udp() throws ParseException, MissingParserException {
+        return this.ipv4UdpParser.parse(nextIPv4Packet());
+    }
+
+    @Benchmark
+    public IPPacket parseIPv6Udp() throws ParseException, MissingParserException {
+        return this.ipv6UdpParser.parse(nextIPv6Packet());
+    }
+}
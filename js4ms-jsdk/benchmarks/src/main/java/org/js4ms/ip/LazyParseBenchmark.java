@@ -0,0 +1,155 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * LazyParseBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.ipv6.IPv6Packet;
+import org.js4ms.ip.protocol.igmp.IGMPMessage;
+import org.js4ms.ip.protocol.mld.MLDMessage;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares eager and lazy parsing of IP packets.
+ * The data benchmarks parse UDP multicast data packets the way the AMT data path does,
+ * where only the fixed header and the unparsed payload are used.
+ * The query benchmarks parse IGMPv3 and MLDv2 general queries and then retrieve the
+ * query message, so the lazy variants pay for the deferred parse as well.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LazyParseBenchmark {
+
+    @Param({ "false", "true" })
+    public boolean lazy;
+
+    private ByteBuffer[] ipv4Packets;
+
+    private ByteBuffer[] ipv6Packets;
+
+    private int ipv4Index = 0;
+
+    private int ipv6Index = 0;
+
+    private byte[] igmpQuery;
+
+    private byte[] mldQuery;
+
+    private IPv4Packet.Parser ipv4UdpParser;
+
+    private IPv6Packet.Parser ipv6UdpParser;
+
+    private IPv4Packet.Parser igmpParser;
+
+    private IPv6Packet.Parser mldParser;
+
+    @Setup
+    public void setup() throws IOException {
+        this.ipv4Packets = IPPacketParserBenchmark.wrap(SamplePackets.getIPv4Packets());
+        this.ipv6Packets = IPPacketParserBenchmark.wrap(SamplePackets.getIPv6Packets());
+        this.igmpQuery = SamplePackets.getIGMPQueryPacket();
+        this.mldQuery = SamplePackets.getMLDQueryPacket();
+
+        IPMessage.Parser udpParser = new IPMessage.Parser();
+        udpParser.add(new UdpPacket.Parser());
+        this.ipv4UdpParser = new IPv4Packet.Parser(null, udpParser);
+        this.ipv4UdpParser.setLazyParsingEnabled(this.lazy);
+
+        this.ipv6UdpParser = IPv6Packet.getIPv6MessageParser();
+        this.ipv6UdpParser.getProtocolParser().add(new UdpPacket.Parser());
+        this.ipv6UdpParser.setLazyParsingEnabled(this.lazy);
+
+        this.igmpParser = IGMPMessage.getIPv4PacketParser();
+        this.igmpParser.setLazyParsingEnabled(this.lazy);
+
+        this.mldParser = MLDMessage.getIPv6PacketParser();
+        this.mldParser.setLazyParsingEnabled(this.lazy);
+    }
+
+    private ByteBuffer nextIPv4Packet() {
+        ByteBuffer buffer = this.ipv4Packets[this.ipv4Index];
+        if (++this.ipv4Index == this.ipv4Packets.length) {
+            this.ipv4Index = 0;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    private ByteBuffer nextIPv6Packet() {
+        ByteBuffer buffer = this.ipv6Packets[this.ipv6Index];
+        if (++this.ipv6Index == this.ipv6Packets.length) {
+            this.ipv6Index = 0;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer parseIPv4Data() throws ParseException, MissingParserException {
+        return this.ipv4UdpParser.parse(nextIPv4Packet()).getUnparsedPayload();
+    }
+
+    @Benchmark
+    public ByteBuffer parseIPv6Data() throws ParseException, MissingParserException {
+        return this.ipv6UdpParser.parse(nextIPv6Packet()).getUnparsedPayload();
+    }
+
+    @Benchmark
+    public IPMessage parseIGMPQuery() throws ParseException, MissingParserException {
+        // The packet is copied because the eager parse rewrites the header length fields
+        IPPacket packet = this.igmpParser.parse(ByteBuffer.wrap(this.igmpQuery.clone()));
+        return packet.getProtocolMessage(IGMPMessage.IP_PROTOCOL_NUMBER);
+    }
+
+    @Benchmark
+    public IPMessage parseMLDQuery() throws ParseException, MissingParserException {
+        // The packet is copied because the eager parse rewrites the header length fields
+        IPPacket packet = this.mldParser.parse(ByteBuffer.wrap(this.mldQuery.clone()));
+        return packet.getProtocolMessage(MLDMessage.IP_PROTOCOL_NUMBER);
+    }
+}
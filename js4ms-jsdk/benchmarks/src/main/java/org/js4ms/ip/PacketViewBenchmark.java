@@ -0,0 +1,133 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * PacketViewBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.ip.ipv4.IPv4PacketView;
+import org.js4ms.ip.ipv6.IPv6PacketView;
+import org.js4ms.ip.protocol.udp.UdpView;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+
+
+/**
+ * Measures the cost of reading the addresses and ports of a UDP packet using the
+ * reusable {@link IPv4PacketView}, {@link IPv6PacketView} and {@link UdpView} classes.
+ * Compare with {@link IPPacketParserBenchmark}, which constructs packet objects for the
+ * same sample packets. The <code>verify</code> benchmarks also verify the checksums in
+ * place.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PacketViewBenchmark {
+
+    private ByteBuffer[] ipv4Packets;
+
+    private ByteBuffer[] ipv6Packets;
+
+    private int ipv4Index = 0;
+
+    private int ipv6Index = 0;
+
+    private final IPv4PacketView ipv4View = new IPv4PacketView();
+
+    private final IPv6PacketView ipv6View = new IPv6PacketView();
+
+    private final UdpView udpView = new UdpView();
+
+    @Setup
+    public void setup() throws IOException {
+        this.ipv4Packets = IPPacketParserBenchmark.wrap(SamplePackets.getIPv4Packets());
+        this.ipv6Packets = IPPacketParserBenchmark.wrap(SamplePackets.getIPv6Packets());
+    }
+
+    private ByteBuffer nextIPv4Packet() {
+        ByteBuffer buffer = this.ipv4Packets[this.ipv4Index];
+        if (++this.ipv4Index == this.ipv4Packets.length) {
+            this.ipv4Index = 0;
+        }
+        return buffer;
+    }
+
+    private ByteBuffer nextIPv6Packet() {
+        ByteBuffer buffer = this.ipv6Packets[this.ipv6Index];
+        if (++this.ipv6Index == this.ipv6Packets.length) {
+            this.ipv6Index = 0;
+        }
+        return buffer;
+    }
+
+    @Benchmark
+    public void wrapIPv4Udp(final Blackhole blackhole) {
+        if (this.ipv4View.wrap(nextIPv4Packet()) && this.udpView.wrap(this.ipv4View)) {
+            blackhole.consume(this.ipv4View.getSourceAddress());
+            blackhole.consume(this.ipv4View.getDestinationAddress());
+            blackhole.consume(this.udpView.getDestinationPort());
+        }
+    }
+
+    @Benchmark
+    public boolean verifyIPv4Udp() {
+        return this.ipv4View.wrap(nextIPv4Packet())
+               && this.ipv4View.isHeaderChecksumValid()
+               && this.udpView.wrap(this.ipv4View)
+               && this.udpView.isChecksumValid();
+    }
+
+    @Benchmark
+    public void wrapIPv6Udp(final Blackhole blackhole) {
+        if (this.ipv6View.wrap(nextIPv6Packet()) && this.udpView.wrap(this.ipv6View)) {
+            blackhole.consume(this.ipv6View.getSourceAddress(1));
+            blackhole.consume(this.ipv6View.getDestinationAddress(1));
+            blackhole.consume(this.udpView.getDestinationPort());
+        }
+    }
+
+    @Benchmark
+    public boolean verifyIPv6Udp() {
+        return this.ipv6View.wrap(nextIPv6Packet())
+               && this.udpView.wrap(this.ipv6View)
+               && this.udpView.isChecksumValid();
+    }
+}
@@ -0,0 +1,120 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * StreamParserBenchmark.java [org.js4ms.jsdk:benchmarks]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.js4ms.benchmarks.SamplePackets;
+import org.js4ms.common.exception.ParseException;
+import org.js4ms.common.util.buffer.parser.MissingParserException;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.ipv6.IPv6Packet;
+import org.js4ms.ip.protocol.udp.UdpPacket;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+
+/**
+ * Compares {@link IPPacket.StreamParser} with {@link IPPacket.SinglePassStreamParser}
+ * when parsing a stream of back-to-back IPv4 and IPv6 UDP packets.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StreamParserBenchmark {
+
+    private byte[] stream;
+
+    private ByteArrayInputStream is;
+
+    private IPPacket.StreamParser streamParser;
+
+    private IPPacket.SinglePassStreamParser singlePassParser;
+
+    @Setup
+    public void setup() throws IOException {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        byte[][] ipv4Packets = SamplePackets.getIPv4Packets();
+        byte[][] ipv6Packets = SamplePackets.getIPv6Packets();
+        for (int i = 0; i < Math.max(ipv4Packets.length, ipv6Packets.length); i++) {
+            if (i < ipv4Packets.length) {
+                os.write(ipv4Packets[i]);
+            }
+            if (i < ipv6Packets.length) {
+                os.write(ipv6Packets[i]);
+            }
+        }
+        this.stream = os.toByteArray();
+        this.is = new ByteArrayInputStream(this.stream);
+
+        IPMessage.Parser udpParser = new IPMessage.Parser();
+        udpParser.add(new UdpPacket.Parser());
+        IPv4Packet.Parser ipv4Parser = new IPv4Packet.Parser(null, udpParser);
+
+        IPv6Packet.Parser ipv6Parser = IPv6Packet.getIPv6MessageParser();
+        ipv6Parser.getProtocolParser().add(new UdpPacket.Parser());
+
+        this.streamParser = new IPPacket.StreamParser();
+        this.streamParser.add(ipv4Parser);
+        this.streamParser.add(ipv6Parser);
+
+        IPPacket.BufferParser bufferParser = new IPPacket.BufferParser();
+        bufferParser.add(ipv4Parser);
+        bufferParser.add(ipv6Parser);
+        this.singlePassParser = new IPPacket.SinglePassStreamParser(bufferParser);
+    }
+
+    private ByteArrayInputStream nextStream() {
+        if (this.is.available() == 0) {
+            this.is = new ByteArrayInputStream(this.stream);
+        }
+        return this.is;
+    }
+
+    @Benchmark
+    public IPPacket parseMarkReset() throws ParseException, MissingParserException, IOException {
+        return this.streamParser.parse(nextStream());
+    }
+
+    @Benchmark
+    public IPPacket parseSinglePass() throws ParseException, MissingParserException, IOException {
+        return this.singlePassParser.parse(nextStream());
+    }
+}
@@ -23,6 +23,7 @@ package org.js4ms.common.util.buffer;
  */
 
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
@@ -60,10 +61,35 @@ public abstract class BufferBackedObject
      */
     public static ByteBuffer consume(final InputStream is, final int size) throws IOException {
         ByteBuffer buffer = ByteBuffer.allocate(size);
-        is.read(buffer.array(), 0, size);
+        read(is, buffer.array(), 0, size);
         return buffer;
     }
 
+    /**
+     * Reads the specified number of bytes from an InputStream into a byte array.
+     * Unlike {@link InputStream#read(byte[], int, int)}, this method keeps reading until
+     * all of the bytes have been transferred, so it may be used with streams that
+     * return partial reads, such as those attached to a TCP connection.
+     * 
+     * @param is
+     * @param bytes
+     * @param offset
+     * @param length
+     * @throws EOFException
+     *             If the end of stream is reached before all of the bytes are read.
+     * @throws IOException
+     */
+    public static void read(final InputStream is, final byte[] bytes, int offset, int length) throws IOException {
+        while (length > 0) {
+            int count = is.read(bytes, offset, length);
+            if (count == -1) {
+                throw new EOFException();
+            }
+            offset += count;
+            length -= count;
+        }
+    }
+
     /**
      * @param size
      */
@@ -56,11 +56,25 @@ public final class BooleanField extends ByteAlignedField<Boolean> {
 
     @Override
     public Boolean get(final ByteBuffer buffer) {
-        return (buffer.get(this.offset) & this.mask) != 0;
+        return getBoolean(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Boolean value) {
+        setBoolean(buffer, value);
+    }
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public boolean getBoolean(final ByteBuffer buffer) {
+        return (buffer.get(this.offset) & this.mask) != 0;
+    }
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setBoolean(final ByteBuffer buffer, final boolean value) {
         buffer.put(this.offset, (byte)((buffer.get(this.offset) & ~this.mask) | (value ? this.mask : 0)));
     }
 }
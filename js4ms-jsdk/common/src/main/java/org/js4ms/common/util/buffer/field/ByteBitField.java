@@ -27,7 +27,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.nio.ByteBuffer;
 
-public final class ByteBitField extends BitField<Byte> {
+public final class ByteBitField extends BitField<Byte> implements ByteValueField {
 
     public ByteBitField(final int byteOffset, final int bitOffset, final int bitWidth) {
         super(byteOffset, bitOffset, bitWidth);
@@ -48,11 +48,21 @@ public final class ByteBitField extends BitField<Byte> {
 
     @Override
     public Byte get(final ByteBuffer buffer) {
-        return (byte)((buffer.get(this.offset) >> this.shift) & this.valueMask);
+        return getByte(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Byte value) {
+        setByte(buffer, value);
+    }
+
+    @Override
+    public byte getByte(final ByteBuffer buffer) {
+        return (byte)((buffer.get(this.offset) >> this.shift) & this.valueMask);
+    }
+
+    @Override
+    public void setByte(final ByteBuffer buffer, final byte value) {
         buffer.put(this.offset,(byte)((buffer.get(this.offset) & this.erasureMask) | ((value & this.valueMask) << this.shift)));
     }
 
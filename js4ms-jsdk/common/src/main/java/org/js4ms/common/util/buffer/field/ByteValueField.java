@@ -0,0 +1,45 @@
+package org.js4ms.common.util.buffer.field;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ByteValueField.java [org.js4ms.jsdk:common]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+
+/**
+ * A field that holds a single byte value which can be read and written without boxing.
+ * Used to select a parser from a {@link org.js4ms.common.util.buffer.parser.BufferParserTable}.
+ * 
+ * @author Gregory Bumgardner (gbumgard)
+ */
+public interface ByteValueField extends Field<Byte> {
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public byte getByte(final ByteBuffer buffer);
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setByte(final ByteBuffer buffer, final byte value);
+
+}
@@ -54,11 +54,25 @@ public final class IntegerField extends ByteAlignedField<Integer> {
 
     @Override
     public Integer get(final ByteBuffer buffer) {
-        return buffer.getInt(this.offset);
+        return getInt(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Integer value) {
+        setInt(buffer, value);
+    }
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public int getInt(final ByteBuffer buffer) {
+        return buffer.getInt(this.offset);
+    }
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setInt(final ByteBuffer buffer, final int value) {
         buffer.putInt(this.offset, value);
     }
 
@@ -53,12 +53,26 @@ public final class LongBitField extends BitField<Long> {
 
     @Override
     public Long get(final ByteBuffer buffer) {
-        return (long)((buffer.getLong(this.offset) >> this.shift) & this.valueMask);
+        return getLong(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Long value) {
-        buffer.putLong(this.offset,(long)((buffer.getLong(this.offset) & this.erasureMask) | ((value & this.valueMask) << this.offset)));
+        setLong(buffer, value);
+    }
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public long getLong(final ByteBuffer buffer) {
+        return (long)((buffer.getLong(this.offset) >> this.shift) & this.valueMask);
+    }
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setLong(final ByteBuffer buffer, final long value) {
+        buffer.putLong(this.offset,(long)((buffer.getLong(this.offset) & this.erasureMask) | ((value & this.valueMask) << this.shift)));
     }
 
 }
@@ -51,11 +51,25 @@ public final class LongField extends ByteAlignedField<Long> {
 
     @Override
     public Long get(final ByteBuffer buffer) {
-        return buffer.getLong(this.offset);
+        return getLong(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Long value) {
+        setLong(buffer, value);
+    }
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public long getLong(final ByteBuffer buffer) {
+        return buffer.getLong(this.offset);
+    }
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setLong(final ByteBuffer buffer, final long value) {
         buffer.putLong(this.offset, value);
     }
 
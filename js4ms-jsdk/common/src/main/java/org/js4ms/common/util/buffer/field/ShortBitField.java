@@ -57,11 +57,25 @@ public final class ShortBitField extends BitField<Short> {
 
     @Override
     public Short get(final ByteBuffer buffer) {
-        return (short)((buffer.getShort(this.offset) >> this.shift) & this.valueMask);
+        return getShort(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Short value) {
-        buffer.putShort(this.offset,(short)((buffer.getShort(this.offset) & this.erasureMask) | ((value & this.valueMask) << this.offset)));
+        setShort(buffer, value);
+    }
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public short getShort(final ByteBuffer buffer) {
+        return (short)((buffer.getShort(this.offset) >> this.shift) & this.valueMask);
+    }
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setShort(final ByteBuffer buffer, final short value) {
+        buffer.putShort(this.offset,(short)((buffer.getShort(this.offset) & this.erasureMask) | ((value & this.valueMask) << this.shift)));
     }
 }
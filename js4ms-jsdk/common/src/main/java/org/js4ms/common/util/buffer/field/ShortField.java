@@ -54,11 +54,25 @@ public final class ShortField extends ByteAlignedField<Short> {
 
     @Override
     public Short get(final ByteBuffer buffer) {
-        return buffer.getShort(this.offset);
+        return getShort(buffer);
     }
 
     @Override
     public void set(final ByteBuffer buffer, final Short value) {
+        setShort(buffer, value);
+    }
+
+    /**
+     * Reads the field value without boxing.
+     */
+    public short getShort(final ByteBuffer buffer) {
+        return buffer.getShort(this.offset);
+    }
+
+    /**
+     * Writes the field value without boxing.
+     */
+    public void setShort(final ByteBuffer buffer, final short value) {
         buffer.putShort(this.offset, value);
     }
 
@@ -0,0 +1,141 @@
+package org.js4ms.common.util.buffer.parser;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * BufferParserTable.java [org.js4ms.jsdk:common]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+
+import org.js4ms.common.exception.ParseException;
+
+
+
+/**
+ * A collection of parsers indexed by a single byte key, such as a message type or
+ * IP protocol number.
+ * Provides the same registration API as {@link BufferParserMap}, but parsers are
+ * held in a 256-entry array so selecting a parser requires neither hashing nor a
+ * boxed key. A parser registered with a <code>null</code> key is used when no
+ * parser has been registered for a key.
+ * 
+ * @author Gregory Bumgardner (gbumgard)
+ */
+public class BufferParserTable<T> {
+
+    private static final int TABLE_SIZE = 256;
+
+    /**
+     * Parsers indexed by key. Java does not allow the creation of an array of a
+     * parameterized type, so the array is created with the raw component type - this
+     * is safe because only {@link BufferParser}&lt;T&gt; instances are stored in it.
+     */
+    @SuppressWarnings({
+                    "unchecked", "rawtypes"
+    })
+    final private BufferParser<T>[] parsers = new BufferParser[TABLE_SIZE];
+
+    private BufferParser<T> defaultParser = null;
+
+    public BufferParserTable() {
+    }
+
+    public void add(final KeyedBufferParser<T> parser) {
+        add(parser.getKey(), parser);
+    }
+
+    /**
+     * @param key
+     *            A {@link Byte} key or <code>null</code> to register the default parser.
+     * @param parser
+     * @throws IllegalArgumentException
+     *             If the key is not a {@link Byte}.
+     */
+    public void add(final Object key, final BufferParser<T> parser) {
+        if (key == null) {
+            this.defaultParser = parser;
+        }
+        else {
+            add(toByte(key), parser);
+        }
+    }
+
+    public void add(final byte key, final BufferParser<T> parser) {
+        this.parsers[key & 0xFF] = parser;
+    }
+
+    public BufferParser<T> get(final Object key) {
+        if (key == null) {
+            return this.defaultParser;
+        }
+        return key instanceof Byte ? get(((Byte) key).byteValue()) : null;
+    }
+
+    public BufferParser<T> get(final byte key) {
+        return this.parsers[key & 0xFF];
+    }
+
+    public boolean contains(final Object key) {
+        return get(key) != null;
+    }
+
+    public void remove(final Object key) {
+        if (key == null) {
+            this.defaultParser = null;
+        }
+        else if (key instanceof Byte) {
+            remove(((Byte) key).byteValue());
+        }
+    }
+
+    public void remove(final byte key) {
+        this.parsers[key & 0xFF] = null;
+    }
+
+    public T parse(final ByteBuffer buffer, final Object key) throws ParseException, MissingParserException {
+        if (key instanceof Byte) {
+            return parse(buffer, ((Byte) key).byteValue());
+        }
+        if (this.defaultParser == null) {
+            throw new MissingParserException("unable to locate parser for key="+key);
+        }
+        return this.defaultParser.parse(buffer);
+    }
+
+    public T parse(final ByteBuffer buffer, final byte key) throws ParseException, MissingParserException {
+        BufferParser<T> parser = this.parsers[key & 0xFF];
+        if (parser == null) {
+            // Check for default parser (null key)
+            parser = this.defaultParser;
+            if (parser == null) {
+                throw new MissingParserException("unable to locate parser for key="+key);
+            }
+        }
+        return parser.parse(buffer);
+    }
+
+    private static byte toByte(final Object key) {
+        if (!(key instanceof Byte)) {
+            throw new IllegalArgumentException("parser key must be a Byte - key=" + key);
+        }
+        return ((Byte) key).byteValue();
+    }
+
+}
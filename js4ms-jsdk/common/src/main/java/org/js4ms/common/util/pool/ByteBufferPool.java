@@ -0,0 +1,145 @@
+package org.js4ms.common.util.pool;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ByteBufferPool.java [org.js4ms.jsdk:common]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * A bounded pool of fixed-size {@link ByteBuffer} objects.
+ * The pool retains at most <code>capacity</code> inactive buffers.
+ * The {@link #acquire()} method never blocks - if the pool is empty a new buffer
+ * is allocated. The {@link #release(ByteBuffer)} method discards a buffer if the
+ * pool is already full, so the number of buffers retained by the pool never
+ * exceeds the capacity specified when the pool was constructed.
+ * 
+ * @author Gregory Bumgardner (gbumgard)
+ */
+public final class ByteBufferPool {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final ArrayBlockingQueue<ByteBuffer> buffers;
+
+    private final int bufferSize;
+
+    private final boolean isDirect;
+
+    private final AtomicLong allocationCount = new AtomicLong();
+
+    private final AtomicLong discardCount = new AtomicLong();
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs a buffer pool.
+     * 
+     * @param capacity
+     *            The maximum number of inactive buffers retained by the pool.
+     * @param bufferSize
+     *            The capacity of each buffer in bytes.
+     * @param isDirect
+     *            Indicates whether the pool allocates direct or heap buffers.
+     */
+    public ByteBufferPool(final int capacity, final int bufferSize, final boolean isDirect) {
+        this.buffers = new ArrayBlockingQueue<ByteBuffer>(capacity);
+        this.bufferSize = bufferSize;
+        this.isDirect = isDirect;
+    }
+
+    /**
+     * Retrieves a cleared buffer from the pool or allocates a new buffer if the pool
+     * is empty.
+     * 
+     * @return A buffer whose position is zero and whose limit equals its capacity.
+     */
+    public ByteBuffer acquire() {
+        ByteBuffer buffer = this.buffers.poll();
+        if (buffer == null) {
+            this.allocationCount.incrementAndGet();
+            buffer = this.isDirect ? ByteBuffer.allocateDirect(this.bufferSize) : ByteBuffer.allocate(this.bufferSize);
+        }
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer is discarded if the pool is full.
+     * The caller must not access the buffer, or any view of the buffer, once it has
+     * been released.
+     * 
+     * @param buffer
+     *            The buffer to return to the pool.
+     * @throws IllegalArgumentException
+     *             The buffer was not allocated by a pool with the same buffer size and
+     *             type.
+     */
+    public void release(final ByteBuffer buffer) {
+        if (buffer.capacity() != this.bufferSize || buffer.isDirect() != this.isDirect) {
+            throw new IllegalArgumentException("buffer was not allocated by this pool");
+        }
+        buffer.clear();
+        if (!this.buffers.offer(buffer)) {
+            this.discardCount.incrementAndGet();
+        }
+    }
+
+    /**
+     * Gets the capacity of the buffers allocated by this pool.
+     */
+    public int getBufferSize() {
+        return this.bufferSize;
+    }
+
+    /**
+     * Indicates whether this pool allocates direct buffers.
+     */
+    public boolean isDirect() {
+        return this.isDirect;
+    }
+
+    /**
+     * Gets the number of inactive buffers currently held by the pool.
+     */
+    public int getInactiveCount() {
+        return this.buffers.size();
+    }
+
+    /**
+     * Gets the total number of buffers allocated by this pool.
+     * A steadily increasing allocation count indicates that the pool capacity is too
+     * small or that buffers are not being released.
+     */
+    public long getAllocationCount() {
+        return this.allocationCount.get();
+    }
+
+    /**
+     * Gets the total number of released buffers discarded because the pool was full.
+     */
+    public long getDiscardCount() {
+        return this.discardCount.get();
+    }
+}
@@ -23,34 +23,40 @@ package org.js4ms.common.util.task;
  */
 
 
-import java.util.Timer;
-import java.util.TimerTask;
-
+/**
+ * A task that can be scheduled, cancelled and rescheduled any number of times.
+ * Each instance holds a single reusable {@link TimingWheelTask} handle, so
+ * rescheduling the task does not allocate a new timer task.
+ */
 public abstract class ReschedulableTask implements Runnable {
 
-    class Task extends TimerTask {
+    final class Task extends TimingWheelTask {
 
-        ReschedulableTask task;
-
-        Task(ReschedulableTask task) {
-            this.task = task;
-        }
-        
         @Override
         public void run() {
-            this.task.execute();
+            ReschedulableTask.this.execute();
         }
     }
 
-    Timer timer;
-    TimerTask task = null;
+    final TimingWheel timer;
+    final Task task = new Task();
     
     long period = 0;
     long nextTime = 0;
     boolean isPeriodic = false;
     boolean isScheduled = false;
-    
-    protected ReschedulableTask(Timer timer) {
+
+    /**
+     * Constructs a task that is scheduled using the shared timing wheel.
+     */
+    protected ReschedulableTask() {
+        this(TimingWheel.getSharedInstance());
+    }
+
+    /**
+     * Constructs a task that is scheduled using the specified timing wheel.
+     */
+    protected ReschedulableTask(TimingWheel timer) {
         this.timer = timer;
     }
     
@@ -88,10 +94,8 @@ public abstract class ReschedulableTask implements Runnable {
      * Cancels task. A task may cancel itself.
      */
     public synchronized void cancel() {
-        if (this.task != null) {
-            this.task.cancel();
-            this.isScheduled = false;
-        }
+        this.task.cancel();
+        this.isScheduled = false;
     }
 
     /**
@@ -112,12 +116,8 @@ public abstract class ReschedulableTask implements Runnable {
     }
     
     private void init(long delay, long period) {
-        if (task != null) {
-            this.task.cancel();
-        }
-        this.period = 0;
+        this.period = period;
         this.nextTime = System.currentTimeMillis() + delay;
-        this.task = new Task(this);
         this.isScheduled = true;
     }
 
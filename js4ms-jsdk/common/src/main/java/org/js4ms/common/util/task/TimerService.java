@@ -25,7 +25,6 @@ package org.js4ms.common.util.task;
 
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.Timer;
 import java.util.TimerTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -36,7 +35,9 @@ import org.js4ms.common.util.logging.Logging;
 
 
 /**
- * 
+ * Periodically runs a set of tasks at a fixed interval.
+ * The service schedules itself on the shared {@link TimingWheel} instead of
+ * creating a timer thread of its own.
  *
  * @author Gregory Bumgardner
  */
@@ -44,7 +45,7 @@ public class TimerService {
 
     public static final Logger logger = Logger.getLogger(TimerService.class.getName());
 
-    static class TimerServiceTask extends TimerTask {
+    static class TimerServiceTask extends TimingWheelTask {
 
         private TimerService service;
         
@@ -63,7 +64,11 @@ public class TimerService {
     
     private long interval = 10000; // Default to 10 secs
 
-    Timer timer = null;
+    final TimingWheel timer;
+
+    final TimerServiceTask task = new TimerServiceTask(this);
+
+    boolean isStarted = false;
 
     private HashSet<TimerTask> tasks = new HashSet<TimerTask>();
 
@@ -77,35 +82,35 @@ public class TimerService {
     }
     
     public TimerService() {
+        this.timer = TimingWheel.getSharedInstance();
     }
 
     public TimerService(long milliseconds) {
+        this();
         this.interval = milliseconds;
     }
     
     public synchronized void setInterval(long milliseconds) {
         this.interval = milliseconds;
-        if (this.timer != null) {
-            this.timer.cancel();
-            this.timer = new Timer("TimerService",true);
-            this.timer.schedule(new TimerServiceTask(this), 0, this.interval);
+        if (this.isStarted) {
+            // Rescheduling replaces the previous schedule
+            this.timer.schedule(this.task, 0, this.interval);
         }
     }
     
     public synchronized void start() {
         if (logger.isLoggable(Level.FINE)) logger.fine(Logging.entry(this));
-        if (this.timer == null) {
-            this.timer = new Timer("TimerService", true);
-            this.timer.schedule(new TimerServiceTask(this), 0, this.interval);
+        if (!this.isStarted) {
+            this.timer.schedule(this.task, 0, this.interval);
+            this.isStarted = true;
         }
     }
 
     public synchronized void stop() {
         if (logger.isLoggable(Level.FINE)) logger.fine(Logging.entry(this));
-        if (this.timer != null) {
-            this.timer.cancel();
-            this.timer.purge();
-            this.timer = null;
+        if (this.isStarted) {
+            this.task.cancel();
+            this.isStarted = false;
         }
     }
 
@@ -0,0 +1,481 @@
+package org.js4ms.common.util.task;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * TimingWheel.java [org.js4ms.jsdk:common]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.util.ArrayList;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Logging;
+
+
+
+/**
+ * A task scheduler based on a hashed timing wheel.
+ * <p>
+ * The wheel is an array of buckets, each holding a doubly-linked list of
+ * {@link TimingWheelTask} objects. A task is placed in the bucket selected by the
+ * tick on which it expires, along with the number of full wheel revolutions that
+ * must pass before it runs. Scheduling and cancelling a task are constant-time
+ * operations that do not allocate, and rescheduling reuses the same task object.
+ * <p>
+ * A single daemon thread advances the wheel once per tick and executes any expired
+ * tasks, so task execution times are accurate to within one tick duration. Tasks
+ * should complete quickly - a long-running task delays all other tasks scheduled
+ * on the same wheel.
+ * <p>
+ * The {@link #getSharedInstance()} method returns a wheel that is shared by all
+ * components that do not require a private scheduler thread.
+ * 
+ * @author Gregory Bumgardner (gbumgard)
+ */
+public final class TimingWheel
+                implements Runnable {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    public static final Logger logger = Logger.getLogger(TimingWheel.class.getName());
+
+    /**
+     * The default tick duration in milliseconds.
+     */
+    public static final long DEFAULT_TICK_DURATION = 10;
+
+    /**
+     * The default number of buckets in the wheel.
+     * A 512 bucket wheel with a 10 ms tick duration covers a little over 5 seconds
+     * per revolution.
+     */
+    public static final int DEFAULT_WHEEL_SIZE = 512;
+
+    private static TimingWheel sharedInstance = null;
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    /**
+     * Returns the timing wheel shared by all components in this process.
+     * The wheel thread is started when the first task is scheduled.
+     */
+    public static TimingWheel getSharedInstance() {
+        synchronized (TimingWheel.class) {
+            if (TimingWheel.sharedInstance == null) {
+                TimingWheel.sharedInstance = new TimingWheel("Shared Timing Wheel", DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+            }
+            return TimingWheel.sharedInstance;
+        }
+    }
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final String ObjectId = Logging.identify(this);
+
+    private final String name;
+
+    private final long tickDuration;
+
+    private final int mask;
+
+    private final TimingWheelTask[] buckets;
+
+    private final long startTime;
+
+    private final ArrayList<TimingWheelTask> expiredTasks = new ArrayList<TimingWheelTask>();
+
+    private Thread thread = null;
+
+    private boolean isRunning = false;
+
+    private boolean isStopped = false;
+
+    private long nextTick = 0;
+
+    private int taskCount = 0;
+
+    private long executionCount = 0;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs a timing wheel that uses the default tick duration and wheel size.
+     * 
+     * @param name
+     *            The name given to the wheel thread.
+     */
+    public TimingWheel(final String name) {
+        this(name, DEFAULT_TICK_DURATION, DEFAULT_WHEEL_SIZE);
+    }
+
+    /**
+     * Constructs a timing wheel.
+     * 
+     * @param name
+     *            The name given to the wheel thread.
+     * @param tickDuration
+     *            The tick duration in milliseconds.
+     * @param wheelSize
+     *            The number of buckets in the wheel. Rounded up to a power of two.
+     */
+    public TimingWheel(final String name, final long tickDuration, final int wheelSize) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "TimingWheel.TimingWheel", name, tickDuration, wheelSize));
+        }
+
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("tick duration must be greater than zero");
+        }
+
+        if (wheelSize <= 0 || wheelSize > (1 << 30)) {
+            throw new IllegalArgumentException("invalid wheel size");
+        }
+
+        int size = 1;
+        while (size < wheelSize) {
+            size <<= 1;
+        }
+
+        this.name = name;
+        this.tickDuration = tickDuration * 1000000;
+        this.mask = size - 1;
+        this.buckets = new TimingWheelTask[size];
+        this.startTime = System.nanoTime();
+    }
+
+    /**
+     * Schedules a task for a single execution after the specified delay.
+     * 
+     * @param task
+     * @param delay
+     *            The delay in milliseconds.
+     */
+    public void schedule(final TimingWheelTask task, final long delay) {
+        schedule(task, delay, 0, false);
+    }
+
+    /**
+     * Schedules a task for repeated fixed-delay execution, beginning after the
+     * specified delay. Each subsequent execution is scheduled relative to the
+     * actual execution time of the previous execution.
+     * 
+     * @param task
+     * @param delay
+     *            The delay in milliseconds.
+     * @param period
+     *            The period in milliseconds.
+     */
+    public void schedule(final TimingWheelTask task, final long delay, final long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be greater than zero");
+        }
+        schedule(task, delay, period, false);
+    }
+
+    /**
+     * Schedules a task for repeated fixed-rate execution, beginning after the
+     * specified delay. Each subsequent execution is scheduled relative to the
+     * scheduled execution time of the initial execution.
+     * 
+     * @param task
+     * @param delay
+     *            The delay in milliseconds.
+     * @param period
+     *            The period in milliseconds.
+     */
+    public void scheduleAtFixedRate(final TimingWheelTask task, final long delay, final long period) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("period must be greater than zero");
+        }
+        schedule(task, delay, period, true);
+    }
+
+    private synchronized void schedule(final TimingWheelTask task,
+                                       final long delay,
+                                       final long period,
+                                       final boolean isFixedRate) {
+
+        if (logger.isLoggable(Level.FINEST)) {
+            logger.finest(Logging.entering(ObjectId, "TimingWheel.schedule", task, delay, period, isFixedRate));
+        }
+
+        if (delay < 0) {
+            throw new IllegalArgumentException("negative delay");
+        }
+
+        if (this.isStopped) {
+            throw new IllegalStateException("timing wheel has been stopped");
+        }
+
+        if (task.wheel != null && task.wheel != this && task.bucket != -1) {
+            throw new IllegalStateException("task is scheduled on another timing wheel");
+        }
+
+        if (!this.isRunning) {
+            start();
+        }
+
+        if (this.taskCount == 0) {
+            // The wheel is empty so any ticks that have not been processed
+            // while the wheel thread was idle can be skipped.
+            long currentTick = (System.nanoTime() - this.startTime) / this.tickDuration;
+            if (this.nextTick <= currentTick) {
+                this.nextTick = currentTick + 1;
+            }
+            notify();
+        }
+
+        unlink(task);
+        task.wheel = this;
+        task.generation++;
+        task.period = period;
+        task.isFixedRate = isFixedRate;
+        task.deadline = System.nanoTime() + delay * 1000000;
+        link(task);
+    }
+
+    /**
+     * Cancels a scheduled task.
+     * 
+     * @return <code>true</code> if the task was scheduled.
+     */
+    synchronized boolean cancel(final TimingWheelTask task) {
+        if (task.wheel != this) {
+            return false;
+        }
+        boolean wasScheduled = task.bucket != -1 || (task.period != 0 && task.generation == task.expiredGeneration);
+        unlink(task);
+        task.generation++;
+        return wasScheduled;
+    }
+
+    /**
+     * Stops the wheel thread and discards all scheduled tasks.
+     * The shared instance cannot be stopped.
+     */
+    public void stop() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "TimingWheel.stop"));
+        }
+
+        if (this == TimingWheel.sharedInstance) {
+            throw new IllegalStateException("the shared timing wheel cannot be stopped");
+        }
+
+        Thread thread;
+        synchronized (this) {
+            this.isStopped = true;
+            this.isRunning = false;
+            for (int i = 0; i < this.buckets.length; i++) {
+                while (this.buckets[i] != null) {
+                    TimingWheelTask task = this.buckets[i];
+                    unlink(task);
+                    task.generation++;
+                }
+            }
+            thread = this.thread;
+            this.thread = null;
+            notify();
+        }
+
+        if (thread != null && thread != Thread.currentThread()) {
+            thread.interrupt();
+        }
+    }
+
+    /**
+     * Gets the number of tasks currently waiting in the wheel.
+     */
+    public synchronized int getTaskCount() {
+        return this.taskCount;
+    }
+
+    /**
+     * Gets the total number of task executions performed by the wheel.
+     */
+    public synchronized long getExecutionCount() {
+        return this.executionCount;
+    }
+
+    /**
+     * Gets the tick duration in milliseconds.
+     */
+    public long getTickDuration() {
+        return this.tickDuration / 1000000;
+    }
+
+    @Override
+    public void run() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "TimingWheel.run"));
+        }
+
+        ArrayList<TimingWheelTask> expiredTasks = this.expiredTasks;
+
+        while (true) {
+
+            try {
+                long tickTime;
+                synchronized (this) {
+                    // Wait for a task to be scheduled rather than spin an empty wheel
+                    while (this.isRunning && this.taskCount == 0) {
+                        wait();
+                    }
+                    if (!this.isRunning) {
+                        break;
+                    }
+                    tickTime = this.startTime + this.nextTick * this.tickDuration;
+                }
+
+                long sleepTime = tickTime - System.nanoTime();
+                if (sleepTime > 0) {
+                    Thread.sleep(sleepTime / 1000000, (int) (sleepTime % 1000000));
+                }
+            }
+            catch (InterruptedException e) {
+                // Check running state
+                continue;
+            }
+
+            synchronized (this) {
+                if (!this.isRunning) {
+                    break;
+                }
+                expire(this.nextTick++, expiredTasks);
+            }
+
+            for (int i = 0; i < expiredTasks.size(); i++) {
+                TimingWheelTask task = expiredTasks.get(i);
+                try {
+                    task.run();
+                }
+                catch (Throwable t) {
+                    logger.warning(ObjectId + " task " + Logging.identify(task) + " failed with an exception - "
+                                   + t.getClass().getName() + ":" + t.getMessage());
+                }
+                synchronized (this) {
+                    this.executionCount++;
+                    if (task.period != 0 && task.generation == task.expiredGeneration && task.bucket == -1
+                        && task.wheel == this && this.isRunning) {
+                        // Periodic task was not cancelled or rescheduled during execution
+                        if (task.isFixedRate) {
+                            task.deadline += task.period * 1000000;
+                        }
+                        else {
+                            task.deadline = System.nanoTime() + task.period * 1000000;
+                        }
+                        link(task);
+                    }
+                }
+            }
+
+            expiredTasks.clear();
+        }
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(ObjectId + " timing wheel thread exiting");
+        }
+    }
+
+    /**
+     * Removes expired tasks from the bucket for the specified tick.
+     * Must be called while holding the wheel monitor.
+     */
+    private void expire(final long tick, final ArrayList<TimingWheelTask> expiredTasks) {
+        TimingWheelTask task = this.buckets[(int) (tick & this.mask)];
+        while (task != null) {
+            TimingWheelTask next = task.next;
+            if (task.remainingRounds <= 0) {
+                unlink(task);
+                task.expiredGeneration = task.generation;
+                expiredTasks.add(task);
+            }
+            else {
+                task.remainingRounds--;
+            }
+            task = next;
+        }
+    }
+
+    /**
+     * Inserts a task into the bucket that corresponds to its deadline.
+     * Must be called while holding the wheel monitor.
+     */
+    private void link(final TimingWheelTask task) {
+        long target = (task.deadline - this.startTime + this.tickDuration - 1) / this.tickDuration;
+        if (target < this.nextTick) {
+            target = this.nextTick;
+        }
+        int index = (int) (target & this.mask);
+        task.remainingRounds = (target - this.nextTick) / this.buckets.length;
+        task.bucket = index;
+        task.previous = null;
+        task.next = this.buckets[index];
+        if (task.next != null) {
+            task.next.previous = task;
+        }
+        this.buckets[index] = task;
+        this.taskCount++;
+    }
+
+    /**
+     * Removes a task from its bucket, if any.
+     * Must be called while holding the wheel monitor.
+     */
+    private void unlink(final TimingWheelTask task) {
+        if (task.bucket == -1 || task.wheel != this) {
+            return;
+        }
+        if (task.previous != null) {
+            task.previous.next = task.next;
+        }
+        else {
+            this.buckets[task.bucket] = task.next;
+        }
+        if (task.next != null) {
+            task.next.previous = task.previous;
+        }
+        task.previous = null;
+        task.next = null;
+        task.bucket = -1;
+        this.taskCount--;
+    }
+
+    /**
+     * Starts the wheel thread.
+     * Must be called while holding the wheel monitor.
+     */
+    private void start() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "TimingWheel.start"));
+        }
+
+        this.isRunning = true;
+        this.nextTick = (System.nanoTime() - this.startTime) / this.tickDuration + 1;
+        this.thread = new Thread(this, this.name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+}
@@ -0,0 +1,102 @@
+package org.js4ms.common.util.task;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * TimingWheelTask.java [org.js4ms.jsdk:common]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+
+/**
+ * A reusable task handle that can be scheduled for one-time or repeated execution by a
+ * {@link TimingWheel}.
+ * Unlike a {@link java.util.TimerTask}, a timing wheel task may be scheduled, cancelled
+ * and rescheduled any number of times - a new task object is not required each time the
+ * task is rescheduled. Scheduling an already scheduled task replaces the previous
+ * schedule.
+ * <p>
+ * A task is bound to a single timing wheel while it is scheduled.
+ * 
+ * @author Gregory Bumgardner (gbumgard)
+ */
+public abstract class TimingWheelTask
+                implements Runnable {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    /*
+     * The following fields are guarded by the monitor of the timing wheel that the
+     * task is currently bound to.
+     */
+
+    TimingWheel wheel = null;
+
+    TimingWheelTask previous = null;
+
+    TimingWheelTask next = null;
+
+    int bucket = -1;
+
+    long remainingRounds;
+
+    long deadline;
+
+    long period;
+
+    boolean isFixedRate;
+
+    int generation = 0;
+
+    int expiredGeneration = 0;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an unscheduled task.
+     */
+    protected TimingWheelTask() {
+    }
+
+    /**
+     * Cancels any pending execution of this task. A task may cancel itself.
+     * A cancelled task may be scheduled again.
+     * 
+     * @return <code>true</code> if the task was scheduled when this method was called.
+     */
+    public final boolean cancel() {
+        TimingWheel wheel = this.wheel;
+        return wheel != null && wheel.cancel(this);
+    }
+
+    /**
+     * Indicates whether the task is currently scheduled for execution.
+     * A periodic task remains scheduled until cancelled.
+     */
+    public final boolean isScheduled() {
+        TimingWheel wheel = this.wheel;
+        if (wheel == null) {
+            return false;
+        }
+        synchronized (wheel) {
+            return this.bucket != -1 || (this.period != 0 && this.generation == this.expiredGeneration);
+        }
+    }
+
+}
@@ -0,0 +1,168 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * BufferLeakDetector.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+
+/**
+ * Tracks {@link PooledBuffer} objects that have been acquired but not released.
+ * Leak detection is disabled by default since it records a stack trace each time a
+ * buffer is acquired. It may be enabled by calling {@link #setEnabled(boolean)} or by
+ * setting the {@value #ENABLED_PROPERTY} system property to <code>true</code>.
+ * A test would typically enable detection, run the code under test, release or
+ * close everything it created and then call {@link #checkLeaks()}.
+ * Only buffers acquired while detection is enabled are tracked.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class BufferLeakDetector {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to report unreleased buffers.
+     */
+    public static final Logger logger = Logger.getLogger(BufferLeakDetector.class.getName());
+
+    /**
+     * The name of the system property used to enable leak detection.
+     */
+    public static final String ENABLED_PROPERTY = "org.js4ms.io.buffer.leakDetection";
+
+    private static volatile boolean isEnabled = Boolean.parseBoolean(System.getProperty(ENABLED_PROPERTY));
+
+    /**
+     * Maps each tracked buffer to an exception that records where it was acquired.
+     */
+    private static final ConcurrentHashMap<PooledBuffer, Throwable> buffers = new ConcurrentHashMap<PooledBuffer, Throwable>();
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    /**
+     * Enables or disables leak detection. Buffers that are already being tracked
+     * remain tracked until they are released.
+     * 
+     * @param enabled
+     */
+    public static void setEnabled(final boolean enabled) {
+        isEnabled = enabled;
+    }
+
+    /**
+     * Indicates whether leak detection is enabled.
+     */
+    public static boolean isEnabled() {
+        return isEnabled;
+    }
+
+    /**
+     * Gets the number of tracked buffers that have not been released.
+     */
+    public static int getLeakCount() {
+        return buffers.size();
+    }
+
+    /**
+     * Gets the exceptions recording where each unreleased buffer was acquired.
+     */
+    public static List<Throwable> getLeaks() {
+        return new ArrayList<Throwable>(buffers.values());
+    }
+
+    /**
+     * Stops tracking all buffers that have not been released.
+     */
+    public static void reset() {
+        buffers.clear();
+    }
+
+    /**
+     * Logs the acquisition point of each unreleased buffer.
+     * 
+     * @param level
+     *            The level used to log each buffer.
+     * @return The number of unreleased buffers.
+     */
+    public static int logLeaks(final Level level) {
+        int count = 0;
+        for (Throwable leak : buffers.values()) {
+            logger.log(level, "unreleased buffer", leak);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Throws an exception if any tracked buffer has not been released.
+     * 
+     * @throws IllegalStateException
+     *             If there are unreleased buffers. The cause records where one of the
+     *             buffers was acquired.
+     */
+    public static void checkLeaks() {
+        int count = buffers.size();
+        if (count > 0) {
+            Throwable cause = null;
+            for (Throwable leak : buffers.values()) {
+                cause = leak;
+                break;
+            }
+            throw new IllegalStateException(count + " pooled buffer(s) have not been released", cause);
+        }
+    }
+
+    /**
+     * Starts tracking a buffer if leak detection is enabled.
+     * 
+     * @param buffer
+     * @return <code>true</code> if the buffer is being tracked.
+     */
+    static boolean track(final PooledBuffer buffer) {
+        if (isEnabled) {
+            buffers.put(buffer, new Throwable("buffer acquired by thread " + Thread.currentThread().getName()));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Stops tracking a buffer.
+     * 
+     * @param buffer
+     */
+    static void untrack(final PooledBuffer buffer) {
+        buffers.remove(buffer);
+    }
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    private BufferLeakDetector() {
+    }
+
+}
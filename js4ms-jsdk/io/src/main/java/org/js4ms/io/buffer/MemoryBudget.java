@@ -0,0 +1,540 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MemoryBudget.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+
+
+
+/**
+ * A byte budget shared by the queues and reassembly buffers of a process.
+ * Each component that holds messages or buffers draws from the budget through an
+ * {@link Account} that records the memory used by that component. A component that
+ * cannot obtain the memory it needs either waits for memory to be released
+ * (back-pressure) or discards the message, depending on its configuration.
+ * <p>
+ * The {@link #getSharedInstance() shared budget} is used by the gateway queues and the
+ * packet assembler. Its limit is read from the {@value #LIMIT_PROPERTY} system property,
+ * which accepts a byte count optionally followed by a <code>k</code>, <code>m</code> or
+ * <code>g</code> suffix. If the property is not set the budget is not limited, but
+ * memory use is still recorded so it can be monitored.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class MemoryBudget {
+
+    /*-- Inner Classes ------------------------------------------------------*/
+
+    /**
+     * Records the memory drawn from a budget by one component, or by all instances of
+     * one type of component.
+     */
+    public final class Account {
+
+        private final String name;
+
+        private final AtomicLong used = new AtomicLong();
+
+        private final AtomicLong peakUsed = new AtomicLong();
+
+        private final AtomicLong rejectedCount = new AtomicLong();
+
+        Account(final String name) {
+            this.name = name;
+        }
+
+        /**
+         * Gets the name of the component that uses this account.
+         */
+        public String getName() {
+            return this.name;
+        }
+
+        /**
+         * Gets the budget that this account draws from.
+         */
+        public MemoryBudget getBudget() {
+            return MemoryBudget.this;
+        }
+
+        /**
+         * Gets the number of bytes currently drawn by this account.
+         */
+        public long getUsed() {
+            return this.used.get();
+        }
+
+        /**
+         * Gets the largest number of bytes drawn by this account at one time.
+         */
+        public long getPeakUsed() {
+            return this.peakUsed.get();
+        }
+
+        /**
+         * Gets the number of requests made by this account that were refused because
+         * the budget was exhausted.
+         */
+        public long getRejectedCount() {
+            return this.rejectedCount.get();
+        }
+
+        /**
+         * Draws memory from the budget if it is available.
+         * 
+         * @param bytes
+         *            The number of bytes required.
+         * @return <code>true</code> if the memory was drawn from the budget.
+         */
+        public boolean tryAcquire(final long bytes) {
+            if (MemoryBudget.this.reserve(bytes)) {
+                updatePeak(this.peakUsed, this.used.addAndGet(bytes));
+                return true;
+            }
+            this.rejectedCount.incrementAndGet();
+            MemoryBudget.this.rejectedCount.incrementAndGet();
+            return false;
+        }
+
+        /**
+         * Draws memory from the budget, waiting for memory to be released by other
+         * components if necessary.
+         * 
+         * @param bytes
+         *            The number of bytes required.
+         * @param milliseconds
+         *            The maximum amount of time to wait.
+         * @return <code>true</code> if the memory was drawn from the budget, or
+         *         <code>false</code> if the time expired first.
+         * @throws InterruptedException
+         *             The calling thread was interrupted while waiting.
+         */
+        public boolean acquire(final long bytes, final long milliseconds) throws InterruptedException {
+            if (MemoryBudget.this.reserve(bytes)) {
+                updatePeak(this.peakUsed, this.used.addAndGet(bytes));
+                return true;
+            }
+            long deadline = System.currentTimeMillis() + milliseconds;
+            synchronized (MemoryBudget.this.lock) {
+                MemoryBudget.this.waiterCount++;
+                MemoryBudget.this.hasWaiters = true;
+                try {
+                    while (!MemoryBudget.this.reserve(bytes)) {
+                        long timeout = deadline - System.currentTimeMillis();
+                        if (timeout <= 0) {
+                            this.rejectedCount.incrementAndGet();
+                            MemoryBudget.this.rejectedCount.incrementAndGet();
+                            return false;
+                        }
+                        MemoryBudget.this.lock.wait(timeout);
+                    }
+                }
+                finally {
+                    MemoryBudget.this.hasWaiters = --MemoryBudget.this.waiterCount > 0;
+                }
+            }
+            updatePeak(this.peakUsed, this.used.addAndGet(bytes));
+            return true;
+        }
+
+        /**
+         * Returns memory to the budget.
+         * 
+         * @param bytes
+         *            The number of bytes drawn by an earlier acquire call.
+         */
+        public void release(final long bytes) {
+            this.used.addAndGet(-bytes);
+            MemoryBudget.this.unreserve(bytes);
+        }
+
+        /**
+         * Draws the memory held by a message from the budget if it is available.
+         * The memory held by a message backed by a {@link PooledBuffer} is drawn once for
+         * the buffer, however many messages share the buffer or queues hold them, and is
+         * returned to the budget when the last holder {@link #release(Object, long)
+         * releases} it.
+         * 
+         * @param message
+         *            The message.
+         * @param bytes
+         *            The size of the message as reported by {@link MemoryBudget#sizeOf(Object)}.
+         * @return <code>true</code> if the memory was drawn from the budget.
+         */
+        public boolean tryAcquire(final Object message, final long bytes) {
+            PooledBuffer buffer = pooledBufferOf(message);
+            return buffer != null ? buffer.charge(this) : tryAcquire(bytes);
+        }
+
+        /**
+         * Draws the memory held by a message from the budget, waiting for memory to be
+         * released by other components if necessary.
+         * See {@link #tryAcquire(Object, long)}.
+         * 
+         * @param message
+         *            The message.
+         * @param bytes
+         *            The size of the message as reported by {@link MemoryBudget#sizeOf(Object)}.
+         * @param milliseconds
+         *            The maximum amount of time to wait.
+         * @return <code>true</code> if the memory was drawn from the budget, or
+         *         <code>false</code> if the time expired first.
+         * @throws InterruptedException
+         *             The calling thread was interrupted while waiting.
+         */
+        public boolean acquire(final Object message, final long bytes, final long milliseconds) throws InterruptedException {
+            PooledBuffer buffer = pooledBufferOf(message);
+            return buffer != null ? buffer.charge(this, milliseconds) : acquire(bytes, milliseconds);
+        }
+
+        /**
+         * Returns the memory drawn for a message to the budget.
+         * 
+         * @param message
+         *            The message.
+         * @param bytes
+         *            The number of bytes passed to an earlier acquire call for the message.
+         */
+        public void release(final Object message, final long bytes) {
+            PooledBuffer buffer = pooledBufferOf(message);
+            if (buffer != null) {
+                buffer.discharge();
+            }
+            else {
+                release(bytes);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return this.name + " used=" + getUsed() + " peak=" + getPeakUsed() + " rejected=" + getRejectedCount();
+        }
+    }
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(MemoryBudget.class.getName());
+
+    /**
+     * The name of the system property used to set the limit of the shared budget.
+     */
+    public static final String LIMIT_PROPERTY = "org.js4ms.io.buffer.memoryBudget";
+
+    /**
+     * The limit assigned to a budget whose memory use is not limited.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+
+    private static final MemoryBudget sharedInstance = new MemoryBudget("shared", parseLimit(System.getProperty(LIMIT_PROPERTY)));
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    /**
+     * Gets the budget shared by the queues and reassembly buffers of this process.
+     */
+    public static MemoryBudget getSharedInstance() {
+        return sharedInstance;
+    }
+
+    /**
+     * Gets the number of bytes charged to a budget for a message.
+     * 
+     * @param message
+     * @return The size reported by a {@link SizedMessage}, the number of bytes
+     *         remaining in a {@link ByteBuffer}, or zero for other messages.
+     */
+    public static int sizeOf(final Object message) {
+        if (message instanceof SizedMessage) {
+            return ((SizedMessage) message).getMemorySize();
+        }
+        else if (message instanceof ByteBuffer) {
+            return ((ByteBuffer) message).remaining();
+        }
+        return 0;
+    }
+
+    /**
+     * Gets the pooled buffer that holds the content of a message.
+     * 
+     * @return The buffer or <code>null</code> if the message is not backed by a
+     *         pooled buffer.
+     */
+    private static PooledBuffer pooledBufferOf(final Object message) {
+        return message instanceof SizedMessage ? ((SizedMessage) message).getPooledBuffer() : null;
+    }
+
+    /**
+     * Parses a budget limit.
+     * 
+     * @param value
+     *            A byte count optionally followed by a <code>k</code>, <code>m</code>
+     *            or <code>g</code> suffix, or <code>null</code>.
+     * @return The limit in bytes or {@link #UNLIMITED} if the value is
+     *         <code>null</code> or cannot be parsed.
+     */
+    static long parseLimit(final String value) {
+        if (value == null || value.trim().length() == 0) {
+            return UNLIMITED;
+        }
+        String limit = value.trim().toLowerCase();
+        long multiplier = 1;
+        switch (limit.charAt(limit.length() - 1)) {
+            case 'k':
+                multiplier = 1024;
+                break;
+            case 'm':
+                multiplier = 1024 * 1024;
+                break;
+            case 'g':
+                multiplier = 1024 * 1024 * 1024;
+                break;
+        }
+        if (multiplier != 1) {
+            limit = limit.substring(0, limit.length() - 1);
+        }
+        try {
+            return Long.parseLong(limit.trim()) * multiplier;
+        }
+        catch (NumberFormatException e) {
+            logger.warning("invalid memory budget '" + value + "' - budget is not limited");
+            return UNLIMITED;
+        }
+    }
+
+    private static void updatePeak(final AtomicLong peak, final long value) {
+        long current;
+        while (value > (current = peak.get())) {
+            if (peak.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final Log log = new Log(this);
+
+    /**
+     * Monitor object used by threads that wait for memory to be released.
+     */
+    private final Object lock = new Object();
+
+    private final String name;
+
+    private volatile long limit;
+
+    private final AtomicLong used = new AtomicLong();
+
+    private final AtomicLong peakUsed = new AtomicLong();
+
+    private final AtomicLong rejectedCount = new AtomicLong();
+
+    /**
+     * The number of threads waiting for memory. Guarded by the lock.
+     */
+    private int waiterCount = 0;
+
+    /**
+     * Indicates whether any thread is waiting for memory. Read without holding the lock
+     * so that releasing memory does not acquire the lock when no thread is waiting.
+     */
+    private volatile boolean hasWaiters = false;
+
+    private final LinkedHashMap<String, Account> accounts = new LinkedHashMap<String, Account>();
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs a budget.
+     * 
+     * @param name
+     *            The name used to identify the budget in log messages.
+     * @param limit
+     *            The maximum number of bytes that may be drawn from the budget, or
+     *            {@link #UNLIMITED}.
+     */
+    public MemoryBudget(final String name, final long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("memory budget limit must not be negative");
+        }
+        this.name = name;
+        this.limit = limit;
+    }
+
+    /**
+     * Gets the name used to identify the budget in log messages.
+     */
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the maximum number of bytes that may be drawn from the budget.
+     * 
+     * @return The limit in bytes or {@link #UNLIMITED}.
+     */
+    public long getLimit() {
+        return this.limit;
+    }
+
+    /**
+     * Changes the maximum number of bytes that may be drawn from the budget.
+     * Memory already drawn is not affected if the limit is reduced.
+     * 
+     * @param limit
+     *            The limit in bytes or {@link #UNLIMITED}.
+     */
+    public void setLimit(final long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("memory budget limit must not be negative");
+        }
+        this.limit = limit;
+        signal();
+    }
+
+    /**
+     * Gets the number of bytes currently drawn from the budget by all accounts.
+     */
+    public long getUsed() {
+        return this.used.get();
+    }
+
+    /**
+     * Gets the number of bytes that may still be drawn from the budget.
+     */
+    public long getAvailable() {
+        long limit = this.limit;
+        return limit == UNLIMITED ? UNLIMITED : Math.max(0, limit - this.used.get());
+    }
+
+    /**
+     * Gets the largest number of bytes drawn from the budget at one time.
+     */
+    public long getPeakUsed() {
+        return this.peakUsed.get();
+    }
+
+    /**
+     * Gets the number of requests that were refused because the budget was exhausted.
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Gets the account used by a component, creating the account if necessary.
+     * 
+     * @param name
+     *            The name of the component, e.g. the class name of a queue.
+     */
+    public Account getAccount(final String name) {
+        synchronized (this.accounts) {
+            Account account = this.accounts.get(name);
+            if (account == null) {
+                account = new Account(name);
+                this.accounts.put(name, account);
+            }
+            return account;
+        }
+    }
+
+    /**
+     * Gets the accounts that draw from this budget.
+     */
+    public List<Account> getAccounts() {
+        synchronized (this.accounts) {
+            return new ArrayList<Account>(this.accounts.values());
+        }
+    }
+
+    /**
+     * Logs the total and per-account memory use.
+     * 
+     * @param level
+     */
+    public void log(final Level level) {
+        if (logger.isLoggable(level)) {
+            long limit = this.limit;
+            logger.log(level, this.log.msg("memory budget " + this.name +
+                                           " limit=" + (limit == UNLIMITED ? "unlimited" : String.valueOf(limit)) +
+                                           " used=" + getUsed() +
+                                           " peak=" + getPeakUsed() +
+                                           " rejected=" + getRejectedCount()));
+            for (Account account : getAccounts()) {
+                logger.log(level, this.log.msg("  " + account));
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.name + " used=" + getUsed() + " limit=" + this.limit;
+    }
+
+    /**
+     * Adds to the memory drawn from the budget if the limit allows it.
+     */
+    private boolean reserve(final long bytes) {
+        while (true) {
+            long current = this.used.get();
+            long next = current + bytes;
+            if (bytes > 0 && next > this.limit) {
+                return false;
+            }
+            if (this.used.compareAndSet(current, next)) {
+                updatePeak(this.peakUsed, next);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Returns memory to the budget and wakes any threads waiting for memory.
+     */
+    private void unreserve(final long bytes) {
+        this.used.addAndGet(-bytes);
+        if (this.hasWaiters) {
+            signal();
+        }
+    }
+
+    private void signal() {
+        synchronized (this.lock) {
+            if (this.waiterCount > 0) {
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+}
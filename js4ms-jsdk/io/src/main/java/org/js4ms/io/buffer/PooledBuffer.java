@@ -0,0 +1,272 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * PooledBuffer.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.js4ms.common.util.pool.ByteBufferPool;
+
+
+
+/**
+ * A reference-counted buffer acquired from a {@link ByteBufferPool}.
+ * The buffer is created with a reference count of one. Each object that shares the
+ * buffer beyond the lifetime of the object that created it, such as a queue or a
+ * message that wraps part of the buffer, calls {@link #retain()} to add a reference
+ * and {@link #release()} when it no longer needs the buffer. The buffer is returned
+ * to the pool when the last reference is released.
+ * <p>
+ * Queues that charge the messages they hold to a {@link MemoryBudget} charge the
+ * capacity of a pooled buffer once, when the first queue takes hold of a message backed
+ * by the buffer, and return it when the last such queue lets go of its message.
+ * <p>
+ * When {@link BufferLeakDetector leak detection} is enabled, each buffer records where
+ * it was acquired so that buffers that are never released can be reported.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class PooledBuffer {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final ByteBufferPool pool;
+
+    private final ByteBuffer buffer;
+
+    private final AtomicInteger referenceCount = new AtomicInteger(1);
+
+    /**
+     * Indicates whether the buffer is returned to the pool when the last reference
+     * is released.
+     */
+    private volatile boolean isDetached = false;
+
+    /**
+     * Indicates whether the buffer was registered with the leak detector.
+     */
+    private final boolean isTracked;
+
+    /**
+     * The number of holders that have charged the buffer to a memory budget.
+     * Guarded by this object.
+     */
+    private int chargeCount = 0;
+
+    /**
+     * The account that the buffer capacity was drawn from while the charge count is
+     * non-zero. Guarded by this object.
+     */
+    private MemoryBudget.Account chargedAccount = null;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Acquires a buffer from a pool.
+     * 
+     * @param pool
+     *            The pool that will supply the buffer.
+     */
+    public PooledBuffer(final ByteBufferPool pool) {
+        this(pool, pool.acquire());
+    }
+
+    /**
+     * Constructs a reference-counted buffer for a buffer that has already been acquired
+     * from a pool.
+     * 
+     * @param pool
+     *            The pool that supplied the buffer.
+     * @param buffer
+     *            The buffer acquired from the pool.
+     */
+    public PooledBuffer(final ByteBufferPool pool, final ByteBuffer buffer) {
+        this.pool = pool;
+        this.buffer = buffer;
+        this.isTracked = BufferLeakDetector.track(this);
+    }
+
+    /**
+     * Gets the pool that supplied the buffer.
+     */
+    public ByteBufferPool getPool() {
+        return this.pool;
+    }
+
+    /**
+     * Gets the buffer. The buffer must not be accessed once the last reference has
+     * been released.
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the current reference count.
+     * 
+     * @return The number of references or zero if the buffer has been released.
+     */
+    public int getReferenceCount() {
+        return this.referenceCount.get();
+    }
+
+    /**
+     * Adds a reference to the buffer.
+     * 
+     * @return This object.
+     * @throws IllegalStateException
+     *             If the last reference has already been released.
+     */
+    public PooledBuffer retain() {
+        while (true) {
+            int count = this.referenceCount.get();
+            if (count <= 0) {
+                throw new IllegalStateException("attempt made to retain a released buffer");
+            }
+            if (this.referenceCount.compareAndSet(count, count + 1)) {
+                return this;
+            }
+        }
+    }
+
+    /**
+     * Releases a reference to the buffer. The buffer is returned to the pool when
+     * the last reference is released, unless the buffer has been {@link #detach()
+     * detached}.
+     * 
+     * @return <code>true</code> if the last reference was released.
+     * @throws IllegalStateException
+     *             If the last reference has already been released.
+     */
+    public boolean release() {
+        int count = this.referenceCount.decrementAndGet();
+        if (count > 0) {
+            return false;
+        }
+        if (count < 0) {
+            throw new IllegalStateException("attempt made to release a buffer that has already been released");
+        }
+        if (this.isTracked) {
+            BufferLeakDetector.untrack(this);
+        }
+        if (!this.isDetached) {
+            this.pool.release(this.buffer);
+        }
+        return true;
+    }
+
+    /**
+     * Prevents the buffer from being returned to the pool when the last reference is
+     * released. Used when the buffer content has been shared with objects that do not
+     * track references, so the buffer must be left to the garbage collector.
+     */
+    public void detach() {
+        this.isDetached = true;
+    }
+
+    /**
+     * Indicates whether the buffer has been {@link #detach() detached} from its pool.
+     */
+    public boolean isDetached() {
+        return this.isDetached;
+    }
+
+    /**
+     * Adds a holder to the memory charge for this buffer, drawing the buffer capacity
+     * from an account if this is the first holder.
+     * 
+     * @return <code>true</code> if the buffer is charged to a budget.
+     */
+    boolean charge(final MemoryBudget.Account account) {
+        if (addCharge()) {
+            return true;
+        }
+        return account.tryAcquire(this.buffer.capacity()) && commitCharge(account);
+    }
+
+    /**
+     * Adds a holder to the memory charge for this buffer, waiting for the buffer
+     * capacity to become available in the budget if this is the first holder.
+     * 
+     * @return <code>true</code> if the buffer is charged to a budget, or
+     *         <code>false</code> if the time expired first.
+     * @throws InterruptedException
+     *             The calling thread was interrupted while waiting.
+     */
+    boolean charge(final MemoryBudget.Account account, final long milliseconds) throws InterruptedException {
+        if (addCharge()) {
+            return true;
+        }
+        return account.acquire(this.buffer.capacity(), milliseconds) && commitCharge(account);
+    }
+
+    /**
+     * Removes a holder from the memory charge for this buffer, returning the buffer
+     * capacity to the account it was drawn from if this is the last holder.
+     * 
+     * @throws IllegalStateException
+     *             If the buffer is not charged.
+     */
+    void discharge() {
+        MemoryBudget.Account account;
+        synchronized (this) {
+            if (this.chargeCount <= 0) {
+                throw new IllegalStateException("attempt made to discharge a buffer that is not charged");
+            }
+            if (--this.chargeCount > 0) {
+                return;
+            }
+            account = this.chargedAccount;
+            this.chargedAccount = null;
+        }
+        account.release(this.buffer.capacity());
+    }
+
+    /**
+     * Adds a holder to the memory charge if the buffer is already charged.
+     */
+    private synchronized boolean addCharge() {
+        if (this.chargeCount > 0) {
+            this.chargeCount++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Records the first holder of the memory charge once the buffer capacity has been
+     * drawn from an account.
+     */
+    private boolean commitCharge(final MemoryBudget.Account account) {
+        synchronized (this) {
+            if (this.chargeCount++ == 0) {
+                this.chargedAccount = account;
+                return true;
+            }
+        }
+        // Another holder charged the buffer while this one was drawing on the budget
+        account.release(this.buffer.capacity());
+        return true;
+    }
+
+}
@@ -0,0 +1,49 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SizedMessage.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Interface exposed by message objects that report the amount of memory they hold
+ * while they are queued, so the memory can be charged to a {@link MemoryBudget}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface SizedMessage {
+
+    /**
+     * Gets the number of bytes held by this message, e.g. the capacity of the buffer
+     * that backs its content.
+     */
+    int getMemorySize();
+
+    /**
+     * Gets the pooled buffer that backs the content of this message, if any.
+     * A pooled buffer may be shared by several messages, or by one message held in
+     * several queues, so its memory is charged to a budget once for the buffer rather
+     * than once for each message or queue.
+     * 
+     * @return The buffer or <code>null</code> if the content is not pooled.
+     */
+    PooledBuffer getPooledBuffer();
+
+}
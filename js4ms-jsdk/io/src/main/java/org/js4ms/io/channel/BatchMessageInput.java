@@ -0,0 +1,67 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * BatchMessageInput.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Interface exposed by objects that can be used to receive several messages from a
+ * message source in a single call.
+ * Batch receive amortizes the locking and timeout setup costs of
+ * {@link MessageInput#receive(int)} over all of the messages retrieved in one call.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface BatchMessageInput<MessageType> {
+
+    /**
+     * Waits the specified amount of time for at least one message to become available
+     * and then appends that message, and any other messages that can be retrieved
+     * without waiting, to the specified list.
+     * 
+     * @param messages
+     *            The list that will receive the messages.
+     * @param maxCount
+     *            The maximum number of messages to retrieve.
+     * @param milliseconds
+     *            The amount of time allotted to wait for the first message.
+     * @return The number of messages appended to the list. Always greater than zero.
+     * @throws IOException
+     *             The receive operation has failed.
+     * @throws InterruptedIOException
+     *             The receive operation was interrupted or timed out before any message
+     *             was received.
+     * @throws InterruptedException
+     *             The calling thread was interrupted before the receive operation could
+     *             complete.
+     */
+    int receive(List<MessageType> messages, int maxCount, int milliseconds) throws IOException,
+                                                                              InterruptedIOException,
+                                                                              InterruptedException;
+
+}
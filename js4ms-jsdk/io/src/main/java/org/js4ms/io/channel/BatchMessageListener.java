@@ -0,0 +1,50 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * BatchMessageListener.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.List;
+
+/**
+ * Interface exposed by objects that receive messages pushed to them by a message
+ * source, several messages per call.
+ * See {@link ListenerOutputChannel}.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface BatchMessageListener<MessageType> {
+
+    /**
+     * Called with one or more messages, in the order they were sent.
+     * The list may be reused once this method returns - the listener must copy the
+     * list if it needs to retain it.
+     * Any RuntimeException thrown by this method is logged and counted, and does not
+     * prevent delivery of subsequent messages.
+     * 
+     * @param messages
+     *            A list containing at least one message.
+     */
+    void onMessages(List<MessageType> messages);
+
+}
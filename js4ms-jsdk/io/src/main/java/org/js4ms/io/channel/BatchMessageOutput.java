@@ -0,0 +1,60 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * BatchMessageOutput.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+
+/**
+ * Interface exposed by objects that may be used to send several messages to a
+ * message sink in a single call.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface BatchMessageOutput<MessageType> {
+
+    /**
+     * Attempts to send each message in the list, in list order, within the specified
+     * amount of time. The operation stops at the first message that cannot be sent.
+     * 
+     * @param messages
+     *            The messages to send.
+     * @param milliseconds
+     *            The amount of time allotted to complete the operation.
+     * @throws IOException
+     *             The send operation has failed.
+     * @throws InterruptedIOException
+     *             The send operation was interrupted or timed out.
+     * @throws InterruptedException
+     *             The calling thread was interrupted before the send operation could
+     *             complete.
+     */
+    void send(List<MessageType> messages, int milliseconds) throws IOException,
+                                                              InterruptedIOException,
+                                                              InterruptedException;
+
+}
@@ -0,0 +1,56 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ChannelClosedException.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+
+
+
+/**
+ * Signals that a message could not be sent because the output channel has been
+ * permanently stopped or disconnected. Unlike a timeout or other transient failure,
+ * every subsequent send to the same channel will also fail, so a sender may safely
+ * discard its reference to the channel.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class ChannelClosedException
+                extends IOException {
+
+    private static final long serialVersionUID = -3086253927416340651L;
+
+    /**
+     * @param message
+     */
+    public ChannelClosedException(final String message) {
+        super(message);
+    }
+
+    /**
+     * @param message
+     * @param cause
+     */
+    public ChannelClosedException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
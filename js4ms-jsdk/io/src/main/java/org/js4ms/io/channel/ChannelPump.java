@@ -24,6 +24,8 @@ package org.js4ms.io.channel;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +38,11 @@ import org.js4ms.common.util.logging.Log;
  * from an {@link InputChannel} and send those messages to an {@link OutputChannel}.
  * The internal thread is started and stopped using the {@link #start()} and
  * {@link #stop(int)} methods.
+ * <p>
+ * If the input channel implements {@link BatchMessageInput} the pump receives up to
+ * <code>batchSize</code> messages per receive call, and if the output channel
+ * implements {@link BatchMessageOutput} the pump forwards each batch using a single
+ * send call.
  * 
  * @param <MessageType>
  *            The message object type.
@@ -51,6 +58,11 @@ public final class ChannelPump<MessageType>
      */
     public static final Logger logger = Logger.getLogger(ChannelPump.class.getName());
 
+    /**
+     * The default maximum number of messages transferred in a single batch.
+     */
+    public static final int DEFAULT_BATCH_SIZE = 32;
+
     /*-- Member Variables ----------------------------------------------------*/
 
     /**
@@ -67,6 +79,10 @@ public final class ChannelPump<MessageType>
 
     private final OutputChannel<MessageType> outputChannel;
 
+    private final int batchSize;
+
+    private final ArrayList<MessageType> batch;
+
     private Thread thread = null;
 
     private boolean isRunning = false;
@@ -82,15 +98,40 @@ public final class ChannelPump<MessageType>
      */
     public ChannelPump(InputChannel<MessageType> inputChannel,
                        OutputChannel<MessageType> outputChannel) {
+        this(inputChannel, outputChannel, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Constructs a channel pump that connects the specified input and output channels
+     * and transfers up to <code>batchSize</code> messages at a time when the input
+     * channel supports batch reception.
+     * The {@link #start()} method must be called to start the pump.
+     * 
+     * @param inputChannel
+     * @param outputChannel
+     * @param batchSize
+     *            The maximum number of messages transferred in a single batch.
+     *            A value of one disables batch transfers.
+     */
+    public ChannelPump(InputChannel<MessageType> inputChannel,
+                       OutputChannel<MessageType> outputChannel,
+                       int batchSize) {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(log.entry("ChannelPump",
                                    inputChannel,
-                                   outputChannel));
+                                   outputChannel,
+                                   batchSize));
+        }
+
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batch size must be greater than zero");
         }
 
         this.inputChannel = inputChannel;
         this.outputChannel = outputChannel;
+        this.batchSize = batchSize;
+        this.batch = new ArrayList<MessageType>(batchSize);
     }
 
     /**
@@ -182,16 +223,53 @@ public final class ChannelPump<MessageType>
     }
 
     /**
+     * Receives one or more messages from the input channel and sends them to the
+     * output channel. Any {@link ReleasableMessage} is released once the output
+     * channel has returned from the send call.
+     * 
      * @throws IOException
      * @throws InterruptedException
      */
+    @SuppressWarnings("unchecked")
     public final void transfer() throws IOException, InterruptedException {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(log.entry("transfer"));
         }
 
-        this.outputChannel.send(this.inputChannel.receive(Integer.MAX_VALUE), Integer.MAX_VALUE);
+        if (this.batchSize > 1 && this.inputChannel instanceof BatchMessageInput) {
+            List<MessageType> messages = this.batch;
+            try {
+                ((BatchMessageInput<MessageType>) this.inputChannel).receive(messages, this.batchSize, Integer.MAX_VALUE);
+                if (this.outputChannel instanceof BatchMessageOutput) {
+                    ((BatchMessageOutput<MessageType>) this.outputChannel).send(messages, Integer.MAX_VALUE);
+                }
+                else {
+                    for (MessageType message : messages) {
+                        this.outputChannel.send(message, Integer.MAX_VALUE);
+                    }
+                }
+            }
+            finally {
+                for (MessageType message : messages) {
+                    if (message instanceof ReleasableMessage) {
+                        ((ReleasableMessage) message).release();
+                    }
+                }
+                messages.clear();
+            }
+        }
+        else {
+            MessageType message = this.inputChannel.receive(Integer.MAX_VALUE);
+            try {
+                this.outputChannel.send(message, Integer.MAX_VALUE);
+            }
+            finally {
+                if (message instanceof ReleasableMessage) {
+                    ((ReleasableMessage) message).release();
+                }
+            }
+        }
     }
 
 }
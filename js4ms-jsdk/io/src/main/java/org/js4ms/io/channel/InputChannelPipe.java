@@ -25,17 +25,21 @@ package org.js4ms.io.channel;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
+import java.util.List;
 
 /**
  * A message input channel that receives messages from any object that
  * implements the {@link MessageInput} interface.
+ * If the connected object also implements {@link BatchMessageInput} the channel
+ * forwards batch receive calls to it, so a {@link ChannelPump} reading from the
+ * channel can drain several messages at once.
  * 
  * @param <MessageType>
  *            The message object type.
  * @author Greg Bumgardner (gbumgard)
  */
 public final class InputChannelPipe<MessageType>
-                implements InputChannel<MessageType> {
+                implements InputChannel<MessageType>, BatchMessageInput<MessageType> {
 
     /*-- Member Variables ----------------------------------------------------*/
 
@@ -88,4 +92,23 @@ public final class InputChannelPipe<MessageType>
         return this.pipe.receive(milliseconds);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public final int receive(final List<MessageType> messages,
+                             final int maxCount,
+                             final int milliseconds) throws IOException,
+                                                    InterruptedIOException,
+                                                    InterruptedException {
+        if (this.pipe == null) {
+            throw new IOException("pipe not connected");
+        }
+
+        if (this.pipe instanceof BatchMessageInput) {
+            return ((BatchMessageInput<MessageType>) this.pipe).receive(messages, maxCount, milliseconds);
+        }
+
+        messages.add(this.pipe.receive(milliseconds));
+        return 1;
+    }
+
 }
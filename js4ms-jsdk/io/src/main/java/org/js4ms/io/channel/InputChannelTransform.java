@@ -65,9 +65,21 @@ public final class InputChannelTransform<InnerMessageType, OuterMessageType>
         this.transform = transform;
     }
 
+    /**
+     * Receives a message from the inner channel and returns the transformed message.
+     * If the message received from the inner channel is a
+     * {@link ReferenceCountedMessage} and the transform produces a new
+     * {@link ReferenceCountedMessage}, the reference held by the received message is
+     * released since the new message holds its own reference.
+     */
     @Override
     public OuterMessageType receive(int milliseconds) throws IOException, InterruptedIOException, InterruptedException {
-        return this.transform.transform(this.innerChannel.receive(milliseconds));
+        InnerMessageType message = this.innerChannel.receive(milliseconds);
+        OuterMessageType transformed = this.transform.transform(message);
+        if (transformed != message && message instanceof ReferenceCountedMessage && transformed instanceof ReferenceCountedMessage) {
+            ((ReferenceCountedMessage) message).release();
+        }
+        return transformed;
     }
 
 }
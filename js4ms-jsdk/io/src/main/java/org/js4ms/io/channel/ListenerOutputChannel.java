@@ -0,0 +1,889 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ListenerOutputChannel.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+import org.js4ms.io.buffer.MemoryBudget;
+
+
+
+/**
+ * An output channel that delivers messages to a {@link MessageListener} or
+ * {@link BatchMessageListener}.
+ * <p>
+ * If no {@link Executor} is specified, messages are delivered on the thread that
+ * calls {@link #send(Object, int)}, so there is no queue between the sender and the
+ * listener. A batch listener receives one message per call, or the entire list
+ * passed to {@link #send(List, int)}.
+ * <p>
+ * If an executor is specified, messages are placed in a bounded ring buffer and
+ * delivered by a task submitted to the executor. Each task delivers up to a maximum
+ * number of messages - in a single call to a batch listener - and then resubmits
+ * itself if messages remain, so many channels may share a small thread pool without
+ * one busy channel starving the others. Only one task per channel is submitted at a
+ * time, so messages are delivered in the order they were sent. When the queue is full
+ * the channel applies its {@link OverflowPolicy}.
+ * <p>
+ * A queued channel may be constructed with a {@link MemoryBudget.Account} that is
+ * charged with the size of each queued message until the message has been delivered
+ * or discarded. If the budget is exhausted the channel applies its overflow policy as
+ * if the queue were full.
+ * <p>
+ * When an executor is used, the channel calls {@link ReferenceCountedMessage#retain()}
+ * on each {@link ReferenceCountedMessage} it places in the queue and releases the
+ * message once it has been delivered or discarded. A listener that holds a message
+ * after its callback returns must retain the message itself.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class ListenerOutputChannel<MessageType>
+                implements OutputChannel<MessageType>, BatchMessageOutput<MessageType> {
+
+    /*-- Static Variables ----------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(ListenerOutputChannel.class.getName());
+
+    /**
+     * The default maximum number of messages delivered by each executor task.
+     */
+    public static final int DEFAULT_MAXIMUM_BATCH_SIZE = 32;
+
+    /*-- Member Variables ----------------------------------------------------*/
+
+    /**
+     * Helper object used to construct log messages.
+     */
+    private final Log log = new Log(this);
+
+    /**
+     * Monitor object used for thread synchronization.
+     */
+    private final Object lock = new Object();
+
+    private final MessageListener<MessageType> listener;
+
+    private final BatchMessageListener<MessageType> batchListener;
+
+    private final Executor executor;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final int maximumBatchSize;
+
+    private final Object[] queue;
+
+    /**
+     * The account charged for the memory held by queued messages, or <code>null</code>.
+     */
+    private final MemoryBudget.Account memoryAccount;
+
+    /**
+     * The number of bytes charged for each queued message. Only used if the channel
+     * has a memory account.
+     */
+    private final int[] sizes;
+
+    private int head = 0;
+
+    private int count = 0;
+
+    /**
+     * The number of senders waiting for room in the queue.
+     */
+    private int waitingSenderCount = 0;
+
+    /**
+     * Messages removed from the queue by the delivery task.
+     * Only accessed by the delivery task - at most one task runs at a time.
+     */
+    private final ArrayList<MessageType> batch;
+
+    /**
+     * The number of bytes charged for each message in the current batch.
+     * Only accessed by the delivery task.
+     */
+    private final int[] batchSizes;
+
+    /**
+     * Indicates whether a delivery task has been submitted to the executor.
+     */
+    private boolean isScheduled = false;
+
+    private volatile boolean isRunning = true;
+
+    private IOException failure = null;
+
+    private long overflowCount = 0;
+
+    private long droppedCount = 0;
+
+    private final AtomicLong deliveredCount = new AtomicLong();
+
+    private final AtomicLong listenerFailureCount = new AtomicLong();
+
+    private final Runnable deliveryTask = new Runnable() {
+
+        @Override
+        public void run() {
+            deliverQueuedMessages();
+        }
+    };
+
+    /*-- Member Functions ----------------------------------------------------*/
+
+    /**
+     * Constructs a channel that delivers each message to a listener on the thread
+     * that sends the message.
+     * 
+     * @param listener
+     *            The listener that will receive the messages.
+     */
+    public ListenerOutputChannel(final MessageListener<MessageType> listener) {
+        this(listener, null, null, 0, 0, null, null);
+    }
+
+    /**
+     * Constructs a channel that delivers messages to a batch listener on the thread
+     * that sends the messages.
+     * 
+     * @param listener
+     *            The listener that will receive the messages.
+     */
+    public ListenerOutputChannel(final BatchMessageListener<MessageType> listener) {
+        this(null, listener, null, 0, 0, null, null);
+    }
+
+    /**
+     * Constructs a channel that queues messages and delivers them to a listener using
+     * tasks submitted to the specified executor.
+     * 
+     * @param listener
+     *            The listener that will receive the messages.
+     * @param executor
+     *            The executor used to run the delivery tasks.
+     * @param capacity
+     *            The maximum number of messages held in the queue.
+     * @param overflowPolicy
+     *            The action taken when a message is sent while the queue is full.
+     */
+    public ListenerOutputChannel(final MessageListener<MessageType> listener,
+                                 final Executor executor,
+                                 final int capacity,
+                                 final OverflowPolicy overflowPolicy) {
+        this(listener, null, executor, capacity, DEFAULT_MAXIMUM_BATCH_SIZE, overflowPolicy, null);
+    }
+
+    /**
+     * Constructs a channel that queues messages and delivers them to a listener using
+     * tasks submitted to the specified executor, charging the memory held by queued
+     * messages to a memory budget account.
+     * 
+     * @param listener
+     *            The listener that will receive the messages.
+     * @param executor
+     *            The executor used to run the delivery tasks.
+     * @param capacity
+     *            The maximum number of messages held in the queue.
+     * @param overflowPolicy
+     *            The action taken when a message is sent while the queue is full or
+     *            the memory budget is exhausted.
+     * @param memoryAccount
+     *            The account charged for queued messages, or <code>null</code> if
+     *            memory use is not accounted.
+     */
+    public ListenerOutputChannel(final MessageListener<MessageType> listener,
+                                 final Executor executor,
+                                 final int capacity,
+                                 final OverflowPolicy overflowPolicy,
+                                 final MemoryBudget.Account memoryAccount) {
+        this(listener, null, executor, capacity, DEFAULT_MAXIMUM_BATCH_SIZE, overflowPolicy, memoryAccount);
+    }
+
+    /**
+     * Constructs a channel that queues messages and delivers them to a batch listener
+     * using tasks submitted to the specified executor.
+     * 
+     * @param listener
+     *            The listener that will receive the messages.
+     * @param executor
+     *            The executor used to run the delivery tasks.
+     * @param capacity
+     *            The maximum number of messages held in the queue.
+     * @param maximumBatchSize
+     *            The maximum number of messages passed to the listener in a single call.
+     * @param overflowPolicy
+     *            The action taken when a message is sent while the queue is full.
+     */
+    public ListenerOutputChannel(final BatchMessageListener<MessageType> listener,
+                                 final Executor executor,
+                                 final int capacity,
+                                 final int maximumBatchSize,
+                                 final OverflowPolicy overflowPolicy) {
+        this(null, listener, executor, capacity, maximumBatchSize, overflowPolicy, null);
+    }
+
+    /**
+     * Constructs a channel that queues messages and delivers them to a batch listener
+     * using tasks submitted to the specified executor, charging the memory held by
+     * queued messages to a memory budget account.
+     * 
+     * @param listener
+     *            The listener that will receive the messages.
+     * @param executor
+     *            The executor used to run the delivery tasks.
+     * @param capacity
+     *            The maximum number of messages held in the queue.
+     * @param maximumBatchSize
+     *            The maximum number of messages passed to the listener in a single call.
+     * @param overflowPolicy
+     *            The action taken when a message is sent while the queue is full or
+     *            the memory budget is exhausted.
+     * @param memoryAccount
+     *            The account charged for queued messages, or <code>null</code> if
+     *            memory use is not accounted.
+     */
+    public ListenerOutputChannel(final BatchMessageListener<MessageType> listener,
+                                 final Executor executor,
+                                 final int capacity,
+                                 final int maximumBatchSize,
+                                 final OverflowPolicy overflowPolicy,
+                                 final MemoryBudget.Account memoryAccount) {
+        this(null, listener, executor, capacity, maximumBatchSize, overflowPolicy, memoryAccount);
+    }
+
+    /**
+     * @param listener
+     * @param batchListener
+     * @param executor
+     * @param capacity
+     * @param maximumBatchSize
+     * @param overflowPolicy
+     * @param memoryAccount
+     */
+    private ListenerOutputChannel(final MessageListener<MessageType> listener,
+                                  final BatchMessageListener<MessageType> batchListener,
+                                  final Executor executor,
+                                  final int capacity,
+                                  final int maximumBatchSize,
+                                  final OverflowPolicy overflowPolicy,
+                                  final MemoryBudget.Account memoryAccount) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("ListenerOutputChannel",
+                                        listener != null ? listener : batchListener,
+                                        executor,
+                                        capacity,
+                                        maximumBatchSize,
+                                        overflowPolicy,
+                                        memoryAccount));
+        }
+
+        if (listener == null && batchListener == null) {
+            throw new NullPointerException("listener must not be null");
+        }
+
+        if (executor != null) {
+            if (capacity < 1) {
+                throw new IllegalArgumentException("queue capacity must be greater than zero");
+            }
+            if (maximumBatchSize < 1) {
+                throw new IllegalArgumentException("maximum batch size must be greater than zero");
+            }
+            if (overflowPolicy == null) {
+                throw new NullPointerException("overflow policy must not be null");
+            }
+            this.queue = new Object[capacity];
+            this.batch = new ArrayList<MessageType>(Math.min(capacity, maximumBatchSize));
+            this.memoryAccount = memoryAccount;
+        }
+        else {
+            this.queue = null;
+            this.batch = null;
+            this.memoryAccount = null;
+        }
+
+        if (this.memoryAccount != null) {
+            this.sizes = new int[capacity];
+            this.batchSizes = new int[Math.min(capacity, maximumBatchSize)];
+        }
+        else {
+            this.sizes = null;
+            this.batchSizes = null;
+        }
+
+        this.listener = listener;
+        this.batchListener = batchListener;
+        this.executor = executor;
+        this.maximumBatchSize = maximumBatchSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /**
+     * Gets the executor used to deliver messages.
+     * 
+     * @return The executor or <code>null</code> if messages are delivered on the
+     *         sending thread.
+     */
+    public Executor getExecutor() {
+        return this.executor;
+    }
+
+    /**
+     * Gets the overflow policy assigned to this channel.
+     * 
+     * @return The overflow policy or <code>null</code> if messages are delivered on the
+     *         sending thread.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /**
+     * Gets the account charged for the memory held by queued messages.
+     * 
+     * @return The account or <code>null</code> if memory use is not accounted.
+     */
+    public MemoryBudget.Account getMemoryAccount() {
+        return this.memoryAccount;
+    }
+
+    /**
+     * Gets the maximum number of messages held in the queue.
+     * 
+     * @return The queue capacity or zero if messages are delivered on the sending
+     *         thread.
+     */
+    public int getCapacity() {
+        return this.queue != null ? this.queue.length : 0;
+    }
+
+    /**
+     * Gets the number of messages waiting to be delivered to the listener.
+     */
+    public int getPendingCount() {
+        synchronized (this.lock) {
+            return this.count;
+        }
+    }
+
+    /**
+     * Gets the number of messages sent while the queue was full.
+     */
+    public long getOverflowCount() {
+        synchronized (this.lock) {
+            return this.overflowCount;
+        }
+    }
+
+    /**
+     * Gets the number of messages discarded because of queue overflow or disconnection.
+     */
+    public long getDroppedCount() {
+        synchronized (this.lock) {
+            return this.droppedCount;
+        }
+    }
+
+    /**
+     * Gets the number of messages delivered to the listener.
+     */
+    public long getDeliveredCount() {
+        return this.deliveredCount.get();
+    }
+
+    /**
+     * Gets the number of times the listener has thrown a RuntimeException.
+     */
+    public long getListenerFailureCount() {
+        return this.listenerFailureCount.get();
+    }
+
+    /**
+     * Indicates whether the channel has been disconnected by queue overflow or because
+     * the executor rejected a delivery task.
+     */
+    public boolean isDisconnected() {
+        synchronized (this.lock) {
+            return this.failure != null;
+        }
+    }
+
+    /**
+     * Stops delivery and discards any pending messages. A delivery task that is
+     * running completes delivery of its current batch.
+     * Subsequent send calls throw an {@link IOException}.
+     */
+    public void stop() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("stop"));
+        }
+
+        synchronized (this.lock) {
+            if (this.isRunning) {
+                this.isRunning = false;
+                clear();
+            }
+        }
+    }
+
+    /**
+     * Stops delivery and discards any pending messages. The executor is not shut down.
+     */
+    @Override
+    public void close() {
+        stop();
+    }
+
+    /**
+     * Delivers a message to the listener or places it in the queue. This method does
+     * not block unless the overflow policy is {@link OverflowPolicy#BLOCK BLOCK}, in
+     * which case it waits up to the specified time for room in the queue and in the
+     * memory budget.
+     * 
+     * @throws ChannelClosedException
+     *             The channel has been stopped or disconnected.
+     */
+    @Override
+    public void send(final MessageType message, final int milliseconds) throws IOException,
+                                                                       InterruptedIOException,
+                                                                       InterruptedException {
+        if (this.executor == null) {
+            if (!this.isRunning) {
+                throw new ChannelClosedException("output channel stopped");
+            }
+            if (this.listener != null) {
+                deliver(message);
+            }
+            else {
+                deliver(Collections.singletonList(message));
+            }
+        }
+        else if (this.overflowPolicy == OverflowPolicy.BLOCK) {
+            offerAndWait(message, milliseconds);
+        }
+        else {
+            synchronized (this.lock) {
+                checkState();
+                offer(message);
+                checkState();
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Delivers each message in the list to the listener or places the messages in the
+     * queue. The queue lock is acquired once for the entire batch unless the overflow
+     * policy is {@link OverflowPolicy#BLOCK BLOCK}, in which case each message is sent
+     * as described in {@link #send(Object, int)}.
+     * 
+     * @throws ChannelClosedException
+     *             The channel has been stopped or disconnected.
+     */
+    @Override
+    public void send(final List<MessageType> messages, final int milliseconds) throws IOException,
+                                                                              InterruptedIOException,
+                                                                              InterruptedException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (this.executor == null) {
+            if (!this.isRunning) {
+                throw new ChannelClosedException("output channel stopped");
+            }
+            deliver(messages);
+        }
+        else if (this.overflowPolicy == OverflowPolicy.BLOCK) {
+            for (MessageType message : messages) {
+                offerAndWait(message, milliseconds);
+            }
+        }
+        else {
+            synchronized (this.lock) {
+                checkState();
+                for (MessageType message : messages) {
+                    offer(message);
+                    checkState();
+                }
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * Removes a batch of messages from the queue and delivers them to the listener.
+     * Executed by the delivery task.
+     */
+    @SuppressWarnings("unchecked")
+    private void deliverQueuedMessages() {
+
+        ArrayList<MessageType> batch = this.batch;
+
+        synchronized (this.lock) {
+            int batchSize = Math.min(this.count, this.maximumBatchSize);
+            int capacity = this.queue.length;
+            for (int i = 0; i < batchSize; i++) {
+                batch.add((MessageType) this.queue[this.head]);
+                this.queue[this.head] = null;
+                if (this.batchSizes != null) {
+                    this.batchSizes[i] = this.sizes[this.head];
+                }
+                this.head = (this.head + 1) % capacity;
+            }
+            this.count -= batchSize;
+            if (this.waitingSenderCount > 0) {
+                this.lock.notifyAll();
+            }
+        }
+
+        try {
+            if (!batch.isEmpty()) {
+                deliver(batch);
+            }
+        }
+        finally {
+            for (int i = 0; i < batch.size(); i++) {
+                release(batch.get(i));
+                if (this.batchSizes != null) {
+                    releaseMemory(batch.get(i), this.batchSizes[i]);
+                }
+            }
+            batch.clear();
+            synchronized (this.lock) {
+                this.isScheduled = false;
+                // Resubmit the task if messages remain so that other channels sharing the
+                // executor get a turn
+                schedule();
+            }
+        }
+    }
+
+    /**
+     * @param message
+     */
+    private void deliver(final MessageType message) {
+        try {
+            this.listener.onMessage(message);
+        }
+        catch (RuntimeException e) {
+            listenerFailed(e);
+        }
+        this.deliveredCount.incrementAndGet();
+    }
+
+    /**
+     * @param messages
+     */
+    private void deliver(final List<MessageType> messages) {
+        if (this.batchListener != null) {
+            try {
+                this.batchListener.onMessages(messages);
+            }
+            catch (RuntimeException e) {
+                listenerFailed(e);
+            }
+            this.deliveredCount.addAndGet(messages.size());
+        }
+        else {
+            for (MessageType message : messages) {
+                deliver(message);
+            }
+        }
+    }
+
+    /**
+     * @param e
+     */
+    private void listenerFailed(final RuntimeException e) {
+        this.listenerFailureCount.incrementAndGet();
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(this.log.msg("listener threw exception - " + e.getClass().getName() + ": " + e.getMessage()));
+        }
+    }
+
+    /**
+     * Appends a message to the queue, applying the overflow policy if the queue is full
+     * or the memory budget is exhausted.
+     * Must be called while holding the queue lock.
+     */
+    private void offer(final MessageType message) {
+        int size = sizeOf(message);
+        if (size > 0 && !this.memoryAccount.tryAcquire(message, size)) {
+            this.overflowCount++;
+            if (!reclaim(message, size)) {
+                return;
+            }
+        }
+        if (this.count == this.queue.length) {
+            this.overflowCount++;
+            switch (this.overflowPolicy) {
+                case DROP_OLDEST:
+                    discardOldest();
+                    break;
+                case DISCONNECT:
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(this.log.msg("disconnecting slow listener"));
+                    }
+                    this.droppedCount++;
+                    releaseMemory(message, size);
+                    disconnect(new IOException("queue overflow - listener disconnected"));
+                    return;
+                default:
+                    this.droppedCount++;
+                    releaseMemory(message, size);
+                    return;
+            }
+        }
+        append(message, size);
+    }
+
+    /**
+     * Appends a message to the queue, waiting up to the specified time for room in the
+     * queue and in the memory budget. The message is discarded if no room becomes
+     * available in time.
+     */
+    private void offerAndWait(final MessageType message, final int milliseconds) throws IOException,
+                                                                                 InterruptedException {
+        long deadline = System.currentTimeMillis() + milliseconds;
+        int size = sizeOf(message);
+        if (size > 0 && !this.memoryAccount.acquire(message, size, milliseconds)) {
+            synchronized (this.lock) {
+                checkState();
+                this.overflowCount++;
+                this.droppedCount++;
+            }
+            return;
+        }
+        synchronized (this.lock) {
+            try {
+                checkState();
+                while (this.count == this.queue.length) {
+                    long timeout = deadline - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        this.overflowCount++;
+                        this.droppedCount++;
+                        releaseMemory(message, size);
+                        return;
+                    }
+                    this.waitingSenderCount++;
+                    try {
+                        this.lock.wait(timeout);
+                    }
+                    finally {
+                        this.waitingSenderCount--;
+                    }
+                    checkState();
+                }
+            }
+            catch (IOException e) {
+                releaseMemory(message, size);
+                throw e;
+            }
+            catch (InterruptedException e) {
+                releaseMemory(message, size);
+                throw e;
+            }
+            append(message, size);
+            schedule();
+        }
+    }
+
+    /**
+     * Applies the overflow policy when the memory budget cannot supply the memory
+     * required by a new message.
+     * Must be called while holding the queue lock.
+     * 
+     * @return <code>true</code> if the memory was obtained by discarding older messages.
+     */
+    private boolean reclaim(final Object message, final int size) {
+        switch (this.overflowPolicy) {
+            case DROP_OLDEST:
+                MemoryBudget budget = this.memoryAccount.getBudget();
+                while (this.count > 0) {
+                    discardOldest();
+                    if (budget.getAvailable() >= size && this.memoryAccount.tryAcquire(message, size)) {
+                        return true;
+                    }
+                }
+                break;
+            case DISCONNECT:
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("disconnecting listener - memory budget exhausted"));
+                }
+                this.droppedCount++;
+                disconnect(new IOException("memory budget exhausted - listener disconnected"));
+                return false;
+            default:
+                break;
+        }
+        this.droppedCount++;
+        return false;
+    }
+
+    /**
+     * Places a message at the tail of the queue. The caller must ensure that the queue
+     * is not full.
+     * Must be called while holding the queue lock.
+     */
+    private void append(final MessageType message, final int size) {
+        int index = (this.head + this.count) % this.queue.length;
+        retain(message);
+        this.queue[index] = message;
+        if (this.sizes != null) {
+            this.sizes[index] = size;
+        }
+        this.count++;
+    }
+
+    /**
+     * Discards the message at the head of the queue.
+     * Must be called while holding the queue lock.
+     */
+    private void discardOldest() {
+        release(this.queue[this.head]);
+        if (this.sizes != null) {
+            releaseMemory(this.queue[this.head], this.sizes[this.head]);
+        }
+        this.queue[this.head] = null;
+        this.head = (this.head + 1) % this.queue.length;
+        this.count--;
+        this.droppedCount++;
+    }
+
+    /**
+     * Submits a delivery task to the executor if there are messages in the queue and
+     * no task has been submitted.
+     * Must be called while holding the queue lock.
+     */
+    private void schedule() {
+        if (!this.isScheduled && this.isRunning && this.count > 0) {
+            this.isScheduled = true;
+            try {
+                this.executor.execute(this.deliveryTask);
+            }
+            catch (RejectedExecutionException e) {
+                this.isScheduled = false;
+                disconnect(new IOException("delivery task rejected by executor", e));
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the queue lock.
+     */
+    private void checkState() throws IOException {
+        if (this.failure != null) {
+            throw new ChannelClosedException("output channel disconnected - " + this.failure.getMessage(), this.failure);
+        }
+        if (!this.isRunning) {
+            throw new ChannelClosedException("output channel stopped");
+        }
+    }
+
+    /**
+     * Discards pending messages, records the cause of the disconnection and stops
+     * delivery.
+     * Must be called while holding the queue lock.
+     */
+    private void disconnect(final IOException cause) {
+        this.failure = cause;
+        this.droppedCount += this.count;
+        this.isRunning = false;
+        clear();
+    }
+
+    /**
+     * Must be called while holding the queue lock.
+     */
+    private void clear() {
+        if (this.queue != null) {
+            for (int i = 0; i < this.count; i++) {
+                int index = (this.head + i) % this.queue.length;
+                release(this.queue[index]);
+                if (this.sizes != null) {
+                    releaseMemory(this.queue[index], this.sizes[index]);
+                }
+                this.queue[index] = null;
+            }
+        }
+        this.head = 0;
+        this.count = 0;
+        if (this.waitingSenderCount > 0) {
+            // Wake senders blocked on a full queue so they see the channel has stopped
+            this.lock.notifyAll();
+        }
+    }
+
+    /**
+     * Gets the number of bytes charged to the memory account for a message.
+     */
+    private int sizeOf(final Object message) {
+        return this.memoryAccount != null ? MemoryBudget.sizeOf(message) : 0;
+    }
+
+    /**
+     * Returns the memory charged for a message that has been delivered or discarded.
+     */
+    private void releaseMemory(final Object message, final int size) {
+        if (size > 0) {
+            this.memoryAccount.release(message, size);
+        }
+    }
+
+    /**
+     * Adds a reference to a message that is placed in the queue.
+     */
+    private static void retain(final Object message) {
+        if (message instanceof ReferenceCountedMessage) {
+            ((ReferenceCountedMessage) message).retain();
+        }
+    }
+
+    /**
+     * Releases the reference held by the queue on a message that has been delivered
+     * or discarded.
+     */
+    private static void release(final Object message) {
+        if (message instanceof ReferenceCountedMessage) {
+            ((ReferenceCountedMessage) message).release();
+        }
+    }
+
+}
@@ -0,0 +1,47 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MessageListener.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Interface exposed by objects that receive messages pushed to them by a message
+ * source, as an alternative to retrieving messages by calling
+ * {@link MessageInput#receive(int)}.
+ * See {@link ListenerOutputChannel}.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface MessageListener<MessageType> {
+
+    /**
+     * Called once for each message delivered to the listener.
+     * Any RuntimeException thrown by this method is logged and counted, and does not
+     * prevent delivery of subsequent messages.
+     * 
+     * @param message
+     *            The message.
+     */
+    void onMessage(MessageType message);
+
+}
@@ -27,6 +27,12 @@ import java.io.IOException;
 
 /**
  * Interface exposed by objects that transform or modify messages.
+ * <p>
+ * A transform that produces a {@link ReferenceCountedMessage} whose content shares
+ * the pooled resources of a reference-counted input message must give the new message
+ * its own reference, for example by calling {@link org.js4ms.io.net.UdpDatagram#attach}.
+ * Output that shares pooled resources but does not track references, such as a view
+ * of a datagram payload, is only valid until the input message is released.
  * 
  * @param <InputMessageType>
  *            The input or upstream message type.
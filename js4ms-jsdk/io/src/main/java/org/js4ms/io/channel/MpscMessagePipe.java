@@ -0,0 +1,152 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MpscMessagePipe.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.js4ms.io.buffer.MemoryBudget;
+
+/**
+ * A multiple-producer, single-consumer ring buffer message pipe.
+ * Any number of threads may send messages to the pipe but at most one thread may
+ * receive messages from it. Senders claim a slot by atomically advancing the tail
+ * sequence number and then store the message in that slot. The receiver waits for a
+ * claimed slot to be filled before it advances.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class MpscMessagePipe<MessageType>
+                extends RingMessagePipe<MessageType> {
+
+    /*-- Member Variables ----------------------------------------------------*/
+
+    private final AtomicReferenceArray<MessageType> buffer;
+
+    /**
+     * Sequence number of the next slot to be claimed by a sender.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Sequence number of the next message to be received.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /*-- Member Functions ----------------------------------------------------*/
+
+    /**
+     * Constructs a pipe that uses the default wait strategy.
+     * 
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     */
+    public MpscMessagePipe(final int capacity) {
+        this(capacity, WaitStrategy.DEFAULT);
+    }
+
+    /**
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     * @param waitStrategy
+     *            Describes how senders and the receiver wait.
+     */
+    public MpscMessagePipe(final int capacity, final WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, null);
+    }
+
+    /**
+     * Constructs a pipe that uses the default wait strategy and charges the memory held
+     * by messages in the pipe to a memory budget account.
+     * 
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     * @param memoryAccount
+     *            The account charged for messages held in the pipe, or
+     *            <code>null</code> if memory use is not accounted.
+     */
+    public MpscMessagePipe(final int capacity, final MemoryBudget.Account memoryAccount) {
+        this(capacity, WaitStrategy.DEFAULT, memoryAccount);
+    }
+
+    /**
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     * @param waitStrategy
+     *            Describes how senders and the receiver wait.
+     * @param memoryAccount
+     *            The account charged for messages held in the pipe, or
+     *            <code>null</code> if memory use is not accounted.
+     */
+    public MpscMessagePipe(final int capacity,
+                           final WaitStrategy waitStrategy,
+                           final MemoryBudget.Account memoryAccount) {
+        super(capacity, waitStrategy, memoryAccount);
+        this.buffer = new AtomicReferenceArray<MessageType>(this.capacity);
+    }
+
+    @Override
+    public int size() {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    @Override
+    protected boolean enqueue(final MessageType message) {
+        long tail;
+        do {
+            tail = this.tail.get();
+            if (tail - this.head.get() >= this.capacity) {
+                return false;
+            }
+        }
+        while (!this.tail.compareAndSet(tail, tail + 1));
+        // Volatile write publishes the message and orders it before the check for a
+        // parked receiver
+        this.buffer.set((int) tail & this.mask, message);
+        return true;
+    }
+
+    @Override
+    protected MessageType dequeue() {
+        long head = this.head.get();
+        int index = (int) head & this.mask;
+        MessageType message = this.buffer.get(index);
+        if (message == null) {
+            if (head == this.tail.get()) {
+                return null;
+            }
+            // A sender has claimed the slot but has not stored its message yet
+            do {
+                Thread.yield();
+                message = this.buffer.get(index);
+            }
+            while (message == null);
+        }
+        this.buffer.lazySet(index, null);
+        this.head.lazySet(head + 1);
+        return message;
+    }
+
+}
@@ -25,10 +25,13 @@ package org.js4ms.io.channel;
 
 import java.io.IOException;
 import java.io.InterruptedIOException;
-import java.util.LinkedHashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 import org.js4ms.common.exception.BoundException;
 import org.js4ms.io.MultiIOException;
+import org.js4ms.io.buffer.MemoryBudget;
 
 
 
@@ -39,20 +42,41 @@ import org.js4ms.io.MultiIOException;
  * it will ignore any attempt to add the same output channel more than once.
  * A thread should not attempt to add or remove channels while executing in the
  * {@link #send(Object, int)} method as this may result in an exception.
+ * <p>
+ * A Tee constructed with a queue capacity operates in fan-out mode - each attached
+ * channel is given its own {@link QueuedOutputChannel}, so a slow channel only fills
+ * its own queue and cannot delay delivery to the other channels. The queue attached
+ * to a channel may be retrieved using {@link #getQueue(OutputChannel)} to read its
+ * overflow counters. The queues may charge the memory held by queued messages to a
+ * {@link MemoryBudget.Account}.
  * 
  * @param <MessageType>
  * @author Greg Bumgardner (gbumgard)
  */
 public final class OutputChannelTee<MessageType>
-                implements OutputChannel<MessageType> {
+                implements OutputChannel<MessageType>, BatchMessageOutput<MessageType> {
 
     /*-- Member Variables ----------------------------------------------------*/
 
     /**
-     * Collection of output channels that will receive messages sent to this output
-     * channel.
+     * Output channels that will receive messages sent to this output channel.
+     * Each attached channel is mapped to the channel that actually receives messages -
+     * either the attached channel itself or the queue created for it in fan-out mode.
      */
-    private final LinkedHashSet<OutputChannel<MessageType>> channels = new LinkedHashSet<OutputChannel<MessageType>>();
+    private final LinkedHashMap<OutputChannel<MessageType>, OutputChannel<MessageType>> channels = new LinkedHashMap<OutputChannel<MessageType>, OutputChannel<MessageType>>();
+
+    /**
+     * Capacity of the queue created for each attached channel, or zero if messages are
+     * sent directly to the attached channels.
+     */
+    private final int queueCapacity;
+
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * The account charged by the queues created in fan-out mode, or <code>null</code>.
+     */
+    private final MemoryBudget.Account memoryAccount;
 
     /**
      * Monitor object used for thread synchronization.
@@ -66,6 +90,9 @@ public final class OutputChannelTee<MessageType>
      * Use {@link #add(OutputChannel)} to attach channels to the Tee.
      */
     public OutputChannelTee() {
+        this.queueCapacity = 0;
+        this.overflowPolicy = null;
+        this.memoryAccount = null;
     }
 
     /**
@@ -75,9 +102,51 @@ public final class OutputChannelTee<MessageType>
      */
     @SafeVarargs
 	public OutputChannelTee(final OutputChannel<MessageType>... channels) {
+        this.queueCapacity = 0;
+        this.overflowPolicy = null;
+        this.memoryAccount = null;
         for (OutputChannel<MessageType> channel : channels) {
-            this.channels.add(channel);
+            this.channels.put(channel, channel);
+        }
+    }
+
+    /**
+     * Constructs a fan-out Tee with no output channels.
+     * Each channel attached using {@link #add(OutputChannel)} receives messages through
+     * its own {@link QueuedOutputChannel}.
+     * 
+     * @param queueCapacity
+     *            The maximum number of messages queued for each attached channel.
+     * @param overflowPolicy
+     *            The action taken when a message is sent to a channel whose queue is
+     *            full.
+     */
+    public OutputChannelTee(final int queueCapacity, final OverflowPolicy overflowPolicy) {
+        this(queueCapacity, overflowPolicy, null);
+    }
+
+    /**
+     * Constructs a fan-out Tee with no output channels whose queues charge the memory
+     * held by queued messages to a memory budget account.
+     * 
+     * @param queueCapacity
+     *            The maximum number of messages queued for each attached channel.
+     * @param overflowPolicy
+     *            The action taken when a message is sent to a channel whose queue is
+     *            full or when the memory budget is exhausted.
+     * @param memoryAccount
+     *            The account charged for queued messages, or <code>null</code> if
+     *            memory use is not accounted.
+     */
+    public OutputChannelTee(final int queueCapacity,
+                            final OverflowPolicy overflowPolicy,
+                            final MemoryBudget.Account memoryAccount) {
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be greater than zero");
         }
+        this.queueCapacity = queueCapacity;
+        this.overflowPolicy = overflowPolicy;
+        this.memoryAccount = memoryAccount;
     }
 
     /**
@@ -87,18 +156,48 @@ public final class OutputChannelTee<MessageType>
      */
     public final void add(OutputChannel<MessageType> channel) {
         synchronized (this.lock) {
-            this.channels.add(channel);
+            if (!this.channels.containsKey(channel)) {
+                this.channels.put(channel,
+                                  this.queueCapacity == 0
+                                                  ? channel
+                                                  : new QueuedOutputChannel<MessageType>(channel,
+                                                                                         this.queueCapacity,
+                                                                                         this.overflowPolicy,
+                                                                                         this.memoryAccount));
+            }
         }
     }
 
     /**
      * Removes the specified channel from the Tee.
+     * In fan-out mode any messages still queued for the channel are discarded.
      * 
      * @param channel
      */
     public final void remove(OutputChannel<MessageType> channel) {
         synchronized (this.lock) {
-            this.channels.remove(channel);
+            OutputChannel<MessageType> target = this.channels.remove(channel);
+            if (target instanceof QueuedOutputChannel && target != channel) {
+                ((QueuedOutputChannel<MessageType>) target).stop();
+            }
+        }
+    }
+
+    /**
+     * Returns the queue created for an attached channel in fan-out mode.
+     * 
+     * @param channel
+     *            A channel attached to the Tee.
+     * @return The queue for the channel or <code>null</code> if the channel is not
+     *         attached or the Tee is not in fan-out mode.
+     */
+    public final QueuedOutputChannel<MessageType> getQueue(OutputChannel<MessageType> channel) {
+        synchronized (this.lock) {
+            OutputChannel<MessageType> target = this.channels.get(channel);
+            if (target instanceof QueuedOutputChannel && target != channel) {
+                return (QueuedOutputChannel<MessageType>) target;
+            }
+            return null;
         }
     }
 
@@ -119,12 +218,12 @@ public final class OutputChannelTee<MessageType>
     public final void close() throws IOException, InterruptedException {
         synchronized (this.lock) {
             MultiIOException me = new MultiIOException();
-            for (OutputChannel<MessageType> channel : this.channels) {
+            for (Map.Entry<OutputChannel<MessageType>, OutputChannel<MessageType>> entry : this.channels.entrySet()) {
                 try {
-                    channel.close();
+                    entry.getValue().close();
                 }
                 catch (IOException e) {
-                    me.add(new BoundException(channel, e));
+                    me.add(new BoundException(entry.getKey(), e));
                 }
             }
             // Throws the multi-exception if an IOException was stored in it
@@ -139,12 +238,12 @@ public final class OutputChannelTee<MessageType>
                                                                              InterruptedException {
         synchronized (this.lock) {
             MultiIOException me = new MultiIOException();
-            for (OutputChannel<MessageType> channel : this.channels) {
+            for (Map.Entry<OutputChannel<MessageType>, OutputChannel<MessageType>> entry : this.channels.entrySet()) {
                 try {
-                    channel.send(message, milliseconds);
+                    entry.getValue().send(message, milliseconds);
                 }
                 catch (IOException e) {
-                    me.add(new BoundException(channel, e));
+                    me.add(new BoundException(entry.getKey(), e));
                 }
             }
             // Throws the multi-exception if an IOException was stored in it
@@ -153,4 +252,37 @@ public final class OutputChannelTee<MessageType>
 
     }
 
+    /**
+     * Forwards each message in the list to every attached output channel.
+     * The Tee lock is acquired once for the entire batch. A channel that throws an
+     * exception does not receive the remaining messages in the batch.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public final void send(final List<MessageType> messages, final int milliseconds) throws IOException,
+                                                                                   InterruptedIOException,
+                                                                                   InterruptedException {
+        synchronized (this.lock) {
+            MultiIOException me = new MultiIOException();
+            for (Map.Entry<OutputChannel<MessageType>, OutputChannel<MessageType>> entry : this.channels.entrySet()) {
+                OutputChannel<MessageType> channel = entry.getValue();
+                try {
+                    if (channel instanceof BatchMessageOutput) {
+                        ((BatchMessageOutput<MessageType>) channel).send(messages, milliseconds);
+                    }
+                    else {
+                        for (MessageType message : messages) {
+                            channel.send(message, milliseconds);
+                        }
+                    }
+                }
+                catch (IOException e) {
+                    me.add(new BoundException(entry.getKey(), e));
+                }
+            }
+            // Throws the multi-exception if an IOException was stored in it
+            me.rethrow();
+        }
+    }
+
 }
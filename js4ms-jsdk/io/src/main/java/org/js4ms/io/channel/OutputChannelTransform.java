@@ -59,9 +59,23 @@ public final class OutputChannelTransform<OuterMessageType, InnerMessageType>
         this.transform = transform;
     }
 
+    /**
+     * Transforms the message and sends the result to the inner channel.
+     * If the transform produces a new {@link ReferenceCountedMessage}, the reference
+     * held by that message is released once the send call returns, as the inner channel
+     * will have retained the message if it must hold it beyond the send call.
+     */
     @Override
     public void send(final OuterMessageType message, final int milliseconds) throws IOException, InterruptedIOException, InterruptedException {
-        this.innerChannel.send(this.transform.transform(message), milliseconds);
+        InnerMessageType transformed = this.transform.transform(message);
+        try {
+            this.innerChannel.send(transformed, milliseconds);
+        }
+        finally {
+            if (transformed != message && transformed instanceof ReferenceCountedMessage) {
+                ((ReferenceCountedMessage) transformed).release();
+            }
+        }
     }
 
 }
@@ -0,0 +1,60 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * OverflowPolicy.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Enumerates the actions a {@link QueuedOutputChannel} may take when a message is sent
+ * while its queue is full, or while the {@link org.js4ms.io.buffer.MemoryBudget
+ * MemoryBudget} it draws from is exhausted.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discard the message being sent and retain the messages already in the queue.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the oldest message in the queue to make room for the message being sent.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Discard all queued messages and fail the current and all subsequent send calls
+     * with an {@link java.io.IOException}, so the sender stops delivering messages to the
+     * slow consumer.
+     */
+    DISCONNECT,
+
+    /**
+     * Wait for room in the queue or the memory budget for up to the time allowed by the
+     * send call, and discard the message being sent if none becomes available. This
+     * applies back-pressure to the sender, so it should only be used where the sending
+     * thread does not also deliver messages to other consumers.
+     */
+    BLOCK
+
+}
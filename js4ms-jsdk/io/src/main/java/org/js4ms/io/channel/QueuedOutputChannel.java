@@ -0,0 +1,706 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * QueuedOutputChannel.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+import org.js4ms.io.buffer.MemoryBudget;
+
+
+
+/**
+ * An output channel that decouples a sender from a downstream output channel using a
+ * bounded ring buffer and a dedicated drain thread.
+ * The {@link #send(Object, int)} method places the message in the queue and returns.
+ * The drain thread forwards queued messages to the downstream channel in the order
+ * they were sent. When the queue is full the channel applies its
+ * {@link OverflowPolicy} - the send call only blocks if that policy is
+ * {@link OverflowPolicy#BLOCK BLOCK}.
+ * <p>
+ * A channel may be constructed with a {@link MemoryBudget.Account} that is charged
+ * with the size of each queued message (see {@link MemoryBudget#sizeOf(Object)}) until
+ * the message has been forwarded or discarded. If the budget is exhausted the channel
+ * applies its overflow policy as if the queue were full.
+ * <p>
+ * If the downstream channel throws an exception the queue is disconnected - pending
+ * messages are discarded and all subsequent send calls throw an {@link IOException}
+ * that carries the original exception as its cause.
+ * <p>
+ * Messages are held after the send call returns. The channel calls
+ * {@link ReferenceCountedMessage#retain()} on each {@link ReferenceCountedMessage} it
+ * places in the queue and releases the message once it has been forwarded or
+ * discarded, so a sender may release its own reference as soon as the send call
+ * returns. A sender must not release or reuse the content of any other
+ * {@link ReleasableMessage} sent to this channel.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class QueuedOutputChannel<MessageType>
+                implements OutputChannel<MessageType>, BatchMessageOutput<MessageType>, Runnable {
+
+    /*-- Static Variables ----------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(QueuedOutputChannel.class.getName());
+
+    /*-- Member Variables ----------------------------------------------------*/
+
+    /**
+     * Helper object used to construct log messages.
+     */
+    private final Log log = new Log(this);
+
+    /**
+     * Monitor object used for thread synchronization.
+     */
+    private final Object lock = new Object();
+
+    private final OutputChannel<MessageType> channel;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final Object[] queue;
+
+    /**
+     * The account charged for the memory held by queued messages, or <code>null</code>.
+     */
+    private final MemoryBudget.Account memoryAccount;
+
+    /**
+     * The number of bytes charged for each queued message. Only used if the channel
+     * has a memory account.
+     */
+    private final int[] sizes;
+
+    private int head = 0;
+
+    private int count = 0;
+
+    private Thread thread = null;
+
+    private boolean isRunning = true;
+
+    /**
+     * Indicates whether the drain thread is waiting for a message.
+     */
+    private boolean isWaiting = false;
+
+    /**
+     * The number of senders waiting for room in the queue.
+     */
+    private int waitingSenderCount = 0;
+
+    private IOException failure = null;
+
+    private long overflowCount = 0;
+
+    private long droppedCount = 0;
+
+    private volatile long deliveredCount = 0;
+
+    /*-- Member Functions ----------------------------------------------------*/
+
+    /**
+     * Constructs a queued output channel that forwards messages to the specified channel.
+     * The drain thread is started when the first message is sent.
+     * 
+     * @param channel
+     *            The downstream output channel.
+     * @param capacity
+     *            The maximum number of messages held in the queue.
+     * @param overflowPolicy
+     *            The action taken when a message is sent while the queue is full.
+     */
+    public QueuedOutputChannel(final OutputChannel<MessageType> channel,
+                               final int capacity,
+                               final OverflowPolicy overflowPolicy) {
+        this(channel, capacity, overflowPolicy, null);
+    }
+
+    /**
+     * Constructs a queued output channel that forwards messages to the specified channel
+     * and charges the memory held by queued messages to a memory budget account.
+     * The drain thread is started when the first message is sent.
+     * 
+     * @param channel
+     *            The downstream output channel.
+     * @param capacity
+     *            The maximum number of messages held in the queue.
+     * @param overflowPolicy
+     *            The action taken when a message is sent while the queue is full or
+     *            the memory budget is exhausted.
+     * @param memoryAccount
+     *            The account charged for queued messages, or <code>null</code> if
+     *            memory use is not accounted.
+     */
+    public QueuedOutputChannel(final OutputChannel<MessageType> channel,
+                               final int capacity,
+                               final OverflowPolicy overflowPolicy,
+                               final MemoryBudget.Account memoryAccount) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("QueuedOutputChannel", channel, capacity, overflowPolicy, memoryAccount));
+        }
+
+        if (capacity < 1) {
+            throw new IllegalArgumentException("queue capacity must be greater than zero");
+        }
+
+        this.channel = channel;
+        this.queue = new Object[capacity];
+        this.overflowPolicy = overflowPolicy;
+        this.memoryAccount = memoryAccount;
+        this.sizes = memoryAccount != null ? new int[capacity] : null;
+    }
+
+    /**
+     * Gets the downstream output channel.
+     */
+    public OutputChannel<MessageType> getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Gets the overflow policy assigned to this channel.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /**
+     * Gets the account charged for the memory held by queued messages.
+     * 
+     * @return The account or <code>null</code> if memory use is not accounted.
+     */
+    public MemoryBudget.Account getMemoryAccount() {
+        return this.memoryAccount;
+    }
+
+    /**
+     * Gets the maximum number of messages held in the queue.
+     */
+    public int getCapacity() {
+        return this.queue.length;
+    }
+
+    /**
+     * Gets the number of messages waiting to be forwarded to the downstream channel.
+     */
+    public int getPendingCount() {
+        synchronized (this.lock) {
+            return this.count;
+        }
+    }
+
+    /**
+     * Gets the number of messages sent while the queue was full.
+     */
+    public long getOverflowCount() {
+        synchronized (this.lock) {
+            return this.overflowCount;
+        }
+    }
+
+    /**
+     * Gets the number of messages discarded because of queue overflow, disconnection or
+     * a failed or interrupted delivery, or because the channel was stopped while they
+     * were pending.
+     */
+    public long getDroppedCount() {
+        synchronized (this.lock) {
+            return this.droppedCount;
+        }
+    }
+
+    /**
+     * Gets the number of messages forwarded to the downstream channel.
+     */
+    public long getDeliveredCount() {
+        return this.deliveredCount;
+    }
+
+    /**
+     * Indicates whether the channel has been disconnected by queue overflow or by a
+     * downstream exception.
+     */
+    public boolean isDisconnected() {
+        synchronized (this.lock) {
+            return this.failure != null;
+        }
+    }
+
+    /**
+     * Stops the drain thread and discards any pending messages.
+     * The downstream channel is not closed. Subsequent send calls throw an
+     * {@link IOException}.
+     */
+    public void stop() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("stop"));
+        }
+
+        synchronized (this.lock) {
+            if (this.isRunning) {
+                this.isRunning = false;
+                clear();
+                if (this.thread != null) {
+                    this.thread.interrupt();
+                    this.thread = null;
+                }
+                this.lock.notifyAll();
+            }
+        }
+    }
+
+    /**
+     * Stops the drain thread, discards any pending messages and closes the downstream
+     * channel.
+     */
+    @Override
+    public void close() throws IOException, InterruptedException {
+        stop();
+        this.channel.close();
+    }
+
+    /**
+     * Places a message in the queue. This method does not block unless the overflow
+     * policy is {@link OverflowPolicy#BLOCK BLOCK}, in which case it waits up to the
+     * specified time for room in the queue and in the memory budget.
+     * 
+     * @throws ChannelClosedException
+     *             The channel has been stopped or disconnected.
+     */
+    @Override
+    public void send(final MessageType message, final int milliseconds) throws IOException,
+                                                                       InterruptedIOException,
+                                                                       InterruptedException {
+        if (this.overflowPolicy == OverflowPolicy.BLOCK) {
+            offerAndWait(message, milliseconds);
+            return;
+        }
+        synchronized (this.lock) {
+            checkState();
+            offer(message);
+            checkState();
+            start();
+        }
+    }
+
+    /**
+     * Places each message in the list in the queue. The queue lock is acquired once for
+     * the entire batch unless the overflow policy is {@link OverflowPolicy#BLOCK BLOCK},
+     * in which case each message is sent as described in {@link #send(Object, int)}.
+     * 
+     * @throws ChannelClosedException
+     *             The channel has been stopped or disconnected.
+     */
+    @Override
+    public void send(final List<MessageType> messages, final int milliseconds) throws IOException,
+                                                                              InterruptedIOException,
+                                                                              InterruptedException {
+        if (this.overflowPolicy == OverflowPolicy.BLOCK) {
+            for (MessageType message : messages) {
+                offerAndWait(message, milliseconds);
+            }
+            return;
+        }
+        synchronized (this.lock) {
+            checkState();
+            for (MessageType message : messages) {
+                offer(message);
+                checkState();
+            }
+            start();
+        }
+    }
+
+    /**
+     * Forwards queued messages to the downstream channel. Executed by the drain thread.
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public void run() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("run"));
+        }
+
+        // Messages are removed from the queue in batches so the queue lock is acquired
+        // once per batch rather than once per message.
+        Object[] batch = new Object[this.queue.length];
+        int[] batchSizes = this.sizes != null ? new int[this.queue.length] : null;
+
+        drain:
+        while (true) {
+            int batchSize;
+            synchronized (this.lock) {
+                try {
+                    while (this.isRunning && this.count == 0) {
+                        this.isWaiting = true;
+                        this.lock.wait();
+                    }
+                }
+                catch (InterruptedException e) {
+                    break;
+                }
+                finally {
+                    this.isWaiting = false;
+                }
+                if (!this.isRunning) {
+                    break;
+                }
+                batchSize = this.count;
+                int capacity = this.queue.length;
+                for (int i = 0; i < batchSize; i++) {
+                    batch[i] = this.queue[this.head];
+                    this.queue[this.head] = null;
+                    if (batchSizes != null) {
+                        batchSizes[i] = this.sizes[this.head];
+                    }
+                    this.head = (this.head + 1) % capacity;
+                }
+                this.count = 0;
+                if (this.waitingSenderCount > 0) {
+                    this.lock.notifyAll();
+                }
+            }
+
+            for (int i = 0; i < batchSize; i++) {
+                MessageType message = (MessageType) batch[i];
+                batch[i] = null;
+                try {
+                    this.channel.send(message, Integer.MAX_VALUE);
+                    this.deliveredCount++;
+                }
+                catch (IOException e) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(this.log.msg("disconnecting queue due to exception - " +
+                                                 e.getClass().getName() + ": " + e.getMessage()));
+                    }
+                    synchronized (this.lock) {
+                        // The failed message and the rest of the batch are not delivered
+                        this.droppedCount += batchSize - i;
+                        disconnect(e);
+                    }
+                    discard(batch, batchSizes, i + 1, batchSize);
+                    break drain;
+                }
+                catch (InterruptedException e) {
+                    synchronized (this.lock) {
+                        // The interrupted message and the rest of the batch are not delivered
+                        this.droppedCount += batchSize - i;
+                    }
+                    discard(batch, batchSizes, i + 1, batchSize);
+                    break drain;
+                }
+                finally {
+                    release(message);
+                    if (batchSizes != null) {
+                        releaseMemory(message, batchSizes[i]);
+                    }
+                }
+            }
+        }
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.msg("drain thread stopped"));
+        }
+    }
+
+    /**
+     * Appends a message to the queue, applying the overflow policy if the queue is full
+     * or the memory budget is exhausted.
+     * Must be called while holding the queue lock.
+     */
+    private void offer(final MessageType message) {
+        int size = sizeOf(message);
+        if (size > 0 && !this.memoryAccount.tryAcquire(message, size)) {
+            this.overflowCount++;
+            if (!reclaim(message, size)) {
+                return;
+            }
+        }
+        int capacity = this.queue.length;
+        if (this.count == capacity) {
+            this.overflowCount++;
+            switch (this.overflowPolicy) {
+                case DROP_OLDEST:
+                    discardOldest();
+                    break;
+                case DISCONNECT:
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(this.log.msg("disconnecting slow consumer " + this.channel));
+                    }
+                    this.droppedCount++;
+                    releaseMemory(message, size);
+                    disconnect(new IOException("queue overflow - consumer disconnected"));
+                    return;
+                default:
+                    this.droppedCount++;
+                    releaseMemory(message, size);
+                    return;
+            }
+        }
+        append(message, size);
+    }
+
+    /**
+     * Appends a message to the queue, waiting up to the specified time for room in the
+     * queue and in the memory budget. The message is discarded if no room becomes
+     * available in time.
+     */
+    private void offerAndWait(final MessageType message, final int milliseconds) throws IOException,
+                                                                                 InterruptedException {
+        long deadline = System.currentTimeMillis() + milliseconds;
+        int size = sizeOf(message);
+        if (size > 0 && !this.memoryAccount.acquire(message, size, milliseconds)) {
+            synchronized (this.lock) {
+                checkState();
+                this.overflowCount++;
+                this.droppedCount++;
+            }
+            return;
+        }
+        synchronized (this.lock) {
+            try {
+                checkState();
+                while (this.count == this.queue.length) {
+                    long timeout = deadline - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        this.overflowCount++;
+                        this.droppedCount++;
+                        releaseMemory(message, size);
+                        return;
+                    }
+                    this.waitingSenderCount++;
+                    try {
+                        this.lock.wait(timeout);
+                    }
+                    finally {
+                        this.waitingSenderCount--;
+                    }
+                    checkState();
+                }
+            }
+            catch (IOException e) {
+                releaseMemory(message, size);
+                throw e;
+            }
+            catch (InterruptedException e) {
+                releaseMemory(message, size);
+                throw e;
+            }
+            append(message, size);
+            start();
+        }
+    }
+
+    /**
+     * Applies the overflow policy when the memory budget cannot supply the memory
+     * required by a new message.
+     * Must be called while holding the queue lock.
+     * 
+     * @return <code>true</code> if the memory was obtained by discarding older messages.
+     */
+    private boolean reclaim(final Object message, final int size) {
+        switch (this.overflowPolicy) {
+            case DROP_OLDEST:
+                MemoryBudget budget = this.memoryAccount.getBudget();
+                while (this.count > 0) {
+                    discardOldest();
+                    if (budget.getAvailable() >= size && this.memoryAccount.tryAcquire(message, size)) {
+                        return true;
+                    }
+                }
+                break;
+            case DISCONNECT:
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("disconnecting consumer " + this.channel + " - memory budget exhausted"));
+                }
+                this.droppedCount++;
+                disconnect(new IOException("memory budget exhausted - consumer disconnected"));
+                return false;
+            default:
+                break;
+        }
+        this.droppedCount++;
+        return false;
+    }
+
+    /**
+     * Places a message at the tail of the queue. The caller must ensure that the queue
+     * is not full.
+     * Must be called while holding the queue lock.
+     */
+    private void append(final MessageType message, final int size) {
+        int index = (this.head + this.count) % this.queue.length;
+        retain(message);
+        this.queue[index] = message;
+        if (this.sizes != null) {
+            this.sizes[index] = size;
+        }
+        this.count++;
+        if (this.isWaiting) {
+            this.isWaiting = false;
+            if (this.waitingSenderCount > 0) {
+                this.lock.notifyAll();
+            }
+            else {
+                this.lock.notify();
+            }
+        }
+    }
+
+    /**
+     * Discards the message at the head of the queue.
+     * Must be called while holding the queue lock.
+     */
+    private void discardOldest() {
+        release(this.queue[this.head]);
+        if (this.sizes != null) {
+            releaseMemory(this.queue[this.head], this.sizes[this.head]);
+        }
+        this.queue[this.head] = null;
+        this.head = (this.head + 1) % this.queue.length;
+        this.count--;
+        this.droppedCount++;
+    }
+
+    /**
+     * Starts the drain thread if it has not been started.
+     * Must be called while holding the queue lock.
+     */
+    private void start() {
+        if (this.thread == null && this.isRunning) {
+            this.thread = new Thread(this, QueuedOutputChannel.class.getName());
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /**
+     * Must be called while holding the queue lock.
+     */
+    private void checkState() throws IOException {
+        if (this.failure != null) {
+            throw new ChannelClosedException("output channel disconnected - " + this.failure.getMessage(), this.failure);
+        }
+        if (!this.isRunning) {
+            throw new ChannelClosedException("output channel stopped");
+        }
+    }
+
+    /**
+     * Discards pending messages, records the cause of the disconnection and stops the
+     * drain thread.
+     * Must be called while holding the queue lock.
+     */
+    private void disconnect(final IOException cause) {
+        this.failure = cause;
+        this.isRunning = false;
+        clear();
+        if (this.thread != null && this.thread != Thread.currentThread()) {
+            // Abandon any send that is blocked in the slow consumer
+            this.thread.interrupt();
+        }
+        this.lock.notifyAll();
+    }
+
+    /**
+     * Discards pending messages and counts them as dropped.
+     * Must be called while holding the queue lock.
+     */
+    private void clear() {
+        this.droppedCount += this.count;
+        for (int i = 0; i < this.count; i++) {
+            int index = (this.head + i) % this.queue.length;
+            release(this.queue[index]);
+            if (this.sizes != null) {
+                releaseMemory(this.queue[index], this.sizes[index]);
+            }
+            this.queue[index] = null;
+        }
+        this.head = 0;
+        this.count = 0;
+    }
+
+    /**
+     * Gets the number of bytes charged to the memory account for a message.
+     */
+    private int sizeOf(final Object message) {
+        return this.memoryAccount != null ? MemoryBudget.sizeOf(message) : 0;
+    }
+
+    /**
+     * Returns the memory charged for a message that has been forwarded or discarded.
+     */
+    private void releaseMemory(final Object message, final int size) {
+        if (size > 0) {
+            this.memoryAccount.release(message, size);
+        }
+    }
+
+    /**
+     * Adds a reference to a message that is placed in the queue.
+     */
+    private static void retain(final Object message) {
+        if (message instanceof ReferenceCountedMessage) {
+            ((ReferenceCountedMessage) message).retain();
+        }
+    }
+
+    /**
+     * Releases the reference held by the queue on a message that has been forwarded
+     * or discarded.
+     */
+    private static void release(final Object message) {
+        if (message instanceof ReferenceCountedMessage) {
+            ((ReferenceCountedMessage) message).release();
+        }
+    }
+
+    /**
+     * Releases the messages in a range of a batch that will not be forwarded and the
+     * memory charged for them.
+     */
+    private void discard(final Object[] batch, final int[] batchSizes, final int from, final int to) {
+        for (int i = from; i < to; i++) {
+            release(batch[i]);
+            if (batchSizes != null) {
+                releaseMemory(batch[i], batchSizes[i]);
+            }
+            batch[i] = null;
+        }
+    }
+
+}
@@ -0,0 +1,48 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ReferenceCountedMessage.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+/**
+ * Interface exposed by releasable messages whose pooled resources are shared by
+ * several consumers and are returned only when the last consumer is done with them.
+ * The object that creates a message holds the first reference. An output channel that
+ * holds a message beyond the duration of a send call, such as a queue, calls
+ * {@link #retain()} before the send call returns and {@link #release()} once it has
+ * finished with the message. Each call to {@link #release()} releases one reference.
+ * <p>
+ * The queued channels in this package retain the reference-counted messages they hold.
+ * Other {@link ReleasableMessage} objects are held without being retained, so the
+ * sender must not release them while they remain queued.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface ReferenceCountedMessage
+                extends ReleasableMessage {
+
+    /**
+     * Adds a reference to the pooled resources held by this message.
+     * Has no effect if the message does not hold pooled resources.
+     */
+    void retain();
+
+}
@@ -0,0 +1,47 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * ReleasableMessage.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+/**
+ * Interface exposed by message objects that hold pooled resources, such as a
+ * recycled receive buffer, that must be returned once the final consumer of the
+ * message is done with it.
+ * A {@link ChannelPump} releases each message after the message has been sent to
+ * its output channel. An output channel that retains a releasable message beyond the
+ * duration of a send call must copy any content it requires before returning, unless
+ * the message is a {@link ReferenceCountedMessage} that the channel has retained.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public interface ReleasableMessage {
+
+    /**
+     * Returns any pooled resources held by this message.
+     * The message content must not be accessed once the message has been released.
+     * Calling this method more than once has no effect unless the message is a
+     * {@link ReferenceCountedMessage}, in which case each call releases one reference.
+     */
+    void release();
+
+}
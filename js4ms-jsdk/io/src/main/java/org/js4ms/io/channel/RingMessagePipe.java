@@ -0,0 +1,336 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * RingMessagePipe.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.js4ms.io.buffer.MemoryBudget;
+
+/**
+ * Base class for message pipes that buffer messages in a fixed-size array used as a
+ * ring buffer.
+ * Unlike {@link MessageQueue}, a ring buffer pipe does not allocate a node for each
+ * message and does not acquire a lock on either the send or the receive path.
+ * Senders and receivers that must wait do so according to a {@link WaitStrategy}.
+ * The {@link #send(Object, int)} and {@link #receive(int)} methods have the same
+ * timeout semantics as those of {@link MessageQueue}.
+ * <p>
+ * A pipe may be constructed with a {@link MemoryBudget.Account} that is charged with
+ * the size of each message (see {@link MemoryBudget#sizeOf(Object)}) from the time it
+ * is placed in the pipe until it is received. A message that cannot be charged to the
+ * account is treated as if the pipe were full.
+ * <p>
+ * A ring buffer pipe supports a single receiving thread.
+ * See {@link SpscMessagePipe} and {@link MpscMessagePipe}.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public abstract class RingMessagePipe<MessageType>
+                implements MessagePipe<MessageType>, BatchMessageInput<MessageType> {
+
+    /*-- Member Variables ----------------------------------------------------*/
+
+    /**
+     * The capacity of the ring buffer. Always a power of two.
+     */
+    protected final int capacity;
+
+    /**
+     * Mask applied to a sequence number to compute a buffer index.
+     */
+    protected final int mask;
+
+    private final WaitStrategy waitStrategy;
+
+    /**
+     * The account charged for the memory held by messages in the pipe, or
+     * <code>null</code>.
+     */
+    private final MemoryBudget.Account memoryAccount;
+
+    /**
+     * The receiving thread, if it is parked waiting for a message.
+     * Cleared by the first sender that unparks the receiver so subsequent senders do
+     * not repeat the wake-up.
+     */
+    private final AtomicReference<Thread> parkedReceiver = new AtomicReference<Thread>();
+
+    /**
+     * Senders parked waiting for room in the pipe.
+     */
+    private final ConcurrentLinkedQueue<Thread> parkedSenders = new ConcurrentLinkedQueue<Thread>();
+
+    /*-- Member Functions ----------------------------------------------------*/
+
+    /**
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     *            The capacity is rounded up to the next power of two.
+     * @param waitStrategy
+     *            Describes how senders and receivers wait.
+     */
+    protected RingMessagePipe(final int capacity, final WaitStrategy waitStrategy) {
+        this(capacity, waitStrategy, null);
+    }
+
+    /**
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     *            The capacity is rounded up to the next power of two.
+     * @param waitStrategy
+     *            Describes how senders and receivers wait.
+     * @param memoryAccount
+     *            The account charged for messages held in the pipe, or
+     *            <code>null</code> if memory use is not accounted.
+     */
+    protected RingMessagePipe(final int capacity,
+                              final WaitStrategy waitStrategy,
+                              final MemoryBudget.Account memoryAccount) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("invalid capacity");
+        }
+        int size = 1;
+        while (size < capacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.waitStrategy = waitStrategy;
+        this.memoryAccount = memoryAccount;
+    }
+
+    /**
+     * Gets the maximum number of messages that can be held in the pipe.
+     */
+    public final int getCapacity() {
+        return this.capacity;
+    }
+
+    /**
+     * Gets the wait strategy used by this pipe.
+     */
+    public final WaitStrategy getWaitStrategy() {
+        return this.waitStrategy;
+    }
+
+    /**
+     * Gets the account charged for the memory held by messages in the pipe.
+     * 
+     * @return The account or <code>null</code> if memory use is not accounted.
+     */
+    public final MemoryBudget.Account getMemoryAccount() {
+        return this.memoryAccount;
+    }
+
+    /**
+     * Gets the number of messages currently held in the pipe.
+     */
+    public abstract int size();
+
+    /**
+     * Attempts to place a message in the pipe without waiting.
+     * 
+     * @param message
+     *            The message to send. Must not be <code>null</code>.
+     * @return <code>true</code> if the message was placed in the pipe, or
+     *         <code>false</code> if the pipe is full or the memory budget is exhausted.
+     */
+    public final boolean offer(final MessageType message) {
+        if (message == null) {
+            throw new NullPointerException();
+        }
+        int size = this.memoryAccount != null ? MemoryBudget.sizeOf(message) : 0;
+        if (size > 0 && !this.memoryAccount.tryAcquire(message, size)) {
+            return false;
+        }
+        if (enqueue(message)) {
+            Thread receiver = this.parkedReceiver.get();
+            if (receiver != null && this.parkedReceiver.compareAndSet(receiver, null)) {
+                LockSupport.unpark(receiver);
+            }
+            return true;
+        }
+        if (size > 0) {
+            this.memoryAccount.release(message, size);
+        }
+        return false;
+    }
+
+    /**
+     * Attempts to remove a message from the pipe without waiting.
+     * May only be called by the receiving thread.
+     * 
+     * @return The next message or <code>null</code> if the pipe is empty.
+     */
+    public final MessageType poll() {
+        return take();
+    }
+
+    @Override
+    public final void send(final MessageType message, final int milliseconds) throws IOException,
+                                                                             InterruptedIOException,
+                                                                             InterruptedException {
+        if (offer(message)) {
+            return;
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        int attempt = 0;
+        while (!offer(message)) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new InterruptedIOException("send operation timed out");
+            }
+            if (this.waitStrategy.isParking(attempt)) {
+                // Register before re-checking the pipe so the receiver will unpark
+                // this sender once it removes a message
+                Thread sender = Thread.currentThread();
+                this.parkedSenders.add(sender);
+                try {
+                    if (offer(message)) {
+                        break;
+                    }
+                    this.waitStrategy.idle(attempt, remaining);
+                }
+                finally {
+                    this.parkedSenders.remove(sender);
+                }
+            }
+            else {
+                this.waitStrategy.idle(attempt++, remaining);
+            }
+        }
+    }
+
+    @Override
+    public final MessageType receive(final int milliseconds) throws IOException,
+                                                            InterruptedIOException,
+                                                            InterruptedException {
+        MessageType message = take();
+        return message != null ? message : await(milliseconds);
+    }
+
+    @Override
+    public final int receive(final List<MessageType> messages,
+                             final int maxCount,
+                             final int milliseconds) throws IOException,
+                                                    InterruptedIOException,
+                                                    InterruptedException {
+        MessageType message = take();
+        if (message == null) {
+            message = await(milliseconds);
+        }
+        messages.add(message);
+        int count = 1;
+        while (count < maxCount && (message = take()) != null) {
+            messages.add(message);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Waits for a message to arrive.
+     */
+    private MessageType await(final int milliseconds) throws InterruptedIOException, InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(milliseconds);
+        int attempt = 0;
+        MessageType message;
+        while ((message = take()) == null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new InterruptedIOException("receive operation timed out");
+            }
+            if (this.waitStrategy.isParking(attempt)) {
+                // Publish the receiver before re-checking the pipe so a sender that
+                // enqueues a message after the check is guaranteed to unpark it
+                this.parkedReceiver.set(Thread.currentThread());
+                message = take();
+                if (message == null) {
+                    this.waitStrategy.idle(attempt, remaining);
+                }
+                this.parkedReceiver.lazySet(null);
+                if (message != null) {
+                    break;
+                }
+            }
+            else {
+                this.waitStrategy.idle(attempt++, remaining);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Removes the next message, returns the memory charged for it and unparks a sender
+     * waiting for room, if any.
+     * Parked senders are not woken until the pipe is half empty so that each sender
+     * wake-up is followed by a burst of sends rather than a single send, unless the
+     * memory budget is in use, in which case the sender may be waiting for memory.
+     */
+    private MessageType take() {
+        MessageType message = dequeue();
+        if (message == null) {
+            return null;
+        }
+        int size = this.memoryAccount != null ? MemoryBudget.sizeOf(message) : 0;
+        if (size > 0) {
+            this.memoryAccount.release(message, size);
+        }
+        if (!this.parkedSenders.isEmpty() && (size > 0 || size() <= (this.capacity >> 1))) {
+            Thread sender = this.parkedSenders.peek();
+            if (sender != null) {
+                LockSupport.unpark(sender);
+            }
+        }
+        return message;
+    }
+
+    /**
+     * Places a message in the ring buffer if there is room.
+     * The message must be visible to the receiver, via a volatile write or an atomic
+     * update, before this method returns.
+     */
+    protected abstract boolean enqueue(MessageType message);
+
+    /**
+     * Removes the next message from the ring buffer or returns <code>null</code> if the
+     * buffer is empty. Only called by the receiving thread.
+     */
+    protected abstract MessageType dequeue();
+
+}
@@ -0,0 +1,125 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SpscMessagePipe.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A single-producer, single-consumer ring buffer message pipe.
+ * At most one thread may send messages to the pipe and at most one thread may receive
+ * messages from it. Each side tracks its own position and only reads the position of
+ * the other side when the buffer appears full or empty.
+ * 
+ * @param <MessageType>
+ *            The message object type.
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class SpscMessagePipe<MessageType>
+                extends RingMessagePipe<MessageType> {
+
+    /*-- Member Variables ----------------------------------------------------*/
+
+    private final AtomicReferenceArray<MessageType> buffer;
+
+    /**
+     * Sequence number of the next message to be sent.
+     */
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Sequence number of the next message to be received.
+     */
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * The last receiver position read by the sender.
+     */
+    private long cachedHead = 0;
+
+    /**
+     * The last sender position read by the receiver.
+     */
+    private long cachedTail = 0;
+
+    /*-- Member Functions ----------------------------------------------------*/
+
+    /**
+     * Constructs a pipe that uses the default wait strategy.
+     * 
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     */
+    public SpscMessagePipe(final int capacity) {
+        this(capacity, WaitStrategy.DEFAULT);
+    }
+
+    /**
+     * @param capacity
+     *            The minimum number of messages that can be held in the pipe.
+     * @param waitStrategy
+     *            Describes how the sender and receiver wait.
+     */
+    public SpscMessagePipe(final int capacity, final WaitStrategy waitStrategy) {
+        super(capacity, waitStrategy);
+        this.buffer = new AtomicReferenceArray<MessageType>(this.capacity);
+    }
+
+    @Override
+    public int size() {
+        return (int) (this.tail.get() - this.head.get());
+    }
+
+    @Override
+    protected boolean enqueue(final MessageType message) {
+        long tail = this.tail.get();
+        if (tail - this.cachedHead >= this.capacity) {
+            this.cachedHead = this.head.get();
+            if (tail - this.cachedHead >= this.capacity) {
+                return false;
+            }
+        }
+        this.buffer.lazySet((int) tail & this.mask, message);
+        // Volatile write publishes the message and orders it before the check for a
+        // parked receiver
+        this.tail.set(tail + 1);
+        return true;
+    }
+
+    @Override
+    protected MessageType dequeue() {
+        long head = this.head.get();
+        if (head >= this.cachedTail) {
+            this.cachedTail = this.tail.get();
+            if (head >= this.cachedTail) {
+                return null;
+            }
+        }
+        int index = (int) head & this.mask;
+        MessageType message = this.buffer.get(index);
+        this.buffer.lazySet(index, null);
+        this.head.lazySet(head + 1);
+        return message;
+    }
+
+}
@@ -0,0 +1,124 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * WaitStrategy.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Describes how a thread waits for a {@link RingMessagePipe} to become ready.
+ * A waiting thread first re-checks the pipe in a busy loop, then yields the processor
+ * between checks, and finally parks for short intervals until the pipe is ready or
+ * the operation times out. A receiver that parks is unparked by the next sender.
+ * <p>
+ * Spinning minimizes hand-off latency but consumes a processor while waiting, so it
+ * should only be enabled when the sender and receiver run on different processors.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class WaitStrategy {
+
+    /*-- Static Variables ----------------------------------------------------*/
+
+    /**
+     * The default maximum park interval in nanoseconds.
+     */
+    public static final long DEFAULT_PARK_NANOS = 1000000;
+
+    /**
+     * A strategy that spins briefly and yields a few times before parking.
+     */
+    public static final WaitStrategy DEFAULT = new WaitStrategy(100, 10, DEFAULT_PARK_NANOS);
+
+    /**
+     * A strategy that parks immediately. Suitable for hosts with few processors.
+     */
+    public static final WaitStrategy PARK = new WaitStrategy(0, 0, DEFAULT_PARK_NANOS);
+
+    /*-- Member Variables ----------------------------------------------------*/
+
+    private final int spinCount;
+
+    private final int yieldCount;
+
+    private final long parkNanos;
+
+    /*-- Member Functions ----------------------------------------------------*/
+
+    /**
+     * @param spinCount
+     *            The number of times the pipe is re-checked in a busy loop.
+     * @param yieldCount
+     *            The number of times the thread yields before it starts parking.
+     * @param parkNanos
+     *            The maximum time a thread parks before it re-checks the pipe.
+     */
+    public WaitStrategy(final int spinCount, final int yieldCount, final long parkNanos) {
+        if (spinCount < 0 || yieldCount < 0 || parkNanos <= 0) {
+            throw new IllegalArgumentException("invalid wait strategy parameters");
+        }
+        this.spinCount = spinCount;
+        this.yieldCount = yieldCount;
+        this.parkNanos = parkNanos;
+    }
+
+    public int getSpinCount() {
+        return this.spinCount;
+    }
+
+    public int getYieldCount() {
+        return this.yieldCount;
+    }
+
+    public long getParkNanos() {
+        return this.parkNanos;
+    }
+
+    /**
+     * Indicates whether a thread that has made the specified number of unsuccessful
+     * attempts should park on its next attempt.
+     */
+    boolean isParking(final int attempt) {
+        return attempt >= this.spinCount + this.yieldCount;
+    }
+
+    /**
+     * Waits before the next attempt.
+     * 
+     * @param attempt
+     *            The number of unsuccessful attempts made so far.
+     * @param remainingNanos
+     *            The time remaining before the operation times out.
+     */
+    void idle(final int attempt, final long remainingNanos) {
+        if (attempt < this.spinCount) {
+            return;
+        }
+        else if (attempt < this.spinCount + this.yieldCount) {
+            Thread.yield();
+        }
+        else {
+            LockSupport.parkNanos(this, Math.min(remainingNanos, this.parkNanos));
+        }
+    }
+
+}
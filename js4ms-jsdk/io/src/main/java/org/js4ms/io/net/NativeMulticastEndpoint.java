@@ -0,0 +1,682 @@
+package org.js4ms.io.net;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * NativeMulticastEndpoint.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ProtocolFamily;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.MembershipKey;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.pool.ByteBufferPool;
+import org.js4ms.io.buffer.MemoryBudget;
+import org.js4ms.io.channel.MpscMessagePipe;
+import org.js4ms.io.channel.OutputChannel;
+
+
+
+/**
+ * A {@link MulticastEndpoint} that receives multicast datagrams natively, using
+ * non-blocking {@link DatagramChannel} objects and {@link MembershipKey} objects to
+ * join any-source and source-specific groups on a single network interface.
+ * <p>
+ * The endpoint opens one channel for each group address and port number it joins.
+ * Each channel is bound to the group address where the platform allows it, so a
+ * channel only receives datagrams sent to its own group. On platforms that do not
+ * allow a socket to be bound to a multicast address the channel is bound to the
+ * wildcard address, and may also receive datagrams sent to the same port on other
+ * groups joined by this host.
+ * <p>
+ * The channels are serviced by a {@link SelectorLoop}, which may be shared with other
+ * endpoints. If an {@link OutputChannel} is attached to the endpoint, incoming datagrams
+ * are sent to the channel on the loop thread, so the channel should not block. If no
+ * channel is attached, datagrams are queued internally and retrieved by calling
+ * {@link #receive(int)}; only one thread at a time may call {@link #receive(int)}.
+ * Datagrams are received into pooled buffers - see {@link UdpDatagram#release()}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class NativeMulticastEndpoint
+                implements MulticastEndpoint {
+
+    /*-- Inner Classes ------------------------------------------------------*/
+
+    /**
+     * A channel bound to one group address and port number and the memberships
+     * joined on that channel.
+     */
+    final class Binding
+                    implements SelectorLoop.Handler {
+
+        final InetAddress groupAddress;
+
+        final int port;
+
+        final InetSocketAddress destinationSocketAddress;
+
+        final DatagramChannel channel;
+
+        /**
+         * The any-source membership, if any.
+         */
+        MembershipKey anySourceKey = null;
+
+        /**
+         * The source-specific memberships. Not used while the any-source membership
+         * is active.
+         */
+        final ArrayList<MembershipKey> sourceKeys = new ArrayList<MembershipKey>();
+
+        /**
+         * @param groupAddress
+         * @param port
+         * @throws IOException
+         */
+        Binding(final InetAddress groupAddress, final int port) throws IOException {
+            this.groupAddress = groupAddress;
+            this.port = port;
+            this.destinationSocketAddress = new InetSocketAddress(groupAddress, port);
+            ProtocolFamily family = groupAddress instanceof Inet4Address ? StandardProtocolFamily.INET
+                                                                         : StandardProtocolFamily.INET6;
+            this.channel = DatagramChannel.open(family);
+            try {
+                this.channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+                try {
+                    this.channel.bind(this.destinationSocketAddress);
+                }
+                catch (SocketException e) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(NativeMulticastEndpoint.this.log.msg("cannot bind to group address " +
+                                                                         Logging.address(groupAddress) +
+                                                                         " - binding to wildcard address"));
+                    }
+                    this.channel.bind(new InetSocketAddress(port));
+                }
+                this.channel.configureBlocking(false);
+            }
+            catch (IOException e) {
+                this.channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Joins the group for all sources. Any source-specific memberships are dropped.
+         * 
+         * @throws IOException
+         */
+        void join() throws IOException {
+            if (this.anySourceKey == null) {
+                dropSourceKeys();
+                this.anySourceKey = this.channel.join(this.groupAddress, NativeMulticastEndpoint.this.networkInterface);
+            }
+        }
+
+        /**
+         * Joins the group for a single source. Has no effect if the any-source
+         * membership is active.
+         * 
+         * @param sourceAddress
+         * @throws IOException
+         */
+        void join(final InetAddress sourceAddress) throws IOException {
+            if (this.anySourceKey == null && findSourceKey(sourceAddress) == null) {
+                this.sourceKeys.add(this.channel.join(this.groupAddress,
+                                                      NativeMulticastEndpoint.this.networkInterface,
+                                                      sourceAddress));
+            }
+        }
+
+        /**
+         * Leaves the group for a single source.
+         * 
+         * @param sourceAddress
+         * @return <code>true</code> if the binding no longer has any memberships.
+         */
+        boolean leave(final InetAddress sourceAddress) {
+            MembershipKey key = findSourceKey(sourceAddress);
+            if (key != null) {
+                key.drop();
+                this.sourceKeys.remove(key);
+            }
+            return this.anySourceKey == null && this.sourceKeys.isEmpty();
+        }
+
+        /**
+         * Drops all memberships and closes the channel.
+         */
+        void close() {
+            if (this.anySourceKey != null) {
+                this.anySourceKey.drop();
+                this.anySourceKey = null;
+            }
+            dropSourceKeys();
+            NativeMulticastEndpoint.this.selectorLoop.unregister(this.channel);
+            try {
+                this.channel.close();
+            }
+            catch (IOException e) {
+                logger.fine(NativeMulticastEndpoint.this.log.msg("channel close failed - " + e.getMessage()));
+            }
+        }
+
+        private MembershipKey findSourceKey(final InetAddress sourceAddress) {
+            for (MembershipKey key : this.sourceKeys) {
+                if (key.sourceAddress().equals(sourceAddress)) {
+                    return key;
+                }
+            }
+            return null;
+        }
+
+        private void dropSourceKeys() {
+            for (MembershipKey key : this.sourceKeys) {
+                key.drop();
+            }
+            this.sourceKeys.clear();
+        }
+
+        /**
+         * Drains the datagrams that are available on the channel and delivers each in
+         * turn. Called on the selector loop thread.
+         */
+        @Override
+        public void onReadable() {
+            ByteBufferPool pool = NativeMulticastEndpoint.this.bufferPool;
+            for (int i = 0; i < RECEIVE_BATCH_SIZE; i++) {
+                ByteBuffer buffer = pool.acquire();
+                InetSocketAddress sourceAddress;
+                try {
+                    sourceAddress = (InetSocketAddress) this.channel.receive(buffer);
+                }
+                catch (IOException e) {
+                    pool.release(buffer);
+                    if (NativeMulticastEndpoint.this.isOpen) {
+                        logger.warning(NativeMulticastEndpoint.this.log.msg("receive operation failed - " +
+                                                                            e.getClass().getSimpleName() + ":" +
+                                                                            e.getMessage()));
+                    }
+                    return;
+                }
+                if (sourceAddress == null) {
+                    pool.release(buffer);
+                    return;
+                }
+                buffer.flip();
+                UdpDatagram datagram = new UdpDatagram(sourceAddress, this.destinationSocketAddress, buffer);
+                datagram.bind(pool, buffer);
+                try {
+                    deliver(datagram);
+                }
+                finally {
+                    datagram.release();
+                }
+            }
+        }
+    }
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(NativeMulticastEndpoint.class.getName());
+
+    /**
+     * The maximum number of datagrams read from a channel each time it is readable.
+     */
+    static final int RECEIVE_BATCH_SIZE = 32;
+
+    /**
+     * The shared memory budget account charged for datagrams held in the internal queue.
+     */
+    private static final MemoryBudget.Account memoryAccount = MemoryBudget.getSharedInstance().getAccount("NativeMulticastEndpoint");
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final Log log = new Log(this);
+
+    /**
+     * Monitor object used for thread synchronization.
+     */
+    private final Object lock = new Object();
+
+    private final int port;
+
+    private final NetworkInterface networkInterface;
+
+    /**
+     * The channel that receives datagrams, or <code>null</code> if datagrams are
+     * queued for {@link #receive(int)}.
+     */
+    private final OutputChannel<UdpDatagram> pushChannel;
+
+    /**
+     * The queue used to buffer datagrams. Not used if a push channel is attached.
+     */
+    private final MpscMessagePipe<UdpDatagram> datagramQueue;
+
+    private final SelectorLoop selectorLoop;
+
+    /**
+     * Indicates whether the selector loop was constructed by this endpoint.
+     */
+    private final boolean isPrivateLoop;
+
+    private final ByteBufferPool bufferPool;
+
+    private final ArrayList<Binding> bindings = new ArrayList<Binding>();
+
+    private volatile boolean isOpen = true;
+
+    private final AtomicLong receivedCount = new AtomicLong();
+
+    private final AtomicLong overflowCount = new AtomicLong();
+
+    private volatile long lastReceiveTime = 0;
+
+    /*-- Static Functions ---------------------------------------------------*/
+
+    /**
+     * Selects a network interface for multicast reception. The first interface that
+     * is up and supports multicast is returned, preferring interfaces other than the
+     * loopback interface.
+     * 
+     * @return A network interface.
+     * @throws IOException
+     *             No multicast-capable network interface was found.
+     */
+    public static NetworkInterface getDefaultInterface() throws IOException {
+        NetworkInterface loopbackInterface = null;
+        Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+        while (interfaces != null && interfaces.hasMoreElements()) {
+            NetworkInterface networkInterface = interfaces.nextElement();
+            if (networkInterface.isUp() && networkInterface.supportsMulticast()) {
+                if (!networkInterface.isLoopback()) {
+                    return networkInterface;
+                }
+                else if (loopbackInterface == null) {
+                    loopbackInterface = networkInterface;
+                }
+            }
+        }
+        if (loopbackInterface == null) {
+            throw new IOException("no multicast-capable network interface found");
+        }
+        return loopbackInterface;
+    }
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an endpoint that buffers incoming datagrams in an internal queue that
+     * can be read using the {@link #receive(int)} method.
+     * 
+     * @param port
+     *            The endpoint will receive datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param networkInterface
+     *            The interface used to join groups, or <code>null</code> to use the
+     *            interface returned by {@link #getDefaultInterface()}.
+     * @param bufferCapacity
+     *            The desired internal queue size.
+     * @throws IOException
+     *             No network interface could be found or the selector could not be
+     *             opened.
+     */
+    public NativeMulticastEndpoint(final int port,
+                                   final NetworkInterface networkInterface,
+                                   final int bufferCapacity) throws IOException {
+        this(port, networkInterface, null, new MpscMessagePipe<UdpDatagram>(bufferCapacity, memoryAccount), null);
+    }
+
+    /**
+     * Constructs an endpoint that sends incoming datagrams to an output channel on the
+     * thread of a private selector loop.
+     * 
+     * @param port
+     *            The endpoint will receive datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param networkInterface
+     *            The interface used to join groups, or <code>null</code> to use the
+     *            interface returned by {@link #getDefaultInterface()}.
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @throws IOException
+     *             No network interface could be found or the selector could not be
+     *             opened.
+     */
+    public NativeMulticastEndpoint(final int port,
+                                   final NetworkInterface networkInterface,
+                                   final OutputChannel<UdpDatagram> pushChannel) throws IOException {
+        this(port, networkInterface, pushChannel, null, null);
+    }
+
+    /**
+     * Constructs an endpoint that sends incoming datagrams to an output channel on the
+     * thread of a selector loop that may be shared with other endpoints.
+     * 
+     * @param port
+     *            The endpoint will receive datagrams sent to this port number.
+     *            Additional port numbers may be included by calling an appropriate join
+     *            method, e.g. {@link #join(InetAddress, int)}.
+     * @param networkInterface
+     *            The interface used to join groups, or <code>null</code> to use the
+     *            interface returned by {@link #getDefaultInterface()}.
+     * @param pushChannel
+     *            The endpoint will send incoming datagrams to this channel.
+     * @param selectorLoop
+     *            The loop that will service the endpoint channels. The loop is not
+     *            stopped when the endpoint is closed.
+     * @throws IOException
+     *             No network interface could be found.
+     */
+    public NativeMulticastEndpoint(final int port,
+                                   final NetworkInterface networkInterface,
+                                   final OutputChannel<UdpDatagram> pushChannel,
+                                   final SelectorLoop selectorLoop) throws IOException {
+        this(port, networkInterface, pushChannel, null, selectorLoop);
+    }
+
+    private NativeMulticastEndpoint(final int port,
+                                    final NetworkInterface networkInterface,
+                                    final OutputChannel<UdpDatagram> pushChannel,
+                                    final MpscMessagePipe<UdpDatagram> datagramQueue,
+                                    final SelectorLoop selectorLoop) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.NativeMulticastEndpoint", port, networkInterface,
+                                        pushChannel, selectorLoop));
+        }
+
+        this.port = port;
+        this.networkInterface = networkInterface != null ? networkInterface : getDefaultInterface();
+        this.pushChannel = pushChannel;
+        this.datagramQueue = datagramQueue;
+        this.bufferPool = new ByteBufferPool(UdpChannelEndpoint.DEFAULT_POOL_CAPACITY,
+                                             UdpChannelEndpoint.DEFAULT_BUFFER_SIZE,
+                                             true);
+        if (selectorLoop != null) {
+            this.selectorLoop = selectorLoop;
+            this.isPrivateLoop = false;
+        }
+        else {
+            this.selectorLoop = new SelectorLoop(NativeMulticastEndpoint.class.getName());
+            this.isPrivateLoop = true;
+        }
+    }
+
+    /**
+     * Gets the UDP port number assigned to the endpoint when it was constructed.
+     * 
+     * @return An integer port number in the range 0-32767.
+     */
+    public int getPort() {
+        return this.port;
+    }
+
+    /**
+     * Gets the network interface used to join groups.
+     */
+    public NetworkInterface getNetworkInterface() {
+        return this.networkInterface;
+    }
+
+    /**
+     * Gets the number of datagrams received by the endpoint.
+     */
+    public long getReceivedCount() {
+        return this.receivedCount.get();
+    }
+
+    /**
+     * Gets the number of datagrams discarded because the internal queue read by
+     * {@link #receive(int)} was full.
+     */
+    public long getOverflowCount() {
+        return this.overflowCount.get();
+    }
+
+    /**
+     * Gets the time at which the most recent datagram was received.
+     * 
+     * @return The time in milliseconds since the epoch or zero if no datagram has
+     *         been received.
+     */
+    public long getLastReceiveTime() {
+        return this.lastReceiveTime;
+    }
+
+    /**
+     * Leaves all groups and closes the endpoint channels. The selector loop is stopped
+     * if it was constructed by this endpoint.
+     */
+    public void close() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.close"));
+        }
+
+        this.isOpen = false;
+        leave();
+        if (this.isPrivateLoop) {
+            this.selectorLoop.stop();
+        }
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress) throws IOException {
+        join(groupAddress, this.port);
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress, final int port) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.join", Logging.address(groupAddress), port));
+        }
+
+        synchronized (this.lock) {
+            getBinding(groupAddress, port).join();
+        }
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress, final InetAddress sourceAddress) throws IOException {
+        join(groupAddress, sourceAddress, this.port);
+    }
+
+    @Override
+    public void join(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.join", Logging.address(groupAddress),
+                                        Logging.address(sourceAddress), port));
+        }
+
+        synchronized (this.lock) {
+            getBinding(groupAddress, port).join(sourceAddress);
+        }
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.leave", Logging.address(groupAddress)));
+        }
+
+        synchronized (this.lock) {
+            Iterator<Binding> iter = this.bindings.iterator();
+            while (iter.hasNext()) {
+                Binding binding = iter.next();
+                if (binding.groupAddress.equals(groupAddress)) {
+                    binding.close();
+                    iter.remove();
+                }
+            }
+        }
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress, final InetAddress sourceAddress) {
+        leave(groupAddress, sourceAddress, this.port);
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress, final int port) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.leave", Logging.address(groupAddress), port));
+        }
+
+        synchronized (this.lock) {
+            Binding binding = findBinding(groupAddress, port);
+            if (binding != null) {
+                binding.close();
+                this.bindings.remove(binding);
+            }
+        }
+    }
+
+    @Override
+    public void leave(final InetAddress groupAddress, final InetAddress sourceAddress, final int port) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.leave", Logging.address(groupAddress),
+                                        Logging.address(sourceAddress), port));
+        }
+
+        synchronized (this.lock) {
+            Binding binding = findBinding(groupAddress, port);
+            if (binding != null && binding.leave(sourceAddress)) {
+                binding.close();
+                this.bindings.remove(binding);
+            }
+        }
+    }
+
+    @Override
+    public void leave() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("NativeMulticastEndpoint.leave"));
+        }
+
+        synchronized (this.lock) {
+            for (Binding binding : this.bindings) {
+                binding.close();
+            }
+            this.bindings.clear();
+        }
+    }
+
+    /**
+     * Retrieves the next datagram from the internal queue.
+     * The caller must {@link UdpDatagram#release() release} each datagram returned by
+     * this method once it is done with it.
+     */
+    @Override
+    public UdpDatagram receive(final int milliseconds) throws IOException, InterruptedIOException, InterruptedException {
+        if (this.datagramQueue == null) {
+            throw new IOException("datagrams are delivered to a push channel");
+        }
+        return this.datagramQueue.receive(milliseconds);
+    }
+
+    /**
+     * Gets the binding for a group address and port, opening a new channel if
+     * necessary. Must be called while holding the lock.
+     */
+    private Binding getBinding(final InetAddress groupAddress, final int port) throws IOException {
+        if (!this.isOpen) {
+            throw new IOException("endpoint closed");
+        }
+        Binding binding = findBinding(groupAddress, port);
+        if (binding == null) {
+            binding = new Binding(groupAddress, port);
+            this.bindings.add(binding);
+            this.selectorLoop.register(binding.channel, binding);
+        }
+        return binding;
+    }
+
+    /**
+     * Must be called while holding the lock.
+     */
+    private Binding findBinding(final InetAddress groupAddress, final int port) {
+        for (Binding binding : this.bindings) {
+            if (binding.port == port && binding.groupAddress.equals(groupAddress)) {
+                return binding;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Sends a datagram to the push channel or places it in the internal queue.
+     * Called on the selector loop thread.
+     */
+    private void deliver(final UdpDatagram datagram) {
+        this.receivedCount.incrementAndGet();
+        this.lastReceiveTime = System.currentTimeMillis();
+        if (this.pushChannel != null) {
+            try {
+                this.pushChannel.send(datagram, Integer.MAX_VALUE);
+            }
+            catch (IOException e) {
+                logger.fine(this.log.msg("push channel send failed - " + e.getClass().getSimpleName() + ":" + e.getMessage()));
+            }
+            catch (InterruptedException e) {
+                logger.fine(this.log.msg("push channel send interrupted"));
+            }
+        }
+        else {
+            // The queue holds a reference that passes to the caller of receive()
+            datagram.retain();
+            if (!this.datagramQueue.offer(datagram)) {
+                datagram.release();
+                this.overflowCount.incrementAndGet();
+            }
+        }
+    }
+
+}
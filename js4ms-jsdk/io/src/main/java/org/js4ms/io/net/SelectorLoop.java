@@ -0,0 +1,290 @@
+package org.js4ms.io.net;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SelectorLoop.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+
+
+
+/**
+ * A single thread that waits on a {@link Selector} and notifies a {@link Handler} each
+ * time a registered channel becomes readable.
+ * A selector loop allows many non-blocking channels to be serviced by one thread.
+ * Handlers are called on the loop thread and must not block.
+ * <p>
+ * Channels are registered and unregistered by tasks executed on the loop thread, so
+ * the registration methods may be called from any thread, including the loop thread.
+ * The loop thread is started when the first task is submitted.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class SelectorLoop
+                implements Runnable {
+
+    /*-- Inner Classes ------------------------------------------------------*/
+
+    /**
+     * Interface exposed by objects that service a channel registered with a selector
+     * loop.
+     */
+    public interface Handler {
+
+        /**
+         * Called on the loop thread when the registered channel has one or more
+         * datagrams or bytes available. The handler should read what is available
+         * without blocking and return. The handler will be called again if the
+         * channel remains readable.
+         */
+        void onReadable();
+
+    }
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(SelectorLoop.class.getName());
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final Log log = new Log(this);
+
+    private final String name;
+
+    private final Selector selector;
+
+    private final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<Runnable>();
+
+    private final AtomicInteger registrationCount = new AtomicInteger();
+
+    /**
+     * Monitor object used for thread synchronization.
+     */
+    private final Object lock = new Object();
+
+    private Thread thread = null;
+
+    private volatile boolean isRunning = true;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * @param name
+     *            The name assigned to the loop thread.
+     * @throws IOException
+     *             The selector could not be opened.
+     */
+    public SelectorLoop(final String name) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoop.SelectorLoop", name));
+        }
+
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    /**
+     * Gets the number of channels currently registered with this loop.
+     */
+    public int getRegistrationCount() {
+        return this.registrationCount.get();
+    }
+
+    /**
+     * Registers a non-blocking channel for read readiness notifications.
+     * 
+     * @param channel
+     *            The channel to register. The channel must be in non-blocking mode.
+     * @param handler
+     *            The handler that will be called when the channel is readable.
+     */
+    public void register(final SelectableChannel channel, final Handler handler) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoop.register", channel, handler));
+        }
+
+        this.registrationCount.incrementAndGet();
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    channel.register(SelectorLoop.this.selector, SelectionKey.OP_READ, handler);
+                }
+                catch (ClosedChannelException e) {
+                    SelectorLoop.this.registrationCount.decrementAndGet();
+                    logger.fine(SelectorLoop.this.log.msg("cannot register closed channel"));
+                }
+            }
+        });
+    }
+
+    /**
+     * Cancels the registration of a channel. Closing a channel also cancels its
+     * registration, but the loop count is only updated by this method.
+     * 
+     * @param channel
+     *            The channel to unregister.
+     */
+    public void unregister(final SelectableChannel channel) {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoop.unregister", channel));
+        }
+
+        this.registrationCount.decrementAndGet();
+
+        execute(new Runnable() {
+
+            @Override
+            public void run() {
+                SelectionKey key = channel.keyFor(SelectorLoop.this.selector);
+                if (key != null) {
+                    key.cancel();
+                }
+            }
+        });
+    }
+
+    /**
+     * Executes a task on the loop thread.
+     * 
+     * @param task
+     */
+    public void execute(final Runnable task) {
+        this.tasks.add(task);
+        synchronized (this.lock) {
+            if (this.thread == null && this.isRunning) {
+                this.thread = new Thread(this, this.name);
+                this.thread.setDaemon(true);
+                this.thread.start();
+            }
+        }
+        this.selector.wakeup();
+    }
+
+    /**
+     * Stops the loop thread and closes the selector.
+     * Registered channels are not closed.
+     */
+    public void stop() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoop.stop"));
+        }
+
+        synchronized (this.lock) {
+            this.isRunning = false;
+            this.selector.wakeup();
+            if (this.thread == null) {
+                closeSelector();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoop.run"));
+        }
+
+        try {
+            while (this.isRunning) {
+
+                Runnable task;
+                while ((task = this.tasks.poll()) != null) {
+                    try {
+                        task.run();
+                    }
+                    catch (RuntimeException e) {
+                        logger.log(Level.WARNING,
+                                   this.log.msg("selector loop task failed with exception - " +
+                                                e.getClass().getName() + ":" + e.getMessage()),
+                                   e);
+                    }
+                }
+
+                this.selector.select();
+
+                Iterator<SelectionKey> iter = this.selector.selectedKeys().iterator();
+                while (iter.hasNext()) {
+                    SelectionKey key = iter.next();
+                    iter.remove();
+                    if (key.isValid() && key.isReadable()) {
+                        try {
+                            ((Handler) key.attachment()).onReadable();
+                        }
+                        catch (RuntimeException e) {
+                            logger.log(Level.WARNING,
+                                       this.log.msg("channel handler failed with exception - " +
+                                                    e.getClass().getName() + ":" + e.getMessage()),
+                                       e);
+                        }
+                    }
+                }
+            }
+        }
+        catch (ClosedSelectorException e) {
+            // Stopped
+        }
+        catch (IOException e) {
+            logger.severe(this.log.msg("select operation failed with exception - " +
+                                       e.getClass().getName() + ":" + e.getMessage()));
+        }
+        finally {
+            closeSelector();
+        }
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.msg("exiting selector loop"));
+        }
+    }
+
+    private void closeSelector() {
+        try {
+            this.selector.close();
+        }
+        catch (IOException e) {
+            logger.fine(this.log.msg("attempt to close selector failed with exception - " +
+                                     e.getClass().getName() + ":" + e.getMessage()));
+        }
+    }
+
+}
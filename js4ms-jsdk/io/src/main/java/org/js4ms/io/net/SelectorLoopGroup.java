@@ -0,0 +1,124 @@
+package org.js4ms.io.net;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SelectorLoopGroup.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Log;
+
+
+
+/**
+ * A fixed set of {@link SelectorLoop} threads that share the work of servicing a
+ * large number of non-blocking channels.
+ * Each new channel is assigned to the loop that currently has the fewest
+ * registrations, so the number of threads does not grow with the number of channels.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class SelectorLoopGroup {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The logger used to generate logging messages produced by instances of this class.
+     */
+    public static final Logger logger = Logger.getLogger(SelectorLoopGroup.class.getName());
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private final Log log = new Log(this);
+
+    private final SelectorLoop[] loops;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * @param name
+     *            The prefix used to name the loop threads.
+     * @param size
+     *            The number of loop threads.
+     * @throws IOException
+     *             A selector could not be opened.
+     */
+    public SelectorLoopGroup(final String name, final int size) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoopGroup.SelectorLoopGroup", name, size));
+        }
+
+        if (size < 1) {
+            throw new IllegalArgumentException("group size must be greater than zero");
+        }
+
+        this.loops = new SelectorLoop[size];
+        try {
+            for (int i = 0; i < size; i++) {
+                this.loops[i] = new SelectorLoop(name + " " + i);
+            }
+        }
+        catch (IOException e) {
+            stop();
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the number of loop threads in the group.
+     */
+    public int size() {
+        return this.loops.length;
+    }
+
+    /**
+     * Returns the loop that currently has the fewest registered channels.
+     */
+    public SelectorLoop next() {
+        SelectorLoop next = this.loops[0];
+        for (int i = 1; i < this.loops.length; i++) {
+            if (this.loops[i].getRegistrationCount() < next.getRegistrationCount()) {
+                next = this.loops[i];
+            }
+        }
+        return next;
+    }
+
+    /**
+     * Stops all of the loop threads.
+     */
+    public void stop() {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(this.log.entry("SelectorLoopGroup.stop"));
+        }
+
+        for (SelectorLoop loop : this.loops) {
+            if (loop != null) {
+                loop.stop();
+            }
+        }
+    }
+
+}
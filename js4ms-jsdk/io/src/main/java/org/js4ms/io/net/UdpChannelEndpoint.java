@@ -0,0 +1,609 @@
+package org.js4ms.io.net;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * UdpChannelEndpoint.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.pool.ByteBufferPool;
+
+
+/**
+ * A {@link UdpEndpoint} implementation that uses a non-blocking {@link DatagramChannel}
+ * to provide transport.
+ * Datagrams are received into recycled buffers drawn from a bounded
+ * {@link ByteBufferPool}. Each {@link UdpDatagram} returned by {@link #receive(int)}
+ * holds a reference-counted {@link org.js4ms.io.buffer.PooledBuffer PooledBuffer} that
+ * is returned to the pool when the last reference is released
+ * (see {@link UdpDatagram#release()}). A {@link org.js4ms.io.channel.ChannelPump
+ * ChannelPump} releases each datagram once the downstream output channel has
+ * returned from its send call, and queued channels retain the datagrams they hold.
+ * <p>
+ * Receive timeouts are implemented using a private {@link Selector}, so unlike
+ * {@link UdpSocketEndpoint} no socket option needs to be changed on each receive.
+ * <p>
+ * The channel never blocks, so a send made while the socket send buffer is full
+ * waits on a second private selector for the channel to become writable, up to the
+ * time allowed by the caller. A datagram that still cannot be sent is discarded and
+ * counted (see {@link #getSendDropCount()}).
+ * 
+ * @author Gregory Bumgardner (gbumgard)
+ */
+public final class UdpChannelEndpoint
+                implements UdpEndpoint {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    public static final Logger logger = Logger.getLogger(UdpChannelEndpoint.class.getName());
+
+    /**
+     * Maximum UDP payload size for UDP over IPv4.
+     */
+    public static final int MAX_DATAGRAM_SIZE = 65507;
+
+    /**
+     * Default receive buffer size.
+     */
+    public static final int DEFAULT_BUFFER_SIZE = 8192;
+
+    /**
+     * Default number of receive buffers retained by an endpoint buffer pool.
+     */
+    public static final int DEFAULT_POOL_CAPACITY = 256;
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    protected final Object receiveLock = new Object();
+
+    protected final DatagramChannel channel;
+
+    protected final Selector selector;
+
+    protected final Object sendLock = new Object();
+
+    /**
+     * The selector used to wait for room in the socket send buffer.
+     * Opened on first use by a sender holding the send lock.
+     */
+    private volatile Selector writeSelector = null;
+
+    private final AtomicLong sendDropCount = new AtomicLong();
+
+    protected final ByteBufferPool bufferPool;
+
+    protected final String ObjectId = Logging.identify(this);
+
+    protected InetSocketAddress localHostBinding;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an endpoint bound to the specified port that receives datagrams into
+     * direct buffers drawn from a private pool.
+     * 
+     * @param port
+     * @throws IOException
+     */
+    public UdpChannelEndpoint(final int port) throws IOException {
+        this(new InetSocketAddress(port));
+    }
+
+    /**
+     * Constructs an endpoint bound to the specified local address that receives
+     * datagrams into direct buffers drawn from a private pool.
+     * 
+     * @param localHostBinding
+     * @throws IOException
+     */
+    public UdpChannelEndpoint(final InetSocketAddress localHostBinding) throws IOException {
+        this(localHostBinding, new ByteBufferPool(DEFAULT_POOL_CAPACITY, DEFAULT_BUFFER_SIZE, true));
+    }
+
+    /**
+     * Constructs an endpoint bound to the specified local address that receives
+     * datagrams into buffers drawn from the specified pool.
+     * The pool may be shared by several endpoints.
+     * 
+     * @param localHostBinding
+     * @param bufferPool
+     * @throws IOException
+     */
+    public UdpChannelEndpoint(final InetSocketAddress localHostBinding,
+                              final ByteBufferPool bufferPool) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.UdpChannelEndpoint", Logging.address(localHostBinding),
+                                          bufferPool));
+        }
+
+        this.bufferPool = bufferPool;
+        this.channel = DatagramChannel.open();
+        try {
+            this.channel.socket().bind(localHostBinding);
+            this.channel.configureBlocking(false);
+            this.selector = Selector.open();
+            this.channel.register(this.selector, SelectionKey.OP_READ);
+        }
+        catch (IOException e) {
+            this.channel.close();
+            throw e;
+        }
+
+        this.localHostBinding = (InetSocketAddress) this.channel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Connects to the remote host address to eliminate the address security check
+     * that occurs for each channel I/O operation when a channel is not connected.
+     * 
+     * @param remoteHost
+     * @param remotePort
+     * @throws IOException
+     */
+    public void connect(final InetAddress remoteHost, final int remotePort) throws IOException {
+        connect(new InetSocketAddress(remoteHost, remotePort));
+    }
+
+    /**
+     * Connects to the remote host address to eliminate the address security check
+     * that occurs for each channel I/O operation when a channel is not connected.
+     * 
+     * @param remoteSocketAddress
+     * @throws IOException
+     */
+    public void connect(final InetSocketAddress remoteSocketAddress) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.connect", Logging.address(remoteSocketAddress)));
+        }
+
+        if (this.channel.isConnected()) {
+            this.channel.disconnect();
+        }
+        this.channel.connect(remoteSocketAddress);
+    }
+
+    /**
+     * @throws IOException
+     */
+    public void disconnect() throws IOException {
+        this.channel.disconnect();
+    }
+
+    @Override
+    public void close(boolean isCloseAll) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.close", isCloseAll));
+        }
+
+        // Closing the selectors wakes up any thread blocked in receive() or send()
+        this.selector.close();
+        // The send lock is not taken here since a sender waiting for room holds it
+        Selector writeSelector = this.writeSelector;
+        if (writeSelector != null) {
+            writeSelector.close();
+        }
+        this.channel.close();
+    }
+
+    /**
+     * Gets the non-blocking channel used by this endpoint.
+     * The channel may be registered with a {@link SelectorLoop} so that a shared
+     * thread can call {@link #poll(List, int)} when datagrams are available.
+     */
+    public DatagramChannel getChannel() {
+        return this.channel;
+    }
+
+    /**
+     * Gets the number of datagrams discarded because the socket send buffer remained
+     * full for the time allowed by the send call.
+     */
+    public long getSendDropCount() {
+        return this.sendDropCount.get();
+    }
+
+    /**
+     * Gets the buffer pool used to supply receive buffers.
+     */
+    public ByteBufferPool getBufferPool() {
+        return this.bufferPool;
+    }
+
+    /**
+     * Waits to receive a datagram from the channel.
+     * The payload of the returned datagram is backed by a pooled buffer -
+     * the caller must call {@link UdpDatagram#release()} once it is done with the
+     * datagram so the buffer can be recycled.
+     * 
+     * @param milliseconds
+     *            The amount of time to allow for the receive operation to complete.
+     *            A value of zero results in an infinite timeout.
+     * @return A new UdpDatagram instance. The destination address and port is the one
+     *         used to construct the end-point and not that of the actual datagram.
+     * @throws IOException
+     *             The receive operation failed because there was an IO error,
+     *             the receive timed out or the endpoint was closed.
+     */
+    @Override
+    public final UdpDatagram receive(final int milliseconds) throws IOException, InterruptedException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.receive", milliseconds));
+        }
+
+        ByteBuffer buffer = this.bufferPool.acquire();
+
+        InetSocketAddress sourceAddress;
+
+        // Only allow one receiver thread at a time to use the selector
+        synchronized (this.receiveLock) {
+            try {
+                sourceAddress = receiveNow(buffer);
+                if (sourceAddress == null) {
+                    long timeout = milliseconds;
+                    long deadline = milliseconds == 0 ? 0 : System.currentTimeMillis() + milliseconds;
+                    while (sourceAddress == null) {
+                        if (Thread.interrupted()) {
+                            throw new InterruptedException();
+                        }
+                        this.selector.select(timeout);
+                        this.selector.selectedKeys().clear();
+                        sourceAddress = receiveNow(buffer);
+                        if (sourceAddress == null && deadline != 0) {
+                            timeout = deadline - System.currentTimeMillis();
+                            if (timeout <= 0) {
+                                throw new SocketTimeoutException("receive operation timed out");
+                            }
+                        }
+                    }
+                }
+            }
+            catch (ClosedChannelException e) {
+                this.bufferPool.release(buffer);
+                throw new InterruptedIOException("endpoint closed");
+            }
+            catch (ClosedSelectorException e) {
+                this.bufferPool.release(buffer);
+                throw new InterruptedIOException("endpoint closed");
+            }
+            catch (SocketTimeoutException e) {
+                this.bufferPool.release(buffer);
+                throw e;
+            }
+            catch (IOException e) {
+                this.bufferPool.release(buffer);
+                logger.warning(ObjectId + " channel receive failed with an IO exception - " + e.getClass().getSimpleName() + ":"
+                               + e.getMessage());
+                throw e;
+            }
+            catch (InterruptedException e) {
+                this.bufferPool.release(buffer);
+                throw e;
+            }
+        }
+
+        buffer.flip();
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(ObjectId +
+                         " received datagram packet from " +
+                         Logging.address(sourceAddress) +
+                         " length=" + buffer.limit());
+        }
+
+        UdpDatagram datagram = new UdpDatagram(sourceAddress, getLocalHostBinding(sourceAddress), buffer);
+        datagram.bind(this.bufferPool, buffer);
+        return datagram;
+    }
+
+    /**
+     * Waits to receive one datagram from the channel and then continues to drain
+     * datagrams from the channel without blocking until no datagram is available or
+     * the maximum number of datagrams has been received.
+     * The receive lock is acquired once for the entire batch.
+     * Each datagram in the batch holds a pooled buffer and must be released by the
+     * caller.
+     * 
+     * @param datagrams
+     *            The list that will receive the datagrams.
+     * @param maxCount
+     *            The maximum number of datagrams to receive.
+     * @param milliseconds
+     *            The amount of time to allow for the first datagram to arrive.
+     *            A value of zero results in an infinite timeout.
+     * @return The number of datagrams added to the list.
+     * @throws IOException
+     *             The receive operation failed because there was an IO error,
+     *             the receive timed out or the endpoint was closed.
+     */
+    @Override
+    public final int receive(final List<UdpDatagram> datagrams,
+                             final int maxCount,
+                             final int milliseconds) throws IOException, InterruptedException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.receive", datagrams, maxCount, milliseconds));
+        }
+
+        synchronized (this.receiveLock) {
+            datagrams.add(receive(milliseconds));
+            int count = 1;
+            if (maxCount > 1) {
+                try {
+                    count += poll(datagrams, maxCount - 1);
+                }
+                catch (IOException e) {
+                    // Report the failure on the next receive call
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Drains datagrams from the channel without blocking until no datagram is
+     * available or the maximum number of datagrams has been received.
+     * This method is typically called by a {@link SelectorLoop.Handler} once the
+     * channel returned by {@link #getChannel()} has been reported as readable.
+     * Each datagram holds a pooled buffer and should be released by the caller once
+     * its content is no longer needed.
+     * 
+     * @param datagrams
+     *            The list that will receive the datagrams.
+     * @param maxCount
+     *            The maximum number of datagrams to receive.
+     * @return The number of datagrams added to the list. May be zero.
+     * @throws IOException
+     *             The receive operation failed before any datagram was received
+     *             because there was an IO error or the endpoint was closed.
+     */
+    public final int poll(final List<UdpDatagram> datagrams, final int maxCount) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.poll", datagrams, maxCount));
+        }
+
+        synchronized (this.receiveLock) {
+            int count = 0;
+            while (count < maxCount) {
+                ByteBuffer buffer = this.bufferPool.acquire();
+                InetSocketAddress sourceAddress;
+                try {
+                    sourceAddress = receiveNow(buffer);
+                }
+                catch (IOException e) {
+                    this.bufferPool.release(buffer);
+                    if (count == 0) {
+                        throw e;
+                    }
+                    // Report the failure on the next receive call
+                    break;
+                }
+                if (sourceAddress == null) {
+                    this.bufferPool.release(buffer);
+                    break;
+                }
+                buffer.flip();
+                UdpDatagram datagram = new UdpDatagram(sourceAddress, getLocalHostBinding(sourceAddress), buffer);
+                datagram.bind(this.bufferPool, buffer);
+                datagrams.add(datagram);
+                count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Returns a local address of the same type as the datagram source address.
+     * Workaround for situation where socket binding address and packet source address
+     * are not of the same type (IPv4 vs. IPv6).
+     * 
+     * @throws IOException
+     */
+    private InetSocketAddress getLocalHostBinding(final InetSocketAddress sourceAddress) throws IOException {
+        if (!sourceAddress.getAddress().getClass().equals(this.localHostBinding.getAddress().getClass())) {
+            if (this.localHostBinding.getAddress().isAnyLocalAddress()) {
+                this.localHostBinding = new InetSocketAddress(InetAddress.getByAddress(new byte[sourceAddress.getAddress()
+                                .getAddress().length]), this.localHostBinding.getPort());
+            }
+        }
+        return this.localHostBinding;
+    }
+
+    /**
+     * Performs a non-blocking receive into the specified buffer.
+     * Connected channels are read directly to avoid construction of a new source
+     * address for each datagram.
+     * 
+     * @return The datagram source address or <code>null</code> if no datagram was
+     *         available.
+     * @throws IOException
+     */
+    private InetSocketAddress receiveNow(final ByteBuffer buffer) throws IOException {
+        if (this.channel.isConnected()) {
+            return this.channel.read(buffer) > 0 ? (InetSocketAddress) this.channel.socket().getRemoteSocketAddress() : null;
+        }
+        else {
+            return (InetSocketAddress) this.channel.receive(buffer);
+        }
+    }
+
+    /**
+     * Sends the datagram payload to the destination address and port specified in the
+     * datagram. Direct and heap payload buffers are both supported.
+     * 
+     * @param datagram
+     *            The UdpDatagram whose payload will be sent.
+     * @param milliseconds
+     *            The amount of time to wait for room in the socket send buffer.
+     *            The datagram is discarded and counted if it cannot be sent in time.
+     * @throws IOException
+     *             The send operation failed because there was an IO error, the send was
+     *             interrupted or the endpoint was closed.
+     */
+    @Override
+    public final void send(final UdpDatagram datagram, final int milliseconds) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.send", datagram, milliseconds));
+        }
+
+        ByteBuffer payload = datagram.getPayload();
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine(ObjectId + " sending datagram to " + Logging.address(datagram.getDestinationSocketAddress())
+                        + " length=" + payload.limit());
+        }
+
+        send(datagram, System.currentTimeMillis() + milliseconds);
+    }
+
+    /**
+     * Sends the payload of each datagram in the list to the destination address and
+     * port specified in that datagram.
+     * 
+     * @param datagrams
+     *            The datagrams to send.
+     * @param milliseconds
+     *            The amount of time to wait for room in the socket send buffer for the
+     *            entire batch. Datagrams that cannot be sent in time are discarded and
+     *            counted.
+     * @throws IOException
+     *             The send operation failed because there was an IO error, the send was
+     *             interrupted or the endpoint was closed.
+     */
+    @Override
+    public final void send(final List<UdpDatagram> datagrams, final int milliseconds) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpChannelEndpoint.send", datagrams, milliseconds));
+        }
+
+        long deadline = System.currentTimeMillis() + milliseconds;
+        for (UdpDatagram datagram : datagrams) {
+            send(datagram, deadline);
+        }
+    }
+
+    /**
+     * Sends a datagram, waiting until the deadline for room in the socket send buffer.
+     * 
+     * @param datagram
+     *            The datagram to send.
+     * @param deadline
+     *            The time at which the datagram is discarded if it has not been sent.
+     */
+    private void send(final UdpDatagram datagram, final long deadline) throws IOException {
+        ByteBuffer payload = datagram.getPayload();
+        if (transmit(datagram, payload)) {
+            return;
+        }
+        synchronized (this.sendLock) {
+            try {
+                if (this.writeSelector == null) {
+                    Selector writeSelector = Selector.open();
+                    try {
+                        this.channel.register(writeSelector, SelectionKey.OP_WRITE);
+                    }
+                    catch (IOException e) {
+                        writeSelector.close();
+                        throw e;
+                    }
+                    this.writeSelector = writeSelector;
+                }
+                while (!transmit(datagram, payload)) {
+                    long timeout = deadline - System.currentTimeMillis();
+                    if (timeout <= 0) {
+                        this.sendDropCount.incrementAndGet();
+                        if (logger.isLoggable(Level.FINE)) {
+                            logger.fine(ObjectId + " discarded datagram to " +
+                                        Logging.address(datagram.getDestinationSocketAddress()) +
+                                        " - socket send buffer is full");
+                        }
+                        return;
+                    }
+                    if (Thread.currentThread().isInterrupted()) {
+                        throw new InterruptedIOException("send interrupted");
+                    }
+                    this.writeSelector.select(timeout);
+                    this.writeSelector.selectedKeys().clear();
+                }
+            }
+            catch (ClosedSelectorException e) {
+                throw new InterruptedIOException("endpoint closed");
+            }
+        }
+    }
+
+    /**
+     * Attempts to send a datagram without waiting.
+     * 
+     * @return <code>true</code> if the datagram was sent, or <code>false</code> if the
+     *         socket send buffer is full.
+     */
+    private boolean transmit(final UdpDatagram datagram, final ByteBuffer payload) throws IOException {
+        int length = payload.remaining();
+        int count;
+        if (this.channel.isConnected()) {
+            count = this.channel.write(payload);
+        }
+        else {
+            count = this.channel.send(payload, datagram.getDestinationSocketAddress());
+        }
+        // An empty datagram is always reported as zero bytes sent
+        return count > 0 || length == 0;
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public final InetSocketAddress getLocalSocketAddress() {
+        return (InetSocketAddress) this.channel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * @return
+     */
+    @Override
+    public final InetSocketAddress getRemoteSocketAddress() {
+        return (InetSocketAddress) this.channel.socket().getRemoteSocketAddress();
+    }
+}
@@ -35,6 +35,10 @@ import java.util.logging.Logger;
 
 import org.js4ms.common.util.logging.LoggableBase;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.pool.ByteBufferPool;
+import org.js4ms.io.buffer.PooledBuffer;
+import org.js4ms.io.buffer.SizedMessage;
+import org.js4ms.io.channel.ReferenceCountedMessage;
 
 
 /**
@@ -43,7 +47,30 @@ import org.js4ms.common.util.logging.Logging;
  * @author Gregory Bumgardner (gbumgard)
  */
 public final class UdpDatagram
-                extends LoggableBase {
+                extends LoggableBase
+                implements ReferenceCountedMessage, SizedMessage {
+
+    /*-- Inner Classes ------------------------------------------------------*/
+
+    /**
+     * Interface exposed by objects that verify the checksum of a received datagram
+     * on behalf of a consumer. A receiver that does not verify the checksum as the
+     * datagram arrives may attach a checksum check to the datagram so the consumer
+     * can request verification by calling {@link UdpDatagram#verifyChecksum()}.
+     */
+    public interface ChecksumCheck {
+
+        /**
+         * Verifies the checksum carried by the UDP header of a datagram.
+         * 
+         * @param datagram
+         *            The datagram.
+         * @param checksum
+         *            The checksum value found in the UDP header.
+         * @return <code>true</code> if the checksum is valid.
+         */
+        boolean verify(UdpDatagram datagram, int checksum);
+    }
 
     /*-- Static Variables ---------------------------------------------------*/
 
@@ -150,6 +177,22 @@ public final class UdpDatagram
 
     ByteBuffer payload;
 
+    /**
+     * The reference-counted pooled buffer that backs the payload, if any.
+     * Set by endpoints that receive datagrams into recycled buffers.
+     */
+    PooledBuffer pooledBuffer = null;
+
+    /**
+     * The object used to verify the datagram checksum on request, if verification
+     * was deferred by the receiver.
+     */
+    private ChecksumCheck checksumCheck = null;
+
+    private int checksum;
+
+    private boolean isChecksumValid = true;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -333,9 +376,143 @@ public final class UdpDatagram
     private void logState(final Logger logger, final Level level) {
         logger.log(level,this.log.msg(": source=" + Logging.address(getSourceAddress()) + ":" + getSourcePort()));
         logger.log(level,this.log.msg(": destination=" + Logging.address(getDestinationAddress()) + ":" + getDestinationPort()));
-        logger.log(level,this.log.msg(": payload buffer=" + this.payload.array() +
-                                 " offset=" + this.payload.arrayOffset() +
-                                 " limit=" + this.payload.limit()));
+        if (this.payload.hasArray()) {
+            logger.log(level,this.log.msg(": payload buffer=" + this.payload.array() +
+                                     " offset=" + this.payload.arrayOffset() +
+                                     " limit=" + this.payload.limit()));
+        }
+        else {
+            logger.log(level,this.log.msg(": payload buffer=direct limit=" + this.payload.limit()));
+        }
+    }
+
+    /**
+     * Binds this datagram to the pooled buffer that backs its payload.
+     * The datagram takes ownership of the first reference to the buffer.
+     * The buffer is returned to the pool when the last reference is released.
+     * 
+     * @param pool
+     *            The pool that supplied the buffer.
+     * @param buffer
+     *            The buffer that backs the datagram payload.
+     */
+    void bind(final ByteBufferPool pool, final ByteBuffer buffer) {
+        this.pooledBuffer = new PooledBuffer(pool, buffer);
+    }
+
+    /**
+     * Adds a reference to a pooled buffer and binds this datagram to it.
+     * Used when this datagram is constructed from a payload that shares the buffer
+     * backing another datagram, so that the buffer is not recycled while either datagram
+     * remains in use. The reference is released by {@link #release()}.
+     * 
+     * @param buffer
+     *            The pooled buffer that backs the datagram payload.
+     *            May be <code>null</code>, in which case this method has no effect.
+     */
+    public void attach(final PooledBuffer buffer) {
+        if (buffer != null) {
+            this.pooledBuffer = buffer.retain();
+        }
+    }
+
+    /**
+     * Gets the pooled buffer that backs the datagram payload.
+     * 
+     * @return The pooled buffer or <code>null</code> if the payload is not pooled.
+     */
+    @Override
+    public PooledBuffer getPooledBuffer() {
+        return this.pooledBuffer;
+    }
+
+    /**
+     * Indicates whether the datagram payload is backed by a pooled buffer that will
+     * be recycled when the datagram is released.
+     */
+    public boolean isPooled() {
+        return this.pooledBuffer != null;
+    }
+
+    /**
+     * Adds a reference to the pooled buffer that backs the payload, if any.
+     */
+    @Override
+    public void retain() {
+        PooledBuffer buffer = this.pooledBuffer;
+        if (buffer != null) {
+            buffer.retain();
+        }
+    }
+
+    /**
+     * Releases a reference to the pooled buffer that backs the payload, if any.
+     * The buffer is returned to the pool when the last reference is released.
+     * The payload must not be accessed once a consumer has released the datagram.
+     * Consumers that must keep the payload without holding a reference should use
+     * {@link #copyPayload()}.
+     */
+    @Override
+    public void release() {
+        PooledBuffer buffer = this.pooledBuffer;
+        if (buffer != null) {
+            buffer.release();
+        }
+    }
+
+    /**
+     * Gets the number of bytes held in memory by this datagram. A datagram backed by a
+     * pooled buffer holds the entire buffer until it is released. The buffer may be
+     * shared with other datagrams, so a memory budget charges it once for the buffer
+     * (see {@link #getPooledBuffer()}).
+     */
+    @Override
+    public int getMemorySize() {
+        PooledBuffer buffer = this.pooledBuffer;
+        return buffer != null ? buffer.getBuffer().capacity() : this.payload.limit();
+    }
+
+    /**
+     * Prevents the pooled buffer that backs the payload from being returned to the
+     * pool. Used when the payload has been handed to consumers that do not track
+     * references.
+     */
+    public void detach() {
+        PooledBuffer buffer = this.pooledBuffer;
+        if (buffer != null) {
+            buffer.detach();
+        }
+    }
+
+    /**
+     * Defers verification of the checksum carried by the UDP header of this datagram
+     * until a consumer calls {@link #verifyChecksum()}.
+     * 
+     * @param check
+     *            The object that will verify the checksum.
+     * @param checksum
+     *            The checksum value found in the UDP header.
+     */
+    public void deferChecksum(final ChecksumCheck check, final int checksum) {
+        this.checksumCheck = check;
+        this.checksum = checksum;
+    }
+
+    /**
+     * Verifies the datagram checksum if verification was deferred by the receiver.
+     * Verification is performed at most once - subsequent calls return the first result.
+     * Datagrams whose checksum was verified on receipt, or not verified at all, are
+     * reported as valid. A pooled datagram must be verified before it is released.
+     * 
+     * @return <code>true</code> if the checksum is valid or was not deferred.
+     */
+    public boolean verifyChecksum() {
+        ChecksumCheck check = this.checksumCheck;
+        if (check != null) {
+            this.checksumCheck = null;
+            this.isChecksumValid = check.verify(this, this.checksum);
+        }
+        return this.isChecksumValid;
     }
 
     /**
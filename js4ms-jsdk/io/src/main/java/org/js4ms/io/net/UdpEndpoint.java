@@ -25,6 +25,8 @@ package org.js4ms.io.net;
 
 import java.net.InetSocketAddress;
 
+import org.js4ms.io.channel.BatchMessageInput;
+import org.js4ms.io.channel.BatchMessageOutput;
 import org.js4ms.io.channel.DuplexChannel;
 
 
@@ -33,11 +35,13 @@ import org.js4ms.io.channel.DuplexChannel;
  * A {@link DuplexChannel} used to send and receive {@link UdpDatagram} objects.
  * Classes that implement this interface typically provide some form of UDP transport,
  * using regular sockets or some form of tunneling protocol.
+ * Endpoints also support batch receive and send operations that allow callers
+ * to move several datagrams per call.
  * 
  * @author Gregory Bumgardner (gbumgard)
  */
 public interface UdpEndpoint
-                extends DuplexChannel<UdpDatagram> {
+                extends DuplexChannel<UdpDatagram>, BatchMessageInput<UdpDatagram>, BatchMessageOutput<UdpDatagram> {
 
     InetSocketAddress getLocalSocketAddress();
 
@@ -24,7 +24,9 @@ package org.js4ms.io.net;
 
 
 import java.io.IOException;
+import java.util.List;
 
+import org.js4ms.io.channel.BatchMessageInput;
 import org.js4ms.io.channel.InputChannel;
 
 
@@ -36,7 +38,7 @@ import org.js4ms.io.channel.InputChannel;
  * @author Gregory Bumgardner (gbumgard)
  */
 public final class UdpInputChannel
-                implements InputChannel<UdpDatagram> {
+                implements InputChannel<UdpDatagram>, BatchMessageInput<UdpDatagram> {
 
     /*-- Member Variables ----------------------------------------------------*/
 
@@ -59,6 +61,13 @@ public final class UdpInputChannel
         return endpoint.receive(milliseconds);
     }
 
+    @Override
+    public final int receive(final List<UdpDatagram> datagrams,
+                             final int maxCount,
+                             final int milliseconds) throws IOException, InterruptedException {
+        return endpoint.receive(datagrams, maxCount, milliseconds);
+    }
+
     /**
      * Closes this channel. This implementation does nothing.
      * Call {@link UdpEndpoint#close()} to close the endpoint.
@@ -24,7 +24,9 @@ package org.js4ms.io.net;
 
 
 import java.io.IOException;
+import java.util.List;
 
+import org.js4ms.io.channel.BatchMessageOutput;
 import org.js4ms.io.channel.OutputChannel;
 
 
@@ -36,7 +38,7 @@ import org.js4ms.io.channel.OutputChannel;
  * @author Gregory Bumgardner (gbumgard)
  */
 public final class UdpOutputChannel
-                implements OutputChannel<UdpDatagram> {
+                implements OutputChannel<UdpDatagram>, BatchMessageOutput<UdpDatagram> {
 
     /*-- Member Variables ----------------------------------------------------*/
 
@@ -59,6 +61,11 @@ public final class UdpOutputChannel
         this.endpoint.send(message, milliseconds);
     }
 
+    @Override
+    public final void send(final List<UdpDatagram> messages, final int milliseconds) throws IOException, InterruptedException {
+        this.endpoint.send(messages, milliseconds);
+    }
+
     /**
      * Closes this channel. This implementation does nothing.
      * Call {@link UdpEndpoint#close()} to close the UDP endpoint.
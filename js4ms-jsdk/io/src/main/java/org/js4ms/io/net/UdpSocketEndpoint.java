@@ -28,7 +28,10 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
+import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -47,6 +50,8 @@ public final class UdpSocketEndpoint
 
     public static final Logger logger = Logger.getLogger(UdpSocketEndpoint.class.getName());
 
+    private static final byte[] EMPTY = new byte[0];
+
     /*-- Member Variables ---------------------------------------------------*/
 
     protected final Object receiveLock = new Object();
@@ -57,6 +62,18 @@ public final class UdpSocketEndpoint
 
     protected InetSocketAddress localHostBinding;
 
+    /**
+     * The receive timeout most recently applied to the socket.
+     * Used to avoid resetting the socket option on each receive.
+     */
+    private int receiveTimeout = -1;
+
+    /**
+     * The receive timeout used to drain the socket in a batch receive, or zero if a
+     * batch receive returns after the first datagram.
+     */
+    private volatile int drainTimeout = 0;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -124,6 +141,32 @@ public final class UdpSocketEndpoint
         this.socket.connect(remoteSocketAddress);
     }
 
+    /**
+     * Sets the receive timeout used to drain additional datagrams from the socket in a
+     * batch receive. A {@link DatagramSocket} has no non-blocking mode, so draining
+     * requires a short receive timeout to detect an empty receive buffer. Each batch
+     * that is not filled waits for this timeout to expire and changes the socket
+     * timeout twice, so draining is disabled by default.
+     * 
+     * @param milliseconds
+     *            The drain timeout, or zero to disable draining.
+     */
+    public void setDrainTimeout(final int milliseconds) {
+        if (milliseconds < 0) {
+            throw new IllegalArgumentException("drain timeout must not be negative");
+        }
+        this.drainTimeout = milliseconds;
+    }
+
+    /**
+     * Gets the receive timeout used to drain the socket in a batch receive.
+     * 
+     * @return The drain timeout or zero if draining is disabled.
+     */
+    public int getDrainTimeout() {
+        return this.drainTimeout;
+    }
+
     /**
      * @throws IOException
      */
@@ -160,6 +203,88 @@ public final class UdpSocketEndpoint
             logger.finer(Logging.entering(ObjectId, "UdpSocketEndpoint.receive", milliseconds));
         }
 
+        // Only allow one receiver thread at a time to access the socket to preserve the
+        // timeout setting
+        synchronized (this.receiveLock)
+        {
+            setReceiveTimeout(milliseconds);
+            return receiveDatagram();
+        }
+    }
+
+    /**
+     * Waits to receive one datagram from the socket. If a drain timeout has been set
+     * using {@link #setDrainTimeout(int)}, the method then continues to drain
+     * datagrams from the socket until no datagram arrives within the drain timeout or
+     * the maximum number of datagrams has been received. Otherwise the method returns
+     * after the first datagram without changing the socket timeout.
+     * The receive lock is acquired once for the entire batch.
+     * <p>
+     * Use {@link UdpChannelEndpoint} for a true non-blocking drain.
+     * 
+     * @param datagrams
+     *            The list that will receive the datagrams.
+     * @param maxCount
+     *            The maximum number of datagrams to receive.
+     * @param milliseconds
+     *            The amount of time to allow for the first datagram to arrive.
+     * @return The number of datagrams added to the list.
+     * @throws IOException
+     *             The receive operation failed because there was an IO error,
+     *             the receive was interrupted or the endpoint was closed.
+     */
+    @Override
+    public final int receive(final List<UdpDatagram> datagrams, final int maxCount, final int milliseconds) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpSocketEndpoint.receive", datagrams, maxCount, milliseconds));
+        }
+
+        synchronized (this.receiveLock)
+        {
+            setReceiveTimeout(milliseconds);
+            datagrams.add(receiveDatagram());
+            int count = 1;
+            int drainTimeout = this.drainTimeout;
+            if (count < maxCount && drainTimeout > 0) {
+                setReceiveTimeout(drainTimeout);
+                try {
+                    while (count < maxCount) {
+                        datagrams.add(receiveDatagram());
+                        count++;
+                    }
+                }
+                catch (SocketTimeoutException e) {
+                    // The socket receive buffer has been drained
+                }
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Sets the socket receive timeout if it differs from the current timeout.
+     * Must be called while holding the receive lock.
+     * 
+     * @param milliseconds
+     *            The receive timeout. A value of 0 results in an infinite timeout.
+     * @throws SocketException
+     */
+    private void setReceiveTimeout(final int milliseconds) throws SocketException {
+        if (milliseconds != this.receiveTimeout) {
+            this.socket.setSoTimeout(milliseconds);
+            this.receiveTimeout = milliseconds;
+        }
+    }
+
+    /**
+     * Receives a single datagram using the current socket timeout.
+     * Must be called while holding the receive lock.
+     * 
+     * @throws IOException
+     */
+    private UdpDatagram receiveDatagram() throws IOException {
+
         // TODO max size really is 65507 for UDP over IP
         byte[] buffer = new byte[8192];
         if (logger.isLoggable(Level.FINER)) {
@@ -168,27 +293,21 @@ public final class UdpSocketEndpoint
 
         DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
 
-        // Only allow one receiver thread at a time to access the socket to preserve the
-        // timeout setting
-        synchronized (this.receiveLock)
-        {
-            // Set the timeout prior to starting the receive
-            // A value of 0 results in an infinite timeout.
-            this.socket.setSoTimeout(milliseconds);
-
-            try {
-                this.socket.receive(packet);
-            }
-            catch (IOException e) {
-                logger.warning(ObjectId + " socket receive failed with an IO exception - " + e.getClass().getSimpleName() + ":"
-                            + e.getMessage());
-                throw e;
-            }
-            catch (Exception e) {
-                logger.severe(ObjectId + " socket receive failed with an unexpected exception - " + e.getClass().getSimpleName()
-                            + ":" + e.getMessage());
-                throw new Error(e);
-            }
+        try {
+            this.socket.receive(packet);
+        }
+        catch (SocketTimeoutException e) {
+            throw e;
+        }
+        catch (IOException e) {
+            logger.warning(ObjectId + " socket receive failed with an IO exception - " + e.getClass().getSimpleName() + ":"
+                        + e.getMessage());
+            throw e;
+        }
+        catch (Exception e) {
+            logger.severe(ObjectId + " socket receive failed with an unexpected exception - " + e.getClass().getSimpleName()
+                        + ":" + e.getMessage());
+            throw new Error(e);
         }
 
         if (logger.isLoggable(Level.FINER)) {
@@ -237,21 +356,68 @@ public final class UdpSocketEndpoint
 
         ByteBuffer payload = datagram.getPayload();
 
-        DatagramPacket packet = new DatagramPacket(payload.array(),
-                                                   payload.arrayOffset(),
-                                                   payload.limit(),
-                                                   datagram.getDestinationSocketAddress());
+        DatagramPacket packet = new DatagramPacket(EMPTY, 0, datagram.getDestinationSocketAddress());
+        setData(packet, payload);
 
         if (logger.isLoggable(Level.FINER)) {
-            logger.finer(ObjectId + " datagram payload buffer=" + payload.array() + " offset=" + payload.arrayOffset() + " limit="
-                         + payload.limit() + " remaining=" + payload.remaining());
+            logger.finer(ObjectId + " datagram payload offset=" + packet.getOffset() + " length=" + packet.getLength());
             logger.fine(ObjectId + " sending DatagramPacket to " + Logging.address(datagram.getDestinationSocketAddress())
-                        + " length=" + payload.limit());
+                        + " length=" + packet.getLength());
         }
 
         this.socket.send(packet);
     }
 
+    /**
+     * Sends the payload of each datagram in the list to the destination address and
+     * port specified in that datagram. A single DatagramPacket is reused for the
+     * entire batch.
+     * 
+     * @param datagrams
+     *            The datagrams to send.
+     * @param milliseconds
+     *            The amount of time to allow for the send operation to complete.
+     *            Ignored in this class.
+     * @throws IOException
+     *             The send operation failed because there was an IO error, the send was
+     *             interrupted or the endpoint was closed.
+     */
+    @Override
+    public final void send(final List<UdpDatagram> datagrams, final int milliseconds) throws IOException {
+
+        if (logger.isLoggable(Level.FINER)) {
+            logger.finer(Logging.entering(ObjectId, "UdpSocketEndpoint.send", datagrams, milliseconds));
+        }
+
+        DatagramPacket packet = null;
+
+        for (UdpDatagram datagram : datagrams) {
+            if (packet == null) {
+                packet = new DatagramPacket(EMPTY, 0, datagram.getDestinationSocketAddress());
+            }
+            else {
+                packet.setSocketAddress(datagram.getDestinationSocketAddress());
+            }
+            setData(packet, datagram.getPayload());
+            this.socket.send(packet);
+        }
+    }
+
+    /**
+     * Points a packet at the remaining bytes of a payload buffer. The bytes are copied
+     * if the buffer is not backed by an accessible array, e.g. a direct buffer.
+     */
+    private static void setData(final DatagramPacket packet, final ByteBuffer payload) {
+        if (payload.hasArray()) {
+            packet.setData(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        }
+        else {
+            byte[] data = new byte[payload.remaining()];
+            payload.duplicate().get(data);
+            packet.setData(data);
+        }
+    }
+
     /**
      * @return
      */
@@ -0,0 +1,267 @@
+package org.js4ms.io.buffer;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MemoryBudgetTest.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import junit.framework.TestCase;
+
+import org.js4ms.common.util.pool.ByteBufferPool;
+
+/**
+ * Tests the accounting performed by a {@link MemoryBudget} and the threads that wait on
+ * it for memory.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class MemoryBudgetTest
+                extends TestCase {
+
+    /**
+     * A message whose content is held by a pooled buffer.
+     */
+    static final class PooledMessage
+                    implements SizedMessage {
+
+        final PooledBuffer buffer;
+
+        PooledMessage(final PooledBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int getMemorySize() {
+            return this.buffer.getBuffer().capacity();
+        }
+
+        @Override
+        public PooledBuffer getPooledBuffer() {
+            return this.buffer;
+        }
+    }
+
+    /**
+     * A thread that waits for memory and records the outcome.
+     */
+    static final class Waiter
+                    extends Thread {
+
+        final MemoryBudget.Account account;
+
+        final long bytes;
+
+        final long milliseconds;
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        final AtomicBoolean acquired = new AtomicBoolean();
+
+        volatile boolean isInterrupted = false;
+
+        Waiter(final MemoryBudget.Account account, final long bytes, final long milliseconds) {
+            this.account = account;
+            this.bytes = bytes;
+            this.milliseconds = milliseconds;
+            setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            try {
+                this.acquired.set(this.account.acquire(this.bytes, this.milliseconds));
+            }
+            catch (InterruptedException e) {
+                this.isInterrupted = true;
+            }
+            finally {
+                this.done.countDown();
+            }
+        }
+    }
+
+    private final MemoryBudget budget = new MemoryBudget("test", 1000);
+
+    private final MemoryBudget.Account account = this.budget.getAccount("account");
+
+    /**
+     * Waits until a thread is blocked waiting for memory.
+     */
+    private static void awaitWaiting(final Thread thread) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (thread.getState() != Thread.State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(Thread.State.TIMED_WAITING, thread.getState());
+    }
+
+    public void testTryAcquireRecordsUseAndRejections() {
+        assertTrue(this.account.tryAcquire(600));
+        assertTrue(this.account.tryAcquire(400));
+        assertEquals(0, this.budget.getAvailable());
+        assertFalse(this.account.tryAcquire(1));
+        assertEquals(1, this.account.getRejectedCount());
+        assertEquals(1, this.budget.getRejectedCount());
+
+        this.account.release(600);
+        assertEquals(400, this.budget.getUsed());
+        assertEquals(400, this.account.getUsed());
+        assertEquals(600, this.budget.getAvailable());
+        assertEquals(1000, this.budget.getPeakUsed());
+        assertEquals(1000, this.account.getPeakUsed());
+    }
+
+    public void testAccountsShareBudget() {
+        MemoryBudget.Account other = this.budget.getAccount("other");
+        assertSame(other, this.budget.getAccount("other"));
+        assertTrue(this.account.tryAcquire(700));
+        assertFalse(other.tryAcquire(400));
+        assertTrue(other.tryAcquire(300));
+        assertEquals(300, other.getUsed());
+        assertEquals(1000, this.budget.getUsed());
+    }
+
+    public void testAcquireWaitsForRelease() throws Exception {
+        assertTrue(this.account.tryAcquire(1000));
+        Waiter waiter = new Waiter(this.account, 500, 10000);
+        waiter.start();
+        awaitWaiting(waiter);
+        assertEquals(1, waiter.done.getCount());
+
+        this.account.release(500);
+        assertTrue(waiter.done.await(5, TimeUnit.SECONDS));
+        assertTrue(waiter.acquired.get());
+        assertEquals(1000, this.budget.getUsed());
+        assertEquals(0, this.budget.getRejectedCount());
+    }
+
+    public void testAcquireTimesOut() throws Exception {
+        assertTrue(this.account.tryAcquire(1000));
+        long start = System.currentTimeMillis();
+        assertFalse(this.account.acquire(1, 100));
+        assertTrue(System.currentTimeMillis() - start >= 100);
+        assertEquals(1, this.account.getRejectedCount());
+        assertEquals(1000, this.budget.getUsed());
+
+        // The request that timed out holds no memory
+        this.account.release(1000);
+        assertEquals(0, this.budget.getUsed());
+    }
+
+    public void testSetLimitWakesWaiters() throws Exception {
+        assertTrue(this.account.tryAcquire(1000));
+        Waiter first = new Waiter(this.account, 500, 10000);
+        Waiter second = new Waiter(this.budget.getAccount("other"), 500, 10000);
+        first.start();
+        second.start();
+        awaitWaiting(first);
+        awaitWaiting(second);
+
+        this.budget.setLimit(2000);
+        assertTrue(first.done.await(5, TimeUnit.SECONDS));
+        assertTrue(second.done.await(5, TimeUnit.SECONDS));
+        assertTrue(first.acquired.get());
+        assertTrue(second.acquired.get());
+        assertEquals(2000, this.budget.getUsed());
+    }
+
+    public void testInterruptedWaiter() throws Exception {
+        assertTrue(this.account.tryAcquire(1000));
+        Waiter waiter = new Waiter(this.account, 1, 10000);
+        waiter.start();
+        awaitWaiting(waiter);
+        waiter.interrupt();
+        assertTrue(waiter.done.await(5, TimeUnit.SECONDS));
+        assertTrue(waiter.isInterrupted);
+        assertEquals(1000, this.budget.getUsed());
+
+        // Memory released after the interruption is available to new requests
+        this.account.release(1000);
+        assertTrue(this.account.tryAcquire(1000));
+    }
+
+    public void testSharedBufferChargedOnce() throws Exception {
+        ByteBufferPool pool = new ByteBufferPool(4, 256, false);
+        PooledBuffer buffer = new PooledBuffer(pool);
+        PooledMessage first = new PooledMessage(buffer);
+        PooledMessage second = new PooledMessage(buffer);
+        MemoryBudget.Account other = this.budget.getAccount("other");
+
+        assertTrue(this.account.tryAcquire(first, MemoryBudget.sizeOf(first)));
+        assertTrue(other.tryAcquire(second, MemoryBudget.sizeOf(second)));
+        assertTrue(this.account.acquire(first, MemoryBudget.sizeOf(first), 0));
+        assertEquals(256, this.budget.getUsed());
+        assertEquals(256, this.account.getUsed());
+        assertEquals(0, other.getUsed());
+
+        // The buffer remains charged until the last holder releases it
+        this.account.release(first, MemoryBudget.sizeOf(first));
+        this.account.release(first, MemoryBudget.sizeOf(first));
+        assertEquals(256, this.budget.getUsed());
+        other.release(second, MemoryBudget.sizeOf(second));
+        assertEquals(0, this.budget.getUsed());
+        assertEquals(0, this.account.getUsed());
+
+        try {
+            other.release(second, MemoryBudget.sizeOf(second));
+            fail("buffer discharged twice");
+        }
+        catch (IllegalStateException e) {
+        }
+        buffer.release();
+    }
+
+    public void testSharedBufferRejectedWhenBudgetExhausted() {
+        ByteBufferPool pool = new ByteBufferPool(4, 256, false);
+        PooledBuffer buffer = new PooledBuffer(pool);
+        PooledMessage message = new PooledMessage(buffer);
+        assertTrue(this.account.tryAcquire(900));
+        assertFalse(this.account.tryAcquire(message, MemoryBudget.sizeOf(message)));
+        assertEquals(900, this.budget.getUsed());
+
+        // A failed charge leaves the buffer uncharged
+        this.account.release(900);
+        assertTrue(this.account.tryAcquire(message, MemoryBudget.sizeOf(message)));
+        assertEquals(256, this.budget.getUsed());
+        this.account.release(message, MemoryBudget.sizeOf(message));
+        assertEquals(0, this.budget.getUsed());
+        buffer.release();
+    }
+
+    public void testSizeOf() {
+        assertEquals(10, MemoryBudget.sizeOf(ByteBuffer.allocate(10)));
+        assertEquals(0, MemoryBudget.sizeOf("message"));
+    }
+
+    public void testParseLimit() {
+        assertEquals(MemoryBudget.UNLIMITED, MemoryBudget.parseLimit(null));
+        assertEquals(MemoryBudget.UNLIMITED, MemoryBudget.parseLimit(" "));
+        assertEquals(MemoryBudget.UNLIMITED, MemoryBudget.parseLimit("lots"));
+        assertEquals(512, MemoryBudget.parseLimit("512"));
+        assertEquals(64 * 1024, MemoryBudget.parseLimit("64k"));
+        assertEquals(16L * 1024 * 1024, MemoryBudget.parseLimit(" 16M "));
+        assertEquals(2L * 1024 * 1024 * 1024, MemoryBudget.parseLimit("2g"));
+    }
+}
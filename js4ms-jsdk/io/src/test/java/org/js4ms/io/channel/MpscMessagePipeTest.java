@@ -0,0 +1,136 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * MpscMessagePipeTest.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.js4ms.io.buffer.MemoryBudget;
+
+
+
+/**
+ * Tests for {@link MpscMessagePipe}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class MpscMessagePipeTest
+                extends TestCase {
+
+    public void testOfferFailsWhenFull() {
+        MpscMessagePipe<Integer> pipe = new MpscMessagePipe<Integer>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pipe.offer(i));
+        }
+        assertFalse(pipe.offer(4));
+        for (int i = 0; i < 4; i++) {
+            assertEquals(i, pipe.poll().intValue());
+        }
+        assertNull(pipe.poll());
+        assertEquals(0, pipe.size());
+    }
+
+    public void testOrderPreservedAcrossWrap() {
+        MpscMessagePipe<Integer> pipe = new MpscMessagePipe<Integer>(2);
+        for (int i = 0; i < 50; i++) {
+            assertTrue(pipe.offer(i));
+            assertEquals(i, pipe.poll().intValue());
+        }
+    }
+
+    public void testMemoryChargedUntilReceived() {
+        MemoryBudget budget = new MemoryBudget("test", 1000);
+        MemoryBudget.Account account = budget.getAccount("pipe");
+        MpscMessagePipe<ByteBuffer> pipe = new MpscMessagePipe<ByteBuffer>(8, account);
+        assertTrue(pipe.offer(ByteBuffer.allocate(400)));
+        assertTrue(pipe.offer(ByteBuffer.allocate(400)));
+        assertEquals(800, account.getUsed());
+
+        // The pipe has room but the budget does not
+        assertFalse(pipe.offer(ByteBuffer.allocate(400)));
+        assertEquals(1, account.getRejectedCount());
+        assertEquals(2, pipe.size());
+
+        assertNotNull(pipe.poll());
+        assertEquals(400, account.getUsed());
+        assertTrue(pipe.offer(ByteBuffer.allocate(400)));
+        assertNotNull(pipe.poll());
+        assertNotNull(pipe.poll());
+        assertEquals(0, account.getUsed());
+        assertEquals(0, budget.getUsed());
+    }
+
+    public void testMemoryReturnedWhenFull() {
+        MemoryBudget budget = new MemoryBudget("test", MemoryBudget.UNLIMITED);
+        MemoryBudget.Account account = budget.getAccount("pipe");
+        MpscMessagePipe<ByteBuffer> pipe = new MpscMessagePipe<ByteBuffer>(1, account);
+        assertTrue(pipe.offer(ByteBuffer.allocate(100)));
+        assertFalse(pipe.offer(ByteBuffer.allocate(100)));
+        assertEquals(100, account.getUsed());
+    }
+
+    public void testConcurrentProducers() throws Exception {
+        final int producerCount = 4;
+        final int count = 50000;
+        final MpscMessagePipe<int[]> pipe = new MpscMessagePipe<int[]>(128);
+        final AtomicInteger failures = new AtomicInteger();
+        Thread[] producers = new Thread[producerCount];
+        for (int p = 0; p < producerCount; p++) {
+            final int producer = p;
+            producers[p] = new Thread() {
+
+                @Override
+                public void run() {
+                    try {
+                        for (int i = 0; i < count; i++) {
+                            pipe.send(new int[] {
+                                            producer, i
+                            }, 10000);
+                        }
+                    }
+                    catch (Exception e) {
+                        failures.incrementAndGet();
+                    }
+                }
+            };
+            producers[p].start();
+        }
+
+        // Each producer's messages must arrive exactly once and in the order sent
+        int[] next = new int[producerCount];
+        for (int i = 0; i < producerCount * count; i++) {
+            int[] message = pipe.receive(10000);
+            assertEquals(next[message[0]]++, message[1]);
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+        assertEquals(0, failures.get());
+        assertNull(pipe.poll());
+        for (int p = 0; p < producerCount; p++) {
+            assertEquals(count, next[p]);
+        }
+    }
+}
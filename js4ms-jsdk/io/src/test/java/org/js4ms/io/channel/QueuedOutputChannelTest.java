@@ -0,0 +1,297 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * QueuedOutputChannelTest.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+import org.js4ms.common.util.pool.ByteBufferPool;
+import org.js4ms.io.buffer.BufferLeakDetector;
+import org.js4ms.io.buffer.MemoryBudget;
+import org.js4ms.io.buffer.PooledBuffer;
+import org.js4ms.io.net.UdpDatagram;
+
+/**
+ * Tests that a {@link QueuedOutputChannel} holds a reference to each
+ * {@link ReferenceCountedMessage} it queues and releases it once the message has been
+ * forwarded or discarded, using the {@link BufferLeakDetector} to find unreleased
+ * buffers.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class QueuedOutputChannelTest
+                extends TestCase {
+
+    /**
+     * A downstream channel that blocks until it is opened and records the first byte
+     * of each datagram it forwards.
+     */
+    static final class GatedChannel
+                    implements OutputChannel<UdpDatagram> {
+
+        final CountDownLatch gate = new CountDownLatch(1);
+
+        final CountDownLatch entered = new CountDownLatch(1);
+
+        final StringBuilder received = new StringBuilder();
+
+        @Override
+        public void send(final UdpDatagram message, final int milliseconds) throws InterruptedException {
+            this.entered.countDown();
+            this.gate.await();
+            synchronized (this.received) {
+                this.received.append((char) message.getPayload().get(0));
+            }
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private final ByteBufferPool pool = new ByteBufferPool(16, 64, false);
+
+    @Override
+    protected void setUp() {
+        BufferLeakDetector.reset();
+        BufferLeakDetector.setEnabled(true);
+    }
+
+    @Override
+    protected void tearDown() {
+        BufferLeakDetector.setEnabled(false);
+        BufferLeakDetector.reset();
+    }
+
+    /**
+     * Constructs a datagram that holds the only reference to a pooled buffer whose
+     * first byte is the specified tag.
+     */
+    private UdpDatagram datagram(final char tag) throws Exception {
+        PooledBuffer buffer = new PooledBuffer(this.pool);
+        ByteBuffer payload = buffer.getBuffer();
+        payload.put((byte) tag);
+        payload.flip();
+        UdpDatagram datagram = new UdpDatagram(InetAddress.getLoopbackAddress(), 5000, payload);
+        datagram.attach(buffer);
+        buffer.release();
+        return datagram;
+    }
+
+    private static void awaitNoLeaks() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (BufferLeakDetector.getLeakCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        BufferLeakDetector.checkLeaks();
+    }
+
+    public void testQueuedDatagramsHeldUntilForwarded() throws Exception {
+        GatedChannel downstream = new GatedChannel();
+        QueuedOutputChannel<UdpDatagram> queue = new QueuedOutputChannel<UdpDatagram>(downstream, 8, OverflowPolicy.DROP_NEWEST);
+
+        for (char tag = 'a'; tag <= 'e'; tag++) {
+            UdpDatagram datagram = datagram(tag);
+            queue.send(datagram, 0);
+            // The sender is done with the datagram once the send returns
+            datagram.release();
+        }
+        assertTrue(downstream.entered.await(5, TimeUnit.SECONDS));
+        assertEquals(5, BufferLeakDetector.getLeakCount());
+        assertEquals(0, this.pool.getInactiveCount());
+
+        downstream.gate.countDown();
+        awaitNoLeaks();
+        assertEquals("abcde", downstream.received.toString());
+        assertEquals(5, this.pool.getInactiveCount());
+        queue.stop();
+    }
+
+    public void testEvictedDatagramsReleased() throws Exception {
+        GatedChannel downstream = new GatedChannel();
+        QueuedOutputChannel<UdpDatagram> queue = new QueuedOutputChannel<UdpDatagram>(downstream, 2, OverflowPolicy.DROP_OLDEST);
+
+        UdpDatagram first = datagram('a');
+        queue.send(first, 0);
+        first.release();
+        assertTrue(downstream.entered.await(5, TimeUnit.SECONDS));
+
+        for (char tag = 'b'; tag <= 'f'; tag++) {
+            UdpDatagram datagram = datagram(tag);
+            queue.send(datagram, 0);
+            datagram.release();
+        }
+        // One datagram is being forwarded and two remain queued
+        assertEquals(3, BufferLeakDetector.getLeakCount());
+
+        downstream.gate.countDown();
+        awaitNoLeaks();
+        assertEquals("aef", downstream.received.toString());
+        queue.stop();
+    }
+
+    public void testStopReleasesPendingDatagrams() throws Exception {
+        GatedChannel downstream = new GatedChannel();
+        QueuedOutputChannel<UdpDatagram> queue = new QueuedOutputChannel<UdpDatagram>(downstream, 8, OverflowPolicy.DROP_NEWEST);
+
+        for (char tag = 'a'; tag <= 'd'; tag++) {
+            UdpDatagram datagram = datagram(tag);
+            queue.send(datagram, 0);
+            datagram.release();
+        }
+        assertTrue(downstream.entered.await(5, TimeUnit.SECONDS));
+
+        queue.stop();
+        awaitNoLeaks();
+        assertEquals(0, queue.getPendingCount());
+    }
+
+    /**
+     * Waits until a queue has dropped the specified number of messages.
+     */
+    private static void awaitDropped(final QueuedOutputChannel<?> queue, final long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.getDroppedCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, queue.getDroppedCount());
+    }
+
+    public void testFailedDeliveryCountsUndeliveredMessages() throws Exception {
+        final CountDownLatch gate = new CountDownLatch(1);
+        final CountDownLatch entered = new CountDownLatch(1);
+        QueuedOutputChannel<UdpDatagram> queue = new QueuedOutputChannel<UdpDatagram>(new OutputChannel<UdpDatagram>() {
+
+            @Override
+            public void send(final UdpDatagram message, final int milliseconds) throws IOException, InterruptedException {
+                entered.countDown();
+                gate.await();
+                throw new IOException("consumer failed");
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 8, OverflowPolicy.DROP_NEWEST);
+
+        for (char tag = 'a'; tag <= 'd'; tag++) {
+            UdpDatagram datagram = datagram(tag);
+            queue.send(datagram, 0);
+            datagram.release();
+        }
+        assertTrue(entered.await(5, TimeUnit.SECONDS));
+        gate.countDown();
+        awaitDropped(queue, 4);
+        assertTrue(queue.isDisconnected());
+        assertEquals(0, queue.getDeliveredCount());
+        awaitNoLeaks();
+    }
+
+    public void testStopCountsInterruptedAndPendingMessages() throws Exception {
+        GatedChannel downstream = new GatedChannel();
+        QueuedOutputChannel<UdpDatagram> queue = new QueuedOutputChannel<UdpDatagram>(downstream, 8, OverflowPolicy.DROP_NEWEST);
+
+        for (char tag = 'a'; tag <= 'd'; tag++) {
+            UdpDatagram datagram = datagram(tag);
+            queue.send(datagram, 0);
+            datagram.release();
+        }
+        assertTrue(downstream.entered.await(5, TimeUnit.SECONDS));
+
+        // The message blocked in the consumer is interrupted and the rest are discarded
+        queue.stop();
+        awaitDropped(queue, 4);
+        assertEquals(0, queue.getDeliveredCount());
+        assertEquals(0, queue.getOverflowCount());
+        awaitNoLeaks();
+    }
+
+    public void testFanOutChargesSharedBufferOnce() throws Exception {
+        MemoryBudget.Account account = new MemoryBudget("test", MemoryBudget.UNLIMITED).getAccount("queue");
+        GatedChannel first = new GatedChannel();
+        GatedChannel second = new GatedChannel();
+        QueuedOutputChannel<UdpDatagram> firstQueue = new QueuedOutputChannel<UdpDatagram>(first, 8, OverflowPolicy.DROP_NEWEST, account);
+        QueuedOutputChannel<UdpDatagram> secondQueue = new QueuedOutputChannel<UdpDatagram>(second, 8, OverflowPolicy.DROP_NEWEST, account);
+
+        UdpDatagram datagram = datagram('a');
+        UdpDatagram other = datagram('b');
+        firstQueue.send(datagram, 0);
+        secondQueue.send(datagram, 0);
+        firstQueue.send(other, 0);
+        datagram.release();
+        other.release();
+        assertTrue(first.entered.await(5, TimeUnit.SECONDS));
+        assertTrue(second.entered.await(5, TimeUnit.SECONDS));
+        // Each pooled buffer is charged once however many queues hold it
+        assertEquals(2 * 64, account.getUsed());
+
+        first.gate.countDown();
+        long deadline = System.currentTimeMillis() + 5000;
+        while (account.getUsed() > 64 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(64, account.getUsed());
+        second.gate.countDown();
+        awaitNoLeaks();
+        assertEquals(0, account.getUsed());
+        assertEquals("ab", first.received.toString());
+        assertEquals("a", second.received.toString());
+        firstQueue.stop();
+        secondQueue.stop();
+    }
+
+    public void testReleasableMessageNotReleasedByQueue() throws Exception {
+        final AtomicInteger releaseCount = new AtomicInteger();
+        final CountDownLatch forwarded = new CountDownLatch(1);
+        ReleasableMessage message = new ReleasableMessage() {
+
+            @Override
+            public void release() {
+                releaseCount.incrementAndGet();
+            }
+        };
+        QueuedOutputChannel<ReleasableMessage> queue = new QueuedOutputChannel<ReleasableMessage>(new OutputChannel<ReleasableMessage>() {
+
+            @Override
+            public void send(final ReleasableMessage message, final int milliseconds) {
+                forwarded.countDown();
+            }
+
+            @Override
+            public void close() {
+            }
+        }, 4, OverflowPolicy.DROP_NEWEST);
+
+        queue.send(message, 0);
+        assertTrue(forwarded.await(5, TimeUnit.SECONDS));
+        queue.stop();
+        // A message that does not count references belongs to the sender
+        assertEquals(0, releaseCount.get());
+    }
+}
@@ -0,0 +1,176 @@
+package org.js4ms.io.channel;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * SpscMessagePipeTest.java [org.js4ms.jsdk:io]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+
+import junit.framework.TestCase;
+
+
+
+/**
+ * Tests for {@link SpscMessagePipe}.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class SpscMessagePipeTest
+                extends TestCase {
+
+    public void testCapacityRoundedToPowerOfTwo() {
+        assertEquals(1, new SpscMessagePipe<Integer>(1).getCapacity());
+        assertEquals(8, new SpscMessagePipe<Integer>(5).getCapacity());
+        assertEquals(16, new SpscMessagePipe<Integer>(16).getCapacity());
+    }
+
+    public void testInvalidCapacityRejected() {
+        try {
+            new SpscMessagePipe<Integer>(0);
+            fail("expected IllegalArgumentException");
+        }
+        catch (IllegalArgumentException e) {
+        }
+    }
+
+    public void testOfferFailsWhenFull() {
+        SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(pipe.offer(i));
+        }
+        assertFalse(pipe.offer(4));
+        assertEquals(4, pipe.size());
+        assertEquals(Integer.valueOf(0), pipe.poll());
+        assertTrue(pipe.offer(4));
+    }
+
+    public void testOrderPreservedAcrossWrap() {
+        SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(4);
+        int next = 0;
+        for (int i = 0; i < 100; i++) {
+            assertTrue(pipe.offer(i));
+            if (i % 3 == 2) {
+                // Drain in bursts so the indexes wrap at different offsets
+                Integer message;
+                while ((message = pipe.poll()) != null) {
+                    assertEquals(next++, message.intValue());
+                }
+            }
+        }
+        Integer message;
+        while ((message = pipe.poll()) != null) {
+            assertEquals(next++, message.intValue());
+        }
+        assertEquals(100, next);
+        assertEquals(0, pipe.size());
+    }
+
+    public void testNullMessageRejected() {
+        try {
+            new SpscMessagePipe<Integer>(4).offer(null);
+            fail("expected NullPointerException");
+        }
+        catch (NullPointerException e) {
+        }
+    }
+
+    public void testReceiveTimesOut() throws Exception {
+        SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(4);
+        long start = System.currentTimeMillis();
+        try {
+            pipe.receive(50);
+            fail("expected InterruptedIOException");
+        }
+        catch (InterruptedIOException e) {
+        }
+        assertTrue(System.currentTimeMillis() - start >= 40);
+    }
+
+    public void testSendTimesOutWhenFull() throws Exception {
+        SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(2);
+        pipe.send(1, 0);
+        pipe.send(2, 0);
+        try {
+            pipe.send(3, 50);
+            fail("expected InterruptedIOException");
+        }
+        catch (InterruptedIOException e) {
+        }
+        assertEquals(2, pipe.size());
+    }
+
+    public void testBatchReceive() throws Exception {
+        SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(8);
+        for (int i = 0; i < 5; i++) {
+            pipe.offer(i);
+        }
+        ArrayList<Integer> messages = new ArrayList<Integer>();
+        assertEquals(3, pipe.receive(messages, 3, 0));
+        assertEquals(2, pipe.receive(messages, 8, 0));
+        for (int i = 0; i < 5; i++) {
+            assertEquals(i, messages.get(i).intValue());
+        }
+    }
+
+    public void testParkedReceiverWoken() throws Exception {
+        final SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(4, WaitStrategy.PARK);
+        Thread sender = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                    pipe.send(42, 1000);
+                }
+                catch (Exception e) {
+                }
+            }
+        };
+        sender.start();
+        assertEquals(Integer.valueOf(42), pipe.receive(5000));
+        sender.join();
+    }
+
+    public void testConcurrentTransfer() throws Exception {
+        final int count = 200000;
+        final SpscMessagePipe<Integer> pipe = new SpscMessagePipe<Integer>(64);
+        Thread sender = new Thread() {
+
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        pipe.send(i, 10000);
+                    }
+                }
+                catch (Exception e) {
+                }
+            }
+        };
+        sender.start();
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, pipe.receive(10000).intValue());
+        }
+        sender.join();
+        assertNull(pipe.poll());
+    }
+}
@@ -188,7 +188,7 @@ public final class IPAuthenticationHeader
      * @throws ParseException
      */
     public IPAuthenticationHeader(final ByteBuffer buffer) throws ParseException {
-        super(consume(buffer, ((HeaderLength.get(buffer) + 2) * 4)), IP_PROTOCOL_NUMBER);
+        super(consume(buffer, ((HeaderLength.getByte(buffer) + 2) * 4)), IP_PROTOCOL_NUMBER);
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("IPAuthenticationHeader.IPAuthenticationHeader", buffer));
@@ -207,6 +207,6 @@ public final class IPAuthenticationHeader
 
     @Override
     public final int getHeaderLength() {
-        return (HeaderLength.get(getBufferInternal()) + 2) * 4;
+        return (HeaderLength.getByte(getBufferInternal()) + 2) * 4;
     }
 }
@@ -156,7 +156,7 @@ public class IPExtensionHeader
      * @throws ParseException
      */
     public IPExtensionHeader(final ByteBuffer buffer) throws ParseException {
-        this(consume(buffer, HeaderLength.get(buffer) * 8 + 8), (byte) 0);
+        this(consume(buffer, HeaderLength.getByte(buffer) * 8 + 8), (byte) 0);
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("IPExtensionHeader.IPv6ExtensionHeader", buffer));
@@ -233,7 +233,7 @@ public class IPExtensionHeader
 
     @Override
     public final byte getNextProtocolNumber() {
-        return NextHeader.get(getBufferInternal());
+        return NextHeader.getByte(getBufferInternal());
     }
 
     /**
@@ -245,7 +245,7 @@ public class IPExtensionHeader
             logger.finer(this.log.entry("IPExtensionHeader.setNextProtocolNumber", protocolNumber));
         }
 
-        NextHeader.set(getBufferInternal(), protocolNumber);
+        NextHeader.setByte(getBufferInternal(), protocolNumber);
     }
 
     /**
@@ -256,7 +256,7 @@ public class IPExtensionHeader
      */
     @Override
     public int getHeaderLength() {
-        return HeaderLength.get(getBufferInternal()) * 8 + 8;
+        return HeaderLength.getByte(getBufferInternal()) * 8 + 8;
     }
 
     /**
@@ -272,7 +272,7 @@ public class IPExtensionHeader
             logger.finer(this.log.entry("IPExtensionHeader.setHeaderLength", length));
         }
 
-        HeaderLength.set(getBufferInternal(), (byte) Math.min((length / 8) - 1, 0));
+        HeaderLength.setByte(getBufferInternal(), (byte) Math.min((length / 8) - 1, 0));
     }
 
     @Override
@@ -31,8 +31,7 @@ import org.js4ms.common.util.buffer.BufferBackedObject;
 import org.js4ms.common.util.buffer.field.BooleanField;
 import org.js4ms.common.util.buffer.field.ByteBitField;
 import org.js4ms.common.util.buffer.field.ByteField;
-import org.js4ms.common.util.buffer.field.SelectorField;
-import org.js4ms.common.util.buffer.parser.BufferParserSelector;
+import org.js4ms.common.util.buffer.parser.BufferParserTableSelector;
 import org.js4ms.common.util.buffer.parser.KeyedBufferParser;
 import org.js4ms.ip.ipv4.IPv4RouterAlertOption;
 
@@ -111,10 +110,10 @@ public abstract class IPHeaderOption
      * 
      */
     public static class Parser
-                    extends BufferParserSelector<IPHeaderOption> {
+                    extends BufferParserTableSelector<IPHeaderOption> {
 
         public Parser() {
-            super(new SelectorField<Byte>(IPHeaderOption.OptionCode));
+            super(IPHeaderOption.OptionCode);
         }
 
     }
@@ -264,7 +263,7 @@ public abstract class IPHeaderOption
      * @return
      */
     public final boolean getCopyFlag() {
-        return CopyFlag.get(getBufferInternal());
+        return CopyFlag.getBoolean(getBufferInternal());
     }
 
     /**
@@ -276,14 +275,14 @@ public abstract class IPHeaderOption
             logger.finer(this.log.entry("IPHeaderOption.setCopyFlag", copyFlag));
         }
 
-        CopyFlag.set(getBufferInternal(), copyFlag);
+        CopyFlag.setBoolean(getBufferInternal(), copyFlag);
     }
 
     /**
      * @return
      */
     public final int getOptionClass() {
-        return OptionClass.get(getBufferInternal());
+        return OptionClass.getByte(getBufferInternal());
     }
 
     /**
@@ -295,14 +294,14 @@ public abstract class IPHeaderOption
             logger.finer(this.log.entry("IPHeaderOption.setOptionClass", optionClass));
         }
 
-        OptionClass.set(getBufferInternal(), (byte) optionClass);
+        OptionClass.setByte(getBufferInternal(), (byte) optionClass);
     }
 
     /**
      * @return
      */
     public final int getOptionCode() {
-        return OptionCode.get(getBufferInternal());
+        return OptionCode.getByte(getBufferInternal());
     }
 
     /**
@@ -314,14 +313,14 @@ public abstract class IPHeaderOption
             logger.finer(this.log.entry("IPHeaderOption.setOptionCode", optionCode));
         }
 
-        OptionCode.set(getBufferInternal(), (byte) optionCode);
+        OptionCode.setByte(getBufferInternal(), (byte) optionCode);
     }
 
     /**
      * @return
      */
     public final int getOptionNumber() {
-        return OptionNumber.get(getBufferInternal());
+        return OptionNumber.getByte(getBufferInternal());
     }
 
     /**
@@ -333,14 +332,14 @@ public abstract class IPHeaderOption
             logger.finer(this.log.entry("IPHeaderOption.setOptionNumber", option));
         }
 
-        OptionNumber.set(getBufferInternal(), (byte) option);
+        OptionNumber.setByte(getBufferInternal(), (byte) option);
     }
 
     /**
      * @return
      */
     public final byte getOption() {
-        return Option.get(getBufferInternal());
+        return Option.getByte(getBufferInternal());
     }
 
     /**
@@ -352,7 +351,7 @@ public abstract class IPHeaderOption
             logger.finer(this.log.entry("IPHeaderOption.setOption", option));
         }
 
-        Option.set(getBufferInternal(), option);
+        Option.setByte(getBufferInternal(), option);
     }
 
     /**
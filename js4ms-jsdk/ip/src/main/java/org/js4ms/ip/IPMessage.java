@@ -26,7 +26,7 @@ package org.js4ms.ip;
 import java.nio.ByteBuffer;
 
 import org.js4ms.common.exception.ParseException;
-import org.js4ms.common.util.buffer.parser.BufferParserMap;
+import org.js4ms.common.util.buffer.parser.BufferParserTable;
 import org.js4ms.common.util.buffer.parser.KeyedBufferParser;
 import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.common.util.logging.Loggable;
@@ -67,7 +67,7 @@ public interface IPMessage
      * Typically used in base message classes associated with a single IP protocol.
      */
     public static class Parser
-                    extends BufferParserMap<IPMessage> {
+                    extends BufferParserTable<IPMessage> {
 
         /**
          * @param buffer
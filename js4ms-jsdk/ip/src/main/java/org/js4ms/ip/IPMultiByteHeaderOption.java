@@ -94,7 +94,7 @@ public class IPMultiByteHeaderOption
      * @param buffer
      */
     public IPMultiByteHeaderOption(final ByteBuffer buffer) {
-        super(consume(buffer, OptionLength.get(buffer)));
+        super(consume(buffer, OptionLength.getByte(buffer)));
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("IPMultiByteHeaderOption.IPMultiByteHeaderOption", buffer));
@@ -121,7 +121,7 @@ public class IPMultiByteHeaderOption
      * @return
      */
     public final int getOptionLength() {
-        return OptionLength.get(getBufferInternal());
+        return OptionLength.getByte(getBufferInternal());
     }
 
     /**
@@ -133,7 +133,7 @@ public class IPMultiByteHeaderOption
             logger.finer(this.log.entry("IPMultiByteHeaderOption.setOptionLength", length));
         }
 
-        OptionLength.set(getBufferInternal(), (byte) length);
+        OptionLength.setByte(getBufferInternal(), (byte) length);
     }
 
 }
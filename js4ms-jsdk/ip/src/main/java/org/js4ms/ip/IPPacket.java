@@ -23,6 +23,9 @@ package org.js4ms.ip;
  */
 
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetAddress;
 import java.nio.ByteBuffer;
 import java.util.logging.Level;
@@ -31,14 +34,16 @@ import java.util.logging.Logger;
 import org.js4ms.common.exception.ParseException;
 import org.js4ms.common.util.buffer.BufferBackedObject;
 import org.js4ms.common.util.buffer.field.ByteBitField;
-import org.js4ms.common.util.buffer.field.Field;
 import org.js4ms.common.util.buffer.field.SelectorField;
-import org.js4ms.common.util.buffer.parser.BufferParserSelector;
+import org.js4ms.common.util.buffer.field.ShortField;
+import org.js4ms.common.util.buffer.parser.BufferParserTableSelector;
 import org.js4ms.common.util.buffer.parser.KeyedBufferParser;
 import org.js4ms.common.util.buffer.parser.KeyedStreamParser;
 import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.common.util.buffer.parser.StreamParserSelector;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.ip.ipv4.IPv4Packet;
+import org.js4ms.ip.ipv6.IPv6Packet;
 
 
 
@@ -68,10 +73,10 @@ public abstract class IPPacket
      * 
      */
     public static class BufferParser
-                    extends BufferParserSelector<IPPacket> {
+                    extends BufferParserTableSelector<IPPacket> {
 
         public BufferParser() {
-            super(new SelectorField<Byte>(IPPacket.Version));
+            super(IPPacket.Version);
         }
 
         public boolean verifyChecksum(final ByteBuffer buffer) throws MissingParserException, ParseException {
@@ -99,6 +104,100 @@ public abstract class IPPacket
 
     }
 
+    /**
+     * Parses IP packets from a byte stream in a single pass.
+     * The {@link StreamParser} selects a parser by reading the version field with
+     * mark/reset and requires a stream that supports marks. This parser instead
+     * reads the fixed IPv4 or IPv6 header once into a reusable scratch buffer,
+     * decodes the packet length from it, reads the rest of the packet and hands the
+     * complete packet to a {@link BufferParser}. It may be used to parse packets
+     * that are carried back-to-back in a stream, such as a TCP connection.
+     * Instances are not thread-safe.
+     */
+    public static class SinglePassStreamParser {
+
+        /** */
+        private final BufferParser bufferParser;
+
+        /** */
+        private final ByteBuffer header = ByteBuffer.allocate(IPv6Packet.BASE_HEADER_LENGTH);
+
+        /**
+         * @param bufferParser
+         *            The parser used to parse each packet once it has been read.
+         */
+        public SinglePassStreamParser(final BufferParser bufferParser) {
+            this.bufferParser = bufferParser;
+        }
+
+        /**
+         * @return
+         */
+        public BufferParser getBufferParser() {
+            return this.bufferParser;
+        }
+
+        /**
+         * Reads the next packet from the stream and parses it.
+         * 
+         * @param is
+         * @return
+         * @throws ParseException
+         *             If the packet version is not recognized or the packet length is
+         *             invalid.
+         * @throws MissingParserException
+         * @throws EOFException
+         *             If the stream ends before the complete packet is read.
+         * @throws IOException
+         */
+        public IPPacket parse(final InputStream is) throws ParseException, MissingParserException, IOException {
+            return this.bufferParser.parse(read(is));
+        }
+
+        /**
+         * Reads the next packet from the stream without parsing it.
+         * 
+         * @param is
+         * @return A buffer containing the complete packet.
+         * @throws ParseException
+         *             If the packet version is not recognized or the packet length is
+         *             invalid.
+         * @throws EOFException
+         *             If the stream ends before the complete packet is read.
+         * @throws IOException
+         */
+        public ByteBuffer read(final InputStream is) throws ParseException, IOException {
+            byte[] header = this.header.array();
+            BufferBackedObject.read(is, header, 0, 1);
+
+            int headerLength;
+            int packetLength;
+            byte version = Version.getByte(this.header);
+            if (version == IPv4Packet.INTERNET_PROTOCOL_VERSION) {
+                headerLength = IPv4Packet.BASE_HEADER_LENGTH;
+                BufferBackedObject.read(is, header, 1, headerLength - 1);
+                packetLength = IPv4Packet.TotalLength.getShort(this.header) & 0xFFFF;
+            }
+            else if (version == IPv6Packet.INTERNET_PROTOCOL_VERSION) {
+                headerLength = IPv6Packet.BASE_HEADER_LENGTH;
+                BufferBackedObject.read(is, header, 1, headerLength - 1);
+                packetLength = headerLength + (IPv6Packet.PayloadLength.getShort(this.header) & 0xFFFF);
+            }
+            else {
+                throw new ParseException("unrecognized IP packet version " + version);
+            }
+
+            if (packetLength < headerLength) {
+                throw new ParseException("invalid IP packet length " + packetLength);
+            }
+
+            byte[] packet = new byte[packetLength];
+            System.arraycopy(header, 0, packet, 0, headerLength);
+            BufferBackedObject.read(is, packet, headerLength, packetLength - headerLength);
+            return ByteBuffer.wrap(packet);
+        }
+    }
+
     /*-- Static Variables ---------------------------------------------------*/
 
     /** Logger used to generate IPPacket log entries. */
@@ -112,6 +211,12 @@ public abstract class IPPacket
     /** */
     private IPMessage firstProtocolHeader = null;
 
+    /**
+     * Parser used to parse the packet payload the first time the protocol messages are
+     * requested. See {@link #deferPayload(IPMessage.Parser)}.
+     */
+    private IPMessage.Parser deferredProtocolParser = null;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -178,14 +283,14 @@ public abstract class IPPacket
      * @return
      */
     public final byte getVersion() {
-        return Version.get(getBufferInternal());
+        return Version.getByte(getBufferInternal());
     }
 
     /**
      * @param version
      */
     protected final void setVersion(final byte version) {
-        Version.set(getBufferInternal(), version);
+        Version.setByte(getBufferInternal(), version);
     }
 
     /**
@@ -324,11 +429,73 @@ public abstract class IPPacket
     protected abstract void setNextProtocolNumber(byte protocolNumber);
 
     /**
+     * Parses the packet payload using the specified protocol parser.
+     * 
+     * @param protocolParser
+     * @throws ParseException
+     * @throws MissingParserException
+     */
+    public abstract void parsePayload(IPMessage.Parser protocolParser) throws ParseException, MissingParserException;
+
+    /**
+     * Defers parsing of the packet payload until the protocol messages are first
+     * requested by calling {@link #getFirstProtocolMessage()} or
+     * {@link #getProtocolMessage(byte)}. Parsing is further deferred while the packet
+     * carries a datagram fragment, so a reassembled packet parses the complete datagram.
+     * <p>
+     * A deferred parse cannot throw a checked exception. If the payload cannot be
+     * parsed the error is logged and the packet only carries the protocol messages that
+     * were parsed before the error was detected.
+     * 
+     * @param protocolParser
+     *            The parser used to parse the payload, or <code>null</code> to cancel
+     *            a deferred parse.
+     */
+    public final void deferPayload(final IPMessage.Parser protocolParser) {
+        this.deferredProtocolParser = protocolParser;
+    }
+
+    /**
+     * Indicates whether the packet payload is waiting to be parsed.
+     * See {@link #deferPayload(IPMessage.Parser)}.
+     */
+    public final boolean isPayloadDeferred() {
+        return this.deferredProtocolParser != null;
+    }
+
+    /**
+     * Parses the packet payload if parsing was deferred and the packet does not carry
+     * a datagram fragment.
+     */
+    private void parseDeferredPayload() {
+        IPMessage.Parser protocolParser = this.deferredProtocolParser;
+        if (protocolParser != null && !isFragmented()) {
+            this.deferredProtocolParser = null;
+            try {
+                parsePayload(protocolParser);
+            }
+            catch (ParseException e) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("deferred payload parse failed with exception: " + e.getMessage()));
+                }
+            }
+            catch (MissingParserException e) {
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("deferred payload parse failed - no parser for protocol message"));
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the protocol number of the last protocol message parsed from or added to
+     * this packet. Does not trigger a deferred parse.
+     * 
      * @return
      */
     public final byte getLastProtocolNumber() {
         byte lastProtocolNumber = getNextProtocolNumber();
-        IPMessage nextMessage = getFirstProtocolMessage();
+        IPMessage nextMessage = this.firstProtocolHeader;
         while (nextMessage != null) {
             lastProtocolNumber = nextMessage.getNextProtocolNumber();
             nextMessage = nextMessage.getNextMessage();
@@ -340,6 +507,7 @@ public abstract class IPPacket
      * @return
      */
     public final IPMessage getFirstProtocolMessage() {
+        parseDeferredPayload();
         return this.firstProtocolHeader;
     }
 
@@ -371,7 +539,10 @@ public abstract class IPPacket
             logger.finer(this.log.entry("IPPacket.addProtocolMessage", message));
         }
 
-        IPMessage nextMessage = getFirstProtocolMessage();
+        // Keep any deferred messages ahead of the new message
+        parseDeferredPayload();
+
+        IPMessage nextMessage = this.firstProtocolHeader;
         if (nextMessage == null) {
             setFirstProtocolMessage(message);
         }
@@ -497,7 +668,7 @@ public abstract class IPPacket
      * @param buffer
      *            - the ByteBuffer containing the upper-layer message.
      * @param checksumField
-     *            - A Field object that is used to extract and clear the checksum value.
+     *            - the field that holds the checksum value.
      * @param sourceAddress
      *            An IPv4 (4-byte) or IPv6 (16-byte) address. Size must match that of the
      *            destination address.
@@ -511,7 +682,7 @@ public abstract class IPPacket
      * @return
      */
     public final static short calculateChecksum(final ByteBuffer buffer,
-                                                final Field<Short> checksumField,
+                                                final ShortField checksumField,
                                                 final byte[] sourceAddress,
                                                 final byte[] destinationAddress,
                                                 final byte protocolNumber,
@@ -528,57 +699,14 @@ public abstract class IPPacket
                                           packetLength));
         }
 
-        // Clear checksum field
-        short originalChecksum = checksumField.get(buffer);
-        checksumField.set(buffer, (short) 0);
+        // Sum the message as if the checksum field were zero
+        long sum = InternetChecksum.sumPseudoHeader(InternetChecksum.sumAddresses(sourceAddress, destinationAddress),
+                                                    protocolNumber,
+                                                    packetLength)
+                   + InternetChecksum.sum(buffer, 0, packetLength)
+                   - (checksumField.getShort(buffer) & 0xFFFF);
 
-        byte[] bytes = buffer.array();
-        int offset = buffer.arrayOffset();
-
-        int total = 0;
-
-        for (int i = 0; i < sourceAddress.length;) {
-            total += (((sourceAddress[i++] & 0xFF) << 8) | (sourceAddress[i++] & 0xFF));
-        }
-
-        for (int i = 0; i < destinationAddress.length;) {
-            total += (((destinationAddress[i++] & 0xFF) << 8) | (destinationAddress[i++] & 0xFF));
-        }
-
-        total += protocolNumber;
-
-        total += (((packetLength >> 16) & 0xFFFF) | (packetLength & 0xFFFF));
-
-        if ((packetLength & 0x1) == 0) {
-            // The packet length is even (ends on a 16-bit boundary)
-            int end = offset + packetLength;
-            while (offset < end) {
-                total += (((bytes[offset++] & 0xFF) << 8) | (bytes[offset++] & 0xFF));
-            }
-        }
-        else {
-            // The packet length is odd (ends before a 16-bit boundary)
-            // Total the bytes up to the last 16 bit boundary.
-            int end = offset + packetLength - 1;
-            while (offset < end) {
-                total += (((bytes[offset++] & 0xFF) << 8) | (bytes[offset++] & 0xFF));
-            }
-            // Add the last byte (effectively adding a zero pad byte)
-            total += ((bytes[offset] & 0xFF) << 8);
-        }
-
-        // Fold to 16 bits
-        while ((total & 0xFFFF0000) != 0) {
-            total = (total & 0xFFFF) + (total >> 16);
-        }
-
-        // Calculate the one's complement value
-        total = (~total & 0xFFFF);
-
-        // Restore original checksum
-        checksumField.set(buffer, originalChecksum);
-
-        return (short) total;
+        return InternetChecksum.checksum(sum);
     }
 
     /**
@@ -595,7 +723,7 @@ public abstract class IPPacket
      * @param buffer
      *            - the ByteBuffer containing the upper-layer message.
      * @param checksumField
-     *            - A Field object that is used to extract and clear the checksum value.
+     *            - the field that holds the checksum value.
      * @param sourceAddress
      *            An IPv4 (4-byte) or IPv6 (16-byte) address. Size must match that of the
      *            destination address.
@@ -607,7 +735,7 @@ public abstract class IPPacket
      * @return
      */
     public final static short calculateChecksum(final ByteBuffer buffer,
-                                                final Field<Short> checksumField,
+                                                final ShortField checksumField,
                                                 final int packetLength) {
 
         if (logger.isLoggable(Level.FINER)) {
@@ -618,45 +746,10 @@ public abstract class IPPacket
                                           packetLength));
         }
 
-        // Clear checksum field
-        short originalChecksum = checksumField.get(buffer);
-        checksumField.set(buffer, (short) 0);
-
-        byte[] bytes = buffer.array();
-        int offset = buffer.arrayOffset();
-
-        int total = 0;
-
-        if ((packetLength & 0x1) == 0) {
-            // The packet length is even (ends on a 16-bit boundary)
-            int end = offset + packetLength;
-            while (offset < end) {
-                total += (((bytes[offset++] & 0xFF) << 8) | (bytes[offset++] & 0xFF));
-            }
-        }
-        else {
-            // The packet length is odd (ends before a 16-bit boundary)
-            // Total the bytes up to the last 16 bit boundary.
-            int end = offset + packetLength - 1;
-            while (offset < end) {
-                total += (((bytes[offset++] & 0xFF) << 8) | (bytes[offset++] & 0xFF));
-            }
-            // Add the last byte (effectively adding a zero pad byte)
-            total += (short) ((bytes[offset] & 0xFF) << 8);
-        }
-
-        // Fold to 16 bits
-        while ((total & 0xFFFF0000) != 0) {
-            total = (total & 0xFFFF) + (total >> 16);
-        }
-
-        // Calculate the one's complement value
-        total = (~total & 0xFFFF);
-
-        // Restore original checksum
-        checksumField.set(buffer, originalChecksum);
+        // Sum the message as if the checksum field were zero
+        long sum = InternetChecksum.sum(buffer, 0, packetLength) - (checksumField.getShort(buffer) & 0xFFFF);
 
-        return (short) total;
+        return InternetChecksum.checksum(sum);
     }
 
 }
@@ -0,0 +1,238 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * InternetChecksum.java [org.js4ms.jsdk:ip]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+
+/**
+ * Provides static methods used to calculate and update the Internet checksum - the
+ * 16-bit one's complement of the one's complement sum used by IPv4, UDP, ICMP, IGMP
+ * and MLD. See <a href="http://tools.ietf.org/html/rfc1071">[RFC-1071]</a>.
+ * <p>
+ * Sums are accumulated in a <code>long</code> from 64-bit words and are only folded to
+ * 16 bits, with end-around carry, when the checksum is produced. A partial sum, such as
+ * the sum of a pseudo header, may be computed once and added to the sums of any number
+ * of messages. Sums are calculated using absolute buffer indices and work with heap,
+ * direct and read-only buffers in either byte order. The buffer is never modified.
+ * <p>
+ * The {@link #update(short, short, short)} methods apply the incremental update
+ * described in <a href="http://tools.ietf.org/html/rfc1624">[RFC-1624]</a> so a
+ * checksum can be corrected after a single field is rewritten without summing the
+ * message again.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class InternetChecksum {
+
+    /**
+     * Calculates the unfolded one's complement sum of a range of bytes in a buffer.
+     * If the length is odd, the last byte is padded with zero.
+     * 
+     * @param buffer
+     *            - the buffer containing the bytes.
+     * @param offset
+     *            - the absolute index of the first byte. Must be at an even offset from
+     *            the start of the checksummed message.
+     * @param length
+     *            - the number of bytes to sum.
+     */
+    public static long sum(final ByteBuffer buffer, final int offset, final int length) {
+        boolean isSwapped = buffer.order() != ByteOrder.BIG_ENDIAN;
+        long sum = 0;
+        int index = offset;
+        int end = offset + length;
+        int wordEnd = end - 7;
+        while (index < wordEnd) {
+            long word = buffer.getLong(index);
+            if (isSwapped) {
+                word = Long.reverseBytes(word);
+            }
+            // Adding the 32-bit halves defers the end-around carry to fold()
+            sum += (word >>> 32) + (word & 0xFFFFFFFFL);
+            index += 8;
+        }
+        if (end - index >= 4) {
+            int word = buffer.getInt(index);
+            if (isSwapped) {
+                word = Integer.reverseBytes(word);
+            }
+            sum += word & 0xFFFFFFFFL;
+            index += 4;
+        }
+        if (end - index >= 2) {
+            sum += ((buffer.get(index) & 0xFF) << 8) | (buffer.get(index + 1) & 0xFF);
+            index += 2;
+        }
+        if (index < end) {
+            sum += (buffer.get(index) & 0xFF) << 8;
+        }
+        return sum;
+    }
+
+    /**
+     * Calculates the unfolded one's complement sum of a byte array.
+     * 
+     * @param bytes
+     *            - the bytes to sum, e.g. an IPv4 or IPv6 address.
+     */
+    public static long sum(final byte[] bytes) {
+        return sum(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    /**
+     * Calculates the unfolded sum of the source and destination addresses used in an
+     * IPv4 or IPv6 pseudo header. The result may be saved and passed to
+     * {@link #sumPseudoHeader(long, byte, int)} for each message exchanged between the
+     * same pair of addresses.
+     * 
+     * @param sourceAddress
+     *            An IPv4 (4-byte) or IPv6 (16-byte) address.
+     * @param destinationAddress
+     *            An IPv4 (4-byte) or IPv6 (16-byte) address.
+     */
+    public static long sumAddresses(final byte[] sourceAddress, final byte[] destinationAddress) {
+        long sum = 0;
+        for (int i = 0; i < sourceAddress.length; i += 2) {
+            sum += ((sourceAddress[i] & 0xFF) << 8) | (sourceAddress[i + 1] & 0xFF);
+        }
+        for (int i = 0; i < destinationAddress.length; i += 2) {
+            sum += ((destinationAddress[i] & 0xFF) << 8) | (destinationAddress[i + 1] & 0xFF);
+        }
+        return sum;
+    }
+
+    /**
+     * Calculates the unfolded sum of an IPv4 or IPv6 pseudo header.
+     * 
+     * @param addressSum
+     *            - the sum returned by {@link #sumAddresses(byte[], byte[])}.
+     * @param protocolNumber
+     *            - the IP protocol number of the upper-layer protocol.
+     * @param packetLength
+     *            - the total length of the upper-layer message.
+     */
+    public static long sumPseudoHeader(final long addressSum, final byte protocolNumber, final int packetLength) {
+        return addressSum + (protocolNumber & 0xFF) + ((packetLength >>> 16) & 0xFFFF) + (packetLength & 0xFFFF);
+    }
+
+    /**
+     * Folds an unfolded sum to 16 bits using end-around carry.
+     */
+    public static int fold(long sum) {
+        sum = (sum & 0xFFFFFFFFL) + (sum >>> 32);
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+        sum = (sum & 0xFFFF) + (sum >>> 16);
+        return (int) ((sum & 0xFFFF) + (sum >>> 16));
+    }
+
+    /**
+     * Returns the checksum for an unfolded sum - the one's complement of the folded sum.
+     */
+    public static short checksum(final long sum) {
+        return (short) ~fold(sum);
+    }
+
+    /**
+     * Indicates whether an unfolded sum taken over a message and its checksum field
+     * verifies - a valid message sums to 0xFFFF (negative zero).
+     */
+    public static boolean isValid(final long sum) {
+        return fold(sum) == 0xFFFF;
+    }
+
+    /**
+     * Verifies the checksum of a message, such as an IPv4 header, whose checksum field
+     * lies within the specified range and that does not include a pseudo header.
+     * 
+     * @param buffer
+     *            - the buffer containing the message.
+     * @param offset
+     *            - the absolute index of the start of the message.
+     * @param length
+     *            - the length of the message.
+     */
+    public static boolean verify(final ByteBuffer buffer, final int offset, final int length) {
+        return isValid(sum(buffer, offset, length));
+    }
+
+    /**
+     * Calculates the checksum that results when a 16-bit word covered by the checksum is
+     * replaced. See <a href="http://tools.ietf.org/html/rfc1624">[RFC-1624]</a>, equation
+     * 3: <code>HC' = ~(~HC + ~m + m')</code>.
+     * 
+     * @param checksum
+     *            - the current checksum.
+     * @param oldValue
+     *            - the 16-bit word before it was replaced.
+     * @param newValue
+     *            - the 16-bit word after it was replaced.
+     */
+    public static short update(final short checksum, final short oldValue, final short newValue) {
+        long sum = (~checksum & 0xFFFF) + (~oldValue & 0xFFFF) + (newValue & 0xFFFF);
+        return (short) ~fold(sum);
+    }
+
+    /**
+     * Calculates the checksum that results when an aligned 32-bit value covered by the
+     * checksum, such as an IPv4 address, is replaced.
+     * 
+     * @param checksum
+     *            - the current checksum.
+     * @param oldValue
+     *            - the 32-bit value before it was replaced.
+     * @param newValue
+     *            - the 32-bit value after it was replaced.
+     */
+    public static short update(final short checksum, final int oldValue, final int newValue) {
+        long sum = (~checksum & 0xFFFF)
+                   + (~(oldValue >>> 16) & 0xFFFF) + (~oldValue & 0xFFFF)
+                   + ((newValue >>> 16) & 0xFFFF) + (newValue & 0xFFFF);
+        return (short) ~fold(sum);
+    }
+
+    /**
+     * Replaces a 16-bit word in a buffer and incrementally updates the checksum that
+     * covers it.
+     * 
+     * @param buffer
+     *            - the buffer containing the message.
+     * @param checksumIndex
+     *            - the absolute index of the checksum field.
+     * @param wordIndex
+     *            - the absolute index of the word. Must be at an even offset from the
+     *            start of the checksummed message.
+     * @param newValue
+     *            - the new value of the word.
+     */
+    public static void replace(final ByteBuffer buffer, final int checksumIndex, final int wordIndex, final short newValue) {
+        short oldValue = buffer.getShort(wordIndex);
+        buffer.putShort(wordIndex, newValue);
+        buffer.putShort(checksumIndex, update(buffer.getShort(checksumIndex), oldValue, newValue));
+    }
+
+    private InternetChecksum() {
+    }
+}
@@ -50,6 +50,7 @@ import org.js4ms.ip.IPHeaderOption;
 import org.js4ms.ip.IPMessage;
 import org.js4ms.ip.IPPacket;
 import org.js4ms.ip.IPPayload;
+import org.js4ms.ip.InternetChecksum;
 
 
 
@@ -280,6 +281,9 @@ public final class IPv4Packet
         /** */
         IPMessage.Parser protocolParser;
 
+        /** */
+        boolean isLazyParsingEnabled = false;
+
         /**
          * 
          */
@@ -324,25 +328,46 @@ public final class IPv4Packet
             return this.protocolParser;
         }
 
+        /**
+         * Enables or disables lazy parsing. When enabled, the parser only constructs the
+         * fixed header - the header options and protocol messages are parsed the first
+         * time they are requested.
+         * See {@link IPv4Packet#deferOptions(IPHeaderOption.Parser)} and
+         * {@link IPPacket#deferPayload(IPMessage.Parser)}.
+         * 
+         * @param isLazyParsingEnabled
+         */
+        public void setLazyParsingEnabled(final boolean isLazyParsingEnabled) {
+            this.isLazyParsingEnabled = isLazyParsingEnabled;
+        }
+
+        /**
+         * @return
+         */
+        public boolean isLazyParsingEnabled() {
+            return this.isLazyParsingEnabled;
+        }
+
         @Override
         public IPPacket parse(final ByteBuffer buffer) throws ParseException, MissingParserException {
             IPv4Packet header = new IPv4Packet(buffer);
-
-            if (this.optionParser != null) {
-                // Parse IP header options
-                header.parseOptions(this.optionParser);
-            }
-
-            if (this.protocolParser != null) {
-                header.parsePayload(this.protocolParser);
-            }
-
+            parseContent(header);
             return header;
         }
 
         @Override
         public IPPacket parse(final InputStream is) throws ParseException, MissingParserException, IOException {
             IPv4Packet header = new IPv4Packet(is);
+            parseContent(header);
+            return header;
+        }
+
+        private void parseContent(final IPv4Packet header) throws ParseException, MissingParserException {
+            if (this.isLazyParsingEnabled) {
+                header.deferOptions(this.optionParser);
+                header.deferPayload(this.protocolParser);
+                return;
+            }
 
             if (this.optionParser != null) {
                 // Parse IP header options
@@ -352,8 +377,6 @@ public final class IPv4Packet
             if (this.protocolParser != null) {
                 header.parsePayload(this.protocolParser);
             }
-
-            return header;
         }
 
         @Override
@@ -451,10 +474,9 @@ public final class IPv4Packet
      *            - the buffer containing the IPv4 header.
      */
     public static boolean verifyChecksum(final ByteBuffer buffer) {
-        short checksum = HeaderChecksum.get(buffer);
-        short computedChecksum = calculateChecksum(buffer);
-        if (checksum != computedChecksum) {
-            logger.warning("received IPv4 packet with invalid checksum: received=" + checksum + " computed=" + computedChecksum);
+        if (!InternetChecksum.verify(buffer, 0, HeaderLength.getByte(buffer) * 4)) {
+            logger.warning("received IPv4 packet with invalid checksum: received=" + HeaderChecksum.getShort(buffer) +
+                           " computed=" + calculateChecksum(buffer));
             return false;
         }
         return true;
@@ -467,7 +489,7 @@ public final class IPv4Packet
      *            - the buffer containing the IPv4 header.
      */
     public static short calculateChecksum(final ByteBuffer buffer) {
-        return IPPacket.calculateChecksum(buffer, HeaderChecksum, HeaderLength.get(buffer) * 4);
+        return IPPacket.calculateChecksum(buffer, HeaderChecksum, HeaderLength.getByte(buffer) * 4);
     }
 
     /**
@@ -477,7 +499,22 @@ public final class IPv4Packet
      *            - a byte array.
      */
     public static void setChecksum(final ByteBuffer buffer) {
-        HeaderChecksum.set(buffer, IPv4Packet.calculateChecksum(buffer));
+        HeaderChecksum.setShort(buffer, IPv4Packet.calculateChecksum(buffer));
+    }
+
+    /**
+     * Rewrites the TTL field of an IPv4 header contained in a buffer and updates the
+     * header checksum incrementally.
+     * 
+     * @param buffer
+     *            - the buffer containing the IPv4 header.
+     * @param ttl
+     *            - the new TTL value.
+     */
+    public static void updateTTL(final ByteBuffer buffer, final byte ttl) {
+        int wordIndex = TTL.getOffset();
+        short word = (short) (((ttl & 0xFF) << 8) | (buffer.get(wordIndex + 1) & 0xFF));
+        InternetChecksum.replace(buffer, HeaderChecksum.getOffset(), wordIndex, word);
     }
 
     /*-- Member Variables ---------------------------------------------------*/
@@ -491,6 +528,12 @@ public final class IPv4Packet
     /** */
     protected Vector<IPHeaderOption> options = null;
 
+    /**
+     * Parser used to parse the header options the first time they are requested.
+     * See {@link #deferOptions(IPHeaderOption.Parser)}.
+     */
+    private IPHeaderOption.Parser deferredOptionParser = null;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -807,7 +850,7 @@ public final class IPv4Packet
      * @return
      */
     public int getHeaderLength() {
-        return HeaderLength.get(getBufferInternal()) * 4;
+        return HeaderLength.getByte(getBufferInternal()) * 4;
     }
 
     /**
@@ -819,7 +862,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setHeaderLength", length));
         }
 
-        HeaderLength.set(getBufferInternal(), (byte) (length / 4));
+        HeaderLength.setByte(getBufferInternal(), (byte) (length / 4));
     }
 
     /**
@@ -858,7 +901,7 @@ public final class IPv4Packet
      * @return
      */
     public byte getTypeOfService() {
-        return TypeOfService.get(getBufferInternal());
+        return TypeOfService.getByte(getBufferInternal());
     }
 
     /**
@@ -872,7 +915,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setTypeOfService", tos));
         }
 
-        TypeOfService.set(getBufferInternal(), tos);
+        TypeOfService.setByte(getBufferInternal(), tos);
     }
 
     /** */
@@ -922,7 +965,7 @@ public final class IPv4Packet
      * @return
      */
     public byte getPrecedence() {
-        return Precedence.get(getBufferInternal());
+        return Precedence.getByte(getBufferInternal());
     }
 
     /**
@@ -936,7 +979,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setPrecedence", precedence));
         }
 
-        Precedence.set(getBufferInternal(), precedence);
+        Precedence.setByte(getBufferInternal(), precedence);
     }
 
     /**
@@ -957,7 +1000,7 @@ public final class IPv4Packet
      * @return
      */
     public boolean getMinimizeDelay() {
-        return MinimizeDelay.get(getBufferInternal());
+        return MinimizeDelay.getBoolean(getBufferInternal());
     }
 
     /**
@@ -971,7 +1014,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setMinimizeDelay", minimizeDelay));
         }
 
-        MinimizeDelay.set(getBufferInternal(), minimizeDelay);
+        MinimizeDelay.setBoolean(getBufferInternal(), minimizeDelay);
     }
 
     /**
@@ -992,7 +1035,7 @@ public final class IPv4Packet
      * @return
      */
     public boolean getMaximizeThroughput() {
-        return MaximizeThroughput.get(getBufferInternal());
+        return MaximizeThroughput.getBoolean(getBufferInternal());
     }
 
     /**
@@ -1007,7 +1050,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setMaximizeThroughput", maximizeThroughput));
         }
 
-        MaximizeThroughput.set(getBufferInternal(), maximizeThroughput);
+        MaximizeThroughput.setBoolean(getBufferInternal(), maximizeThroughput);
     }
 
     /**
@@ -1027,7 +1070,7 @@ public final class IPv4Packet
      * @return
      */
     public boolean getMaximizeReliability() {
-        return MaximizeReliability.get(getBufferInternal());
+        return MaximizeReliability.getBoolean(getBufferInternal());
     }
 
     /**
@@ -1042,7 +1085,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setMaximizeReliability", maximizeReliability));
         }
 
-        MaximizeReliability.set(getBufferInternal(), maximizeReliability);
+        MaximizeReliability.setBoolean(getBufferInternal(), maximizeReliability);
     }
 
     /**
@@ -1063,7 +1106,7 @@ public final class IPv4Packet
      * @return
      */
     public boolean getMinimizeMonetaryCost() {
-        return MinimizeMonetaryCost.get(getBufferInternal());
+        return MinimizeMonetaryCost.getBoolean(getBufferInternal());
     }
 
     /**
@@ -1078,7 +1121,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("setMinimizeMonetaryCost", minimizeMonetaryCost));
         }
 
-        MinimizeMonetaryCost.set(getBufferInternal(), minimizeMonetaryCost);
+        MinimizeMonetaryCost.setBoolean(getBufferInternal(), minimizeMonetaryCost);
     }
 
     /**
@@ -1094,7 +1137,7 @@ public final class IPv4Packet
      * @return
      */
     public int getTotalLength() {
-        return TotalLength.get(getBufferInternal());
+        return TotalLength.getShort(getBufferInternal());
     }
 
     /**
@@ -1109,7 +1152,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setTotalLength", totalLength));
         }
 
-        TotalLength.set(getBufferInternal(), totalLength);
+        TotalLength.setShort(getBufferInternal(), totalLength);
     }
 
     @Override
@@ -1140,7 +1183,7 @@ public final class IPv4Packet
      * @return
      */
     public short getIdentification() {
-        return Identification.get(getBufferInternal());
+        return Identification.getShort(getBufferInternal());
     }
 
     /**
@@ -1155,7 +1198,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setIdentification", identification));
         }
 
-        Identification.set(getBufferInternal(), identification);
+        Identification.setShort(getBufferInternal(), identification);
     }
 
     /**
@@ -1176,7 +1219,7 @@ public final class IPv4Packet
      * @return
      */
     public boolean getDoNotFragment() {
-        return DontFragment.get(getBufferInternal());
+        return DontFragment.getBoolean(getBufferInternal());
     }
 
     /**
@@ -1191,7 +1234,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setDoNotFragment", doNotFragment));
         }
 
-        DontFragment.set(getBufferInternal(), doNotFragment);
+        DontFragment.setBoolean(getBufferInternal(), doNotFragment);
     }
 
     /**
@@ -1213,7 +1256,7 @@ public final class IPv4Packet
      * @return
      */
     public boolean getMoreFragments() {
-        return MoreFragments.get(getBufferInternal());
+        return MoreFragments.getBoolean(getBufferInternal());
     }
 
     /**
@@ -1228,7 +1271,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setMoreFragments", moreFragments));
         }
 
-        MoreFragments.set(getBufferInternal(), moreFragments);
+        MoreFragments.setBoolean(getBufferInternal(), moreFragments);
     }
 
     @Override
@@ -1257,7 +1300,7 @@ public final class IPv4Packet
      */
     @Override
     public int getFragmentOffset() {
-        return FragmentOffset.get(getBufferInternal());
+        return FragmentOffset.getShort(getBufferInternal());
     }
 
     /**
@@ -1272,7 +1315,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setFragmentOffset", fragmentOffset));
         }
 
-        FragmentOffset.set(getBufferInternal(), fragmentOffset);
+        FragmentOffset.setShort(getBufferInternal(), fragmentOffset);
     }
 
     /**
@@ -1298,7 +1341,7 @@ public final class IPv4Packet
      * @return
      */
     public byte getTTL() {
-        return TTL.get(getBufferInternal());
+        return TTL.getByte(getBufferInternal());
     }
 
     /**
@@ -1312,7 +1355,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setTTL", ttl));
         }
 
-        TTL.set(getBufferInternal(), ttl);
+        TTL.setByte(getBufferInternal(), ttl);
     }
 
     /**
@@ -1332,7 +1375,7 @@ public final class IPv4Packet
      * @return
      */
     public byte getProtocol() {
-        return Protocol.get(getBufferInternal());
+        return Protocol.getByte(getBufferInternal());
     }
 
     /**
@@ -1347,7 +1390,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setProtocol", protocol));
         }
 
-        Protocol.set(getBufferInternal(), protocol);
+        Protocol.setByte(getBufferInternal(), protocol);
     }
 
     /**
@@ -1363,7 +1406,7 @@ public final class IPv4Packet
      * @return
      */
     public short getHeaderChecksum() {
-        return HeaderChecksum.get(getBufferInternal());
+        return HeaderChecksum.getShort(getBufferInternal());
     }
 
     /**
@@ -1378,7 +1421,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.setHeaderChecksum", checksum));
         }
 
-        HeaderChecksum.set(getBufferInternal(), checksum);
+        HeaderChecksum.setShort(getBufferInternal(), checksum);
     }
 
     /**
@@ -1539,6 +1582,7 @@ public final class IPv4Packet
         }
 
         // Precondition.checkReference(option);
+        parseDeferredOptions();
         if (this.options == null) this.options = new Vector<IPHeaderOption>();
         this.options.add(option);
         updateHeaderLength();
@@ -1553,6 +1597,7 @@ public final class IPv4Packet
             logger.finer(this.log.entry("IPv4Packet.removeOption", option));
         }
 
+        parseDeferredOptions();
         if (this.options != null) {
             this.options.remove(option);
             updateHeaderLength();
@@ -1626,10 +1671,51 @@ public final class IPv4Packet
         }
     }
 
+    /**
+     * Defers parsing of the header options until they are first requested by calling
+     * {@link #getOptions()}. If the options cannot be parsed the error is logged and
+     * the packet carries no options.
+     * 
+     * @param optionParser
+     *            The parser used to parse the options, or <code>null</code> to cancel
+     *            a deferred parse.
+     */
+    public void deferOptions(final IPHeaderOption.Parser optionParser) {
+        this.deferredOptionParser = optionParser;
+    }
+
+    /**
+     * Parses the header options if parsing was deferred.
+     */
+    private void parseDeferredOptions() {
+        IPHeaderOption.Parser optionParser = this.deferredOptionParser;
+        if (optionParser != null) {
+            this.deferredOptionParser = null;
+            try {
+                parseOptions(optionParser);
+            }
+            catch (ParseException e) {
+                this.options = null;
+                this.unparsedOptions.rewind();
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("deferred option parse failed with exception: " + e.getMessage()));
+                }
+            }
+            catch (MissingParserException e) {
+                this.options = null;
+                this.unparsedOptions.rewind();
+                if (logger.isLoggable(Level.FINE)) {
+                    logger.fine(this.log.msg("deferred option parse failed - no parser for option"));
+                }
+            }
+        }
+    }
+
     /**
      * @return
      */
     public Enumeration<IPHeaderOption> getOptions() {
+        parseDeferredOptions();
         return this.options != null ? this.options.elements() : null;
     }
 
@@ -1669,6 +1755,7 @@ public final class IPv4Packet
      * @throws ParseException
      * @throws MissingParserException
      */
+    @Override
     public void parsePayload(final IPMessage.Parser protocolParser) throws ParseException, MissingParserException {
 
         if (logger.isLoggable(Level.FINER)) {
@@ -1679,39 +1766,42 @@ public final class IPv4Packet
 
         if (this.unparsedPayload != null && this.unparsedPayload.remaining() > 0) {
 
-            // Parse IP protocol headers
-            byte lastProtocolNumber = getLastProtocolNumber();
+            try {
+                // Parse IP protocol headers
+                byte lastProtocolNumber = getLastProtocolNumber();
 
-            // Check checksum before we consume the payload
-            if (!protocolParser.verifyChecksum(this.unparsedPayload, lastProtocolNumber, getSourceAddress(),
-                                               getDestinationAddress())) {
-                if (logger.isLoggable(Level.FINE)) {
-                    logger.fine(this.log.msg("invalid checksum detected in IP protocol packet"));
+                // Check checksum before we consume the payload
+                if (!protocolParser.verifyChecksum(this.unparsedPayload, lastProtocolNumber, getSourceAddress(),
+                                                   getDestinationAddress())) {
+                    if (logger.isLoggable(Level.FINE)) {
+                        logger.fine(this.log.msg("invalid checksum detected in IP protocol packet"));
+                    }
+                    throw new ParseException("invalid checksum detected in IP protocol packet");
                 }
-                throw new ParseException("invalid checksum detected in IP protocol packet");
-            }
 
-            IPMessage nextHeader = protocolParser.parse(this.unparsedPayload, lastProtocolNumber);
-            if (nextHeader == null) {
-                addProtocolMessage(new IPPayload(lastProtocolNumber, consume(this.unparsedPayload, getPayloadLength())));
-            }
-            else {
-                addProtocolMessage(nextHeader);
-                while (nextHeader != null && nextHeader.getNextProtocolNumber() != IPMessage.NO_NEXT_HEADER) {
-                    lastProtocolNumber = nextHeader.getNextProtocolNumber();
-                    if (!protocolParser.verifyChecksum(this.unparsedPayload, lastProtocolNumber, getSourceAddress(),
-                                                       getDestinationAddress())) {
-                        if (logger.isLoggable(Level.FINE)) {
-                            logger.fine(this.log.msg("invalid checksum detected in IP protocol packet"));
+                IPMessage nextHeader = protocolParser.parse(this.unparsedPayload, lastProtocolNumber);
+                if (nextHeader == null) {
+                    addProtocolMessage(new IPPayload(lastProtocolNumber, consume(this.unparsedPayload, getPayloadLength())));
+                }
+                else {
+                    addProtocolMessage(nextHeader);
+                    while (nextHeader != null && nextHeader.getNextProtocolNumber() != IPMessage.NO_NEXT_HEADER) {
+                        lastProtocolNumber = nextHeader.getNextProtocolNumber();
+                        if (!protocolParser.verifyChecksum(this.unparsedPayload, lastProtocolNumber, getSourceAddress(),
+                                                           getDestinationAddress())) {
+                            if (logger.isLoggable(Level.FINE)) {
+                                logger.fine(this.log.msg("invalid checksum detected in IP protocol packet"));
+                            }
+                            throw new ParseException("invalid checksum detected in IP protocol packet");
                         }
-                        throw new ParseException("invalid checksum detected in IP protocol packet");
+                        nextHeader = protocolParser.parse(this.unparsedPayload, lastProtocolNumber);
+                        addProtocolMessage(nextHeader);
                     }
-                    nextHeader = protocolParser.parse(this.unparsedPayload, lastProtocolNumber);
-                    addProtocolMessage(nextHeader);
                 }
             }
-
-            this.unparsedPayload.rewind();
+            finally {
+                this.unparsedPayload.rewind();
+            }
         }
     }
 
@@ -0,0 +1,398 @@
+package org.js4ms.ip.ipv4;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * IPv4PacketView.java [org.js4ms.jsdk:ip]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+
+import org.js4ms.ip.IPEndOfListOption;
+import org.js4ms.ip.IPNoOperationOption;
+import org.js4ms.ip.InternetChecksum;
+
+
+
+/**
+ * A reusable, read-only view of an IPv4 packet contained in a {@link ByteBuffer}.
+ * The {@link #wrap(ByteBuffer, int)} method binds the view to a packet that starts at
+ * an arbitrary buffer position. All fields, the header options and the payload are read
+ * in place - no packet, option, message or address objects are constructed.
+ * <p>
+ * A view may be re-pointed at any number of packets, but is only valid until the next
+ * call to {@link #wrap(ByteBuffer, int)} and must not be shared between threads. The
+ * view never modifies the buffer position, limit or contents.
+ * <p>
+ * Header options are visited using the option offsets returned by
+ * {@link #getFirstOption()} and {@link #getNextOption(int)}:
+ * 
+ * <pre>
+ * for (int option = view.getFirstOption(); option != -1; option = view.getNextOption(option)) {
+ *     if (view.getOptionCode(option) == IPv4RouterAlertOption.OPTION_CODE) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * @see IPv4Packet
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class IPv4PacketView {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    private static final int FRAGMENT_OFFSET_MASK = 0x1FFF;
+
+    private static final int MORE_FRAGMENTS_MASK = 0x2000;
+
+    private static final int DONT_FRAGMENT_MASK = 0x4000;
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int headerLength;
+
+    private int totalLength;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an empty view.
+     */
+    public IPv4PacketView() {
+    }
+
+    /**
+     * Binds this view to the IPv4 packet that starts at the current position of a buffer.
+     * See {@link #wrap(ByteBuffer, int)}.
+     * 
+     * @param buffer
+     *            A buffer containing an IPv4 packet.
+     */
+    public boolean wrap(final ByteBuffer buffer) {
+        return wrap(buffer, buffer.position());
+    }
+
+    /**
+     * Binds this view to the IPv4 packet that starts at the specified buffer index.
+     * The header length and total length fields are checked against the buffer limit
+     * but the header checksum is not verified - see {@link #isHeaderChecksumValid()}.
+     * 
+     * @param buffer
+     *            A buffer containing an IPv4 packet.
+     * @param offset
+     *            The index of the first byte of the IPv4 header.
+     * @return <code>true</code> if the buffer contains a complete IPv4 packet at the
+     *         specified index, or <code>false</code> if it does not. The view is
+     *         unbound if <code>false</code> is returned.
+     */
+    public boolean wrap(final ByteBuffer buffer, final int offset) {
+
+        this.buffer = null;
+
+        int limit = buffer.limit();
+        if (offset < 0 || limit - offset < IPv4Packet.BASE_HEADER_LENGTH) {
+            return false;
+        }
+
+        int versionAndLength = buffer.get(offset) & 0xFF;
+        if ((versionAndLength >> 4) != IPv4Packet.INTERNET_PROTOCOL_VERSION) {
+            return false;
+        }
+
+        int headerLength = (versionAndLength & 0xF) * 4;
+        int totalLength = buffer.getShort(offset + 2) & 0xFFFF;
+        if (headerLength < IPv4Packet.BASE_HEADER_LENGTH
+            || totalLength < headerLength
+            || totalLength > limit - offset) {
+            return false;
+        }
+
+        this.offset = offset;
+        this.headerLength = headerLength;
+        this.totalLength = totalLength;
+        this.buffer = buffer;
+        return true;
+    }
+
+    /**
+     * Indicates whether this view is currently bound to a packet.
+     */
+    public boolean isBound() {
+        return this.buffer != null;
+    }
+
+    /**
+     * Gets the buffer that contains the packet.
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the buffer index of the first byte of the IPv4 header.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the header length in bytes, including any options.
+     * See {@link IPv4Packet#getHeaderLength()}.
+     */
+    public int getHeaderLength() {
+        return this.headerLength;
+    }
+
+    /**
+     * Gets the Total Length field value.
+     * See {@link IPv4Packet#getTotalLength()}.
+     */
+    public int getTotalLength() {
+        return this.totalLength;
+    }
+
+    /**
+     * Gets the Type of Service field value.
+     * See {@link IPv4Packet#getTypeOfService()}.
+     */
+    public byte getTypeOfService() {
+        return this.buffer.get(this.offset + 1);
+    }
+
+    /**
+     * Gets the Identification field value.
+     * See {@link IPv4Packet#getIdentification()}.
+     */
+    public short getIdentification() {
+        return this.buffer.getShort(this.offset + 4);
+    }
+
+    /**
+     * Gets the Don't Fragment flag value.
+     * See {@link IPv4Packet#getDoNotFragment()}.
+     */
+    public boolean getDoNotFragment() {
+        return (this.buffer.getShort(this.offset + 6) & DONT_FRAGMENT_MASK) != 0;
+    }
+
+    /**
+     * Gets the More Fragments flag value.
+     * See {@link IPv4Packet#isMoreFragments()}.
+     */
+    public boolean isMoreFragments() {
+        return (this.buffer.getShort(this.offset + 6) & MORE_FRAGMENTS_MASK) != 0;
+    }
+
+    /**
+     * Gets the Fragment Offset field value in units of eight bytes.
+     * See {@link IPv4Packet#getFragmentOffset()}.
+     */
+    public int getFragmentOffset() {
+        return this.buffer.getShort(this.offset + 6) & FRAGMENT_OFFSET_MASK;
+    }
+
+    /**
+     * Indicates whether the packet is a fragment of a larger datagram.
+     */
+    public boolean isFragment() {
+        return (this.buffer.getShort(this.offset + 6) & (MORE_FRAGMENTS_MASK | FRAGMENT_OFFSET_MASK)) != 0;
+    }
+
+    /**
+     * Gets the Time-to-Live field value.
+     * See {@link IPv4Packet#getTTL()}.
+     */
+    public byte getTTL() {
+        return this.buffer.get(this.offset + 8);
+    }
+
+    /**
+     * Gets the Protocol field value.
+     */
+    public byte getProtocol() {
+        return this.buffer.get(this.offset + 9);
+    }
+
+    /**
+     * Gets the Header Checksum field value.
+     */
+    public short getHeaderChecksum() {
+        return this.buffer.getShort(this.offset + 10);
+    }
+
+    /**
+     * Verifies the header checksum in place.
+     */
+    public boolean isHeaderChecksumValid() {
+        return InternetChecksum.verify(this.buffer, this.offset, this.headerLength);
+    }
+
+    /**
+     * Gets the source address as an integer.
+     */
+    public int getSourceAddress() {
+        return this.buffer.getInt(this.offset + 12);
+    }
+
+    /**
+     * Gets the destination address as an integer.
+     */
+    public int getDestinationAddress() {
+        return this.buffer.getInt(this.offset + 16);
+    }
+
+    /**
+     * Copies the source address into a byte array.
+     * 
+     * @param address
+     *            The destination array.
+     * @param index
+     *            The array index at which the four address bytes are written.
+     */
+    public void getSourceAddress(final byte[] address, final int index) {
+        copy(this.offset + 12, address, index);
+    }
+
+    /**
+     * Copies the destination address into a byte array.
+     * 
+     * @param address
+     *            The destination array.
+     * @param index
+     *            The array index at which the four address bytes are written.
+     */
+    public void getDestinationAddress(final byte[] address, final int index) {
+        copy(this.offset + 16, address, index);
+    }
+
+    /**
+     * Calculates the partial Internet checksum of the source and destination addresses
+     * for use in an upper-layer pseudo-header checksum.
+     * See {@link InternetChecksum#sumPseudoHeader(long, byte, int)}.
+     */
+    public long sumAddresses() {
+        // The source and destination addresses are adjacent in the header
+        return InternetChecksum.sum(this.buffer, this.offset + 12, 8);
+    }
+
+    /**
+     * Gets the number of header bytes used for options and padding.
+     */
+    public int getOptionsLength() {
+        return this.headerLength - IPv4Packet.BASE_HEADER_LENGTH;
+    }
+
+    /**
+     * Gets the buffer index of the first header option.
+     * 
+     * @return The option index or -1 if the header carries no options.
+     */
+    public int getFirstOption() {
+        return checkOption(this.offset + IPv4Packet.BASE_HEADER_LENGTH);
+    }
+
+    /**
+     * Gets the buffer index of the header option that follows another.
+     * The walk ends at an End-of-List option or at the end of the header.
+     * 
+     * @param option
+     *            The buffer index of the current option.
+     * @return The option index or -1 if there are no more options.
+     */
+    public int getNextOption(final int option) {
+        int length = getOptionLength(option);
+        return length == 0 ? -1 : checkOption(option + length);
+    }
+
+    /**
+     * Gets the option code of a header option (the option byte less the copy flag).
+     * See {@link org.js4ms.ip.IPHeaderOption#getOptionCode()}.
+     * 
+     * @param option
+     *            The buffer index of the option.
+     */
+    public byte getOptionCode(final int option) {
+        return (byte) (this.buffer.get(option) & 0x7F);
+    }
+
+    /**
+     * Gets the total length of a header option, including the option and length bytes.
+     * 
+     * @param option
+     *            The buffer index of the option.
+     * @return The option length or zero if the option length is malformed.
+     */
+    public int getOptionLength(final int option) {
+        byte code = getOptionCode(option);
+        if (code == IPEndOfListOption.OPTION_CODE || code == IPNoOperationOption.OPTION_CODE) {
+            return 1;
+        }
+        int end = this.offset + this.headerLength;
+        if (option + 2 > end) {
+            return 0;
+        }
+        int length = this.buffer.get(option + 1) & 0xFF;
+        return length < 2 || option + length > end ? 0 : length;
+    }
+
+    /**
+     * Gets the buffer index of the first byte of the packet payload.
+     */
+    public int getPayloadOffset() {
+        return this.offset + this.headerLength;
+    }
+
+    /**
+     * Gets the length of the packet payload.
+     */
+    public int getPayloadLength() {
+        return this.totalLength - this.headerLength;
+    }
+
+    /**
+     * Returns a slice of the packet buffer that contains the payload.
+     * Unlike the other accessors this method constructs a new buffer object.
+     */
+    public ByteBuffer getPayload() {
+        ByteBuffer payload = this.buffer.duplicate();
+        payload.limit(this.offset + this.totalLength);
+        payload.position(this.offset + this.headerLength);
+        return payload.slice();
+    }
+
+    private int checkOption(final int option) {
+        if (option >= this.offset + this.headerLength
+            || getOptionCode(option) == IPEndOfListOption.OPTION_CODE) {
+            return -1;
+        }
+        return option;
+    }
+
+    private void copy(final int offset, final byte[] address, final int index) {
+        for (int i = 0; i < 4; i++) {
+            address[index + i] = this.buffer.get(offset + i);
+        }
+    }
+}
@@ -184,7 +184,7 @@ public final class IPv4RouterAlertOption
      * @return
      */
     public short getRouterAlertValue() {
-        return RouterAlertValue.get(getBufferInternal());
+        return RouterAlertValue.getShort(getBufferInternal());
     }
 
     /**
@@ -196,7 +196,7 @@ public final class IPv4RouterAlertOption
             logger.finer(this.log.entry("IPv4RouterAlertOption.setRouterAlertValue", routerAlertValue));
         }
 
-        RouterAlertValue.set(getBufferInternal(), routerAlertValue);
+        RouterAlertValue.setShort(getBufferInternal(), routerAlertValue);
     }
 
 }
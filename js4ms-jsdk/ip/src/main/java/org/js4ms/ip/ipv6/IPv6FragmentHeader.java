@@ -239,7 +239,7 @@ public final class IPv6FragmentHeader
      * @return
      */
     public short getFragmentOffset() {
-        return FragmentOffset.get(getBufferInternal());
+        return FragmentOffset.getShort(getBufferInternal());
     }
 
     /**
@@ -251,14 +251,14 @@ public final class IPv6FragmentHeader
             logger.finer(this.log.entry("IPv6FragmentHeader.setFragmentOffset", offset));
         }
 
-        FragmentOffset.set(getBufferInternal(), offset);
+        FragmentOffset.setShort(getBufferInternal(), offset);
     }
 
     /**
      * @return
      */
     public boolean getMoreFragments() {
-        return MoreFragments.get(getBufferInternal());
+        return MoreFragments.getBoolean(getBufferInternal());
     }
 
     /**
@@ -270,14 +270,14 @@ public final class IPv6FragmentHeader
             logger.finer(this.log.entry("IPv6FragmentHeader.setMoreFragments", moreFragments));
         }
 
-        MoreFragments.set(getBufferInternal(), moreFragments);
+        MoreFragments.setBoolean(getBufferInternal(), moreFragments);
     }
 
     /**
      * @return
      */
     public int getIdentification() {
-        return Identification.get(getBufferInternal());
+        return Identification.getInt(getBufferInternal());
     }
 
     /**
@@ -289,6 +289,6 @@ public final class IPv6FragmentHeader
             logger.finer(this.log.entry("IPv6FragmentHeader.setIdentification", identification));
         }
 
-        Identification.set(getBufferInternal(), identification);
+        Identification.setInt(getBufferInternal(), identification);
     }
 }
@@ -160,7 +160,7 @@ public abstract class IPv6OptionsHeader
     public IPv6OptionsHeader(final ByteBuffer buffer, final byte protocolNumber) throws ParseException {
         super(consume(buffer, BASE_HEADER_LENGTH), protocolNumber);
 
-        int headerLength = HeaderLength.get(getBufferInternal());
+        int headerLength = HeaderLength.getByte(getBufferInternal());
         this.unparsedOptions = consume(buffer, (MIN_HEADER_LENGTH - BASE_HEADER_LENGTH) + headerLength * 8);
 
         if (logger.isLoggable(Level.FINER)) {
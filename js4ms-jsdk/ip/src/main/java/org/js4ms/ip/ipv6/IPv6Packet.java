@@ -152,6 +152,9 @@ public final class IPv6Packet
         /** */
         IPMessage.Parser protocolParser;
 
+        /** */
+        boolean isLazyParsingEnabled = false;
+
         /**
          * 
          */
@@ -185,26 +188,50 @@ public final class IPv6Packet
             return this.protocolParser;
         }
 
-        @Override
-        public IPPacket parse(ByteBuffer buffer) throws ParseException, MissingParserException {
-            IPv6Packet header = new IPv6Packet(buffer);
+        /**
+         * Enables or disables lazy parsing. When enabled, the parser only constructs the
+         * fixed header - the extension headers and protocol messages are parsed the
+         * first time they are requested. Packets that carry a Fragment header are always
+         * parsed up to the Fragment header so they can be reassembled.
+         * See {@link IPv6Packet#IPv6Packet(ByteBuffer, boolean)} and
+         * {@link IPPacket#deferPayload(IPMessage.Parser)}.
+         * 
+         * @param isLazyParsingEnabled
+         */
+        public void setLazyParsingEnabled(final boolean isLazyParsingEnabled) {
+            this.isLazyParsingEnabled = isLazyParsingEnabled;
+        }
 
-            if (this.protocolParser != null) {
-                header.parsePayload(this.protocolParser);
-            }
+        /**
+         * @return
+         */
+        public boolean isLazyParsingEnabled() {
+            return this.isLazyParsingEnabled;
+        }
 
+        @Override
+        public IPPacket parse(ByteBuffer buffer) throws ParseException, MissingParserException {
+            IPv6Packet header = new IPv6Packet(buffer, this.isLazyParsingEnabled);
+            parseContent(header);
             return header;
         }
 
         @Override
         public IPPacket parse(final InputStream is) throws ParseException, MissingParserException, IOException {
-            IPv6Packet header = new IPv6Packet(is);
+            IPv6Packet header = new IPv6Packet(is, this.isLazyParsingEnabled);
+            parseContent(header);
+            return header;
+        }
 
+        private void parseContent(final IPv6Packet header) throws ParseException, MissingParserException {
             if (this.protocolParser != null) {
-                header.parsePayload(this.protocolParser);
+                if (this.isLazyParsingEnabled) {
+                    header.deferPayload(this.protocolParser);
+                }
+                else {
+                    header.parsePayload(this.protocolParser);
+                }
             }
-
-            return header;
         }
 
         @Override
@@ -229,7 +256,7 @@ public final class IPv6Packet
     public static final byte INTERNET_PROTOCOL_VERSION = 6;
 
     /** */
-    private static final int BASE_HEADER_LENGTH = 40;
+    public static final int BASE_HEADER_LENGTH = 40;
 
     /** */
     public static final FixedBufferField BaseHeader = new FixedBufferField(0, BASE_HEADER_LENGTH);
@@ -275,9 +302,9 @@ public final class IPv6Packet
         routingParser.add(new IPv6RoutingHeader.Parser());
         ipMessageParser.add(routingParser);
         ipMessageParser.add(new IPv6FragmentHeader.Parser());
-        ipMessageParser.add(51, new IPExtensionHeader.Parser()); // Authentication
-        ipMessageParser.add(50, new IPExtensionHeader.Parser()); // Encapsulating Security
-                                                                 // Payload
+        ipMessageParser.add((byte) 51, new IPExtensionHeader.Parser()); // Authentication
+        ipMessageParser.add((byte) 50, new IPExtensionHeader.Parser()); // Encapsulating Security
+                                                                        // Payload
         IPv6Packet.Parser ipv6Parser = new IPv6Packet.Parser();
         ipv6Parser.setProtocolParser(ipMessageParser);
         return ipv6Parser;
@@ -294,6 +321,11 @@ public final class IPv6Packet
     /** */
     private IPv6FragmentHeader fragmentHeader = null;
 
+    /**
+     * The complete packet payload if parsing of the extension headers was deferred.
+     */
+    private ByteBuffer deferredExtensionHeaders = null;
+
     /*-- Member Functions ---------------------------------------------------*/
 
     /**
@@ -340,16 +372,28 @@ public final class IPv6Packet
      * @throws ParseException
      */
     public IPv6Packet(final ByteBuffer buffer) throws ParseException {
+        this(buffer, false);
+    }
+
+    /**
+     * Constructs an IPv6 packet representation from the contents of the
+     * specified ByteBuffer.
+     * 
+     * @param buffer
+     * @param deferExtensionHeaders
+     *            Indicates whether the extension headers are parsed when the payload is
+     *            parsed instead of by the constructor. Ignored if the packet carries a
+     *            Fragment header.
+     * @throws ParseException
+     */
+    public IPv6Packet(final ByteBuffer buffer, final boolean deferExtensionHeaders) throws ParseException {
         super(consume(buffer, BASE_HEADER_LENGTH));
 
         if (logger.isLoggable(Level.FINER)) {
-            logger.finer(this.log.entry("IPv6Packet.IPv6Packet", buffer));
+            logger.finer(this.log.entry("IPv6Packet.IPv6Packet", buffer, deferExtensionHeaders));
         }
 
-        ByteBuffer payload = consume(buffer, getPayloadLength());
-
-        // Iterate through extension headers (if any) to look for fragment header
-        parseExtensionHeaders(NextHeader.get(getBufferInternal()), payload);
+        setPayload(consume(buffer, getPayloadLength()), deferExtensionHeaders);
 
         if (logger.isLoggable(Level.FINER)) {
             logState(logger,Level.FINER);
@@ -364,16 +408,28 @@ public final class IPv6Packet
      * @throws IOException
      */
     public IPv6Packet(final InputStream is) throws ParseException, IOException {
+        this(is, false);
+    }
+
+    /**
+     * Constructs an IPv6 packet representation from the specified byte stream..
+     * 
+     * @param is
+     * @param deferExtensionHeaders
+     *            Indicates whether the extension headers are parsed when the payload is
+     *            parsed instead of by the constructor. Ignored if the packet carries a
+     *            Fragment header.
+     * @throws ParseException
+     * @throws IOException
+     */
+    public IPv6Packet(final InputStream is, final boolean deferExtensionHeaders) throws ParseException, IOException {
         super(consume(is, BASE_HEADER_LENGTH));
 
         if (logger.isLoggable(Level.FINER)) {
-            logger.finer(this.log.entry("IPv6Packet.IPv6Packet", is));
+            logger.finer(this.log.entry("IPv6Packet.IPv6Packet", is, deferExtensionHeaders));
         }
 
-        ByteBuffer payload = consume(is, getPayloadLength());
-
-        // Iterate through extension headers (if any) to look for fragment header
-        parseExtensionHeaders(NextHeader.get(getBufferInternal()), payload);
+        setPayload(consume(is, getPayloadLength()), deferExtensionHeaders);
 
         if (logger.isLoggable(Level.FINER)) {
             logState(logger,Level.FINER);
@@ -452,7 +508,7 @@ public final class IPv6Packet
      * @return
      */
     public byte getTrafficClass() {
-        return (byte) TrafficClass.get(getBufferInternal()).shortValue();
+        return (byte) TrafficClass.getShort(getBufferInternal());
     }
 
     /**
@@ -473,7 +529,7 @@ public final class IPv6Packet
             logger.finer(this.log.entry("IPv6Packet.setTrafficClass", trafficClass));
         }
 
-        TrafficClass.set(getBufferInternal(), (short) trafficClass);
+        TrafficClass.setShort(getBufferInternal(), (short) trafficClass);
     }
 
     /**
@@ -489,7 +545,7 @@ public final class IPv6Packet
      * @return
      */
     public int getFlowLabel() {
-        return FlowLabel.get(getBufferInternal());
+        return FlowLabel.getInt(getBufferInternal());
     }
 
     /**
@@ -510,7 +566,7 @@ public final class IPv6Packet
             logger.finer(this.log.entry("IPv6Packet.setFlowLabel", flowLabel));
         }
 
-        FlowLabel.set(getBufferInternal(), flowLabel);
+        FlowLabel.setInt(getBufferInternal(), flowLabel);
     }
 
     /**
@@ -527,7 +583,7 @@ public final class IPv6Packet
      */
     @Override
     public int getPayloadLength() {
-        return (int) PayloadLength.get(getBufferInternal());
+        return (int) PayloadLength.getShort(getBufferInternal());
     }
 
     /**
@@ -549,7 +605,7 @@ public final class IPv6Packet
             logger.finer(this.log.entry("IPv6Packet.setPayloadLength", length));
         }
 
-        PayloadLength.set(getBufferInternal(), (short) length);
+        PayloadLength.setShort(getBufferInternal(), (short) length);
     }
 
     /**
@@ -565,7 +621,7 @@ public final class IPv6Packet
      * @return
      */
     public byte getNextHeader() {
-        return NextHeader.get(getBufferInternal());
+        return NextHeader.getByte(getBufferInternal());
     }
 
     /**
@@ -586,7 +642,7 @@ public final class IPv6Packet
             logger.finer(this.log.entry("IPv6Packet.setNextHeader", protocolNumber));
         }
 
-        NextHeader.set(getBufferInternal(), protocolNumber);
+        NextHeader.setByte(getBufferInternal(), protocolNumber);
     }
 
     /**
@@ -602,7 +658,7 @@ public final class IPv6Packet
      * @return
      */
     public byte getHopLimit() {
-        return HopLimit.get(getBufferInternal());
+        return HopLimit.getByte(getBufferInternal());
     }
 
     /**
@@ -623,7 +679,7 @@ public final class IPv6Packet
             logger.finer(this.log.entry("IPv6Packet.setHopLimit", hopLimit));
         }
 
-        HopLimit.set(getBufferInternal(), hopLimit);
+        HopLimit.setByte(getBufferInternal(), hopLimit);
     }
 
     /**
@@ -865,14 +921,25 @@ public final class IPv6Packet
      * @throws ParseException
      * @throws MissingParserException
      */
+    @Override
     public void parsePayload(final IPMessage.Parser protocolParser) throws ParseException, MissingParserException {
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("IPv6Packet.parsePayload", protocolParser));
         }
 
+        if (this.deferredExtensionHeaders != null) {
+            ByteBuffer payload = this.deferredExtensionHeaders;
+            this.deferredExtensionHeaders = null;
+            parseExtensionHeaders(NextHeader.getByte(getBufferInternal()), payload);
+        }
+
         // Parse IP protocol headers
         byte lastProtocolNumber = getLastProtocolNumber();
+        if (!hasParser(protocolParser, lastProtocolNumber)) {
+            // Leave the payload unparsed
+            return;
+        }
         // Check checksum before we consume the payload
         if (!protocolParser.verifyChecksum(this.unparsedPayload, lastProtocolNumber, getSourceAddress(), getDestinationAddress())) {
             if (logger.isLoggable(Level.FINE)) {
@@ -884,6 +951,9 @@ public final class IPv6Packet
         addProtocolMessage(nextHeader);
         while (nextHeader.getNextProtocolNumber() != IPMessage.NO_NEXT_HEADER) {
             lastProtocolNumber = nextHeader.getNextProtocolNumber();
+            if (!hasParser(protocolParser, lastProtocolNumber)) {
+                break;
+            }
             if (!protocolParser.verifyChecksum(this.unparsedPayload, lastProtocolNumber, getSourceAddress(),
                                                getDestinationAddress())) {
                 if (logger.isLoggable(Level.FINE)) {
@@ -897,6 +967,68 @@ public final class IPv6Packet
 
     }
 
+    /**
+     * @param protocolParser
+     * @param protocolNumber
+     * @return
+     */
+    private static boolean hasParser(final IPMessage.Parser protocolParser, final byte protocolNumber) {
+        return protocolParser.get(protocolNumber) != null || protocolParser.get(null) != null;
+    }
+
+    /**
+     * Sets the packet payload and, unless deferred, parses the extension headers it
+     * contains.
+     * 
+     * @param payload
+     * @param deferExtensionHeaders
+     * @throws ParseException
+     */
+    private void setPayload(final ByteBuffer payload, final boolean deferExtensionHeaders) throws ParseException {
+        byte nextHeader = NextHeader.getByte(getBufferInternal());
+        if (deferExtensionHeaders) {
+            int length = getExtensionHeadersLength(nextHeader, payload);
+            if (length == 0) {
+                this.unparsedPayload = payload;
+                return;
+            }
+            else if (length > 0) {
+                // Keep the complete payload so the headers can be parsed on demand
+                this.deferredExtensionHeaders = payload;
+                ByteBuffer upperLayerPayload = payload.duplicate();
+                upperLayerPayload.position(length);
+                this.unparsedPayload = upperLayerPayload.slice();
+                return;
+            }
+        }
+
+        // Iterate through extension headers (if any) to look for fragment header
+        parseExtensionHeaders(nextHeader, payload);
+    }
+
+    /**
+     * Walks the extension header chain without constructing header objects.
+     * 
+     * @param nextHeader
+     * @param payload
+     * @return The total length of the extension headers, or -1 if the chain contains
+     *         a Fragment or Authentication header or runs past the end of the payload.
+     */
+    private static int getExtensionHeadersLength(byte nextHeader, final ByteBuffer payload) {
+        int offset = 0;
+        int limit = payload.limit();
+        while (IPv6PacketView.isExtensionHeader(nextHeader)) {
+            if (nextHeader == IPv6FragmentHeader.IP_PROTOCOL_NUMBER
+                || nextHeader == IPAuthenticationHeader.IP_PROTOCOL_NUMBER
+                || offset + 8 > limit) {
+                return -1;
+            }
+            nextHeader = payload.get(offset);
+            offset += ((payload.get(offset + 1) & 0xFF) + 1) * 8;
+        }
+        return offset > limit ? -1 : offset;
+    }
+
     /**
      * @param nextHeader
      * @param payload
@@ -0,0 +1,427 @@
+package org.js4ms.ip.ipv6;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * IPv6PacketView.java [org.js4ms.jsdk:ip]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+
+import org.js4ms.ip.IPAuthenticationHeader;
+import org.js4ms.ip.InternetChecksum;
+
+
+
+/**
+ * A reusable, read-only view of an IPv6 packet contained in a {@link ByteBuffer}.
+ * The {@link #wrap(ByteBuffer, int)} method binds the view to a packet that starts at
+ * an arbitrary buffer position and walks the chain of extension headers in place - no
+ * packet, header, message or address objects are constructed.
+ * <p>
+ * The view recognizes the Hop-by-Hop Options, Routing, Fragment, Destination Options and
+ * Authentication headers. The first header of any other type is treated as the
+ * upper-layer protocol header, whose type is returned by {@link #getProtocol()} and
+ * whose offset is returned by {@link #getPayloadOffset()}. Extension headers are
+ * visited by index:
+ * 
+ * <pre>
+ * for (int i = 0; i &lt; view.getExtensionHeaderCount(); i++) {
+ *     if (view.getExtensionHeaderType(i) == IPv6RoutingHeader.IP_PROTOCOL_NUMBER) {
+ *         ...
+ *     }
+ * }
+ * </pre>
+ * 
+ * A view may be re-pointed at any number of packets, but is only valid until the next
+ * call to {@link #wrap(ByteBuffer, int)} and must not be shared between threads. The
+ * view never modifies the buffer position, limit or contents.
+ * 
+ * @see IPv6Packet
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class IPv6PacketView {
+
+    /*-- Static Variables ---------------------------------------------------*/
+
+    /**
+     * The maximum number of extension headers the view will walk. Packets that carry a
+     * longer chain are rejected by {@link #wrap(ByteBuffer, int)}.
+     */
+    public static final int MAX_EXTENSION_HEADERS = 8;
+
+    private static final int BASE_HEADER_LENGTH = 40;
+
+    private static final int FRAGMENT_OFFSET_MASK = 0xFFF8;
+
+    private static final int MORE_FRAGMENTS_MASK = 0x0001;
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int payloadLength;
+
+    private int extensionHeaderCount;
+
+    private final byte[] extensionHeaderTypes = new byte[MAX_EXTENSION_HEADERS];
+
+    private final int[] extensionHeaderOffsets = new int[MAX_EXTENSION_HEADERS];
+
+    private final int[] extensionHeaderLengths = new int[MAX_EXTENSION_HEADERS];
+
+    private byte protocol;
+
+    private int upperLayerOffset;
+
+    private int fragmentHeaderOffset;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an empty view.
+     */
+    public IPv6PacketView() {
+    }
+
+    /**
+     * Binds this view to the IPv6 packet that starts at the current position of a buffer.
+     * See {@link #wrap(ByteBuffer, int)}.
+     * 
+     * @param buffer
+     *            A buffer containing an IPv6 packet.
+     */
+    public boolean wrap(final ByteBuffer buffer) {
+        return wrap(buffer, buffer.position());
+    }
+
+    /**
+     * Binds this view to the IPv6 packet that starts at the specified buffer index.
+     * The payload length and the length of each extension header are checked against
+     * the buffer limit.
+     * 
+     * @param buffer
+     *            A buffer containing an IPv6 packet.
+     * @param offset
+     *            The index of the first byte of the IPv6 header.
+     * @return <code>true</code> if the buffer contains a complete IPv6 packet at the
+     *         specified index, or <code>false</code> if it does not or if the packet
+     *         carries more than {@link #MAX_EXTENSION_HEADERS} extension headers. The
+     *         view is unbound if <code>false</code> is returned.
+     */
+    public boolean wrap(final ByteBuffer buffer, final int offset) {
+
+        this.buffer = null;
+
+        int limit = buffer.limit();
+        if (offset < 0 || limit - offset < BASE_HEADER_LENGTH
+            || ((buffer.get(offset) >> 4) & 0xF) != IPv6Packet.INTERNET_PROTOCOL_VERSION) {
+            return false;
+        }
+
+        int payloadLength = buffer.getShort(offset + 4) & 0xFFFF;
+        int end = offset + BASE_HEADER_LENGTH + payloadLength;
+        if (end > limit) {
+            return false;
+        }
+
+        int count = 0;
+        int fragmentHeaderOffset = -1;
+        int headerOffset = offset + BASE_HEADER_LENGTH;
+        byte nextHeader = buffer.get(offset + 6);
+
+        while (isExtensionHeader(nextHeader)) {
+            if (count == MAX_EXTENSION_HEADERS || headerOffset + 8 > end) {
+                return false;
+            }
+            int headerLength;
+            if (nextHeader == IPv6FragmentHeader.IP_PROTOCOL_NUMBER) {
+                headerLength = IPv6FragmentHeader.BASE_HEADER_LENGTH;
+                fragmentHeaderOffset = headerOffset;
+            }
+            else if (nextHeader == IPAuthenticationHeader.IP_PROTOCOL_NUMBER) {
+                // The AH length is expressed in 4-byte units, less two [RFC-4302]
+                headerLength = ((buffer.get(headerOffset + 1) & 0xFF) + 2) * 4;
+            }
+            else {
+                headerLength = ((buffer.get(headerOffset + 1) & 0xFF) + 1) * 8;
+            }
+            if (headerOffset + headerLength > end) {
+                return false;
+            }
+            this.extensionHeaderTypes[count] = nextHeader;
+            this.extensionHeaderOffsets[count] = headerOffset;
+            this.extensionHeaderLengths[count] = headerLength;
+            count++;
+            nextHeader = buffer.get(headerOffset);
+            headerOffset += headerLength;
+        }
+
+        this.offset = offset;
+        this.payloadLength = payloadLength;
+        this.extensionHeaderCount = count;
+        this.protocol = nextHeader;
+        this.upperLayerOffset = headerOffset;
+        this.fragmentHeaderOffset = fragmentHeaderOffset;
+        this.buffer = buffer;
+        return true;
+    }
+
+    /**
+     * Indicates whether a next header value identifies an extension header that is
+     * walked by this view.
+     * 
+     * @param nextHeader
+     *            A Next Header field value.
+     */
+    public static boolean isExtensionHeader(final byte nextHeader) {
+        return nextHeader == IPv6HopByHopOptionsHeader.IP_PROTOCOL_NUMBER
+               || nextHeader == IPv6RoutingHeader.IP_PROTOCOL_NUMBER
+               || nextHeader == IPv6FragmentHeader.IP_PROTOCOL_NUMBER
+               || nextHeader == IPv6DestinationOptionsHeader.IP_PROTOCOL_NUMBER
+               || nextHeader == IPAuthenticationHeader.IP_PROTOCOL_NUMBER;
+    }
+
+    /**
+     * Indicates whether this view is currently bound to a packet.
+     */
+    public boolean isBound() {
+        return this.buffer != null;
+    }
+
+    /**
+     * Gets the buffer that contains the packet.
+     */
+    public ByteBuffer getBuffer() {
+        return this.buffer;
+    }
+
+    /**
+     * Gets the buffer index of the first byte of the IPv6 header.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the Traffic Class field value.
+     * See {@link IPv6Packet#getTrafficClass()}.
+     */
+    public byte getTrafficClass() {
+        return (byte) (this.buffer.getShort(this.offset) >> 4);
+    }
+
+    /**
+     * Gets the Flow Label field value.
+     * See {@link IPv6Packet#getFlowLabel()}.
+     */
+    public int getFlowLabel() {
+        return this.buffer.getInt(this.offset) & 0xFFFFF;
+    }
+
+    /**
+     * Gets the Payload Length field value. The payload includes any extension headers.
+     * See {@link IPv6Packet#getPayloadLength()}.
+     */
+    public int getTotalPayloadLength() {
+        return this.payloadLength;
+    }
+
+    /**
+     * Gets the Next Header field value of the base header.
+     * See {@link IPv6Packet#getNextHeader()}.
+     */
+    public byte getNextHeader() {
+        return this.buffer.get(this.offset + 6);
+    }
+
+    /**
+     * Gets the Hop Limit field value.
+     * See {@link IPv6Packet#getHopLimit()}.
+     */
+    public byte getHopLimit() {
+        return this.buffer.get(this.offset + 7);
+    }
+
+    /**
+     * Gets half of the source address as a long value.
+     * 
+     * @param index
+     *            Zero for the most significant eight bytes, one for the least
+     *            significant eight bytes.
+     */
+    public long getSourceAddress(final int index) {
+        return this.buffer.getLong(this.offset + 8 + index * 8);
+    }
+
+    /**
+     * Gets half of the destination address as a long value.
+     * 
+     * @param index
+     *            Zero for the most significant eight bytes, one for the least
+     *            significant eight bytes.
+     */
+    public long getDestinationAddress(final int index) {
+        return this.buffer.getLong(this.offset + 24 + index * 8);
+    }
+
+    /**
+     * Copies the source address into a byte array.
+     * 
+     * @param address
+     *            The destination array.
+     * @param index
+     *            The array index at which the sixteen address bytes are written.
+     */
+    public void getSourceAddress(final byte[] address, final int index) {
+        copy(this.offset + 8, address, index);
+    }
+
+    /**
+     * Copies the destination address into a byte array.
+     * 
+     * @param address
+     *            The destination array.
+     * @param index
+     *            The array index at which the sixteen address bytes are written.
+     */
+    public void getDestinationAddress(final byte[] address, final int index) {
+        copy(this.offset + 24, address, index);
+    }
+
+    /**
+     * Calculates the partial Internet checksum of the source and destination addresses
+     * for use in an upper-layer pseudo-header checksum.
+     * See {@link InternetChecksum#sumPseudoHeader(long, byte, int)}.
+     */
+    public long sumAddresses() {
+        // The source and destination addresses are adjacent in the header
+        return InternetChecksum.sum(this.buffer, this.offset + 8, 32);
+    }
+
+    /**
+     * Gets the number of extension headers that precede the upper-layer header.
+     */
+    public int getExtensionHeaderCount() {
+        return this.extensionHeaderCount;
+    }
+
+    /**
+     * Gets the type (protocol number) of an extension header.
+     * 
+     * @param index
+     *            The position of the header in the extension header chain.
+     */
+    public byte getExtensionHeaderType(final int index) {
+        return this.extensionHeaderTypes[index];
+    }
+
+    /**
+     * Gets the buffer index of the first byte of an extension header.
+     * 
+     * @param index
+     *            The position of the header in the extension header chain.
+     */
+    public int getExtensionHeaderOffset(final int index) {
+        return this.extensionHeaderOffsets[index];
+    }
+
+    /**
+     * Gets the length of an extension header in bytes.
+     * 
+     * @param index
+     *            The position of the header in the extension header chain.
+     */
+    public int getExtensionHeaderLength(final int index) {
+        return this.extensionHeaderLengths[index];
+    }
+
+    /**
+     * Indicates whether the packet carries a Fragment header.
+     */
+    public boolean isFragment() {
+        return this.fragmentHeaderOffset != -1;
+    }
+
+    /**
+     * Gets the More Fragments flag from the Fragment header.
+     * Only valid if {@link #isFragment()} returns <code>true</code>.
+     */
+    public boolean isMoreFragments() {
+        return (this.buffer.getShort(this.fragmentHeaderOffset + 2) & MORE_FRAGMENTS_MASK) != 0;
+    }
+
+    /**
+     * Gets the Fragment Offset from the Fragment header in units of eight bytes.
+     * Only valid if {@link #isFragment()} returns <code>true</code>.
+     */
+    public int getFragmentOffset() {
+        return (this.buffer.getShort(this.fragmentHeaderOffset + 2) & FRAGMENT_OFFSET_MASK) >> 3;
+    }
+
+    /**
+     * Gets the Identification field from the Fragment header.
+     * Only valid if {@link #isFragment()} returns <code>true</code>.
+     */
+    public int getFragmentIdentifier() {
+        return this.buffer.getInt(this.fragmentHeaderOffset + 4);
+    }
+
+    /**
+     * Gets the protocol number of the header that follows the extension header chain.
+     */
+    public byte getProtocol() {
+        return this.protocol;
+    }
+
+    /**
+     * Gets the buffer index of the first byte that follows the extension header chain.
+     */
+    public int getPayloadOffset() {
+        return this.upperLayerOffset;
+    }
+
+    /**
+     * Gets the number of bytes that follow the extension header chain.
+     */
+    public int getPayloadLength() {
+        return this.offset + BASE_HEADER_LENGTH + this.payloadLength - this.upperLayerOffset;
+    }
+
+    /**
+     * Returns a slice of the packet buffer that contains the bytes that follow the
+     * extension header chain.
+     * Unlike the other accessors this method constructs a new buffer object.
+     */
+    public ByteBuffer getPayload() {
+        ByteBuffer payload = this.buffer.duplicate();
+        payload.limit(this.offset + BASE_HEADER_LENGTH + this.payloadLength);
+        payload.position(this.upperLayerOffset);
+        return payload.slice();
+    }
+
+    private void copy(final int offset, final byte[] address, final int index) {
+        for (int i = 0; i < 16; i++) {
+            address[index + i] = this.buffer.get(offset + i);
+        }
+    }
+}
@@ -184,7 +184,7 @@ public final class IPv6RouterAlertOption
      * @return
      */
     public short getRouterAlertValue() {
-        return RouterAlertValue.get(getBufferInternal());
+        return RouterAlertValue.getShort(getBufferInternal());
     }
 
     /**
@@ -196,6 +196,6 @@ public final class IPv6RouterAlertOption
             logger.finer(Logging.entry(this, "IPv6RouterAlertOption.setRouterAlertValue", routerAlertValue));
         }
 
-        RouterAlertValue.set(getBufferInternal(), routerAlertValue);
+        RouterAlertValue.setShort(getBufferInternal(), routerAlertValue);
     }
 }
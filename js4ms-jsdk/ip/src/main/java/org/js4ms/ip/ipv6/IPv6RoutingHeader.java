@@ -30,8 +30,7 @@ import java.util.logging.Logger;
 import org.js4ms.common.exception.ParseException;
 import org.js4ms.common.util.buffer.field.ByteField;
 import org.js4ms.common.util.buffer.field.IntegerField;
-import org.js4ms.common.util.buffer.field.SelectorField;
-import org.js4ms.common.util.buffer.parser.BufferParserSelector;
+import org.js4ms.common.util.buffer.parser.BufferParserTableSelector;
 import org.js4ms.common.util.buffer.parser.KeyedBufferParser;
 import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.ip.IPExtensionHeader;
@@ -134,14 +133,14 @@ public class IPv6RoutingHeader
      * 
      */
     public static class Parser
-                    extends BufferParserSelector<IPMessage>
+                    extends BufferParserTableSelector<IPMessage>
                     implements IPMessage.ParserType {
 
         /**
          * 
          */
         public Parser() {
-            super(new SelectorField<Byte>(IPv6RoutingHeader.RoutingType));
+            super(IPv6RoutingHeader.RoutingType);
         }
 
         @Override
@@ -194,7 +193,7 @@ public class IPv6RoutingHeader
      * @throws ParseException
      */
     public IPv6RoutingHeader(final ByteBuffer buffer) throws ParseException {
-        super(consume(buffer, MIN_HEADER_LENGTH + HeaderLength.get(buffer) * 8), IP_PROTOCOL_NUMBER);
+        super(consume(buffer, MIN_HEADER_LENGTH + HeaderLength.getByte(buffer) * 8), IP_PROTOCOL_NUMBER);
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("IPv6RoutingHeader.IPv6RoutingHeader", buffer));
@@ -222,7 +221,7 @@ public class IPv6RoutingHeader
      * @return
      */
     public final byte getRoutingType() {
-        return RoutingType.get(getBufferInternal());
+        return RoutingType.getByte(getBufferInternal());
     }
 
     /**
@@ -234,14 +233,14 @@ public class IPv6RoutingHeader
             logger.finer(this.log.entry("IPv6RoutingHeader.setRoutingType", routingType));
         }
 
-        RoutingType.set(getBufferInternal(), routingType);
+        RoutingType.setByte(getBufferInternal(), routingType);
     }
 
     /**
      * @return
      */
     public final byte getSegmentsLeft() {
-        return SegmentsLeft.get(getBufferInternal());
+        return SegmentsLeft.getByte(getBufferInternal());
     }
 
     /**
@@ -253,6 +252,6 @@ public class IPv6RoutingHeader
             logger.finer(this.log.entry("IPv6RoutingHeader.setSegmentsLeft", segmentsLeft));
         }
 
-        SegmentsLeft.set(getBufferInternal(), segmentsLeft);
+        SegmentsLeft.setByte(getBufferInternal(), segmentsLeft);
     }
 }
@@ -136,7 +136,7 @@ public final class IPv6RoutingType0Header extends IPv6RoutingHeader {
      * @return
      */
     public int getNumberOfAddresses() {
-        return HeaderLength.get(getBufferInternal()) / 2;
+        return HeaderLength.getByte(getBufferInternal()) / 2;
     }
     
     /**
@@ -168,7 +168,7 @@ public final class IPv6RoutingType0Header extends IPv6RoutingHeader {
         //Precondition.checkIPv6Address(address);
         int index = this.addresses.size();
         this.addresses.add(address.clone());
-        HeaderLength.set(getBufferInternal(), (byte)(this.addresses.size() * 2));
+        HeaderLength.setByte(getBufferInternal(), (byte)(this.addresses.size() * 2));
         return index;
     }
 
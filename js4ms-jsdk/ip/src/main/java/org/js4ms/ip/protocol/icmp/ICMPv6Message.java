@@ -32,9 +32,8 @@ import org.js4ms.common.util.buffer.BufferBackedObject;
 import org.js4ms.common.util.buffer.field.ByteArrayField;
 import org.js4ms.common.util.buffer.field.ByteField;
 import org.js4ms.common.util.buffer.field.IntegerField;
-import org.js4ms.common.util.buffer.field.SelectorField;
 import org.js4ms.common.util.buffer.field.ShortField;
-import org.js4ms.common.util.buffer.parser.BufferParserSelector;
+import org.js4ms.common.util.buffer.parser.BufferParserTableSelector;
 import org.js4ms.common.util.buffer.parser.KeyedBufferParser;
 import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.common.util.logging.Logging;
@@ -142,14 +141,14 @@ public class ICMPv6Message
      * 
      */
     public static class Parser
-                    extends BufferParserSelector<ICMPv6Message>
+                    extends BufferParserTableSelector<ICMPv6Message>
                     implements IPMessage.ParserType {
 
         /**
          *
          */
         public Parser() {
-            super(new SelectorField<Byte>(ICMPv6Message.MessageType));
+            super(ICMPv6Message.MessageType);
         }
 
         @Override
@@ -188,7 +187,7 @@ public class ICMPv6Message
     public static boolean verifyChecksum(final ByteBuffer buffer,
                                          final byte[] sourceAddress,
                                          final byte[] destinationAddress) {
-        return Checksum.get(buffer) == ICMPv6Message.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress,
+        return Checksum.getShort(buffer) == ICMPv6Message.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress,
                                                                        destinationAddress);
     }
 
@@ -205,7 +204,7 @@ public class ICMPv6Message
     public static void setChecksum(final ByteBuffer buffer,
                                    final byte[] sourceAddress,
                                    final byte[] destinationAddress) {
-        Checksum.set(buffer,
+        Checksum.setShort(buffer,
                      ICMPv6Message.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress, destinationAddress));
     }
 
@@ -298,7 +297,7 @@ public class ICMPv6Message
      * @param buffer
      */
     public ICMPv6Message(final ByteBuffer buffer) throws ParseException {
-        super(consume(buffer, HEADER_LENGTH));
+        super(consume(buffer, calculateMessageSize(buffer)));
 
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("ICMPv6Message.ICMPv6Message", buffer));
@@ -402,7 +401,7 @@ public class ICMPv6Message
      * @return
      */
     public byte getType() {
-        return MessageType.get(getBufferInternal());
+        return MessageType.getByte(getBufferInternal());
     }
 
     /**
@@ -414,14 +413,14 @@ public class ICMPv6Message
             logger.finer(this.log.entry("ICMPv6Message.setType", type));
         }
 
-        MessageType.set(getBufferInternal(), type);
+        MessageType.setByte(getBufferInternal(), type);
     }
 
     /**
      * @return
      */
     public final byte getCode() {
-        return Code.get(getBufferInternal());
+        return Code.getByte(getBufferInternal());
     }
 
     /**
@@ -433,14 +432,14 @@ public class ICMPv6Message
             logger.fine(this.log.entry("ICMPv6Message.setCode", code));
         }
 
-        Code.set(getBufferInternal(), code);
+        Code.setByte(getBufferInternal(), code);
     }
 
     /**
      * @return
      */
     public final short getChecksum() {
-        return Checksum.get(getBufferInternal());
+        return Checksum.getShort(getBufferInternal());
     }
 
     /**
@@ -452,7 +451,7 @@ public class ICMPv6Message
             logger.finer(this.log.entry("ICMPv6Message.setChecksum", checksum));
         }
 
-        Checksum.set(getBufferInternal(), checksum);
+        Checksum.setShort(getBufferInternal(), checksum);
     }
 
     /**
@@ -566,9 +565,9 @@ public class ICMPv6Message
         ByteBuffer pseudoHeader = ByteBuffer.allocate(PSEUDO_HEADER_LENGTH);
         SourceAddress.set(pseudoHeader, sourceAddress);
         DestinationAddress.set(pseudoHeader, destinationAddress);
-        PacketLength.set(pseudoHeader, packetLength);
+        PacketLength.setInt(pseudoHeader, packetLength);
         Zeroes.set(pseudoHeader, new byte[3]);
-        NextHeader.set(pseudoHeader, IP_PROTOCOL_NUMBER);
+        NextHeader.setByte(pseudoHeader, IP_PROTOCOL_NUMBER);
 
         int total = 0;
         byte[] buffer = pseudoHeader.array();
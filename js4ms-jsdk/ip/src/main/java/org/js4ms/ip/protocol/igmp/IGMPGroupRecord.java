@@ -275,7 +275,7 @@ public final class IGMPGroupRecord
      * @return
      */
     public static short calculateGroupRecordSize(final ByteBuffer buffer) {
-        return (short) (BASE_RECORD_LENGTH + NumberOfSources.get(buffer) * 4 + AuxDataLen.get(buffer) * 4);
+        return (short) (BASE_RECORD_LENGTH + NumberOfSources.getShort(buffer) * 4 + AuxDataLen.getByte(buffer) * 4);
     }
 
     /*-- Member Variables ---------------------------------------------------*/
@@ -416,7 +416,7 @@ public final class IGMPGroupRecord
      * @return
      */
     public byte getType() {
-        return RecordType.get(getBufferInternal());
+        return RecordType.getByte(getBufferInternal());
     }
 
     /**
@@ -430,7 +430,7 @@ public final class IGMPGroupRecord
 
         if (type == MODE_IS_INCLUDE || type == MODE_IS_EXCLUDE || type == CHANGE_TO_INCLUDE_MODE
             || type == CHANGE_TO_EXCLUDE_MODE || type == ALLOW_NEW_SOURCES || type == BLOCK_OLD_SOURCES) {
-            RecordType.set(getBufferInternal(), type);
+            RecordType.setByte(getBufferInternal(), type);
         }
         else {
             if (IGMPMessage.logger.isLoggable(Level.FINE)) {
@@ -444,7 +444,7 @@ public final class IGMPGroupRecord
      * @return
      */
     public short getNumberOfSources() {
-        return NumberOfSources.get(getBufferInternal());
+        return NumberOfSources.getShort(getBufferInternal());
     }
 
     /**
@@ -456,7 +456,7 @@ public final class IGMPGroupRecord
             IGMPMessage.logger.finer(this.log.entry("IGMPv3GroupRecord.setNumberOfSources", numberOfSources));
         }
 
-        NumberOfSources.set(getBufferInternal(), numberOfSources);
+        NumberOfSources.setShort(getBufferInternal(), numberOfSources);
     }
 
     /**
@@ -465,7 +465,7 @@ public final class IGMPGroupRecord
      * @return The data length as a number of 32-bit words.
      */
     public int getAuxDataLength() {
-        return this.auxData != null ? (this.auxData.limit() + 3) / 4 : AuxDataLen.get(getBufferInternal());
+        return this.auxData != null ? (this.auxData.limit() + 3) / 4 : AuxDataLen.getByte(getBufferInternal());
     }
 
     /**
@@ -480,7 +480,7 @@ public final class IGMPGroupRecord
             IGMPMessage.logger.finer(this.log.entry("IGMPv3GroupRecord.setAuxDataLength", length));
         }
 
-        AuxDataLen.set(getBufferInternal(), (byte) length);
+        AuxDataLen.setByte(getBufferInternal(), (byte) length);
     }
 
     /**
@@ -30,9 +30,8 @@ import java.util.logging.Logger;
 import org.js4ms.common.exception.ParseException;
 import org.js4ms.common.util.buffer.BufferBackedObject;
 import org.js4ms.common.util.buffer.field.ByteField;
-import org.js4ms.common.util.buffer.field.SelectorField;
 import org.js4ms.common.util.buffer.field.ShortField;
-import org.js4ms.common.util.buffer.parser.BufferParserSelector;
+import org.js4ms.common.util.buffer.parser.BufferParserTableSelector;
 import org.js4ms.common.util.buffer.parser.KeyedBufferParser;
 import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.ip.IPMessage;
@@ -118,14 +117,14 @@ public abstract class IGMPMessage
      * 
      */
     public static final class Parser
-                    extends BufferParserSelector<IGMPMessage>
+                    extends BufferParserTableSelector<IGMPMessage>
                     implements IPMessage.ParserType {
 
         /**
          * 
          */
         public Parser() {
-            super(new SelectorField<Byte>(IGMPMessage.MessageType));
+            super(IGMPMessage.MessageType);
         }
 
         @Override
@@ -344,7 +343,7 @@ public abstract class IGMPMessage
             logger.finer(this.log.entry("IGMPMessage.IGMPMessage", size, type, maximumResponseTime));
         }
 
-        Reserved.set(getBufferInternal(), (byte) 0);
+        Reserved.setByte(getBufferInternal(), (byte) 0);
         setType(type);
         setChecksum((short) 0);
 
@@ -450,7 +449,7 @@ public abstract class IGMPMessage
      * @return
      */
     public byte getType() {
-        return MessageType.get(getBufferInternal());
+        return MessageType.getByte(getBufferInternal());
     }
 
     /**
@@ -464,7 +463,7 @@ public abstract class IGMPMessage
             logger.finer(this.log.entry("IGMPMessage.setType", type));
         }
 
-        MessageType.set(getBufferInternal(), type);
+        MessageType.setByte(getBufferInternal(), type);
     }
 
     /**
@@ -473,7 +472,7 @@ public abstract class IGMPMessage
      * @return
      */
     public final short getChecksum() {
-        return Checksum.get(getBufferInternal());
+        return Checksum.getShort(getBufferInternal());
     }
 
     /**
@@ -485,7 +484,7 @@ public abstract class IGMPMessage
             logger.finer(this.log.entry("IGMPMessage.setChecksum", checksum));
         }
 
-        Checksum.set(getBufferInternal(), checksum);
+        Checksum.setShort(getBufferInternal(), checksum);
     }
 
     /**
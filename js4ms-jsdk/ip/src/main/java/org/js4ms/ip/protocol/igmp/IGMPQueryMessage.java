@@ -204,7 +204,7 @@ public abstract class IGMPQueryMessage
      * @return
      */
     public byte getMaxRespCode() {
-        return MaxRespCode.get(getBufferInternal());
+        return MaxRespCode.getByte(getBufferInternal());
     }
 
     /**
@@ -218,7 +218,7 @@ public abstract class IGMPQueryMessage
             logger.finer(this.log.entry("IGMPQueryMessage.setMaxRespCode", maxRespCode));
         }
 
-        MaxRespCode.set(getBufferInternal(), maxRespCode);
+        MaxRespCode.setByte(getBufferInternal(), maxRespCode);
     }
 
     /**
@@ -155,7 +155,7 @@ public final class IGMPv2LeaveMessage
      *            - the buffer containing the IGMP message.
      */
     public static boolean verifyChecksum(final ByteBuffer buffer) {
-        return Checksum.get(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH);
+        return Checksum.getShort(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH);
     }
 
     /**
@@ -164,7 +164,7 @@ public final class IGMPv2LeaveMessage
      * @param buffer
      */
     public static void setChecksum(final ByteBuffer buffer) {
-        Checksum.set(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH));
+        Checksum.setShort(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH));
     }
 
     /*-- Member Functions ---------------------------------------------------*/
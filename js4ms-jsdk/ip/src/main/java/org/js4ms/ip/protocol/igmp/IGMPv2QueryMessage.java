@@ -184,7 +184,7 @@ public final class IGMPv2QueryMessage
      *            - the buffer containing the IGMP message.
      */
     public static boolean verifyChecksum(final ByteBuffer buffer) {
-        return Checksum.get(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH);
+        return Checksum.getShort(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH);
     }
 
     /**
@@ -193,7 +193,7 @@ public final class IGMPv2QueryMessage
      * @param buffer
      */
     public static void setChecksum(final ByteBuffer buffer) {
-        Checksum.set(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH));
+        Checksum.setShort(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH));
     }
 
     /*-- Member Functions ---------------------------------------------------*/
@@ -156,7 +156,7 @@ public final class IGMPv2ReportMessage
      *            - the buffer containing the IGMP message.
      */
     public static boolean verifyChecksum(final ByteBuffer buffer) {
-        return Checksum.get(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH);
+        return Checksum.getShort(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH);
     }
 
     /**
@@ -165,7 +165,7 @@ public final class IGMPv2ReportMessage
      * @param buffer
      */
     public static void setChecksum(final ByteBuffer buffer) {
-        Checksum.set(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH));
+        Checksum.setShort(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH));
     }
 
     /*-- Member Functions ---------------------------------------------------*/
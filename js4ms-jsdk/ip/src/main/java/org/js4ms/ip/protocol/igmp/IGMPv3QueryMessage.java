@@ -328,8 +328,8 @@ public final class IGMPv3QueryMessage
      *            A buffer containing an IGMP message.
      */
     public static boolean verifyChecksum(final ByteBuffer buffer) {
-        return Checksum.get(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH
-                                                                             + (NumberOfSources.get(buffer) * 4));
+        return Checksum.getShort(buffer) == IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH
+                                                                             + (NumberOfSources.getShort(buffer) * 4));
     }
 
     /**
@@ -338,7 +338,7 @@ public final class IGMPv3QueryMessage
      * @param buffer
      */
     public static void setChecksum(final ByteBuffer buffer) {
-        Checksum.set(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH + (NumberOfSources.get(buffer) * 4)));
+        Checksum.setShort(buffer, IGMPMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH + (NumberOfSources.getShort(buffer) * 4)));
     }
 
     /*-- Member Variables ---------------------------------------------------*/
@@ -523,7 +523,7 @@ public final class IGMPv3QueryMessage
      * @return
      */
     public boolean getSuppressRouterSideProcessing() {
-        return SuppressRouterSideProcessing.get(getBufferInternal());
+        return SuppressRouterSideProcessing.getBoolean(getBufferInternal());
     }
 
     /**
@@ -540,7 +540,7 @@ public final class IGMPv3QueryMessage
                                         suppressRouterSideProcessing));
         }
 
-        SuppressRouterSideProcessing.set(getBufferInternal(), suppressRouterSideProcessing);
+        SuppressRouterSideProcessing.setBoolean(getBufferInternal(), suppressRouterSideProcessing);
     }
 
     /**
@@ -565,7 +565,7 @@ public final class IGMPv3QueryMessage
      * @return
      */
     public byte getQuerierRobustnessVariable() {
-        return QuerierRobustnessVariable.get(getBufferInternal());
+        return QuerierRobustnessVariable.getByte(getBufferInternal());
     }
 
     /**
@@ -580,7 +580,7 @@ public final class IGMPv3QueryMessage
             logger.finer(this.log.entry("IGMPv3QueryMessage.setQuerierRobustnessVariable", querierRobustnessVariable));
         }
 
-        QuerierRobustnessVariable.set(getBufferInternal(), querierRobustnessVariable);
+        QuerierRobustnessVariable.setByte(getBufferInternal(), querierRobustnessVariable);
     }
 
     /**
@@ -615,7 +615,7 @@ public final class IGMPv3QueryMessage
      * @return
      */
     public byte getQuerierQueryIntervalCode() {
-        return QuerierQueryIntervalCode.get(getBufferInternal());
+        return QuerierQueryIntervalCode.getByte(getBufferInternal());
     }
 
     /**
@@ -632,7 +632,7 @@ public final class IGMPv3QueryMessage
             logger.finer(this.log.entry("IGMPv3QueryMessage.setQuerierQueryIntervalCode", querierQueryIntervalCode));
         }
 
-        QuerierQueryIntervalCode.set(getBufferInternal(), querierQueryIntervalCode);
+        QuerierQueryIntervalCode.setByte(getBufferInternal(), querierQueryIntervalCode);
     }
 
     /**
@@ -681,7 +681,7 @@ public final class IGMPv3QueryMessage
      * @return
      */
     public int getNumberOfSources() {
-        return NumberOfSources.get(getBufferInternal());
+        return NumberOfSources.getShort(getBufferInternal());
     }
 
     /**
@@ -693,7 +693,7 @@ public final class IGMPv3QueryMessage
             logger.finer(this.log.entry("IGMPv3QueryMessage.setNumberOfSources", numberOfSources));
         }
 
-        NumberOfSources.set(getBufferInternal(), (short) numberOfSources);
+        NumberOfSources.setShort(getBufferInternal(), (short) numberOfSources);
     }
 
     /**
@@ -229,7 +229,7 @@ public final class IGMPv3ReportMessage
      *            - the buffer containing the IGMP message.
      */
     public static boolean verifyChecksum(final ByteBuffer buffer) {
-        return Checksum.get(buffer) == IGMPMessage.calculateChecksum(buffer, IGMPv3ReportMessage.calculateMessageSize(buffer));
+        return Checksum.getShort(buffer) == IGMPMessage.calculateChecksum(buffer, IGMPv3ReportMessage.calculateMessageSize(buffer));
     }
 
     /**
@@ -239,7 +239,7 @@ public final class IGMPv3ReportMessage
      *            - a byte array.
      */
     public static void setChecksum(final ByteBuffer buffer) {
-        Checksum.set(buffer, IGMPMessage.calculateChecksum(buffer, IGMPv3ReportMessage.calculateMessageSize(buffer)));
+        Checksum.setShort(buffer, IGMPMessage.calculateChecksum(buffer, IGMPv3ReportMessage.calculateMessageSize(buffer)));
     }
 
     /**
@@ -248,7 +248,7 @@ public final class IGMPv3ReportMessage
      */
     public static short calculateMessageSize(final ByteBuffer buffer) {
         short total = BASE_MESSAGE_LENGTH;
-        short numberOfGroupRecords = NumberOfGroupRecords.get(buffer);
+        short numberOfGroupRecords = NumberOfGroupRecords.getShort(buffer);
         ByteBuffer message = buffer.slice();
         for (int i = 0; i < numberOfGroupRecords; i++) {
             message.position(total);
@@ -384,7 +384,7 @@ public final class IGMPv3ReportMessage
      * @return
      */
     public int getNumberOfGroupRecords() {
-        return NumberOfGroupRecords.get(getBufferInternal());
+        return NumberOfGroupRecords.getShort(getBufferInternal());
     }
 
     /**
@@ -396,7 +396,7 @@ public final class IGMPv3ReportMessage
             logger.finer(this.log.entry("IGMPv3ReportMessage.setNumberOfGroupRecords", numberOfGroupRecords));
         }
 
-        NumberOfGroupRecords.set(getBufferInternal(), numberOfGroupRecords);
+        NumberOfGroupRecords.setShort(getBufferInternal(), numberOfGroupRecords);
     }
 
     /**
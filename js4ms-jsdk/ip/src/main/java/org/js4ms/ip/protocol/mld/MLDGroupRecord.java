@@ -321,7 +321,7 @@ public final class MLDGroupRecord
      * @return
      */
     public static short calculateGroupRecordSize(final ByteBuffer buffer) {
-        return (short) (BASE_RECORD_LENGTH + NumberOfSources.get(buffer) * 16 + AuxDataLen.get(buffer) * 4);
+        return (short) (BASE_RECORD_LENGTH + NumberOfSources.getShort(buffer) * 16 + AuxDataLen.getByte(buffer) * 4);
     }
 
     /** */
@@ -452,7 +452,7 @@ public final class MLDGroupRecord
      * @return
      */
     public byte getType() {
-        return RecordType.get(getBufferInternal());
+        return RecordType.getByte(getBufferInternal());
     }
 
     /**
@@ -470,7 +470,7 @@ public final class MLDGroupRecord
             type == CHANGE_TO_EXCLUDE_MODE ||
             type == ALLOW_NEW_SOURCES ||
             type == BLOCK_OLD_SOURCES) {
-            RecordType.set(getBufferInternal(), type);
+            RecordType.setByte(getBufferInternal(), type);
         }
         else {
             throw new IllegalArgumentException("invalid group record type specified");
@@ -481,7 +481,7 @@ public final class MLDGroupRecord
      * @return
      */
     public short getNumberOfSources() {
-        return NumberOfSources.get(getBufferInternal());
+        return NumberOfSources.getShort(getBufferInternal());
     }
 
     /**
@@ -493,7 +493,7 @@ public final class MLDGroupRecord
             MLDMessage.logger.finer(this.log.entry("MLDGroupRecord.setNumberOfSources", numberOfSources));
         }
 
-        NumberOfSources.set(getBufferInternal(), numberOfSources);
+        NumberOfSources.setShort(getBufferInternal(), numberOfSources);
     }
 
     /**
@@ -502,7 +502,7 @@ public final class MLDGroupRecord
      * @return The data length as a number of 32-bit words.
      */
     public int getAuxDataLength() {
-        return this.auxData != null ? (this.auxData.limit() + 3) / 4 : AuxDataLen.get(getBufferInternal());
+        return this.auxData != null ? (this.auxData.limit() + 3) / 4 : AuxDataLen.getByte(getBufferInternal());
     }
 
     /**
@@ -517,7 +517,7 @@ public final class MLDGroupRecord
             MLDMessage.logger.finer(this.log.entry("MLDGroupRecord.setAuxDataLength", length));
         }
 
-        AuxDataLen.set(getBufferInternal(), (byte) length);
+        AuxDataLen.setByte(getBufferInternal(), (byte) length);
     }
 
     /**
@@ -236,7 +236,7 @@ public abstract class MLDMessage
      */
     public static MLDMessage.Parser getMLDMessageParser() {
         MLDMessage.Parser parser = new MLDMessage.Parser();
-        parser.add(new MLDv1QueryMessage.Parser());
+        parser.add(new MLDQueryMessage.Parser());
         parser.add(new MLDv1ReportMessage.Parser());
         parser.add(new MLDv2ReportMessage.Parser());
         parser.add(new MLDv1DoneMessage.Parser());
@@ -368,7 +368,7 @@ public abstract class MLDMessage
         setType(type);
         setCode((byte) 0);
         setChecksum((short) 0);
-        MLDMessage.Reserved.set(getBufferInternal(), (short) 0);
+        MLDMessage.Reserved.setShort(getBufferInternal(), (short) 0);
 
         if (logger.isLoggable(Level.FINER)) {
             logState(logger, Level.FINER);
@@ -412,7 +412,7 @@ public abstract class MLDMessage
      * @return
      */
     public short getMaximumResponseDelay() {
-        return MLDMessage.MaximumResponseDelay.get(getBufferInternal());
+        return MLDMessage.MaximumResponseDelay.getShort(getBufferInternal());
     }
 
     /**
@@ -424,6 +424,6 @@ public abstract class MLDMessage
             logger.finer(this.log.entry("MLDMessage.setMaximumResponseDelay", milliseconds));
         }
 
-        MLDMessage.MaximumResponseDelay.set(getBufferInternal(), milliseconds);
+        MLDMessage.MaximumResponseDelay.setShort(getBufferInternal(), milliseconds);
     }
 }
@@ -89,7 +89,7 @@ public abstract class MLDQueryMessage extends MLDGroupMessage {
             if (buffer.limit() == MLDv1QueryMessage.BASE_MESSAGE_LENGTH) {
                 return this.v1Parser.verifyChecksum(buffer, sourceAddress, destinationAddress);
             }
-            else if (buffer.limit() > MLDv2QueryMessage.BASE_MESSAGE_LENGTH) {
+            else if (buffer.limit() >= MLDv2QueryMessage.BASE_MESSAGE_LENGTH) {
                 return this.v2Parser.verifyChecksum(buffer, sourceAddress, destinationAddress);
             }
             else {
@@ -137,7 +137,7 @@ public abstract class MLDQueryMessage extends MLDGroupMessage {
      * @param groupAddress
      */
     protected MLDQueryMessage(final int size) {
-        super(size,(byte)0,GENERAL_QUERY_GROUP);
+        super(size,MESSAGE_TYPE,GENERAL_QUERY_GROUP);
         
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("MLDQueryMessage.MLDQueryMessage"));
@@ -150,7 +150,7 @@ public abstract class MLDQueryMessage extends MLDGroupMessage {
      * @param groupAddress
      */
     protected MLDQueryMessage(final int size, final byte[] groupAddress) {
-        super(size,(byte)0,groupAddress);
+        super(size,MESSAGE_TYPE,groupAddress);
         
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(this.log.entry("MLDQueryMessage.MLDQueryMessage", Logging.address(groupAddress)));
@@ -200,7 +200,7 @@ public final class MLDv1DoneMessage
     public static boolean verifyChecksum(final ByteBuffer buffer,
                                          final byte[] sourceAddress,
                                          final byte[] destinationAddress) {
-        return Checksum.get(buffer) == MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress);
+        return Checksum.getShort(buffer) == MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress);
     }
 
     /**
@@ -218,7 +218,7 @@ public final class MLDv1DoneMessage
     public static void setChecksum(final ByteBuffer buffer,
                                    final byte[] sourceAddress,
                                    final byte[] destinationAddress) {
-        Checksum.set(buffer, MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress));
+        Checksum.setShort(buffer, MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress));
     }
 
     /*-- Member Functions ---------------------------------------------------*/
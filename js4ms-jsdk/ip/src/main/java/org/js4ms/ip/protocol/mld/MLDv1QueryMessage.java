@@ -236,7 +236,7 @@ public final class MLDv1QueryMessage
     public static boolean verifyChecksum(final ByteBuffer buffer,
                                          final byte[] sourceAddress,
                                          final byte[] destinationAddress) {
-        return Checksum.get(buffer) == MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress);
+        return Checksum.getShort(buffer) == MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress);
     }
 
     /**
@@ -254,7 +254,7 @@ public final class MLDv1QueryMessage
     public static void setChecksum(final ByteBuffer buffer,
                                    final byte[] sourceAddress,
                                    final byte[] destinationAddress) {
-        Checksum.set(buffer, MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress));
+        Checksum.setShort(buffer, MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH, sourceAddress, destinationAddress));
     }
 
     /*-- Member Functions ---------------------------------------------------*/
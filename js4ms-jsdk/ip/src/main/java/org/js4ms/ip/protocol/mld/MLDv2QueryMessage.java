@@ -254,7 +254,7 @@ public final class MLDv2QueryMessage
 
         @Override
         public MLDMessage parse(final ByteBuffer buffer) throws ParseException {
-            return new MLDv1QueryMessage(buffer);
+            return new MLDv2QueryMessage(buffer);
         }
 
         @Override
@@ -266,7 +266,7 @@ public final class MLDv2QueryMessage
 
         @Override
         public Object getKey() {
-            return MessageType;
+            return MESSAGE_TYPE;
         }
 
     }
@@ -317,8 +317,8 @@ public final class MLDv2QueryMessage
     public static boolean verifyChecksum(final ByteBuffer buffer,
                                          final byte[] sourceAddress,
                                          final byte[] destinationAddress) {
-        return Checksum.get(buffer) == MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH
-                                                                            + (NumberOfSources.get(buffer) * 16), sourceAddress,
+        return Checksum.getShort(buffer) == MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH
+                                                                            + (NumberOfSources.getShort(buffer) * 16), sourceAddress,
                                                                     destinationAddress);
     }
 
@@ -335,7 +335,7 @@ public final class MLDv2QueryMessage
      *            An IPv6 (16-byte) address.
      */
     public static void setChecksum(ByteBuffer buffer, byte[] sourceAddress, byte[] destinationAddress) {
-        Checksum.set(buffer, MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH + (NumberOfSources.get(buffer) * 16),
+        Checksum.setShort(buffer, MLDMessage.calculateChecksum(buffer, BASE_MESSAGE_LENGTH + (NumberOfSources.getShort(buffer) * 16),
                                                           sourceAddress, destinationAddress));
     }
 
@@ -356,7 +356,7 @@ public final class MLDv2QueryMessage
             logger.finer(this.log.entry("MLDv2QueryMessage.MLDv2QueryMessage"));
         }
 
-        Reserved.set(getBufferInternal(), (byte) 0);
+        Reserved.setByte(getBufferInternal(), (byte) 0);
         setSuppressRouterSideProcessing(false);
         setQuerierRobustnessVariable((byte) DEFAULT_ROBUSTNESS_VALUE);
         setQueryIntervalTime(DEFAULT_QUERY_INTERVAL_VALUE);
@@ -376,7 +376,7 @@ public final class MLDv2QueryMessage
             logger.finer(this.log.entry("MLDv2QueryMessage.MLDv2QueryMessage", Logging.address(groupAddress)));
         }
 
-        Reserved.set(getBufferInternal(), (byte) 0);
+        Reserved.setByte(getBufferInternal(), (byte) 0);
         setSuppressRouterSideProcessing(false);
         setQuerierRobustnessVariable((byte) DEFAULT_ROBUSTNESS_VALUE);
         setQueryIntervalTime(DEFAULT_QUERY_INTERVAL_VALUE);
@@ -518,7 +518,7 @@ public final class MLDv2QueryMessage
          * 
          * Maximum Response Delay = (mant | 0x1000) << (exp+3)
          */
-        short maxRespCode = MaximumResponseCode.get(getBufferInternal());
+        short maxRespCode = MaximumResponseCode.getShort(getBufferInternal());
         if (maxRespCode < 32768) {
             return maxRespCode;
         }
@@ -546,7 +546,7 @@ public final class MLDv2QueryMessage
         }
 
         if (milliseconds < 32768) {
-            MaximumResponseCode.set(getBufferInternal(), milliseconds);
+            MaximumResponseCode.setShort(getBufferInternal(), milliseconds);
         }
         else {
             // convert to fixed then floating point
@@ -557,7 +557,7 @@ public final class MLDv2QueryMessage
                 exponent++;
             }
             short mantissa = (short) ((fp >> 8) & 0x00FF);
-            MaximumResponseCode.set(getBufferInternal(), (short) (0x8000 | (exponent << 12) | mantissa));
+            MaximumResponseCode.setShort(getBufferInternal(), (short) (0x8000 | (exponent << 12) | mantissa));
         }
     }
 
@@ -582,7 +582,7 @@ public final class MLDv2QueryMessage
      * @return
      */
     public boolean getSuppressRouterSideProcessing() {
-        return SuppressRouterSideProcessing.get(getBufferInternal());
+        return SuppressRouterSideProcessing.getBoolean(getBufferInternal());
     }
 
     /**
@@ -598,7 +598,7 @@ public final class MLDv2QueryMessage
                                         suppressRouterSideProcessing));
         }
 
-        SuppressRouterSideProcessing.set(getBufferInternal(), suppressRouterSideProcessing);
+        SuppressRouterSideProcessing.setBoolean(getBufferInternal(), suppressRouterSideProcessing);
     }
 
     /**
@@ -626,7 +626,7 @@ public final class MLDv2QueryMessage
      * @return
      */
     public byte getQuerierRobustnessVariable() {
-        return QuerierRobustnessVariable.get(getBufferInternal());
+        return QuerierRobustnessVariable.getByte(getBufferInternal());
     }
 
     /**
@@ -641,7 +641,7 @@ public final class MLDv2QueryMessage
             logger.finer(this.log.entry("MLDv2QueryMessage.setQuerierRobustnessVariable", querierRobustnessVariable));
         }
 
-        QuerierRobustnessVariable.set(getBufferInternal(), querierRobustnessVariable);
+        QuerierRobustnessVariable.setByte(getBufferInternal(), querierRobustnessVariable);
     }
 
     /**
@@ -678,7 +678,7 @@ public final class MLDv2QueryMessage
      * @return
      */
     public byte getQuerierQueryIntervalCode() {
-        return QuerierQueryIntervalCode.get(getBufferInternal());
+        return QuerierQueryIntervalCode.getByte(getBufferInternal());
     }
 
     /**
@@ -694,7 +694,7 @@ public final class MLDv2QueryMessage
             logger.finer(this.log.entry("MLDv2QueryMessage.setQuerierQueryIntervalCode", querierQueryIntervalCode));
         }
 
-        QuerierQueryIntervalCode.set(getBufferInternal(), querierQueryIntervalCode);
+        QuerierQueryIntervalCode.setByte(getBufferInternal(), querierQueryIntervalCode);
     }
 
     /**
@@ -741,7 +741,7 @@ public final class MLDv2QueryMessage
      * @return
      */
     public int getNumberOfSources() {
-        return NumberOfSources.get(getBufferInternal());
+        return NumberOfSources.getShort(getBufferInternal());
     }
 
     /**
@@ -753,7 +753,7 @@ public final class MLDv2QueryMessage
             logger.finer(this.log.entry("MLDv2QueryMessage.setNumberOfSources", numberOfSources));
         }
 
-        NumberOfSources.set(getBufferInternal(), (short) numberOfSources);
+        NumberOfSources.setShort(getBufferInternal(), (short) numberOfSources);
     }
 
     /**
@@ -245,7 +245,7 @@ public final class MLDv2ReportMessage
     public static boolean verifyChecksum(final ByteBuffer buffer,
                                          final byte[] sourceAddress,
                                          final byte[] destinationAddress) {
-        return Checksum.get(buffer) == MLDMessage.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress,
+        return Checksum.getShort(buffer) == MLDMessage.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress,
                                                                     destinationAddress);
     }
 
@@ -264,12 +264,12 @@ public final class MLDv2ReportMessage
     public static void setChecksum(final ByteBuffer buffer,
                                    final byte[] sourceAddress,
                                    final byte[] destinationAddress) {
-        Checksum.set(buffer, MLDMessage.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress, destinationAddress));
+        Checksum.setShort(buffer, MLDMessage.calculateChecksum(buffer, calculateMessageSize(buffer), sourceAddress, destinationAddress));
     }
 
     public static short calculateMessageSize(ByteBuffer buffer) {
         short total = BASE_MESSAGE_LENGTH;
-        short numberOfGroupRecords = NumberOfGroupRecords.get(buffer);
+        short numberOfGroupRecords = NumberOfGroupRecords.getShort(buffer);
         ByteBuffer message = buffer.slice();
         for (int i = 0; i < numberOfGroupRecords; i++) {
             message.position(total);
@@ -295,7 +295,7 @@ public final class MLDv2ReportMessage
             logger.finer(this.log.entry("MLDv2ReportMessage.MLDv2ReportMessage"));
         }
 
-        Reserved.set(getBufferInternal(), (short) 0);
+        Reserved.setShort(getBufferInternal(), (short) 0);
 
         if (logger.isLoggable(Level.FINER)) {
             logState(logger, Level.FINER);
@@ -407,7 +407,7 @@ public final class MLDv2ReportMessage
      * @return
      */
     public int getNumberOfGroupRecords() {
-        return NumberOfGroupRecords.get(getBufferInternal());
+        return NumberOfGroupRecords.getShort(getBufferInternal());
     }
 
     /**
@@ -419,7 +419,7 @@ public final class MLDv2ReportMessage
             logger.fine(this.log.entry("MLDv2ReportMessage.setNumberOfGroupRecords", numberOfGroupRecords));
         }
 
-        NumberOfGroupRecords.set(getBufferInternal(), numberOfGroupRecords);
+        NumberOfGroupRecords.setShort(getBufferInternal(), numberOfGroupRecords);
     }
 
     /**
@@ -34,6 +34,7 @@ import org.js4ms.common.util.buffer.parser.MissingParserException;
 import org.js4ms.common.util.logging.Logging;
 import org.js4ms.ip.IPMessage;
 import org.js4ms.ip.IPPacket;
+import org.js4ms.ip.InternetChecksum;
 import org.js4ms.ip.ipv4.IPv4Packet;
 import org.js4ms.ip.ipv6.IPv6Packet;
 
@@ -283,16 +284,21 @@ public final class UdpPacket
                                                final byte[] sourceAddress,
                                                final byte[] destinationAddress) {
 
-        short checksum = Checksum.get(buffer);
+        short checksum = Checksum.getShort(buffer);
 
         // IPv4 UDP packets can have zero checksum
         if (sourceAddress.length == 4 && checksum == 0) {
             return true;
         }
 
-        short computedChecksum = calculateChecksum(buffer, sourceAddress, destinationAddress);
-        if (checksum != computedChecksum) {
-            logger.warning("received UDP packet with invalid checksum: received=" + checksum + " computed=" + computedChecksum);
+        int length = Length.getShort(buffer) & 0xFFFF;
+        long sum = InternetChecksum.sumPseudoHeader(InternetChecksum.sumAddresses(sourceAddress, destinationAddress),
+                                                    IP_PROTOCOL_NUMBER,
+                                                    length)
+                   + InternetChecksum.sum(buffer, 0, length);
+        if (!InternetChecksum.isValid(sum)) {
+            logger.warning("received UDP packet with invalid checksum: received=" + checksum + " computed="
+                           + calculateChecksum(buffer, sourceAddress, destinationAddress));
             return false;
         }
         return true;
@@ -312,7 +318,29 @@ public final class UdpPacket
                                                 final byte[] sourceAddress,
                                                 final byte[] destinationAddress) {
         return IPPacket.calculateChecksum(buffer, Checksum, sourceAddress, destinationAddress, IP_PROTOCOL_NUMBER,
-                                          Length.get(buffer));
+                                          Length.getShort(buffer));
+    }
+
+    /**
+     * Rewrites the destination port of a UDP packet contained in a buffer and updates the
+     * checksum incrementally. A zero (unused) IPv4 checksum is left unchanged.
+     * 
+     * @param buffer
+     *            - the buffer containing the UDP packet.
+     * @param destinationPort
+     *            - the new destination port.
+     */
+    public final static void updateDestinationPort(final ByteBuffer buffer, final int destinationPort) {
+        if (Checksum.getShort(buffer) == 0) {
+            DestinationPort.setShort(buffer, (short) destinationPort);
+        }
+        else {
+            InternetChecksum.replace(buffer, CHECKSUM_OFFSET, DestinationPort.getOffset(), (short) destinationPort);
+            if (Checksum.getShort(buffer) == 0) {
+                // A computed checksum of zero is transmitted as all ones
+                Checksum.setShort(buffer, (short) 0xFFFF);
+            }
+        }
     }
 
     /*-- Member Variables ---------------------------------------------------*/
@@ -370,7 +398,7 @@ public final class UdpPacket
             logger.finer(this.log.entry("UdpPacket.UdpPacket", buffer));
         }
 
-        this.payload = consume(buffer, Length.get(getBufferInternal()) - BASE_HEADER_LENGTH);
+        this.payload = consume(buffer, Length.getShort(getBufferInternal()) - BASE_HEADER_LENGTH);
 
         if (logger.isLoggable(Level.FINER)) {
             logState(logger, Level.FINER);
@@ -435,7 +463,7 @@ public final class UdpPacket
                                         Logging.address(destinationAddress)));
         }
 
-        Checksum.set(buffer, calculateChecksum(buffer, sourceAddress, destinationAddress));
+        Checksum.setShort(buffer, calculateChecksum(buffer, sourceAddress, destinationAddress));
     }
 
     @Override
@@ -487,7 +515,7 @@ public final class UdpPacket
      * @return
      */
     public final int getLength() {
-        return Length.get(getBufferInternal());
+        return Length.getShort(getBufferInternal());
     }
 
     /**
@@ -499,7 +527,7 @@ public final class UdpPacket
             logger.finer(this.log.entry("UdpPacket.setLength", length));
         }
 
-        Length.set(getBufferInternal(), length);
+        Length.setShort(getBufferInternal(), length);
     }
 
     @Override
@@ -518,7 +546,7 @@ public final class UdpPacket
      * @return
      */
     public final int getSourcePort() {
-        return SourcePort.get(getBufferInternal()) & 0xFFFF;
+        return SourcePort.getShort(getBufferInternal()) & 0xFFFF;
     }
 
     /**
@@ -530,14 +558,14 @@ public final class UdpPacket
             logger.finer(this.log.entry("UdpPacket.setSourcePort", sourcePort));
         }
 
-        SourcePort.set(getBufferInternal(), (short) sourcePort);
+        SourcePort.setShort(getBufferInternal(), (short) sourcePort);
     }
 
     /**
      * @return
      */
     public final int getDestinationPort() {
-        return DestinationPort.get(getBufferInternal()) & 0xFFFF;
+        return DestinationPort.getShort(getBufferInternal()) & 0xFFFF;
     }
 
     /**
@@ -549,7 +577,7 @@ public final class UdpPacket
             logger.finer(this.log.entry("UdpPacket.setDestinationPort", destinationPort));
         }
 
-        DestinationPort.set(getBufferInternal(), (short) destinationPort);
+        DestinationPort.setShort(getBufferInternal(), (short) destinationPort);
     }
 
     /**
@@ -562,15 +590,15 @@ public final class UdpPacket
             logger.finer(this.log.entry("UdpPacket.setPorts", sourcePort, destinationPort));
         }
 
-        SourcePort.set(getBufferInternal(), (short) sourcePort);
-        DestinationPort.set(getBufferInternal(), (short) destinationPort);
+        SourcePort.setShort(getBufferInternal(), (short) sourcePort);
+        DestinationPort.setShort(getBufferInternal(), (short) destinationPort);
     }
 
     /**
      * @return
      */
     public final short getChecksum() {
-        return Checksum.get(getBufferInternal());
+        return Checksum.getShort(getBufferInternal());
     }
 
     /**
@@ -582,7 +610,7 @@ public final class UdpPacket
             logger.finer(this.log.entry("UdpPacket.setChecksum", checksum));
         }
 
-        Checksum.set(getBufferInternal(), checksum);
+        Checksum.setShort(getBufferInternal(), checksum);
     }
 
     /**
@@ -0,0 +1,239 @@
+package org.js4ms.ip.protocol.udp;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * UdpView.java [org.js4ms.jsdk:ip]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+
+import java.nio.ByteBuffer;
+
+import org.js4ms.ip.InternetChecksum;
+import org.js4ms.ip.ipv4.IPv4PacketView;
+import org.js4ms.ip.ipv6.IPv6PacketView;
+
+
+
+/**
+ * A reusable, read-only view of a UDP packet contained in a {@link ByteBuffer}.
+ * The view is normally bound to the payload of an {@link IPv4PacketView} or
+ * {@link IPv6PacketView} so that the pseudo-header checksum can be verified in place,
+ * but may also be bound to an arbitrary buffer index using
+ * {@link #wrap(ByteBuffer, int, int)}.
+ * <p>
+ * A view may be re-pointed at any number of packets, but is only valid until the next
+ * call to one of the <code>wrap</code> methods and must not be shared between threads.
+ * The view never modifies the buffer position, limit or contents.
+ * 
+ * @see UdpPacket
+ * @author Greg Bumgardner (gbumgard)
+ */
+public final class UdpView {
+
+    /*-- Member Variables ---------------------------------------------------*/
+
+    private ByteBuffer buffer;
+
+    private int offset;
+
+    private int length;
+
+    private long addressSum;
+
+    private boolean isZeroChecksumAllowed;
+
+    private boolean hasPseudoHeader;
+
+    /*-- Member Functions ---------------------------------------------------*/
+
+    /**
+     * Constructs an empty view.
+     */
+    public UdpView() {
+    }
+
+    /**
+     * Binds this view to the UDP packet carried in the payload of an IPv4 packet.
+     * 
+     * @param packet
+     *            A bound IPv4 packet view.
+     * @return <code>true</code> if the IPv4 packet is not a fragment and carries a
+     *         complete UDP packet, or <code>false</code> otherwise. The view is unbound
+     *         if <code>false</code> is returned.
+     */
+    public boolean wrap(final IPv4PacketView packet) {
+        if (packet.getProtocol() != UdpPacket.IP_PROTOCOL_NUMBER
+            || packet.isFragment()
+            || !wrap(packet.getBuffer(), packet.getPayloadOffset(), packet.getPayloadLength())) {
+            this.buffer = null;
+            return false;
+        }
+        this.addressSum = packet.sumAddresses();
+        this.isZeroChecksumAllowed = true;
+        this.hasPseudoHeader = true;
+        return true;
+    }
+
+    /**
+     * Binds this view to the UDP packet that follows the extension headers of an IPv6
+     * packet.
+     * 
+     * @param packet
+     *            A bound IPv6 packet view.
+     * @return <code>true</code> if the IPv6 packet is not a fragment and carries a
+     *         complete UDP packet, or <code>false</code> otherwise. The view is unbound
+     *         if <code>false</code> is returned.
+     */
+    public boolean wrap(final IPv6PacketView packet) {
+        if (packet.getProtocol() != UdpPacket.IP_PROTOCOL_NUMBER
+            || packet.isFragment()
+            || !wrap(packet.getBuffer(), packet.getPayloadOffset(), packet.getPayloadLength())) {
+            this.buffer = null;
+            return false;
+        }
+        this.addressSum = packet.sumAddresses();
+        this.isZeroChecksumAllowed = false;
+        this.hasPseudoHeader = true;
+        return true;
+    }
+
+    /**
+     * Binds this view to the UDP packet that starts at the specified buffer index.
+     * A view bound using this method cannot verify the UDP checksum.
+     * 
+     * @param buffer
+     *            A buffer containing a UDP packet.
+     * @param offset
+     *            The index of the first byte of the UDP header.
+     * @param available
+     *            The number of bytes available to the UDP packet (normally the IP
+     *            payload length).
+     * @return <code>true</code> if the UDP Length field is consistent with the
+     *         available bytes, or <code>false</code> if it is not. The view is unbound
+     *         if <code>false</code> is returned.
+     */
+    public boolean wrap(final ByteBuffer buffer, final int offset, final int available) {
+
+        this.buffer = null;
+        this.hasPseudoHeader = false;
+
+        if (offset < 0
+            || available < UdpPacket.BASE_HEADER_LENGTH
+            || offset + available > buffer.limit()) {
+            return false;
+        }
+
+        int length = buffer.getShort(offset + 4) & 0xFFFF;
+        if (length < UdpPacket.BASE_HEADER_LENGTH || length > available) {
+            return false;
+        }
+
+        this.offset = offset;
+        this.length = length;
+        this.buffer = buffer;
+        return true;
+    }
+
+    /**
+     * Indicates whether this view is currently bound to a packet.
+     */
+    public boolean isBound() {
+        return this.buffer != null;
+    }
+
+    /**
+     * Gets the buffer index of the first byte of the UDP header.
+     */
+    public int getOffset() {
+        return this.offset;
+    }
+
+    /**
+     * Gets the Source Port field value.
+     */
+    public int getSourcePort() {
+        return this.buffer.getShort(this.offset) & 0xFFFF;
+    }
+
+    /**
+     * Gets the Destination Port field value.
+     */
+    public int getDestinationPort() {
+        return this.buffer.getShort(this.offset + 2) & 0xFFFF;
+    }
+
+    /**
+     * Gets the Length field value (the length of the header and payload).
+     */
+    public int getLength() {
+        return this.length;
+    }
+
+    /**
+     * Gets the Checksum field value.
+     */
+    public int getChecksum() {
+        return this.buffer.getShort(this.offset + 6) & 0xFFFF;
+    }
+
+    /**
+     * Verifies the UDP checksum in place. An IPv4 datagram sent without a checksum
+     * (a checksum of zero) is considered valid.
+     * 
+     * @throws IllegalStateException
+     *             If the view was not bound to an IP packet view.
+     */
+    public boolean isChecksumValid() {
+        if (!this.hasPseudoHeader) {
+            throw new IllegalStateException("the UDP view is not bound to an IP packet");
+        }
+        if (this.isZeroChecksumAllowed && getChecksum() == 0) {
+            return true;
+        }
+        long sum = InternetChecksum.sumPseudoHeader(this.addressSum, UdpPacket.IP_PROTOCOL_NUMBER, this.length)
+                   + InternetChecksum.sum(this.buffer, this.offset, this.length);
+        return InternetChecksum.isValid(sum);
+    }
+
+    /**
+     * Gets the buffer index of the first byte of the UDP payload.
+     */
+    public int getPayloadOffset() {
+        return this.offset + UdpPacket.BASE_HEADER_LENGTH;
+    }
+
+    /**
+     * Gets the length of the UDP payload.
+     */
+    public int getPayloadLength() {
+        return this.length - UdpPacket.BASE_HEADER_LENGTH;
+    }
+
+    /**
+     * Returns a slice of the packet buffer that contains the UDP payload.
+     * Unlike the other accessors this method constructs a new buffer object.
+     */
+    public ByteBuffer getPayload() {
+        ByteBuffer payload = this.buffer.duplicate();
+        payload.limit(this.offset + this.length);
+        payload.position(this.offset + UdpPacket.BASE_HEADER_LENGTH);
+        return payload.slice();
+    }
+}
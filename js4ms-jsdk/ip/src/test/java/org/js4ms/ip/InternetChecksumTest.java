@@ -0,0 +1,175 @@
+package org.js4ms.ip;
+
+/*
+ * #%L
+ * DO NOT ALTER OR REMOVE COPYRIGHT NOTICES OR THIS HEADER.
+ *  
+ * InternetChecksumTest.java [org.js4ms.jsdk:ip]
+ * %%
+ * Copyright (C) 2009 - 2014 Cisco Systems, Inc.
+ * %%
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ * #L%
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link InternetChecksum} against a straightforward 16-bit one's complement sum,
+ * and tests that incremental updates produce the same checksum as a full recalculation.
+ * 
+ * @author Greg Bumgardner (gbumgard)
+ */
+public class InternetChecksumTest
+                extends TestCase {
+
+    private final Random random = new Random(1624);
+
+    /**
+     * Computes the folded one's complement sum of a range of bytes one 16-bit word
+     * at a time.
+     */
+    private static int referenceSum(final byte[] bytes, final int offset, final int length) {
+        long sum = 0;
+        for (int i = 0; i < length; i += 2) {
+            int high = bytes[offset + i] & 0xFF;
+            int low = i + 1 < length ? bytes[offset + i + 1] & 0xFF : 0;
+            sum += (high << 8) | low;
+        }
+        while ((sum >>> 16) != 0) {
+            sum = (sum & 0xFFFF) + (sum >>> 16);
+        }
+        return (int) sum;
+    }
+
+    private byte[] randomBytes(final int length) {
+        byte[] bytes = new byte[length];
+        this.random.nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Builds a message with a checksum field at offset 10, as in an IPv4 header.
+     */
+    private ByteBuffer checksummedMessage(final int length) {
+        ByteBuffer buffer = ByteBuffer.wrap(randomBytes(length));
+        buffer.putShort(10, (short) 0);
+        buffer.putShort(10, InternetChecksum.checksum(InternetChecksum.sum(buffer, 0, length)));
+        return buffer;
+    }
+
+    public void testSumMatchesReference() {
+        byte[] bytes = randomBytes(80);
+        for (int offset = 0; offset < 8; offset += 2) {
+            for (int length = 0; length <= 64; length++) {
+                long sum = InternetChecksum.sum(ByteBuffer.wrap(bytes), offset, length);
+                assertEquals("offset=" + offset + " length=" + length,
+                             referenceSum(bytes, offset, length),
+                             InternetChecksum.fold(sum));
+            }
+        }
+    }
+
+    public void testSumIgnoresBufferOrderAndType() {
+        byte[] bytes = randomBytes(61);
+        int expected = referenceSum(bytes, 0, bytes.length);
+
+        ByteBuffer little = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        assertEquals(expected, InternetChecksum.fold(InternetChecksum.sum(little, 0, bytes.length)));
+
+        ByteBuffer direct = ByteBuffer.allocateDirect(bytes.length);
+        direct.put(bytes);
+        assertEquals(expected, InternetChecksum.fold(InternetChecksum.sum(direct, 0, bytes.length)));
+
+        ByteBuffer readOnly = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        assertEquals(expected, InternetChecksum.fold(InternetChecksum.sum(readOnly, 0, bytes.length)));
+    }
+
+    public void testFoldCarriesLargeSums() {
+        byte[] bytes = new byte[65536];
+        Arrays.fill(bytes, (byte) 0xFF);
+        long sum = InternetChecksum.sum(ByteBuffer.wrap(bytes), 0, bytes.length);
+        assertEquals(0xFFFF, InternetChecksum.fold(sum));
+        assertEquals(0xFFFF, InternetChecksum.fold(0xFFFFFFFFFFFFL));
+    }
+
+    public void testPseudoHeaderSum() {
+        byte[] source = { 10, 1, 2, 3 };
+        byte[] destination = { (byte) 232, 1, 1, 1 };
+        long sum = InternetChecksum.sumPseudoHeader(InternetChecksum.sumAddresses(source, destination), (byte) 17, 1324);
+        byte[] pseudoHeader = { 10, 1, 2, 3, (byte) 232, 1, 1, 1, 0, 17, (byte) (1324 >> 8), (byte) 1324 };
+        assertEquals(referenceSum(pseudoHeader, 0, pseudoHeader.length), InternetChecksum.fold(sum));
+    }
+
+    public void testChecksumVerifies() {
+        ByteBuffer message = checksummedMessage(20);
+        assertTrue(InternetChecksum.verify(message, 0, 20));
+        message.put(3, (byte) (message.get(3) ^ 0x01));
+        assertFalse(InternetChecksum.verify(message, 0, 20));
+    }
+
+    public void testShortUpdateMatchesRecalculation() {
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer message = checksummedMessage(20);
+            short checksum = message.getShort(10);
+            // Rewrite the TTL and protocol word
+            short oldValue = message.getShort(8);
+            short newValue = (short) this.random.nextInt();
+            message.putShort(8, newValue);
+            short updated = InternetChecksum.update(checksum, oldValue, newValue);
+
+            message.putShort(10, (short) 0);
+            assertEquals(InternetChecksum.checksum(InternetChecksum.sum(message, 0, 20)), updated);
+            message.putShort(10, updated);
+            assertTrue(InternetChecksum.verify(message, 0, 20));
+        }
+    }
+
+    public void testIntUpdateMatchesRecalculation() {
+        for (int i = 0; i < 1000; i++) {
+            ByteBuffer message = checksummedMessage(20);
+            short checksum = message.getShort(10);
+            // Rewrite the destination address
+            int oldValue = message.getInt(16);
+            int newValue = this.random.nextInt();
+            message.putInt(16, newValue);
+            short updated = InternetChecksum.update(checksum, oldValue, newValue);
+
+            message.putShort(10, (short) 0);
+            assertEquals(InternetChecksum.checksum(InternetChecksum.sum(message, 0, 20)), updated);
+        }
+    }
+
+    public void testUpdateWithUnchangedValue() {
+        ByteBuffer message = checksummedMessage(20);
+        short checksum = message.getShort(10);
+        short value = message.getShort(4);
+        assertEquals(checksum, InternetChecksum.update(checksum, value, value));
+    }
+
+    public void testReplaceKeepsMessageValid() {
+        ByteBuffer message = checksummedMessage(40);
+        for (int wordIndex = 0; wordIndex < 40; wordIndex += 2) {
+            if (wordIndex == 10) {
+                continue;
+            }
+            InternetChecksum.replace(message, 10, wordIndex, (short) this.random.nextInt());
+            assertTrue("word=" + wordIndex, InternetChecksum.verify(message, 0, 40));
+        }
+    }
+}
@@ -24,9 +24,11 @@ package org.js4ms.reflector;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.NetworkInterface;
 import java.nio.ByteBuffer;
 
 import org.js4ms.amt.gateway.AmtDatagramSource;
+import org.js4ms.amt.gateway.HybridDatagramSource;
 import org.js4ms.amt.proxy.SourceFilter;
 import org.js4ms.io.channel.MessageSource;
 import org.js4ms.io.channel.MessageTransform;
@@ -55,7 +57,7 @@ public class MulticastPacketSource extends MessageSource<ByteBuffer> {
         }
     }
 
-    private final AmtDatagramSource packetSource;
+    private final MessageSource<UdpDatagram> packetSource;
 
     /**
      * 
@@ -73,6 +75,38 @@ public class MulticastPacketSource extends MessageSource<ByteBuffer> {
                                                   new OutputChannelTransform<UdpDatagram,ByteBuffer>(outputChannel,new Transform()));
     }
 
+    /**
+     * Constructs a packet source that receives packets natively where the network
+     * supports it and through AMT where it does not.
+     * 
+     * @param port
+     * @param filter
+     * @param relayDiscoveryAddress
+     * @param networkInterface
+     *            The interface used to join groups natively, or <code>null</code> to use
+     *            the default multicast interface.
+     * @param nativeTimeout
+     *            The time in milliseconds allowed for native packets to arrive before a
+     *            group is joined through AMT, or zero to only use AMT.
+     * @param outputChannel
+     * @throws IOException
+     */
+    public MulticastPacketSource(final int port,
+                                 final SourceFilter filter,
+                                 final InetAddress relayDiscoveryAddress,
+                                 final NetworkInterface networkInterface,
+                                 final long nativeTimeout,
+                                 final OutputChannel<ByteBuffer> outputChannel) throws IOException {
+        super(outputChannel);
+        OutputChannel<UdpDatagram> channel = new OutputChannelTransform<UdpDatagram,ByteBuffer>(outputChannel,new Transform());
+        if (nativeTimeout > 0) {
+            this.packetSource = new HybridDatagramSource(port, filter, relayDiscoveryAddress, networkInterface, nativeTimeout, channel);
+        }
+        else {
+            this.packetSource = new AmtDatagramSource(port, filter, relayDiscoveryAddress, channel);
+        }
+    }
+
     @Override
     protected void doStart() throws IOException, InterruptedException {
         this.packetSource.start();
@@ -99,6 +99,13 @@ public class MulticastReflectorFactory implements PresentationResolver {
     public static final String SOURCE_ADDRESS_QUERY_PARAMETER = "source_address";
     public static final String RELAY_ADDRESS_QUERY_PARAMETER = "relay_address";
 
+    /**
+     * The name of the system property that sets the time in milliseconds allowed for
+     * native multicast packets to arrive before a reflector stream joins its group
+     * through AMT. If the property is not set, streams only use AMT.
+     */
+    public static final String NATIVE_TIMEOUT_PROPERTY = "org.js4ms.reflector.nativeTimeout";
+
     /*-- Member Variables ----------------------------------------------------*/
 
     /**
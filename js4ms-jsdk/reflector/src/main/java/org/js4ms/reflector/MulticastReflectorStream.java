@@ -147,7 +147,15 @@ public class MulticastReflectorStream extends MediaStream {
         int portOffset = layerIndex * this.inputTransportDescription.getPortsPerLayer() + channelIndex;
         int port = this.inputTransportDescription.getFirstClientPort() + portOffset;
 
-        MulticastPacketSource packetSource = new MulticastPacketSource(port, filter, this.relayDiscoveryAddress, packetSink);
+        // Native reception is only attempted if a native timeout has been configured
+        long nativeTimeout = Long.getLong(MulticastReflectorFactory.NATIVE_TIMEOUT_PROPERTY, 0);
+
+        MulticastPacketSource packetSource = new MulticastPacketSource(port,
+                                                                       filter,
+                                                                       this.relayDiscoveryAddress,
+                                                                       null,
+                                                                       nativeTimeout,
+                                                                       packetSink);
 
         return packetSource;
     }
@@ -23,10 +23,10 @@ package org.js4ms.rest.server;
  */
 
 import java.io.IOException;
-import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import org.js4ms.common.util.task.TimingWheel;
 import org.js4ms.rest.message.Request;
 import org.js4ms.rest.message.Response;
 
@@ -46,7 +46,7 @@ public abstract class AbstractTimedSession extends AbstractSession {
 
     protected AbstractTimedSession(final String identifier,
                                    final SessionManager sessionManager,
-                                   final Timer sessionTimer,
+                                   final TimingWheel sessionTimer,
                                    int sessionTimeout) {
         super(identifier, sessionManager);
         this.timer = new SessionTimer(sessionTimer, this);
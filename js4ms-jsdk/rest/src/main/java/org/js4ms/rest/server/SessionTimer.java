@@ -22,9 +22,9 @@ package org.js4ms.rest.server;
  * #L%
  */
 
-import java.util.Timer;
 
 import org.js4ms.common.util.task.ReschedulableTask;
+import org.js4ms.common.util.task.TimingWheel;
 
 
 
@@ -38,7 +38,7 @@ public class SessionTimer extends ReschedulableTask {
 
     final Session session;
 
-    public SessionTimer(final Timer timer, final Session session) {
+    public SessionTimer(final TimingWheel timer, final Session session) {
         super(timer);
         this.session = session;
     }
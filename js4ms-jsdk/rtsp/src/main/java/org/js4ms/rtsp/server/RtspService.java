@@ -22,7 +22,6 @@ package org.js4ms.rtsp.server;
  * #L%
  */
 
-import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -77,8 +76,6 @@ public class RtspService extends AbstractService {
      */
     private final RequestParser parser;
 
-    private final Timer timer = new Timer("RTSP Service Timer");
-    
     private final RtspTransactionHandler rtspHandler;
 
     /*-- Member Functions ----------------------------------------------------*/
@@ -134,7 +131,6 @@ public class RtspService extends AbstractService {
         if (logger.isLoggable(Level.FINER)) {
             logger.finer(log.entry("stop"));
         }
-        this.timer.cancel();
         this.rtspHandler.terminate();
     }
 
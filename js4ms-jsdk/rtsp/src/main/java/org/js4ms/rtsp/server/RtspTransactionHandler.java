@@ -26,12 +26,12 @@ import java.io.IOException;
 import java.io.PushbackInputStream;
 import java.net.URI;
 import java.util.HashMap;
-import java.util.Timer;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.js4ms.common.util.logging.Log;
 import org.js4ms.common.util.logging.Logging;
+import org.js4ms.common.util.task.TimingWheel;
 import org.js4ms.http.message.HttpHeaderName;
 import org.js4ms.io.stream.Base64InputStream;
 import org.js4ms.rest.common.RequestException;
@@ -84,7 +84,7 @@ public class RtspTransactionHandler implements TransactionHandler {
 
     protected final PresentationResolver resolver;
 
-    protected final Timer sessionTimer = new Timer("RTSP session timer");
+    protected final TimingWheel sessionTimer = TimingWheel.getSharedInstance();
 
     private final HashMap<String, Connection> outputConnections = new HashMap<String, Connection>();
 
@@ -114,8 +114,7 @@ public class RtspTransactionHandler implements TransactionHandler {
             logger.finer(log.entry("close"));
         }
 
-        this.sessionTimer.cancel();
-
+        // Terminating each session cancels its session timer
         this.sessionManager.terminateSessions();
     }
 